@@ -1155,6 +1155,11 @@ public static enum ConfVars {
         "moment in time t0, the materialized view will not be considered for rewriting anymore after t0 plus " +
         "the value assigned to this property. Default value 0 means that the materialized view cannot be " +
         "outdated to be used automatically in query rewriting."),
+    HIVE_MATERIALIZED_VIEW_REBUILD_INCREMENTAL("hive.materializedview.rebuild.incremental", false,
+        "Whether to try to rebuild a materialized view incrementally. The materialized views whose\n" +
+        "query aggregates with sum, count, min and max the rows of transactional tables, where a\n" +
+        "single table only got new rows since the last rebuild, are rebuilt by merging the aggregates\n" +
+        "of the new rows into the rows of the materialized view. The others are fully recomputed."),
     HIVE_MATERIALIZED_VIEW_FILE_FORMAT("hive.materializedview.fileformat", "ORC",
         new StringSet("none", "TextFile", "SequenceFile", "RCfile", "ORC"),
         "Default file format for CREATE MATERIALIZED VIEW statement"),
@@ -1200,6 +1205,11 @@ public static enum ConfVars {
     HIVEMAPAGGRHASHMINREDUCTION("hive.map.aggr.hash.min.reduction", (float) 0.5,
         "Hash aggregation will be turned off if the ratio between hash  table size and input rows is bigger than this number. \n" +
         "Set to 1 to make sure hash aggregation is never turned off."),
+    HIVEMAPAGGRHASHRECHECKINTERVAL("hive.map.aggr.hash.recheck.interval", 1000000L,
+        "Number of rows after which hash aggregation that was turned off is turned on again, to measure\n" +
+        "its reduction again on the following hive.groupby.mapaggr.checkinterval rows. This lets data\n" +
+        "whose first rows do not aggregate well still use hash aggregation later in the task.\n" +
+        "Set to 0 to keep hash aggregation off once it is turned off."),
     HIVEMULTIGROUPBYSINGLEREDUCER("hive.multigroupby.singlereducer", true,
         "Whether to optimize multi group by query to generate single M/R  job plan. If the multi group by query has \n" +
         "common group by keys, it will be optimized to generate single M/R job."),
@@ -1251,6 +1261,35 @@ public static enum ConfVars {
         "for all tables."),
     HIVEQUERYRESULTFILEFORMAT("hive.query.result.fileformat", "SequenceFile", new StringSet("TextFile", "SequenceFile", "RCfile", "Llap"),
         "Default file format for storing result of the query."),
+    HIVE_QUERY_RESULTS_CACHE_ENABLED("hive.query.results.cache.enabled", false,
+        "If the query results cache is enabled. This will keep results of previously executed queries\n" +
+        "to be reused if the same query is executed again and none of its input tables changed: the\n" +
+        "modification times of the directories of the tables and partitions a query read are\n" +
+        "checked on each lookup, so the writes in subdirectories are only seen by the metastore\n" +
+        "notification events and the maximum entry lifetime. Queries on\n" +
+        "transactional, temporary or non-native tables and queries with non-deterministic functions\n" +
+        "are not cached. The cache lives in HiveServer2."),
+    HIVE_QUERY_RESULTS_CACHE_DIRECTORY("hive.query.results.cache.directory",
+        "/tmp/hive/_resultscache_",
+        "Location of the query results cache directory. It must be on the same file system as the\n" +
+        "scratch directory so that the query results can be moved there."),
+    HIVE_QUERY_RESULTS_CACHE_MAX_SIZE("hive.query.results.cache.max.size", "2Gb",
+        new SizeValidator(),
+        "Maximum total size of the query results cache. The least recently used entries are\n" +
+        "evicted when a new entry does not fit."),
+    HIVE_QUERY_RESULTS_CACHE_MAX_ENTRY_SIZE("hive.query.results.cache.max.entry.size", "10Mb",
+        new SizeValidator(),
+        "Maximum size of the results of a query that can be cached."),
+    HIVE_QUERY_RESULTS_CACHE_MAX_ENTRY_LIFETIME("hive.query.results.cache.max.entry.lifetime",
+        "3600s", new TimeValidator(TimeUnit.SECONDS),
+        "Maximum lifetime of a query results cache entry."),
+    HIVE_QUERY_RESULTS_CACHE_INVALIDATION_INTERVAL(
+        "hive.query.results.cache.invalidation.interval", "10s",
+        new TimeValidator(TimeUnit.SECONDS),
+        "Interval at which HiveServer2 polls the metastore notification events to invalidate the\n" +
+        "query results cache entries of tables that were altered, dropped or written to. Requires\n" +
+        "the DbNotificationListener on the metastore (and hive.metastore.dml.events for INSERT).\n" +
+        "0s disables the polling; entries are then only checked against the table last DDL time."),
     HIVECHECKFILEFORMAT("hive.fileformat.check", true, "Whether to check file format or not when loading data files"),
 
     // default serde for rcfile
@@ -1333,6 +1372,14 @@ public static enum ConfVars {
         + "into memory to optimize for performance. To prevent out-of-memory errors, this is a rough heuristic\n"
         + "that limits the total number of delete events that can be loaded into memory at once.\n"
         + "Roughly it has been set to 10 million delete events per bucket (~160 MB).\n"),
+    HIVE_TRANSACTIONAL_DELETE_EVENTS_CACHE_SIZE("hive.transactional.delete.events.cache.size",
+        "0", new SizeValidator(),
+        "Maximum size of the sorted delete events that LLAP daemons cache and share between the\n"
+        + "splits of a bucket, so that the delete deltas are not read and sorted again for every split\n"
+        + "and every query. The cache is keyed by the delete delta directories; 0 disables it. It is\n"
+        + "read from the configuration of the daemons. The cached delete events are kept on the heap\n"
+        + "and accounted for in the LLAP IO memory manager, which evicts cached data to make room;\n"
+        + "without the LLAP IO cache they are not cached."),
 
     HIVESAMPLERANDOMNUM("hive.sample.seednumber", 0,
         "A number used to percentage sampling. By changing this number, user will change the subsets of data sampled."),
@@ -1409,6 +1456,12 @@ public static enum ConfVars {
 
     HIVE_ORC_BASE_DELTA_RATIO("hive.exec.orc.base.delta.ratio", 8, "The ratio of base writer and\n" +
         "delta writer in terms of STRIPE_SIZE and BUFFER_SIZE."),
+    HIVE_ORC_WRITER_ENCODER_THREADS("hive.exec.orc.writer.encoder.threads", 0,
+        "Number of threads, shared by the tasks of a JVM, that encode and compress the row batches of the\n" +
+        "ORC files written by file sinks while the task fills the next batch of each file. The JVM-wide pool\n" +
+        "grows to the largest value used by its tasks and is not shrunk by smaller values. The files of\n" +
+        "different partitions or buckets are encoded in parallel. Their stripes share hive.exec.orc.memory.pool\n" +
+        "like with 0, which encodes on the task thread."),
     HIVE_ORC_SPLIT_STRATEGY("hive.exec.orc.split.strategy", "HYBRID", new StringSet("HYBRID", "BI", "ETL"),
         "This is not a user level config. BI strategy is used when the requirement is to spend less time in split generation" +
         " as opposed to query execution (split generation does not read or cache file footers)." +
@@ -1437,6 +1490,16 @@ public static enum ConfVars {
         new SizeValidator(), "Maximum size of orc splits cached in the client."),
     HIVE_ORC_COMPUTE_SPLITS_NUM_THREADS("hive.orc.compute.splits.num.threads", 10,
         "How many threads orc should use to create splits in parallel."),
+    HIVE_ORC_SPLITS_FOOTER_BATCH_SIZE("hive.orc.splits.footer.batch.size", 100,
+        "Maximum number of files whose footers are read, and whose splits are generated, by one\n" +
+        "task of the ORC split generation thread pool with the ETL strategy. Batching cuts the\n" +
+        "per file task overhead for tables with many small files. The files are grouped by the\n" +
+        "host of their footer, so that the reads of a task go to the same DataNode. Fewer files\n" +
+        "are put in a batch when there are not enough files to keep all the threads busy."),
+    HIVE_ORC_LATE_MATERIALIZATION("hive.orc.late.materialization.enabled", true,
+        "Whether the vectorized ORC reader reads the columns of the pushed down predicate first, and\n" +
+        "the other columns only for the batches that have a row the predicate can select. The\n" +
+        "batches that have none are skipped without reading the other columns."),
     HIVE_ORC_CACHE_USE_SOFT_REFERENCES("hive.orc.cache.use.soft.references", false,
         "By default, the cache that ORC input format uses to store orc file footer use hard\n" +
         "references for the cached object. Setting this to true can help avoid out of memory\n" +
@@ -2794,6 +2857,16 @@ public static enum ConfVars {
     HIVE_SERVER2_THRIFT_RESULTSET_DEFAULT_FETCH_SIZE("hive.server2.thrift.resultset.default.fetch.size", 1000,
         "The number of rows sent in one Fetch RPC call by the server to the client, if not\n" +
         "specified by the client."),
+    HIVE_SERVER2_THRIFT_RESULTSET_MAX_FETCH_BYTES("hive.server2.thrift.resultset.max.fetch.bytes",
+        "4Mb", new SizeValidator(),
+        "Approximate maximum size of the values sent in one Fetch RPC call, when the results are serialized\n" +
+        "in tasks (see hive.server2.thrift.resultset.serialize.in.tasks). The tasks serialize the rows in\n" +
+        "batches of up to hive.server2.thrift.resultset.default.fetch.size rows, and a batch ends earlier\n" +
+        "when its values reach this size."),
+    HIVE_SERVER2_THRIFT_RESULTSET_COMPRESS("hive.server2.thrift.resultset.compress", false,
+        "Whether the tasks compress the result batches they serialize with zlib, when the results are\n" +
+        "serialized in tasks (see hive.server2.thrift.resultset.serialize.in.tasks). The clients older\n" +
+        "than this release can not read the compressed results."),
     HIVE_SERVER2_XSRF_FILTER_ENABLED("hive.server2.xsrf.filter.enabled",false,
         "If enabled, HiveServer2 will block any requests made to it over http " +
         "if an X-XSRF-HEADER header is not present"),
@@ -2913,6 +2986,22 @@ public static enum ConfVars {
         "Exceeding this will trigger a flush irrelevant of memory pressure condition."),
     HIVE_VECTORIZATION_GROUPBY_FLUSH_PERCENT("hive.vectorized.groupby.flush.percent", (float) 0.1,
         "Percent of entries in the group by aggregation hash flushed when the memory threshold is exceeded."),
+    HIVE_VECTORIZATION_GROUPBY_FAST_HASHTABLE_ENABLED("hive.vectorized.groupby.fast.hashtable.enabled", false,
+        "This flag should be set to true to enable the open-addressing fast hash tables in vectorized\n" +
+        "GROUP BY hash mode for single long, single string and multiple primitive keys.  Keys are kept\n" +
+        "in flat arrays instead of per-key objects, memory is accounted exactly and flushing is driven\n" +
+        "only by the memory threshold and hive.vectorized.groupby.maxentries.\n" +
+        "The default value is false."),
+    HIVE_VECTORIZATION_GROUPBY_SPILL_ENABLED("hive.vectorized.groupby.spill.enabled", false,
+        "This flag should be set to true to let vectorized GROUP BY hash mode spill cold hash\n" +
+        "partitions to local disk instead of repeatedly emitting partial results under memory\n" +
+        "pressure.  Spilled partitions are re-aggregated one at a time when the operator closes.\n" +
+        "Requires hive.vectorized.groupby.fast.hashtable.enabled.\n" +
+        "The default value is false."),
+    HIVE_VECTORIZATION_GROUPBY_SPILL_PARTITIONS("hive.vectorized.groupby.spill.partitions", 16,
+        new RangeValidator(2, 256),
+        "The number of hash partitions used by vectorized GROUP BY when spilling is enabled.\n" +
+        "Rounded up to a power of 2."),
     HIVE_VECTORIZATION_REDUCESINK_NEW_ENABLED("hive.vectorized.execution.reducesink.new.enabled", true,
         "This flag should be set to true to enable the new vectorization\n" +
         "of queries using ReduceSink.\ni" +
@@ -3047,6 +3136,9 @@ public static enum ConfVars {
     TEZ_MIN_PARTITION_FACTOR("hive.tez.min.partition.factor", 0.25f,
         "When auto reducer parallelism is enabled this factor will be used to put a lower limit to the number\n" +
         "of reducers that tez specifies."),
+    TEZ_SHUFFLE_NORMALIZED_KEY_PREFIX("hive.tez.shuffle.normalized.key.prefix", true,
+        "Whether the sorted shuffle edges use a comparator that derives a normalized 32 bit prefix from the\n" +
+        "binary sortable key, so that the pipelined sorter resolves most comparisons without comparing key bytes."),
     TEZ_OPTIMIZE_BUCKET_PRUNING(
         "hive.tez.bucket.pruning", false,
          "When pruning is enabled, filters on bucket columns will be processed by \n" +
@@ -3085,6 +3177,11 @@ public static enum ConfVars {
             (float) 1.0,
             "The factor to decide if semijoin branch feeds into a TableScan\n" +
             "which has an outgoing Dynamic Partition Pruning (DPP) branch based on number of distinct values."),
+    TEZ_DYNAMIC_SEMIJOIN_REDUCTION_SARG_MAX_VALUES("hive.tez.dynamic.semijoin.reduction.sarg.max.values", 1000,
+            "When the runtime min/max range of an integer or date semijoin key has at most this many values,\n" +
+            "the values of the range that pass the runtime bloom filter are pushed to the ORC and Parquet\n" +
+            "readers as an IN search argument, so stripes and row groups without a match are skipped.\n" +
+            "0 disables it."),
     TEZ_SMB_NUMBER_WAVES(
         "hive.tez.smb.number.waves",
         (float) 0.5,
@@ -3241,6 +3338,14 @@ public static enum ConfVars {
         "Chooses whether query fragments will run in container or in llap"),
     LLAP_OBJECT_CACHE_ENABLED("hive.llap.object.cache.enabled", true,
         "Cache objects (plans, hashtables, etc) in llap"),
+    LLAP_MAPJOIN_SHARED_CACHE_SIZE("hive.llap.mapjoin.shared.cache.size", "0", new SizeValidator(),
+        "Maximum total size of the map join hash tables that an LLAP daemon keeps for later queries that\n" +
+        "join the same small tables. The small table side must only scan, filter, project and shuffle\n" +
+        "non-transactional tables, whose data is identified by the files listed in their locations. Tables in use by\n" +
+        "running queries are kept; the least recently used others are dropped to fit. 0 disables the cache\n" +
+        "and the hash tables are only shared within a query. The hash tables are kept on the daemon heap,\n" +
+        "outside of the executor memory, and are only dropped to fit this size, not under memory pressure,\n" +
+        "so the heap of the daemon must leave room for them."),
     LLAP_IO_DECODING_METRICS_PERCENTILE_INTERVALS("hive.llap.io.decoding.metrics.percentiles.intervals", "30",
         "Comma-delimited set of integers denoting the desired rollover intervals (in seconds)\n" +
         "for percentile latency metrics on the LLAP daemon IO decoding time.\n" +
@@ -4587,6 +4692,8 @@ private static String[] convertVarsToRegex(String[] paramList) {
     ConfVars.HIVE_SCHEMA_EVOLUTION.varname,
     ConfVars.HIVE_SERVER2_LOGGING_OPERATION_LEVEL.varname,
     ConfVars.HIVE_SERVER2_THRIFT_RESULTSET_SERIALIZE_IN_TASKS.varname,
+    ConfVars.HIVE_SERVER2_THRIFT_RESULTSET_MAX_FETCH_BYTES.varname,
+    ConfVars.HIVE_SERVER2_THRIFT_RESULTSET_COMPRESS.varname,
     ConfVars.HIVE_SUPPORT_SPECICAL_CHARACTERS_IN_TABLE_NAMES.varname,
     ConfVars.JOB_DEBUG_CAPTURE_STACKTRACES.varname,
     ConfVars.JOB_DEBUG_TIMEOUT.varname,
@@ -44,6 +44,7 @@
 
 import java.io.IOException;
 
+import java.nio.ByteBuffer;
 import java.security.PrivilegedExceptionAction;
 import java.util.ArrayList;
 import java.util.Collections;
@@ -178,6 +179,49 @@ private List<Integer> getBucketColIDs(List<String> bucketCols, List<FieldSchema>
   protected abstract StructObjectInspector getRecordObjectInspector();
   protected abstract StructField[] getBucketStructFields();
 
+  /**
+   * Writes records separated by newlines, from the position to the limit of {@code records},
+   * with {@link #write(long, byte[])}.  Writers which can parse many records at once override it.
+   * @param transactionId the ID of the Txn in which the write occurs
+   * @param records the records to be written
+   */
+  public void write(long transactionId, ByteBuffer records) throws StreamingException {
+    for (byte[] record : splitRecords(records)) {
+      write(transactionId, record);
+    }
+  }
+
+  /**
+   * @return the records separated by newlines in {@code records}, without the empty record after
+   *         the last newline
+   */
+  static List<byte[]> splitRecords(ByteBuffer records) {
+    List<byte[]> result = new ArrayList<byte[]>();
+    ByteBuffer buffer = records.duplicate();
+    int start = buffer.position();
+    for (int i = start; i < buffer.limit(); i++) {
+      if (buffer.get(i) == '\n') {
+        result.add(getRecord(buffer, start, i));
+        start = i + 1;
+      }
+    }
+    if (start < buffer.limit()) {
+      result.add(getRecord(buffer, start, buffer.limit()));
+    }
+    return result;
+  }
+
+  private static byte[] getRecord(ByteBuffer buffer, int start, int end) {
+    byte[] record = new byte[end - start];
+    buffer.position(start);
+    buffer.get(record);
+    return record;
+  }
+
+  boolean isBucketed() {
+    return isBucketed;
+  }
+
   // returns the bucket number to which the record belongs to
   protected int getBucket(Object row) throws SerializationError {
     if(!isBucketed) {
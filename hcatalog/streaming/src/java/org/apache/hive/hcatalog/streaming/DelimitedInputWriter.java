@@ -26,18 +26,27 @@
 import org.apache.hadoop.hive.conf.HiveConf;
 import org.apache.hadoop.hive.metastore.api.FieldSchema;
 import org.apache.hadoop.hive.metastore.api.Table;
+import org.apache.hadoop.hive.ql.exec.vector.VectorDeserializeRow;
+import org.apache.hadoop.hive.ql.exec.vector.VectorizedBatchUtil;
+import org.apache.hadoop.hive.ql.exec.vector.VectorizedRowBatch;
+import org.apache.hadoop.hive.ql.io.RecordUpdater;
+import org.apache.hadoop.hive.ql.io.orc.OrcRecordUpdater;
+import org.apache.hadoop.hive.ql.metadata.HiveException;
 import org.apache.hadoop.hive.serde2.AbstractSerDe;
 import org.apache.hadoop.hive.serde2.SerDeException;
 import org.apache.hadoop.hive.serde2.SerDeUtils;
 import org.apache.hadoop.hive.serde2.lazy.LazySerDeParameters;
 import org.apache.hadoop.hive.serde2.lazy.LazySimpleSerDe;
+import org.apache.hadoop.hive.serde2.lazy.fast.LazySimpleDeserializeRead;
 import org.apache.hadoop.hive.serde2.lazy.objectinspector.LazySimpleStructObjectInspector;
 import org.apache.hadoop.hive.serde2.objectinspector.ObjectInspector;
 import org.apache.hadoop.hive.serde2.objectinspector.StructField;
+import org.apache.hadoop.hive.serde2.typeinfo.TypeInfo;
 import org.apache.hadoop.io.BytesWritable;
 
 import java.io.IOException;
 import java.io.UnsupportedEncodingException;
+import java.nio.ByteBuffer;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Properties;
@@ -59,6 +68,13 @@ public class DelimitedInputWriter extends AbstractRecordWriter {
   private final ObjectInspector[] bucketObjInspectors;
   private final StructField[] bucketStructFields;
 
+  /**
+   * Parses the records written with {@link #write(long, ByteBuffer)} straight into the columns of
+   * {@link #rowBatch}, when the vectorized path can be used.  Null otherwise.
+   */
+  private final VectorDeserializeRow<LazySimpleDeserializeRead> vectorDeserializeRow;
+  private VectorizedRowBatch rowBatch = null;
+
   static final private Logger LOG = LoggerFactory.getLogger(DelimitedInputWriter.class.getName());
 
   /** Constructor. Uses default separator of the LazySimpleSerde
@@ -141,6 +157,7 @@ public DelimitedInputWriter(String[] colNamesForFields, String delimiter,
     for (int i = 0; i < bucketIds.size(); i++) {
       bucketStructFields[i] = allFields.get(bucketIds.get(i));
     }
+    this.vectorDeserializeRow = createVectorDeserializeRow(conf);
   }
   /**
    * @deprecated As of release 1.3/2.1.  Replaced by {@link #DelimitedInputWriter(String[], String, HiveEndPoint, StreamingConnection)}
@@ -268,6 +285,110 @@ public void write(long transactionId, byte[] record)
     }
   }
 
+  /**
+   * Writes records separated by newlines.  When the fields are in the order of the columns of an
+   * unbucketed table and separated by a single character, the records are parsed straight into
+   * the columns of a VectorizedRowBatch, which is inserted with
+   * {@link OrcRecordUpdater#insert(long, VectorizedRowBatch)}, without an Object for each record.
+   * As with {@link #write(long, byte[])} for each record, the records before one that can not be
+   * parsed are written when the SerializationError is thrown.
+   */
+  @Override
+  public void write(long transactionId, ByteBuffer records) throws StreamingException {
+    RecordUpdater updater = vectorDeserializeRow == null ? null : getRecordUpdater(0);
+    if (!(updater instanceof OrcRecordUpdater)) {
+      super.write(transactionId, records);
+      return;
+    }
+    OrcRecordUpdater orcUpdater = (OrcRecordUpdater) updater;
+    byte[] bytes;
+    int offset;
+    int end;
+    if (records.hasArray()) {
+      bytes = records.array();
+      offset = records.arrayOffset() + records.position();
+      end = records.arrayOffset() + records.limit();
+    } else {
+      bytes = new byte[records.remaining()];
+      records.duplicate().get(bytes);
+      offset = 0;
+      end = bytes.length;
+    }
+    if (rowBatch == null) {
+      rowBatch = createRowBatch();
+    }
+    rowBatch.reset();
+    try {
+      int start = offset;
+      while (start < end) {
+        int next = start;
+        while (next < end && bytes[next] != '\n') {
+          next++;
+        }
+        vectorDeserializeRow.setBytes(bytes, start, next - start);
+        try {
+          vectorDeserializeRow.deserialize(rowBatch, rowBatch.size);
+        } catch (Exception e) {
+          SerializationError error = new SerializationError("Unable to convert record into columns: " +
+              vectorDeserializeRow.getDetailedReadPositionString(), e);
+          orcUpdater.insert(transactionId, rowBatch);
+          throw error;
+        }
+        rowBatch.size++;
+        if (rowBatch.size == rowBatch.getMaxSize()) {
+          orcUpdater.insert(transactionId, rowBatch);
+          rowBatch.reset();
+        }
+        start = next + 1;
+      }
+      orcUpdater.insert(transactionId, rowBatch);
+    } catch (IOException e) {
+      throw new StreamingIOFailure("Error writing records in transaction ("
+              + transactionId + ")", e);
+    }
+  }
+
+  /**
+   * @return the reader of the records into column vectors, which reads the fields separated by the
+   *         delimiter in place of the serde separator.  Null when the fields are not in the order
+   *         of the columns, the delimiter is not a single character that {@link #reorderFields}
+   *         splits on as is, the table is bucketed or has columns which are not primitive
+   */
+  private VectorDeserializeRow<LazySimpleDeserializeRead> createVectorDeserializeRow(
+      HiveConf conf) throws SerializationError {
+    if (!areFieldsInColOrder(fieldToColMapping) || tableColumns.size() < fieldToColMapping.length
+        || delimiter.length() != 1 || "\\^$.|?*+()[]{}".indexOf(delimiter.charAt(0)) != -1
+        || isBucketed()) {
+      return null;
+    }
+    try {
+      LazySerDeParameters serdeParams = new LazySerDeParameters(conf,
+          getSerdeProperties(tbl, delimiter.charAt(0)), LazySimpleSerDe.class.getName());
+      TypeInfo[] typeInfos = serdeParams.getColumnTypes().toArray(new TypeInfo[0]);
+      for (TypeInfo typeInfo : typeInfos) {
+        if (typeInfo.getCategory() != ObjectInspector.Category.PRIMITIVE) {
+          return null;
+        }
+      }
+      VectorDeserializeRow<LazySimpleDeserializeRead> result =
+          new VectorDeserializeRow<LazySimpleDeserializeRead>(
+              new LazySimpleDeserializeRead(typeInfos, /* useExternalBuffer */ true, serdeParams));
+      result.init();
+      return result;
+    } catch (SerDeException | HiveException e) {
+      throw new SerializationError("Error initializing the vectorized reader of records", e);
+    }
+  }
+
+  private VectorizedRowBatch createRowBatch() {
+    List<FieldSchema> cols = tbl.getSd().getCols();
+    VectorizedRowBatch batch = new VectorizedRowBatch(cols.size());
+    for (int i = 0; i < cols.size(); i++) {
+      batch.cols[i] = VectorizedBatchUtil.createColumnVector(cols.get(i).getType());
+    }
+    return batch;
+  }
+
   @Override
   public AbstractSerDe getSerde() {
     return serde;
@@ -306,8 +427,7 @@ public Object encode(byte[] record) throws SerializationError {
   protected static LazySimpleSerDe createSerde(Table tbl, HiveConf conf, char serdeSeparator)
           throws SerializationError {
     try {
-      Properties tableProps = MetaStoreUtils.getTableMetadata(tbl);
-      tableProps.setProperty("field.delim", String.valueOf(serdeSeparator));
+      Properties tableProps = getSerdeProperties(tbl, serdeSeparator);
       LazySimpleSerDe serde = new LazySimpleSerDe();
       SerDeUtils.initializeSerDe(serde, conf, tableProps, null);
       return serde;
@@ -316,6 +436,12 @@ protected static LazySimpleSerDe createSerde(Table tbl, HiveConf conf, char serd
     }
   }
 
+  private static Properties getSerdeProperties(Table tbl, char serdeSeparator) {
+    Properties tableProps = MetaStoreUtils.getTableMetadata(tbl);
+    tableProps.setProperty("field.delim", String.valueOf(serdeSeparator));
+    return tableProps;
+  }
+
   private ArrayList<String> getCols(Table table) {
     List<FieldSchema> cols = table.getSd().getCols();
     ArrayList<String> colNames = new ArrayList<String>(cols.size());
@@ -50,6 +50,7 @@
 import org.apache.thrift.TException;
 
 import java.io.IOException;
+import java.nio.ByteBuffer;
 import java.security.PrivilegedExceptionAction;
 import java.util.ArrayList;
 import java.util.Collection;
@@ -834,6 +835,57 @@ private void writeImpl(Collection<byte[]> records)
       }
     }
 
+    /**
+     *  Write records separated by newlines using RecordWriter
+     * @param records buffer of the records to be written
+     * @throws StreamingException  serialization error
+     * @throws ImpersonationFailed error writing on behalf of proxyUser
+     * @throws InterruptedException
+     */
+    @Override
+    public void write(final ByteBuffer records)
+            throws StreamingException, InterruptedException,
+            ImpersonationFailed {
+      checkIsClosed();
+      boolean success = false;
+      try {
+        if (ugi == null) {
+          writeImpl(records);
+        } else {
+          ugi.doAs(
+            new PrivilegedExceptionAction<Void>() {
+              @Override
+              public Void run() throws StreamingException {
+                writeImpl(records);
+                return null;
+              }
+            }
+          );
+        }
+        success = true;
+      } catch(SerializationError ex) {
+        //see write(Collection)
+        success = true;
+        throw ex;
+      } catch(IOException e){
+        throw new ImpersonationFailed("Failed writing as user '" + username +
+          "' to endPoint :" + endPt + ". Transaction Id: "
+          + getCurrentTxnId(), e);
+      }
+      finally {
+        markDead(success);
+      }
+    }
+
+    private void writeImpl(ByteBuffer records)
+            throws StreamingException {
+      if (recordWriter instanceof AbstractRecordWriter) {
+        ((AbstractRecordWriter) recordWriter).write(getCurrentTxnId(), records);
+      } else {
+        writeImpl(AbstractRecordWriter.splitRecords(records));
+      }
+    }
+
 
     /**
      * Commit the currently open transaction
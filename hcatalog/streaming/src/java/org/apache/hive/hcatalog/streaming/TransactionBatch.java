@@ -19,6 +19,7 @@
 package org.apache.hive.hcatalog.streaming;
 
 
+import java.nio.ByteBuffer;
 import java.util.Collection;
 
 /**
@@ -100,6 +101,18 @@ public String toString() {
    */
   public void write(Collection<byte[]> records) throws StreamingException, InterruptedException;
 
+  /**
+   *  Write records separated by newlines, from the position to the limit of a buffer, using
+   *  RecordWriter.  DelimitedInputWriter parses them straight into column vectors.  By default the
+   *  records are split and written with {@link #write(Collection)}.
+   * @param records the records to be written
+   * @throws StreamingException if there are errors when writing
+   * @throws InterruptedException if call in interrupted
+   */
+  public default void write(ByteBuffer records) throws StreamingException, InterruptedException {
+    write(AbstractRecordWriter.splitRecords(records));
+  }
+
 
   /**
    * Issues a heartbeat to hive metastore on the current and remaining txn ids
@@ -69,6 +69,7 @@
 import org.apache.hadoop.hive.ql.CommandNeedRetryException;
 import org.apache.hadoop.hive.ql.DriverFactory;
 import org.apache.hadoop.hive.ql.IDriver;
+import org.apache.hadoop.hive.ql.exec.vector.VectorizedRowBatch;
 import org.apache.hadoop.hive.ql.io.AcidUtils;
 import org.apache.hadoop.hive.ql.io.BucketCodec;
 import org.apache.hadoop.hive.ql.io.IOConstants;
@@ -409,6 +410,133 @@ public void testNoBuckets() throws Exception {
     Assert.assertTrue(rs.get(3), rs.get(3).endsWith("streamingnobuckets/base_0000022/bucket_00000"));
   }
 
+  @Test
+  public void testSplitRecords() throws Exception {
+    ByteBuffer buffer = ByteBuffer.wrap("xx1,a\n2,b\n\n3,cxx".getBytes());
+    buffer.position(2);
+    buffer.limit(buffer.capacity() - 2);
+    List<byte[]> records = AbstractRecordWriter.splitRecords(buffer);
+    Assert.assertEquals(4, records.size());
+    Assert.assertEquals("1,a", new String(records.get(0)));
+    Assert.assertEquals("2,b", new String(records.get(1)));
+    Assert.assertEquals("", new String(records.get(2)));
+    Assert.assertEquals("3,c", new String(records.get(3)));
+    // the position of the buffer is not changed
+    Assert.assertEquals(2, buffer.position());
+
+    // no empty record after the last newline
+    records = AbstractRecordWriter.splitRecords(ByteBuffer.wrap("1,a\n".getBytes()));
+    Assert.assertEquals(1, records.size());
+    Assert.assertEquals("1,a", new String(records.get(0)));
+    Assert.assertEquals(0, AbstractRecordWriter.splitRecords(ByteBuffer.allocate(0)).size());
+
+    // a slice starts at an offset of its array
+    buffer = ByteBuffer.wrap("xx1,a\n2,b".getBytes(), 2, 7).slice();
+    Assert.assertEquals(2, buffer.arrayOffset());
+    records = AbstractRecordWriter.splitRecords(buffer);
+    Assert.assertEquals(2, records.size());
+    Assert.assertEquals("1,a", new String(records.get(0)));
+    Assert.assertEquals("2,b", new String(records.get(1)));
+
+    buffer = ByteBuffer.allocateDirect(7);
+    buffer.put("1,a\n2,b".getBytes());
+    buffer.flip();
+    records = AbstractRecordWriter.splitRecords(buffer);
+    Assert.assertEquals(2, records.size());
+    Assert.assertEquals("2,b", new String(records.get(1)));
+  }
+
+  /**
+   * Test that the records of a buffer written to an unbucketed table are parsed into column
+   * vectors, including more records than fit in one VectorizedRowBatch.
+   */
+  @Test
+  public void testWriteByteBuffer() throws Exception {
+    queryTable(driver, "drop table if exists default.streamingnobuckets");
+    queryTable(driver, "create table default.streamingnobuckets (a string, b string) stored as orc TBLPROPERTIES('transactional'='true', 'transactional_properties'='default')");
+    HiveEndPoint endPt = new HiveEndPoint(metaStoreURI, "default", "streamingnobuckets", null);
+    StreamingConnection connection = endPt.newConnection(false, "UT_" + Thread.currentThread().getName());
+    DelimitedInputWriter wr = new DelimitedInputWriter(new String[] {"a", "b"}, ",", endPt, connection);
+
+    int numRecords = 2 * VectorizedRowBatch.DEFAULT_SIZE + 2;
+    StringBuilder records = new StringBuilder("skipped\n");
+    int offset = records.length();
+    for (int i = 0; i < numRecords; i++) {
+      records.append('a').append(i).append(",b").append(i).append('\n');
+    }
+    byte[] bytes = records.toString().getBytes();
+
+    TransactionBatch txnBatch =  connection.fetchTransactionBatch(2, wr);
+    txnBatch.beginNextTransaction();
+    // a slice, whose records start at an offset of its array
+    ByteBuffer buffer = ByteBuffer.wrap(bytes, offset, bytes.length - offset).slice();
+    txnBatch.write(buffer);
+    txnBatch.commit();
+    txnBatch.beginNextTransaction();
+    buffer = ByteBuffer.allocateDirect(11);
+    buffer.put("c0,d0\nc1,d1".getBytes());
+    buffer.flip();
+    txnBatch.write(buffer);
+    txnBatch.commit();
+    txnBatch.close();
+    connection.close();
+
+    List<String> rs = queryTable(driver, "select count(*) from default.streamingnobuckets");
+    Assert.assertEquals(Integer.toString(numRecords + 2), rs.get(0));
+    rs = queryTable(driver, "select row__id.rowid, a, b from default.streamingnobuckets " +
+        "where a in ('a0', 'a1023', 'a1024', 'a2049', 'c0', 'c1') order by a");
+    Assert.assertEquals(Arrays.asList("0\ta0\tb0", "1023\ta1023\tb1023", "1024\ta1024\tb1024",
+        "2049\ta2049\tb2049", "0\tc0\td0", "1\tc1\td1"), rs);
+  }
+
+  /**
+   * Test that the records of a buffer are written one by one when they can not be parsed into
+   * column vectors.
+   */
+  @Test
+  public void testWriteByteBufferFallback() throws Exception {
+    // bucketed table
+    HiveEndPoint endPt = new HiveEndPoint(metaStoreURI, dbName, tblName, partitionVals);
+    StreamingConnection connection = endPt.newConnection(true, "UT_" + Thread.currentThread().getName());
+    DelimitedInputWriter writer = new DelimitedInputWriter(fieldNames, ",", endPt, connection);
+    TransactionBatch txnBatch =  connection.fetchTransactionBatch(10, writer);
+    txnBatch.beginNextTransaction();
+    txnBatch.write(ByteBuffer.wrap("1,Hello streaming\n2,Welcome to streaming\n".getBytes()));
+    txnBatch.commit();
+    checkDataWritten(partLoc, 15, 24, 1, 1, "{1, Hello streaming}", "{2, Welcome to streaming}");
+    txnBatch.close();
+    connection.close();
+
+    // json records
+    endPt = new HiveEndPoint(metaStoreURI, dbName2, tblName2, null);
+    connection = endPt.newConnection(true, "UT_" + Thread.currentThread().getName());
+    StrictJsonWriter jsonWriter = new StrictJsonWriter(endPt, connection);
+    txnBatch =  connection.fetchTransactionBatch(2, jsonWriter);
+    txnBatch.beginNextTransaction();
+    txnBatch.write(ByteBuffer.wrap(("{\"id\" : 3, \"msg\": \"json 3\"}\n" +
+        "{\"id\" : 4, \"msg\": \"json 4\"}").getBytes()));
+    txnBatch.commit();
+    txnBatch.close();
+    connection.close();
+    List<String> rs = queryTable(driver, "select id, msg from " + dbName2 + "." + tblName2 + " order by id");
+    Assert.assertEquals(Arrays.asList("3\tjson 3", "4\tjson 4"), rs);
+
+    // fields which are not in the order of the columns of an unbucketed table
+    queryTable(driver, "drop table if exists default.streamingnobuckets");
+    queryTable(driver, "create table default.streamingnobuckets (a string, b string) stored as orc TBLPROPERTIES('transactional'='true', 'transactional_properties'='default')");
+    endPt = new HiveEndPoint(metaStoreURI, "default", "streamingnobuckets", null);
+    connection = endPt.newConnection(false, "UT_" + Thread.currentThread().getName());
+    writer = new DelimitedInputWriter(new String[] {"b", "a"}, ",", endPt, connection);
+    txnBatch =  connection.fetchTransactionBatch(2, writer);
+    txnBatch.beginNextTransaction();
+    txnBatch.write(ByteBuffer.wrap("b1,a1\nb2,a2".getBytes()));
+    txnBatch.commit();
+    txnBatch.close();
+    connection.close();
+    rs = queryTable(driver, "select a, b from default.streamingnobuckets order by a");
+    Assert.assertEquals(Arrays.asList("a1\tb1", "a2\tb2"), rs);
+  }
+
   /**
    * this is a clone from TestTxnStatement2....
    */
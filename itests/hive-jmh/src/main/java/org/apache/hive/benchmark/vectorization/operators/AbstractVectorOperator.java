@@ -0,0 +1,227 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.hive.benchmark.vectorization.operators;
+
+import org.apache.hadoop.hive.conf.HiveConf;
+import org.apache.hadoop.hive.ql.exec.Operator;
+import org.apache.hadoop.hive.ql.exec.util.collectoroperator.CountVectorCollectorTestOperator;
+import org.apache.hadoop.hive.ql.exec.vector.ColumnVector;
+import org.apache.hadoop.hive.ql.exec.vector.DoubleColumnVector;
+import org.apache.hadoop.hive.ql.exec.vector.LongColumnVector;
+import org.apache.hadoop.hive.ql.exec.vector.VectorizationContext;
+import org.apache.hadoop.hive.ql.exec.vector.VectorizedBatchUtil;
+import org.apache.hadoop.hive.ql.exec.vector.VectorizedRowBatch;
+import org.apache.hadoop.hive.ql.plan.ExprNodeColumnDesc;
+import org.apache.hadoop.hive.ql.plan.OperatorDesc;
+import org.apache.hadoop.hive.serde2.typeinfo.TypeInfo;
+import org.apache.hadoop.hive.serde2.typeinfo.TypeInfoFactory;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Base class for the vectorized operator benchmarks.  A single operator is built from a
+ * VectorizationContext the same way the Vectorizer does, and its output goes to a row counting
+ * collector.  The input is generated into memory before the measurement and each invocation
+ * pushes all the batches through the operator, so the score is in rows per second.
+ * <p/>
+ * The input has three columns: "key" (bigint), "lvalue" (bigint) and "dvalue" (double).
+ * The dataPattern parameter controls the shape of the batches:
+ * - PLAIN: no nulls, no repeating columns.
+ * - NULLS: about 10% nulls in every column.
+ * - REPEATING: the value columns are repeating, the key column is not.
+ * - SELECTED: selectedInUse batches, half of the rows of a batch twice the default size.
+ */
+@BenchmarkMode(Mode.Throughput)
+@Fork(1)
+@State(Scope.Thread)
+@OutputTimeUnit(TimeUnit.SECONDS)
+public abstract class AbstractVectorOperator {
+  protected static final int BATCH_COUNT = 100;
+  protected static final int ROW_COUNT = BATCH_COUNT * VectorizedRowBatch.DEFAULT_SIZE;
+
+  protected static final String[] COLUMN_NAMES = { "key", "lvalue", "dvalue" };
+  protected static final TypeInfo[] COLUMN_TYPE_INFOS = {
+      TypeInfoFactory.longTypeInfo, TypeInfoFactory.longTypeInfo, TypeInfoFactory.doubleTypeInfo };
+
+  public enum DataPattern {
+    PLAIN,
+    NULLS,
+    REPEATING,
+    SELECTED
+  }
+
+  @Param({"PLAIN", "NULLS", "REPEATING", "SELECTED"})
+  public String dataPattern;
+
+  protected HiveConf hiveConf;
+  protected Operator<? extends OperatorDesc> operator;
+  protected CountVectorCollectorTestOperator collector;
+
+  private VectorizedRowBatch[] batches;
+
+  // The filter changes the batch size and selected rows; they are restored before each use.
+  private int[] batchSizes;
+  private boolean[] batchSelectedInUse;
+  private int[][] batchSelected;
+
+  /**
+   * Creates the operator under test.  The expressions are created in the given context, so any
+   * scratch columns they need are part of the generated batches.
+   */
+  protected abstract Operator<? extends OperatorDesc> createOperator(
+      VectorizationContext vContext) throws Exception;
+
+  /**
+   * The number of distinct keys generated in the "key" column.
+   */
+  protected int getKeyCount() {
+    return 1000;
+  }
+
+  protected void setupConf(HiveConf hiveConf) {
+  }
+
+  @Setup
+  public void setup() throws Exception {
+    hiveConf = new HiveConf();
+    setupConf(hiveConf);
+
+    VectorizationContext vContext =
+        new VectorizationContext("name", Arrays.asList(COLUMN_NAMES));
+    vContext.setInitialTypeInfos(Arrays.asList(COLUMN_TYPE_INFOS));
+    operator = createOperator(vContext);
+
+    // This collector is just a row counter.
+    collector = new CountVectorCollectorTestOperator();
+    List<Operator<? extends OperatorDesc>> parents =
+        new ArrayList<Operator<? extends OperatorDesc>>();
+    parents.add(operator);
+    collector.setParentOperators(parents);
+    List<Operator<? extends OperatorDesc>> children =
+        new ArrayList<Operator<? extends OperatorDesc>>();
+    children.add(collector);
+    operator.setChildOperators(children);
+    operator.initialize(hiveConf, null);
+
+    /*
+     * We don't measure data generation execution cost -- generate the batches into memory first.
+     */
+    generateBatches(DataPattern.valueOf(dataPattern), vContext.getScratchColumnTypeNames());
+  }
+
+  @Benchmark
+  @Warmup(iterations = 3, time = 1, timeUnit = TimeUnit.SECONDS)
+  @Measurement(iterations = 5, time = 1, timeUnit = TimeUnit.SECONDS)
+  @OperationsPerInvocation(ROW_COUNT)
+  public int bench() throws Exception {
+    for (int i = 0; i < BATCH_COUNT; i++) {
+      VectorizedRowBatch batch = batches[i];
+      batch.size = batchSizes[i];
+      batch.selectedInUse = batchSelectedInUse[i];
+      if (batchSelectedInUse[i]) {
+        System.arraycopy(batchSelected[i], 0, batch.selected, 0, batch.size);
+      }
+      operator.process(batch, 0);
+    }
+    return collector.getRowCount();
+  }
+
+  protected static ExprNodeColumnDesc getColumnDesc(int columnNum) {
+    return new ExprNodeColumnDesc(
+        COLUMN_TYPE_INFOS[columnNum], COLUMN_NAMES[columnNum], "table", false);
+  }
+
+  private void generateBatches(DataPattern pattern, String[] scratchColumnTypeNames) {
+    Random random = new Random(2345);
+    final int keyCount = getKeyCount();
+    final int capacity = (pattern == DataPattern.SELECTED ?
+        2 * VectorizedRowBatch.DEFAULT_SIZE : VectorizedRowBatch.DEFAULT_SIZE);
+
+    batches = new VectorizedRowBatch[BATCH_COUNT];
+    batchSizes = new int[BATCH_COUNT];
+    batchSelectedInUse = new boolean[BATCH_COUNT];
+    batchSelected = new int[BATCH_COUNT][];
+    for (int b = 0; b < BATCH_COUNT; b++) {
+      VectorizedRowBatch batch = new VectorizedRowBatch(
+          COLUMN_NAMES.length + scratchColumnTypeNames.length, capacity);
+      LongColumnVector keys = new LongColumnVector(capacity);
+      LongColumnVector longs = new LongColumnVector(capacity);
+      DoubleColumnVector doubles = new DoubleColumnVector(capacity);
+      for (int i = 0; i < capacity; i++) {
+        keys.vector[i] = random.nextInt(keyCount);
+        longs.vector[i] = random.nextInt(1000000);
+        doubles.vector[i] = random.nextDouble() * 1000.0;
+      }
+      batch.cols[0] = keys;
+      batch.cols[1] = longs;
+      batch.cols[2] = doubles;
+      for (int i = 0; i < scratchColumnTypeNames.length; i++) {
+        ColumnVector scratch = VectorizedBatchUtil.createColumnVector(scratchColumnTypeNames[i]);
+        scratch.ensureSize(capacity, false);
+        batch.cols[COLUMN_NAMES.length + i] = scratch;
+      }
+
+      switch (pattern) {
+      case PLAIN:
+        break;
+      case NULLS:
+        for (int c = 0; c < COLUMN_NAMES.length; c++) {
+          ColumnVector colVector = batch.cols[c];
+          for (int i = 0; i < capacity; i++) {
+            if (random.nextInt(10) == 0) {
+              colVector.isNull[i] = true;
+              colVector.noNulls = false;
+            }
+          }
+        }
+        break;
+      case REPEATING:
+        longs.isRepeating = true;
+        doubles.isRepeating = true;
+        break;
+      case SELECTED:
+        // One of each pair of rows.
+        batch.selectedInUse = true;
+        for (int i = 0; i < VectorizedRowBatch.DEFAULT_SIZE; i++) {
+          batch.selected[i] = 2 * i + random.nextInt(2);
+        }
+        break;
+      default:
+        throw new RuntimeException("Unexpected data pattern " + pattern);
+      }
+      batch.size = VectorizedRowBatch.DEFAULT_SIZE;
+
+      batches[b] = batch;
+      batchSizes[b] = batch.size;
+      batchSelectedInUse[b] = batch.selectedInUse;
+      batchSelected[b] = Arrays.copyOf(batch.selected, batch.size);
+    }
+  }
+}
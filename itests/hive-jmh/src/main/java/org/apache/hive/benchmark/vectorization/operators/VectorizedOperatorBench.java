@@ -0,0 +1,189 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.hive.benchmark.vectorization.operators;
+
+import org.apache.hadoop.hive.conf.HiveConf;
+import org.apache.hadoop.hive.ql.CompilationOpContext;
+import org.apache.hadoop.hive.ql.exec.Operator;
+import org.apache.hadoop.hive.ql.exec.OperatorFactory;
+import org.apache.hadoop.hive.ql.exec.vector.VectorizationContext;
+import org.apache.hadoop.hive.ql.optimizer.physical.Vectorizer;
+import org.apache.hadoop.hive.ql.plan.AggregationDesc;
+import org.apache.hadoop.hive.ql.plan.ExprNodeConstantDesc;
+import org.apache.hadoop.hive.ql.plan.ExprNodeDesc;
+import org.apache.hadoop.hive.ql.plan.ExprNodeGenericFuncDesc;
+import org.apache.hadoop.hive.ql.plan.FilterDesc;
+import org.apache.hadoop.hive.ql.plan.GroupByDesc;
+import org.apache.hadoop.hive.ql.plan.OperatorDesc;
+import org.apache.hadoop.hive.ql.plan.SelectDesc;
+import org.apache.hadoop.hive.ql.plan.VectorFilterDesc;
+import org.apache.hadoop.hive.ql.plan.VectorGroupByDesc;
+import org.apache.hadoop.hive.ql.plan.VectorSelectDesc;
+import org.apache.hadoop.hive.ql.udf.generic.GenericUDAFEvaluator;
+import org.apache.hadoop.hive.ql.udf.generic.GenericUDAFMax;
+import org.apache.hadoop.hive.ql.udf.generic.GenericUDAFSum;
+import org.apache.hadoop.hive.ql.udf.generic.GenericUDFOPAnd;
+import org.apache.hadoop.hive.ql.udf.generic.GenericUDFOPGreaterThan;
+import org.apache.hadoop.hive.ql.udf.generic.GenericUDFOPLessThan;
+import org.apache.hadoop.hive.ql.udf.generic.GenericUDFOPMultiply;
+import org.apache.hadoop.hive.ql.udf.generic.GenericUDFOPPlus;
+import org.apache.hadoop.hive.serde2.typeinfo.TypeInfo;
+import org.apache.hadoop.hive.serde2.typeinfo.TypeInfoFactory;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * This test measures the throughput of the vectorized operators, in rows per second, for each
+ * of the data patterns of {@link AbstractVectorOperator}.  The map join operators are covered
+ * by the benchmarks in the mapjoin package.
+ * <p/>
+ * This test uses JMH framework for benchmarking.
+ * You may execute this benchmark tool using JMH command line in different ways:
+ * <p/>
+ * To use the settings shown in the main() function, use:
+ * $ java -cp target/benchmarks.jar org.apache.hive.benchmark.vectorization.operators.VectorizedOperatorBench
+ * <p/>
+ * To use the default settings used by JMH, use:
+ * $ java -jar target/benchmarks.jar org.apache.hive.benchmark.vectorization.operators.VectorizedOperatorBench
+ * <p/>
+ * To report the allocation rate along with the throughput, add the GC profiler:
+ * $ java -jar target/benchmarks.jar org.apache.hive.benchmark.vectorization.operators.VectorizedOperatorBench
+ * -prof gc
+ * <p/>
+ * To compare the fast GROUP BY hash tables with the standard hash aggregation on one data
+ * pattern, use:
+ * $ java -jar target/benchmarks.jar org.apache.hive.benchmark.vectorization.operators.VectorizedOperatorBench.GroupByBench
+ * -p dataPattern=PLAIN -p fastHashTable=false,true
+ */
+@State(Scope.Benchmark)
+public class VectorizedOperatorBench {
+
+  /**
+   * WHERE lvalue > 500000 AND dvalue < 900.0
+   */
+  public static class FilterBench extends AbstractVectorOperator {
+    @Override
+    protected Operator<? extends OperatorDesc> createOperator(VectorizationContext vContext)
+        throws Exception {
+      List<ExprNodeDesc> children = new ArrayList<ExprNodeDesc>();
+      children.add(new ExprNodeGenericFuncDesc(TypeInfoFactory.booleanTypeInfo,
+          new GenericUDFOPGreaterThan(), Arrays.<ExprNodeDesc>asList(getColumnDesc(1),
+              new ExprNodeConstantDesc(TypeInfoFactory.longTypeInfo, 500000L))));
+      children.add(new ExprNodeGenericFuncDesc(TypeInfoFactory.booleanTypeInfo,
+          new GenericUDFOPLessThan(), Arrays.<ExprNodeDesc>asList(getColumnDesc(2),
+              new ExprNodeConstantDesc(TypeInfoFactory.doubleTypeInfo, 900.0))));
+      FilterDesc filterDesc = new FilterDesc();
+      filterDesc.setPredicate(new ExprNodeGenericFuncDesc(TypeInfoFactory.booleanTypeInfo,
+          new GenericUDFOPAnd(), children));
+
+      Operator<? extends OperatorDesc> filterOp =
+          OperatorFactory.get(new CompilationOpContext(), filterDesc);
+      return Vectorizer.vectorizeFilterOperator(filterOp, vContext, new VectorFilterDesc());
+    }
+  }
+
+  /**
+   * SELECT key + lvalue, dvalue * 2.0, key
+   */
+  public static class SelectBench extends AbstractVectorOperator {
+    @Override
+    protected Operator<? extends OperatorDesc> createOperator(VectorizationContext vContext)
+        throws Exception {
+      List<ExprNodeDesc> colList = new ArrayList<ExprNodeDesc>();
+      colList.add(new ExprNodeGenericFuncDesc(TypeInfoFactory.longTypeInfo,
+          new GenericUDFOPPlus(), Arrays.<ExprNodeDesc>asList(getColumnDesc(0), getColumnDesc(1))));
+      colList.add(new ExprNodeGenericFuncDesc(TypeInfoFactory.doubleTypeInfo,
+          new GenericUDFOPMultiply(), Arrays.<ExprNodeDesc>asList(getColumnDesc(2),
+              new ExprNodeConstantDesc(TypeInfoFactory.doubleTypeInfo, 2.0))));
+      colList.add(getColumnDesc(0));
+      SelectDesc selectDesc = new SelectDesc(false);
+      selectDesc.setColList(colList);
+      selectDesc.setOutputColumnNames(Arrays.asList("_col0", "_col1", "_col2"));
+
+      Operator<? extends OperatorDesc> selectOp =
+          OperatorFactory.get(new CompilationOpContext(), selectDesc);
+      return Vectorizer.vectorizeSelectOperator(selectOp, vContext, new VectorSelectDesc());
+    }
+  }
+
+  /**
+   * SELECT key, sum(lvalue), max(dvalue) ... GROUP BY key, in HASH mode.
+   */
+  public static class GroupByBench extends AbstractVectorOperator {
+    @Param({"100", "10000"})
+    public String keyCount;
+
+    @Param({"false", "true"})
+    public String fastHashTable;
+
+    @Override
+    protected int getKeyCount() {
+      return Integer.parseInt(keyCount);
+    }
+
+    @Override
+    protected void setupConf(HiveConf hiveConf) {
+      HiveConf.setBoolVar(hiveConf, HiveConf.ConfVars.HIVE_VECTORIZATION_GROUPBY_FAST_HASHTABLE_ENABLED,
+          Boolean.parseBoolean(fastHashTable));
+    }
+
+    @Override
+    protected Operator<? extends OperatorDesc> createOperator(VectorizationContext vContext)
+        throws Exception {
+      ArrayList<ExprNodeDesc> keys = new ArrayList<ExprNodeDesc>();
+      keys.add(getColumnDesc(0));
+      ArrayList<AggregationDesc> aggregators = new ArrayList<AggregationDesc>();
+      aggregators.add(getAggregationDesc("sum",
+          new GenericUDAFSum().getEvaluator(new TypeInfo[] { TypeInfoFactory.longTypeInfo }), 1));
+      aggregators.add(getAggregationDesc("max",
+          new GenericUDAFMax.GenericUDAFMaxEvaluator(), 2));
+
+      GroupByDesc groupByDesc = new GroupByDesc();
+      groupByDesc.setMode(GroupByDesc.Mode.HASH);
+      groupByDesc.setKeys(keys);
+      groupByDesc.setAggregators(aggregators);
+      groupByDesc.setOutputColumnNames(
+          new ArrayList<String>(Arrays.asList("_col0", "_col1", "_col2")));
+      VectorGroupByDesc vectorGroupByDesc = new VectorGroupByDesc();
+      vectorGroupByDesc.setProcessingMode(VectorGroupByDesc.ProcessingMode.HASH);
+
+      Operator<? extends OperatorDesc> groupByOp =
+          OperatorFactory.get(new CompilationOpContext(), groupByDesc);
+      return Vectorizer.vectorizeGroupByOperator(groupByOp, vContext, vectorGroupByDesc);
+    }
+
+    private static AggregationDesc getAggregationDesc(String name,
+        GenericUDAFEvaluator evaluator, int columnNum) {
+      ArrayList<ExprNodeDesc> parameters = new ArrayList<ExprNodeDesc>();
+      parameters.add(getColumnDesc(columnNum));
+      return new AggregationDesc(name, evaluator, parameters, false,
+          GenericUDAFEvaluator.Mode.PARTIAL1);
+    }
+  }
+
+  public static void main(String[] args) throws RunnerException {
+    Options opt = new OptionsBuilder().include(".*" + VectorizedOperatorBench.class.getSimpleName() +
+        ".*").build();
+    new Runner(opt).run();
+  }
+}
@@ -137,6 +137,8 @@ public class HiveConnection implements java.sql.Connection {
   private int loginTimeout = 0;
   private TProtocolVersion protocol;
   private int fetchSize = HiveStatement.DEFAULT_FETCH_SIZE;
+  private int prefetchDepth = 0;
+  private long prefetchMaxBytes = HiveStatement.DEFAULT_PREFETCH_MAX_BYTES;
   private String initFile = null;
   private String wmPool = null, wmApp = null;
   private Properties clientInfo;
@@ -176,6 +178,12 @@ public HiveConnection(String uri, Properties info) throws SQLException {
     if (sessConfMap.containsKey(JdbcConnectionParams.FETCH_SIZE)) {
       fetchSize = Integer.parseInt(sessConfMap.get(JdbcConnectionParams.FETCH_SIZE));
     }
+    if (sessConfMap.containsKey(JdbcConnectionParams.PREFETCH_DEPTH)) {
+      prefetchDepth = Integer.parseInt(sessConfMap.get(JdbcConnectionParams.PREFETCH_DEPTH));
+    }
+    if (sessConfMap.containsKey(JdbcConnectionParams.PREFETCH_MAX_BYTES)) {
+      prefetchMaxBytes = Long.parseLong(sessConfMap.get(JdbcConnectionParams.PREFETCH_MAX_BYTES));
+    }
     if (sessConfMap.containsKey(JdbcConnectionParams.INIT_FILE)) {
       initFile = sessConfMap.get(JdbcConnectionParams.INIT_FILE);
     }
@@ -1550,6 +1558,18 @@ public TProtocolVersion getProtocol() {
     return protocol;
   }
 
+  /**
+   * @return The number of pages of results that the result sets of the statements fetch ahead.
+   */
+  int getPrefetchDepth() {
+    // The embedded client is not synchronized, see newSynchronizedClient
+    return isEmbeddedMode ? 0 : prefetchDepth;
+  }
+
+  long getPrefetchMaxBytes() {
+    return prefetchMaxBytes;
+  }
+
   public static TCLIService.Iface newSynchronizedClient(
       TCLIService.Iface client) {
     return (TCLIService.Iface) Proxy.newProxyInstance(
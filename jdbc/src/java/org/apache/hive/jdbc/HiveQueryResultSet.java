@@ -77,6 +77,9 @@ public class HiveQueryResultSet extends HiveBaseResultSet {
   private boolean emptyResultSet = false;
   private boolean isScrollable = false;
   private boolean fetchFirst = false;
+  private int prefetchDepth;
+  private long prefetchMaxBytes;
+  private volatile RowSetPrefetcher prefetcher;
 
   private final TProtocolVersion protocol;
 
@@ -102,6 +105,8 @@ public static class Builder {
     private boolean emptyResultSet = false;
     private boolean isScrollable = false;
     private ReentrantLock transportLock = null;
+    private int prefetchDepth = 0;
+    private long prefetchMaxBytes = HiveStatement.DEFAULT_PREFETCH_MAX_BYTES;
 
     public Builder(Statement statement) throws SQLException {
       this.statement = statement;
@@ -175,6 +180,17 @@ public Builder setTransportLock(ReentrantLock transportLock) {
       return this;
     }
 
+    /**
+     * Sets the number of pages of results that are fetched ahead in the background, up to
+     * prefetchMaxBytes. 0 fetches the pages when they are needed. Scrollable result sets are never
+     * fetched ahead.
+     */
+    public Builder setPrefetch(int prefetchDepth, long prefetchMaxBytes) {
+      this.prefetchDepth = prefetchDepth;
+      this.prefetchMaxBytes = prefetchMaxBytes;
+      return this;
+    }
+
     public HiveQueryResultSet build() throws SQLException {
       return new HiveQueryResultSet(this);
     }
@@ -207,6 +223,8 @@ protected HiveQueryResultSet(Builder builder) throws SQLException {
     }
     this.isScrollable = builder.isScrollable;
     this.protocol = builder.getProtocolVersion();
+    this.prefetchDepth = isScrollable ? 0 : builder.prefetchDepth;
+    this.prefetchMaxBytes = builder.prefetchMaxBytes;
   }
 
   /**
@@ -304,6 +322,7 @@ private void setSchema(List<String> colNames, List<String> colTypes,
 
   @Override
   public void close() throws SQLException {
+    stopPrefetch();
     if (this.statement != null && (this.statement instanceof HiveStatement)) {
       HiveStatement s = (HiveStatement) this.statement;
       s.closeClientOperation();
@@ -367,14 +386,23 @@ public boolean next() throws SQLException {
         fetchFirst = false;
       }
       if (fetchedRows == null || !fetchedRowsItr.hasNext()) {
-        TFetchResultsReq fetchReq = new TFetchResultsReq(stmtHandle,
-            orientation, fetchSize);
-        TFetchResultsResp fetchResp;
-        fetchResp = client.FetchResults(fetchReq);
-        Utils.verifySuccessWithInfo(fetchResp.getStatus());
-
-        TRowSet results = fetchResp.getResults();
-        fetchedRows = RowSetFactory.create(results, protocol);
+        if (prefetchDepth > 0) {
+          if (prefetcher == null) {
+            prefetcher = new RowSetPrefetcher(client, stmtHandle, protocol, fetchSize, maxRows,
+                prefetchDepth, prefetchMaxBytes, this);
+            prefetcher.start();
+          }
+          fetchedRows = prefetcher.take();
+        } else {
+          TFetchResultsReq fetchReq = new TFetchResultsReq(stmtHandle,
+              orientation, fetchSize);
+          TFetchResultsResp fetchResp;
+          fetchResp = client.FetchResults(fetchReq);
+          Utils.verifySuccessWithInfo(fetchResp.getStatus());
+
+          TRowSet results = fetchResp.getResults();
+          fetchedRows = RowSetFactory.create(results, protocol);
+        }
         fetchedRowsItr = fetchedRows.iterator();
       }
 
@@ -477,4 +505,13 @@ public int getRow() throws SQLException {
   public boolean isClosed() {
     return isClosed;
   }
+
+  /**
+   * Stops fetching the results ahead, when the statement is closed or cancelled.
+   */
+  void stopPrefetch() {
+    if (prefetcher != null) {
+      prefetcher.stop();
+    }
+  }
 }
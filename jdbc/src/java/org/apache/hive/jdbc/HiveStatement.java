@@ -61,6 +61,7 @@
 public class HiveStatement implements java.sql.Statement {
   public static final Logger LOG = LoggerFactory.getLogger(HiveStatement.class.getName());
   public static final int DEFAULT_FETCH_SIZE = 1000;
+  public static final long DEFAULT_PREFETCH_MAX_BYTES = 64L * 1024 * 1024;
   private final HiveConnection connection;
   private TCLIService.Iface client;
   private TOperationHandle stmtHandle = null;
@@ -167,6 +168,7 @@ public void cancel() throws SQLException {
     if (isCancelled) {
       return;
     }
+    stopResultSetPrefetch();
 
     try {
       if (stmtHandle != null) {
@@ -209,6 +211,7 @@ public void clearWarnings() throws SQLException {
    * @throws SQLException If there is an error closing the statement
    */
   private void closeStatementIfNeeded() throws SQLException {
+    stopResultSetPrefetch();
     try {
       if (stmtHandle != null) {
         TCloseOperationReq closeReq = new TCloseOperationReq(stmtHandle);
@@ -223,6 +226,15 @@ private void closeStatementIfNeeded() throws SQLException {
     }
   }
 
+  /**
+   * Stops fetching the results of the result set ahead, if it does.
+   */
+  private void stopResultSetPrefetch() {
+    if (resultSet instanceof HiveQueryResultSet) {
+      ((HiveQueryResultSet) resultSet).stopPrefetch();
+    }
+  }
+
   void closeClientOperation() throws SQLException {
     closeStatementIfNeeded();
     isQueryClosed = true;
@@ -272,6 +284,7 @@ public boolean execute(String sql) throws SQLException {
     resultSet =  new HiveQueryResultSet.Builder(this).setClient(client).setSessionHandle(sessHandle)
         .setStmtHandle(stmtHandle).setMaxRows(maxRows).setFetchSize(fetchSize)
         .setScrollable(isScrollableResultset)
+        .setPrefetch(connection.getPrefetchDepth(), connection.getPrefetchMaxBytes())
         .build();
     return true;
   }
@@ -300,7 +313,9 @@ public boolean executeAsync(String sql) throws SQLException {
     resultSet =
         new HiveQueryResultSet.Builder(this).setClient(client).setSessionHandle(sessHandle)
             .setStmtHandle(stmtHandle).setMaxRows(maxRows).setFetchSize(fetchSize)
-            .setScrollable(isScrollableResultset).build();
+            .setScrollable(isScrollableResultset)
+            .setPrefetch(connection.getPrefetchDepth(), connection.getPrefetchMaxBytes())
+            .build();
     return true;
   }
 
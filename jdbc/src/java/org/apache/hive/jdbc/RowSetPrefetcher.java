@@ -0,0 +1,259 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.hive.jdbc;
+
+import java.lang.ref.WeakReference;
+import java.nio.ByteBuffer;
+import java.sql.SQLException;
+import java.util.ArrayDeque;
+import java.util.List;
+import java.util.Queue;
+
+import org.apache.hive.service.cli.RowSet;
+import org.apache.hive.service.cli.RowSetFactory;
+import org.apache.hive.service.rpc.thrift.TCLIService;
+import org.apache.hive.service.rpc.thrift.TColumn;
+import org.apache.hive.service.rpc.thrift.TFetchOrientation;
+import org.apache.hive.service.rpc.thrift.TFetchResultsReq;
+import org.apache.hive.service.rpc.thrift.TFetchResultsResp;
+import org.apache.hive.service.rpc.thrift.TOperationHandle;
+import org.apache.hive.service.rpc.thrift.TProtocolVersion;
+import org.apache.hive.service.rpc.thrift.TRowSet;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * RowSetPrefetcher. Fetches the next pages of the results of an operation on a background thread,
+ * while HiveQueryResultSet returns the rows of the current page, so that the client does not wait
+ * for a Fetch RPC call after each page.
+ *
+ * Up to prefetchDepth pages are kept ahead, and no more page is fetched while the pages kept are
+ * over prefetchMaxBytes (approximately), nor after maxRows rows. The thread stops when the result
+ * set it fetches for is garbage collected without being closed. The RPC calls of the background thread are serialized
+ * with the other calls of the connection by its synchronized client, so closing or cancelling the
+ * statement waits for the Fetch call in progress; the pages fetched ahead are dropped then.
+ */
+class RowSetPrefetcher implements Runnable {
+
+  static final Logger LOG = LoggerFactory.getLogger(RowSetPrefetcher.class);
+
+  // How often a prefetcher waiting for space checks if its result set was garbage collected
+  private static final long ABANDONED_CHECK_INTERVAL_MS = 1000;
+
+  private static class Page {
+    final RowSet rowSet;
+    final long size;
+
+    Page(RowSet rowSet, long size) {
+      this.rowSet = rowSet;
+      this.size = size;
+    }
+  }
+
+  private final TCLIService.Iface client;
+  private final TOperationHandle stmtHandle;
+  private final TProtocolVersion protocol;
+  private final int fetchSize;
+  private final int maxRows;
+  private final int prefetchDepth;
+  private final long prefetchMaxBytes;
+  private final WeakReference<Object> owner;
+  private int rowsFetched = 0;
+
+  // All guarded by this
+  private final Queue<Page> pages = new ArrayDeque<Page>();
+  private long pagesSize = 0;
+  private RowSet lastPage = null;
+  private SQLException error = null;
+  private boolean isStopped = false;
+
+  /**
+   * @param maxRows The maximum number of rows fetched, 0 for all the rows
+   * @param owner The result set the rows are fetched for, which is only weakly referenced
+   */
+  RowSetPrefetcher(TCLIService.Iface client, TOperationHandle stmtHandle,
+      TProtocolVersion protocol, int fetchSize, int maxRows, int prefetchDepth,
+      long prefetchMaxBytes, Object owner) {
+    this.client = client;
+    this.stmtHandle = stmtHandle;
+    this.protocol = protocol;
+    this.fetchSize = fetchSize;
+    this.maxRows = maxRows;
+    this.prefetchDepth = prefetchDepth;
+    this.prefetchMaxBytes = prefetchMaxBytes;
+    this.owner = new WeakReference<Object>(owner);
+  }
+
+  Thread start() {
+    Thread thread = new Thread(this, "HiveQueryResultSet prefetch " + stmtHandle.getOperationId());
+    thread.setDaemon(true);
+    thread.start();
+    return thread;
+  }
+
+  @Override
+  public void run() {
+    try {
+      while (waitForSpace()) {
+        int rows = maxRows > 0 ? Math.min(fetchSize, maxRows - rowsFetched) : fetchSize;
+        TFetchResultsReq fetchReq =
+            new TFetchResultsReq(stmtHandle, TFetchOrientation.FETCH_NEXT, rows);
+        TFetchResultsResp fetchResp = client.FetchResults(fetchReq);
+        Utils.verifySuccessWithInfo(fetchResp.getStatus());
+        TRowSet results = fetchResp.getResults();
+        RowSet rowSet = RowSetFactory.create(results, protocol);
+        synchronized (this) {
+          if (rowSet.numRows() == 0) {
+            // The results are all fetched
+            lastPage = rowSet;
+          } else {
+            Page page = new Page(rowSet, estimateSize(results));
+            pages.add(page);
+            pagesSize += page.size;
+            rowsFetched += rowSet.numRows();
+            if (maxRows > 0 && rowsFetched >= maxRows) {
+              // No more rows are read, end the results with an empty page
+              lastPage = rowSet.extractSubset(0);
+            }
+          }
+          notifyAll();
+          if (lastPage != null) {
+            return;
+          }
+        }
+      }
+    } catch (SQLException e) {
+      setError(e);
+    } catch (Throwable e) {
+      // Any error, so that take() does not wait for the pages forever
+      setError(new SQLException("Error retrieving next row", e));
+    }
+  }
+
+  private synchronized boolean waitForSpace() throws InterruptedException {
+    while (!isStopped && (pages.size() >= prefetchDepth || pagesSize >= prefetchMaxBytes)) {
+      wait(ABANDONED_CHECK_INTERVAL_MS);
+      if (owner.get() == null) {
+        LOG.debug("The result set was not closed, stopping to prefetch its results");
+        stop();
+      }
+    }
+    return !isStopped;
+  }
+
+  private synchronized void setError(SQLException e) {
+    if (!isStopped) {
+      LOG.debug("Error prefetching the results", e);
+    }
+    error = e;
+    notifyAll();
+  }
+
+  /**
+   * @return The next page of results, which is empty after the last page.
+   */
+  synchronized RowSet take() throws SQLException {
+    while (pages.isEmpty() && lastPage == null && error == null && !isStopped) {
+      try {
+        wait();
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+        throw new SQLException("Interrupted while waiting for the next rows", e);
+      }
+    }
+    if (isStopped) {
+      throw new SQLException("The results are not fetched anymore, the statement was closed"
+          + " or cancelled");
+    }
+    Page page = pages.poll();
+    if (page != null) {
+      pagesSize -= page.size;
+      notifyAll();
+      return page.rowSet;
+    }
+    if (error != null) {
+      throw error;
+    }
+    return lastPage;
+  }
+
+  /**
+   * Stops fetching the results, after the Fetch call in progress.
+   */
+  synchronized void stop() {
+    isStopped = true;
+    pages.clear();
+    pagesSize = 0;
+    notifyAll();
+  }
+
+  /**
+   * @return The number of pages fetched ahead, which are not taken yet.
+   */
+  synchronized int getPagesHeld() {
+    return pages.size();
+  }
+
+  /**
+   * @return The approximate size in memory of the values of a page.
+   */
+  private static long estimateSize(TRowSet results) {
+    if (results.isSetBinaryColumns()) {
+      return results.getBinaryColumns().length;
+    }
+    long size = 0;
+    if (results.getColumns() != null) {
+      for (TColumn column : results.getColumns()) {
+        if (column.isSetStringVal()) {
+          for (String value : column.getStringVal().getValues()) {
+            size += 40 + 2 * value.length();
+          }
+        } else if (column.isSetBinaryVal()) {
+          for (ByteBuffer value : column.getBinaryVal().getValues()) {
+            size += 40 + value.remaining();
+          }
+        } else {
+          // The boxed values
+          size += 16 * getSize(column);
+        }
+      }
+    }
+    return size;
+  }
+
+  private static int getSize(TColumn column) {
+    List<?> values;
+    if (column.isSetBoolVal()) {
+      values = column.getBoolVal().getValues();
+    } else if (column.isSetByteVal()) {
+      values = column.getByteVal().getValues();
+    } else if (column.isSetI16Val()) {
+      values = column.getI16Val().getValues();
+    } else if (column.isSetI32Val()) {
+      values = column.getI32Val().getValues();
+    } else if (column.isSetI64Val()) {
+      values = column.getI64Val().getValues();
+    } else if (column.isSetDoubleVal()) {
+      values = column.getDoubleVal().getValues();
+    } else {
+      return 0;
+    }
+    return values.size();
+  }
+}
@@ -122,6 +122,10 @@ public static class JdbcConnectionParams {
     static final String HTTP_HEADER_PREFIX = "http.header.";
     // Set the fetchSize
     static final String FETCH_SIZE = "fetchSize";
+    // The number of pages of results fetched ahead in the background, 0 to fetch them on demand
+    static final String PREFETCH_DEPTH = "prefetchDepth";
+    // The approximate maximum size of the pages of results fetched ahead
+    static final String PREFETCH_MAX_BYTES = "prefetchMaxBytes";
     static final String INIT_FILE = "initFile";
     static final String WM_POOL = "wmPool";
 
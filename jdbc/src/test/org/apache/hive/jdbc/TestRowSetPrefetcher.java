@@ -0,0 +1,218 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.hive.jdbc;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+import static org.mockito.Matchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.apache.hadoop.hive.serde2.thrift.ColumnBuffer;
+import org.apache.hadoop.hive.serde2.thrift.Type;
+import org.apache.hive.service.cli.RowSet;
+import org.apache.hive.service.rpc.thrift.TCLIService;
+import org.apache.hive.service.rpc.thrift.TFetchResultsReq;
+import org.apache.hive.service.rpc.thrift.TFetchResultsResp;
+import org.apache.hive.service.rpc.thrift.THandleIdentifier;
+import org.apache.hive.service.rpc.thrift.TOperationHandle;
+import org.apache.hive.service.rpc.thrift.TOperationType;
+import org.apache.hive.service.rpc.thrift.TProtocolVersion;
+import org.apache.hive.service.rpc.thrift.TRow;
+import org.apache.hive.service.rpc.thrift.TRowSet;
+import org.apache.hive.service.rpc.thrift.TStatus;
+import org.apache.hive.service.rpc.thrift.TStatusCode;
+import org.junit.Test;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
+
+public class TestRowSetPrefetcher {
+
+  private final AtomicInteger fetches = new AtomicInteger();
+  // A permit for each fetch answered
+  private final Semaphore answered = new Semaphore(0);
+  private final List<Integer> fetchSizes = new CopyOnWriteArrayList<Integer>();
+  private final AtomicReference<RowSetPrefetcher> prefetcher =
+      new AtomicReference<RowSetPrefetcher>();
+  private final AtomicReference<String> error = new AtomicReference<String>();
+  // The maximum number of pages the prefetcher may hold when it fetches the next one
+  private volatile int maxPagesHeld = Integer.MAX_VALUE;
+  private volatile boolean isStopped = false;
+
+  /**
+   * @return A client that returns pages of one int column with the values [0, rows), after
+   *         which it returns an error when failAtEnd, or empty pages.  It records the errors of
+   *         the prefetcher seen by the fetches.
+   */
+  private TCLIService.Iface createClient(final int rows, final boolean failAtEnd)
+      throws Exception {
+    TCLIService.Iface client = mock(TCLIService.Iface.class);
+    when(client.FetchResults(any(TFetchResultsReq.class))).thenAnswer(
+        new Answer<TFetchResultsResp>() {
+          private int fetched = 0;
+
+          @Override
+          public TFetchResultsResp answer(InvocationOnMock invocation) {
+            fetches.incrementAndGet();
+            if (isStopped) {
+              error.compareAndSet(null, "Fetched after the prefetcher was stopped");
+            }
+            int pagesHeld = prefetcher.get().getPagesHeld();
+            if (pagesHeld > maxPagesHeld) {
+              error.compareAndSet(null, "Fetched while holding " + pagesHeld + " pages");
+            }
+            int fetchSize = (int) ((TFetchResultsReq) invocation.getArguments()[0]).getMaxRows();
+            fetchSizes.add(fetchSize);
+            if (fetched == rows && failAtEnd) {
+              TStatus status = new TStatus(TStatusCode.ERROR_STATUS);
+              status.setErrorMessage("Operation cancelled");
+              return new TFetchResultsResp(status);
+            }
+            int numRows = Math.min(fetchSize, rows - fetched);
+            int[] values = new int[numRows];
+            for (int i = 0; i < numRows; i++) {
+              values[i] = fetched++;
+            }
+            TRowSet rowSet = new TRowSet(0, new ArrayList<TRow>());
+            rowSet.addToColumns(new ColumnBuffer(Type.INT_TYPE, new BitSet(), values).toTColumn());
+            TFetchResultsResp resp =
+                new TFetchResultsResp(new TStatus(TStatusCode.SUCCESS_STATUS));
+            resp.setResults(rowSet);
+            answered.release();
+            return resp;
+          }
+        });
+    return client;
+  }
+
+  private Thread start(TCLIService.Iface client, int maxRows, int prefetchDepth,
+      long prefetchMaxBytes, Object owner) {
+    prefetcher.set(new RowSetPrefetcher(client, createHandle(),
+        TProtocolVersion.HIVE_CLI_SERVICE_PROTOCOL_V10, 10, maxRows, prefetchDepth,
+        prefetchMaxBytes, owner));
+    return prefetcher.get().start();
+  }
+
+  private void join(Thread thread) throws Exception {
+    thread.join(60000);
+    assertFalse("The prefetcher did not stop", thread.isAlive());
+    assertNull(error.get());
+  }
+
+  private static TOperationHandle createHandle() {
+    return new TOperationHandle(new THandleIdentifier(), TOperationType.EXECUTE_STATEMENT, true);
+  }
+
+  @Test
+  public void testPrefetch() throws Exception {
+    // With 2 pages ahead, the next page is only fetched while 1 page at most is held
+    maxPagesHeld = 1;
+    Thread thread = start(createClient(25, false), 0, 2, Long.MAX_VALUE, this);
+
+    RowSet rowSet = prefetcher.get().take();
+    assertEquals(10, rowSet.numRows());
+    assertEquals(0, rowSet.iterator().next()[0]);
+    assertEquals(Arrays.asList((Object) 10),
+        Arrays.asList(prefetcher.get().take().iterator().next()));
+    rowSet = prefetcher.get().take();
+    assertEquals(5, rowSet.numRows());
+    assertEquals(20, rowSet.iterator().next()[0]);
+    assertEquals(0, prefetcher.get().take().numRows());
+    assertEquals(0, prefetcher.get().take().numRows());
+    join(thread);
+    assertEquals(4, fetches.get());
+  }
+
+  @Test
+  public void testMaxRows() throws Exception {
+    Thread thread = start(createClient(25, false), 15, 5, Long.MAX_VALUE, this);
+
+    assertEquals(10, prefetcher.get().take().numRows());
+    RowSet rowSet = prefetcher.get().take();
+    assertEquals(5, rowSet.numRows());
+    assertEquals(10, rowSet.iterator().next()[0]);
+    assertEquals(0, prefetcher.get().take().numRows());
+    join(thread);
+    // The last fetch only asks for the rows up to maxRows
+    assertEquals(Arrays.asList(10, 5), fetchSizes);
+  }
+
+  @Test
+  public void testErrorAfterPages() throws Exception {
+    Thread thread = start(createClient(20, true), 0, 5, Long.MAX_VALUE, this);
+
+    assertEquals(10, prefetcher.get().take().numRows());
+    assertEquals(10, prefetcher.get().take().numRows());
+    try {
+      prefetcher.get().take();
+      fail("Expected the error of the last fetch");
+    } catch (SQLException e) {
+      assertTrue(e.getMessage(), e.getMessage().contains("Operation cancelled"));
+    }
+    join(thread);
+  }
+
+  @Test
+  public void testStop() throws Exception {
+    // Only one page is fetched ahead when the pages are over the maximum size
+    maxPagesHeld = 0;
+    Thread thread = start(createClient(1000, false), 0, 5, 1, this);
+    assertEquals(10, prefetcher.get().take().numRows());
+    // The next page is fetched, after which the prefetcher waits for space
+    answered.acquire(2);
+
+    isStopped = true;
+    prefetcher.get().stop();
+    try {
+      prefetcher.get().take();
+      fail("Expected the prefetcher to be stopped");
+    } catch (SQLException e) {
+      assertTrue(e.getMessage(), e.getMessage().contains("closed or cancelled"));
+    }
+    join(thread);
+  }
+
+  @Test
+  public void testAbandoned() throws Exception {
+    Object owner = new Object();
+    Thread thread = start(createClient(1000, false), 0, 1, Long.MAX_VALUE, owner);
+    assertEquals(10, prefetcher.get().take().numRows());
+
+    // The prefetcher waits for space until its result set is garbage collected
+    owner = null;
+    for (int i = 0; i < 600 && thread.isAlive(); i++) {
+      System.gc();
+      thread.join(100);
+    }
+    join(thread);
+    assertEquals(0, prefetcher.get().getPagesHeld());
+  }
+}
@@ -28,4 +28,16 @@ InputFormat<NullWritable, T> getInputFormat(
   void close();
   String getMemoryInfo();
   void initCacheOnlyInputFormat(InputFormat<?, ?> inputFormat);
+
+  /**
+   * Reserves memory in the LLAP memory manager for the data that the tasks keep on the heap of
+   * the daemon across queries, evicting cached data to make room if needed.
+   * @return false if the memory cannot be reserved, in which case the data should not be kept.
+   */
+  boolean reserveMemory(long memoryToReserve);
+
+  /**
+   * Releases the memory reserved with {@link #reserveMemory(long)}.
+   */
+  void releaseMemory(long memoryToRelease);
 }
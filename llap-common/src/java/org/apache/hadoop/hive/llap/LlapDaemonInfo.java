@@ -25,13 +25,14 @@ public enum LlapDaemonInfo {
 
   private static final class LlapDaemonInfoHolder {
     public LlapDaemonInfoHolder(int numExecutors, long executorMemory, long cacheSize,
-      boolean isDirectCache, boolean isLlapIo, final String pid) {
+      boolean isDirectCache, boolean isLlapIo, final String pid, long deleteEventsCacheSize) {
       this.numExecutors = numExecutors;
       this.executorMemory = executorMemory;
       this.cacheSize = cacheSize;
       this.isDirectCache = isDirectCache;
       this.isLlapIo = isLlapIo;
       this.PID = pid;
+      this.deleteEventsCacheSize = deleteEventsCacheSize;
     }
 
     final int numExecutors;
@@ -40,6 +41,7 @@ public LlapDaemonInfoHolder(int numExecutors, long executorMemory, long cacheSiz
     final boolean isDirectCache;
     final boolean isLlapIo;
     final String PID;
+    final long deleteEventsCacheSize;
   }
 
   // add more variables as required
@@ -54,13 +56,22 @@ public static void initialize(String appName, Configuration daemonConf) {
     boolean isDirectCache = HiveConf.getBoolVar(daemonConf, ConfVars.LLAP_ALLOCATOR_DIRECT);
     boolean isLlapIo = HiveConf.getBoolVar(daemonConf, HiveConf.ConfVars.LLAP_IO_ENABLED, true);
     String pid = System.getenv("JVM_PID");
-    initialize(appName, numExecutors, executorMemoryBytes, ioMemoryBytes, isDirectCache, isLlapIo, pid);
+    long deleteEventsCacheSize = HiveConf.getSizeVar(daemonConf,
+        ConfVars.HIVE_TRANSACTIONAL_DELETE_EVENTS_CACHE_SIZE);
+    initialize(appName, numExecutors, executorMemoryBytes, ioMemoryBytes, isDirectCache, isLlapIo, pid,
+        deleteEventsCacheSize);
   }
 
   public static void initialize(String appName, int numExecutors, long executorMemoryBytes,
     long ioMemoryBytes, boolean isDirectCache, boolean isLlapIo, final String pid) {
+    initialize(appName, numExecutors, executorMemoryBytes, ioMemoryBytes, isDirectCache, isLlapIo, pid, 0);
+  }
+
+  public static void initialize(String appName, int numExecutors, long executorMemoryBytes,
+    long ioMemoryBytes, boolean isDirectCache, boolean isLlapIo, final String pid,
+    long deleteEventsCacheSize) {
     INSTANCE.dataRef.set(new LlapDaemonInfoHolder(numExecutors, executorMemoryBytes, ioMemoryBytes,
-        isDirectCache, isLlapIo, pid));
+        isDirectCache, isLlapIo, pid, deleteEventsCacheSize));
   }
 
   public boolean isLlap() {
@@ -95,4 +106,8 @@ public boolean isLlapIo() {
   public String getPID() {
     return dataRef.get().PID;
   }
+
+  public long getDeleteEventsCacheSize() {
+    return dataRef.get().deleteEventsCacheSize;
+  }
 }
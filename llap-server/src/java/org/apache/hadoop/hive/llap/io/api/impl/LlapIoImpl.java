@@ -98,6 +98,7 @@ public class LlapIoImpl implements LlapIo<VectorizedRowBatch> {
   private final FileMetadataCache fileMetadataCache;
   private final LowLevelCache dataCache;
   private final BufferUsageManager bufferManager;
+  private final LowLevelCacheMemoryManager memoryManager;
   private final Configuration daemonConf;
 
   private LlapIoImpl(Configuration conf) throws IOException {
@@ -142,6 +143,7 @@ private LlapIoImpl(Configuration conf) throws IOException {
       // Allocator uses memory manager to request memory, so create the manager next.
       LowLevelCacheMemoryManager memManager = new LowLevelCacheMemoryManager(
           totalMemorySize, cachePolicy, cacheMetrics);
+      this.memoryManager = memManager;
       cacheMetrics.setCacheCapacityTotal(totalMemorySize);
       // Cache uses allocator to allocate and deallocate, create allocator and then caches.
       BuddyAllocator allocator = new BuddyAllocator(conf, memManager, cacheMetrics);
@@ -171,6 +173,7 @@ private LlapIoImpl(Configuration conf) throws IOException {
       bufferManagerGeneric = serdeCache;
     } else {
       this.allocator = new SimpleAllocator(conf);
+      this.memoryManager = null;
       memoryDump = null;
       fileMetadataCache = null;
       SimpleBufferManager sbm = new SimpleBufferManager(allocator, cacheMetrics);
@@ -236,6 +239,17 @@ public void initCacheOnlyInputFormat(InputFormat<?, ?> inputFormat) {
         new GenericDataCache(dataCache, bufferManager), daemonConf);
   }
 
+  @Override
+  public boolean reserveMemory(long memoryToReserve) {
+    // Without the cache, there is no memory manager to account for the memory.
+    return memoryManager != null && memoryManager.reserveMemory(memoryToReserve, false);
+  }
+
+  @Override
+  public void releaseMemory(long memoryToRelease) {
+    memoryManager.releaseMemory(memoryToRelease);
+  }
+
   private class GenericDataCache implements DataCache, BufferObjectFactory {
     private final LowLevelCache lowLevelCache;
     private final BufferUsageManager bufferManager;
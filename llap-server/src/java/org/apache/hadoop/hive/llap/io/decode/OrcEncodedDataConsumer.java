@@ -33,6 +33,7 @@
 import org.apache.hadoop.hive.ql.exec.vector.BytesColumnVector;
 import org.apache.hadoop.hive.ql.exec.vector.ColumnVector;
 import org.apache.hadoop.hive.ql.exec.vector.DecimalColumnVector;
+import org.apache.hadoop.hive.ql.exec.vector.DictionaryBytesColumnVector;
 import org.apache.hadoop.hive.ql.exec.vector.DoubleColumnVector;
 import org.apache.hadoop.hive.ql.exec.vector.ListColumnVector;
 import org.apache.hadoop.hive.ql.exec.vector.LongColumnVector;
@@ -51,6 +52,7 @@
 import org.apache.hadoop.hive.ql.io.orc.encoded.Reader.OrcEncodedColumnBatch;
 import org.apache.hadoop.hive.ql.io.orc.RecordReaderImpl;
 import org.apache.orc.TypeDescription;
+import org.apache.orc.TypeDescription.Category;
 import org.apache.orc.impl.SchemaEvolution;
 import org.apache.orc.impl.TreeReaderFactory;
 import org.apache.orc.impl.TreeReaderFactory.StructTreeReader;
@@ -151,11 +153,14 @@ protected void decodeBatch(OrcEncodedColumnBatch batch,
         cvb.size = batchSize;
         for (int idx = 0; idx < columnReaders.length; ++idx) {
           TreeReader reader = columnReaders[idx];
-          if (cvb.cols[idx] == null) {
+          TypeDescription columnType = schema.getChildren().get(columnMapping[idx]);
+          if (cvb.cols[idx] == null || (columnType.getCategory() == Category.STRING
+              && !(cvb.cols[idx] instanceof DictionaryBytesColumnVector))) {
             // Orc store rows inside a root struct (hive writes it this way).
             // When we populate column vectors we skip over the root struct.
-            cvb.cols[idx] = createColumn(schema.getChildren().get(columnMapping[idx]),
-                VectorizedRowBatch.DEFAULT_SIZE);
+            // The string columns swapped in from the row batches are replaced too, so that
+            // their dictionary is kept.
+            cvb.cols[idx] = createColumn(columnType, VectorizedRowBatch.DEFAULT_SIZE);
           }
           trace.logTreeReaderNextVector(idx);
           ColumnVector cv = cvb.cols[idx];
@@ -191,8 +196,10 @@ private ColumnVector createColumn(TypeDescription type, int batchSize) {
       case FLOAT:
       case DOUBLE:
         return new DoubleColumnVector(batchSize);
-      case BINARY:
       case STRING:
+        // The dictionary-encoded values can be read as codes into the dictionary.
+        return new DictionaryBytesColumnVector(batchSize);
+      case BINARY:
       case CHAR:
       case VARCHAR:
         return new BytesColumnVector(batchSize);
@@ -20,6 +20,7 @@
 import java.io.InputStream;
 import java.net.URI;
 import java.nio.ByteBuffer;
+import java.util.Arrays;
 import java.util.Map;
 import java.util.SortedMap;
 import java.util.TreeMap;
@@ -197,8 +198,8 @@ public int read() throws IOException {
 
     @Override
     public int read(byte[] array, final int arrayOffset, final int len) throws IOException {
-      long readStartPos = position;
-      DiskRangeList drl = new DiskRangeList(readStartPos, readStartPos + len);
+      long readStartPos = position, readEndPos = position + len;
+      DiskRangeList drl = new DiskRangeList(readStartPos, readEndPos);
       DataCache.BooleanRef gotAllData = new DataCache.BooleanRef();
       drl = cache.getFileData(fileKey, drl, 0, new DataCache.DiskRangeListFactory() {
         @Override
@@ -207,131 +208,145 @@ public DiskRangeList createCacheChunk(
           return new CacheChunk(buffer, startOffset, endOffset);
         }
       }, gotAllData);
-      if (LOG.isInfoEnabled()) {
-        LOG.info("Buffers after cache " + RecordReaderUtils.stringifyDiskRanges(drl));
+      if (LOG.isDebugEnabled()) {
+        LOG.debug("Buffers after cache " + RecordReaderUtils.stringifyDiskRanges(drl));
       }
-      if (gotAllData.value) {
+      // The buffers we got from cache are locked; they are released once copied, so that the
+      // cache policy can evict them again.
+      FSDataInputStream is = null;
+      try {
         long sizeRead = 0;
-        while (drl != null) {
-          assert drl.hasData();
-          long from = drl.getOffset(), to = drl.getEnd();
+        int maxAlloc = cache.getAllocator().getMaxAllocation();
+        // We started with a single DRL, so we assume there will be no consecutive missing blocks
+        // after the cache has inserted cache data. We also assume all the missing parts will
+        // represent one or several column chunks, since we always cache on column chunk
+        // boundaries.
+        for (DiskRangeList current = drl; current != null; current = current.next) {
+          long from = current.getOffset(), to = Math.min(current.getEnd(), readEndPos);
+          // The offset in the destination array for the beginning of this range.
           int offsetFromReadStart = (int)(from - readStartPos), candidateSize = (int)(to - from);
-          ByteBuffer data = drl.getData().duplicate();
-          data.get(array, arrayOffset + offsetFromReadStart, candidateSize);
+          if (current.hasData()) {
+            // The last cached block may extend past the requested range; only copy what we need.
+            ByteBuffer data = current.getData().duplicate();
+            data.get(array, arrayOffset + offsetFromReadStart, candidateSize);
+            sizeRead += candidateSize;
+            continue;
+          }
+          // The data is not in cache.
+
+          // Account for potential partial chunks.
+          SortedMap<Long, Long> chunksInThisRead = getAndValidateMissingChunks(maxAlloc, from, to);
+
+          if (is == null) {
+            is = path.getFileSystem(conf).open(path, bufferSize);
+          }
+          is.seek(from);
+          is.readFully(array, arrayOffset + offsetFromReadStart, candidateSize);
           sizeRead += candidateSize;
-          drl = drl.next;
+          // Now copy missing chunks (and parts of chunks) into cache buffers.
+          if (fileKey == null) continue;
+          int extraDiskDataOffset = 0;
+          // TODO: should we try to make a giant array for one cache call to avoid overhead?
+          for (Map.Entry<Long, Long> missingChunk : chunksInThisRead.entrySet()) {
+            long chunkFrom = Math.max(from, missingChunk.getKey()),
+                chunkTo = Math.min(to, missingChunk.getValue());
+            putChunkToCache(array, arrayOffset + offsetFromReadStart + extraDiskDataOffset,
+                chunkFrom, chunkTo, maxAlloc);
+            extraDiskDataOffset += (int)(chunkTo - chunkFrom);
+          }
         }
         validateAndUpdatePosition(len, sizeRead);
         return len;
+      } finally {
+        if (is != null) {
+          is.close();
+        }
+        for (DiskRangeList current = drl; current != null; current = current.next) {
+          if (current instanceof CacheChunk && ((CacheChunk) current).getBuffer() != null) {
+            cache.releaseBuffer(((CacheChunk) current).getBuffer());
+          }
+        }
       }
-      int maxAlloc = cache.getAllocator().getMaxAllocation();
-      // We have some disk data. Separate it by column chunk and put into cache.
-
-      // We started with a single DRL, so we assume there will be no consecutive missing blocks
-      // after the cache has inserted cache data. We also assume all the missing parts will
-      // represent one or several column chunks, since we always cache on column chunk boundaries.
-      DiskRangeList current = drl;
-      FileSystem fs = path.getFileSystem(conf);
-      FSDataInputStream is = fs.open(path, bufferSize);
+    }
+
+    private void putChunkToCache(byte[] diskData, int diskDataOffset, long chunkFrom,
+        long chunkTo, int maxAlloc) {
       Allocator allocator = cache.getAllocator();
-      long sizeRead = 0;
-      while (current != null) {
-        DiskRangeList candidate = current;
-        current = current.next;
-        long from = candidate.getOffset(), to = candidate.getEnd();
-        // The offset in the destination array for the beginning of this missing range.
-        int offsetFromReadStart = (int)(from - readStartPos), candidateSize = (int)(to - from);
-        if (candidate.hasData()) {
-          ByteBuffer data = candidate.getData().duplicate();
-          data.get(array, arrayOffset + offsetFromReadStart, candidateSize);
-          sizeRead += candidateSize;
-          continue;
+      long chunkLength = chunkTo - chunkFrom;
+      MemoryBuffer[] largeBuffers = null, smallBuffer = null, newCacheData = null,
+          cachedData = null;
+      long[] collisionMask = null;
+      try {
+        int largeBufCount = (int) (chunkLength / maxAlloc);
+        int smallSize = (int) (chunkLength % maxAlloc);
+        int chunkPartCount = largeBufCount + ((smallSize > 0) ? 1 : 0);
+        DiskRange[] cacheRanges = new DiskRange[chunkPartCount];
+        int extraOffsetInChunk = 0;
+        if (maxAlloc < chunkLength) {
+          largeBuffers = new MemoryBuffer[largeBufCount];
+          allocator.allocateMultiple(largeBuffers, maxAlloc, cache.getDataBufferFactory());
+          for (int i = 0; i < largeBuffers.length; ++i) {
+            // By definition here we copy up to the limit of the buffer.
+            ByteBuffer bb = largeBuffers[i].getByteBufferRaw();
+            int remaining = bb.remaining();
+            assert remaining == maxAlloc;
+            copyDiskDataToCacheBuffer(diskData, diskDataOffset + extraOffsetInChunk,
+                remaining, bb, cacheRanges, i, chunkFrom + extraOffsetInChunk);
+            extraOffsetInChunk += remaining;
+          }
         }
-        // The data is not in cache.
-
-        // Account for potential partial chunks.
-        SortedMap<Long, Long> chunksInThisRead = getAndValidateMissingChunks(maxAlloc, from, to);
-
-        is.seek(from);
-        is.readFully(array, arrayOffset + offsetFromReadStart, candidateSize);
-        sizeRead += candidateSize;
-        // Now copy missing chunks (and parts of chunks) into cache buffers.
-        if (fileKey == null || cache == null) continue;
-        int extraDiskDataOffset = 0;
-        // TODO: should we try to make a giant array for one cache call to avoid overhead?
-        for (Map.Entry<Long, Long> missingChunk : chunksInThisRead.entrySet()) {
-          long chunkFrom = Math.max(from, missingChunk.getKey()),
-              chunkTo = Math.min(to, missingChunk.getValue()),
-              chunkLength = chunkTo - chunkFrom;
-          MemoryBuffer[] largeBuffers = null, smallBuffer = null, newCacheData = null;
-          try {
-            int largeBufCount = (int) (chunkLength / maxAlloc);
-            int smallSize = (int) (chunkLength % maxAlloc);
-            int chunkPartCount = largeBufCount + ((smallSize > 0) ? 1 : 0);
-            DiskRange[] cacheRanges = new DiskRange[chunkPartCount];
-            int extraOffsetInChunk = 0;
-            if (maxAlloc < chunkLength) {
-              largeBuffers = new MemoryBuffer[largeBufCount];
-              allocator.allocateMultiple(largeBuffers, maxAlloc, cache.getDataBufferFactory());
-              for (int i = 0; i < largeBuffers.length; ++i) {
-                // By definition here we copy up to the limit of the buffer.
-                ByteBuffer bb = largeBuffers[i].getByteBufferRaw();
-                int remaining = bb.remaining();
-                assert remaining == maxAlloc;
-                copyDiskDataToCacheBuffer(array,
-                    arrayOffset + offsetFromReadStart + extraDiskDataOffset,
-                    remaining, bb, cacheRanges, i, chunkFrom + extraOffsetInChunk);
-                extraDiskDataOffset += remaining;
-                extraOffsetInChunk += remaining;
-              }
-            }
-            newCacheData = largeBuffers;
-            largeBuffers = null;
-            if (smallSize > 0) {
-              smallBuffer = new MemoryBuffer[1];
-              allocator.allocateMultiple(smallBuffer, smallSize, cache.getDataBufferFactory());
-              ByteBuffer bb = smallBuffer[0].getByteBufferRaw();
-              copyDiskDataToCacheBuffer(array,
-                  arrayOffset + offsetFromReadStart + extraDiskDataOffset,
-                  smallSize, bb, cacheRanges, largeBufCount, chunkFrom + extraOffsetInChunk);
-              extraDiskDataOffset += smallSize;
-              extraOffsetInChunk += smallSize; // Not strictly necessary, noone will look at it.
-              if (newCacheData == null) {
-                newCacheData = smallBuffer;
-              } else {
-                // TODO: add allocate overload with an offset and length
-                MemoryBuffer[] combinedCacheData = new MemoryBuffer[largeBufCount + 1];
-                System.arraycopy(newCacheData, 0, combinedCacheData, 0, largeBufCount);
-                newCacheData = combinedCacheData;
-                newCacheData[largeBufCount] = smallBuffer[0];
-              }
-              smallBuffer = null;
-            }
-            cache.putFileData(fileKey, cacheRanges, newCacheData, 0);
-          } finally {
-            // We do not use the new cache buffers for the actual read, given the way read() API is.
-            // Therefore, we don't need to handle cache collisions - just decref all the buffers.
-            if (newCacheData != null) {
-              for (MemoryBuffer buffer : newCacheData) {
-                if (buffer == null) continue;
-                cache.releaseBuffer(buffer);
-              }
-            }
-            // If we have failed before building newCacheData, deallocate other the allocated.
-            if (largeBuffers != null) {
-              for (MemoryBuffer buffer : largeBuffers) {
-                if (buffer == null) continue;
-                allocator.deallocate(buffer);
-              }
-            }
-            if (smallBuffer != null && smallBuffer[0] != null) {
-              allocator.deallocate(smallBuffer[0]);
+        newCacheData = largeBuffers;
+        largeBuffers = null;
+        if (smallSize > 0) {
+          smallBuffer = new MemoryBuffer[1];
+          allocator.allocateMultiple(smallBuffer, smallSize, cache.getDataBufferFactory());
+          ByteBuffer bb = smallBuffer[0].getByteBufferRaw();
+          copyDiskDataToCacheBuffer(diskData, diskDataOffset + extraOffsetInChunk,
+              smallSize, bb, cacheRanges, largeBufCount, chunkFrom + extraOffsetInChunk);
+          if (newCacheData == null) {
+            newCacheData = smallBuffer;
+          } else {
+            // TODO: add allocate overload with an offset and length
+            MemoryBuffer[] combinedCacheData = new MemoryBuffer[largeBufCount + 1];
+            System.arraycopy(newCacheData, 0, combinedCacheData, 0, largeBufCount);
+            newCacheData = combinedCacheData;
+            newCacheData[largeBufCount] = smallBuffer[0];
+          }
+          smallBuffer = null;
+        }
+        // The cache replaces the buffers it already has in the array; keep ours to discard them.
+        MemoryBuffer[] putData = Arrays.copyOf(newCacheData, newCacheData.length);
+        collisionMask = cache.putFileData(fileKey, cacheRanges, putData, 0);
+        cachedData = putData;
+      } finally {
+        // We do not use the new cache buffers for the actual read, given the way read() API is.
+        // Therefore, we just decref all the buffers that are now in cache, and deallocate the
+        // ones the cache rejected due to a collision, since the cache doesn't own those.
+        if (cachedData != null) {
+          for (int i = 0; i < cachedData.length; ++i) {
+            if (collisionMask != null
+                && (collisionMask[i >>> 6] & (1L << (i & 63))) != 0) {
+              allocator.deallocate(newCacheData[i]);
             }
+            cache.releaseBuffer(cachedData[i]);
+          }
+        } else if (newCacheData != null) {
+          for (MemoryBuffer buffer : newCacheData) {
+            if (buffer == null) continue;
+            allocator.deallocate(buffer);
+          }
+        }
+        // If we have failed before building newCacheData, deallocate other the allocated.
+        if (largeBuffers != null) {
+          for (MemoryBuffer buffer : largeBuffers) {
+            if (buffer == null) continue;
+            allocator.deallocate(buffer);
           }
         }
+        if (smallBuffer != null && smallBuffer[0] != null) {
+          allocator.deallocate(smallBuffer[0]);
+        }
       }
-      validateAndUpdatePosition(len, sizeRead);
-      return len;
     }
 
     private void validateAndUpdatePosition(int len, long sizeRead) {
@@ -414,7 +429,7 @@ public void readFully(long arg0, byte[] arg1) throws IOException {
 
     @Override
     public void readFully(long arg0, byte[] arg1, int arg2, int arg3) throws IOException {
-      read(arg0, arg1, 0, arg1.length);
+      read(arg0, arg1, arg2, arg3);
     }
   }
 }
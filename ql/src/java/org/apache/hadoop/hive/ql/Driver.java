@@ -55,6 +55,8 @@
 import org.apache.hadoop.hive.metastore.HiveMetaStoreUtils;
 import org.apache.hadoop.hive.metastore.api.FieldSchema;
 import org.apache.hadoop.hive.metastore.api.Schema;
+import org.apache.hadoop.hive.ql.cache.results.CacheUsage;
+import org.apache.hadoop.hive.ql.cache.results.QueryResultsCache;
 import org.apache.hadoop.hive.ql.exec.ConditionalTask;
 import org.apache.hadoop.hive.ql.exec.DagUtils;
 import org.apache.hadoop.hive.ql.exec.ExplainTask;
@@ -101,6 +103,7 @@
 import org.apache.hadoop.hive.ql.parse.PrunedPartitionList;
 import org.apache.hadoop.hive.ql.parse.SemanticAnalyzer;
 import org.apache.hadoop.hive.ql.parse.SemanticAnalyzerFactory;
+import org.apache.hadoop.hive.ql.plan.FetchWork;
 import org.apache.hadoop.hive.ql.plan.FileSinkDesc;
 import org.apache.hadoop.hive.ql.plan.HiveOperation;
 import org.apache.hadoop.hive.ql.plan.TableDesc;
@@ -154,6 +157,8 @@ public class Driver implements IDriver {
   private Throwable downstreamError;
 
   private FetchTask fetchTask;
+  // How the current query uses the query results cache, null if it does not
+  private CacheUsage cacheUsage;
   List<HiveLock> hiveLocks = new ArrayList<HiveLock>();
 
   // A limit on the number of threads that can be launched
@@ -639,6 +644,7 @@ public void run() {
         sem.analyze(tree, ctx);
       }
       LOG.info("Semantic Analysis Completed");
+      cacheUsage = sem.getCacheUsage();
 
       // validate the plan
       sem.validate();
@@ -2027,6 +2033,11 @@ private void execute() throws CommandNeedRetryException, CommandProcessorRespons
         throw createProcessorResponse(1000);
       }
 
+      if (cacheUsage != null
+          && cacheUsage.getStatus() == CacheUsage.CacheStatus.CAN_CACHE_QUERY_RESULTS) {
+        addToResultsCache();
+      }
+
       // remove incomplete outputs.
       // Some incomplete outputs may be added at the beginning, for eg: for dynamic partitions.
       // remove them
@@ -2434,6 +2445,42 @@ private void releaseFetchTask() {
     } catch (Exception e) {
       LOG.debug(" Exception while clearing the FetchTask ", e);
     }
+    releaseCacheUsage();
+  }
+
+  private void releaseCacheUsage() {
+    if (cacheUsage != null && cacheUsage.getCacheEntry() != null) {
+      cacheUsage.getCacheEntry().releaseReader();
+    }
+    cacheUsage = null;
+  }
+
+  /**
+   * Moves the results of the completed query to the query results cache, and switches the
+   * FetchTask over to the cached results.
+   */
+  private void addToResultsCache() {
+    QueryResultsCache cache = QueryResultsCache.getInstance();
+    FetchTask resultsFetchTask = plan.getFetchTask();
+    if (cache == null || resultsFetchTask == null) {
+      return;
+    }
+    QueryResultsCache.CacheEntry cacheEntry =
+        cache.addToCache(cacheUsage.getQueryInfo(), resultsFetchTask.getWork());
+    if (cacheEntry == null) {
+      return;
+    }
+    cacheUsage = new CacheUsage(cacheEntry);
+    try {
+      resultsFetchTask.clearFetch();
+    } catch (HiveException e) {
+      LOG.debug(" Exception while clearing the FetchTask ", e);
+    }
+    FetchWork fetchWork = cacheEntry.getFetchWork();
+    fetchWork.setHiveServerQuery(SessionState.get().isHiveServerQuery());
+    FetchTask cachedFetchTask = (FetchTask) TaskFactory.get(fetchWork, conf);
+    cachedFetchTask.initialize(queryState, plan, null, ctx.getOpContext());
+    plan.setFetchTask(cachedFetchTask);
   }
   // Close and release resources within a running query process. Since it runs under
   // driver state COMPILING, EXECUTING or INTERRUPT, it would not have race condition
@@ -0,0 +1,60 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.hadoop.hive.ql.cache.results;
+
+/**
+ * How a query uses the query results cache, as decided by the semantic analyzer.
+ */
+public class CacheUsage {
+
+  public enum CacheStatus {
+    /* The query missed the cache and its results can be cached once it completes. */
+    CAN_CACHE_QUERY_RESULTS,
+    /* The query is served from a cache entry. */
+    QUERY_USING_CACHE
+  }
+
+  private final CacheStatus status;
+  private final QueryResultsCache.QueryInfo queryInfo;
+  private final QueryResultsCache.CacheEntry cacheEntry;
+
+  public CacheUsage(QueryResultsCache.QueryInfo queryInfo) {
+    this.status = CacheStatus.CAN_CACHE_QUERY_RESULTS;
+    this.queryInfo = queryInfo;
+    this.cacheEntry = null;
+  }
+
+  public CacheUsage(QueryResultsCache.CacheEntry cacheEntry) {
+    this.status = CacheStatus.QUERY_USING_CACHE;
+    this.queryInfo = cacheEntry.getQueryInfo();
+    this.cacheEntry = cacheEntry;
+  }
+
+  public CacheStatus getStatus() {
+    return status;
+  }
+
+  public QueryResultsCache.QueryInfo getQueryInfo() {
+    return queryInfo;
+  }
+
+  public QueryResultsCache.CacheEntry getCacheEntry() {
+    return cacheEntry;
+  }
+}
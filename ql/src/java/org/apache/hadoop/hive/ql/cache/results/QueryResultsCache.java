@@ -0,0 +1,612 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.hadoop.hive.ql.cache.results;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.UUID;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.commons.codec.digest.DigestUtils;
+import org.apache.hadoop.fs.FileStatus;
+import org.apache.hadoop.fs.FileSystem;
+import org.apache.hadoop.fs.Path;
+import org.apache.hadoop.fs.permission.FsPermission;
+import org.apache.hadoop.hive.common.FileUtils;
+import org.apache.hadoop.hive.conf.HiveConf;
+import org.apache.hadoop.hive.metastore.IMetaStoreClient;
+import org.apache.hadoop.hive.metastore.api.FieldSchema;
+import org.apache.hadoop.hive.metastore.api.NotificationEvent;
+import org.apache.hadoop.hive.metastore.api.NotificationEventResponse;
+import org.apache.hadoop.hive.metastore.messaging.EventMessage.EventType;
+import org.apache.hadoop.hive.ql.hooks.Entity;
+import org.apache.hadoop.hive.ql.hooks.ReadEntity;
+import org.apache.hadoop.hive.ql.metadata.Hive;
+import org.apache.hadoop.hive.ql.metadata.HiveException;
+import org.apache.hadoop.hive.ql.metadata.Partition;
+import org.apache.hadoop.hive.ql.metadata.Table;
+import org.apache.hadoop.hive.ql.parse.ColumnAccessInfo;
+import org.apache.hadoop.hive.ql.plan.FetchWork;
+import org.apache.hadoop.hive.ql.plan.TableDesc;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.google.common.annotations.VisibleForTesting;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+
+/**
+ * Cache of query results. The results of a cacheable query are moved from the query scratch
+ * directory into the cache directory once the query has completed, and later executions of
+ * the same query are served with a FetchTask reading the cached files, skipping the operator
+ * tree generation, optimization and execution. This cache lives in HS2.
+ *
+ * Entries are keyed by the normalized query text (which includes the current database) and
+ * carry the last DDL time of every table and view the query read, and the state of the data it
+ * read: the modification times of the directories of its tables and partitions, and the
+ * partitions of its partitioned tables. An entry is dropped when the lookup finds a different
+ * DDL time or data state, when it outlives the maximum lifetime, when a metastore notification
+ * event touches one of its tables, or when it is the least recently used entry and the cache is
+ * over its size limit. Files of a dropped entry are only deleted once the queries still fetching
+ * from it have released it.
+ */
+public final class QueryResultsCache {
+
+  private static final Logger LOG = LoggerFactory.getLogger(QueryResultsCache.class);
+
+  private static final int MAX_NOTIFICATION_EVENTS = 1000;
+
+  /**
+   * What identifies a query when looking it up in the cache.
+   */
+  public static class LookupInfo {
+    private final String queryText;
+    private final Map<String, String> tableSnapshot;
+
+    /**
+     * @param queryText the normalized query text
+     * @param tableSnapshot the last DDL time of each input table, keyed by qualified name
+     */
+    public LookupInfo(String queryText, Map<String, String> tableSnapshot) {
+      this.queryText = queryText;
+      this.tableSnapshot = tableSnapshot;
+    }
+
+    public String getQueryText() {
+      return queryText;
+    }
+
+    public Map<String, String> getTableSnapshot() {
+      return tableSnapshot;
+    }
+  }
+
+  /**
+   * What the compiler knows about a cacheable query. It is used to answer a later lookup
+   * without compiling the query again.
+   */
+  public static class QueryInfo {
+    private final LookupInfo lookupInfo;
+    private final List<FieldSchema> resultSchema;
+    private final Set<ReadEntity> inputs;
+    private final ColumnAccessInfo columnAccessInfo;
+
+    public QueryInfo(LookupInfo lookupInfo, List<FieldSchema> resultSchema,
+        Set<ReadEntity> inputs, ColumnAccessInfo columnAccessInfo) {
+      this.lookupInfo = lookupInfo;
+      this.resultSchema = resultSchema;
+      this.inputs = inputs;
+      this.columnAccessInfo = columnAccessInfo;
+    }
+
+    public LookupInfo getLookupInfo() {
+      return lookupInfo;
+    }
+
+    public List<FieldSchema> getResultSchema() {
+      return resultSchema;
+    }
+
+    public Set<ReadEntity> getInputs() {
+      return inputs;
+    }
+
+    public ColumnAccessInfo getColumnAccessInfo() {
+      return columnAccessInfo;
+    }
+  }
+
+  /**
+   * A cached query result.
+   */
+  public class CacheEntry {
+    private final QueryInfo queryInfo;
+    private final Path cachedResultsPath;
+    private final TableDesc tableDesc;
+    private final int limit;
+    private final String serializationNullFormat;
+    private final long size;
+    private final long createTime;
+    private final String inputsState;
+
+    private volatile boolean valid = true;
+    private final AtomicInteger readers = new AtomicInteger();
+
+    private CacheEntry(QueryInfo queryInfo, Path cachedResultsPath, FetchWork fetchWork,
+        long size, String inputsState) {
+      this.queryInfo = queryInfo;
+      this.cachedResultsPath = cachedResultsPath;
+      this.tableDesc = fetchWork.getTblDesc();
+      this.limit = fetchWork.getLimit();
+      this.serializationNullFormat = fetchWork.getSerializationNullFormat();
+      this.size = size;
+      this.createTime = System.currentTimeMillis();
+      this.inputsState = inputsState;
+    }
+
+    public QueryInfo getQueryInfo() {
+      return queryInfo;
+    }
+
+    public Path getCachedResultsPath() {
+      return cachedResultsPath;
+    }
+
+    public long getSize() {
+      return size;
+    }
+
+    public boolean isValid() {
+      return valid;
+    }
+
+    /**
+     * Creates a new FetchWork reading the cached results. Every query gets its own since the
+     * FetchTask initialization modifies the work.
+     */
+    public FetchWork getFetchWork() {
+      FetchWork fetchWork = new FetchWork(cachedResultsPath, tableDesc, limit);
+      fetchWork.setSerializationNullFormat(serializationNullFormat);
+      return fetchWork;
+    }
+
+    /**
+     * Must be called once for each lookup or addToCache that returned this entry, when the
+     * query no longer reads the cached files.
+     */
+    public void releaseReader() {
+      if (readers.decrementAndGet() == 0 && !valid) {
+        deleteCachedResults(this);
+      }
+    }
+
+    private void addReader() {
+      readers.incrementAndGet();
+    }
+
+    private boolean isExpired(long now) {
+      return maxEntryLifetime > 0 && now - createTime > maxEntryLifetime;
+    }
+
+    @Override
+    public String toString() {
+      return "CacheEntry " + cachedResultsPath + " size " + size;
+    }
+  }
+
+  private static QueryResultsCache instance;
+
+  private final FileSystem fs;
+  private final Path cacheDirPath;
+  private final long maxCacheSize;
+  private final long maxEntrySize;
+  private final long maxEntryLifetime;
+
+  /* Access ordered, so the iteration order is the eviction order. */
+  private final LinkedHashMap<String, CacheEntry> queryMap =
+      new LinkedHashMap<String, CacheEntry>(16, 0.75f, true);
+  private final Map<String, Set<CacheEntry>> tableToEntryMap =
+      new HashMap<String, Set<CacheEntry>>();
+  private long cacheSize;
+
+  private ScheduledExecutorService invalidationExecutor;
+
+  private QueryResultsCache(HiveConf conf) throws IOException {
+    Path rootCacheDir =
+        new Path(HiveConf.getVar(conf, HiveConf.ConfVars.HIVE_QUERY_RESULTS_CACHE_DIRECTORY));
+    fs = rootCacheDir.getFileSystem(conf);
+    // A directory of our own, so several HS2 instances can share the configured location.
+    cacheDirPath = fs.makeQualified(new Path(rootCacheDir, UUID.randomUUID().toString()));
+    fs.mkdirs(cacheDirPath, new FsPermission((short) 0700));
+    fs.deleteOnExit(cacheDirPath);
+
+    maxCacheSize = HiveConf.getSizeVar(conf, HiveConf.ConfVars.HIVE_QUERY_RESULTS_CACHE_MAX_SIZE);
+    maxEntrySize =
+        HiveConf.getSizeVar(conf, HiveConf.ConfVars.HIVE_QUERY_RESULTS_CACHE_MAX_ENTRY_SIZE);
+    maxEntryLifetime = HiveConf.getTimeVar(conf,
+        HiveConf.ConfVars.HIVE_QUERY_RESULTS_CACHE_MAX_ENTRY_LIFETIME, TimeUnit.MILLISECONDS);
+    LOG.info("Query results cache directory " + cacheDirPath + ", max size " + maxCacheSize +
+        ", max entry size " + maxEntrySize);
+  }
+
+  /**
+   * Creates the cache. Called once by HS2 when hive.query.results.cache.enabled is set.
+   */
+  public static synchronized void initialize(HiveConf conf) throws IOException {
+    if (instance != null) {
+      return;
+    }
+    instance = new QueryResultsCache(conf);
+    long interval = HiveConf.getTimeVar(conf,
+        HiveConf.ConfVars.HIVE_QUERY_RESULTS_CACHE_INVALIDATION_INTERVAL, TimeUnit.MILLISECONDS);
+    if (interval > 0) {
+      instance.startInvalidationPolling(conf, interval);
+    }
+  }
+
+  /**
+   * @return the cache, or null when it was not initialized (e.g. outside of HS2)
+   */
+  public static synchronized QueryResultsCache getInstance() {
+    return instance;
+  }
+
+  /**
+   * Stops the invalidation polling and drops all the entries.
+   */
+  public static synchronized void shutdown() {
+    if (instance == null) {
+      return;
+    }
+    if (instance.invalidationExecutor != null) {
+      instance.invalidationExecutor.shutdownNow();
+    }
+    instance.clear();
+    instance = null;
+  }
+
+  /**
+   * Looks up the results of a query. When found, the entry is returned with a reader
+   * registered, and the caller must call {@link CacheEntry#releaseReader()} once done.
+   *
+   * @return the entry, or null on a miss
+   */
+  public CacheEntry lookup(LookupInfo lookupInfo) {
+    CacheEntry entry;
+    synchronized (this) {
+      entry = queryMap.get(lookupInfo.getQueryText());
+      if (entry == null) {
+        return null;
+      }
+      if (entry.isExpired(System.currentTimeMillis())) {
+        LOG.debug("Query results cache entry expired: {}", entry);
+        invalidateEntry(entry);
+        return null;
+      }
+      if (!entry.getQueryInfo().getLookupInfo().getTableSnapshot().equals(
+          lookupInfo.getTableSnapshot())) {
+        LOG.debug("Input tables changed since the query results were cached: {}", entry);
+        invalidateEntry(entry);
+        return null;
+      }
+    }
+    // The directories are checked without holding the cache lock.
+    String inputsState;
+    try {
+      inputsState = getInputsState(Hive.get(), entry.getQueryInfo().getInputs());
+    } catch (HiveException | IOException e) {
+      LOG.warn("Could not check the inputs of the query results cache entry " + entry, e);
+      return null;
+    }
+    synchronized (this) {
+      if (!entry.isValid()) {
+        return null;
+      }
+      if (!entry.inputsState.equals(inputsState)) {
+        LOG.debug("Input data changed since the query results were cached: {}", entry);
+        invalidateEntry(entry);
+        return null;
+      }
+      entry.addReader();
+      return entry;
+    }
+  }
+
+  /**
+   * @return A digest of the modification times of the directories of the tables and partitions
+   *         read by a query, and of the names of the partitions of its partitioned tables. Unlike
+   *         the DDL times, it changes with the INSERT and TRUNCATE of a table or partition, which
+   *         add or remove files in its directory, and with added partitions. It costs one call
+   *         to the file system for each directory, rather than a listing of the files.
+   */
+  @VisibleForTesting
+  static String getInputsState(Hive db, Set<ReadEntity> inputs)
+      throws HiveException, IOException {
+    Map<String, Path> locations = new TreeMap<String, Path>();
+    Map<String, Table> partitionedTables = new TreeMap<String, Table>();
+    for (ReadEntity input : inputs) {
+      if (input.getType() == Entity.Type.TABLE && !input.getTable().isView()) {
+        Table table = input.getTable();
+        if (table.isPartitioned()) {
+          partitionedTables.put(table.getFullyQualifiedName(), table);
+        } else {
+          locations.put(table.getFullyQualifiedName(), table.getDataLocation());
+        }
+      } else if (input.getType() == Entity.Type.PARTITION) {
+        Partition partition = input.getPartition();
+        partitionedTables.put(partition.getTable().getFullyQualifiedName(), partition.getTable());
+        locations.put(partition.getCompleteName(), partition.getDataLocation());
+      }
+    }
+    StringBuilder sb = new StringBuilder();
+    for (Map.Entry<String, Table> entry : partitionedTables.entrySet()) {
+      Table table = entry.getValue();
+      sb.append(entry.getKey()).append(' ')
+          .append(db.getPartitionNames(table.getDbName(), table.getTableName(), (short) -1))
+          .append('\n');
+    }
+    for (Map.Entry<String, Path> entry : locations.entrySet()) {
+      Path location = entry.getValue();
+      FileStatus status = location == null ? null
+          : FileUtils.getFileStatusOrNull(location.getFileSystem(db.getConf()), location);
+      sb.append(entry.getKey()).append(' ').append(location).append(' ')
+          .append(status == null ? "missing" : String.valueOf(status.getModificationTime()))
+          .append('\n');
+    }
+    return DigestUtils.sha256Hex(sb.toString());
+  }
+
+  /**
+   * Moves the results of a completed query into the cache. When the results were cached, the
+   * entry is returned with a reader registered for the query itself: the caller must fetch
+   * from the entry (the query results directory is gone) and release it once done.
+   *
+   * @return the new entry, or null when the results were not cached
+   */
+  public CacheEntry addToCache(QueryInfo queryInfo, FetchWork fetchWork) {
+    Path resultsPath = fetchWork.getTblDir();
+    try {
+      // The query still holds its locks, so this is the state of the data it read.
+      String inputsState = getInputsState(Hive.get(), queryInfo.getInputs());
+      FileSystem resultsFs = resultsPath.getFileSystem(fs.getConf());
+      if (!resultsFs.getUri().equals(fs.getUri())) {
+        LOG.info("Not caching query results in " + resultsPath +
+            " which are not on the cache file system " + fs.getUri());
+        return null;
+      }
+      long size = resultsFs.exists(resultsPath)
+          ? resultsFs.getContentSummary(resultsPath).getLength() : 0;
+      if (size > maxEntrySize || size > maxCacheSize) {
+        LOG.info("Not caching query results of size " + size + " over the max entry size");
+        return null;
+      }
+
+      Path cachedResultsPath = new Path(cacheDirPath, UUID.randomUUID().toString());
+      if (size > 0 || resultsFs.exists(resultsPath)) {
+        if (!fs.rename(resultsPath, cachedResultsPath)) {
+          LOG.warn("Could not move query results from " + resultsPath + " to " +
+              cachedResultsPath);
+          return null;
+        }
+      } else {
+        // An empty result; give the fetch something to list.
+        fs.mkdirs(cachedResultsPath);
+      }
+
+      CacheEntry entry =
+          new CacheEntry(queryInfo, cachedResultsPath, fetchWork, size, inputsState);
+      synchronized (this) {
+        CacheEntry oldEntry = queryMap.get(queryInfo.getLookupInfo().getQueryText());
+        if (oldEntry != null) {
+          // The same query ran concurrently; the newer results win.
+          invalidateEntry(oldEntry);
+        }
+        evictEntries(size);
+        queryMap.put(queryInfo.getLookupInfo().getQueryText(), entry);
+        for (String tableName : queryInfo.getLookupInfo().getTableSnapshot().keySet()) {
+          Set<CacheEntry> entries = tableToEntryMap.get(tableName);
+          if (entries == null) {
+            entries = new HashSet<CacheEntry>();
+            tableToEntryMap.put(tableName, entries);
+          }
+          entries.add(entry);
+        }
+        cacheSize += size;
+        entry.addReader();
+      }
+      LOG.info("Added query results to the cache: " + entry);
+      return entry;
+    } catch (HiveException | IOException e) {
+      LOG.warn("Failed to add query results in " + resultsPath + " to the cache", e);
+      return null;
+    }
+  }
+
+  /**
+   * Drops the entries of all the queries that read the given table or view.
+   */
+  public synchronized void invalidateTable(String dbName, String tableName) {
+    Set<CacheEntry> entries = tableToEntryMap.get(getQualifiedTableName(dbName, tableName));
+    if (entries == null) {
+      return;
+    }
+    for (CacheEntry entry : new ArrayList<CacheEntry>(entries)) {
+      invalidateEntry(entry);
+    }
+  }
+
+  /**
+   * Drops the entries of all the queries that read a table of the given database.
+   */
+  public synchronized void invalidateDatabase(String dbName) {
+    String prefix = dbName.toLowerCase() + ".";
+    List<CacheEntry> toInvalidate = new ArrayList<CacheEntry>();
+    for (Map.Entry<String, Set<CacheEntry>> mapEntry : tableToEntryMap.entrySet()) {
+      if (mapEntry.getKey().startsWith(prefix)) {
+        toInvalidate.addAll(mapEntry.getValue());
+      }
+    }
+    for (CacheEntry entry : toInvalidate) {
+      invalidateEntry(entry);
+    }
+  }
+
+  public synchronized void clear() {
+    for (CacheEntry entry : new ArrayList<CacheEntry>(queryMap.values())) {
+      invalidateEntry(entry);
+    }
+  }
+
+  public synchronized int size() {
+    return queryMap.size();
+  }
+
+  public synchronized long getCacheSize() {
+    return cacheSize;
+  }
+
+  public static String getQualifiedTableName(String dbName, String tableName) {
+    return (dbName + "." + tableName).toLowerCase();
+  }
+
+  /*
+   * Drops least recently used entries until newEntrySize fits. Called under the cache lock.
+   */
+  private void evictEntries(long newEntrySize) {
+    Iterator<CacheEntry> iterator = queryMap.values().iterator();
+    while (cacheSize + newEntrySize > maxCacheSize && iterator.hasNext()) {
+      CacheEntry entry = iterator.next();
+      LOG.debug("Evicting query results cache entry {}", entry);
+      iterator.remove();
+      removeEntry(entry);
+    }
+  }
+
+  /*
+   * Called under the cache lock.
+   */
+  private void invalidateEntry(CacheEntry entry) {
+    String queryText = entry.getQueryInfo().getLookupInfo().getQueryText();
+    if (queryMap.get(queryText) == entry) {
+      queryMap.remove(queryText);
+    }
+    removeEntry(entry);
+  }
+
+  private void removeEntry(CacheEntry entry) {
+    if (!entry.valid) {
+      return;
+    }
+    entry.valid = false;
+    cacheSize -= entry.getSize();
+    for (String tableName : entry.getQueryInfo().getLookupInfo().getTableSnapshot().keySet()) {
+      Set<CacheEntry> entries = tableToEntryMap.get(tableName);
+      if (entries != null) {
+        entries.remove(entry);
+        if (entries.isEmpty()) {
+          tableToEntryMap.remove(tableName);
+        }
+      }
+    }
+    if (entry.readers.get() == 0) {
+      deleteCachedResults(entry);
+    }
+  }
+
+  private void deleteCachedResults(CacheEntry entry) {
+    try {
+      fs.delete(entry.getCachedResultsPath(), true);
+    } catch (IOException e) {
+      LOG.warn("Failed to delete cached query results " + entry.getCachedResultsPath(), e);
+    }
+  }
+
+  private void startInvalidationPolling(HiveConf conf, long interval) {
+    invalidationExecutor = Executors.newSingleThreadScheduledExecutor(
+        new ThreadFactoryBuilder()
+        .setNameFormat("QueryResultsCache-invalidation-%d")
+        .setDaemon(true)
+        .build());
+    invalidationExecutor.scheduleWithFixedDelay(new InvalidationEventPoller(conf),
+        interval, interval, TimeUnit.MILLISECONDS);
+  }
+
+  /**
+   * Reads the metastore notification events and drops the entries of the tables they touch.
+   */
+  private class InvalidationEventPoller implements Runnable {
+    private final HiveConf conf;
+    private long lastEventId = -1;
+
+    private InvalidationEventPoller(HiveConf conf) {
+      this.conf = conf;
+    }
+
+    @Override
+    public void run() {
+      try {
+        IMetaStoreClient msc = Hive.get(conf).getMSC();
+        if (lastEventId < 0) {
+          // Anything before we start cannot be in the cache yet.
+          lastEventId = msc.getCurrentNotificationEventId().getEventId();
+          return;
+        }
+        while (true) {
+          NotificationEventResponse response =
+              msc.getNextNotification(lastEventId, MAX_NOTIFICATION_EVENTS, null);
+          if (response == null || response.getEvents() == null ||
+              response.getEvents().isEmpty()) {
+            return;
+          }
+          for (NotificationEvent event : response.getEvents()) {
+            handleEvent(event);
+            lastEventId = event.getEventId();
+          }
+          if (response.getEvents().size() < MAX_NOTIFICATION_EVENTS) {
+            return;
+          }
+        }
+      } catch (Exception e) {
+        // Keep polling; entries are still checked against the table DDL times.
+        LOG.warn("Failed to read notification events for the query results cache", e);
+      }
+    }
+
+    private void handleEvent(NotificationEvent event) {
+      if (event.getDbName() == null) {
+        return;
+      }
+      if (event.getTableName() != null) {
+        invalidateTable(event.getDbName(), event.getTableName());
+      } else if (EventType.DROP_DATABASE.toString().equals(event.getEventType())) {
+        invalidateDatabase(event.getDbName());
+      }
+    }
+  }
+}
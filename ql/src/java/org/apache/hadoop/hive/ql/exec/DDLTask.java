@@ -164,6 +164,7 @@
 import org.apache.hadoop.hive.ql.parse.DDLSemanticAnalyzer;
 import org.apache.hadoop.hive.ql.parse.ExplainConfiguration.AnalyzeState;
 import org.apache.hadoop.hive.ql.parse.PreInsertTableDesc;
+import org.apache.hadoop.hive.ql.parse.MaterializedViewIncrementalRebuild;
 import org.apache.hadoop.hive.ql.parse.ReplicationSpec;
 import org.apache.hadoop.hive.ql.parse.SemanticException;
 import org.apache.hadoop.hive.ql.parse.repl.dump.Utils;
@@ -5121,10 +5122,12 @@ private int createView(Hive db, CreateViewDesc crtView) throws HiveException {
 
       if (crtView.isMaterialized()) {
         // We need to update the status of the creation signature
-        String txnString = conf.get(ValidTxnList.VALID_TXNS_KEY);
+        String txnString = crtView.getValidTxnList() != null ?
+            crtView.getValidTxnList() : conf.get(ValidTxnList.VALID_TXNS_KEY);
         oldview.getTTable().setCreationMetadata(
             generateCreationMetadata(db, crtView.getTablesUsed(),
                 txnString == null ? null : new ValidReadTxnList(txnString)));
+        setValidTxns(oldview, txnString);
         db.alterTable(crtView.getViewName(), oldview, null);
         // This is a replace/rebuild, so we need an exclusive lock
         addIfAbsentByName(new WriteEntity(oldview, WriteEntity.WriteType.DDL_EXCLUSIVE));
@@ -5160,6 +5163,7 @@ private int createView(Hive db, CreateViewDesc crtView) throws HiveException {
         tbl.getTTable().setCreationMetadata(
             generateCreationMetadata(db, crtView.getTablesUsed(),
                 txnString == null ? null : new ValidReadTxnList(txnString)));
+        setValidTxns(tbl, txnString);
       }
       db.createTable(tbl, crtView.getIfNotExists());
       addIfAbsentByName(new WriteEntity(tbl, WriteEntity.WriteType.DDL_NO_LOCK));
@@ -5171,6 +5175,18 @@ private int createView(Hive db, CreateViewDesc crtView) throws HiveException {
     return 0;
   }
 
+  /**
+   * Keeps the transactions that the materialized view was built with, for the incremental
+   * rebuilds.
+   */
+  private static void setValidTxns(Table materializedView, String txnString) {
+    if (txnString == null) {
+      materializedView.getParameters().remove(MaterializedViewIncrementalRebuild.VALID_TXNS);
+    } else {
+      materializedView.setProperty(MaterializedViewIncrementalRebuild.VALID_TXNS, txnString);
+    }
+  }
+
   private Map<String, BasicTxnInfo> generateCreationMetadata(
       Hive db, List<String> tablesUsed, ValidReadTxnList txnList)
           throws SemanticException {
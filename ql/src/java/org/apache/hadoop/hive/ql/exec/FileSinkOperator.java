@@ -860,6 +860,33 @@ protected boolean updateProgress() {
 
   protected Writable recordValue;
 
+  /**
+   * Counts the rows whose values VectorFileSinkOperator added to the column buffers of
+   * ThriftJDBCBinarySerDe, and writes their serialized batch if the buffers were full (the
+   * recordValue is then not null).
+   */
+  protected void processSerializedRows(int rows, Writable recordValue) throws HiveException {
+    runTimeNumRows += rows;
+    if (!filesCreated) {
+      createBucketFiles(fsp);
+    }
+    numRows += rows;
+    if (numRows >= cntr && LOG.isInfoEnabled()) {
+      cntr = logEveryNRows == 0 ? numRows * 10 : numRows + logEveryNRows;
+      LOG.info(toString() + ": records written - " + numRows);
+    }
+    // closeOp() writes the rows left in the column buffers to fpaths
+    fpaths = fsp;
+    updateProgress();
+    if (recordValue != null) {
+      try {
+        fpaths.outWriters[0].write(recordValue);
+      } catch (IOException e) {
+        throw new HiveException(e);
+      }
+    }
+  }
+
 
   @Override
   public void process(Object row, int tag) throws HiveException {
@@ -66,6 +66,7 @@
 import org.apache.hadoop.hive.serde2.typeinfo.TypeInfoUtils;
 import org.apache.hadoop.io.BytesWritable;
 import org.apache.hadoop.io.IntWritable;
+import org.apache.hadoop.io.LongWritable;
 import org.apache.hadoop.io.Text;
 
 import javolution.util.FastBitSet;
@@ -75,6 +76,82 @@
  */
 public class GroupByOperator extends Operator<GroupByDesc> {
 
+  /**
+   * Counters of the map side hash aggregation. Its reduction is HASH_AGGR_OUTPUT_ROWS /
+   * HASH_AGGR_INPUT_ROWS; the rows that went through while it was turned off are
+   * HASH_AGGR_BYPASSED_ROWS.
+   */
+  public static enum Counter {
+    HASH_AGGR_INPUT_ROWS,
+    HASH_AGGR_OUTPUT_ROWS,
+    HASH_AGGR_BYPASSED_ROWS,
+    HASH_AGGR_MODE_SWITCHES
+  }
+
+  /**
+   * Tracks the periods in which the hash aggregation is turned on and off, for the counters
+   * and for turning it on again after hive.map.aggr.hash.recheck.interval rows.
+   */
+  public static final class HashAggrCounters {
+
+    private final LongWritable inputRows = new LongWritable();
+    private final LongWritable outputRows = new LongWritable();
+    private final LongWritable bypassedRows = new LongWritable();
+    private final LongWritable modeSwitches = new LongWritable();
+
+    private boolean hashAggr = true;
+    // The input rows and the first output row of the current period.
+    private long periodRows;
+    private long periodStartOutputRows;
+
+    public HashAggrCounters(Map<String, LongWritable> statsMap, Configuration hconf) {
+      final String vertexName = hconf == null ? "" : hconf.get(Operator.CONTEXT_NAME_KEY, "");
+      statsMap.put(Utilities.getVertexCounterName(Counter.HASH_AGGR_INPUT_ROWS.name(), vertexName),
+          inputRows);
+      statsMap.put(Utilities.getVertexCounterName(Counter.HASH_AGGR_OUTPUT_ROWS.name(), vertexName),
+          outputRows);
+      statsMap.put(Utilities.getVertexCounterName(Counter.HASH_AGGR_BYPASSED_ROWS.name(), vertexName),
+          bypassedRows);
+      statsMap.put(Utilities.getVertexCounterName(Counter.HASH_AGGR_MODE_SWITCHES.name(), vertexName),
+          modeSwitches);
+    }
+
+    public void addInputRows(long rows) {
+      periodRows += rows;
+    }
+
+    /**
+     * @return The input rows since the hash aggregation was last turned on or off.
+     */
+    public long getPeriodRows() {
+      return periodRows;
+    }
+
+    /**
+     * @param totalOutputRows The rows forwarded by the operator so far.
+     */
+    public void switchMode(long totalOutputRows) {
+      endPeriod(totalOutputRows);
+      modeSwitches.set(modeSwitches.get() + 1);
+      hashAggr = !hashAggr;
+    }
+
+    public void close(long totalOutputRows) {
+      endPeriod(totalOutputRows);
+    }
+
+    private void endPeriod(long totalOutputRows) {
+      if (hashAggr) {
+        inputRows.set(inputRows.get() + periodRows);
+        outputRows.set(outputRows.get() + totalOutputRows - periodStartOutputRows);
+      } else {
+        bypassedRows.set(bypassedRows.get() + periodRows);
+      }
+      periodRows = 0;
+      periodStartOutputRows = totalOutputRows;
+    }
+  }
+
   private static final long serialVersionUID = 1L;
   private static final int NUMROWSESTIMATESIZE = 1000;
 
@@ -119,6 +196,9 @@ public class GroupByOperator extends Operator<GroupByDesc> {
   private transient int groupbyMapAggrInterval;
   private transient long numRowsCompareHashAggr;
   private transient float minReductionHashAggr;
+  private transient long hashAggrRecheckInterval;
+  // Only set when the operator does hash aggregation.
+  private transient HashAggrCounters hashAggrCounters;
 
   private transient int outputKeyLength;
 
@@ -391,6 +471,9 @@ protected void initializeOp(Configuration hconf) throws HiveException {
       numRowsCompareHashAggr = groupbyMapAggrInterval;
       minReductionHashAggr = HiveConf.getFloatVar(hconf,
           HiveConf.ConfVars.HIVEMAPAGGRHASHMINREDUCTION);
+      hashAggrRecheckInterval = HiveConf.getLongVar(hconf,
+          HiveConf.ConfVars.HIVEMAPAGGRHASHRECHECKINTERVAL);
+      hashAggrCounters = new HashAggrCounters(statsMap, hconf);
     }
 
     List<String> fieldNames = new ArrayList<String>(conf.getOutputColumnNames());
@@ -734,6 +817,11 @@ private void processKey(Object row,
   public void process(Object row, int tag) throws HiveException {
     firstRow = false;
     ObjectInspector rowInspector = inputObjInspectors[tag];
+    // Once turned off, hash aggregation is measured again every recheck interval rows.
+    if (hashAggrCounters != null && !hashAggr && hashAggrRecheckInterval > 0
+        && hashAggrCounters.getPeriodRows() >= hashAggrRecheckInterval) {
+      enableHashAggr();
+    }
     // Total number of input rows is needed for hash aggregation only
     if (hashAggr) {
       numRowsInput++;
@@ -748,6 +836,7 @@ public void process(Object row, int tag) throws HiveException {
               + minReductionHashAggr);
           flushHashTable(true);
           hashAggr = false;
+          hashAggrCounters.switchMode(runTimeNumRows);
         } else {
           if (LOG.isTraceEnabled()) {
             LOG.trace("Hash Aggr Enabled: #hash table = " + numRowsHashTbl
@@ -759,6 +848,11 @@ public void process(Object row, int tag) throws HiveException {
       }
     }
 
+    // Counted after the checks above, in the period of the mode that processes the row.
+    if (hashAggrCounters != null) {
+      hashAggrCounters.addInputRows(1);
+    }
+
     try {
       countAfterReport++;
       newKeys.getNewKey(row, rowInspector);
@@ -795,6 +889,22 @@ public void process(Object row, int tag) throws HiveException {
     }
   }
 
+  private void enableHashAggr() throws HiveException {
+    // The current group of the sort-based aggregation is complete, as the rows of its key that
+    // follow go to the hash table.
+    if (currentKeys != null) {
+      forward(currentKeys.getKeyArray(), aggregations);
+      currentKeys = null;
+    }
+    hashAggrCounters.switchMode(runTimeNumRows);
+    hashAggregations = new HashMap<KeyWrapper, AggregationBuffer[]>(256);
+    hashAggr = true;
+    numRowsInput = 0;
+    numRowsHashTbl = 0;
+    numRowsCompareHashAggr = groupbyMapAggrInterval;
+    LOG.info("Enable Hash Aggr again after " + hashAggrRecheckInterval + " rows");
+  }
+
   private void processHashAggr(Object row, ObjectInspector rowInspector,
       KeyWrapper newKeys) throws HiveException {
     // Prepare aggs for updating
@@ -1110,6 +1220,9 @@ public void closeOp(boolean abort) throws HiveException {
       } catch (Exception e) {
         throw new HiveException(e);
       }
+      if (hashAggrCounters != null) {
+        hashAggrCounters.close(runTimeNumRows);
+      }
     }
     hashAggregations = null;
     super.closeOp(abort);
@@ -49,6 +49,7 @@
 import org.apache.hadoop.hive.ql.exec.persistence.ObjectContainer;
 import org.apache.hadoop.hive.ql.exec.persistence.UnwrapRowContainer;
 import org.apache.hadoop.hive.ql.exec.spark.SparkUtilities;
+import org.apache.hadoop.hive.ql.exec.tez.SharedMapJoinTableCache;
 import org.apache.hadoop.hive.ql.io.HiveKey;
 import org.apache.hadoop.hive.ql.log.PerfLogger;
 import org.apache.hadoop.hive.ql.metadata.HiveException;
@@ -86,6 +87,10 @@ public class MapJoinOperator extends AbstractMapJoinOperator<MapJoinDesc> implem
 
   private transient String cacheKey;
   private transient ObjectCache cache;
+  // The cache of the hash tables shared across queries, and the hash tables acquired from it.
+  private transient String sharedCacheKey;
+  private transient SharedMapJoinTableCache sharedCache;
+  private transient Pair<MapJoinTableContainer[], MapJoinTableContainerSerDe[]> sharedTables;
 
   protected HashTableLoader loader;
 
@@ -155,6 +160,22 @@ protected void initializeOp(Configuration hconf) throws HiveException {
     cacheKey = "HASH_MAP_" + this.getOperatorId() + "_container";
     cache = ObjectCacheFactory.getCache(hconf, queryId, false);
     loader = getHashTableLoader(hconf);
+    sharedCache = conf.getSmallTableSignature() == null
+        ? null : SharedMapJoinTableCache.getInstance(hconf);
+    sharedCacheKey = null;
+    sharedTables = null;
+    if (sharedCache != null) {
+      // The files of the small tables are listed once per query in the daemon.
+      sharedCacheKey = cache.retrieve(cacheKey + "_shared_key", new Callable<String>() {
+        @Override
+        public String call() throws HiveException {
+          return SharedMapJoinTableCache.getCacheKey(conf, hconf);
+        }
+      });
+      if (sharedCacheKey == null) {
+        sharedCache = null;
+      }
+    }
 
     hashMapRowGetters = null;
 
@@ -191,16 +212,21 @@ protected void initializeOp(Configuration hconf) throws HiveException {
         LOG.debug("This is not bucket map join, so cache");
       }
 
-      Future<Pair<MapJoinTableContainer[], MapJoinTableContainerSerDe[]>> future =
-          cache.retrieveAsync(
-              cacheKey,
-              new Callable<Pair<MapJoinTableContainer[], MapJoinTableContainerSerDe[]>>() {
-                @Override
-                public Pair<MapJoinTableContainer[], MapJoinTableContainerSerDe[]> call()
-                    throws HiveException {
-                  return loadHashTable(mapContext, mrContext);
-                }
-              });
+      Callable<Pair<MapJoinTableContainer[], MapJoinTableContainerSerDe[]>> loadHashTable =
+          new Callable<Pair<MapJoinTableContainer[], MapJoinTableContainerSerDe[]>>() {
+            @Override
+            public Pair<MapJoinTableContainer[], MapJoinTableContainerSerDe[]> call()
+                throws HiveException {
+              return loadHashTable(mapContext, mrContext);
+            }
+          };
+      Future<Pair<MapJoinTableContainer[], MapJoinTableContainerSerDe[]>> future;
+      if (sharedCache != null) {
+        // The same hash tables can be used by the later queries that run in the daemon.
+        future = sharedCache.retrieveAsync(sharedCacheKey, loadHashTable);
+      } else {
+        future = cache.retrieveAsync(cacheKey, loadHashTable);
+      }
       asyncInitOperations.add(future);
     } else if (!isInputFileChangeSensitive(mapContext)) {
       loadHashTable(mapContext, mrContext);
@@ -224,6 +250,9 @@ protected void completeInitializationOp(Object[] os) throws HiveException {
 
       if (spilled) {
         // we can't use the cached table because it has spilled.
+        if (sharedCache != null) {
+          sharedCache.remove(sharedCacheKey, pair);
+        }
 
         loadHashTable(getExecContext(), MapredContext.get());
       } else {
@@ -237,6 +266,9 @@ protected void completeInitializationOp(Object[] os) throws HiveException {
         // let's use the table from the cache.
         mapJoinTables = pair.getLeft();
         mapJoinTableSerdes = pair.getRight();
+        if (sharedCache != null && sharedCache.acquire(sharedCacheKey, pair)) {
+          sharedTables = pair;
+        }
       }
       hashTblInitedOnce = true;
     }
@@ -514,66 +546,7 @@ public void closeOp(boolean abort) throws HiveException {
     // For Hybrid Grace Hash Join, we need to see if there is any spilled data to be processed next
     if (spilled) {
       if (!abort) {
-        if (hashMapRowGetters == null) {
-          hashMapRowGetters = new ReusableGetAdaptor[mapJoinTables.length];
-        }
-        int numPartitions = 0;
-        // Find out number of partitions for each small table (should be same across tables)
-        for (byte pos = 0; pos < mapJoinTables.length; pos++) {
-          if (pos != conf.getPosBigTable()) {
-            firstSmallTable = (HybridHashTableContainer) mapJoinTables[pos];
-            numPartitions = firstSmallTable.getHashPartitions().length;
-            break;
-          }
-        }
-        assert numPartitions != 0 : "Number of partitions must be greater than 0!";
-
-        if (firstSmallTable.hasSpill()) {
-          spilledMapJoinTables = new MapJoinBytesTableContainer[mapJoinTables.length];
-          hybridMapJoinLeftover = true;
-
-          // Clear all in-memory partitions first
-          for (byte pos = 0; pos < mapJoinTables.length; pos++) {
-            MapJoinTableContainer tableContainer = mapJoinTables[pos];
-            if (tableContainer != null && tableContainer instanceof HybridHashTableContainer) {
-              HybridHashTableContainer hybridHtContainer = (HybridHashTableContainer) tableContainer;
-              hybridHtContainer.dumpStats();
-
-              HashPartition[] hashPartitions = hybridHtContainer.getHashPartitions();
-              // Clear all in memory partitions first
-              for (int i = 0; i < hashPartitions.length; i++) {
-                if (!hashPartitions[i].isHashMapOnDisk()) {
-                  hybridHtContainer.setTotalInMemRowCount(
-                      hybridHtContainer.getTotalInMemRowCount() -
-                          hashPartitions[i].getHashMapFromMemory().getNumValues());
-                  hashPartitions[i].getHashMapFromMemory().clear();
-                }
-              }
-              assert hybridHtContainer.getTotalInMemRowCount() == 0;
-            }
-          }
-
-          // Reprocess the spilled data
-          for (int i = 0; i < numPartitions; i++) {
-            HashPartition[] hashPartitions = firstSmallTable.getHashPartitions();
-            if (hashPartitions[i].isHashMapOnDisk()) {
-              try {
-                continueProcess(i);     // Re-process spilled data
-              } catch (KryoException ke) {
-                LOG.error("Processing the spilled data failed due to Kryo error!");
-                LOG.error("Cleaning up all spilled data!");
-                cleanupGraceHashJoin();
-                throw new HiveException(ke);
-              } catch (Exception e) {
-                throw new HiveException(e);
-              }
-              for (byte pos = 0; pos < order.length; pos++) {
-                if (pos != conf.getPosBigTable())
-                  spilledMapJoinTables[pos] = null;
-              }
-            }
-          }
-        }
+        reProcessSpilledPartitions();
       }
 
       if (LOG.isInfoEnabled()) {
@@ -585,6 +558,11 @@ public void closeOp(boolean abort) throws HiveException {
       cache.remove(cacheKey);
     }
 
+    if (sharedTables != null) {
+      sharedCache.release(sharedCacheKey, sharedTables);
+      sharedTables = null;
+    }
+
     // in mapreduce case, we need to always clear up as mapreduce doesn't have object registry.
     if ((this.getExecContext() != null) && (this.getExecContext().getLocalWork() != null)
         && (this.getExecContext().getLocalWork().getInputFileChangeSensitive())
@@ -600,6 +578,74 @@ public void closeOp(boolean abort) throws HiveException {
     super.closeOp(abort);
   }
 
+  /**
+   * Process the spilled data of Hybrid Grace Hash Join: reload each spilled hash partition
+   * and join it with the big table rows that were spilled for it.
+   * @throws HiveException
+   */
+  protected void reProcessSpilledPartitions() throws HiveException {
+    if (hashMapRowGetters == null) {
+      hashMapRowGetters = new ReusableGetAdaptor[mapJoinTables.length];
+    }
+    int numPartitions = 0;
+    // Find out number of partitions for each small table (should be same across tables)
+    for (byte pos = 0; pos < mapJoinTables.length; pos++) {
+      if (pos != conf.getPosBigTable()) {
+        firstSmallTable = (HybridHashTableContainer) mapJoinTables[pos];
+        numPartitions = firstSmallTable.getHashPartitions().length;
+        break;
+      }
+    }
+    assert numPartitions != 0 : "Number of partitions must be greater than 0!";
+
+    if (firstSmallTable.hasSpill()) {
+      spilledMapJoinTables = new MapJoinBytesTableContainer[mapJoinTables.length];
+      hybridMapJoinLeftover = true;
+
+      // Clear all in-memory partitions first
+      for (byte pos = 0; pos < mapJoinTables.length; pos++) {
+        MapJoinTableContainer tableContainer = mapJoinTables[pos];
+        if (tableContainer != null && tableContainer instanceof HybridHashTableContainer) {
+          HybridHashTableContainer hybridHtContainer = (HybridHashTableContainer) tableContainer;
+          hybridHtContainer.dumpStats();
+
+          HashPartition[] hashPartitions = hybridHtContainer.getHashPartitions();
+          // Clear all in memory partitions first
+          for (int i = 0; i < hashPartitions.length; i++) {
+            if (!hashPartitions[i].isHashMapOnDisk()) {
+              hybridHtContainer.setTotalInMemRowCount(
+                  hybridHtContainer.getTotalInMemRowCount() -
+                      hashPartitions[i].getHashMapFromMemory().getNumValues());
+              hashPartitions[i].getHashMapFromMemory().clear();
+            }
+          }
+          assert hybridHtContainer.getTotalInMemRowCount() == 0;
+        }
+      }
+
+      // Reprocess the spilled data
+      for (int i = 0; i < numPartitions; i++) {
+        HashPartition[] hashPartitions = firstSmallTable.getHashPartitions();
+        if (hashPartitions[i].isHashMapOnDisk()) {
+          try {
+            continueProcess(i);     // Re-process spilled data
+          } catch (KryoException ke) {
+            LOG.error("Processing the spilled data failed due to Kryo error!");
+            LOG.error("Cleaning up all spilled data!");
+            cleanupGraceHashJoin();
+            throw new HiveException(ke);
+          } catch (Exception e) {
+            throw new HiveException(e);
+          }
+          for (byte pos = 0; pos < order.length; pos++) {
+            if (pos != conf.getPosBigTable())
+              spilledMapJoinTables[pos] = null;
+          }
+        }
+      }
+    }
+  }
+
   private void clearAllTableContainers() {
     if (mapJoinTables != null) {
       for (MapJoinTableContainer tableContainer : mapJoinTables) {
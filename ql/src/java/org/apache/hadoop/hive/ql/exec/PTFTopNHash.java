@@ -109,11 +109,11 @@ public int _tryStoreKey(HiveKey key, boolean partColsIsNull, int batchIndex) thr
     return r;
   }
   
-  public void storeValue(int index, int hashCode, BytesWritable value, boolean vectorized) {
+  public void storeValue(int index, int hashCode, BytesWritable value) {
     Key pk = new Key(prevIndexPartIsNull, hashCode);
     TopNHash partHeap = partitionHeaps.get(pk);
     usage = usage - partHeap.usage;
-    partHeap.storeValue(index, hashCode, value, vectorized);
+    partHeap.storeValue(index, hashCode, value);
     usage = usage + partHeap.usage;
     updateLargest(partHeap);
   }
@@ -125,6 +125,10 @@ public void flush() throws HiveException {
     }
   }
   
+  public boolean isExcluded(HiveKey key, int count) {
+    return false; // the key's partition heap decides, when the key is stored.
+  }
+
   public int startVectorizedBatch(int size) throws IOException, HiveException {
     if (!isEnabled) {
       return FORWARD; // short-circuit quickly - forward all rows
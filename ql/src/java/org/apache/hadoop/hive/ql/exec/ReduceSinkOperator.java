@@ -372,7 +372,7 @@ public void process(Object row, int tag) throws HiveException {
       } else {
         // invariant: reducerHash != null
         assert firstIndex >= 0;
-        reducerHash.storeValue(firstIndex, firstKey.hashCode(), value, false);
+        reducerHash.storeValue(firstIndex, firstKey.hashCode(), value);
       }
 
       // All other distinct keys will just be forwarded. This could be optimized...
@@ -22,8 +22,6 @@
 import java.lang.management.ManagementFactory;
 import java.lang.management.MemoryMXBean;
 import java.util.Arrays;
-import java.util.Comparator;
-import java.util.TreeMap;
 
 import org.apache.hadoop.conf.Configuration;
 import org.apache.hadoop.hive.conf.HiveConf;
@@ -34,13 +32,14 @@
 import org.apache.hadoop.hive.ql.plan.OperatorDesc;
 import org.apache.hadoop.io.BytesWritable;
 import org.apache.hadoop.io.WritableComparator;
+import org.apache.hive.common.util.HashCodeUtil;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-import com.google.common.collect.MinMaxPriorityQueue;
-
 /**
  * Stores binary key/value in sorted manner to get top-n key/value
+ * The keys and the values are kept in two contiguous byte arenas, and the heap and the hash
+ * over them only store the int indexes of the rows, so that storing a row allocates nothing.
  * TODO: rename to TopNHeap?
  */
 public class TopNHash {
@@ -58,6 +57,9 @@ public static interface BinaryCollector {
   public static final int EXCLUDE = -2; // Discard the row.
   private static final int MAY_FORWARD = -3; // Vectorized - may forward the row, not sure yet.
 
+  // Keeps the arenas addressable with int offsets, see ByteArena.
+  private static final long MAX_ARENA_USAGE = Integer.MAX_VALUE / 2;
+
   protected BinaryCollector collector;
   protected int topN;
 
@@ -65,8 +67,8 @@ public static interface BinaryCollector {
   protected long usage;
 
   // binary keys, values and hashCodes of rows, lined up by index
-  private byte[][] keys;
-  private byte[][] values;
+  private ByteArena keys;
+  private ByteArena values;
   private int[] hashes;
   private int[] distKeyLengths;
   private IndexStore indexes; // The heap over the keys, storing indexes in the array.
@@ -82,15 +84,11 @@ public static interface BinaryCollector {
 
   protected boolean isEnabled = false;
 
-  private final Comparator<Integer> C = new Comparator<Integer>() {
-    public int compare(Integer o1, Integer o2) {
-      byte[] key1 = keys[o1];
-      byte[] key2 = keys[o2];
-      int length1 = distKeyLengths[o1];
-      int length2 = distKeyLengths[o2];
-      return WritableComparator.compareBytes(key1, 0, length1, key2, 0, length2);
-    }
-  };
+  private int compare(int index1, int index2) {
+    byte[] bytes = keys.getBytes();
+    return WritableComparator.compareBytes(bytes, keys.getOffset(index1), distKeyLengths[index1],
+        bytes, keys.getOffset(index2), distKeyLengths[index2]);
+  }
 
   public void initialize(
     int topN, float memUsage, boolean isMapGroupBy, BinaryCollector collector, final OperatorDesc conf,
@@ -122,17 +120,19 @@ public void initialize(
       totalFreeMemory = conf.getMaxMemoryAvailable() - memoryUsedPerExecutor;
     }
 
-    // limit * 64 : compensation of arrays for key/value/hashcodes
-    this.threshold = (long) (memUsage * totalFreeMemory) - topN * 64L;
+    // limit * 48 : the 12 ints per row of the arenas, heap, hash, hashcodes and key lengths.
+    // The rest of the usage is the arrays of the keys and values, see updateUsage.
+    this.threshold = Math.min((long) (memUsage * totalFreeMemory) - topN * 48L, MAX_ARENA_USAGE);
     if (threshold < 0) {
       return;
     }
-    this.indexes = isMapGroupBy ? new HashForGroup() : new HashForRow();
-    this.keys = new byte[topN + 1][];
-    this.values = new byte[topN + 1][];
+    this.indexes = isMapGroupBy ? new HashForGroup(topN + 1) : new HashForRow(topN + 1);
+    this.keys = new ByteArena(topN + 1);
+    this.values = new ByteArena(topN + 1);
     this.hashes = new int[topN + 1];
     this.distKeyLengths = new int[topN + 1];
     this.evicted = topN;
+    this.usage = 0;
     this.isEnabled = true;
   }
 
@@ -152,7 +152,6 @@ public int tryStoreKey(HiveKey key, boolean partColsIsNull) throws HiveException
     }
     int index = insertKeyIntoHeap(key);
     if (index >= 0) {
-      usage += key.getLength();
       return index;
     }
     // IndexStore is trying to tell us something.
@@ -167,6 +166,35 @@ public int tryStoreKey(HiveKey key, boolean partColsIsNull) throws HiveException
   }
 
 
+  /**
+   * Checks, without storing it, whether a key is certainly excluded: the heap is full and the key
+   * is bigger than all of its keys. Vectorized callers check this once for all the rows of a
+   * batch that have the same key, and skip serializing the values of the excluded rows.
+   * @param key Serialized key.
+   * @param count The number of rows with the key.
+   * @return true if all the rows with the key should be discarded.
+   */
+  public boolean isExcluded(HiveKey key, int count) {
+    if (!isEnabled) {
+      return false;
+    }
+    if (topN == 0) {
+      return true;
+    }
+    if (usage > threshold || indexes.size() < topN) {
+      return false; // the rows have to go through the heap, which may flush.
+    }
+    int biggest = indexes.getBiggest();
+    int result = WritableComparator.compareBytes(key.getBytes(), 0, key.getDistKeyLength(),
+        keys.getBytes(), keys.getOffset(biggest), distKeyLengths[biggest]);
+    // For group by, a key equal to the biggest one is forwarded rather than excluded.
+    if (result > 0 || (result == 0 && indexes instanceof HashForRow)) {
+      excluded += count;
+      return true;
+    }
+    return false;
+  }
+
   /**
    * Perform basic checks and initialize TopNHash for the new vectorized row batch.
    * @param size batch size
@@ -215,18 +243,9 @@ public void tryStoreVectorizedKey(HiveKey key, boolean partColsIsNull, int batch
     // Assumption - batchIndex is increasing; startVectorizedBatch was called
     int size = indexes.size();
     int index = size < topN ? size : evicted;
-    keys[index] = Arrays.copyOf(key.getBytes(), key.getLength());
-    distKeyLengths[index] = key.getDistKeyLength();
-    hashes[index] = key.hashCode();
-    Integer collisionIndex = indexes.store(index);
-    if (null != collisionIndex) {
-      /*
-       * since there is a collision index will be used for the next value 
-       * so have the map point back to original index.
-       */
-      if ( indexes instanceof HashForGroup ) {
-        indexes.store(collisionIndex);
-      }
+    storeKey(index, key);
+    int collisionIndex = indexes.store(index);
+    if (collisionIndex >= 0) {
       // forward conditional on the survival of the corresponding key currently in indexes.
       ++batchNumForwards;
       batchIndexToResult[batchIndex] = MAY_FORWARD - collisionIndex;
@@ -282,7 +301,7 @@ public int getVectorizedBatchResult(int batchIndex) {
   public HiveKey getVectorizedKeyToForward(int batchIndex) {
     int index = MAY_FORWARD - batchIndexToResult[batchIndex];
     HiveKey hk = new HiveKey();
-    hk.set(keys[index], 0, keys[index].length);
+    hk.set(keys.getBytes(), keys.getOffset(index), keys.getLength(index));
     hk.setHashCode(hashes[index]);
     hk.setDistKeyLength(distKeyLengths[index]);
     return hk;
@@ -312,12 +331,10 @@ public int getVectorizedKeyHashCode(int batchIndex) {
    * @param hasCode hashCode of key, used by ptfTopNHash.
    * @param value The value to store.
    * @param keyHash The key hash to store.
-   * @param vectorized Whether the result is coming from a vectorized batch.
    */
-  public void storeValue(int index, int hashCode, BytesWritable value, boolean vectorized) {
-    values[index] = Arrays.copyOf(value.getBytes(), value.getLength());
-    // Vectorized doesn't adjust usage for the keys while processing the batch
-    usage += values[index].length + (vectorized ? keys[index].length : 0);
+  public void storeValue(int index, int hashCode, BytesWritable value) {
+    values.set(index, value.getBytes(), value.getLength(), getMaxCapacity(values));
+    updateUsage();
   }
 
   /**
@@ -352,10 +369,8 @@ private int insertKeyIntoHeap(HiveKey key) throws IOException, HiveException {
     }
     int size = indexes.size();
     int index = size < topN ? size : evicted;
-    keys[index] = Arrays.copyOf(key.getBytes(), key.getLength());
-    distKeyLengths[index] = key.getDistKeyLength();
-    hashes[index] = key.hashCode();
-    if (null != indexes.store(index)) {
+    storeKey(index, key);
+    if (indexes.store(index) >= 0) {
       // it's only for GBY which should forward all values associated with the key in the range
       // of limit. new value should be attatched with the key but in current implementation,
       // only one values is allowed. with map-aggreagtion which is true by default,
@@ -373,94 +388,288 @@ private int insertKeyIntoHeap(HiveKey key) throws IOException, HiveException {
     return index;
   }
 
+  private void storeKey(int index, HiveKey key) {
+    keys.set(index, key.getBytes(), key.getLength(), getMaxCapacity(keys));
+    distKeyLengths[index] = key.getDistKeyLength();
+    hashes[index] = key.hashCode();
+    updateUsage();
+  }
+
   // key/value of the index is removed. retrieve memory usage
   private void removed(int index) {
-    usage -= keys[index].length;
-    keys[index] = null;
-    if (values[index] != null) {
-      usage -= values[index].length;
-      values[index] = null;
-    }
+    keys.remove(index);
+    values.remove(index);
     hashes[index] = -1;
     distKeyLengths[index] = -1;
+    updateUsage();
+  }
+
+  // The usage is the memory held by the arenas, removed bytes and room to grow included.
+  private void updateUsage() {
+    usage = keys.getCapacity() + values.getCapacity();
+  }
+
+  // The capacity the arena can grow to without the usage going over the threshold. It only
+  // takes half of the room left, so that the other arena can grow too.
+  private long getMaxCapacity(ByteArena arena) {
+    return arena.getCapacity() + Math.max(0, threshold - usage) / 2;
   }
 
   private void flushInternal() throws IOException, HiveException {
-    for (int index : indexes.indexes()) {
-      if (index != evicted && values[index] != null) {
-        collector.collect(keys[index], values[index], hashes[index]);
-        usage -= values[index].length;
-        values[index] = null;
+    int[] heap = indexes.indexes();
+    for (int i = 0; i < indexes.size(); i++) {
+      int index = heap[i];
+      if (index != evicted && values.contains(index)) {
+        collector.collect(keys.copy(index), values.copy(index), hashes[index]);
+        values.remove(index);
         hashes[index] = -1;
       }
     }
+    values.shrink();
+    updateUsage();
     excluded = 0;
   }
-  
+
+  /**
+   * The bytes of the keys, or of the values, of all the rows in one array, addressed by the row
+   * index. Removing the bytes of a row leaves a hole, which is reclaimed by compacting the array
+   * once it is full, so that replacing rows in a full heap does not keep growing the array.
+   * The array is only allocated when the first bytes are stored.
+   */
+  private static final class ByteArena {
+    private static final byte[] EMPTY = new byte[0];
+    private static final int INITIAL_CAPACITY = 4096;
+    private static final int MAX_CAPACITY = Integer.MAX_VALUE - 8;
+
+    private byte[] bytes = EMPTY;
+    private final int[] offsets;
+    private final int[] lengths; // -1 when nothing is stored for the index
+    private int used; // bytes written since the last compaction, holes included
+    private int live; // bytes still stored
+
+    ByteArena(int count) {
+      offsets = new int[count];
+      lengths = new int[count];
+      Arrays.fill(lengths, -1);
+    }
+
+    /**
+     * @param maxCapacity the capacity the array may grow to; it grows beyond only if the bytes
+     *                    stored do not fit
+     */
+    void set(int index, byte[] src, int length, long maxCapacity) {
+      remove(index);
+      if (used + length > bytes.length) {
+        compact(length, maxCapacity);
+      }
+      System.arraycopy(src, 0, bytes, used, length);
+      offsets[index] = used;
+      lengths[index] = length;
+      used += length;
+      live += length;
+    }
+
+    void remove(int index) {
+      if (lengths[index] >= 0) {
+        live -= lengths[index];
+        lengths[index] = -1;
+        if (live == 0) {
+          used = 0;
+        }
+      }
+    }
+
+    boolean contains(int index) {
+      return lengths[index] >= 0;
+    }
+
+    byte[] getBytes() {
+      return bytes;
+    }
+
+    int getOffset(int index) {
+      return offsets[index];
+    }
+
+    int getLength(int index) {
+      return lengths[index];
+    }
+
+    byte[] copy(int index) {
+      return Arrays.copyOfRange(bytes, offsets[index], offsets[index] + lengths[index]);
+    }
+
+    long getCapacity() {
+      return bytes.length;
+    }
+
+    // Gives the memory back once everything has been removed.
+    void shrink() {
+      if (live == 0) {
+        bytes = EMPTY;
+      }
+    }
+
+    // Moves the stored bytes to a new array with room for as many more bytes, or for as many as
+    // maxCapacity allows, so that it is sized exactly to the bytes needed near maxCapacity.
+    private void compact(int length, long maxCapacity) {
+      long needed = (long) live + length;
+      long capacity =
+          Math.max(needed, Math.min(Math.max(INITIAL_CAPACITY, needed * 2), maxCapacity));
+      capacity = Math.min(MAX_CAPACITY, capacity);
+      byte[] compacted = new byte[(int) capacity];
+      int position = 0;
+      for (int index = 0; index < lengths.length; index++) {
+        if (lengths[index] >= 0) {
+          System.arraycopy(bytes, offsets[index], compacted, position, lengths[index]);
+          offsets[index] = position;
+          position += lengths[index];
+        }
+      }
+      bytes = compacted;
+      used = position;
+    }
+  }
+
   private interface IndexStore {
     int size();
     /**
-     * @return the index which caused the item to be rejected; or null if accepted
+     * @return the index which caused the item to be rejected; or -1 if accepted
      */
-    Integer store(int index);
+    int store(int index);
+    int getBiggest();
     int removeBiggest();
-    Iterable<Integer> indexes();
+    /**
+     * @return the stored indexes, in no particular order, in the first size() entries.
+     */
+    int[] indexes();
   }
 
   /**
-   * for order by, same keys are counted (For 1-2-2-3-4, limit 3 is 1-2-2)
-   * MinMaxPriorityQueue is used because it alows duplication and fast access to biggest one
+   * A binary max-heap of row indexes, ordered by their keys.
    */
-  private class HashForRow implements IndexStore {
-    private final MinMaxPriorityQueue<Integer> indexes = MinMaxPriorityQueue.orderedBy(C).create();
+  private class IndexHeap {
+    protected final int[] heap;
+    protected int size;
+
+    IndexHeap(int capacity) {
+      heap = new int[capacity];
+    }
 
     public int size() {
-      return indexes.size();
+      return size;
     }
 
-    // returns null always
-    public Integer store(int index) {
-      boolean result = indexes.add(index);
-      assert result;
-      return null;
+    public int[] indexes() {
+      return heap;
     }
 
-    public int removeBiggest() {
-      return indexes.removeLast();
+    public int getBiggest() {
+      return heap[0];
     }
 
-    public Iterable<Integer> indexes() {
-      Integer[] array = indexes.toArray(new Integer[indexes.size()]);
-      Arrays.sort(array, 0, array.length, C);
-      return Arrays.asList(array);
+    protected void add(int index) {
+      int position = size++;
+      while (position > 0) {
+        int parent = (position - 1) >>> 1;
+        if (compare(heap[parent], index) >= 0) {
+          break;
+        }
+        heap[position] = heap[parent];
+        position = parent;
+      }
+      heap[position] = index;
+    }
+
+    protected int poll() {
+      int biggest = heap[0];
+      int last = heap[--size];
+      int position = 0;
+      int half = size >>> 1;
+      while (position < half) {
+        int child = 2 * position + 1;
+        if (child + 1 < size && compare(heap[child + 1], heap[child]) > 0) {
+          child++;
+        }
+        if (compare(last, heap[child]) >= 0) {
+          break;
+        }
+        heap[position] = heap[child];
+        position = child;
+      }
+      heap[position] = last;
+      return biggest;
     }
   }
 
   /**
-   * for group by, same keys are not counted (For 1-2-2-3-4, limit 3 is 1-2-(2)-3)
-   * simple TreeMap is used because group by does not need keep duplicated keys
+   * for order by, same keys are counted (For 1-2-2-3-4, limit 3 is 1-2-2)
+   * a max-heap is used because it allows duplication and fast access to biggest one
    */
-  private class HashForGroup implements IndexStore {
-    // TreeSet anyway uses TreeMap; so use plain TreeMap to be able to get value in collisions.
-    private final TreeMap<Integer, Integer> indexes = new TreeMap<Integer, Integer>(C);
+  private class HashForRow extends IndexHeap implements IndexStore {
 
-    public int size() {
-      return indexes.size();
+    HashForRow(int capacity) {
+      super(capacity);
     }
 
-    // returns false if index already exists in map
-    public Integer store(int index) {
-      return indexes.put(index, index);
+    // returns -1 always
+    public int store(int index) {
+      add(index);
+      return -1;
     }
 
     public int removeBiggest() {
-      Integer last = indexes.lastKey();
-      indexes.remove(last);
-      return last;
+      return poll();
     }
+  }
 
-    public Iterable<Integer> indexes() {
-      return indexes.keySet();
+  /**
+   * for group by, same keys are not counted (For 1-2-2-3-4, limit 3 is 1-2-(2)-3)
+   * the max-heap is paired with a chained hash of the keys to find the duplicated ones
+   */
+  private class HashForGroup extends IndexHeap implements IndexStore {
+    private final int[] buckets; // first index in each bucket, or -1
+    private final int[] next; // next index in the same bucket, or -1
+    private final int[] keyHashes;
+
+    HashForGroup(int capacity) {
+      super(capacity);
+      buckets = new int[Integer.highestOneBit(Math.max(capacity, 1)) << 1];
+      Arrays.fill(buckets, -1);
+      next = new int[capacity];
+      keyHashes = new int[capacity];
+    }
+
+    // returns the index with the same key if there is one already
+    public int store(int index) {
+      int keyHash = HashCodeUtil.murmurHash(keys.getBytes(), keys.getOffset(index),
+          distKeyLengths[index]);
+      int bucket = keyHash & (buckets.length - 1);
+      for (int other = buckets[bucket]; other >= 0; other = next[other]) {
+        if (keyHashes[other] == keyHash && compare(other, index) == 0) {
+          return other;
+        }
+      }
+      keyHashes[index] = keyHash;
+      next[index] = buckets[bucket];
+      buckets[bucket] = index;
+      add(index);
+      return -1;
+    }
+
+    public int removeBiggest() {
+      int biggest = poll();
+      int bucket = keyHashes[biggest] & (buckets.length - 1);
+      if (buckets[bucket] == biggest) {
+        buckets[bucket] = next[biggest];
+      } else {
+        int previous = buckets[bucket];
+        while (next[previous] != biggest) {
+          previous = next[previous];
+        }
+        next[previous] = next[biggest];
+      }
+      return biggest;
     }
   }
 }
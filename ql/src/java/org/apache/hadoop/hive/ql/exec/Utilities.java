@@ -76,6 +76,7 @@
 import com.google.common.util.concurrent.ThreadFactoryBuilder;
 
 import org.apache.commons.codec.binary.Base64;
+import org.apache.commons.codec.digest.DigestUtils;
 import org.apache.commons.collections.CollectionUtils;
 import org.apache.commons.collections.MapUtils;
 import org.apache.commons.lang.StringUtils;
@@ -1452,6 +1453,33 @@ public static FileStatus[] listStatusIfExists(Path path, FileSystem fs) throws I
     }
   }
 
+  /**
+   * @return A digest of the paths, lengths and modification times of the files under the
+   *         locations, which changes with any write to them, including a truncate or an
+   *         overwrite with the same file names
+   */
+  public static String getFilesFingerprint(Configuration conf, Collection<String> locations)
+      throws IOException {
+    StringBuilder sb = new StringBuilder();
+    for (String location : locations) {
+      Path path = new Path(location);
+      FileSystem fs = path.getFileSystem(conf);
+      FileStatus status = FileUtils.getFileStatusOrNull(fs, path);
+      sb.append(location).append(status == null ? " missing\n" : "\n");
+      if (status == null) {
+        continue;
+      }
+      List<FileStatus> files = new ArrayList<FileStatus>();
+      FileUtils.listStatusRecursively(fs, status, files);
+      Collections.sort(files);
+      for (FileStatus file : files) {
+        sb.append(file.getPath()).append(' ').append(file.getLen())
+            .append(' ').append(file.getModificationTime()).append('\n');
+      }
+    }
+    return DigestUtils.sha256Hex(sb.toString());
+  }
+
   public static void mvFileToFinalPath(Path specPath, Configuration hconf,
       boolean success, Logger log, DynamicPartitionCtx dpCtx, FileSinkDesc conf,
       Reporter reporter) throws IOException,
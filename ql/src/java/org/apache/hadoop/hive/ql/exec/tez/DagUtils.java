@@ -444,11 +444,14 @@ private EdgeProperty createEdgeProperty(Vertex w, TezEdgeProperty edgeProp,
     default:
       assert partitionerClassName != null;
       partitionerConf = createPartitionerConf(partitionerClassName, conf);
+      String comparatorClassName =
+          HiveConf.getBoolVar(conf, HiveConf.ConfVars.TEZ_SHUFFLE_NORMALIZED_KEY_PREFIX)
+              ? NormalizedKeyComparator.class.getName() : TezBytesComparator.class.getName();
       OrderedPartitionedKVEdgeConfig et5Conf = OrderedPartitionedKVEdgeConfig
           .newBuilder(keyClass, valClass, MRPartitioner.class.getName(), partitionerConf)
           .setFromConfiguration(conf)
           .setKeySerializationClass(TezBytesWritableSerialization.class.getName(),
-              TezBytesComparator.class.getName(), null)
+              comparatorClassName, null)
           .setValueSerializationClass(TezBytesWritableSerialization.class.getName(), null)
           .build();
       return et5Conf.createDefaultEdgeProperty();
@@ -25,5 +25,6 @@ public enum HiveInputCounters {
   RAW_INPUT_SPLITS,
   GROUPED_INPUT_SPLITS,
   INPUT_FILES,
-  INPUT_DIRECTORIES
+  INPUT_DIRECTORIES,
+  SPLIT_GENERATION_TIME_MS
 }
\ No newline at end of file
@@ -25,6 +25,7 @@
 import java.util.Comparator;
 import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
 
 import com.google.common.base.Preconditions;
@@ -40,6 +41,7 @@
 import org.apache.hadoop.hive.common.JavaUtils;
 import org.apache.hadoop.hive.conf.HiveConf;
 import org.apache.hadoop.hive.ql.exec.Utilities;
+import org.apache.hadoop.hive.ql.io.HiveInputFormat;
 import org.apache.hadoop.hive.ql.plan.MapWork;
 import org.apache.hadoop.hive.serde2.SerDeException;
 import org.apache.hadoop.hive.shims.ShimLoader;
@@ -235,6 +237,15 @@ public List<Event> initialize() throws Exception {
           }
           counterName = Utilities.getVertexCounterName(HiveInputCounters.INPUT_FILES.name(), vertexName);
           tezCounters.findCounter(groupName, counterName).increment(files.size());
+          if (inputFormat instanceof HiveInputFormat) {
+            // One counter per table, e.g. SPLIT_GENERATION_TIME_MS_default.t_Map_1
+            for (Map.Entry<String, Long> entry :
+                ((HiveInputFormat<?, ?>) inputFormat).getSplitGenerationTimes().entrySet()) {
+              counterName = Utilities.getVertexCounterName(
+                  HiveInputCounters.SPLIT_GENERATION_TIME_MS.name() + "_" + entry.getKey(), vertexName);
+              tezCounters.findCounter(groupName, counterName).increment(entry.getValue());
+            }
+          }
         }
 
         if (work.getIncludedBuckets() != null) {
@@ -0,0 +1,94 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.hadoop.hive.ql.exec.tez;
+
+import org.apache.hadoop.io.BytesWritable;
+import org.apache.hadoop.io.WritableComparator;
+import org.apache.tez.runtime.library.common.comparator.ProxyComparator;
+
+/**
+ * Comparator for the binary sortable shuffle keys that gives the pipelined sorter a normalized
+ * key prefix.
+ *
+ * The sorter keeps a 32 bit proxy per record next to the partition and only compares the key
+ * bytes when the proxies are equal. The proxy of TezBytesComparator is made of the first 3 bytes
+ * of the key, so after the sorter drops the low bits to make room for the partition it is left
+ * with the null marker of the first column and a few bits of its value. Here the first byte,
+ * which is a (possibly inverted) null marker for binary sortable keys, is packed into 2 bits and
+ * the following 30 bits of the key fill the rest of the proxy.
+ *
+ * The proxy only has to be order preserving: proxy(a) < proxy(b) implies a < b. Ties, and any
+ * other leading byte, fall back to comparing the bytes, which compareBytes does 8 bytes at a
+ * time.
+ */
+public final class NormalizedKeyComparator extends WritableComparator
+    implements ProxyComparator<BytesWritable> {
+
+  private static final int MARKER_BITS = 2;
+
+  private static final int VALUE_BITS = Integer.SIZE - MARKER_BITS;
+
+  public NormalizedKeyComparator() {
+    super(BytesWritable.class);
+  }
+
+  @Override
+  public int compare(byte[] b1, int s1, int l1, byte[] b2, int s2, int l2) {
+    return compareBytes(b1, s1, l1, b2, s2, l2);
+  }
+
+  @Override
+  public int getProxy(BytesWritable key) {
+    return getProxy(key.getBytes(), key.getLength());
+  }
+
+  /**
+   * The proxy is compared as an unsigned int by the sorter.
+   */
+  static int getProxy(byte[] bytes, int length) {
+    if (length == 0) {
+      return 0;
+    }
+    int marker;
+    switch (bytes[0]) {
+    case 0x00:
+      marker = 0;
+      break;
+    case 0x01:
+      marker = 1;
+      break;
+    case (byte) 0xFE:
+      marker = 2;
+      break;
+    case (byte) 0xFF:
+      marker = 3;
+      break;
+    default:
+      // Not a null marker; the bytes between 0x01 and 0xFE share the smallest proxy of 0xFE,
+      // which keeps the proxy order preserving.
+      return 2 << VALUE_BITS;
+    }
+    // Big endian value of the next 4 bytes, zero padded, keeping the top 30 bits.
+    long value = 0;
+    for (int i = 1; i <= 4; i++) {
+      value = (value << 8) | (i < length ? bytes[i] & 0xFF : 0);
+    }
+    return (marker << VALUE_BITS) | (int) (value >>> MARKER_BITS);
+  }
+}
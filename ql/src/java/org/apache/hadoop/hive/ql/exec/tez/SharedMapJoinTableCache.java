@@ -0,0 +1,338 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.hadoop.hive.ql.exec.tez;
+
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.locks.ReentrantLock;
+
+import org.apache.commons.lang3.tuple.Pair;
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.hive.conf.HiveConf;
+import org.apache.hadoop.hive.conf.HiveConf.ConfVars;
+import org.apache.hadoop.hive.llap.io.api.LlapProxy;
+import org.apache.hadoop.hive.ql.exec.Utilities;
+import org.apache.hadoop.hive.ql.exec.persistence.MapJoinTableContainer;
+import org.apache.hadoop.hive.ql.exec.persistence.MapJoinTableContainerSerDe;
+import org.apache.hadoop.hive.ql.metadata.HiveException;
+import org.apache.hadoop.hive.ql.plan.MapJoinDesc;
+import org.apache.hadoop.hive.ql.plan.VectorMapJoinDesc;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.google.common.annotations.VisibleForTesting;
+
+/**
+ * SharedMapJoinTableCache. The map join hash tables that an LLAP daemon keeps across queries.
+ *
+ * The per query object cache already shares the hash tables of a map join between the tasks of a
+ * query that run in the daemon. The hash tables of the map joins with a small table signature
+ * (see SharedMapJoinTableSignature) are kept here instead, so that the later queries that build
+ * the same hash tables from the same table data find them already loaded.
+ *
+ * The tasks acquire the hash tables they use and release them when they close. The hash tables
+ * that no task uses are evicted, least recently used first, while the total estimated size of the
+ * hash tables is over hive.llap.mapjoin.shared.cache.size.
+ */
+public class SharedMapJoinTableCache {
+
+  private static final Logger LOG =
+      LoggerFactory.getLogger(SharedMapJoinTableCache.class.getName());
+
+  private static ExecutorService staticPool = Executors.newCachedThreadPool();
+
+  private static SharedMapJoinTableCache instance;
+
+  private static class Entry {
+    final Pair<MapJoinTableContainer[], MapJoinTableContainerSerDe[]> value;
+    final long size;
+    int refCount;
+
+    Entry(Pair<MapJoinTableContainer[], MapJoinTableContainerSerDe[]> value, long size) {
+      this.value = value;
+      this.size = size;
+    }
+  }
+
+  private final long maxSize;
+
+  private long totalSize = 0;
+
+  // In access order, so that the first entries are the least recently used ones.
+  private final LinkedHashMap<String, Entry> entries =
+      new LinkedHashMap<String, Entry>(16, 0.75f, true);
+
+  private final Map<String, ReentrantLock> locks = new HashMap<String, ReentrantLock>();
+
+  private final ReentrantLock lock = new ReentrantLock();
+
+  @VisibleForTesting
+  SharedMapJoinTableCache(long maxSize) {
+    this.maxSize = maxSize;
+  }
+
+  /**
+   * @return The cache of the LLAP daemon, or null when the tasks do not run in an LLAP daemon or
+   *         the cache is disabled.
+   */
+  public static synchronized SharedMapJoinTableCache getInstance(Configuration conf) {
+    if (instance == null && LlapProxy.isDaemon()) {
+      long maxSize = HiveConf.getSizeVar(conf, ConfVars.LLAP_MAPJOIN_SHARED_CACHE_SIZE);
+      if (maxSize > 0) {
+        LOG.info("Sharing up to " + maxSize + " bytes of map join hash tables across queries");
+        instance = new SharedMapJoinTableCache(maxSize);
+      }
+    }
+    return instance;
+  }
+
+  /**
+   * @return The key of the hash tables of the map join, or null when they can not be shared
+   *         across queries. The key identifies the files of the small tables, which are listed.
+   */
+  public static String getCacheKey(MapJoinDesc desc, Configuration conf) throws HiveException {
+    String signature = desc.getSmallTableSignature();
+    if (signature == null || desc.getSmallTableLocations() == null) {
+      return null;
+    }
+    // The hash table implementation depends on the operator and the configuration.
+    StringBuilder sb = new StringBuilder();
+    if (desc.getVectorDesc() instanceof VectorMapJoinDesc) {
+      VectorMapJoinDesc vectorDesc = (VectorMapJoinDesc) desc.getVectorDesc();
+      sb.append("vector ").append(vectorDesc.getHashTableImplementationType())
+          .append(' ').append(vectorDesc.getHashTableKind())
+          .append(' ').append(vectorDesc.getHashTableKeyType())
+          .append(' ').append(vectorDesc.getVectorMapJoinVariation())
+          .append(' ').append(vectorDesc.getIsVectorizationMapJoinNativeEnabled())
+          .append(' ').append(vectorDesc.getIsFastHashTableEnabled());
+    } else {
+      sb.append("row");
+    }
+    sb.append(' ').append(HiveConf.getBoolVar(conf, ConfVars.HIVEMAPJOINUSEOPTIMIZEDTABLE))
+        .append(' ').append(HiveConf.getBoolVar(conf, ConfVars.HIVEUSEHYBRIDGRACEHASHJOIN))
+        .append("; ").append(signature);
+    try {
+      sb.append("; files ").append(Utilities.getFilesFingerprint(conf,
+          desc.getSmallTableLocations()));
+    } catch (IOException e) {
+      throw new HiveException("Error listing the files of the map join small tables", e);
+    }
+    return sb.toString();
+  }
+
+  /**
+   * Returns the cached hash tables for the key, or loads and caches them. The hash tables are
+   * loaded once at a time for a key, by the first caller.
+   */
+  public Pair<MapJoinTableContainer[], MapJoinTableContainerSerDe[]> retrieve(String key,
+      Callable<Pair<MapJoinTableContainer[], MapJoinTableContainerSerDe[]>> fn)
+      throws HiveException {
+
+    ReentrantLock objectLock = null;
+
+    lock.lock();
+    try {
+      Entry entry = entries.get(key);
+      if (entry != null) {
+        if (LOG.isDebugEnabled()) {
+          LOG.debug("Found " + key + " in cache");
+        }
+        return entry.value;
+      }
+
+      objectLock = locks.get(key);
+      if (objectLock == null) {
+        objectLock = new ReentrantLock();
+        locks.put(key, objectLock);
+      }
+    } finally {
+      lock.unlock();
+    }
+
+    objectLock.lock();
+    try {
+      lock.lock();
+      try {
+        Entry entry = entries.get(key);
+        if (entry != null) {
+          if (LOG.isDebugEnabled()) {
+            LOG.debug("Found " + key + " in cache");
+          }
+          return entry.value;
+        }
+      } finally {
+        lock.unlock();
+      }
+
+      Pair<MapJoinTableContainer[], MapJoinTableContainerSerDe[]> value;
+      try {
+        value = fn.call();
+      } catch (Exception e) {
+        throw new HiveException(e);
+      }
+
+      lock.lock();
+      try {
+        Entry entry = new Entry(value, getEstimatedSize(value));
+        if (LOG.isDebugEnabled()) {
+          LOG.debug("Caching new hash tables of " + entry.size + " bytes for key: " + key);
+        }
+        entries.put(key, entry);
+        totalSize += entry.size;
+        locks.remove(key);
+        // The new hash tables are not evicted before the task that loaded them acquires them.
+        evict(key);
+      } finally {
+        lock.unlock();
+      }
+      return value;
+    } finally {
+      objectLock.unlock();
+    }
+  }
+
+  public Future<Pair<MapJoinTableContainer[], MapJoinTableContainerSerDe[]>> retrieveAsync(
+      final String key,
+      final Callable<Pair<MapJoinTableContainer[], MapJoinTableContainerSerDe[]>> fn) {
+    return staticPool.submit(
+        new Callable<Pair<MapJoinTableContainer[], MapJoinTableContainerSerDe[]>>() {
+          @Override
+          public Pair<MapJoinTableContainer[], MapJoinTableContainerSerDe[]> call()
+              throws Exception {
+            return retrieve(key, fn);
+          }
+        });
+  }
+
+  /**
+   * Keeps the hash tables in the cache until they are released.
+   * @return false when the hash tables are not in the cache anymore; they can still be used, and
+   *         they must not be released.
+   */
+  public boolean acquire(String key,
+      Pair<MapJoinTableContainer[], MapJoinTableContainerSerDe[]> value) {
+    lock.lock();
+    try {
+      Entry entry = entries.get(key);
+      if (entry == null || entry.value != value) {
+        return false;
+      }
+      entry.refCount++;
+      return true;
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  /**
+   * Releases the hash tables acquired by a task.
+   */
+  public void release(String key,
+      Pair<MapJoinTableContainer[], MapJoinTableContainerSerDe[]> value) {
+    lock.lock();
+    try {
+      Entry entry = entries.get(key);
+      if (entry != null && entry.value == value && entry.refCount > 0) {
+        entry.refCount--;
+        evict(null);
+      }
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  /**
+   * Removes the hash tables from the cache, when they can not be used by the other tasks.
+   */
+  public void remove(String key,
+      Pair<MapJoinTableContainer[], MapJoinTableContainerSerDe[]> value) {
+    lock.lock();
+    try {
+      Entry entry = entries.get(key);
+      if (entry != null && entry.value == value) {
+        if (LOG.isDebugEnabled()) {
+          LOG.debug("Removing key: " + key);
+        }
+        entries.remove(key);
+        totalSize -= entry.size;
+      }
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  @VisibleForTesting
+  long getTotalSize() {
+    lock.lock();
+    try {
+      return totalSize;
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  @VisibleForTesting
+  boolean contains(String key) {
+    lock.lock();
+    try {
+      return entries.containsKey(key);
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  /**
+   * Evicts the least recently used hash tables that no task uses, until the cache fits its size.
+   * The evicted hash tables are not cleared: a task may still be about to acquire them.
+   */
+  private void evict(String newKey) {
+    Iterator<Map.Entry<String, Entry>> it = entries.entrySet().iterator();
+    while (totalSize > maxSize && it.hasNext()) {
+      Map.Entry<String, Entry> next = it.next();
+      Entry entry = next.getValue();
+      if (entry.refCount == 0 && !next.getKey().equals(newKey)) {
+        if (LOG.isDebugEnabled()) {
+          LOG.debug("Evicting " + entry.size + " bytes of hash tables for key: " + next.getKey());
+        }
+        it.remove();
+        totalSize -= entry.size;
+      }
+    }
+  }
+
+  private static long getEstimatedSize(
+      Pair<MapJoinTableContainer[], MapJoinTableContainerSerDe[]> value) {
+    long size = 0;
+    if (value != null && value.getLeft() != null) {
+      for (MapJoinTableContainer container : value.getLeft()) {
+        if (container != null) {
+          size += container.getEstimatedMemorySize();
+        }
+      }
+    }
+    return size;
+  }
+}
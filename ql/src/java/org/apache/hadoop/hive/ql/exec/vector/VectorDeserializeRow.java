@@ -796,10 +796,9 @@ private void storeListRowColumn(ColumnVector colVector,
     int listLength = 0;
     while (deserializeRead.isNextComplexMultiValue()) {
 
-      // Ensure child size.
+      // Ensure child size.  The list or map may be longer than the child capacity by itself.
       final int childCapacity = listColVector.child.isNull.length;
-      final int childCount = listColVector.childCount;
-      if (childCapacity < childCount / 0.75) {
+      if (childCapacity < offset / 0.75) {
         listColVector.child.ensureSize(childCapacity * 2, true);
       }
 
@@ -827,10 +826,9 @@ private void storeMapRowColumn(ColumnVector colVector,
     int keyValueCount = 0;
     while (deserializeRead.isNextComplexMultiValue()) {
 
-      // Ensure child size.
+      // Ensure child size.  The list or map may be longer than the child capacity by itself.
       final int childCapacity = mapColVector.keys.isNull.length;
-      final int childCount = mapColVector.childCount;
-      if (childCapacity < childCount / 0.75) {
+      if (childCapacity < offset / 0.75) {
         mapColVector.keys.ensureSize(childCapacity * 2, true);
         mapColVector.values.ensureSize(childCapacity * 2, true);
       }
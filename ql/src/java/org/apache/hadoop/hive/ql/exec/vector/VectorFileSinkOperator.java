@@ -18,15 +18,26 @@
 
 package org.apache.hadoop.hive.ql.exec.vector;
 
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
 import org.apache.hadoop.conf.Configuration;
 import org.apache.hadoop.hive.ql.CompilationOpContext;
 import org.apache.hadoop.hive.ql.exec.FileSinkOperator;
+import org.apache.hadoop.hive.ql.io.AcidUtils;
 import org.apache.hadoop.hive.ql.metadata.HiveException;
 import org.apache.hadoop.hive.ql.plan.FileSinkDesc;
 import org.apache.hadoop.hive.ql.plan.OperatorDesc;
 import org.apache.hadoop.hive.ql.plan.VectorDesc;
 import org.apache.hadoop.hive.ql.plan.VectorFileSinkDesc;
+import org.apache.hadoop.hive.serde2.SerDeException;
+import org.apache.hadoop.hive.serde2.objectinspector.ObjectInspector;
+import org.apache.hadoop.hive.serde2.objectinspector.PrimitiveObjectInspector;
+import org.apache.hadoop.hive.serde2.objectinspector.StructField;
 import org.apache.hadoop.hive.serde2.objectinspector.StructObjectInspector;
+import org.apache.hadoop.hive.serde2.thrift.ColumnBuffer;
+import org.apache.hadoop.hive.serde2.thrift.ThriftJDBCBinarySerDe;
+import org.apache.hadoop.hive.serde2.thrift.Type;
 
 import com.google.common.annotations.VisibleForTesting;
 
@@ -51,6 +62,11 @@ public class VectorFileSinkOperator extends FileSinkOperator
 
   protected transient Object[] singleRow;
 
+  // Set when the batches are added to the column buffers of the final results, without rows
+  private transient ThriftJDBCBinarySerDe thriftSerDe;
+
+  private transient int[] projectedColumns;
+
   public VectorFileSinkOperator(CompilationOpContext ctx, OperatorDesc conf,
       VectorizationContext vContext, VectorDesc vectorDesc) {
     this(ctx);
@@ -84,11 +100,65 @@ protected void initializeOp(Configuration hconf) throws HiveException {
     super.initializeOp(hconf);
 
     firstBatch = true;
+
+    thriftSerDe = null;
+    if (conf.isUsingThriftJDBCBinarySerDe() && serializer instanceof ThriftJDBCBinarySerDe
+        && !bDynParts && lbCtx == null && !multiFileSpray
+        && conf.getWriteType() == AcidUtils.Operation.NOT_ACID
+        && canAddColumns((StructObjectInspector) inputObjInspectors[0])) {
+      thriftSerDe = (ThriftJDBCBinarySerDe) serializer;
+      projectedColumns = new int[vContext.getProjectedColumns().size()];
+      for (int i = 0; i < projectedColumns.length; i++) {
+        projectedColumns[i] = vContext.getProjectedColumns().get(i);
+      }
+    }
+  }
+
+  /**
+   * @return Whether the values of all the columns can be added to the column buffers of
+   *         ThriftJDBCBinarySerDe as they are in the batches; the other types are converted to
+   *         their thrift payload from rows.
+   */
+  private static boolean canAddColumns(StructObjectInspector structObjectInspector) {
+    for (StructField field : structObjectInspector.getAllStructFieldRefs()) {
+      ObjectInspector objectInspector = field.getFieldObjectInspector();
+      if (objectInspector.getCategory() != ObjectInspector.Category.PRIMITIVE) {
+        return false;
+      }
+      switch (((PrimitiveObjectInspector) objectInspector).getPrimitiveCategory()) {
+      case BOOLEAN:
+      case BYTE:
+      case SHORT:
+      case INT:
+      case LONG:
+      case FLOAT:
+      case DOUBLE:
+      case STRING:
+      case VARCHAR:
+      case BINARY:
+        break;
+      default:
+        return false;
+      }
+    }
+    return true;
   }
 
   @Override
   public void process(Object data, int tag) throws HiveException {
     VectorizedRowBatch batch = (VectorizedRowBatch) data;
+    if (thriftSerDe != null) {
+      long bytes = 0;
+      for (int i = 0; i < projectedColumns.length; i++) {
+        bytes += addColumn(batch, batch.cols[projectedColumns[i]], thriftSerDe.getColumnBuffer(i));
+      }
+      try {
+        processSerializedRows(batch.size, thriftSerDe.addedRows(batch.size, bytes));
+      } catch (SerDeException e) {
+        throw new HiveException(e);
+      }
+      return;
+    }
     if (firstBatch) {
       vectorExtractRow = new VectorExtractRow();
       vectorExtractRow.init((StructObjectInspector) inputObjInspectors[0], vContext.getProjectedColumns());
@@ -113,6 +183,65 @@ public void process(Object data, int tag) throws HiveException {
     }
   }
 
+  /**
+   * @return The length of the string and binary values added.
+   */
+  @VisibleForTesting
+  static long addColumn(VectorizedRowBatch batch, ColumnVector colVector,
+      ColumnBuffer columnBuffer) {
+    long bytes = 0;
+    if (colVector instanceof LongColumnVector) {
+      long[] vector = ((LongColumnVector) colVector).vector;
+      for (int logical = 0; logical < batch.size; logical++) {
+        int index = getIndex(batch, colVector, logical);
+        if (index < 0) {
+          columnBuffer.addNull();
+        } else {
+          columnBuffer.addLong(vector[index]);
+        }
+      }
+    } else if (colVector instanceof DoubleColumnVector) {
+      double[] vector = ((DoubleColumnVector) colVector).vector;
+      for (int logical = 0; logical < batch.size; logical++) {
+        int index = getIndex(batch, colVector, logical);
+        if (index < 0) {
+          columnBuffer.addNull();
+        } else {
+          columnBuffer.addDouble(vector[index]);
+        }
+      }
+    } else {
+      BytesColumnVector bytesColVector = (BytesColumnVector) colVector;
+      boolean isBinary = columnBuffer.getType() == Type.BINARY_TYPE;
+      for (int logical = 0; logical < batch.size; logical++) {
+        int index = getIndex(batch, colVector, logical);
+        if (index < 0) {
+          columnBuffer.addNull();
+        } else {
+          byte[] buffer = bytesColVector.vector[index];
+          int start = bytesColVector.start[index];
+          int length = bytesColVector.length[index];
+          if (isBinary) {
+            bytes += columnBuffer.addValue(Arrays.copyOfRange(buffer, start, start + length));
+          } else {
+            bytes += columnBuffer.addValue(
+                new String(buffer, start, length, StandardCharsets.UTF_8));
+          }
+        }
+      }
+    }
+    return bytes;
+  }
+
+  /**
+   * @return The index of the value of a row in the column vector, or -1 if the value is null.
+   */
+  private static int getIndex(VectorizedRowBatch batch, ColumnVector colVector, int logical) {
+    int index = colVector.isRepeating ? 0
+        : (batch.selectedInUse ? batch.selected[logical] : logical);
+    return !colVector.noNulls && colVector.isNull[index] ? -1 : index;
+  }
+
   @Override
   public VectorDesc getVectorDesc() {
     return vectorDesc;
@@ -18,6 +18,7 @@
 
 package org.apache.hadoop.hive.ql.exec.vector;
 
+import java.io.IOException;
 import java.lang.management.ManagementFactory;
 import java.lang.management.MemoryMXBean;
 import java.lang.ref.SoftReference;
@@ -42,7 +43,12 @@
 import org.apache.hadoop.hive.ql.exec.vector.expressions.VectorExpressionWriter;
 import org.apache.hadoop.hive.ql.exec.vector.expressions.VectorExpressionWriterFactory;
 import org.apache.hadoop.hive.ql.exec.vector.expressions.aggregates.VectorAggregateExpression;
+import org.apache.hadoop.hive.ql.exec.vector.groupby.VectorGroupByFastBytesHashTable;
+import org.apache.hadoop.hive.ql.exec.vector.groupby.VectorGroupByFastHashTable;
+import org.apache.hadoop.hive.ql.exec.vector.groupby.VectorGroupByFastLongHashTable;
+import org.apache.hadoop.hive.ql.exec.vector.rowbytescontainer.VectorRowBytesContainer;
 import org.apache.hadoop.hive.ql.metadata.HiveException;
+import org.apache.hadoop.hive.ql.metadata.HiveUtils;
 import org.apache.hadoop.hive.ql.plan.ExprNodeDesc;
 import org.apache.hadoop.hive.ql.plan.GroupByDesc;
 import org.apache.hadoop.hive.ql.plan.OperatorDesc;
@@ -50,11 +56,19 @@
 import org.apache.hadoop.hive.ql.plan.VectorGroupByDesc;
 import org.apache.hadoop.hive.ql.plan.api.OperatorType;
 import org.apache.hadoop.hive.ql.util.JavaDataModel;
+import org.apache.hadoop.hive.serde2.ByteStream.Output;
+import org.apache.hadoop.hive.serde2.WriteBuffers;
+import org.apache.hadoop.hive.serde2.binarysortable.fast.BinarySortableDeserializeRead;
+import org.apache.hadoop.hive.serde2.binarysortable.fast.BinarySortableSerializeWrite;
+import org.apache.hadoop.hive.serde2.lazybinary.fast.LazyBinaryDeserializeRead;
+import org.apache.hadoop.hive.serde2.lazybinary.fast.LazyBinarySerializeWrite;
 import org.apache.hadoop.hive.serde2.objectinspector.ObjectInspector;
 import org.apache.hadoop.hive.serde2.objectinspector.ObjectInspectorFactory;
+import org.apache.hadoop.hive.serde2.objectinspector.ObjectInspector.Category;
 import org.apache.hadoop.hive.serde2.typeinfo.TypeInfo;
 import org.apache.hadoop.hive.serde2.typeinfo.TypeInfoUtils;
 import org.apache.hadoop.io.DataOutputBuffer;
+import org.apache.hive.common.util.HashCodeUtil;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -628,6 +642,698 @@ private void checkHashModeEfficiency() throws HiveException {
     }
   }
 
+  /**
+   * Hash Aggregate mode processing using the open-addressing fast hash tables.
+   *
+   * There are no per-key objects: a single long key lives in a long array, a single string key
+   * or multiple keys (BinarySortable serialized) live in a WriteBuffers arena.  The memory of the
+   * hash table is computed exactly from its arrays plus the fixed (and sampled variable) size of
+   * the aggregation buffers, so flushing is deterministic -- there is no GC canary.  A partial flush
+   * emits the oldest entries.
+   *
+   * When spilling is enabled, the keys are split by hash code into partitions each with its own
+   * hash table.  Under memory pressure the largest partition is emitted once and marked spilled:
+   * from then on the input rows of that partition are serialized to a local disk row container
+   * instead of being aggregated.  At close the spilled partitions are read back and re-aggregated
+   * one at a time, so a key is emitted at most twice no matter how many keys there are.  The last
+   * partition still in memory is never spilled; it falls back to the partial flush.
+   */
+  private class ProcessingModeFastHashAggregate extends ProcessingModeBase {
+
+    /**
+     * One hash table per partition.  There is a single partition when spilling is disabled.
+     */
+    private VectorGroupByFastHashTable[] hashTables;
+    private VectorGroupByFastLongHashTable[] longHashTables;
+    private VectorGroupByFastBytesHashTable[] bytesHashTables;
+
+    private int partitionMask;
+
+    /**
+     * The key column for a single key, or -1 for multiple (serialized) keys.
+     */
+    private int singleKeyColumnNum;
+
+    private VectorSerializeRow<BinarySortableSerializeWrite> keyVectorSerializeWrite;
+    private Output currentKeyOutput;
+
+    private VectorDeserializeRow<BinarySortableDeserializeRead> keyVectorDeserializeRow;
+
+    private WriteBuffers.ByteSegmentRef keyRef;
+
+    /**
+     * Fixed memory of one entry's aggregation buffers.
+     */
+    private long aggregationFixedSize;
+
+    /**
+     * Average variable memory of one entry's aggregation buffers.
+     */
+    private int avgAggregationVariableSize;
+
+    private int numEntriesSinceCheck;
+    private long sumBatchSize;
+    private long lastModeCheckRowCount;
+
+    private int maxHtEntries;
+    private int checkInterval;
+    private float percentEntriesToFlush;
+    private float minReductionHashAggr;
+    private long numRowsCompareHashAggr;
+
+    private int initialCapacity;
+    private float loadFactor;
+    private int writeBuffersSize;
+
+    /**
+     * Spilling state.  Input rows of a spilled partition are serialized (LazyBinary) into the
+     * partition's row bytes container and aggregated into a throw-away buffer.
+     */
+    private boolean isSpillEnabled;
+    private boolean hasSpilled;
+    private boolean isReplaying;
+    private boolean[] spilledPartitions;
+    private VectorRowBytesContainer[] partitionRowBytesContainers;
+    private String spillLocalDirs;
+    private VectorSerializeRow<LazyBinarySerializeWrite> spillVectorSerializeRow;
+    private VectorDeserializeRow<LazyBinaryDeserializeRead> spillVectorDeserializeRow;
+    private VectorizedRowBatch spillReplayBatch;
+    private VectorAggregationBufferRow spilledRowsAggregationBuffer;
+
+    @Override
+    public void initialize(Configuration hconf) throws HiveException {
+      // hconf is null in unit testing
+      int partitionCount = 1;
+      if (null != hconf) {
+        this.percentEntriesToFlush = HiveConf.getFloatVar(hconf,
+            HiveConf.ConfVars.HIVE_VECTORIZATION_GROUPBY_FLUSH_PERCENT);
+        this.checkInterval = HiveConf.getIntVar(hconf,
+            HiveConf.ConfVars.HIVE_VECTORIZATION_GROUPBY_CHECKINTERVAL);
+        this.maxHtEntries = HiveConf.getIntVar(hconf,
+            HiveConf.ConfVars.HIVE_VECTORIZATION_GROUPBY_MAXENTRIES);
+        this.minReductionHashAggr = HiveConf.getFloatVar(hconf,
+            HiveConf.ConfVars.HIVEMAPAGGRHASHMINREDUCTION);
+        this.numRowsCompareHashAggr = HiveConf.getIntVar(hconf,
+            HiveConf.ConfVars.HIVEGROUPBYMAPINTERVAL);
+        writeBuffersSize = HiveConf.getIntVar(hconf, HiveConf.ConfVars.HIVEHASHTABLEWBSIZE);
+        loadFactor = HiveConf.getFloatVar(hconf, HiveConf.ConfVars.HIVEHASHTABLELOADFACTOR);
+        if (HiveConf.getBoolVar(hconf, HiveConf.ConfVars.HIVE_VECTORIZATION_GROUPBY_SPILL_ENABLED)) {
+          isSpillEnabled = setupSpillSerDe();
+        }
+        if (isSpillEnabled) {
+          partitionCount = HiveConf.getIntVar(hconf,
+              HiveConf.ConfVars.HIVE_VECTORIZATION_GROUPBY_SPILL_PARTITIONS);
+          partitionCount = (Integer.bitCount(partitionCount) == 1)
+              ? partitionCount : Integer.highestOneBit(partitionCount) << 1;
+          spillLocalDirs = HiveUtils.getLocalDirList(hconf);
+          spilledPartitions = new boolean[partitionCount];
+          partitionRowBytesContainers = new VectorRowBytesContainer[partitionCount];
+        }
+      } else {
+        this.percentEntriesToFlush =
+            HiveConf.ConfVars.HIVE_VECTORIZATION_GROUPBY_FLUSH_PERCENT.defaultFloatVal;
+        this.checkInterval =
+            HiveConf.ConfVars.HIVE_VECTORIZATION_GROUPBY_CHECKINTERVAL.defaultIntVal;
+        this.maxHtEntries =
+            HiveConf.ConfVars.HIVE_VECTORIZATION_GROUPBY_MAXENTRIES.defaultIntVal;
+        this.minReductionHashAggr =
+            HiveConf.ConfVars.HIVEMAPAGGRHASHMINREDUCTION.defaultFloatVal;
+        this.numRowsCompareHashAggr =
+            HiveConf.ConfVars.HIVEGROUPBYMAPINTERVAL.defaultIntVal;
+        writeBuffersSize = HiveConf.ConfVars.HIVEHASHTABLEWBSIZE.defaultIntVal;
+        loadFactor = HiveConf.ConfVars.HIVEHASHTABLELOADFACTOR.defaultFloatVal;
+      }
+
+      initialCapacity = VectorizedRowBatch.DEFAULT_SIZE;
+      if (keyExpressions.length == 1 &&
+          keyExpressions[0].getOutputColumnVectorType() == ColumnVector.Type.LONG) {
+        singleKeyColumnNum = keyExpressions[0].getOutputColumnNum();
+        longHashTables = new VectorGroupByFastLongHashTable[partitionCount];
+      } else {
+        if (keyExpressions.length == 1 &&
+            keyExpressions[0].getOutputColumnVectorType() == ColumnVector.Type.BYTES) {
+          singleKeyColumnNum = keyExpressions[0].getOutputColumnNum();
+        } else {
+          singleKeyColumnNum = -1;
+          final int keyCount = keyExpressions.length;
+          TypeInfo[] keyTypeInfos = new TypeInfo[keyCount];
+          int[] keyColumnMap = new int[keyCount];
+          for (int i = 0; i < keyCount; i++) {
+            keyTypeInfos[i] = keyExpressions[i].getOutputTypeInfo();
+            keyColumnMap[i] = keyExpressions[i].getOutputColumnNum();
+          }
+          keyVectorSerializeWrite =
+              new VectorSerializeRow<BinarySortableSerializeWrite>(
+                  new BinarySortableSerializeWrite(keyCount));
+          keyVectorSerializeWrite.init(keyTypeInfos, keyColumnMap);
+          currentKeyOutput = new Output();
+
+          // The keys are the first output columns.
+          keyVectorDeserializeRow =
+              new VectorDeserializeRow<BinarySortableDeserializeRead>(
+                  new BinarySortableDeserializeRead(keyTypeInfos, /* useExternalBuffer */ false));
+          keyVectorDeserializeRow.init(0);
+        }
+        bytesHashTables = new VectorGroupByFastBytesHashTable[partitionCount];
+        keyRef = new WriteBuffers.ByteSegmentRef();
+      }
+      hashTables = new VectorGroupByFastHashTable[partitionCount];
+      for (int partition = 0; partition < partitionCount; partition++) {
+        createPartitionHashTable(partition);
+      }
+      partitionMask = partitionCount - 1;
+
+      aggregationFixedSize = aggregationBatchInfo.getAggregatorsFixedSize();
+      sumBatchSize = 0;
+
+      computeFastHashMemoryLimits();
+      LOG.info("using fast hash aggregation processing mode with " +
+          hashTables[0].getClass().getSimpleName() +
+          (isSpillEnabled ? " and " + partitionCount + " spillable partitions" : ""));
+    }
+
+    private void createPartitionHashTable(int partition) {
+      if (longHashTables != null) {
+        longHashTables[partition] =
+            new VectorGroupByFastLongHashTable(initialCapacity, loadFactor);
+        hashTables[partition] = longHashTables[partition];
+      } else {
+        bytesHashTables[partition] =
+            new VectorGroupByFastBytesHashTable(initialCapacity, loadFactor, writeBuffersSize);
+        hashTables[partition] = bytesHashTables[partition];
+      }
+    }
+
+    /**
+     * Sets up the LazyBinary serialization of the input rows of spilled partitions.  Like the
+     * MapJoin spill, the row is the projected input columns.  Returns false (no spilling) when a
+     * column cannot be serialized.
+     */
+    private boolean setupSpillSerDe() throws HiveException {
+      List<Integer> projectedColumns = vContext.getProjectedColumns();
+      final int projectionSize = projectedColumns.size();
+      TypeInfo[] spillTypeInfos = new TypeInfo[projectionSize];
+      int[] spillProjection = new int[projectionSize];
+      for (int i = 0; i < projectionSize; i++) {
+        final int projectedColumn = projectedColumns.get(i);
+        TypeInfo typeInfo = vContext.getTypeInfo(projectedColumn);
+        if (typeInfo.getCategory() != Category.PRIMITIVE ||
+            vContext.getDataTypePhysicalVariation(projectedColumn) ==
+                DataTypePhysicalVariation.DECIMAL_64) {
+          LOG.info("Vectorized GROUP BY spilling is disabled because of input column type " +
+              typeInfo);
+          return false;
+        }
+        spillTypeInfos[i] = typeInfo;
+        spillProjection[i] = projectedColumn;
+      }
+
+      spillVectorSerializeRow =
+          new VectorSerializeRow<LazyBinarySerializeWrite>(
+              new LazyBinarySerializeWrite(projectionSize));
+      spillVectorSerializeRow.init(spillTypeInfos, spillProjection);
+
+      spillVectorDeserializeRow =
+          new VectorDeserializeRow<LazyBinaryDeserializeRead>(
+              new LazyBinaryDeserializeRead(spillTypeInfos, /* useExternalBuffer */ true));
+      spillVectorDeserializeRow.init(spillProjection);
+      return true;
+    }
+
+    private void computeFastHashMemoryLimits() {
+      MemoryMXBean memoryMXBean = ManagementFactory.getMemoryMXBean();
+      maxMemory = memoryMXBean.getHeapMemoryUsage().getMax();
+      memoryThreshold = conf.getMemoryThreshold();
+      // Tests may leave this unitialized, so better set it to 1
+      if (memoryThreshold == 0.0f) {
+        memoryThreshold = 1.0f;
+      }
+      maxHashTblMemory = (long)(maxMemory * memoryThreshold);
+    }
+
+    @Override
+    public void doProcessBatch(VectorizedRowBatch batch, boolean isFirstGroupingSet,
+        boolean[] currentGroupingSetsOverrideIsNulls) throws HiveException {
+
+      // Evaluate the key expressions.  (Grouping sets are not supported by this mode).
+      for (int i = 0; i < keyExpressions.length; ++i) {
+        keyExpressions[i].evaluate(batch);
+      }
+
+      // Locate (or add) the hash table entry for each row.
+      prepareFastBatchAggregationBufferSets(batch);
+
+      // Evaluate the aggregators.
+      processAggregators(batch);
+
+      if (sumBatchSize == 0 || numEntriesSinceCheck >= checkInterval) {
+        // Sample the current batch for the variable size of the aggregation buffers.
+        updateAvgAggregationVariableSize(batch);
+        numEntriesSinceCheck = 0;
+      }
+
+      // The rows of spilled partitions were aggregated into a throw-away buffer.
+      if (spilledRowsAggregationBuffer != null) {
+        spilledRowsAggregationBuffer.reset();
+      }
+
+      // Spill or flush until we are under the memory threshold.
+      int preFlushEntriesCount = getEntryCount();
+      while (shouldFlush()) {
+        if (spillLargestPartition(batch)) {
+          continue;
+        }
+        flush(false);
+
+        // Validate that some progress is being made
+        if (!(getEntryCount() < preFlushEntriesCount)) {
+          break;
+        }
+        preFlushEntriesCount = getEntryCount();
+      }
+
+      sumBatchSize += batch.size;
+      lastModeCheckRowCount += batch.size;
+
+      // Check if we should turn into streaming mode.  Once a partition is spilled its rows must
+      // be re-aggregated at close, so we stay in this mode.
+      if (!hasSpilled) {
+        checkFastHashModeEfficiency();
+      }
+    }
+
+    @Override
+    public void close(boolean aborted) throws HiveException {
+      if (!aborted) {
+        flush(true);
+        if (hasSpilled) {
+          reaggregateSpilledPartitions();
+        }
+      }
+      for (int partition = 0; partition < hashTables.length; partition++) {
+        hashTables[partition].logStats(getName());
+        if (partitionRowBytesContainers != null &&
+            partitionRowBytesContainers[partition] != null) {
+          partitionRowBytesContainers[partition].clear();
+          partitionRowBytesContainers[partition] = null;
+        }
+      }
+    }
+
+    private int getPartition(int hashCode) {
+      // Re-mix the hash code so the partition is independent of the hash table slot bits.
+      return (partitionMask == 0) ? 0 : HashCodeUtil.calculateIntHashCode(hashCode) & partitionMask;
+    }
+
+    private void prepareFastBatchAggregationBufferSets(VectorizedRowBatch batch)
+        throws HiveException {
+
+      // The aggregation batch vector needs to know when we start a new batch
+      // to bump its internal version.
+      aggregationBatchInfo.startBatch();
+
+      final int size = batch.size;
+      if (size == 0) {
+        return;
+      }
+      final boolean selectedInUse = batch.selectedInUse;
+      final int[] selected = batch.selected;
+
+      if (longHashTables != null) {
+        LongColumnVector keyColVector = (LongColumnVector) batch.cols[singleKeyColumnNum];
+        final long[] vector = keyColVector.vector;
+        final boolean[] isNull = keyColVector.isNull;
+        if (keyColVector.isRepeating) {
+          final boolean isNullKey = !keyColVector.noNulls && isNull[0];
+          final int hashCode = isNullKey ? 0 : HashCodeUtil.calculateLongHashCode(vector[0]);
+          final int partition = getPartition(hashCode);
+          if (isPartitionSpilled(partition)) {
+            for (int logical = 0; logical < size; logical++) {
+              final int batchIndex = (selectedInUse ? selected[logical] : logical);
+              aggregationBatchInfo.mapAggregationBufferSet(
+                  spillRow(batch, batchIndex, partition), logical);
+            }
+            return;
+          }
+          final int entry = isNullKey ? hashTables[partition].findOrAddNull() :
+              longHashTables[partition].findOrAdd(vector[0], hashCode);
+          VectorAggregationBufferRow aggregationBuffer =
+              getEntryAggregationBuffer(partition, entry);
+          for (int logical = 0; logical < size; logical++) {
+            aggregationBatchInfo.mapAggregationBufferSet(aggregationBuffer, logical);
+          }
+          return;
+        }
+        for (int logical = 0; logical < size; logical++) {
+          final int batchIndex = (selectedInUse ? selected[logical] : logical);
+          final boolean isNullKey = !keyColVector.noNulls && isNull[batchIndex];
+          final int hashCode =
+              isNullKey ? 0 : HashCodeUtil.calculateLongHashCode(vector[batchIndex]);
+          final int partition = getPartition(hashCode);
+          VectorAggregationBufferRow aggregationBuffer;
+          if (isPartitionSpilled(partition)) {
+            aggregationBuffer = spillRow(batch, batchIndex, partition);
+          } else {
+            final int entry = isNullKey ? hashTables[partition].findOrAddNull() :
+                longHashTables[partition].findOrAdd(vector[batchIndex], hashCode);
+            aggregationBuffer = getEntryAggregationBuffer(partition, entry);
+          }
+          aggregationBatchInfo.mapAggregationBufferSet(aggregationBuffer, logical);
+        }
+      } else if (singleKeyColumnNum != -1) {
+        BytesColumnVector keyColVector = (BytesColumnVector) batch.cols[singleKeyColumnNum];
+        final byte[][] vector = keyColVector.vector;
+        final int[] start = keyColVector.start;
+        final int[] length = keyColVector.length;
+        final boolean[] isNull = keyColVector.isNull;
+        for (int logical = 0; logical < size; logical++) {
+          final int batchIndex = (selectedInUse ? selected[logical] : logical);
+          final int keyIndex = (keyColVector.isRepeating ? 0 : batchIndex);
+          final boolean isNullKey = !keyColVector.noNulls && isNull[keyIndex];
+          final int hashCode = isNullKey ? 0 : HashCodeUtil.calculateBytesHashCode(
+              vector[keyIndex], start[keyIndex], length[keyIndex]);
+          final int partition = getPartition(hashCode);
+          VectorAggregationBufferRow aggregationBuffer;
+          if (isPartitionSpilled(partition)) {
+            aggregationBuffer = spillRow(batch, batchIndex, partition);
+          } else {
+            final int entry = isNullKey ? hashTables[partition].findOrAddNull() :
+                bytesHashTables[partition].findOrAdd(
+                    vector[keyIndex], start[keyIndex], length[keyIndex], hashCode);
+            aggregationBuffer = getEntryAggregationBuffer(partition, entry);
+          }
+          aggregationBatchInfo.mapAggregationBufferSet(aggregationBuffer, logical);
+        }
+      } else {
+        try {
+          for (int logical = 0; logical < size; logical++) {
+            final int batchIndex = (selectedInUse ? selected[logical] : logical);
+            keyVectorSerializeWrite.setOutput(currentKeyOutput);
+            keyVectorSerializeWrite.serializeWrite(batch, batchIndex);
+            final byte[] keyBytes = currentKeyOutput.getData();
+            final int keyLength = currentKeyOutput.getLength();
+            final int hashCode = HashCodeUtil.calculateBytesHashCode(keyBytes, 0, keyLength);
+            final int partition = getPartition(hashCode);
+            VectorAggregationBufferRow aggregationBuffer;
+            if (isPartitionSpilled(partition)) {
+              aggregationBuffer = spillRow(batch, batchIndex, partition);
+            } else {
+              final int entry =
+                  bytesHashTables[partition].findOrAdd(keyBytes, 0, keyLength, hashCode);
+              aggregationBuffer = getEntryAggregationBuffer(partition, entry);
+            }
+            aggregationBatchInfo.mapAggregationBufferSet(aggregationBuffer, logical);
+          }
+        } catch (IOException e) {
+          throw new HiveException(e);
+        }
+      }
+    }
+
+    /**
+     * Returns the aggregation buffers of an entry found by findOrAdd.  A new entry reuses a row
+     * recycled by an earlier flush when one is available.
+     */
+    private VectorAggregationBufferRow getEntryAggregationBuffer(int partition, int entry)
+        throws HiveException {
+      VectorGroupByFastHashTable hashTable = hashTables[partition];
+      if (entry >= 0) {
+        return hashTable.getAggregation(entry);
+      }
+      final int newEntry = -entry - 1;
+      VectorAggregationBufferRow aggregationBuffer = hashTable.getAggregation(newEntry);
+      if (aggregationBuffer == null) {
+        aggregationBuffer = allocateAggregationBuffer();
+        hashTable.setAggregation(newEntry, aggregationBuffer);
+      }
+      numEntriesSinceCheck++;
+      return aggregationBuffer;
+    }
+
+    private boolean isPartitionSpilled(int partition) {
+      return hasSpilled && spilledPartitions[partition];
+    }
+
+    /**
+     * Writes an input row of a spilled partition to the partition's row container.  Returns the
+     * throw-away buffer the aggregators will evaluate the row into.
+     */
+    private VectorAggregationBufferRow spillRow(VectorizedRowBatch batch, int batchIndex,
+        int partition) throws HiveException {
+      VectorRowBytesContainer rowBytesContainer = partitionRowBytesContainers[partition];
+      try {
+        Output output = rowBytesContainer.getOuputForRowBytes();
+        spillVectorSerializeRow.setOutputAppend(output);
+        spillVectorSerializeRow.serializeWrite(batch, batchIndex);
+        rowBytesContainer.finishRow();
+      } catch (IOException e) {
+        throw new HiveException(e);
+      }
+      if (spilledRowsAggregationBuffer == null) {
+        spilledRowsAggregationBuffer = allocateAggregationBuffer();
+      }
+      return spilledRowsAggregationBuffer;
+    }
+
+    /**
+     * Under memory pressure, emits and spills the largest partition still in memory.  Returns
+     * false when spilling is not possible and the caller should do a partial flush instead.
+     */
+    private boolean spillLargestPartition(VectorizedRowBatch batch) throws HiveException {
+      if (!isSpillEnabled || isReplaying) {
+        return false;
+      }
+      int inMemoryCount = 0;
+      int largestPartition = -1;
+      for (int partition = 0; partition < hashTables.length; partition++) {
+        if (spilledPartitions[partition]) {
+          continue;
+        }
+        inMemoryCount++;
+        if (largestPartition == -1 ||
+            hashTables[partition].size() > hashTables[largestPartition].size()) {
+          largestPartition = partition;
+        }
+      }
+      if (inMemoryCount <= 1 || hashTables[largestPartition].size() == 0) {
+        return false;
+      }
+
+      if (LOG.isDebugEnabled()) {
+        LOG.debug(String.format("Spill partition %d entries:%d (used:%dMb max:%dMb)",
+            largestPartition, hashTables[largestPartition].size(),
+            getHashTableMemorySize()/1024/1024, maxHashTblMemory/1024/1024));
+      }
+      if (spillReplayBatch == null) {
+        spillReplayBatch = VectorizedBatchUtil.makeLike(batch);
+      }
+
+      // The entries aggregated so far go out now; the rest of the partition's rows go to disk.
+      flushPartition(largestPartition, true);
+      createPartitionHashTable(largestPartition);
+      partitionRowBytesContainers[largestPartition] = new VectorRowBytesContainer(spillLocalDirs);
+      spilledPartitions[largestPartition] = true;
+      hasSpilled = true;
+      numEntriesHashTable = getEntryCount();
+      return true;
+    }
+
+    /**
+     * Reads back the rows of each spilled partition and aggregates them with the partition alone
+     * in memory.
+     */
+    private void reaggregateSpilledPartitions() throws HiveException {
+      isReplaying = true;
+      for (int partition = 0; partition < hashTables.length; partition++) {
+        if (!spilledPartitions[partition]) {
+          continue;
+        }
+        spilledPartitions[partition] = false;
+        VectorRowBytesContainer rowBytesContainer = partitionRowBytesContainers[partition];
+
+        int rowCount = 0;
+        try {
+          rowBytesContainer.prepareForReading();
+          while (rowBytesContainer.readNext()) {
+            rowCount++;
+            spillVectorDeserializeRow.setBytes(rowBytesContainer.currentBytes(),
+                rowBytesContainer.currentOffset(), rowBytesContainer.currentLength());
+            try {
+              spillVectorDeserializeRow.deserialize(spillReplayBatch, spillReplayBatch.size);
+            } catch (Exception e) {
+              throw new HiveException(
+                  "\nDeserializeRead detail: " +
+                      spillVectorDeserializeRow.getDetailedReadPositionString(),
+                  e);
+            }
+            spillReplayBatch.size++;
+            if (spillReplayBatch.size == VectorizedRowBatch.DEFAULT_SIZE) {
+              doProcessBatch(spillReplayBatch, false, null);
+              spillReplayBatch.reset();
+            }
+          }
+          if (spillReplayBatch.size > 0) {
+            doProcessBatch(spillReplayBatch, false, null);
+            spillReplayBatch.reset();
+          }
+        } catch (IOException e) {
+          throw new HiveException(e);
+        }
+        flushPartition(partition, true);
+        rowBytesContainer.clear();
+        partitionRowBytesContainers[partition] = null;
+
+        LOG.info("Re-aggregated spilled partition " + partition + " with " + rowCount + " rows");
+      }
+      isReplaying = false;
+    }
+
+    private int getEntryCount() {
+      int entryCount = 0;
+      for (VectorGroupByFastHashTable hashTable : hashTables) {
+        entryCount += hashTable.size();
+      }
+      return entryCount;
+    }
+
+    private long getHashTableMemorySize() {
+      long size = 0;
+      for (VectorGroupByFastHashTable hashTable : hashTables) {
+        size += hashTable.getEstimatedMemorySize() +
+            hashTable.size() * (aggregationFixedSize + avgAggregationVariableSize);
+      }
+      return size;
+    }
+
+    private boolean shouldFlush() {
+      numEntriesHashTable = getEntryCount();
+      return numEntriesHashTable > maxHtEntries ||
+          getHashTableMemorySize() > maxHashTblMemory;
+    }
+
+    private void updateAvgAggregationVariableSize(VectorizedRowBatch batch) {
+      if (batch.size == 0) {
+        return;
+      }
+      final int aggVariableSize = aggregationBatchInfo.getVariableSize(batch.size);
+      avgAggregationVariableSize = (int)((avgAggregationVariableSize * sumBatchSize + aggVariableSize) /
+          (sumBatchSize + batch.size));
+    }
+
+    /**
+     * Flushes the oldest entries of the hash table by emitting output (forward).
+     * When parameter 'all' is true all the entries are flushed, otherwise the oldest entries of the
+     * largest partition.
+     */
+    private void flush(boolean all) throws HiveException {
+      if (all) {
+        for (int partition = 0; partition < hashTables.length; partition++) {
+          flushPartition(partition, true);
+        }
+      } else {
+        int largestPartition = 0;
+        for (int partition = 1; partition < hashTables.length; partition++) {
+          if (hashTables[partition].size() > hashTables[largestPartition].size()) {
+            largestPartition = partition;
+          }
+        }
+        flushPartition(largestPartition, false);
+      }
+      numEntriesHashTable = getEntryCount();
+    }
+
+    private void flushPartition(int partition, boolean all) throws HiveException {
+      VectorGroupByFastHashTable hashTable = hashTables[partition];
+      final int entryCount = hashTable.size();
+      if (entryCount == 0) {
+        return;
+      }
+      final int entriesToFlush = all ? entryCount :
+          Math.max(1, (int)(entryCount * percentEntriesToFlush));
+
+      if (LOG.isDebugEnabled()) {
+        LOG.debug(String.format(
+            "Flush %d %s entries:%d (used:%dMb max:%dMb)",
+            entriesToFlush, all ? "(all)" : "", entryCount,
+            getHashTableMemorySize()/1024/1024, maxHashTblMemory/1024/1024));
+      }
+
+      for (int entry = 0; entry < entriesToFlush; entry++) {
+        writeEntryRow(partition, entry);
+      }
+      if (all) {
+        hashTable.clear();
+      } else {
+        hashTable.removeOldest(entriesToFlush);
+      }
+    }
+
+    /**
+     * Emits a single row made from the key and the aggregation buffers of a hash table entry.
+     */
+    private void writeEntryRow(int partition, int entry) throws HiveException {
+      final int batchIndex = outputBatch.size;
+
+      VectorGroupByFastHashTable hashTable = hashTables[partition];
+      if (hashTable.isNullEntry(entry)) {
+        ColumnVector keyColVector = outputBatch.cols[0];
+        keyColVector.noNulls = false;
+        keyColVector.isNull[batchIndex] = true;
+      } else if (longHashTables != null) {
+        LongColumnVector keyColVector = (LongColumnVector) outputBatch.cols[0];
+        keyColVector.isNull[batchIndex] = false;
+        keyColVector.vector[batchIndex] = longHashTables[partition].getKey(entry);
+      } else {
+        bytesHashTables[partition].getKey(entry, keyRef);
+        if (singleKeyColumnNum != -1) {
+          BytesColumnVector keyColVector = (BytesColumnVector) outputBatch.cols[0];
+          keyColVector.isNull[batchIndex] = false;
+          keyColVector.setVal(
+              batchIndex, keyRef.getBytes(), (int) keyRef.getOffset(), keyRef.getLength());
+        } else {
+          keyVectorDeserializeRow.setBytes(
+              keyRef.getBytes(), (int) keyRef.getOffset(), keyRef.getLength());
+          try {
+            keyVectorDeserializeRow.deserialize(outputBatch, batchIndex);
+          } catch (IOException e) {
+            throw new HiveException(e);
+          }
+        }
+      }
+
+      VectorAggregationBufferRow agg = hashTable.getAggregation(entry);
+      int colNum = outputKeyLength;
+      for (int i = 0; i < aggregators.length; ++i) {
+        aggregators[i].assignRowColumn(outputBatch, batchIndex, colNum++,
+            agg.getAggregationBuffer(i));
+      }
+      ++outputBatch.size;
+      if (outputBatch.size == VectorizedRowBatch.DEFAULT_SIZE) {
+        flushOutput();
+      }
+    }
+
+    /**
+     * Checks if the HT reduces the number of entries by at least minReductionHashAggr factor
+     * @throws HiveException
+     */
+    private void checkFastHashModeEfficiency() throws HiveException {
+      if (lastModeCheckRowCount > numRowsCompareHashAggr) {
+        lastModeCheckRowCount = 0;
+        final int entryCount = getEntryCount();
+        if (LOG.isDebugEnabled()) {
+          LOG.debug(String.format("checkFastHashModeEfficiency: HT:%d RC:%d MIN:%d",
+              entryCount, sumBatchSize, (long)(sumBatchSize * minReductionHashAggr)));
+        }
+        if (entryCount > sumBatchSize * minReductionHashAggr) {
+          flush(true);
+
+          changeToStreamingMode();
+        }
+      }
+    }
+  }
+
   /**
    * Streaming processing mode on ALREADY GROUPED data. Each input VectorizedRowBatch may
    * have a mix of different keys.  Intermediate values are flushed each time key changes.
@@ -867,6 +1573,15 @@ public void close(boolean aborted) throws HiveException {
    */
   private transient IProcessingMode processingMode;
 
+  /**
+   * For the hash processing modes, the hash aggregation that is turned on again after
+   * hive.map.aggr.hash.recheck.interval rows of streaming, and its counters.
+   */
+  private transient boolean useFastHashTable;
+  private transient Configuration hashModeConf;
+  private transient long hashAggrRecheckInterval;
+  private transient GroupByOperator.HashAggrCounters hashAggrCounters;
+
   private static final long serialVersionUID = 1L;
 
   public VectorGroupByOperator(CompilationOpContext ctx, OperatorDesc conf,
@@ -1055,7 +1770,13 @@ protected void initializeOp(Configuration hconf) throws HiveException {
       processingMode = this.new ProcessingModeGlobalAggregate();
       break;
     case HASH:
-      processingMode = this.new ProcessingModeHashAggregate();
+      useFastHashTable = canUseFastHashTable(hconf);
+      hashModeConf = hconf;
+      hashAggrRecheckInterval = hconf == null ?
+          HiveConf.ConfVars.HIVEMAPAGGRHASHRECHECKINTERVAL.defaultLongVal :
+          HiveConf.getLongVar(hconf, HiveConf.ConfVars.HIVEMAPAGGRHASHRECHECKINTERVAL);
+      hashAggrCounters = new GroupByOperator.HashAggrCounters(statsMap, hconf);
+      processingMode = newHashProcessingMode();
       break;
     case MERGE_PARTIAL:
       Preconditions.checkState(!groupingSetsPresent);
@@ -1071,6 +1792,37 @@ protected void initializeOp(Configuration hconf) throws HiveException {
     processingMode.initialize(hconf);
   }
 
+  /**
+   * The fast hash tables handle a single long key, a single string key or multiple primitive keys
+   * that can be BinarySortable serialized.  Grouping sets still use the KeyWrapper hash map.
+   */
+  private boolean canUseFastHashTable(Configuration hconf) throws HiveException {
+    if (hconf == null ||
+        !HiveConf.getBoolVar(hconf,
+            HiveConf.ConfVars.HIVE_VECTORIZATION_GROUPBY_FAST_HASHTABLE_ENABLED)) {
+      return false;
+    }
+    if (groupingSetsPresent || keyExpressions.length == 0 ||
+        outputKeyLength != keyExpressions.length) {
+      return false;
+    }
+    for (VectorExpression keyExpression : keyExpressions) {
+      if (keyExpression.getOutputTypeInfo().getCategory() != Category.PRIMITIVE ||
+          keyExpression.getOutputColumnVectorType() == ColumnVector.Type.DECIMAL_64) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  private IProcessingMode newHashProcessingMode() {
+    if (useFastHashTable) {
+      return this.new ProcessingModeFastHashAggregate();
+    } else {
+      return this.new ProcessingModeHashAggregate();
+    }
+  }
+
   /**
    * changes the processing mode to streaming
    * This is done at the request of the hash agg mode, if the number of keys
@@ -1078,11 +1830,21 @@ protected void initializeOp(Configuration hconf) throws HiveException {
    * @throws HiveException
    */
   private void changeToStreamingMode() throws HiveException {
+    hashAggrCounters.switchMode(runTimeNumRows + outputBatch.size);
     processingMode = this.new ProcessingModeStreaming();
     processingMode.initialize(null);
     LOG.trace("switched to streaming mode");
   }
 
+  private void changeToHashMode() throws HiveException {
+    // Emits the current streaming key, its next rows go to the hash table.
+    processingMode.close(false);
+    hashAggrCounters.switchMode(runTimeNumRows + outputBatch.size);
+    processingMode = newHashProcessingMode();
+    processingMode.initialize(hashModeConf);
+    LOG.info("switched to hash aggregation mode again after " + hashAggrRecheckInterval + " rows");
+  }
+
   @Override
   public void setNextVectorBatchGroupStatus(boolean isLastGroupBatch) throws HiveException {
     processingMode.setNextVectorBatchGroupStatus(isLastGroupBatch);
@@ -1110,6 +1872,14 @@ public void endGroup() throws HiveException {
   public void process(Object row, int tag) throws HiveException {
     VectorizedRowBatch batch = (VectorizedRowBatch) row;
     if (batch.size > 0) {
+      if (hashAggrCounters != null) {
+        // Once turned off, hash aggregation is measured again every recheck interval rows.
+        if (processingMode instanceof ProcessingModeStreaming && hashAggrRecheckInterval > 0
+            && hashAggrCounters.getPeriodRows() >= hashAggrRecheckInterval) {
+          changeToHashMode();
+        }
+        hashAggrCounters.addInputRows(batch.size);
+      }
       processingMode.processBatch(batch);
     }
   }
@@ -1175,6 +1945,9 @@ public void closeOp(boolean aborted) throws HiveException {
     if (!aborted && outputBatch.size > 0) {
       flushOutput();
     }
+    if (!aborted && hashAggrCounters != null) {
+      hashAggrCounters.close(runTimeNumRows);
+    }
   }
 
   public VectorExpression[] getKeyExpressions() {
@@ -32,6 +32,7 @@
 
 import org.apache.commons.lang.ArrayUtils;
 import org.apache.hadoop.hive.ql.exec.vector.BytesColumnVector;
+import org.apache.hadoop.hive.ql.exec.vector.DictionaryBytesColumnVector;
 import org.apache.hadoop.hive.ql.exec.vector.VectorExpressionDescriptor;
 import org.apache.hadoop.hive.ql.exec.vector.VectorizedRowBatch;
 import org.apache.hadoop.hive.ql.metadata.HiveException;
@@ -51,6 +52,9 @@ public abstract class AbstractFilterStringColLikeStringScalar extends VectorExpr
   // Transient members initialized by transientInit method.
   transient Checker checker;
 
+  // Whether each dictionary value matches.
+  private transient boolean[] dictionaryMatches;
+
   public AbstractFilterStringColLikeStringScalar(int colNum, String pattern) {
     super();
     this.colNum = colNum;
@@ -109,6 +113,12 @@ public void evaluate(VectorizedRowBatch batch) {
       return;
     }
 
+    if (!inputColVector.isRepeating && inputColVector instanceof DictionaryBytesColumnVector
+        && ((DictionaryBytesColumnVector) inputColVector).encodeDictionary()) {
+      evaluateDictionary(batch, (DictionaryBytesColumnVector) inputColVector);
+      return;
+    }
+
     if (inputColVector.noNulls) {
       if (inputColVector.isRepeating) {
 
@@ -192,6 +202,49 @@ public void evaluate(VectorizedRowBatch batch) {
     }
   }
 
+  /**
+   * Checks each dictionary value once, then filters the rows on their codes.
+   */
+  private void evaluateDictionary(VectorizedRowBatch batch,
+      DictionaryBytesColumnVector inputColVector) {
+    int dictionarySize = inputColVector.getDictionarySize();
+    byte[] dictionary = inputColVector.getDictionaryBuffer();
+    int[] dictionaryStart = inputColVector.getDictionaryStart();
+    int[] dictionaryLength = inputColVector.getDictionaryLength();
+    if (dictionaryMatches == null || dictionaryMatches.length < dictionarySize) {
+      dictionaryMatches = new boolean[inputColVector.codes.length];
+    }
+    for (int code = 0; code < dictionarySize; code++) {
+      dictionaryMatches[code] =
+          checker.check(dictionary, dictionaryStart[code], dictionaryLength[code]);
+    }
+
+    int[] sel = batch.selected;
+    boolean[] nullPos = inputColVector.isNull;
+    int[] codes = inputColVector.codes;
+    int n = batch.size;
+    int newSize = 0;
+    if (batch.selectedInUse) {
+      for (int j = 0; j != n; j++) {
+        int i = sel[j];
+        if ((inputColVector.noNulls || !nullPos[i]) && dictionaryMatches[codes[i]]) {
+          sel[newSize++] = i;
+        }
+      }
+      batch.size = newSize;
+    } else {
+      for (int i = 0; i != n; i++) {
+        if ((inputColVector.noNulls || !nullPos[i]) && dictionaryMatches[codes[i]]) {
+          sel[newSize++] = i;
+        }
+      }
+      if (newSize < n) {
+        batch.size = newSize;
+        batch.selectedInUse = true;
+      }
+    }
+  }
+
   /**
    * A Checker contains a pattern and checks whether a given string matches or not.
    */
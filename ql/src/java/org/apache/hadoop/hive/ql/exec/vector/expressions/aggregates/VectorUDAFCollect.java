@@ -0,0 +1,239 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.apache.hadoop.hive.ql.exec.vector.expressions.aggregates;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashSet;
+
+import org.apache.hadoop.hive.common.type.HiveDecimal;
+import org.apache.hadoop.hive.ql.exec.vector.BytesColumnVector;
+import org.apache.hadoop.hive.ql.exec.vector.ColumnVector;
+import org.apache.hadoop.hive.ql.exec.vector.DecimalColumnVector;
+import org.apache.hadoop.hive.ql.exec.vector.DoubleColumnVector;
+import org.apache.hadoop.hive.ql.exec.vector.ListColumnVector;
+import org.apache.hadoop.hive.ql.exec.vector.LongColumnVector;
+import org.apache.hadoop.hive.ql.exec.vector.VectorAggregationDesc;
+import org.apache.hadoop.hive.ql.exec.vector.VectorizationContext;
+import org.apache.hadoop.hive.ql.exec.vector.VectorizedRowBatch;
+import org.apache.hadoop.hive.ql.metadata.HiveException;
+import org.apache.hadoop.hive.ql.udf.generic.GenericUDAFEvaluator.Mode;
+import org.apache.hadoop.hive.ql.util.JavaDataModel;
+import org.apache.hadoop.hive.serde2.typeinfo.ListTypeInfo;
+import org.apache.hadoop.io.Text;
+
+/**
+ * Vectorized collect_set and collect_list for LONG, DOUBLE, BYTES and DECIMAL input values.
+ *
+ * Modes PARTIAL1 and COMPLETE: the input values are added to the collection and the output is
+ * the LIST of the collected values.  See VectorUDAFCollectMerge for PARTIAL2 and FINAL.
+ */
+public class VectorUDAFCollect extends VectorUDAFIterateBase {
+
+  private static final long serialVersionUID = 1L;
+
+  /**
+   * class for storing the current aggregate value.
+   */
+  static class Aggregation implements AggregationBuffer {
+
+    private static final long serialVersionUID = 1L;
+
+    // Long, Double, Text or HiveDecimal objects; a set keeps the insertion order like row mode.
+    transient final Collection<Object> container;
+
+    // Estimated size of the values in the container.
+    transient private int variableSize;
+
+    Aggregation(boolean isSet) {
+      container = (isSet ? new LinkedHashSet<Object>() : new ArrayList<Object>());
+    }
+
+    void add(Object value, int valueSize) {
+      if (container.add(value)) {
+        variableSize += valueSize;
+      }
+    }
+
+    @Override
+    public int getVariableSize() {
+      return variableSize;
+    }
+
+    @Override
+    public void reset() {
+      container.clear();
+      variableSize = 0;
+    }
+  }
+
+  private transient boolean isSet;
+  private transient ColumnVector.Type elementColVectorType;
+  private transient int elementSize;
+
+  // This constructor is used to momentarily create the object so match can be called.
+  public VectorUDAFCollect() {
+    super();
+  }
+
+  public VectorUDAFCollect(VectorAggregationDesc vecAggrDesc) {
+    super(vecAggrDesc);
+    init();
+  }
+
+  private void init() {
+    isSet = vecAggrDesc.getAggrDesc().getGenericUDAFName().equalsIgnoreCase("collect_set");
+    try {
+      elementColVectorType = VectorizationContext.getColumnVectorTypeFromTypeInfo(
+          ((ListTypeInfo) outputTypeInfo).getListElementTypeInfo());
+    } catch (HiveException e) {
+      throw new RuntimeException(e);
+    }
+
+    // A collection entry with its boxed element.
+    JavaDataModel model = JavaDataModel.get();
+    elementSize = (isSet ? model.hashSetEntry() : model.ref()) + model.object() + model.primitive2();
+  }
+
+  /**
+   * Returns true when the collected values can be read from / written to a column vector of this
+   * type.
+   */
+  public static boolean isSupportedElementType(ColumnVector.Type colVectorType) {
+    switch (colVectorType) {
+    case LONG:
+    case DOUBLE:
+    case BYTES:
+    case DECIMAL:
+      return true;
+    default:
+      return false;
+    }
+  }
+
+  /*
+   * Add the non-null value at index of the column vector to the collection.
+   */
+  protected void addValue(Aggregation myagg, ColumnVector colVector, int index) {
+    switch (elementColVectorType) {
+    case LONG:
+      myagg.add(((LongColumnVector) colVector).vector[index], elementSize);
+      break;
+    case DOUBLE:
+      myagg.add(((DoubleColumnVector) colVector).vector[index], elementSize);
+      break;
+    case BYTES:
+      {
+        BytesColumnVector bytesColVector = (BytesColumnVector) colVector;
+        Text text = new Text();
+        text.set(bytesColVector.vector[index], bytesColVector.start[index],
+            bytesColVector.length[index]);
+        myagg.add(text, elementSize + bytesColVector.length[index]);
+      }
+      break;
+    case DECIMAL:
+      myagg.add(((DecimalColumnVector) colVector).vector[index].getHiveDecimal(), elementSize);
+      break;
+    default:
+      throw new RuntimeException("Unexpected column vector type " + elementColVectorType);
+    }
+  }
+
+  @Override
+  protected void iterate(AggregationBuffer agg, ColumnVector inputColVector, int batchIndex)
+      throws HiveException {
+    addValue((Aggregation) agg, inputColVector, batchIndex);
+  }
+
+  @Override
+  public AggregationBuffer getNewAggregationBuffer() throws HiveException {
+    return new Aggregation(isSet);
+  }
+
+  @Override
+  public long getAggregationBufferFixedSize() {
+    JavaDataModel model = JavaDataModel.get();
+    return JavaDataModel.alignUp(
+        model.object() + model.ref() + model.primitive1() +
+            (isSet ? model.hashSetBase() : model.arrayList()),
+        model.memoryAlign());
+  }
+
+  @Override
+  public boolean matches(String name, ColumnVector.Type inputColVectorType,
+      ColumnVector.Type outputColVectorType, Mode mode) {
+
+    /*
+     * Collect LONG, DOUBLE, BYTES and DECIMAL input and output is LIST.
+     *
+     * Just modes (PARTIAL1, COMPLETE).
+     */
+    return
+        (name.equals("collect_set") || name.equals("collect_list")) &&
+        inputColVectorType != null &&
+        isSupportedElementType(inputColVectorType) &&
+        outputColVectorType == ColumnVector.Type.LIST &&
+        (mode == Mode.PARTIAL1 || mode == Mode.COMPLETE);
+  }
+
+  @Override
+  public void assignRowColumn(VectorizedRowBatch batch, int batchIndex, int columnNum,
+      AggregationBuffer agg) throws HiveException {
+
+    ListColumnVector outputColVector = (ListColumnVector) batch.cols[columnNum];
+    Aggregation myagg = (Aggregation) agg;
+
+    // Like row mode, no values is an empty list.
+    final int size = myagg.container.size();
+    int childIndex = outputColVector.childCount;
+    outputColVector.isNull[batchIndex] = false;
+    outputColVector.offsets[batchIndex] = childIndex;
+    outputColVector.lengths[batchIndex] = size;
+    outputColVector.childCount += size;
+
+    ColumnVector childColVector = outputColVector.child;
+    childColVector.ensureSize(outputColVector.childCount, true);
+    for (Object value : myagg.container) {
+      childColVector.isNull[childIndex] = false;
+      switch (elementColVectorType) {
+      case LONG:
+        ((LongColumnVector) childColVector).vector[childIndex] = (Long) value;
+        break;
+      case DOUBLE:
+        ((DoubleColumnVector) childColVector).vector[childIndex] = (Double) value;
+        break;
+      case BYTES:
+        {
+          // The collected values are never modified, so they are set by reference.
+          Text text = (Text) value;
+          ((BytesColumnVector) childColVector).setRef(
+              childIndex, text.getBytes(), 0, text.getLength());
+        }
+        break;
+      case DECIMAL:
+        ((DecimalColumnVector) childColVector).set(childIndex, (HiveDecimal) value);
+        break;
+      default:
+        throw new RuntimeException("Unexpected column vector type " + elementColVectorType);
+      }
+      childIndex++;
+    }
+  }
+}
@@ -0,0 +1,78 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.apache.hadoop.hive.ql.exec.vector.expressions.aggregates;
+
+import org.apache.hadoop.hive.ql.exec.vector.ColumnVector;
+import org.apache.hadoop.hive.ql.exec.vector.ListColumnVector;
+import org.apache.hadoop.hive.ql.exec.vector.VectorAggregationDesc;
+import org.apache.hadoop.hive.ql.metadata.HiveException;
+import org.apache.hadoop.hive.ql.udf.generic.GenericUDAFEvaluator.Mode;
+
+/**
+ * Vectorized collect_set and collect_list merge of the partial LIST results.
+ *
+ * Modes PARTIAL2 and FINAL: the elements of each input list are added to the collection and the
+ * output is the LIST of the collected values.
+ */
+public class VectorUDAFCollectMerge extends VectorUDAFCollect {
+
+  private static final long serialVersionUID = 1L;
+
+  // This constructor is used to momentarily create the object so match can be called.
+  public VectorUDAFCollectMerge() {
+    super();
+  }
+
+  public VectorUDAFCollectMerge(VectorAggregationDesc vecAggrDesc) {
+    super(vecAggrDesc);
+  }
+
+  @Override
+  protected void iterate(AggregationBuffer agg, ColumnVector inputColVector, int batchIndex)
+      throws HiveException {
+    ListColumnVector listColVector = (ListColumnVector) inputColVector;
+    ColumnVector childColVector = listColVector.child;
+    final int offset = (int) listColVector.offsets[batchIndex];
+    final int end = offset + (int) listColVector.lengths[batchIndex];
+    Aggregation myagg = (Aggregation) agg;
+    for (int i = offset; i < end; i++) {
+      final int childIndex = childColVector.isRepeating ? 0 : i;
+      if (childColVector.noNulls || !childColVector.isNull[childIndex]) {
+        addValue(myagg, childColVector, childIndex);
+      }
+    }
+  }
+
+  @Override
+  public boolean matches(String name, ColumnVector.Type inputColVectorType,
+      ColumnVector.Type outputColVectorType, Mode mode) {
+
+    /*
+     * Collect input is LIST and output is LIST.
+     *
+     * Just modes (PARTIAL2, FINAL).
+     */
+    return
+        (name.equals("collect_set") || name.equals("collect_list")) &&
+        inputColVectorType == ColumnVector.Type.LIST &&
+        outputColVectorType == ColumnVector.Type.LIST &&
+        (mode == Mode.PARTIAL2 || mode == Mode.FINAL);
+  }
+}
@@ -0,0 +1,279 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+
+package org.apache.hadoop.hive.ql.exec.vector.expressions.aggregates;
+
+import java.util.List;
+
+import org.apache.hadoop.hive.common.ndv.NumDistinctValueEstimator;
+import org.apache.hadoop.hive.common.ndv.NumDistinctValueEstimatorFactory;
+import org.apache.hadoop.hive.ql.exec.vector.BytesColumnVector;
+import org.apache.hadoop.hive.ql.exec.vector.ColumnVector;
+import org.apache.hadoop.hive.ql.exec.vector.DoubleColumnVector;
+import org.apache.hadoop.hive.ql.exec.vector.LongColumnVector;
+import org.apache.hadoop.hive.ql.exec.vector.StructColumnVector;
+import org.apache.hadoop.hive.ql.exec.vector.VectorAggregationDesc;
+import org.apache.hadoop.hive.ql.exec.vector.VectorizedRowBatch;
+import org.apache.hadoop.hive.ql.metadata.HiveException;
+import org.apache.hadoop.hive.ql.plan.ExprNodeConstantDesc;
+import org.apache.hadoop.hive.ql.plan.ExprNodeDesc;
+import org.apache.hadoop.hive.ql.udf.generic.GenericUDAFComputeStats.GenericUDAFNumericStatsEvaluator;
+import org.apache.hadoop.hive.ql.udf.generic.GenericUDAFEvaluator.Mode;
+import org.apache.hadoop.hive.ql.util.JavaDataModel;
+import org.apache.hadoop.hive.serde2.typeinfo.StructTypeInfo;
+import org.apache.hadoop.hive.serde2.typeinfo.TypeInfoFactory;
+
+/**
+ * Vectorized compute_stats for LONG (integer family) and DOUBLE (float and double) input values,
+ * i.e. the GenericUDAFLongStatsEvaluator and GenericUDAFDoubleStatsEvaluator aggregations.
+ *
+ * Modes PARTIAL1 and COMPLETE: the min, max, null count and distinct value estimator are
+ * updated from the input values.  The PARTIAL1 output is the STRUCT (columnType, min, max,
+ * countnulls, bitvector) and the COMPLETE output is the STRUCT (columnType, min, max,
+ * countnulls, numdistinctvalues, ndvbitvector) of the row mode evaluators.  See
+ * VectorUDAFComputeStatsMerge for PARTIAL2 and FINAL.
+ */
+public class VectorUDAFComputeStats extends VectorUDAFIterateBase {
+
+  private static final long serialVersionUID = 1L;
+
+  /**
+   * class for storing the current aggregate value.
+   */
+  static class Aggregation implements AggregationBuffer {
+
+    private static final long serialVersionUID = 1L;
+
+    // Valid when hasValue; only the long or double pair is used.
+    transient boolean hasValue;
+    transient long longMin;
+    transient long longMax;
+    transient double doubleMin;
+    transient double doubleMax;
+
+    transient long countNulls;
+
+    // Created by the first input row, like row mode.
+    transient NumDistinctValueEstimator numDV;
+
+    void updateLong(long value) {
+      if (!hasValue) {
+        longMin = longMax = value;
+        hasValue = true;
+      } else if (value < longMin) {
+        longMin = value;
+      } else if (value > longMax) {
+        longMax = value;
+      }
+    }
+
+    void updateDouble(double value) {
+      if (!hasValue) {
+        doubleMin = doubleMax = value;
+        hasValue = true;
+      } else if (value < doubleMin) {
+        doubleMin = value;
+      } else if (value > doubleMax) {
+        doubleMax = value;
+      }
+    }
+
+    @Override
+    public int getVariableSize() {
+      return (numDV == null ? 0 : numDV.lengthFor(JavaDataModel.get()));
+    }
+
+    @Override
+    public void reset() {
+      hasValue = false;
+      countNulls = 0;
+      numDV = null;
+    }
+  }
+
+  // Partial STRUCT field indexes; the final STRUCT has numdistinctvalues before the bit vector.
+  protected static final int COLUMN_TYPE_FIELD_INDEX = 0;
+  protected static final int MIN_FIELD_INDEX = 1;
+  protected static final int MAX_FIELD_INDEX = 2;
+  protected static final int COUNT_NULLS_FIELD_INDEX = 3;
+  protected static final int PARTIAL_BIT_VECTOR_FIELD_INDEX = 4;
+  protected static final int NUM_DISTINCT_VALUES_FIELD_INDEX = 4;
+  protected static final int BIT_VECTOR_FIELD_INDEX = 5;
+
+  private static final byte[] EMPTY_BYTES = new byte[0];
+
+  protected transient boolean isDouble;
+  private transient byte[] columnTypeBytes;
+  private transient String func;
+  private transient int numBitVectors;
+
+  // This constructor is used to momentarily create the object so match can be called.
+  public VectorUDAFComputeStats() {
+    super();
+  }
+
+  public VectorUDAFComputeStats(VectorAggregationDesc vecAggrDesc) {
+    super(vecAggrDesc);
+    init();
+  }
+
+  private void init() {
+
+    // The min field is bigint for the Long evaluator and double for the Double evaluator.
+    isDouble =
+        ((StructTypeInfo) outputTypeInfo).getAllStructFieldTypeInfos().get(MIN_FIELD_INDEX)
+            .equals(TypeInfoFactory.doubleTypeInfo);
+    columnTypeBytes = (isDouble ? "Double" : "Long").getBytes();
+
+    // The estimator parameters are constants: compute_stats(col, 'hll'|'fm'[, numBitVectors]).
+    func = "fm";
+    numBitVectors = 0;
+    List<ExprNodeDesc> parameters = vecAggrDesc.getAggrDesc().getParameters();
+    if (parameters.size() > 1) {
+      Object value = ((ExprNodeConstantDesc) parameters.get(1)).getValue();
+      if (value != null) {
+        func = value.toString();
+      }
+    }
+    if (parameters.size() > 2) {
+      Object value = ((ExprNodeConstantDesc) parameters.get(2)).getValue();
+      if (value != null) {
+        numBitVectors = ((Number) value).intValue();
+      }
+    }
+  }
+
+  private void ensureEstimator(Aggregation myagg) throws HiveException {
+    if (myagg.numDV == null) {
+      if (numBitVectors > GenericUDAFNumericStatsEvaluator.MAX_BIT_VECTORS) {
+        throw new HiveException("The maximum allowed value for number of bit vectors " + " is "
+            + GenericUDAFNumericStatsEvaluator.MAX_BIT_VECTORS + ", but was passed "
+            + numBitVectors + " bit vectors");
+      }
+      myagg.numDV =
+          NumDistinctValueEstimatorFactory.getEmptyNumDistinctValueEstimator(func, numBitVectors);
+    }
+  }
+
+  @Override
+  protected void iterate(AggregationBuffer agg, ColumnVector inputColVector, int batchIndex)
+      throws HiveException {
+    Aggregation myagg = (Aggregation) agg;
+    ensureEstimator(myagg);
+    if (isDouble) {
+      final double value = ((DoubleColumnVector) inputColVector).vector[batchIndex];
+      myagg.updateDouble(value);
+      myagg.numDV.addToEstimator(value);
+    } else {
+      final long value = ((LongColumnVector) inputColVector).vector[batchIndex];
+      myagg.updateLong(value);
+      myagg.numDV.addToEstimator(value);
+    }
+  }
+
+  @Override
+  protected void iterateNull(AggregationBuffer agg) throws HiveException {
+    Aggregation myagg = (Aggregation) agg;
+    ensureEstimator(myagg);
+    myagg.countNulls++;
+  }
+
+  @Override
+  public AggregationBuffer getNewAggregationBuffer() throws HiveException {
+    return new Aggregation();
+  }
+
+  @Override
+  public long getAggregationBufferFixedSize() {
+    JavaDataModel model = JavaDataModel.get();
+    return JavaDataModel.alignUp(
+        model.object() + model.primitive1() + model.primitive2() * 5 + model.ref(),
+        model.memoryAlign());
+  }
+
+  @Override
+  public boolean matches(String name, ColumnVector.Type inputColVectorType,
+      ColumnVector.Type outputColVectorType, Mode mode) {
+
+    /*
+     * Compute stats LONG and DOUBLE input and output is STRUCT.
+     *
+     * Just modes (PARTIAL1, COMPLETE).
+     */
+    return
+        name.equals("compute_stats") &&
+        (inputColVectorType == ColumnVector.Type.LONG ||
+         inputColVectorType == ColumnVector.Type.DOUBLE) &&
+        outputColVectorType == ColumnVector.Type.STRUCT &&
+        (mode == Mode.PARTIAL1 || mode == Mode.COMPLETE);
+  }
+
+  @Override
+  public void assignRowColumn(VectorizedRowBatch batch, int batchIndex, int columnNum,
+      AggregationBuffer agg) throws HiveException {
+
+    StructColumnVector outputColVector = (StructColumnVector) batch.cols[columnNum];
+    Aggregation myagg = (Aggregation) agg;
+    ColumnVector[] fields = outputColVector.fields;
+
+    outputColVector.isNull[batchIndex] = false;
+
+    fields[COLUMN_TYPE_FIELD_INDEX].isNull[batchIndex] = false;
+    ((BytesColumnVector) fields[COLUMN_TYPE_FIELD_INDEX]).setRef(
+        batchIndex, columnTypeBytes, 0, columnTypeBytes.length);
+
+    ColumnVector minColVector = fields[MIN_FIELD_INDEX];
+    ColumnVector maxColVector = fields[MAX_FIELD_INDEX];
+    if (!myagg.hasValue) {
+      minColVector.noNulls = false;
+      minColVector.isNull[batchIndex] = true;
+      maxColVector.noNulls = false;
+      maxColVector.isNull[batchIndex] = true;
+    } else {
+      minColVector.isNull[batchIndex] = false;
+      maxColVector.isNull[batchIndex] = false;
+      if (isDouble) {
+        ((DoubleColumnVector) minColVector).vector[batchIndex] = myagg.doubleMin;
+        ((DoubleColumnVector) maxColVector).vector[batchIndex] = myagg.doubleMax;
+      } else {
+        ((LongColumnVector) minColVector).vector[batchIndex] = myagg.longMin;
+        ((LongColumnVector) maxColVector).vector[batchIndex] = myagg.longMax;
+      }
+    }
+
+    fields[COUNT_NULLS_FIELD_INDEX].isNull[batchIndex] = false;
+    ((LongColumnVector) fields[COUNT_NULLS_FIELD_INDEX]).vector[batchIndex] = myagg.countNulls;
+
+    final int bitVectorFieldIndex;
+    if (mode == Mode.PARTIAL1 || mode == Mode.PARTIAL2) {
+      bitVectorFieldIndex = PARTIAL_BIT_VECTOR_FIELD_INDEX;
+    } else {
+      bitVectorFieldIndex = BIT_VECTOR_FIELD_INDEX;
+      fields[NUM_DISTINCT_VALUES_FIELD_INDEX].isNull[batchIndex] = false;
+      ((LongColumnVector) fields[NUM_DISTINCT_VALUES_FIELD_INDEX]).vector[batchIndex] =
+          (myagg.numDV == null ? 0 : myagg.numDV.estimateNumDistinctValues());
+    }
+    BytesColumnVector bitVectorColVector = (BytesColumnVector) fields[bitVectorFieldIndex];
+    bitVectorColVector.isNull[batchIndex] = false;
+    // The serialized estimator is a new array, so it is set by reference.
+    byte[] bytes = (myagg.numDV == null ? EMPTY_BYTES : myagg.numDV.serialize());
+    bitVectorColVector.setRef(batchIndex, bytes, 0, bytes.length);
+  }
+}
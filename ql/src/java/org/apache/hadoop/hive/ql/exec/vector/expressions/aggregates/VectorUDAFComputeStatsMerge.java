@@ -0,0 +1,129 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+
+package org.apache.hadoop.hive.ql.exec.vector.expressions.aggregates;
+
+import java.util.Arrays;
+
+import org.apache.hadoop.hive.common.ndv.NumDistinctValueEstimator;
+import org.apache.hadoop.hive.common.ndv.NumDistinctValueEstimatorFactory;
+import org.apache.hadoop.hive.ql.exec.vector.BytesColumnVector;
+import org.apache.hadoop.hive.ql.exec.vector.ColumnVector;
+import org.apache.hadoop.hive.ql.exec.vector.DoubleColumnVector;
+import org.apache.hadoop.hive.ql.exec.vector.LongColumnVector;
+import org.apache.hadoop.hive.ql.exec.vector.StructColumnVector;
+import org.apache.hadoop.hive.ql.exec.vector.VectorAggregationDesc;
+import org.apache.hadoop.hive.ql.metadata.HiveException;
+import org.apache.hadoop.hive.ql.udf.generic.GenericUDAFEvaluator.Mode;
+
+/**
+ * Vectorized compute_stats merge of the partial STRUCT results.
+ *
+ * Modes PARTIAL2 and FINAL: the min, max and null count fields are merged and the bit vector
+ * field is deserialized and merged into the distinct value estimator.  The output is the partial
+ * STRUCT for PARTIAL2 and the final STRUCT for FINAL.
+ */
+public class VectorUDAFComputeStatsMerge extends VectorUDAFComputeStats {
+
+  private static final long serialVersionUID = 1L;
+
+  // This constructor is used to momentarily create the object so match can be called.
+  public VectorUDAFComputeStatsMerge() {
+    super();
+  }
+
+  public VectorUDAFComputeStatsMerge(VectorAggregationDesc vecAggrDesc) {
+    super(vecAggrDesc);
+  }
+
+  private static int fieldIndex(ColumnVector fieldColVector, int batchIndex) {
+    return (fieldColVector.isRepeating ? 0 : batchIndex);
+  }
+
+  private static boolean isFieldNull(ColumnVector fieldColVector, int index) {
+    return !fieldColVector.noNulls && fieldColVector.isNull[index];
+  }
+
+  @Override
+  protected void iterate(AggregationBuffer agg, ColumnVector inputColVector, int batchIndex)
+      throws HiveException {
+    ColumnVector[] fields = ((StructColumnVector) inputColVector).fields;
+    Aggregation myagg = (Aggregation) agg;
+
+    // The min and max are both null when the partial aggregation had no values.
+    ColumnVector minColVector = fields[MIN_FIELD_INDEX];
+    ColumnVector maxColVector = fields[MAX_FIELD_INDEX];
+    final int minIndex = fieldIndex(minColVector, batchIndex);
+    final int maxIndex = fieldIndex(maxColVector, batchIndex);
+    if (!isFieldNull(minColVector, minIndex) && !isFieldNull(maxColVector, maxIndex)) {
+      if (isDouble) {
+        myagg.updateDouble(((DoubleColumnVector) minColVector).vector[minIndex]);
+        myagg.updateDouble(((DoubleColumnVector) maxColVector).vector[maxIndex]);
+      } else {
+        myagg.updateLong(((LongColumnVector) minColVector).vector[minIndex]);
+        myagg.updateLong(((LongColumnVector) maxColVector).vector[maxIndex]);
+      }
+    }
+
+    LongColumnVector countNullsColVector = (LongColumnVector) fields[COUNT_NULLS_FIELD_INDEX];
+    final int countNullsIndex = fieldIndex(countNullsColVector, batchIndex);
+    if (!isFieldNull(countNullsColVector, countNullsIndex)) {
+      myagg.countNulls += countNullsColVector.vector[countNullsIndex];
+    }
+
+    BytesColumnVector bitVectorColVector =
+        (BytesColumnVector) fields[PARTIAL_BIT_VECTOR_FIELD_INDEX];
+    final int bitVectorIndex = fieldIndex(bitVectorColVector, batchIndex);
+    if (!isFieldNull(bitVectorColVector, bitVectorIndex) &&
+        bitVectorColVector.length[bitVectorIndex] != 0) {
+      final int start = bitVectorColVector.start[bitVectorIndex];
+      byte[] buf = Arrays.copyOfRange(bitVectorColVector.vector[bitVectorIndex], start,
+          start + bitVectorColVector.length[bitVectorIndex]);
+      NumDistinctValueEstimator numDV =
+          NumDistinctValueEstimatorFactory.getNumDistinctValueEstimator(buf);
+      if (myagg.numDV == null) {
+        myagg.numDV = numDV;
+      } else {
+        myagg.numDV.mergeEstimators(numDV);
+      }
+    }
+  }
+
+  @Override
+  protected void iterateNull(AggregationBuffer agg) throws HiveException {
+    // Like row mode, a null partial result is ignored.
+  }
+
+  @Override
+  public boolean matches(String name, ColumnVector.Type inputColVectorType,
+      ColumnVector.Type outputColVectorType, Mode mode) {
+
+    /*
+     * Compute stats input is STRUCT and output is STRUCT.
+     *
+     * Just modes (PARTIAL2, FINAL).
+     */
+    return
+        name.equals("compute_stats") &&
+        inputColVectorType == ColumnVector.Type.STRUCT &&
+        outputColVectorType == ColumnVector.Type.STRUCT &&
+        (mode == Mode.PARTIAL2 || mode == Mode.FINAL);
+  }
+}
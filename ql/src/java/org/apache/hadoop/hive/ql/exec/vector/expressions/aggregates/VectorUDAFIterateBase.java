@@ -0,0 +1,180 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.apache.hadoop.hive.ql.exec.vector.expressions.aggregates;
+
+import org.apache.hadoop.hive.ql.exec.vector.ColumnVector;
+import org.apache.hadoop.hive.ql.exec.vector.VectorAggregationBufferRow;
+import org.apache.hadoop.hive.ql.exec.vector.VectorAggregationDesc;
+import org.apache.hadoop.hive.ql.exec.vector.VectorizedRowBatch;
+import org.apache.hadoop.hive.ql.metadata.HiveException;
+
+/**
+ * Base class for the aggregations whose buffer is a data structure (a collection, a histogram, a
+ * distinct value estimator, etc) that is updated with one input value at a time, like
+ * GenericUDAFEvaluator.iterate does in row mode.
+ *
+ * This class does the batch iteration (selected, repeating, and null variations) and calls
+ * iterate with the column vector and the batch index of each value, so the subclasses read the
+ * values directly from the column vectors.  Null values are passed to iterateNull.
+ */
+public abstract class VectorUDAFIterateBase extends VectorAggregateExpression {
+
+  private static final long serialVersionUID = 1L;
+
+  // This constructor is used to momentarily create the object so match can be called.
+  public VectorUDAFIterateBase() {
+    super();
+  }
+
+  public VectorUDAFIterateBase(VectorAggregationDesc vecAggrDesc) {
+    super(vecAggrDesc);
+  }
+
+  /**
+   * Add the non-null value at batchIndex of the input column vector to the aggregation.
+   */
+  protected abstract void iterate(AggregationBuffer agg, ColumnVector inputColVector,
+      int batchIndex) throws HiveException;
+
+  /**
+   * Account for a null input value.  Most aggregations ignore nulls.
+   */
+  protected void iterateNull(AggregationBuffer agg) throws HiveException {
+  }
+
+  @Override
+  public void aggregateInput(AggregationBuffer agg, VectorizedRowBatch batch)
+      throws HiveException {
+
+    int batchSize = batch.size;
+
+    if (batchSize == 0) {
+      return;
+    }
+
+    inputExpression.evaluate(batch);
+
+    ColumnVector inputColVector = batch.cols[this.inputExpression.getOutputColumnNum()];
+
+    if (inputColVector.isRepeating) {
+
+      // The value is aggregated once per row, e.g. for collect_list and the histograms.
+      if (inputColVector.noNulls || !inputColVector.isNull[0]) {
+        for (int i = 0; i < batchSize; i++) {
+          iterate(agg, inputColVector, 0);
+        }
+      } else {
+        for (int i = 0; i < batchSize; i++) {
+          iterateNull(agg);
+        }
+      }
+      return;
+    }
+
+    if (!batch.selectedInUse && inputColVector.noNulls) {
+      for (int i = 0; i < batchSize; i++) {
+        iterate(agg, inputColVector, i);
+      }
+    } else if (!batch.selectedInUse) {
+      boolean[] isNull = inputColVector.isNull;
+      for (int i = 0; i < batchSize; i++) {
+        if (!isNull[i]) {
+          iterate(agg, inputColVector, i);
+        } else {
+          iterateNull(agg);
+        }
+      }
+    } else if (inputColVector.noNulls) {
+      int[] selected = batch.selected;
+      for (int j = 0; j < batchSize; j++) {
+        iterate(agg, inputColVector, selected[j]);
+      }
+    } else {
+      int[] selected = batch.selected;
+      boolean[] isNull = inputColVector.isNull;
+      for (int j = 0; j < batchSize; j++) {
+        final int i = selected[j];
+        if (!isNull[i]) {
+          iterate(agg, inputColVector, i);
+        } else {
+          iterateNull(agg);
+        }
+      }
+    }
+  }
+
+  @Override
+  public void aggregateInputSelection(VectorAggregationBufferRow[] aggregationBufferSets,
+      int aggregateIndex, VectorizedRowBatch batch) throws HiveException {
+
+    int batchSize = batch.size;
+
+    if (batchSize == 0) {
+      return;
+    }
+
+    inputExpression.evaluate(batch);
+
+    ColumnVector inputColVector = batch.cols[this.inputExpression.getOutputColumnNum()];
+
+    if (inputColVector.isRepeating) {
+      final boolean isNull = !inputColVector.noNulls && inputColVector.isNull[0];
+      for (int i = 0; i < batchSize; i++) {
+        AggregationBuffer agg = aggregationBufferSets[i].getAggregationBuffer(aggregateIndex);
+        if (!isNull) {
+          iterate(agg, inputColVector, 0);
+        } else {
+          iterateNull(agg);
+        }
+      }
+      return;
+    }
+
+    final boolean selectedInUse = batch.selectedInUse;
+    int[] selected = batch.selected;
+    if (inputColVector.noNulls) {
+      for (int i = 0; i < batchSize; i++) {
+        AggregationBuffer agg = aggregationBufferSets[i].getAggregationBuffer(aggregateIndex);
+        iterate(agg, inputColVector, selectedInUse ? selected[i] : i);
+      }
+    } else {
+      boolean[] isNull = inputColVector.isNull;
+      for (int i = 0; i < batchSize; i++) {
+        AggregationBuffer agg = aggregationBufferSets[i].getAggregationBuffer(aggregateIndex);
+        final int batchIndex = (selectedInUse ? selected[i] : i);
+        if (!isNull[batchIndex]) {
+          iterate(agg, inputColVector, batchIndex);
+        } else {
+          iterateNull(agg);
+        }
+      }
+    }
+  }
+
+  @Override
+  public void reset(AggregationBuffer agg) throws HiveException {
+    agg.reset();
+  }
+
+  @Override
+  public boolean hasVariableSize() {
+    return true;
+  }
+}
@@ -0,0 +1,235 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+
+package org.apache.hadoop.hive.ql.exec.vector.expressions.aggregates;
+
+import java.util.ArrayList;
+
+import org.apache.hadoop.hive.ql.exec.vector.ColumnVector;
+import org.apache.hadoop.hive.ql.exec.vector.DecimalColumnVector;
+import org.apache.hadoop.hive.ql.exec.vector.DoubleColumnVector;
+import org.apache.hadoop.hive.ql.exec.vector.ListColumnVector;
+import org.apache.hadoop.hive.ql.exec.vector.LongColumnVector;
+import org.apache.hadoop.hive.ql.exec.vector.VectorAggregationDesc;
+import org.apache.hadoop.hive.ql.exec.vector.VectorizedRowBatch;
+import org.apache.hadoop.hive.ql.metadata.HiveException;
+import org.apache.hadoop.hive.ql.udf.generic.GenericUDAFEvaluator.Mode;
+import org.apache.hadoop.hive.ql.udf.generic.GenericUDAFPercentileApprox.GenericUDAFPercentileApproxEvaluator;
+import org.apache.hadoop.hive.ql.udf.generic.NumericHistogram;
+import org.apache.hadoop.hive.ql.util.JavaDataModel;
+import org.apache.hadoop.hive.serde2.io.DoubleWritable;
+
+/**
+ * Vectorized percentile_approx for LONG, DOUBLE and DECIMAL input values.
+ *
+ * Modes PARTIAL1 and COMPLETE: the input values are added to a NumericHistogram.  The PARTIAL1
+ * output is the LIST of doubles of the row mode evaluator: the number of requested quantiles,
+ * the quantiles, and the serialized histogram.  The COMPLETE output is a DOUBLE for a single
+ * quantile and a LIST of doubles for an array of quantiles.  See VectorUDAFPercentileApproxMerge
+ * for PARTIAL2 and FINAL.
+ *
+ * The quantiles and the number of histogram bins are constant parameters, so they are taken
+ * from the (initialized) row mode evaluator.
+ */
+public class VectorUDAFPercentileApprox extends VectorUDAFIterateBase {
+
+  private static final long serialVersionUID = 1L;
+
+  /**
+   * class for storing the current aggregate value.
+   */
+  static class Aggregation implements AggregationBuffer {
+
+    private static final long serialVersionUID = 1L;
+
+    transient final NumericHistogram histogram = new NumericHistogram();
+
+    // The requested quantiles; for PARTIAL2 and FINAL they come with the partial histograms.
+    transient double[] quantiles;
+
+    transient private final double[] initialQuantiles;
+    transient private final int nbins;
+
+    Aggregation(double[] initialQuantiles, int nbins) {
+      this.initialQuantiles = initialQuantiles;
+      this.nbins = nbins;
+      reset();
+    }
+
+    @Override
+    public int getVariableSize() {
+      return histogram.lengthFor(JavaDataModel.get());
+    }
+
+    @Override
+    public void reset() {
+      histogram.reset();
+      histogram.allocate(nbins);
+      quantiles = initialQuantiles;
+    }
+  }
+
+  private transient double[] quantiles;
+  private transient int nbins;
+
+  // This constructor is used to momentarily create the object so match can be called.
+  public VectorUDAFPercentileApprox() {
+    super();
+  }
+
+  public VectorUDAFPercentileApprox(VectorAggregationDesc vecAggrDesc) {
+    super(vecAggrDesc);
+    init();
+  }
+
+  private void init() {
+    GenericUDAFPercentileApproxEvaluator evaluator =
+        (GenericUDAFPercentileApproxEvaluator) vecAggrDesc.getEvaluator();
+    quantiles = evaluator.getQuantiles();
+    nbins = evaluator.getNumBins();
+  }
+
+  @Override
+  protected void iterate(AggregationBuffer agg, ColumnVector inputColVector, int batchIndex)
+      throws HiveException {
+    Aggregation myagg = (Aggregation) agg;
+    switch (inputColVector.type) {
+    case LONG:
+      myagg.histogram.add(((LongColumnVector) inputColVector).vector[batchIndex]);
+      break;
+    case DOUBLE:
+      myagg.histogram.add(((DoubleColumnVector) inputColVector).vector[batchIndex]);
+      break;
+    case DECIMAL:
+      myagg.histogram.add(
+          ((DecimalColumnVector) inputColVector).vector[batchIndex].doubleValue());
+      break;
+    default:
+      throw new RuntimeException("Unexpected column vector type " + inputColVector.type);
+    }
+  }
+
+  @Override
+  public AggregationBuffer getNewAggregationBuffer() throws HiveException {
+    return new Aggregation(quantiles, nbins);
+  }
+
+  @Override
+  public long getAggregationBufferFixedSize() {
+    JavaDataModel model = JavaDataModel.get();
+    return JavaDataModel.alignUp(
+        model.object() + model.ref() * 3 + model.primitive1(),
+        model.memoryAlign());
+  }
+
+  @Override
+  public boolean matches(String name, ColumnVector.Type inputColVectorType,
+      ColumnVector.Type outputColVectorType, Mode mode) {
+
+    /*
+     * Percentile approx LONG, DOUBLE and DECIMAL input and output is LIST (PARTIAL1, or
+     * COMPLETE with an array of quantiles) or DOUBLE (COMPLETE with a single quantile).
+     *
+     * Just modes (PARTIAL1, COMPLETE).
+     */
+    return
+        name.equals("percentile_approx") &&
+        (inputColVectorType == ColumnVector.Type.LONG ||
+         inputColVectorType == ColumnVector.Type.DOUBLE ||
+         inputColVectorType == ColumnVector.Type.DECIMAL) &&
+        (outputColVectorType == ColumnVector.Type.LIST ||
+         (outputColVectorType == ColumnVector.Type.DOUBLE && mode == Mode.COMPLETE)) &&
+        (mode == Mode.PARTIAL1 || mode == Mode.COMPLETE);
+  }
+
+  @Override
+  public void assignRowColumn(VectorizedRowBatch batch, int batchIndex, int columnNum,
+      AggregationBuffer agg) throws HiveException {
+
+    Aggregation myagg = (Aggregation) agg;
+    ColumnVector outputColVector = batch.cols[columnNum];
+
+    if (mode == Mode.PARTIAL1 || mode == Mode.PARTIAL2) {
+      assignPartial((ListColumnVector) outputColVector, batchIndex, myagg);
+      return;
+    }
+
+    // SQL standard - return null for zero elements.
+    if (myagg.histogram.getUsedBins() < 1) {
+      outputColVector.noNulls = false;
+      outputColVector.isNull[batchIndex] = true;
+      return;
+    }
+    outputColVector.isNull[batchIndex] = false;
+
+    if (outputColVector.type == ColumnVector.Type.DOUBLE) {
+      ((DoubleColumnVector) outputColVector).vector[batchIndex] =
+          myagg.histogram.quantile(myagg.quantiles[0]);
+    } else {
+      ListColumnVector listColVector = (ListColumnVector) outputColVector;
+      DoubleColumnVector childColVector = (DoubleColumnVector) startList(
+          listColVector, batchIndex, myagg.quantiles.length);
+      int childIndex = (int) listColVector.offsets[batchIndex];
+      for (int i = 0; i < myagg.quantiles.length; i++) {
+        childColVector.vector[childIndex + i] = myagg.histogram.quantile(myagg.quantiles[i]);
+      }
+    }
+  }
+
+  /*
+   * The partial result: [number of quantiles, quantiles..., serialized histogram...].
+   */
+  private void assignPartial(ListColumnVector outputColVector, int batchIndex,
+      Aggregation myagg) {
+    ArrayList<DoubleWritable> serialized = myagg.histogram.serialize();
+    final int quantileCount = (myagg.quantiles == null ? 0 : myagg.quantiles.length);
+    DoubleColumnVector childColVector = (DoubleColumnVector) startList(
+        outputColVector, batchIndex, 1 + quantileCount + serialized.size());
+
+    int childIndex = (int) outputColVector.offsets[batchIndex];
+    double[] vector = childColVector.vector;
+    vector[childIndex++] = quantileCount;
+    for (int i = 0; i < quantileCount; i++) {
+      vector[childIndex++] = myagg.quantiles[i];
+    }
+    for (DoubleWritable value : serialized) {
+      vector[childIndex++] = value.get();
+    }
+  }
+
+  /*
+   * Reserve size non-null child elements for the list at batchIndex and return the child.
+   */
+  private static ColumnVector startList(ListColumnVector outputColVector, int batchIndex,
+      int size) {
+    final int childIndex = outputColVector.childCount;
+    outputColVector.isNull[batchIndex] = false;
+    outputColVector.offsets[batchIndex] = childIndex;
+    outputColVector.lengths[batchIndex] = size;
+    outputColVector.childCount += size;
+
+    ColumnVector childColVector = outputColVector.child;
+    childColVector.ensureSize(outputColVector.childCount, true);
+    for (int i = childIndex; i < outputColVector.childCount; i++) {
+      childColVector.isNull[i] = false;
+    }
+    return childColVector;
+  }
+}
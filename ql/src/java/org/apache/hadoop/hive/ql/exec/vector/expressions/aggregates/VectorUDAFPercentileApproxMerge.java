@@ -0,0 +1,89 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+
+package org.apache.hadoop.hive.ql.exec.vector.expressions.aggregates;
+
+import org.apache.hadoop.hive.ql.exec.vector.ColumnVector;
+import org.apache.hadoop.hive.ql.exec.vector.DoubleColumnVector;
+import org.apache.hadoop.hive.ql.exec.vector.ListColumnVector;
+import org.apache.hadoop.hive.ql.exec.vector.VectorAggregationDesc;
+import org.apache.hadoop.hive.ql.metadata.HiveException;
+import org.apache.hadoop.hive.ql.udf.generic.GenericUDAFEvaluator.Mode;
+
+/**
+ * Vectorized percentile_approx merge of the partial LIST of doubles results.
+ *
+ * Modes PARTIAL2 and FINAL: the histogram of each input list is merged into the aggregation
+ * histogram without creating the row mode DoubleWritable list.  The output is the partial LIST
+ * for PARTIAL2, and for FINAL a DOUBLE for a single quantile and a LIST of doubles for an array
+ * of quantiles.
+ */
+public class VectorUDAFPercentileApproxMerge extends VectorUDAFPercentileApprox {
+
+  private static final long serialVersionUID = 1L;
+
+  // This constructor is used to momentarily create the object so match can be called.
+  public VectorUDAFPercentileApproxMerge() {
+    super();
+  }
+
+  public VectorUDAFPercentileApproxMerge(VectorAggregationDesc vecAggrDesc) {
+    super(vecAggrDesc);
+  }
+
+  @Override
+  protected void iterate(AggregationBuffer agg, ColumnVector inputColVector, int batchIndex)
+      throws HiveException {
+    ListColumnVector listColVector = (ListColumnVector) inputColVector;
+    double[] vector = ((DoubleColumnVector) listColVector.child).vector;
+    int offset = (int) listColVector.offsets[batchIndex];
+    int length = (int) listColVector.lengths[batchIndex];
+    Aggregation myagg = (Aggregation) agg;
+
+    // Remove the requested quantiles from the head of the list.
+    final int quantileCount = (int) vector[offset];
+    if (quantileCount > 0) {
+      myagg.quantiles = new double[quantileCount];
+      System.arraycopy(vector, offset + 1, myagg.quantiles, 0, quantileCount);
+    }
+    offset += quantileCount + 1;
+    length -= quantileCount + 1;
+
+    myagg.histogram.merge(vector, offset, length);
+  }
+
+  @Override
+  public boolean matches(String name, ColumnVector.Type inputColVectorType,
+      ColumnVector.Type outputColVectorType, Mode mode) {
+
+    /*
+     * Percentile approx input is LIST and output is LIST (PARTIAL2, or FINAL with an array of
+     * quantiles) or DOUBLE (FINAL with a single quantile).
+     *
+     * Just modes (PARTIAL2, FINAL).
+     */
+    return
+        name.equals("percentile_approx") &&
+        inputColVectorType == ColumnVector.Type.LIST &&
+        (outputColVectorType == ColumnVector.Type.LIST ||
+         (outputColVectorType == ColumnVector.Type.DOUBLE && mode == Mode.FINAL)) &&
+        (mode == Mode.PARTIAL2 || mode == Mode.FINAL);
+  }
+}
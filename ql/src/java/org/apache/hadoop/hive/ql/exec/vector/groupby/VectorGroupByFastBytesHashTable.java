@@ -0,0 +1,170 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.hadoop.hive.ql.exec.vector.groupby;
+
+import java.util.Arrays;
+
+import org.apache.hadoop.hive.ql.metadata.HiveException;
+import org.apache.hadoop.hive.ql.util.JavaDataModel;
+import org.apache.hadoop.hive.serde2.WriteBuffers;
+import org.apache.hive.common.util.HashCodeUtil;
+
+/*
+ * A byte array key hash table for the vectorized GROUP BY.  Used for a single string key (the raw
+ * bytes) and for multiple keys (the BinarySortable serialized key).
+ *
+ * The key bytes are appended to a WriteBuffers arena.  Each entry keeps the absolute offset and
+ * length of its key.  When a partial flush leaves more garbage than live key bytes in the arena,
+ * the surviving keys are copied into a fresh arena.
+ */
+public class VectorGroupByFastBytesHashTable extends VectorGroupByFastHashTable {
+
+  private final int writeBuffersSize;
+
+  private WriteBuffers writeBuffers;
+
+  private long[] entryKeyOffsets;
+  private int[] entryKeyLengths;
+
+  private long liveKeyBytes;
+
+  private byte[] probeBytes;
+  private int probeStart;
+  private int probeLength;
+
+  private final WriteBuffers.ByteSegmentRef byteSegmentRef;
+
+  public VectorGroupByFastBytesHashTable(int initialCapacity, float loadFactor,
+      int writeBuffersSize) {
+    super(initialCapacity, loadFactor);
+    this.writeBuffersSize = writeBuffersSize;
+    writeBuffers = new WriteBuffers(writeBuffersSize, Long.MAX_VALUE);
+    entryKeyOffsets = new long[entryHashCodes.length];
+    entryKeyLengths = new int[entryHashCodes.length];
+    byteSegmentRef = new WriteBuffers.ByteSegmentRef();
+  }
+
+  /**
+   * Finds the entry for a key, adding a new one when not present.
+   * @return the entry index, or -(entry + 1) when the entry is new.
+   */
+  public int findOrAdd(byte[] keyBytes, int keyStart, int keyLength) throws HiveException {
+    return findOrAdd(keyBytes, keyStart, keyLength,
+        HashCodeUtil.calculateBytesHashCode(keyBytes, keyStart, keyLength));
+  }
+
+  /**
+   * Same as {@link #findOrAdd(byte[], int, int)} for a caller that already computed the key hash
+   * code.
+   */
+  public int findOrAdd(byte[] keyBytes, int keyStart, int keyLength, int hashCode)
+      throws HiveException {
+    probeBytes = keyBytes;
+    probeStart = keyStart;
+    probeLength = keyLength;
+    final int result = probe(hashCode);
+    if (result < 0) {
+      final int entry = -result - 1;
+      entryKeyOffsets[entry] = writeBuffers.getWritePoint();
+      entryKeyLengths[entry] = keyLength;
+      writeBuffers.write(keyBytes, keyStart, keyLength);
+      liveKeyBytes += keyLength;
+    }
+    probeBytes = null;
+    return result;
+  }
+
+  @Override
+  public int findOrAddNull() throws HiveException {
+    final int result = super.findOrAddNull();
+    if (result < 0) {
+      final int entry = -result - 1;
+      entryKeyOffsets[entry] = 0;
+      entryKeyLengths[entry] = 0;
+    }
+    return result;
+  }
+
+  /**
+   * Sets the given reference to the key bytes of an entry.  The reference is only valid until the
+   * next change to the table.
+   */
+  public void getKey(int entry, WriteBuffers.ByteSegmentRef keyRef) {
+    keyRef.reset(entryKeyOffsets[entry], entryKeyLengths[entry]);
+    writeBuffers.populateValue(keyRef);
+  }
+
+  @Override
+  protected boolean isKeyEqual(int entry) {
+    return writeBuffers.isEqual(probeBytes, probeStart, probeLength,
+        entryKeyOffsets[entry], entryKeyLengths[entry]);
+  }
+
+  @Override
+  protected void growEntryKeys(int newEntryCapacity) {
+    entryKeyOffsets = Arrays.copyOf(entryKeyOffsets, newEntryCapacity);
+    entryKeyLengths = Arrays.copyOf(entryKeyLengths, newEntryCapacity);
+  }
+
+  @Override
+  protected void moveEntryKey(int fromEntry, int toEntry) {
+    entryKeyOffsets[toEntry] = entryKeyOffsets[fromEntry];
+    entryKeyLengths[toEntry] = entryKeyLengths[fromEntry];
+  }
+
+  @Override
+  protected void finishCompaction() {
+    liveKeyBytes = 0;
+    for (int entry = 0; entry < entryCount; entry++) {
+      liveKeyBytes += entryKeyLengths[entry];
+    }
+    if (writeBuffers.getWritePoint() <= 2 * liveKeyBytes) {
+      return;
+    }
+
+    // More garbage than live keys -- copy the surviving keys into a new arena.
+    WriteBuffers newWriteBuffers = new WriteBuffers(writeBuffersSize, Long.MAX_VALUE);
+    for (int entry = 0; entry < entryCount; entry++) {
+      final int keyLength = entryKeyLengths[entry];
+      final long newOffset = newWriteBuffers.getWritePoint();
+      if (keyLength > 0) {
+        getKey(entry, byteSegmentRef);
+        newWriteBuffers.write(
+            byteSegmentRef.getBytes(), (int) byteSegmentRef.getOffset(), keyLength);
+      }
+      entryKeyOffsets[entry] = newOffset;
+    }
+    writeBuffers.clear();
+    writeBuffers = newWriteBuffers;
+  }
+
+  @Override
+  protected void clearEntryKeys() {
+    writeBuffers.clear();
+    liveKeyBytes = 0;
+  }
+
+  @Override
+  protected long getEntryKeysMemorySize() {
+    JavaDataModel jdm = JavaDataModel.get();
+    return writeBuffers.size() +
+        jdm.lengthForLongArrayOfSize(entryKeyOffsets.length) +
+        jdm.lengthForIntArrayOfSize(entryKeyLengths.length);
+  }
+}
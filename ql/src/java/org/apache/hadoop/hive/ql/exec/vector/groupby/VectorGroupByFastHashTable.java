@@ -0,0 +1,332 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.hadoop.hive.ql.exec.vector.groupby;
+
+import java.util.Arrays;
+
+import org.apache.hadoop.hive.ql.exec.vector.VectorAggregationBufferRow;
+import org.apache.hadoop.hive.ql.metadata.HiveException;
+import org.apache.hadoop.hive.ql.util.JavaDataModel;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/*
+ * Base class for the open-addressing hash tables used by the vectorized GROUP BY in hash mode.
+ *
+ * Unlike a HashMap<KeyWrapper, VectorAggregationBufferRow>, there is no per-key object.  The
+ * slot array is a flat int array holding (entry index + 1), with 0 meaning an empty slot.  Entries
+ * are numbered in insertion order and the sub-classes keep the key of each entry in flat arrays
+ * (or a WriteBuffers arena) indexed by entry number.
+ *
+ * Because entries are kept in insertion order, a partial flush simply removes the oldest entries,
+ * compacts the entry arrays and rebuilds the slot array.  Flushed aggregation buffer rows are reset
+ * and parked past the live entries so they get reused by the next new keys instead of being
+ * re-allocated.
+ */
+public abstract class VectorGroupByFastHashTable {
+
+  private static final Logger LOG = LoggerFactory.getLogger(VectorGroupByFastHashTable.class);
+
+  // 2^30 (we cannot use Integer.MAX_VALUE which is 2^31-1).
+  public static final int HIGHEST_INT_POWER_OF_2 = 1073741824;
+
+  protected int logicalHashBucketCount;
+  protected int logicalHashBucketMask;
+  protected final float loadFactor;
+  protected int resizeThreshold;
+
+  /*
+   * The slots.  Each slot holds (entry index + 1) so that 0 means empty.
+   */
+  protected int[] slots;
+
+  /*
+   * The hash code of each entry.  Kept so we can rebuild the slot array without re-hashing keys.
+   */
+  protected int[] entryHashCodes;
+
+  /*
+   * The aggregation buffers of each entry.  Positions at and beyond entryCount may hold reset rows
+   * available for reuse.
+   */
+  protected VectorAggregationBufferRow[] entryAggregations;
+
+  protected int entryCount;
+
+  /*
+   * The entry of the NULL key (single key tables only), or -1.  It is never put in the slot array.
+   */
+  protected int nullKeyEntry;
+
+  protected int largestNumberOfSteps;
+  protected int metricExpands;
+  protected int metricCompactions;
+
+  public VectorGroupByFastHashTable(int initialCapacity, float loadFactor) {
+    initialCapacity = (Integer.bitCount(initialCapacity) == 1)
+        ? initialCapacity : Integer.highestOneBit(initialCapacity) << 1;
+    this.loadFactor = loadFactor;
+    logicalHashBucketCount = initialCapacity;
+    logicalHashBucketMask = logicalHashBucketCount - 1;
+    resizeThreshold = (int)(logicalHashBucketCount * loadFactor);
+    slots = new int[logicalHashBucketCount];
+
+    final int initialEntryCapacity = Math.max(resizeThreshold, 1);
+    entryHashCodes = new int[initialEntryCapacity];
+    entryAggregations = new VectorAggregationBufferRow[initialEntryCapacity];
+    nullKeyEntry = -1;
+  }
+
+  public int size() {
+    return entryCount;
+  }
+
+  /**
+   * Returns the aggregation buffers of an entry.  For a brand new entry, this is either a reset
+   * row recycled from an earlier flush or null, in which case the caller must allocate one and
+   * call {@link #setAggregation}.
+   */
+  public VectorAggregationBufferRow getAggregation(int entry) {
+    return entryAggregations[entry];
+  }
+
+  public void setAggregation(int entry, VectorAggregationBufferRow aggregation) {
+    entryAggregations[entry] = aggregation;
+  }
+
+  /**
+   * Finds the entry for the NULL key, adding a new one when not present.
+   * @return the entry index, or -(entry + 1) when the entry is new.
+   */
+  public int findOrAddNull() throws HiveException {
+    if (nullKeyEntry != -1) {
+      return nullKeyEntry;
+    }
+    nullKeyEntry = allocateEntry(0);
+    return -(nullKeyEntry + 1);
+  }
+
+  public boolean isNullEntry(int entry) {
+    return entry == nullKeyEntry;
+  }
+
+  /*
+   * Called by the sub-classes to find the slot for a hash code.  Returns the entry index found or
+   * allocates a new entry (returned as -(entry + 1)) in the first empty slot.
+   */
+  protected final int probe(int hashCode) throws HiveException {
+    int slot = hashCode & logicalHashBucketMask;
+    long probeSlot = slot;
+    int i = 0;
+    while (true) {
+      final int slotValue = slots[slot];
+      if (slotValue == 0) {
+        break;
+      }
+      final int entry = slotValue - 1;
+      if (entryHashCodes[entry] == hashCode && isKeyEqual(entry)) {
+        return entry;
+      }
+      // Some other key (collision) - keep probing.
+      probeSlot += (++i);
+      slot = (int)(probeSlot & logicalHashBucketMask);
+    }
+    if (largestNumberOfSteps < i) {
+      largestNumberOfSteps = i;
+    }
+
+    final int newEntry = allocateEntry(hashCode);
+    slots[slot] = newEntry + 1;
+    if (entryCount >= resizeThreshold) {
+      expandAndRehash();
+    }
+    return -(newEntry + 1);
+  }
+
+  private int allocateEntry(int hashCode) {
+    final int newEntry = entryCount++;
+    ensureEntryCapacity(entryCount);
+    entryHashCodes[newEntry] = hashCode;
+    return newEntry;
+  }
+
+  /*
+   * Compares the probe key set up by the sub-class with the key of an existing entry.
+   */
+  protected abstract boolean isKeyEqual(int entry);
+
+  /*
+   * Grows the sub-class entry key arrays so they hold at least the given number of entries.
+   */
+  protected abstract void growEntryKeys(int newEntryCapacity);
+
+  /*
+   * Moves the key of entry fromEntry to toEntry (toEntry < fromEntry) during compaction.
+   */
+  protected abstract void moveEntryKey(int fromEntry, int toEntry);
+
+  /*
+   * Called after the oldest entries were removed and the surviving entries moved down.
+   */
+  protected void finishCompaction() {
+  }
+
+  /*
+   * Called when the table is cleared.
+   */
+  protected void clearEntryKeys() {
+  }
+
+  /*
+   * The memory used by the sub-class key storage, in bytes.
+   */
+  protected abstract long getEntryKeysMemorySize();
+
+  private void ensureEntryCapacity(int neededCapacity) {
+    final int capacity = entryHashCodes.length;
+    if (neededCapacity <= capacity) {
+      return;
+    }
+    final int newCapacity = Math.max(neededCapacity, capacity * 2);
+    entryHashCodes = Arrays.copyOf(entryHashCodes, newCapacity);
+    entryAggregations = Arrays.copyOf(entryAggregations, newCapacity);
+    growEntryKeys(newCapacity);
+  }
+
+  private void expandAndRehash() throws HiveException {
+    if (logicalHashBucketCount >= HIGHEST_INT_POWER_OF_2) {
+      throw new HiveException(
+          "Vector GROUP BY hash table cannot grow any more.  Current logical size is " +
+          logicalHashBucketCount);
+    }
+    logicalHashBucketCount *= 2;
+    logicalHashBucketMask = logicalHashBucketCount - 1;
+    resizeThreshold = (int)(logicalHashBucketCount * loadFactor);
+    slots = new int[logicalHashBucketCount];
+    rebuildSlots();
+    metricExpands++;
+  }
+
+  /*
+   * Re-inserts all live entries into the (empty) slot array using the saved hash codes.
+   */
+  private void rebuildSlots() {
+    largestNumberOfSteps = 0;
+    for (int entry = 0; entry < entryCount; entry++) {
+      if (entry == nullKeyEntry) {
+        continue;
+      }
+      int slot = entryHashCodes[entry] & logicalHashBucketMask;
+      long probeSlot = slot;
+      int i = 0;
+      while (slots[slot] != 0) {
+        probeSlot += (++i);
+        slot = (int)(probeSlot & logicalHashBucketMask);
+      }
+      if (largestNumberOfSteps < i) {
+        largestNumberOfSteps = i;
+      }
+      slots[slot] = entry + 1;
+    }
+  }
+
+  /**
+   * Removes the oldest count entries.  The caller must already have emitted them.
+   *
+   * The surviving entries are moved to the front (preserving their insertion order) and the
+   * removed aggregation buffer rows are reset and kept for reuse.
+   */
+  public void removeOldest(int count) {
+    if (count <= 0) {
+      return;
+    }
+    if (count >= entryCount) {
+      clear();
+      return;
+    }
+    final int remaining = entryCount - count;
+
+    // Keep the flushed rows so the next new keys reuse them.
+    VectorAggregationBufferRow[] flushed = Arrays.copyOf(entryAggregations, count);
+    for (int entry = 0; entry < remaining; entry++) {
+      final int fromEntry = entry + count;
+      entryHashCodes[entry] = entryHashCodes[fromEntry];
+      entryAggregations[entry] = entryAggregations[fromEntry];
+      moveEntryKey(fromEntry, entry);
+    }
+    for (int i = 0; i < count; i++) {
+      VectorAggregationBufferRow row = flushed[i];
+      if (row != null) {
+        row.reset();
+      }
+      entryAggregations[remaining + i] = row;
+    }
+    entryCount = remaining;
+    if (nullKeyEntry != -1) {
+      nullKeyEntry = (nullKeyEntry < count ? -1 : nullKeyEntry - count);
+    }
+    finishCompaction();
+
+    Arrays.fill(slots, 0);
+    rebuildSlots();
+    metricCompactions++;
+  }
+
+  /**
+   * Removes all entries.  The aggregation buffer rows are reset and kept for reuse.
+   */
+  public void clear() {
+    for (int entry = 0; entry < entryCount; entry++) {
+      VectorAggregationBufferRow row = entryAggregations[entry];
+      if (row != null) {
+        row.reset();
+      }
+    }
+    entryCount = 0;
+    nullKeyEntry = -1;
+    Arrays.fill(slots, 0);
+    largestNumberOfSteps = 0;
+    clearEntryKeys();
+  }
+
+  /**
+   * The exact memory of the table structures: the slot array, the entry arrays and the key
+   * storage.  It does not include the aggregation buffers themselves which the operator accounts
+   * for per entry.
+   */
+  public long getEstimatedMemorySize() {
+    JavaDataModel jdm = JavaDataModel.get();
+    long size = JavaDataModel.alignUp(jdm.object() + 8L * jdm.primitive1(), jdm.memoryAlign());
+    size += jdm.lengthForIntArrayOfSize(slots.length);
+    size += jdm.lengthForIntArrayOfSize(entryHashCodes.length);
+    size += jdm.lengthForObjectArrayOfSize(entryAggregations.length);
+    size += getEntryKeysMemorySize();
+    return size;
+  }
+
+  public void logStats(String name) {
+    if (LOG.isDebugEnabled()) {
+      LOG.debug(name + " entries " + entryCount +
+          " logical hash bucket count " + logicalHashBucketCount +
+          " largest number of steps " + largestNumberOfSteps +
+          " expands " + metricExpands +
+          " compactions " + metricCompactions);
+    }
+  }
+}
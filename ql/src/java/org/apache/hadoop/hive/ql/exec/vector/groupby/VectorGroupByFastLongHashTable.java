@@ -0,0 +1,85 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.hadoop.hive.ql.exec.vector.groupby;
+
+import java.util.Arrays;
+
+import org.apache.hadoop.hive.ql.metadata.HiveException;
+import org.apache.hadoop.hive.ql.util.JavaDataModel;
+import org.apache.hive.common.util.HashCodeUtil;
+
+/*
+ * A single long key hash table for the vectorized GROUP BY.  The keys are kept in a long array
+ * indexed by entry number.
+ */
+public class VectorGroupByFastLongHashTable extends VectorGroupByFastHashTable {
+
+  private long[] entryKeys;
+
+  private long probeKey;
+
+  public VectorGroupByFastLongHashTable(int initialCapacity, float loadFactor) {
+    super(initialCapacity, loadFactor);
+    entryKeys = new long[entryHashCodes.length];
+  }
+
+  /**
+   * Finds the entry for a key, adding a new one when not present.
+   * @return the entry index, or -(entry + 1) when the entry is new.
+   */
+  public int findOrAdd(long key) throws HiveException {
+    return findOrAdd(key, HashCodeUtil.calculateLongHashCode(key));
+  }
+
+  /**
+   * Same as {@link #findOrAdd(long)} for a caller that already computed the key hash code.
+   */
+  public int findOrAdd(long key, int hashCode) throws HiveException {
+    probeKey = key;
+    final int result = probe(hashCode);
+    if (result < 0) {
+      entryKeys[-result - 1] = key;
+    }
+    return result;
+  }
+
+  public long getKey(int entry) {
+    return entryKeys[entry];
+  }
+
+  @Override
+  protected boolean isKeyEqual(int entry) {
+    return entryKeys[entry] == probeKey;
+  }
+
+  @Override
+  protected void growEntryKeys(int newEntryCapacity) {
+    entryKeys = Arrays.copyOf(entryKeys, newEntryCapacity);
+  }
+
+  @Override
+  protected void moveEntryKey(int fromEntry, int toEntry) {
+    entryKeys[toEntry] = entryKeys[fromEntry];
+  }
+
+  @Override
+  protected long getEntryKeysMemorySize() {
+    return JavaDataModel.get().lengthForLongArrayOfSize(entryKeys.length);
+  }
+}
@@ -39,6 +39,7 @@
 import org.apache.hadoop.hive.ql.exec.vector.VectorizedBatchUtil;
 import org.apache.hadoop.hive.ql.exec.vector.VectorizedRowBatch;
 import org.apache.hadoop.hive.ql.exec.vector.expressions.VectorExpression;
+import org.apache.hadoop.hive.ql.exec.vector.mapjoin.fast.VectorMapJoinFastHybridTableContainer;
 import org.apache.hadoop.hive.ql.exec.vector.mapjoin.hashtable.VectorMapJoinHashTableResult;
 import org.apache.hadoop.hive.ql.exec.vector.mapjoin.hashtable.VectorMapJoinHashMapResult;
 import org.apache.hadoop.hive.ql.exec.vector.mapjoin.optimized.VectorMapJoinOptimizedCreateHashTable;
@@ -57,6 +58,8 @@
 import org.apache.hadoop.hive.serde2.typeinfo.TypeInfoUtils;
 import org.apache.hadoop.hive.serde2.ByteStream.Output;
 
+import com.esotericsoftware.kryo.KryoException;
+
 /**
  * This class has methods for generating vectorized join results and forwarding batchs.
  *
@@ -475,15 +478,27 @@ private void setupSpillSerDe(VectorizedRowBatch batch) throws HiveException {
     bigTableVectorDeserializeRow.init(noNullsProjection);
   }
 
+  /*
+   * Get the container of the spilled big table rows of a partition, from either the optimized
+   * or the fast hybrid table container of the small table.
+   */
+  private VectorRowBytesContainer getMatchfileRowBytesContainer(int partitionId) {
+    MapJoinTableContainer smallTable = mapJoinTables[posSingleVectorMapJoinSmallTable];
+    if (smallTable instanceof VectorMapJoinFastHybridTableContainer) {
+      return ((VectorMapJoinFastHybridTableContainer) smallTable)
+          .getMatchfileRowBytesContainer(partitionId);
+    }
+    HybridHashTableContainer ht = (HybridHashTableContainer) smallTable;
+    HashPartition hp = ht.getHashPartitions()[partitionId];
+    return hp.getMatchfileRowBytesContainer();
+  }
+
   private void spillSerializeRow(VectorizedRowBatch batch, int batchIndex,
       VectorMapJoinHashTableResult hashTableResult) throws IOException {
 
     int partitionId = hashTableResult.spillPartitionId();
 
-    HybridHashTableContainer ht = (HybridHashTableContainer) mapJoinTables[posSingleVectorMapJoinSmallTable];
-    HashPartition hp = ht.getHashPartitions()[partitionId];
-
-    VectorRowBytesContainer rowBytesContainer = hp.getMatchfileRowBytesContainer();
+    VectorRowBytesContainer rowBytesContainer = getMatchfileRowBytesContainer(partitionId);
     Output output = rowBytesContainer.getOuputForRowBytes();
 //  int offset = output.getLength();
     bigTableVectorSerializeRow.setOutputAppend(output);
@@ -551,6 +566,47 @@ protected void reloadHashTable(byte pos, int partitionId)
     }
   }
 
+  /**
+   * With the fast hash tables, reload each spilled partition hash table of the small table and
+   * join it with the big table rows that were spilled for it.
+   */
+  @Override
+  protected void reProcessSpilledPartitions() throws HiveException {
+    MapJoinTableContainer smallTable = mapJoinTables[posSingleVectorMapJoinSmallTable];
+    if (!(smallTable instanceof VectorMapJoinFastHybridTableContainer)) {
+      super.reProcessSpilledPartitions();
+      return;
+    }
+    VectorMapJoinFastHybridTableContainer container =
+        (VectorMapJoinFastHybridTableContainer) smallTable;
+    container.dumpMetrics();
+
+    // The in memory partitions are done.
+    container.clearInMemoryPartitions();
+    vectorMapJoinHashTable = null;
+
+    for (int partitionId = 0; partitionId < container.getNumPartitions(); partitionId++) {
+      if (!container.isOnDisk(partitionId)) {
+        continue;
+      }
+      LOG.info("Going to reload hash partition " + partitionId);
+      try {
+        vectorMapJoinHashTable = container.reloadHashTable(partitionId);
+        needHashTableSetup = true;
+        reProcessBigTable(partitionId);
+      } catch (KryoException ke) {
+        LOG.error("Processing the spilled data failed due to Kryo error!");
+        LOG.error("Cleaning up all spilled data!");
+        container.clear();
+        throw new HiveException(ke);
+      } catch (Exception e) {
+        throw new HiveException(e);
+      }
+      vectorMapJoinHashTable = null;
+      container.clearPartition(partitionId);
+    }
+  }
+
   @Override
   protected void reProcessBigTable(int partitionId)
       throws HiveException {
@@ -564,13 +620,11 @@ protected void reProcessBigTable(int partitionId)
       return;
     }
 
-    HashPartition partition = firstSmallTable.getHashPartitions()[partitionId];
-
     int rowCount = 0;
     int batchCount = 0;
 
     try {
-      VectorRowBytesContainer bigTable = partition.getMatchfileRowBytesContainer();
+      VectorRowBytesContainer bigTable = getMatchfileRowBytesContainer(partitionId);
       bigTable.prepareForReading();
 
       while (bigTable.readNext()) {
@@ -18,6 +18,7 @@
 package org.apache.hadoop.hive.ql.exec.vector.mapjoin.fast;
 
 import java.io.IOException;
+import java.lang.management.ManagementFactory;
 import java.util.Collections;
 import java.util.Map;
 
@@ -33,6 +34,7 @@
 import org.apache.hadoop.hive.ql.exec.mr.ExecMapperContext;
 import org.apache.hadoop.hive.ql.exec.persistence.MapJoinTableContainer;
 import org.apache.hadoop.hive.ql.exec.persistence.MapJoinTableContainerSerDe;
+import org.apache.hadoop.hive.ql.exec.vector.mapjoin.hashtable.VectorMapJoinTableContainer;
 import org.apache.hadoop.hive.ql.exec.tez.TezContext;
 import org.apache.hadoop.hive.ql.metadata.HiveException;
 import org.apache.hadoop.hive.ql.plan.MapJoinDesc;
@@ -72,6 +74,29 @@ public void load(MapJoinTableContainer[] mapJoinTables,
     Map<Integer, String> parentToInput = desc.getParentToInput();
     Map<Integer, Long> parentKeyCounts = desc.getParentKeyCounts();
 
+    // The native vector map join has a single small table, so with Hybrid Grace Hash Join all
+    // the map join memory goes to it.
+    boolean useHybridGraceHashJoin = desc.isHybridHashJoin();
+    long totalMapJoinMemory = 0;
+    if (useHybridGraceHashJoin) {
+      totalMapJoinMemory = desc.getMemoryNeeded();
+      LOG.info("Memory manager allocates " + totalMapJoinMemory + " bytes for the loading hashtable.");
+      if (totalMapJoinMemory <= 0) {
+        totalMapJoinMemory = HiveConf.getLongVar(
+            hconf, HiveConf.ConfVars.HIVECONVERTJOINNOCONDITIONALTASKTHRESHOLD);
+      }
+
+      long processMaxMemory = ManagementFactory.getMemoryMXBean().getHeapMemoryUsage().getMax();
+      if (totalMapJoinMemory > processMaxMemory) {
+        float hashtableMemoryUsage = HiveConf.getFloatVar(
+            hconf, HiveConf.ConfVars.HIVEHASHTABLEFOLLOWBYGBYMAXMEMORYUSAGE);
+        LOG.warn("totalMapJoinMemory value of " + totalMapJoinMemory +
+            " is greater than the max memory size of " + processMaxMemory);
+        // Don't want to attempt to grab more memory than we have available .. percentage is a bit arbitrary
+        totalMapJoinMemory = (long) (processMaxMemory * hashtableMemoryUsage);
+      }
+    }
+
     MemoryMonitorInfo memoryMonitorInfo = desc.getMemoryMonitorInfo();
     boolean doMemCheck = false;
     long effectiveThreshold = 0;
@@ -119,8 +144,16 @@ public void load(MapJoinTableContainer[] mapJoinTables,
         Long keyCountObj = parentKeyCounts.get(pos);
         long keyCount = (keyCountObj == null) ? -1 : keyCountObj.longValue();
 
-        VectorMapJoinFastTableContainer vectorMapJoinFastTableContainer =
-                new VectorMapJoinFastTableContainer(desc, hconf, keyCount);
+        VectorMapJoinTableContainer vectorMapJoinFastTableContainer;
+        if (useHybridGraceHashJoin) {
+          // Spills partitions of the small table to disk instead of going over the memory limit.
+          vectorMapJoinFastTableContainer =
+              new VectorMapJoinFastHybridTableContainer(desc, hconf, keyCount,
+                  totalMapJoinMemory, desc.getParentDataSizes().get(pos));
+        } else {
+          vectorMapJoinFastTableContainer =
+              new VectorMapJoinFastTableContainer(desc, hconf, keyCount);
+        }
 
         LOG.info("Loading hash table for input: {} cacheKey: {} tableContainer: {} smallTablePos: {}", inputName,
           cacheKey, vectorMapJoinFastTableContainer.getClass().getSimpleName(), pos);
@@ -0,0 +1,732 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.hadoop.hive.ql.exec.vector.mapjoin.fast;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.hive.common.FileUtils;
+import org.apache.hadoop.hive.common.ObjectPair;
+import org.apache.hadoop.hive.conf.HiveConf;
+import org.apache.hadoop.hive.ql.exec.JoinUtil;
+import org.apache.hadoop.hive.ql.exec.SerializationUtilities;
+import org.apache.hadoop.hive.ql.exec.persistence.HashMapWrapper;
+import org.apache.hadoop.hive.ql.exec.persistence.HybridHashTableContainer;
+import org.apache.hadoop.hive.ql.exec.persistence.KeyValueContainer;
+import org.apache.hadoop.hive.ql.exec.persistence.MapJoinKey;
+import org.apache.hadoop.hive.ql.exec.persistence.MapJoinObjectSerDeContext;
+import org.apache.hadoop.hive.ql.exec.vector.mapjoin.hashtable.VectorMapJoinBytesHashMap;
+import org.apache.hadoop.hive.ql.exec.vector.mapjoin.hashtable.VectorMapJoinBytesHashMultiSet;
+import org.apache.hadoop.hive.ql.exec.vector.mapjoin.hashtable.VectorMapJoinBytesHashSet;
+import org.apache.hadoop.hive.ql.exec.vector.mapjoin.hashtable.VectorMapJoinHashMapResult;
+import org.apache.hadoop.hive.ql.exec.vector.mapjoin.hashtable.VectorMapJoinHashMultiSetResult;
+import org.apache.hadoop.hive.ql.exec.vector.mapjoin.hashtable.VectorMapJoinHashSetResult;
+import org.apache.hadoop.hive.ql.exec.vector.mapjoin.hashtable.VectorMapJoinHashTable;
+import org.apache.hadoop.hive.ql.exec.vector.mapjoin.hashtable.VectorMapJoinHashTableResult;
+import org.apache.hadoop.hive.ql.exec.vector.mapjoin.hashtable.VectorMapJoinLongHashMap;
+import org.apache.hadoop.hive.ql.exec.vector.mapjoin.hashtable.VectorMapJoinLongHashMultiSet;
+import org.apache.hadoop.hive.ql.exec.vector.mapjoin.hashtable.VectorMapJoinLongHashSet;
+import org.apache.hadoop.hive.ql.exec.vector.mapjoin.hashtable.VectorMapJoinTableContainer;
+import org.apache.hadoop.hive.ql.exec.vector.rowbytescontainer.VectorRowBytesContainer;
+import org.apache.hadoop.hive.ql.io.HiveKey;
+import org.apache.hadoop.hive.ql.metadata.HiveException;
+import org.apache.hadoop.hive.ql.metadata.HiveUtils;
+import org.apache.hadoop.hive.ql.plan.MapJoinDesc;
+import org.apache.hadoop.hive.ql.plan.VectorMapJoinDesc;
+import org.apache.hadoop.hive.ql.plan.VectorMapJoinDesc.HashTableKeyType;
+import org.apache.hadoop.hive.serde2.SerDeException;
+import org.apache.hadoop.hive.serde2.binarysortable.fast.BinarySortableDeserializeRead;
+import org.apache.hadoop.hive.serde2.typeinfo.PrimitiveTypeInfo;
+import org.apache.hadoop.hive.serde2.typeinfo.TypeInfoFactory;
+import org.apache.hadoop.io.BytesWritable;
+import org.apache.hadoop.io.Writable;
+import org.apache.hive.common.util.HashCodeUtil;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.esotericsoftware.kryo.Kryo;
+
+/**
+ * Table container for Hybrid Grace Hash Join with the vectorized MapJoin fast hash tables.
+ *
+ * The small table rows are distributed into partitions by the hash code of their key, and each
+ * partition has its own fast hash table.  When the memory threshold is reached while loading,
+ * the biggest hash table in memory is spilled to local disk and later small table rows of that
+ * partition are put into a sidefile.  Big table rows whose key falls into a spilled partition
+ * get a SPILL join result; the operator saves them into the partition matchfile, and joins them
+ * after reloading the partition hash table when it closes.
+ *
+ * Like HybridHashTableContainer for the native vector map join, there is a single small table,
+ * and a reloaded partition is not spilled again.
+ */
+public class VectorMapJoinFastHybridTableContainer implements VectorMapJoinTableContainer {
+
+  private static final Logger LOG =
+      LoggerFactory.getLogger(VectorMapJoinFastHybridTableContainer.class.getName());
+
+  private final HashTableKeyType hashTableKeyType;
+  private final boolean isLongKey;
+  private final boolean useMinMax;
+  private long min;
+  private long max;
+
+  // Used to get the key of the small table rows, for the long and string keys.  A multi-key
+  // is hashed in its serialized form, the same way as the fast multi-key hash tables do.
+  private final BinarySortableDeserializeRead keyBinarySortableDeserializeRead;
+
+  private final FastHashPartition[] hashPartitions;
+  private final int partitionMask;
+
+  private final long memoryThreshold;           // the max memory limit that can be allocated
+  private final long tableRowSize;              // row size of the small table
+  private final int memoryCheckFrequency;       // how often (# of rows apart) to check if memory is full
+  private final String spillLocalDirs;
+
+  private long rowCount;                        // number of small table rows put so far
+  private int numPartitionsSpilled;
+  private boolean lastPartitionInMem;           // only one (last one) partition is left in memory
+  private boolean isSpilled;
+
+  private HiveKey sidefileKey;
+
+  private final VectorMapJoinHashTable vectorMapJoinHashTable;
+
+  /**
+   * A partition of the small table: the fast hash table (in memory or on disk), and the row
+   * containers for small table rows that arrive after spilling and for spilled big table rows.
+   */
+  private static class FastHashPartition {
+    VectorMapJoinFastHashTable hashTable;   // In memory hash table; null when on disk
+    Class<? extends VectorMapJoinFastHashTable> hashTableClass;
+    Path hashTableLocalPath;                // Local file system path for spilled hash table
+    int keysOnDisk;                         // How many keys are in the on-disk hash table
+    KeyValueContainer sidefileKVContainer;  // Stores small table key/value pairs
+    VectorRowBytesContainer matchfileRowBytesContainer;
+                                            // Stores big table rows as bytes
+    private final String spillLocalDirs;
+
+    FastHashPartition(VectorMapJoinFastHashTable hashTable, String spillLocalDirs) {
+      this.hashTable = hashTable;
+      this.hashTableClass = hashTable.getClass();
+      this.spillLocalDirs = spillLocalDirs;
+    }
+
+    boolean isHashTableOnDisk() {
+      return hashTableLocalPath != null;
+    }
+
+    KeyValueContainer getSidefileKVContainer() {
+      if (sidefileKVContainer == null) {
+        sidefileKVContainer = new KeyValueContainer(spillLocalDirs);
+      }
+      return sidefileKVContainer;
+    }
+
+    VectorRowBytesContainer getMatchfileRowBytesContainer() {
+      if (matchfileRowBytesContainer == null) {
+        matchfileRowBytesContainer = new VectorRowBytesContainer(spillLocalDirs);
+      }
+      return matchfileRowBytesContainer;
+    }
+
+    int size() {
+      if (isHashTableOnDisk()) {
+        return keysOnDisk + (sidefileKVContainer != null ? sidefileKVContainer.size() : 0);
+      }
+      return (hashTable != null ? hashTable.size() : 0);
+    }
+
+    void clear() {
+      hashTable = null;
+      if (hashTableLocalPath != null) {
+        try {
+          Files.delete(hashTableLocalPath);
+        } catch (Throwable ignored) {
+        }
+        hashTableLocalPath = null;
+        keysOnDisk = 0;
+      }
+      if (sidefileKVContainer != null) {
+        sidefileKVContainer.clear();
+        sidefileKVContainer = null;
+      }
+      if (matchfileRowBytesContainer != null) {
+        matchfileRowBytesContainer.clear();
+        matchfileRowBytesContainer = null;
+      }
+    }
+  }
+
+  public VectorMapJoinFastHybridTableContainer(MapJoinDesc desc, Configuration hconf,
+      long estimatedKeyCount, long memoryAvailable, long estimatedTableSize)
+          throws SerDeException, IOException {
+
+    VectorMapJoinDesc vectorDesc = (VectorMapJoinDesc) desc.getVectorDesc();
+    hashTableKeyType = vectorDesc.getHashTableKeyType();
+
+    float keyCountAdj = HiveConf.getFloatVar(hconf, HiveConf.ConfVars.HIVEHASHTABLEKEYCOUNTADJUSTMENT);
+    int threshold = HiveConf.getIntVar(hconf, HiveConf.ConfVars.HIVEHASHTABLETHRESHOLD);
+    float loadFactor = HiveConf.getFloatVar(hconf, HiveConf.ConfVars.HIVEHASHTABLELOADFACTOR);
+    int maxWbSize = HiveConf.getIntVar(hconf, HiveConf.ConfVars.HIVEHASHTABLEWBSIZE);
+    int minWbSize = HiveConf.getIntVar(hconf, HiveConf.ConfVars.HIVEHYBRIDGRACEHASHJOINMINWBSIZE);
+    int minNumParts =
+        HiveConf.getIntVar(hconf, HiveConf.ConfVars.HIVEHYBRIDGRACEHASHJOINMINNUMPARTITIONS);
+    memoryCheckFrequency =
+        HiveConf.getIntVar(hconf, HiveConf.ConfVars.HIVEHYBRIDGRACEHASHJOINMEMCHECKFREQ);
+    spillLocalDirs = HiveUtils.getLocalDirList(hconf);
+
+    memoryThreshold = memoryAvailable;
+    tableRowSize = estimatedTableSize / (estimatedKeyCount > 0 ? estimatedKeyCount : 1);
+
+    int numPartitions = HybridHashTableContainer.calcNumPartitions(
+        memoryThreshold, estimatedTableSize, minNumParts, minWbSize);
+    partitionMask = numPartitions - 1;
+
+    // Same sizing as HybridHashTableContainer: a power of 2 write buffer size per partition,
+    // capped so that the partitions together do not preallocate more than the normal table.
+    int writeBufferSize = Integer.highestOneBit(
+        (int) Math.min(estimatedTableSize / numPartitions, maxWbSize / numPartitions));
+    writeBufferSize = Math.max(writeBufferSize, minWbSize);
+
+    int newThreshold = HashMapWrapper.calculateTableSize(
+        keyCountAdj, threshold, loadFactor, estimatedKeyCount);
+    int initialCapacity = Math.max(Math.max(newThreshold, threshold) / numPartitions, 1);
+    long partitionKeyCount = (estimatedKeyCount > 0 ? estimatedKeyCount / numPartitions : -1);
+
+    hashPartitions = new FastHashPartition[numPartitions];
+    for (int i = 0; i < numPartitions; i++) {
+      hashPartitions[i] = new FastHashPartition(
+          VectorMapJoinFastTableContainer.createHashTable(
+              desc, initialCapacity, loadFactor, writeBufferSize, partitionKeyCount),
+          spillLocalDirs);
+    }
+    LOG.info("Total available memory: " + memoryThreshold + ", number of partitions: " +
+        numPartitions + ", write buffer size: " + writeBufferSize);
+
+    switch (hashTableKeyType) {
+    case BOOLEAN:
+    case BYTE:
+    case SHORT:
+    case INT:
+    case LONG:
+      isLongKey = true;
+      useMinMax = vectorDesc.getMinMaxEnabled();
+      keyBinarySortableDeserializeRead = new BinarySortableDeserializeRead(
+          new PrimitiveTypeInfo[] { hashTableKeyType.getPrimitiveTypeInfo() },
+          /* useExternalBuffer */ false);
+      vectorMapJoinHashTable = new HybridLongHashTable();
+      break;
+    case STRING:
+      isLongKey = false;
+      useMinMax = false;
+      keyBinarySortableDeserializeRead = new BinarySortableDeserializeRead(
+          new PrimitiveTypeInfo[] { TypeInfoFactory.stringTypeInfo },
+          /* useExternalBuffer */ false);
+      vectorMapJoinHashTable = new HybridBytesHashTable();
+      break;
+    case MULTI_KEY:
+      isLongKey = false;
+      useMinMax = false;
+      keyBinarySortableDeserializeRead = null;
+      vectorMapJoinHashTable = new HybridBytesHashTable();
+      break;
+    default:
+      throw new RuntimeException("Unexpected hash table key type " + hashTableKeyType.name());
+    }
+    min = Long.MAX_VALUE;
+    max = Long.MIN_VALUE;
+  }
+
+  @Override
+  public VectorMapJoinHashTable vectorMapJoinHashTable() {
+    return vectorMapJoinHashTable;
+  }
+
+  /*
+   * The fast hash tables use the low bits of the key hash code for their slots, so the
+   * partition is taken from a re-mixed hash code instead.
+   */
+  private int partitionId(int hashCode) {
+    return HashCodeUtil.calculateIntHashCode(hashCode) & partitionMask;
+  }
+
+  private boolean readKeyField(BytesWritable currentKey) throws HiveException {
+    keyBinarySortableDeserializeRead.set(currentKey.getBytes(), 0, currentKey.getLength());
+    try {
+      return keyBinarySortableDeserializeRead.readNextField();
+    } catch (Exception e) {
+      throw new HiveException(
+          "\nDeserializeRead details: " +
+              keyBinarySortableDeserializeRead.getDetailedReadPositionString() +
+          "\nException: " + e.toString());
+    }
+  }
+
+  @Override
+  public MapJoinKey putRow(Writable currentKey, Writable currentValue)
+      throws SerDeException, HiveException, IOException {
+
+    // We are not using the key and value contexts, nor do we support a MapJoinKey.
+    internalPutRow((BytesWritable) currentKey, (BytesWritable) currentValue);
+    return null;
+  }
+
+  /* For a given row, put it into proper partition based on its key hash code.
+   * When memory threshold is reached, the biggest hash table in memory will be spilled to disk.
+   * If the hash table of a specific partition is already on disk, all later rows will be put into
+   * a row container for later use.
+   */
+  private void internalPutRow(BytesWritable currentKey, BytesWritable currentValue)
+      throws HiveException, IOException {
+
+    long longKey = 0;
+    byte[] keyBytes;
+    int keyStart;
+    int keyLength;
+    int hashCode;
+    if (isLongKey) {
+      if (!readKeyField(currentKey)) {
+        // A NULL key never matches; the fast hash tables do not store it.
+        return;
+      }
+      longKey = VectorMapJoinFastLongHashUtil.deserializeLongKey(
+          keyBinarySortableDeserializeRead, hashTableKeyType);
+      if (useMinMax) {
+        min = Math.min(min, longKey);
+        max = Math.max(max, longKey);
+      }
+      keyBytes = null;
+      keyStart = 0;
+      keyLength = 0;
+      hashCode = HashCodeUtil.calculateLongHashCode(longKey);
+    } else if (keyBinarySortableDeserializeRead != null) {
+      if (!readKeyField(currentKey)) {
+        return;
+      }
+      keyBytes = keyBinarySortableDeserializeRead.currentBytes;
+      keyStart = keyBinarySortableDeserializeRead.currentBytesStart;
+      keyLength = keyBinarySortableDeserializeRead.currentBytesLength;
+      hashCode = HashCodeUtil.murmurHash(keyBytes, keyStart, keyLength);
+    } else {
+      keyBytes = currentKey.getBytes();
+      keyStart = 0;
+      keyLength = currentKey.getLength();
+      hashCode = HashCodeUtil.murmurHash(keyBytes, keyStart, keyLength);
+    }
+
+    int partitionId = partitionId(hashCode);
+    FastHashPartition hashPartition = hashPartitions[partitionId];
+
+    rowCount++;
+    if (!hashPartition.isHashTableOnDisk() &&
+        !lastPartitionInMem &&
+        (rowCount & (memoryCheckFrequency - 1)) == 0 &&
+        isMemoryFull()) {
+      if (numPartitionsSpilled == hashPartitions.length - 1) {
+        LOG.warn("This LAST partition in memory won't be spilled!");
+        lastPartitionInMem = true;
+      } else {
+        spillPartition(biggestPartition());
+      }
+    }
+
+    if (hashPartition.isHashTableOnDisk()) {
+      if (currentKey instanceof HiveKey) {
+        hashPartition.getSidefileKVContainer().add((HiveKey) currentKey, currentValue);
+      } else {
+        if (sidefileKey == null) {
+          sidefileKey = new HiveKey();
+        }
+        sidefileKey.set(currentKey);
+        hashPartition.getSidefileKVContainer().add(sidefileKey, currentValue);
+      }
+    } else if (isLongKey) {
+      ((VectorMapJoinFastLongHashTable) hashPartition.hashTable).add(longKey, currentValue);
+    } else {
+      ((VectorMapJoinFastBytesHashTable) hashPartition.hashTable).add(
+          keyBytes, keyStart, keyLength, currentValue);
+    }
+  }
+
+  /**
+   * Get the current memory usage: the in memory hash tables, plus the sidefile rows that have
+   * not been written to disk yet.
+   */
+  private long refreshMemoryUsed() {
+    long memUsed = 0;
+    for (FastHashPartition hp : hashPartitions) {
+      if (hp.hashTable != null) {
+        memUsed += hp.hashTable.getEstimatedMemorySize();
+      } else if (hp.sidefileKVContainer != null) {
+        memUsed += hp.sidefileKVContainer.numRowsInReadBuffer() * tableRowSize;
+      }
+    }
+    return memUsed;
+  }
+
+  /**
+   * Check if the memory threshold is about to be reached, counting in the rows to be loaded
+   * until the next check.
+   */
+  private boolean isMemoryFull() {
+    return refreshMemoryUsed() + memoryCheckFrequency * tableRowSize >= memoryThreshold;
+  }
+
+  /**
+   * Find the partition with the biggest hash table in memory at this moment.
+   */
+  private int biggestPartition() {
+    int res = -1;
+    long maxSize = -1;
+    for (int i = 0; i < hashPartitions.length; i++) {
+      VectorMapJoinFastHashTable hashTable = hashPartitions[i].hashTable;
+      if (hashTable != null && hashTable.getEstimatedMemorySize() > maxSize) {
+        maxSize = hashTable.getEstimatedMemorySize();
+        res = i;
+      }
+    }
+    return res;
+  }
+
+  /**
+   * Move the hash table of a specified partition from memory into local file system.
+   * @param partitionId the hash table to be moved
+   * @return amount of memory freed
+   */
+  public long spillPartition(int partitionId) throws IOException {
+    FastHashPartition partition = hashPartitions[partitionId];
+    VectorMapJoinFastHashTable hashTable = partition.hashTable;
+
+    File file = FileUtils.createLocalDirsTempFile(
+        spillLocalDirs, "partition-" + partitionId + "-", null, false);
+    OutputStream outputStream = new FileOutputStream(file, false);
+
+    com.esotericsoftware.kryo.io.Output output =
+        new com.esotericsoftware.kryo.io.Output(outputStream);
+    Kryo kryo = SerializationUtilities.borrowKryo();
+    try {
+      LOG.info("Trying to spill hash partition " + partitionId + " ...");
+      kryo.writeObject(output, hashTable);  // use Kryo to serialize the hash table
+      output.close();
+      outputStream.close();
+    } finally {
+      SerializationUtilities.releaseKryo(kryo);
+    }
+
+    long memFreed = hashTable.getEstimatedMemorySize();
+    LOG.info("Spilling hash partition " + partitionId + " (Keys: " + hashTable.size() +
+        ", Mem size: " + memFreed + "): " + file);
+
+    partition.hashTableLocalPath = file.toPath();
+    partition.keysOnDisk = hashTable.size();
+    partition.hashTable = null;
+    numPartitionsSpilled++;
+    isSpilled = true;
+    return memFreed;
+  }
+
+  /**
+   * Restore the hash table of a spilled partition from disk, and merge the small table rows of
+   * its sidefile into it.
+   * @param partitionId the partition to reload
+   * @return the hash table of the partition, holding all its small table rows
+   */
+  public VectorMapJoinFastHashTable reloadHashTable(int partitionId)
+      throws IOException, HiveException, SerDeException {
+    FastHashPartition partition = hashPartitions[partitionId];
+
+    InputStream inputStream = Files.newInputStream(partition.hashTableLocalPath);
+    com.esotericsoftware.kryo.io.Input input = new com.esotericsoftware.kryo.io.Input(inputStream);
+    Kryo kryo = SerializationUtilities.borrowKryo();
+    VectorMapJoinFastHashTable restoredHashTable;
+    try {
+      restoredHashTable = kryo.readObject(input, partition.hashTableClass);
+    } finally {
+      SerializationUtilities.releaseKryo(kryo);
+      input.close();
+      inputStream.close();
+    }
+    Files.delete(partition.hashTableLocalPath);
+    partition.hashTableLocalPath = null;
+    partition.keysOnDisk = 0;
+
+    // Merge the sidefile into the restored hash table.
+    KeyValueContainer kvContainer = partition.sidefileKVContainer;
+    if (kvContainer != null) {
+      LOG.info("Hybrid Grace Hash Join: Number of rows restored from KeyValueContainer: " +
+          kvContainer.size());
+      while (kvContainer.hasNext()) {
+        ObjectPair<HiveKey, BytesWritable> pair = kvContainer.next();
+        restoredHashTable.putRow(pair.getFirst(), pair.getSecond());
+      }
+      kvContainer.clear();
+      partition.sidefileKVContainer = null;
+    }
+
+    if (restoredHashTable.getEstimatedMemorySize() >= memoryThreshold / 2) {
+      LOG.warn("Hybrid Grace Hash Join: Hash table of partition " + partitionId + " is greater" +
+          " than half of the memory limit. Recursive spilling is currently not supported");
+    }
+
+    partition.hashTable = restoredHashTable;
+    return restoredHashTable;
+  }
+
+  /**
+   * Release the in memory hash tables; the join of their partitions is complete once the big
+   * table input has been processed.
+   */
+  public void clearInMemoryPartitions() {
+    for (FastHashPartition hp : hashPartitions) {
+      if (!hp.isHashTableOnDisk()) {
+        hp.hashTable = null;
+      }
+    }
+  }
+
+  /**
+   * Release all the in memory and on disk data of a partition.
+   */
+  public void clearPartition(int partitionId) {
+    hashPartitions[partitionId].clear();
+  }
+
+  public int getNumPartitions() {
+    return hashPartitions.length;
+  }
+
+  public boolean isOnDisk(int partitionId) {
+    return hashPartitions[partitionId].isHashTableOnDisk();
+  }
+
+  /* Get the big table row bytes container of a partition */
+  public VectorRowBytesContainer getMatchfileRowBytesContainer(int partitionId) {
+    return hashPartitions[partitionId].getMatchfileRowBytesContainer();
+  }
+
+  public long getMemoryThreshold() {
+    return memoryThreshold;
+  }
+
+  private JoinUtil.JoinResult spill(int partitionId, VectorMapJoinHashTableResult hashTableResult) {
+    hashTableResult.forget();
+    hashTableResult.setSpillPartitionId(partitionId);
+    hashTableResult.setJoinResult(JoinUtil.JoinResult.SPILL);
+    return JoinUtil.JoinResult.SPILL;
+  }
+
+  /**
+   * The common part of the partitioned hash tables given to the vectorized MapJoin operators.
+   */
+  private abstract class HybridHashTable {
+
+    public void putRow(BytesWritable currentKey, BytesWritable currentValue)
+        throws HiveException, IOException {
+      internalPutRow(currentKey, currentValue);
+    }
+
+    public int size() {
+      return VectorMapJoinFastHybridTableContainer.this.size();
+    }
+
+    public long getEstimatedMemorySize() {
+      return VectorMapJoinFastHybridTableContainer.this.getEstimatedMemorySize();
+    }
+
+    public VectorMapJoinHashMapResult createHashMapResult() {
+      return new VectorMapJoinFastValueStore.HashMapResult();
+    }
+
+    public VectorMapJoinHashMultiSetResult createHashMultiSetResult() {
+      return new VectorMapJoinFastHashMultiSet.HashMultiSetResult();
+    }
+
+    public VectorMapJoinHashSetResult createHashSetResult() {
+      return new VectorMapJoinFastHashSet.HashSetResult();
+    }
+  }
+
+  /**
+   * Dispatches the long key lookups to the hash table of the key partition.  Only one of the
+   * hash map, multi-set and set interfaces is usable, the one of the partition hash tables.
+   */
+  private class HybridLongHashTable extends HybridHashTable
+      implements VectorMapJoinLongHashMap, VectorMapJoinLongHashMultiSet,
+          VectorMapJoinLongHashSet {
+
+    @Override
+    public boolean useMinMax() {
+      return useMinMax;
+    }
+
+    @Override
+    public long min() {
+      return min;
+    }
+
+    @Override
+    public long max() {
+      return max;
+    }
+
+    @Override
+    public JoinUtil.JoinResult lookup(long key, VectorMapJoinHashMapResult hashMapResult)
+        throws IOException {
+      int partitionId = partitionId(HashCodeUtil.calculateLongHashCode(key));
+      VectorMapJoinFastHashTable hashTable = hashPartitions[partitionId].hashTable;
+      if (hashTable == null) {
+        return spill(partitionId, hashMapResult);
+      }
+      return ((VectorMapJoinLongHashMap) hashTable).lookup(key, hashMapResult);
+    }
+
+    @Override
+    public JoinUtil.JoinResult contains(long key,
+        VectorMapJoinHashMultiSetResult hashMultiSetResult) throws IOException {
+      int partitionId = partitionId(HashCodeUtil.calculateLongHashCode(key));
+      VectorMapJoinFastHashTable hashTable = hashPartitions[partitionId].hashTable;
+      if (hashTable == null) {
+        return spill(partitionId, hashMultiSetResult);
+      }
+      return ((VectorMapJoinLongHashMultiSet) hashTable).contains(key, hashMultiSetResult);
+    }
+
+    @Override
+    public JoinUtil.JoinResult contains(long key, VectorMapJoinHashSetResult hashSetResult)
+        throws IOException {
+      int partitionId = partitionId(HashCodeUtil.calculateLongHashCode(key));
+      VectorMapJoinFastHashTable hashTable = hashPartitions[partitionId].hashTable;
+      if (hashTable == null) {
+        return spill(partitionId, hashSetResult);
+      }
+      return ((VectorMapJoinLongHashSet) hashTable).contains(key, hashSetResult);
+    }
+  }
+
+  /**
+   * Dispatches the string and multi-key lookups to the hash table of the key partition.
+   */
+  private class HybridBytesHashTable extends HybridHashTable
+      implements VectorMapJoinBytesHashMap, VectorMapJoinBytesHashMultiSet,
+          VectorMapJoinBytesHashSet {
+
+    @Override
+    public JoinUtil.JoinResult lookup(byte[] keyBytes, int keyStart, int keyLength,
+        VectorMapJoinHashMapResult hashMapResult) throws IOException {
+      int partitionId = partitionId(HashCodeUtil.murmurHash(keyBytes, keyStart, keyLength));
+      VectorMapJoinFastHashTable hashTable = hashPartitions[partitionId].hashTable;
+      if (hashTable == null) {
+        return spill(partitionId, hashMapResult);
+      }
+      return ((VectorMapJoinBytesHashMap) hashTable).lookup(
+          keyBytes, keyStart, keyLength, hashMapResult);
+    }
+
+    @Override
+    public JoinUtil.JoinResult contains(byte[] keyBytes, int keyStart, int keyLength,
+        VectorMapJoinHashMultiSetResult hashMultiSetResult) throws IOException {
+      int partitionId = partitionId(HashCodeUtil.murmurHash(keyBytes, keyStart, keyLength));
+      VectorMapJoinFastHashTable hashTable = hashPartitions[partitionId].hashTable;
+      if (hashTable == null) {
+        return spill(partitionId, hashMultiSetResult);
+      }
+      return ((VectorMapJoinBytesHashMultiSet) hashTable).contains(
+          keyBytes, keyStart, keyLength, hashMultiSetResult);
+    }
+
+    @Override
+    public JoinUtil.JoinResult contains(byte[] keyBytes, int keyStart, int keyLength,
+        VectorMapJoinHashSetResult hashSetResult) throws IOException {
+      int partitionId = partitionId(HashCodeUtil.murmurHash(keyBytes, keyStart, keyLength));
+      VectorMapJoinFastHashTable hashTable = hashPartitions[partitionId].hashTable;
+      if (hashTable == null) {
+        return spill(partitionId, hashSetResult);
+      }
+      return ((VectorMapJoinBytesHashSet) hashTable).contains(
+          keyBytes, keyStart, keyLength, hashSetResult);
+    }
+  }
+
+  @Override
+  public void seal() {
+    if (isSpilled) {
+      LOG.info("Number of hash partitions spilled to disk: " + numPartitionsSpilled + " of " +
+          hashPartitions.length);
+    }
+  }
+
+  @Override
+  public ReusableGetAdaptor createGetter(MapJoinKey keyTypeFromLoader) {
+    throw new RuntimeException("Not applicable");
+  }
+
+  @Override
+  public void clear() {
+    for (int i = 0; i < hashPartitions.length; i++) {
+      hashPartitions[i].clear();
+    }
+  }
+
+  @Override
+  public MapJoinKey getAnyKey() {
+    throw new RuntimeException("Not applicable");
+  }
+
+  @Override
+  public void dumpMetrics() {
+    if (!isSpilled) {
+      return;
+    }
+    for (int i = 0; i < hashPartitions.length; i++) {
+      FastHashPartition hp = hashPartitions[i];
+      LOG.info("Partition " + i + (hp.isHashTableOnDisk() ? " on disk" : " in memory") +
+          ", keys " + hp.size());
+    }
+  }
+
+  @Override
+  public boolean hasSpill() {
+    return isSpilled;
+  }
+
+  @Override
+  public int size() {
+    int size = 0;
+    for (FastHashPartition hp : hashPartitions) {
+      size += hp.size();
+    }
+    return size;
+  }
+
+  @Override
+  public long getEstimatedMemorySize() {
+    return refreshMemoryUsed();
+  }
+
+  @Override
+  public void setSerde(MapJoinObjectSerDeContext keyCtx, MapJoinObjectSerDeContext valCtx)
+      throws SerDeException {
+    // Do nothing in this case.
+  }
+}
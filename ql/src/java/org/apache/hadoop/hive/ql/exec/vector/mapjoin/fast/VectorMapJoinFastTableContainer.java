@@ -83,7 +83,8 @@ public VectorMapJoinFastTableContainer(MapJoinDesc desc, Configuration hconf,
 
     // LOG.debug("VectorMapJoinFastTableContainer load newThreshold " + newThreshold);
 
-    vectorMapJoinFastHashTable = createHashTable(newThreshold);
+    vectorMapJoinFastHashTable = createHashTable(desc, newThreshold, loadFactor, wbSize,
+        estimatedKeyCount);
   }
 
   @Override
@@ -91,7 +92,12 @@ public VectorMapJoinHashTable vectorMapJoinHashTable() {
     return vectorMapJoinFastHashTable;
   }
 
-  private VectorMapJoinFastHashTable createHashTable(int newThreshold) {
+  /*
+   * Create the fast hash table variation for the key type and kind of the vectorized MapJoin.
+   * This is shared with VectorMapJoinFastHybridTableContainer, which creates one per partition.
+   */
+  static VectorMapJoinFastHashTable createHashTable(MapJoinDesc desc, int newThreshold,
+      float loadFactor, int writeBufferSize, long estimatedKeyCount) {
 
     boolean isOuterJoin = !desc.isNoOuterJoin();
 
@@ -102,8 +108,6 @@ private VectorMapJoinFastHashTable createHashTable(int newThreshold) {
     HashTableKeyType hashTableKeyType = vectorDesc.getHashTableKeyType();
     boolean minMaxEnabled = vectorDesc.getMinMaxEnabled();
 
-    int writeBufferSize = HiveConf.getIntVar(hconf, HiveConf.ConfVars.HIVEHASHTABLEWBSIZE);
-
     VectorMapJoinFastHashTable hashTable = null;
 
     switch (hashTableKeyType) {
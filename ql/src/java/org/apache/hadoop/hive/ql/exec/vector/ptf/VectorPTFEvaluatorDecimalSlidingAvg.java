@@ -0,0 +1,89 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.apache.hadoop.hive.ql.exec.vector.ptf;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.apache.hadoop.hive.common.type.HiveDecimal;
+import org.apache.hadoop.hive.ql.exec.vector.ColumnVector;
+import org.apache.hadoop.hive.ql.exec.vector.DecimalColumnVector;
+import org.apache.hadoop.hive.serde2.io.HiveDecimalWritable;
+import org.apache.hadoop.hive.ql.exec.vector.ColumnVector.Type;
+import org.apache.hadoop.hive.ql.exec.vector.expressions.VectorExpression;
+import org.apache.hadoop.hive.ql.plan.ptf.WindowFrameDef;
+
+/**
+ * This class evaluates HiveDecimal avg() for a PTF sliding window frame.
+ *
+ * Maintain the sum of the non-null values in the frame; the result is sum / non-null count.
+ */
+public class VectorPTFEvaluatorDecimalSlidingAvg extends VectorPTFEvaluatorDecimalSlidingBase {
+
+  private static final long serialVersionUID = 1L;
+  private static final String CLASS_NAME = VectorPTFEvaluatorDecimalSlidingAvg.class.getName();
+  private static final Log LOG = LogFactory.getLog(CLASS_NAME);
+
+  protected HiveDecimalWritable sum;
+  private HiveDecimalWritable temp;
+  private HiveDecimalWritable avg;
+
+  public VectorPTFEvaluatorDecimalSlidingAvg(WindowFrameDef windowFrameDef, VectorExpression inputVecExpr,
+      int outputColumnNum) {
+    super(windowFrameDef, inputVecExpr, outputColumnNum);
+    sum = new HiveDecimalWritable();
+    temp = new HiveDecimalWritable();
+    avg = new HiveDecimalWritable();
+    resetEvaluator();
+  }
+
+  @Override
+  protected void addValue(long position, int slot) {
+    sum.mutateAdd(values[slot]);
+  }
+
+  @Override
+  protected void removeValue(long position, int slot) {
+    sum.mutateSubtract(values[slot]);
+  }
+
+  @Override
+  protected void setFrameResult(ColumnVector outputColVector, int batchIndex) {
+    ((DecimalColumnVector) outputColVector).set(batchIndex, getDecimalGroupResult());
+  }
+
+  @Override
+  public Type getResultColumnVectorType() {
+    return Type.DECIMAL;
+  }
+
+  @Override
+  public HiveDecimalWritable getDecimalGroupResult() {
+    avg.set(sum);
+    temp.setFromLong(frameNonNullCount);
+    avg.mutateDivide(temp);
+    return avg;
+  }
+
+  @Override
+  public void resetEvaluator() {
+    super.resetEvaluator();
+    sum.set(HiveDecimal.ZERO);
+  }
+}
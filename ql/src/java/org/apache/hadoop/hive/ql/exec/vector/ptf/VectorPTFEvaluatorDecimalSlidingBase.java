@@ -0,0 +1,67 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.apache.hadoop.hive.ql.exec.vector.ptf;
+
+import org.apache.hadoop.hive.ql.exec.vector.ColumnVector;
+import org.apache.hadoop.hive.ql.exec.vector.DecimalColumnVector;
+import org.apache.hadoop.hive.ql.exec.vector.expressions.VectorExpression;
+import org.apache.hadoop.hive.ql.plan.ptf.WindowFrameDef;
+import org.apache.hadoop.hive.serde2.io.HiveDecimalWritable;
+
+/**
+ * This is the base class of the HiveDecimal sliding window frame evaluators; it keeps the row
+ * values in the ring buffer.  The HiveDecimalWritable objects of the ring are reused.
+ */
+public abstract class VectorPTFEvaluatorDecimalSlidingBase extends VectorPTFEvaluatorSlidingBase {
+
+  private static final long serialVersionUID = 1L;
+
+  protected HiveDecimalWritable[] values;
+
+  public VectorPTFEvaluatorDecimalSlidingBase(WindowFrameDef windowFrameDef,
+      VectorExpression inputVecExpr, int outputColumnNum) {
+    super(windowFrameDef, inputVecExpr, outputColumnNum);
+    values = new HiveDecimalWritable[capacity];
+    for (int i = 0; i < capacity; i++) {
+      values[i] = new HiveDecimalWritable();
+    }
+  }
+
+  @Override
+  protected void setValue(int slot, ColumnVector inputColVector, int batchIndex) {
+    values[slot].set(((DecimalColumnVector) inputColVector).vector[batchIndex]);
+  }
+
+  @Override
+  protected void growValues(int newCapacity, int newMask) {
+    HiveDecimalWritable[] newValues = new HiveDecimalWritable[newCapacity];
+
+    // The ring is full; move the objects to their new slots and allocate the others.
+    for (long position = headPosition; position < tailPosition; position++) {
+      newValues[(int) (position & newMask)] = values[(int) (position & mask)];
+    }
+    for (int i = 0; i < newCapacity; i++) {
+      if (newValues[i] == null) {
+        newValues[i] = new HiveDecimalWritable();
+      }
+    }
+    values = newValues;
+  }
+}
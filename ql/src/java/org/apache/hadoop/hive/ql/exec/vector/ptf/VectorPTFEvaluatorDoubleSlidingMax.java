@@ -0,0 +1,89 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.apache.hadoop.hive.ql.exec.vector.ptf;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.apache.hadoop.hive.ql.exec.vector.ColumnVector;
+import org.apache.hadoop.hive.ql.exec.vector.DoubleColumnVector;
+import org.apache.hadoop.hive.ql.exec.vector.ColumnVector.Type;
+import org.apache.hadoop.hive.ql.exec.vector.expressions.VectorExpression;
+import org.apache.hadoop.hive.ql.plan.ptf.WindowFrameDef;
+
+/**
+ * This class evaluates double max() for a PTF sliding window frame.
+ *
+ * With a bounded frame start, the monotonic deque of the frame positions gives the max;
+ * otherwise no row leaves the frame and a running max is enough.
+ */
+public class VectorPTFEvaluatorDoubleSlidingMax extends VectorPTFEvaluatorDoubleSlidingBase {
+
+  private static final long serialVersionUID = 1L;
+  private static final String CLASS_NAME = VectorPTFEvaluatorDoubleSlidingMax.class.getName();
+  private static final Log LOG = LogFactory.getLog(CLASS_NAME);
+
+  protected double max;
+
+  public VectorPTFEvaluatorDoubleSlidingMax(WindowFrameDef windowFrameDef, VectorExpression inputVecExpr,
+      int outputColumnNum) {
+    super(windowFrameDef, inputVecExpr, outputColumnNum);
+    resetEvaluator();
+  }
+
+  @Override
+  protected void addValue(long position, int slot) {
+    if (!isStartUnbounded) {
+      dequeAdd(position, slot);
+    } else if (frameNonNullCount == 1 || values[slot] > max) {
+      max = values[slot];
+    }
+  }
+
+  @Override
+  protected void removeValue(long position, int slot) {
+    dequeRemove(position);
+  }
+
+  @Override
+  protected boolean isBetterOrEqual(int slot, int otherSlot) {
+    return values[slot] >= values[otherSlot];
+  }
+
+  @Override
+  protected void setFrameResult(ColumnVector outputColVector, int batchIndex) {
+    ((DoubleColumnVector) outputColVector).vector[batchIndex] = getDoubleGroupResult();
+  }
+
+  @Override
+  public Type getResultColumnVectorType() {
+    return Type.DOUBLE;
+  }
+
+  @Override
+  public double getDoubleGroupResult() {
+    return (isStartUnbounded ? max : values[dequeHeadSlot()]);
+  }
+
+  @Override
+  public void resetEvaluator() {
+    super.resetEvaluator();
+    max = 0;
+  }
+}
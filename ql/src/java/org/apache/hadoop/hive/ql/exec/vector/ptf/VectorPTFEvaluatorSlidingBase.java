@@ -0,0 +1,423 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.hadoop.hive.ql.exec.vector.ptf;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.apache.hadoop.hive.ql.exec.vector.ColumnVector;
+import org.apache.hadoop.hive.ql.exec.vector.LongColumnVector;
+import org.apache.hadoop.hive.ql.exec.vector.VectorizedRowBatch;
+import org.apache.hadoop.hive.ql.exec.vector.expressions.VectorExpression;
+import org.apache.hadoop.hive.ql.metadata.HiveException;
+import org.apache.hadoop.hive.ql.parse.PTFInvocationSpec.Order;
+import org.apache.hadoop.hive.ql.parse.WindowingSpec.WindowType;
+import org.apache.hadoop.hive.ql.plan.ptf.BoundaryDef;
+import org.apache.hadoop.hive.ql.plan.ptf.WindowFrameDef;
+
+import com.google.common.base.Preconditions;
+
+/**
+ * This is the base class of the vector PTF evaluators for sliding window frames.
+ *
+ * For a ROWS frame (e.g. ROWS BETWEEN 3 PRECEDING AND CURRENT ROW), each row has its own frame so
+ * the result is streamed: as each row of a group batch is read, the row leaving the frame is
+ * removed from the aggregation, the row entering the frame is added, and the aggregation is
+ * written to the output column.
+ *
+ * For a RANGE frame (e.g. RANGE BETWEEN 10 PRECEDING AND CURRENT ROW), the frame depends on the
+ * order key.  All rows of a group have the same order key (they are peers) and the same result,
+ * so it is not streamed: when a group starts the rows whose order key is too far from the group's
+ * key are removed, the group rows are added, and the aggregation is the group result.
+ *
+ * The rows of the partition that may still be removed from the frame are kept in a ring buffer,
+ * by position in the partition.  Subclasses keep the values of the rows and implement the
+ * aggregation with add and remove operations (e.g. a running sum), or with the monotonic deque of
+ * positions this class maintains for min and max.
+ */
+public abstract class VectorPTFEvaluatorSlidingBase extends VectorPTFEvaluatorBase {
+
+  private static final long serialVersionUID = 1L;
+  private static final String CLASS_NAME = VectorPTFEvaluatorSlidingBase.class.getName();
+  private static final Log LOG = LogFactory.getLog(CLASS_NAME);
+
+  private static final int INITIAL_CAPACITY = 16;
+
+  protected final boolean isRows;
+  protected final boolean isStartUnbounded;
+
+  // The number of rows (ROWS) or the order key distance (RANGE) the frame starts before the current
+  // row, and for ROWS the number of rows it ends before the current row.
+  private final int startPreceding;
+  private final int endPreceding;
+
+  private final boolean isOrderAscending;
+  private int orderColumnNum;
+
+  /*
+   * The ring buffer of the partition rows in positions [headPosition, tailPosition).  The ring
+   * capacity is a power of 2.
+   */
+  protected long headPosition;
+  protected long tailPosition;
+  protected int capacity;
+  protected int mask;
+  private boolean[] isNullValues;
+  private long[] orderKeys;
+
+  // The number of rows and non-null rows in the frame.
+  protected long frameRowCount;
+  protected long frameNonNullCount;
+
+  // Monotonic deque of frame positions, for min and max.
+  private long[] dequePositions;
+  private int dequeHead;
+  private int dequeSize;
+
+  // RANGE group state.
+  private boolean isGroupStart;
+  private boolean isGroupKeyNull;
+  private long groupKey;
+
+  public VectorPTFEvaluatorSlidingBase(WindowFrameDef windowFrameDef,
+      VectorExpression inputVecExpr, int outputColumnNum) {
+    super(windowFrameDef, inputVecExpr, outputColumnNum);
+    isRows = (windowFrameDef.getWindowType() == WindowType.ROWS);
+    isStartUnbounded = windowFrameDef.isStartUnbounded();
+    startPreceding = (isStartUnbounded ? -1 : getPrecedingAmount(windowFrameDef.getStart()));
+    endPreceding = getPrecedingAmount(windowFrameDef.getEnd());
+    if (isRows) {
+      isOrderAscending = true;
+    } else {
+      try {
+        isOrderAscending =
+            (windowFrameDef.getOrderDef().getExpressions().get(0).getOrder() == Order.ASC);
+      } catch (HiveException e) {
+        throw new RuntimeException(e);
+      }
+    }
+    orderColumnNum = -1;
+
+    capacity = INITIAL_CAPACITY;
+    mask = capacity - 1;
+    isNullValues = new boolean[capacity];
+    orderKeys = (isRows ? null : new long[capacity]);
+    dequePositions = new long[capacity];
+  }
+
+  private static int getPrecedingAmount(BoundaryDef boundaryDef) {
+    return (boundaryDef.isCurrentRow() ? 0 : boundaryDef.getAmt());
+  }
+
+  /**
+   * Returns true when the window frame slides, i.e. the frame start moves with the current row or
+   * the frame ends at a row before the last one of the partition, and this class supports it.
+   * Frames with a FOLLOWING bound are not supported.
+   */
+  public static boolean isSupportedSlidingFrame(WindowFrameDef windowFrameDef) {
+    BoundaryDef start = windowFrameDef.getStart();
+    BoundaryDef end = windowFrameDef.getEnd();
+    if (start.isFollowing() || end.isFollowing()) {
+      return false;
+    }
+    switch (windowFrameDef.getWindowType()) {
+    case ROWS:
+      return (windowFrameDef.isStartUnbounded() ||
+          getPrecedingAmount(end) <= getPrecedingAmount(start));
+    case RANGE:
+      return (!windowFrameDef.isStartUnbounded() && end.isCurrentRow());
+    default:
+      return false;
+    }
+  }
+
+  /**
+   * Returns true when the evaluators of the existing (whole partition or unbounded preceding)
+   * frames do not apply and a sliding evaluator is needed.
+   */
+  public static boolean isSlidingFrame(WindowFrameDef windowFrameDef) {
+    switch (windowFrameDef.getWindowType()) {
+    case ROWS:
+      return !(windowFrameDef.isStartUnbounded() && windowFrameDef.isEndUnbounded());
+    case RANGE:
+      return !windowFrameDef.isStartUnbounded();
+    default:
+      return false;
+    }
+  }
+
+  /**
+   * RANGE frames need the order key column of the PTF.
+   */
+  public void setOrderColumnNum(int orderColumnNum) {
+    this.orderColumnNum = orderColumnNum;
+  }
+
+  @Override
+  public boolean streamsResult() {
+    return isRows;
+  }
+
+  @Override
+  public void evaluateGroupBatch(VectorizedRowBatch batch, boolean isLastGroupBatch) {
+    evaluateInputExpr(batch);
+
+    // We do not filter when PTF is in reducer.
+    Preconditions.checkState(!batch.selectedInUse);
+
+    final ColumnVector inputColVector = (inputColumnNum == -1 ? null : batch.cols[inputColumnNum]);
+    if (isRows) {
+      evaluateRowsGroupBatch(batch, inputColVector);
+    } else {
+      evaluateRangeGroupBatch(batch, inputColVector, isLastGroupBatch);
+    }
+  }
+
+  private void evaluateRowsGroupBatch(VectorizedRowBatch batch, ColumnVector inputColVector) {
+    final ColumnVector outputColVector = batch.cols[outputColumnNum];
+    outputColVector.isRepeating = false;
+    outputColVector.noNulls = true;
+    boolean[] outputIsNull = outputColVector.isNull;
+
+    final int size = batch.size;
+    for (int i = 0; i < size; i++) {
+      final long position = tailPosition;
+      if (!isStartUnbounded) {
+
+        // Remove the rows before the frame start.
+        final long frameStartPosition = position - startPreceding;
+        while (headPosition < frameStartPosition) {
+          removeFromFrame(headPosition++);
+        }
+      }
+
+      append(inputColVector, i);
+
+      final long frameEndPosition = position - endPreceding;
+      if (frameEndPosition >= 0) {
+        addToFrame(frameEndPosition);
+        if (isStartUnbounded) {
+
+          // The row stays in the frame; we no longer need it.
+          headPosition = frameEndPosition + 1;
+        }
+      }
+
+      if (isFrameResultNull()) {
+        outputColVector.noNulls = false;
+        outputIsNull[i] = true;
+      } else {
+        outputIsNull[i] = false;
+        setFrameResult(outputColVector, i);
+      }
+    }
+  }
+
+  private void evaluateRangeGroupBatch(VectorizedRowBatch batch, ColumnVector inputColVector,
+      boolean isLastGroupBatch) {
+    if (isGroupStart) {
+      startGroup((LongColumnVector) batch.cols[orderColumnNum]);
+      isGroupStart = false;
+    }
+
+    final int size = batch.size;
+    for (int i = 0; i < size; i++) {
+      final long position = tailPosition;
+      append(inputColVector, i);
+      addToFrame(position);
+    }
+
+    if (isLastGroupBatch) {
+      isGroupStart = true;
+    }
+  }
+
+  /*
+   * Remove the rows whose order key is too far from the new group's key.  Rows with a NULL order
+   * key are only peers of each other, and sort together.
+   */
+  private void startGroup(LongColumnVector orderColVector) {
+
+    // Reduce key (i.e. order) columns are repeated -- so we test element 0.
+    final boolean isKeyNull = !orderColVector.noNulls && orderColVector.isNull[0];
+    final long key = orderColVector.vector[0];
+
+    if (isKeyNull || isGroupKeyNull) {
+      while (headPosition < tailPosition) {
+        removeFromFrame(headPosition++);
+      }
+    } else {
+      while (headPosition < tailPosition &&
+          isOutsideRange(orderKeys[(int) (headPosition & mask)], key)) {
+        removeFromFrame(headPosition++);
+      }
+    }
+    isGroupKeyNull = isKeyNull;
+    groupKey = key;
+  }
+
+  private boolean isOutsideRange(long rowKey, long key) {
+    if (rowKey == key) {
+      return false;
+    }
+
+    // A negative distance means it overflowed, i.e. it is very large.
+    final long distance = (isOrderAscending ? key - rowKey : rowKey - key);
+    return (distance > startPreceding || distance < 0);
+  }
+
+  private void append(ColumnVector inputColVector, int batchIndex) {
+    if (tailPosition - headPosition == capacity) {
+      grow();
+    }
+    final int slot = (int) (tailPosition & mask);
+    if (inputColVector == null) {
+      isNullValues[slot] = false;
+    } else {
+      final int index = (inputColVector.isRepeating ? 0 : batchIndex);
+      if (!inputColVector.noNulls && inputColVector.isNull[index]) {
+        isNullValues[slot] = true;
+      } else {
+        isNullValues[slot] = false;
+        setValue(slot, inputColVector, index);
+      }
+    }
+    if (!isRows) {
+      orderKeys[slot] = groupKey;
+    }
+    tailPosition++;
+  }
+
+  private void addToFrame(long position) {
+    frameRowCount++;
+    final int slot = (int) (position & mask);
+    if (!isNullValues[slot]) {
+      frameNonNullCount++;
+      addValue(position, slot);
+    }
+  }
+
+  private void removeFromFrame(long position) {
+    frameRowCount--;
+    final int slot = (int) (position & mask);
+    if (!isNullValues[slot]) {
+      frameNonNullCount--;
+      removeValue(position, slot);
+    }
+  }
+
+  private void grow() {
+    final int newCapacity = capacity * 2;
+    final int newMask = newCapacity - 1;
+
+    boolean[] newIsNullValues = new boolean[newCapacity];
+    for (long position = headPosition; position < tailPosition; position++) {
+      newIsNullValues[(int) (position & newMask)] = isNullValues[(int) (position & mask)];
+    }
+    isNullValues = newIsNullValues;
+    if (orderKeys != null) {
+      long[] newOrderKeys = new long[newCapacity];
+      for (long position = headPosition; position < tailPosition; position++) {
+        newOrderKeys[(int) (position & newMask)] = orderKeys[(int) (position & mask)];
+      }
+      orderKeys = newOrderKeys;
+    }
+
+    long[] newDequePositions = new long[newCapacity];
+    for (int i = 0; i < dequeSize; i++) {
+      newDequePositions[i] = dequePositions[(dequeHead + i) & mask];
+    }
+    dequePositions = newDequePositions;
+    dequeHead = 0;
+
+    growValues(newCapacity, newMask);
+
+    capacity = newCapacity;
+    mask = newMask;
+  }
+
+  /*
+   * Monotonic deque.  The positions are increasing and the values are decreasing (max) or
+   * increasing (min) from the head, so the head is the frame's max or min.
+   */
+
+  protected void dequeAdd(long position, int slot) {
+    while (dequeSize > 0) {
+      final int lastSlot = (int) (dequePositions[(dequeHead + dequeSize - 1) & mask] & mask);
+      if (!isBetterOrEqual(slot, lastSlot)) {
+        break;
+      }
+      dequeSize--;
+    }
+    dequePositions[(dequeHead + dequeSize) & mask] = position;
+    dequeSize++;
+  }
+
+  protected void dequeRemove(long position) {
+    if (dequeSize > 0 && dequePositions[dequeHead] == position) {
+      dequeHead = (dequeHead + 1) & mask;
+      dequeSize--;
+    }
+  }
+
+  protected int dequeHeadSlot() {
+    return (int) (dequePositions[dequeHead] & mask);
+  }
+
+  // Stores the value of the input column at the batch index in the ring slot.
+  protected abstract void setValue(int slot, ColumnVector inputColVector, int batchIndex);
+
+  // Reallocate the ring values with the new capacity; mask is still the old one.
+  protected abstract void growValues(int newCapacity, int newMask);
+
+  // Add or remove a non-null ring value to or from the frame aggregation.
+  protected abstract void addValue(long position, int slot);
+
+  protected abstract void removeValue(long position, int slot);
+
+  // For min and max: is the value in the slot better than or equal to the value in the other one?
+  protected boolean isBetterOrEqual(int slot, int otherSlot) {
+    throw new RuntimeException("No deque implementation " + this.getClass().getName());
+  }
+
+  // Is the aggregation of the current frame null?
+  protected boolean isFrameResultNull() {
+    return (frameNonNullCount == 0);
+  }
+
+  // Write the non-null aggregation of the current frame in the output column.
+  protected abstract void setFrameResult(ColumnVector outputColVector, int batchIndex);
+
+  @Override
+  public boolean isGroupResultNull() {
+    return isFrameResultNull();
+  }
+
+  @Override
+  public void resetEvaluator() {
+    headPosition = 0;
+    tailPosition = 0;
+    frameRowCount = 0;
+    frameNonNullCount = 0;
+    dequeHead = 0;
+    dequeSize = 0;
+    isGroupStart = true;
+    isGroupKeyNull = false;
+    groupKey = 0;
+  }
+}
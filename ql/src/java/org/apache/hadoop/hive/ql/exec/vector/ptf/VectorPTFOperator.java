@@ -414,8 +414,9 @@ public void process(Object row, int tag) throws HiveException {
       groupBatches.fillGroupResultsAndForward(this, batch);
     }
 
-    // If we are only processing a PARTITION BY, reset our evaluators.
-    if (!isPartitionOrderBy) {
+    // If we are only processing a PARTITION BY, reset our evaluators once the partition is done.
+    // The streaming evaluators (e.g. a sliding ROWS frame) carry state across its batches.
+    if (!isPartitionOrderBy && isLastGroupBatch) {
       groupBatches.resetEvaluators();
     }
   }
@@ -348,6 +348,15 @@ public void collect(byte[] key, byte[] value, int hash) throws IOException {
     doCollect(keyWritable, valueWritable);
   }
 
+  /**
+   * Top-N admission for all the rows of a batch that have the same key, before their values are
+   * serialized.
+   * @return true if none of the rows can be in the top-n, so they can be skipped altogether.
+   */
+  protected boolean isTopNExcluded(HiveKey keyWritable, int rowCount) {
+    return reducerHash != null && reducerHash.isExcluded(keyWritable, rowCount);
+  }
+
   protected void collect(HiveKey keyWritable, BytesWritable valueWritable)
       throws HiveException, IOException {
     if (reducerHash != null) {
@@ -361,7 +370,7 @@ protected void collect(HiveKey keyWritable, BytesWritable valueWritable)
         doCollect(keyWritable, valueWritable);
       } else {
         Preconditions.checkState(firstIndex >= 0);
-        reducerHash.storeValue(firstIndex, keyWritable.hashCode(), valueWritable, false);
+        reducerHash.storeValue(firstIndex, keyWritable.hashCode(), valueWritable);
       }
     } else {
       doCollect(keyWritable, valueWritable);
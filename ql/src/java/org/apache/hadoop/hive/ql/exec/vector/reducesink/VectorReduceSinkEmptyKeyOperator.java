@@ -133,6 +133,11 @@ public void process(Object row, int tag) throws HiveException {
         initializeEmptyKey(tag);
       }
 
+      // All the rows have the same empty key.
+      if (isTopNExcluded(keyWritable, batch.size)) {
+        return;
+      }
+
       // Perform any value expressions.  Results will go into scratch columns.
       if (reduceSinkValueExpressions != null) {
         for (VectorExpression ve : reduceSinkValueExpressions) {
@@ -300,6 +300,10 @@ public void process(Object row, int tag) throws HiveException {
 
         keyWritable.setHashCode(hashCode);
 
+        if (isTopNExcluded(keyWritable, 1)) {
+          continue;
+        }
+
         if (!isEmptyValue) {
           valueLazyBinarySerializeWrite.reset();
           valueVectorSerializeRow.serializeWrite(batch, batchIndex);
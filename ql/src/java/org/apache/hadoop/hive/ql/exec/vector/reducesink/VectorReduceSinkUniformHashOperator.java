@@ -197,36 +197,41 @@ public void process(Object row, int tag) throws HiveException {
         }
 
         logical = serializedKeySeries.getCurrentLogical();
-        final int end = logical + serializedKeySeries.getCurrentDuplicateCount();
-        if (!isEmptyValue) {
-          if (selectedInUse) {
-            do {
-              final int batchIndex = selected[logical];
+        final int duplicateCount = serializedKeySeries.getCurrentDuplicateCount();
+        final int end = logical + duplicateCount;
 
-              valueLazyBinarySerializeWrite.reset();
-              valueVectorSerializeRow.serializeWrite(batch, batchIndex);
+        // The rows of the key series are admitted into the top-n at once.
+        if (!isTopNExcluded(keyWritable, duplicateCount)) {
+          if (!isEmptyValue) {
+            if (selectedInUse) {
+              do {
+                final int batchIndex = selected[logical];
 
-              valueBytesWritable.set(valueOutput.getData(), 0, valueOutput.getLength());
+                valueLazyBinarySerializeWrite.reset();
+                valueVectorSerializeRow.serializeWrite(batch, batchIndex);
 
-              collect(keyWritable, valueBytesWritable);
-            } while (++logical < end);
-          } else {
-            do {
-              valueLazyBinarySerializeWrite.reset();
-              valueVectorSerializeRow.serializeWrite(batch, logical);
+                valueBytesWritable.set(valueOutput.getData(), 0, valueOutput.getLength());
+
+                collect(keyWritable, valueBytesWritable);
+              } while (++logical < end);
+            } else {
+              do {
+                valueLazyBinarySerializeWrite.reset();
+                valueVectorSerializeRow.serializeWrite(batch, logical);
+
+                valueBytesWritable.set(valueOutput.getData(), 0, valueOutput.getLength());
 
-              valueBytesWritable.set(valueOutput.getData(), 0, valueOutput.getLength());
+                collect(keyWritable, valueBytesWritable);
+              } while (++logical < end);
 
+            }
+          } else {
+
+            // Empty value, too.
+            do {
               collect(keyWritable, valueBytesWritable);
             } while (++logical < end);
-
           }
-        } else {
-
-          // Empty value, too.
-          do {
-            collect(keyWritable, valueBytesWritable);
-          } while (++logical < end);
         }
 
         if (!serializedKeySeries.next()) {
@@ -25,11 +25,13 @@
 import java.util.ArrayList;
 import java.util.HashSet;
 import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
 import java.util.Map.Entry;
 
 import org.apache.hadoop.hive.common.FileUtils;
@@ -105,6 +107,9 @@
   protected Map<Path, PartitionDesc> pathToPartitionInfo;
   protected MapWork mrwork;
 
+  // time spent generating the splits of each table by the last getSplits, in ms
+  private final Map<String, Long> splitGenerationTimes = new LinkedHashMap<String, Long>();
+
   /**
    * HiveInputSplit encapsulates an InputSplit with its corresponding
    * inputFormatClass. The reason that it derives from FileSplit is to make sure
@@ -596,6 +601,7 @@ public InputSplit[] getSplits(JobConf job, int numSplits) throws IOException {
     PerfLogger perfLogger = SessionState.getPerfLogger();
     perfLogger.PerfLogBegin(CLASS_NAME, PerfLogger.GET_SPLITS);
     init(job);
+    splitGenerationTimes.clear();
     Path[] dirs = getInputPaths(job);
     JobConf newjob = new JobConf(job);
     List<InputSplit> result = new ArrayList<InputSplit>();
@@ -659,10 +665,12 @@ public InputSplit[] getSplits(JobConf job, int numSplits) throws IOException {
           pushProjection(newjob, readColumnsBuffer, readColumnNamesBuffer);
         }
 
+        long startTime = System.nanoTime();
         addSplitsForGroup(currentDirs, currentTableScan, newjob,
             getInputFormatFromCache(currentInputFormatClass, job),
             currentInputFormatClass, currentDirs.size()*(numSplits / dirs.length),
             currentTable, result);
+        addSplitGenerationTime(currentTable, startTime);
       }
 
       currentDirs.clear();
@@ -681,10 +689,12 @@ public InputSplit[] getSplits(JobConf job, int numSplits) throws IOException {
       if (LOG.isInfoEnabled()) {
         LOG.info("Generating splits for dirs: {}", dirs);
       }
+      long startTime = System.nanoTime();
       addSplitsForGroup(currentDirs, currentTableScan, newjob,
           getInputFormatFromCache(currentInputFormatClass, job),
           currentInputFormatClass, currentDirs.size()*(numSplits / dirs.length),
           currentTable, result);
+      addSplitGenerationTime(currentTable, startTime);
     }
 
     Utilities.clearWorkMapForConf(job);
@@ -695,6 +705,21 @@ public InputSplit[] getSplits(JobConf job, int numSplits) throws IOException {
     return result.toArray(new HiveInputSplit[result.size()]);
   }
 
+  private void addSplitGenerationTime(TableDesc table, long startTime) {
+    long timeMs = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startTime);
+    Long previousTimeMs = splitGenerationTimes.get(table.getTableName());
+    splitGenerationTimes.put(table.getTableName(),
+        previousTimeMs == null ? timeMs : previousTimeMs + timeMs);
+  }
+
+  /**
+   * @return the time the last {@link #getSplits(JobConf, int)} spent generating the splits of
+   * each table, in ms, by table name.
+   */
+  public Map<String, Long> getSplitGenerationTimes() {
+    return splitGenerationTimes;
+  }
+
   private void pushProjection(final JobConf newjob, final StringBuilder readColumnsBuffer,
       final StringBuilder readColumnNamesBuffer) {
     String readColIds = readColumnsBuffer.toString();
@@ -0,0 +1,114 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.hadoop.hive.ql.io.orc;
+
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.fs.Path;
+import org.apache.orc.MemoryManager;
+import org.apache.orc.OrcConf;
+
+/**
+ * The memory manager of the writers that encode their batches on the encoder threads, see
+ * OrcFile.WriterOptions#encoderThreads.
+ *
+ * The memory manager of ORC has to be called from the thread that created it, and it checks the
+ * memory of all its writers from whichever writer added the rows, which would flush the stripe of
+ * a writer while an encoder thread adds a batch to it. Here the writers of a thread only share the
+ * allocation scale: addedRow does nothing, and each writer checks its own memory with the scale
+ * after the batches it encodes.
+ */
+final class ConcurrentMemoryManager implements MemoryManager {
+
+  /**
+   * The number of rows a writer encodes between the checks of its memory, like the ORC memory
+   * manager does for all its writers.
+   */
+  static final int ROWS_BETWEEN_CHECKS = 5000;
+
+  private static final ThreadLocal<ConcurrentMemoryManager> memoryManager =
+      new ThreadLocal<ConcurrentMemoryManager>();
+
+  private final long totalMemoryPool;
+  private final Map<Path, Long> allocations = new HashMap<Path, Long>();
+  private long totalAllocation = 0;
+  private volatile double currentScale = 1;
+
+  private ConcurrentMemoryManager(Configuration conf) {
+    double maxLoad = OrcConf.MEMORY_POOL.getDouble(conf);
+    totalMemoryPool = Math.round(ManagementFactory.getMemoryMXBean().
+        getHeapMemoryUsage().getMax() * maxLoad);
+  }
+
+  /**
+   * @return The memory manager of the writers created by the current thread.
+   */
+  static ConcurrentMemoryManager get(Configuration conf) {
+    ConcurrentMemoryManager result = memoryManager.get();
+    if (result == null) {
+      result = new ConcurrentMemoryManager(conf);
+      memoryManager.set(result);
+    }
+    return result;
+  }
+
+  @Override
+  public synchronized void addWriter(Path path, long requestedAllocation,
+      Callback callback) throws IOException {
+    if (allocations.containsKey(path)) {
+      throw new IllegalArgumentException("Writer already exists for " + path);
+    }
+    allocations.put(path, requestedAllocation);
+    totalAllocation += requestedAllocation;
+    updateScale();
+  }
+
+  @Override
+  public synchronized void removeWriter(Path path) throws IOException {
+    Long allocation = allocations.remove(path);
+    if (allocation != null) {
+      totalAllocation -= allocation;
+      updateScale();
+    }
+  }
+
+  @Override
+  public void addedRow(int rows) throws IOException {
+    // The writers check their own memory, on the thread that encodes their batches.
+  }
+
+  /**
+   * @return The fraction of its requested allocation that each writer can use.
+   */
+  double getAllocationScale() {
+    return currentScale;
+  }
+
+  private void updateScale() {
+    if (totalAllocation <= totalMemoryPool) {
+      currentScale = 1;
+    } else {
+      currentScale = (double) totalMemoryPool / totalAllocation;
+    }
+  }
+}
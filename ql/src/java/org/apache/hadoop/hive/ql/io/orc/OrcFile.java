@@ -101,6 +101,7 @@ public static class WriterOptions extends org.apache.orc.OrcFile.WriterOptions {
     // the smallest stripe size would be 5120 rows, which changes the output
     // of some of the tests.)
     private int batchSize = 1000;
+    private int encoderThreads = 0;
 
     WriterOptions(Properties tableProperties, Configuration conf) {
       super(tableProperties, conf);
@@ -263,6 +264,22 @@ public WriterOptions memory(MemoryManager value) {
       return this;
     }
 
+    /**
+     * Encode and compress the row batches on a pool of the given number of threads, shared by
+     * the writers of the JVM, while the caller fills the next batch. The shared pool grows to
+     * the largest number of threads requested by a writer. The writers that a thread
+     * creates with this option share a memory manager that can be used from the pool.
+     * @param value the number of threads, or 0 to encode on the caller thread
+     * @return this
+     */
+    public WriterOptions encoderThreads(int value) {
+      encoderThreads = value;
+      if (value > 0) {
+        super.memory(ConcurrentMemoryManager.get(getConfiguration()));
+      }
+      return this;
+    }
+
     protected WriterOptions batchSize(int maxSize) {
       batchSize = maxSize;
       return this;
@@ -280,6 +297,10 @@ ObjectInspector getInspector() {
     int getBatchSize() {
       return batchSize;
     }
+
+    int getEncoderThreads() {
+      return encoderThreads;
+    }
   }
 
   /**
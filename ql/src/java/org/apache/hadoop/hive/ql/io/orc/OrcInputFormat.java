@@ -29,6 +29,7 @@
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
+import java.util.Comparator;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
@@ -48,6 +49,7 @@
 import org.apache.hadoop.fs.BlockLocation;
 import org.apache.hadoop.fs.FileStatus;
 import org.apache.hadoop.fs.FileSystem;
+import org.apache.hadoop.fs.LocatedFileStatus;
 import org.apache.hadoop.fs.Path;
 import org.apache.hadoop.hive.common.ValidReadTxnList;
 import org.apache.hadoop.hive.common.ValidTxnList;
@@ -565,6 +567,8 @@ static class Context {
     private final long maxSize;
     private final long minSize;
     private final int etlFileThreshold;
+    private final int numThreads;
+    private final int footerBatchSize;
     private final boolean footerInSplits;
     private final boolean cacheStripeDetails;
     private final boolean forceThreadpool;
@@ -606,7 +610,8 @@ static class Context {
       LOG.debug("Number of buckets specified by conf file is " + numBuckets);
       long cacheMemSize = HiveConf.getSizeVar(
           conf, ConfVars.HIVE_ORC_CACHE_STRIPE_DETAILS_MEMORY_SIZE);
-      int numThreads = HiveConf.getIntVar(conf, ConfVars.HIVE_ORC_COMPUTE_SPLITS_NUM_THREADS);
+      numThreads = HiveConf.getIntVar(conf, ConfVars.HIVE_ORC_COMPUTE_SPLITS_NUM_THREADS);
+      footerBatchSize = HiveConf.getIntVar(conf, ConfVars.HIVE_ORC_SPLITS_FOOTER_BATCH_SIZE);
       boolean useSoftReference = HiveConf.getBoolVar(
           conf, ConfVars.HIVE_ORC_CACHE_USE_SOFT_REFERENCES);
 
@@ -789,7 +794,6 @@ public ETLDir(Path dir, FileSystem fs, int fileCount) {
     final List<OrcProto.Type> readerTypes;
     // References to external fields for async SplitInfo generation.
     private List<Future<List<OrcSplit>>> splitFuturesRef = null;
-    private List<OrcSplit> splitsRef = null;
     private final UserGroupInformation ugi;
     private final boolean allowSyntheticFileIds;
     private final boolean isDefaultFs;
@@ -904,14 +908,13 @@ public CombineResult combineWith(FileSystem fs, Path dir,
     }
 
     public Future<Void> generateSplitWork(Context context,
-        List<Future<List<OrcSplit>>> splitFutures, List<OrcSplit> splits) throws IOException {
+        List<Future<List<OrcSplit>>> splitFutures) throws IOException {
       if ((context.cacheStripeDetails && context.footerCache.isBlocking())
           || context.forceThreadpool) {
         this.splitFuturesRef = splitFutures;
-        this.splitsRef = splits;
         return Context.threadPool.submit(this);
       } else {
-        runGetSplitsSync(splitFutures, splits, null);
+        runGetSplitsSync(splitFutures, null);
         return null;
       }
     }
@@ -919,14 +922,14 @@ public Future<Void> generateSplitWork(Context context,
     @Override
     public Void call() throws IOException {
       if (ugi == null) {
-        runGetSplitsSync(splitFuturesRef, splitsRef, null);
+        runGetSplitsSync(splitFuturesRef, null);
         return null;
       }
       try {
         return ugi.doAs(new PrivilegedExceptionAction<Void>() {
           @Override
           public Void run() throws Exception {
-            runGetSplitsSync(splitFuturesRef, splitsRef, ugi);
+            runGetSplitsSync(splitFuturesRef, ugi);
             return null;
           }
         });
@@ -940,39 +943,102 @@ public Void run() throws Exception {
 
 
     private void runGetSplitsSync(List<Future<List<OrcSplit>>> splitFutures,
-        List<OrcSplit> splits, UserGroupInformation ugi) throws IOException {
+        UserGroupInformation ugi) throws IOException {
       UserGroupInformation tpUgi = ugi == null ? UserGroupInformation.getCurrentUser() : ugi;
       List<SplitInfo> splitInfos = getSplits();
-      List<Future<List<OrcSplit>>> localListF = null;
-      List<OrcSplit> localListS = null;
+      if (splitInfos.isEmpty()) {
+        return;
+      }
+      // Only use as few threads as needed to keep all the threads busy.
+      int batchSize = Math.max(1, Math.min(context.footerBatchSize,
+          (splitInfos.size() + context.numThreads - 1) / context.numThreads));
+      if (batchSize > 1) {
+        sortByFooterHost(splitInfos);
+      }
+      List<Future<List<OrcSplit>>> localListF = new ArrayList<>(
+          (splitInfos.size() + batchSize - 1) / batchSize);
+      for (int start = 0; start < splitInfos.size(); start += batchSize) {
+        List<SplitInfo> batch =
+            splitInfos.subList(start, Math.min(start + batchSize, splitInfos.size()));
+        localListF.add(Context.threadPool.submit(new SplitGeneratorBatch(
+            batch, tpUgi, allowSyntheticFileIds, isDefaultFs)));
+      }
+      synchronized (splitFutures) {
+        splitFutures.addAll(localListF);
+      }
+    }
+
+    /**
+     * Orders the files by the first host of the block that holds their footer, when the block
+     * locations came with the listing, so that the footers a batch reads are on one DataNode.
+     */
+    private static void sortByFooterHost(List<SplitInfo> splitInfos) {
+      final Map<SplitInfo, String> footerHosts = new HashMap<>(splitInfos.size());
       for (SplitInfo splitInfo : splitInfos) {
-        SplitGenerator sg = new SplitGenerator(
-            splitInfo, tpUgi, allowSyntheticFileIds, isDefaultFs);
-        if (!sg.isBlocking()) {
-          if (localListS == null) {
-            localListS = new ArrayList<>(splits.size());
-          }
-          // Already called in doAs, so no need to doAs here.
-          localListS.addAll(sg.call());
-        } else {
-          if (localListF == null) {
-            localListF = new ArrayList<>(splits.size());
+        FileStatus file = splitInfo.fileWithId.getFileStatus();
+        String host = "";
+        if (splitInfo.orcTail == null && file instanceof LocatedFileStatus) {
+          BlockLocation[] locations = ((LocatedFileStatus) file).getBlockLocations();
+          if (locations != null && locations.length > 0) {
+            try {
+              String[] hosts = locations[locations.length - 1].getHosts();
+              if (hosts.length > 0) {
+                host = hosts[0];
+              }
+            } catch (IOException e) {
+              // Leave the file unordered.
+            }
           }
-          localListF.add(Context.threadPool.submit(sg));
         }
+        footerHosts.put(splitInfo, host);
       }
-      if (localListS != null) {
-        synchronized (splits) {
-          splits.addAll(localListS);
+      Collections.sort(splitInfos, new Comparator<SplitInfo>() {
+        @Override
+        public int compare(SplitInfo o1, SplitInfo o2) {
+          return footerHosts.get(o1).compareTo(footerHosts.get(o2));
         }
+      });
+    }
+  }
+
+  /**
+   * Generates the splits of a batch of files, reading their footers if they are not cached, in
+   * a single task of the thread pool.
+   */
+  static final class SplitGeneratorBatch implements Callable<List<OrcSplit>> {
+    private final List<SplitInfo> splitInfos;
+    private final UserGroupInformation ugi;
+    private final boolean allowSyntheticFileIds;
+    private final boolean isDefaultFs;
+
+    SplitGeneratorBatch(List<SplitInfo> splitInfos, UserGroupInformation ugi,
+        boolean allowSyntheticFileIds, boolean isDefaultFs) {
+      this.splitInfos = splitInfos;
+      this.ugi = ugi;
+      this.allowSyntheticFileIds = allowSyntheticFileIds;
+      this.isDefaultFs = isDefaultFs;
+    }
+
+    @Override
+    public List<OrcSplit> call() throws IOException {
+      try {
+        return ugi.doAs(new PrivilegedExceptionAction<List<OrcSplit>>() {
+          @Override
+          public List<OrcSplit> run() throws Exception {
+            List<OrcSplit> splits = new ArrayList<>(splitInfos.size());
+            for (SplitInfo splitInfo : splitInfos) {
+              // Already called in doAs, so no need to doAs for each file.
+              splits.addAll(new SplitGenerator(
+                  splitInfo, null, allowSyntheticFileIds, isDefaultFs).call());
+            }
+            return splits;
+          }
+        });
+      } catch (InterruptedException e) {
+        throw new IOException(e);
       }
-      if (localListF != null) {
-        synchronized (splitFutures) {
-          splitFutures.addAll(localListF);
-        }
-       }
-     }
-   }
+    }
+  }
 
   /**
    * BI strategy is used when the requirement is to spend less time in split generation
@@ -1726,7 +1792,7 @@ static List<OrcSplit> generateSplitsInfo(Configuration conf, Context context)
         if (adi == null) {
           // We were combining SS-es and the time has expired.
           assert combinedCtx.combined != null;
-          scheduleSplits(combinedCtx.combined, context, splitFutures, strategyFutures, splits);
+          scheduleSplits(combinedCtx.combined, context, splitFutures, strategyFutures);
           combinedCtx.combined = null;
           continue;
         }
@@ -1754,7 +1820,7 @@ static List<OrcSplit> generateSplitsInfo(Configuration conf, Context context)
           // This works purely by magic, because we know which strategy produces which type.
           if (splitStrategy instanceof ETLSplitStrategy) {
             scheduleSplits((ETLSplitStrategy)splitStrategy,
-                context, splitFutures, strategyFutures, splits);
+                context, splitFutures, strategyFutures);
           } else {
             @SuppressWarnings("unchecked")
             List<OrcSplit> readySplits = (List<OrcSplit>)splitStrategy.getSplits();
@@ -1765,7 +1831,7 @@ static List<OrcSplit> generateSplitsInfo(Configuration conf, Context context)
 
       // Run the last combined strategy, if any.
       if (combinedCtx != null && combinedCtx.combined != null) {
-        scheduleSplits(combinedCtx.combined, context, splitFutures, strategyFutures, splits);
+        scheduleSplits(combinedCtx.combined, context, splitFutures, strategyFutures);
         combinedCtx.combined = null;
       }
 
@@ -1807,9 +1873,9 @@ public Context create(Configuration conf, int numSplits) throws IOException {
   }
 
   private static void scheduleSplits(ETLSplitStrategy splitStrategy, Context context,
-      List<Future<List<OrcSplit>>> splitFutures, List<Future<Void>> strategyFutures,
-      List<OrcSplit> splits) throws IOException {
-    Future<Void> ssFuture = splitStrategy.generateSplitWork(context, splitFutures, splits);
+      List<Future<List<OrcSplit>>> splitFutures, List<Future<Void>> strategyFutures)
+      throws IOException {
+    Future<Void> ssFuture = splitStrategy.generateSplitWork(context, splitFutures);
     if (ssFuture == null) return;
     strategyFutures.add(ssFuture);
   }
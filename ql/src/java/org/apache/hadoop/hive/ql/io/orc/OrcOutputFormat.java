@@ -30,6 +30,7 @@
 import org.slf4j.LoggerFactory;
 import org.apache.hadoop.fs.FileSystem;
 import org.apache.hadoop.fs.Path;
+import org.apache.hadoop.hive.conf.HiveConf;
 import org.apache.hadoop.hive.ql.io.AcidOutputFormat;
 import org.apache.hadoop.hive.ql.io.AcidUtils;
 import org.apache.hadoop.hive.ql.io.IOConstants;
@@ -189,7 +190,8 @@ private OrcFile.WriterOptions getOptions(JobConf conf, Properties props) {
                          boolean isCompressed,
                          Properties tableProperties,
                          Progressable reporter) throws IOException {
-    return new OrcRecordWriter(path, getOptions(conf, tableProperties));
+    return new OrcRecordWriter(path, getOptions(conf, tableProperties).encoderThreads(
+        HiveConf.getIntVar(conf, HiveConf.ConfVars.HIVE_ORC_WRITER_ENCODER_THREADS)));
   }
 
   private class DummyOrcRecordUpdater implements RecordUpdater {
@@ -30,6 +30,9 @@
 import org.apache.hadoop.fs.FileSystem;
 import org.apache.hadoop.fs.Path;
 import org.apache.hadoop.hive.conf.HiveConf;
+import org.apache.hadoop.hive.ql.exec.vector.LongColumnVector;
+import org.apache.hadoop.hive.ql.exec.vector.StructColumnVector;
+import org.apache.hadoop.hive.ql.exec.vector.VectorizedRowBatch;
 import org.apache.hadoop.hive.ql.io.AcidOutputFormat;
 import org.apache.hadoop.hive.ql.io.AcidUtils;
 import org.apache.hadoop.hive.ql.io.BucketCodec;
@@ -120,6 +123,7 @@ public class OrcRecordUpdater implements RecordUpdater {
   private LongObjectInspector origTxnInspector; // OI for the original txn inside the record
   // identifer
   private IntObjectInspector bucketInspector;
+  private VectorizedRowBatch eventBatch = null; // the events of the rows inserted as a batch
 
   static int getOperation(OrcStruct struct) {
     return ((IntWritable) struct.getFieldValue(OPERATION)).get();
@@ -450,6 +454,53 @@ public void insert(long currentTransaction, Object row) throws IOException {
     rowCountDelta++;
   }
 
+  /**
+   * Inserts the rows of a batch, whose columns are the columns of the row.  This is the same as
+   * {@link #insert(long, Object)} for each row, but the event columns are set as repeating vectors
+   * and the batch is added to the writer as is.
+   * @param rowBatch the rows, which can't use selected
+   */
+  public void insert(long currentTransaction, VectorizedRowBatch rowBatch) throws IOException {
+    if (recIdField != null || rowBatch.selectedInUse) {
+      throw new IllegalArgumentException("Can't insert a batch with a record identifier or " +
+          "selected rows in " + path);
+    }
+    if (rowBatch.size == 0) {
+      return;
+    }
+    if (this.currentTransaction.get() != currentTransaction) {
+      insertedRows = 0;
+    }
+    this.currentTransaction.set(currentTransaction);
+    if (eventBatch == null || eventBatch.getMaxSize() < rowBatch.size) {
+      eventBatch = new VectorizedRowBatch(FIELDS, rowBatch.getMaxSize());
+      for (int i = 0; i < ROW; i++) {
+        eventBatch.cols[i] = new LongColumnVector(rowBatch.getMaxSize());
+      }
+      eventBatch.cols[OPERATION].isRepeating = true;
+      eventBatch.cols[ORIGINAL_TRANSACTION].isRepeating = true;
+      eventBatch.cols[BUCKET].isRepeating = true;
+      eventBatch.cols[CURRENT_TRANSACTION].isRepeating = true;
+    }
+    ((LongColumnVector) eventBatch.cols[OPERATION]).vector[0] = INSERT_OPERATION;
+    ((LongColumnVector) eventBatch.cols[ORIGINAL_TRANSACTION]).vector[0] = currentTransaction;
+    ((LongColumnVector) eventBatch.cols[BUCKET]).vector[0] = bucket.get();
+    ((LongColumnVector) eventBatch.cols[CURRENT_TRANSACTION]).vector[0] = currentTransaction;
+    long[] rowIds = ((LongColumnVector) eventBatch.cols[ROW_ID]).vector;
+    for (int i = 0; i < rowBatch.size; i++) {
+      rowIds[i] = insertedRows + i;
+    }
+    eventBatch.cols[ROW] = new StructColumnVector(rowBatch.getMaxSize(), rowBatch.cols);
+    eventBatch.size = rowBatch.size;
+    insertedRows += rowBatch.size;
+    indexBuilder.addInsertKeys(currentTransaction, bucket.get(), insertedRows - 1, rowBatch.size);
+    if (writer == null) {
+      writer = OrcFile.createWriter(path, writerOptions);
+    }
+    writer.addRowBatch(eventBatch);
+    rowCountDelta += rowBatch.size;
+  }
+
   @Override
   public void update(long currentTransaction, Object row) throws IOException {
     if (this.currentTransaction.get() != currentTransaction) {
@@ -618,6 +669,16 @@ void addKey(int op, long transaction, int bucket, long rowId) {
       lastBucket = bucket;
       lastRowId = rowId;
     }
+
+    /**
+     * Same as {@link #addKey} for the INSERT of the rows up to {@code rowId}.
+     */
+    void addInsertKeys(long transaction, int bucket, long rowId, int rows) {
+      acidStats.inserts += rows;
+      lastTransaction = transaction;
+      lastBucket = bucket;
+      lastRowId = rowId;
+    }
   }
 
   /**
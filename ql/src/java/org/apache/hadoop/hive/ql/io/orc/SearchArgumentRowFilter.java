@@ -0,0 +1,306 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.hadoop.hive.ql.io.orc;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.List;
+
+import org.apache.hadoop.hive.ql.exec.vector.BytesColumnVector;
+import org.apache.hadoop.hive.ql.exec.vector.ColumnVector;
+import org.apache.hadoop.hive.ql.exec.vector.DoubleColumnVector;
+import org.apache.hadoop.hive.ql.exec.vector.LongColumnVector;
+import org.apache.hadoop.hive.ql.exec.vector.VectorizedRowBatch;
+import org.apache.hadoop.hive.ql.exec.vector.expressions.StringExpr;
+import org.apache.hadoop.hive.ql.io.sarg.PredicateLeaf;
+import org.apache.hadoop.hive.ql.io.sarg.SearchArgument;
+import org.apache.hadoop.hive.ql.io.sarg.SearchArgument.TruthValue;
+import org.apache.orc.TypeDescription;
+
+/**
+ * Evaluates the search argument of an ORC reader on the rows of a batch, for the late
+ * materialization of VectorizedOrcInputFormat. The search argument is implied by the filter of
+ * the scan, so when it evaluates to NO, NULL or NO_NULL for every row of a batch, no row of the
+ * batch passes the filter and the other columns of the batch do not have to be read.
+ *
+ * Only the leaves on long, double, string, varchar and boolean columns are evaluated; the others
+ * are taken as YES_NO_NULL, like the search argument does for the predicates it can not convert.
+ */
+final class SearchArgumentRowFilter {
+
+  private final SearchArgument sarg;
+  private final PredicateLeaf[] leaves;
+  // The batch column of each evaluated leaf, -1 for the other leaves.
+  private final int[] leafColumns;
+  private final Object[] literals;
+  private final Object[][] literalLists;
+  private final TruthValue[] leafValues;
+  private final boolean[] columns;
+  private final TypeDescription schema;
+
+  private SearchArgumentRowFilter(SearchArgument sarg, TypeDescription schema) {
+    this.sarg = sarg;
+    this.schema = schema;
+    List<PredicateLeaf> leafList = sarg.getLeaves();
+    leaves = leafList.toArray(new PredicateLeaf[leafList.size()]);
+    leafColumns = new int[leaves.length];
+    literals = new Object[leaves.length];
+    literalLists = new Object[leaves.length][];
+    leafValues = new TruthValue[leaves.length];
+    columns = new boolean[schema.getChildren().size()];
+    Arrays.fill(leafColumns, -1);
+    Arrays.fill(leafValues, TruthValue.YES_NO_NULL);
+  }
+
+  /**
+   * Creates the filter for the search argument of the reader options.
+   * @param options The reader options, with the search argument and its column names.
+   * @param schema The reader schema; the batch has a column per child.
+   * @return The filter, or null when there is no leaf that can be evaluated on the rows.
+   */
+  static SearchArgumentRowFilter create(Reader.Options options, TypeDescription schema) {
+    SearchArgument sarg = options.getSearchArgument();
+    String[] columnNames = options.getColumnNames();
+    if (sarg == null || columnNames == null
+        || schema.getCategory() != TypeDescription.Category.STRUCT) {
+      return null;
+    }
+    SearchArgumentRowFilter filter = new SearchArgumentRowFilter(sarg, schema);
+    boolean hasEvaluatedLeaf = false;
+    List<TypeDescription> children = schema.getChildren();
+    for (int i = 0; i < filter.leaves.length; i++) {
+      PredicateLeaf leaf = filter.leaves[i];
+      int column = -1;
+      for (int c = 0; c < children.size() && column < 0; c++) {
+        int id = children.get(c).getId();
+        if (id < columnNames.length && leaf.getColumnName().equals(columnNames[id])) {
+          column = c;
+        }
+      }
+      if (column < 0) {
+        continue;
+      }
+      // The row groups are selected with all the predicate columns, so they are all read first.
+      filter.columns[column] = true;
+      if (filter.setLiterals(i, children.get(column).getCategory())) {
+        filter.leafColumns[i] = column;
+        hasEvaluatedLeaf = true;
+      }
+    }
+    return hasEvaluatedLeaf ? filter : null;
+  }
+
+  private boolean setLiterals(int leafIndex, TypeDescription.Category category) {
+    PredicateLeaf leaf = leaves[leafIndex];
+    switch (leaf.getType()) {
+    case LONG:
+      if (category != TypeDescription.Category.BYTE && category != TypeDescription.Category.SHORT
+          && category != TypeDescription.Category.INT
+          && category != TypeDescription.Category.LONG) {
+        return false;
+      }
+      break;
+    case FLOAT:
+      // A float column is compared with the double of its value, not with the literal.
+      if (category != TypeDescription.Category.DOUBLE) {
+        return false;
+      }
+      break;
+    case STRING:
+      // The char values are padded differently than the literals.
+      if (category != TypeDescription.Category.STRING
+          && category != TypeDescription.Category.VARCHAR) {
+        return false;
+      }
+      break;
+    case BOOLEAN:
+      if (category != TypeDescription.Category.BOOLEAN) {
+        return false;
+      }
+      break;
+    default:
+      return false;
+    }
+    switch (leaf.getOperator()) {
+    case IS_NULL:
+      return true;
+    case EQUALS:
+    case NULL_SAFE_EQUALS:
+    case LESS_THAN:
+    case LESS_THAN_EQUALS:
+      literals[leafIndex] = convertLiteral(leaf.getType(), leaf.getLiteral());
+      return literals[leafIndex] != null;
+    case IN:
+    case BETWEEN:
+      List<Object> literalList = leaf.getLiteralList();
+      if (literalList == null || literalList.isEmpty()) {
+        return false;
+      }
+      Object[] converted = new Object[literalList.size()];
+      for (int i = 0; i < converted.length; i++) {
+        Object literal = literalList.get(i);
+        converted[i] = convertLiteral(leaf.getType(), literal);
+        // Only IN can have a null literal, which makes it NULL rather than NO.
+        if (converted[i] == null
+            && (literal != null || leaf.getOperator() == PredicateLeaf.Operator.BETWEEN)) {
+          return false;
+        }
+      }
+      if (leaf.getOperator() == PredicateLeaf.Operator.BETWEEN && converted.length != 2) {
+        return false;
+      }
+      literalLists[leafIndex] = converted;
+      return true;
+    default:
+      return false;
+    }
+  }
+
+  private static Object convertLiteral(PredicateLeaf.Type type, Object literal) {
+    switch (type) {
+    case LONG:
+      return literal instanceof Long ? literal : null;
+    case FLOAT:
+      return literal instanceof Double ? literal : null;
+    case STRING:
+      return literal instanceof String ? ((String) literal).getBytes(StandardCharsets.UTF_8) : null;
+    case BOOLEAN:
+      return literal instanceof Boolean ? (((Boolean) literal) ? 1L : 0L) : null;
+    default:
+      return null;
+    }
+  }
+
+  /**
+   * @return The ORC include of the predicate columns.
+   */
+  boolean[] getInclude() {
+    boolean[] include = new boolean[schema.getMaximumId() + 1];
+    include[0] = true;
+    for (int c = 0; c < columns.length; c++) {
+      if (columns[c]) {
+        TypeDescription child = schema.getChildren().get(c);
+        Arrays.fill(include, child.getId(), child.getMaximumId() + 1, true);
+      }
+    }
+    return include;
+  }
+
+  /**
+   * @param include The ORC include of the reader, null for all the columns.
+   * @return The ORC include of the other columns, or null when all the included columns are
+   *         predicate columns.
+   */
+  boolean[] getRestInclude(boolean[] include) {
+    boolean[] rest = new boolean[schema.getMaximumId() + 1];
+    boolean hasColumn = false;
+    rest[0] = true;
+    for (int c = 0; c < columns.length; c++) {
+      TypeDescription child = schema.getChildren().get(c);
+      if (!columns[c] && (include == null || include[child.getId()])) {
+        Arrays.fill(rest, child.getId(), child.getMaximumId() + 1, true);
+        hasColumn = true;
+      }
+    }
+    return hasColumn ? rest : null;
+  }
+
+  /**
+   * @return Whether the batch column is a predicate column.
+   */
+  boolean isPredicateColumn(int column) {
+    return column < columns.length && columns[column];
+  }
+
+  /**
+   * @param batch A batch with the predicate columns, without selected rows.
+   * @return Whether the search argument can be true for a row of the batch.
+   */
+  boolean hasSelectedRow(VectorizedRowBatch batch) {
+    for (int row = 0; row < batch.size; row++) {
+      for (int i = 0; i < leaves.length; i++) {
+        if (leafColumns[i] >= 0) {
+          leafValues[i] = evaluate(i, batch.cols[leafColumns[i]], row);
+        }
+      }
+      if (sarg.evaluate(leafValues).isNeeded()) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  private TruthValue evaluate(int leafIndex, ColumnVector vector, int row) {
+    int r = vector.isRepeating ? 0 : row;
+    boolean isNull = !vector.noNulls && vector.isNull[r];
+    PredicateLeaf.Operator operator = leaves[leafIndex].getOperator();
+    if (operator == PredicateLeaf.Operator.IS_NULL) {
+      return isNull ? TruthValue.YES : TruthValue.NO;
+    }
+    if (isNull) {
+      return operator == PredicateLeaf.Operator.NULL_SAFE_EQUALS ? TruthValue.NO : TruthValue.NULL;
+    }
+    if (vector instanceof DoubleColumnVector && Double.isNaN(((DoubleColumnVector) vector).vector[r])) {
+      return TruthValue.YES_NO_NULL;
+    }
+    switch (operator) {
+    case EQUALS:
+    case NULL_SAFE_EQUALS:
+      return truth(compare(vector, r, literals[leafIndex]) == 0);
+    case LESS_THAN:
+      return truth(compare(vector, r, literals[leafIndex]) < 0);
+    case LESS_THAN_EQUALS:
+      return truth(compare(vector, r, literals[leafIndex]) <= 0);
+    case IN:
+      boolean hasNull = false;
+      for (Object literal : literalLists[leafIndex]) {
+        if (literal == null) {
+          hasNull = true;
+        } else if (compare(vector, r, literal) == 0) {
+          return TruthValue.YES;
+        }
+      }
+      return hasNull ? TruthValue.NULL : TruthValue.NO;
+    case BETWEEN:
+      Object[] bounds = literalLists[leafIndex];
+      return truth(compare(vector, r, bounds[0]) >= 0 && compare(vector, r, bounds[1]) <= 0);
+    default:
+      return TruthValue.YES_NO_NULL;
+    }
+  }
+
+  private static TruthValue truth(boolean value) {
+    return value ? TruthValue.YES : TruthValue.NO;
+  }
+
+  private static int compare(ColumnVector vector, int r, Object literal) {
+    if (vector instanceof LongColumnVector) {
+      return Long.compare(((LongColumnVector) vector).vector[r], (Long) literal);
+    } else if (vector instanceof DoubleColumnVector) {
+      double value = ((DoubleColumnVector) vector).vector[r];
+      double other = (Double) literal;
+      return value < other ? -1 : (value > other ? 1 : 0);
+    } else {
+      BytesColumnVector bytes = (BytesColumnVector) vector;
+      byte[] other = (byte[]) literal;
+      return StringExpr.compare(bytes.vector[r], bytes.start[r], bytes.length[r],
+          other, 0, other.length);
+    }
+  }
+}
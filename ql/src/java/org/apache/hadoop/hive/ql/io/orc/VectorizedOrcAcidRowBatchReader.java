@@ -21,8 +21,12 @@
 import java.io.IOException;
 import java.util.Arrays;
 import java.util.BitSet;
+import java.util.List;
 import java.util.Map.Entry;
+import java.util.Objects;
 import java.util.TreeMap;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
 
 import org.apache.hadoop.conf.Configuration;
 import org.apache.hadoop.fs.FileSystem;
@@ -31,6 +35,9 @@
 import org.apache.hadoop.hive.common.ValidTxnList;
 import org.apache.hadoop.hive.conf.HiveConf;
 import org.apache.hadoop.hive.conf.HiveConf.ConfVars;
+import org.apache.hadoop.hive.llap.LlapDaemonInfo;
+import org.apache.hadoop.hive.llap.io.api.LlapIo;
+import org.apache.hadoop.hive.llap.io.api.LlapProxy;
 import org.apache.hadoop.hive.metastore.api.hive_metastoreConstants;
 import org.apache.hadoop.hive.ql.exec.Utilities;
 import org.apache.hadoop.hive.ql.exec.vector.ColumnVector;
@@ -53,6 +60,11 @@
 import org.slf4j.LoggerFactory;
 
 import com.google.common.annotations.VisibleForTesting;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.RemovalListener;
+import com.google.common.cache.RemovalNotification;
+import com.google.common.cache.Weigher;
 /**
  * A fast vectorized batch reader class for ACID. Insert events are read directly
  * from the base files/insert_only deltas in vectorized row batches. The deleted
@@ -770,6 +782,7 @@ public void close() throws IOException {
    * the larger rowId vector between the given toIndex and fromIndex. Of course, there is rough
    * heuristic that prevents creation of an instance of this class if the memory pressure is high.
    * The SortMergedDeleteEventRegistry is then the fallback method for such scenarios.
+   * In LLAP, the loaded delete events are cached and shared by the splits of the same bucket.
    */
    static class ColumnizedDeleteEventRegistry implements DeleteEventRegistry {
     /**
@@ -936,7 +949,7 @@ private void checkBucketId(int bucketPropertyFromRecord) throws IOException {
      * the toIndex. These fromIndex and toIndex reference the larger vector formed by
      * concatenating the correspondingly ordered rowIds.
      */
-    private final class CompressedOtid implements Comparable<CompressedOtid> {
+    private static final class CompressedOtid implements Comparable<CompressedOtid> {
       final long originalTransactionId;
       final int bucketProperty;
       final int fromIndex; // inclusive
@@ -962,6 +975,181 @@ public int compareTo(CompressedOtid other) {
       }
     }
 
+    /**
+     * The delete events of all the delete deltas of a bucket, as the sorted compressed otids and
+     * the rowIds they index into. Instances are never modified once built, so in LLAP a single
+     * copy is shared by all the splits, and queries, that read the bucket through the same
+     * delete deltas. See {@link #getDeleteEventsCache(Configuration)}.
+     */
+    static final class DeleteEvents {
+      private static final DeleteEvents EMPTY = new DeleteEvents(new CompressedOtid[0], new long[0]);
+
+      private final CompressedOtid[] compressedOtids;
+      private final long[] rowIds;
+
+      private DeleteEvents(CompressedOtid[] compressedOtids, long[] rowIds) {
+        this.compressedOtids = compressedOtids;
+        this.rowIds = rowIds;
+      }
+
+      boolean isEmpty() {
+        return compressedOtids.length == 0;
+      }
+
+      /**
+       * @return the approximate size of the delete events on the heap, in bytes.
+       */
+      int getMemoryUsage() {
+        // A CompressedOtid has a 12 byte header, a long and 3 ints, plus its reference.
+        return 64 + rowIds.length * 8 + compressedOtids.length * 40;
+      }
+
+      private boolean isDeleted(long otid, int bucketProperty, long rowId) {
+        if (isEmpty()) {
+          return false;
+        }
+        // To find if a given (otid, rowId) pair is deleted or not, we perform
+        // two binary searches at most. The first binary search is on the
+        // compressed otids. If a match is found, only then we do the next
+        // binary search in the larger rowId vector between the given toIndex & fromIndex.
+
+        // Check if otid is outside the range of all otids present.
+        if (otid < compressedOtids[0].originalTransactionId
+            || otid > compressedOtids[compressedOtids.length - 1].originalTransactionId) {
+          return false;
+        }
+        // Create a dummy key for searching the otid/bucket in the compressed otid ranges.
+        CompressedOtid key = new CompressedOtid(otid, bucketProperty, -1, -1);
+        int pos = Arrays.binarySearch(compressedOtids, key);
+        if (pos >= 0) {
+          // Otid with the given value found! Searching now for rowId...
+          key = compressedOtids[pos]; // Retrieve the actual CompressedOtid that matched.
+          // Check if rowId is outside the range of all rowIds present for this otid.
+          if (rowId < rowIds[key.fromIndex]
+              || rowId > rowIds[key.toIndex - 1]) {
+            return false;
+          }
+          if (Arrays.binarySearch(rowIds, key.fromIndex, key.toIndex, rowId) >= 0) {
+            return true; // rowId also found!
+          }
+        }
+        return false;
+      }
+    }
+
+    /**
+     * Identifies the {@link DeleteEvents} of a bucket. Delete deltas are never modified, so the
+     * delete delta directories and the bucket are enough as long as all the transactions in the
+     * ranges of the delete deltas are valid for the reader. If some are not, the events that are
+     * loaded depend on the reader's {@link ValidTxnList}, which then becomes part of the key.
+     */
+    static final class DeleteEventsKey {
+      private final List<Path> deleteDeltaDirs;
+      private final int bucket;
+      private final boolean isBucketedTable;
+      private final String validTxnList; // null if all the delete deltas are valid
+
+      DeleteEventsKey(Path[] deleteDeltaDirs, int bucket, boolean isBucketedTable,
+          String validTxnList) {
+        this.deleteDeltaDirs = Arrays.asList(deleteDeltaDirs);
+        this.bucket = bucket;
+        this.isBucketedTable = isBucketedTable;
+        this.validTxnList = validTxnList;
+      }
+
+      @Override
+      public boolean equals(Object obj) {
+        if (!(obj instanceof DeleteEventsKey)) {
+          return false;
+        }
+        DeleteEventsKey other = (DeleteEventsKey) obj;
+        return bucket == other.bucket && isBucketedTable == other.isBucketedTable
+            && deleteDeltaDirs.equals(other.deleteDeltaDirs)
+            && Objects.equals(validTxnList, other.validTxnList);
+      }
+
+      @Override
+      public int hashCode() {
+        return Objects.hash(deleteDeltaDirs, bucket, isBucketedTable, validTxnList);
+      }
+
+      @Override
+      public String toString() {
+        return "bucket: " + bucket + " deleteDeltas: " + deleteDeltaDirs
+            + (validTxnList == null ? "" : " validTxnList: " + validTxnList);
+      }
+    }
+
+    private static Cache<DeleteEventsKey, DeleteEvents> deleteEventsCache = null;
+
+    /**
+     * @return the daemon wide cache of delete events, or null if the delete events should not be
+     * cached. Only LLAP daemons with LLAP IO cache them, as they run the splits of many tasks and
+     * queries; a container reads a handful of splits at most. The cached delete events are
+     * accounted for in the LLAP memory manager, see {@link #reserveMemory(DeleteEvents)}.
+     */
+    private static synchronized Cache<DeleteEventsKey, DeleteEvents> getDeleteEventsCache(
+        Configuration conf) {
+      final LlapIo<?> io = LlapProxy.getIo();
+      if (!LlapProxy.isDaemon() || io == null) {
+        return null;
+      }
+      if (deleteEventsCache == null) {
+        // The daemon's configuration sizes the cache, not the one of the first query to use it.
+        long maxSize = LlapDaemonInfo.INSTANCE.isLlap()
+            ? LlapDaemonInfo.INSTANCE.getDeleteEventsCacheSize()
+            : HiveConf.getSizeVar(conf, ConfVars.HIVE_TRANSACTIONAL_DELETE_EVENTS_CACHE_SIZE);
+        if (maxSize <= 0) {
+          return null;
+        }
+        deleteEventsCache = CacheBuilder.newBuilder()
+            .maximumWeight(maxSize)
+            .weigher(new Weigher<DeleteEventsKey, DeleteEvents>() {
+              @Override
+              public int weigh(DeleteEventsKey key, DeleteEvents value) {
+                return value.getMemoryUsage();
+              }
+            })
+            .removalListener(new RemovalListener<DeleteEventsKey, DeleteEvents>() {
+              @Override
+              public void onRemoval(RemovalNotification<DeleteEventsKey, DeleteEvents> removal) {
+                io.releaseMemory(removal.getValue().getMemoryUsage());
+              }
+            })
+            .build();
+      }
+      return deleteEventsCache;
+    }
+
+    /**
+     * Reserves the memory of delete events about to be cached in the LLAP memory manager, which
+     * evicts cached data to make room if needed. The memory is released when they are evicted.
+     */
+    private static boolean reserveMemory(DeleteEvents deleteEvents) {
+      return LlapProxy.getIo().reserveMemory(deleteEvents.getMemoryUsage());
+    }
+
+    @VisibleForTesting
+    static synchronized void clearDeleteEventsCache() {
+      if (deleteEventsCache != null) {
+        deleteEventsCache.invalidateAll();
+        deleteEventsCache = null;
+      }
+    }
+
+    /**
+     * Thrown when loading delete events into the cache if their memory cannot be reserved, so
+     * that they are used by the split that loaded them without being cached.
+     */
+    private static final class DeleteEventsNotReservedException extends Exception {
+      private static final long serialVersionUID = 1L;
+      private final transient DeleteEvents deleteEvents;
+
+      private DeleteEventsNotReservedException(DeleteEvents deleteEvents) {
+        this.deleteEvents = deleteEvents;
+      }
+    }
+
     /**
      * Food for thought:
      * this is a bit problematic - in order to load ColumnizedDeleteEventRegistry we still open
@@ -974,80 +1162,138 @@ public int compareTo(CompressedOtid other) {
      * footprint (as far as OrcReader to a single reader) - probably bad for LLAP IO
      */
     private TreeMap<DeleteRecordKey, DeleteReaderValue> sortMerger;
-    private long rowIds[];
-    private CompressedOtid compressedOtids[];
+    private DeleteEvents deleteEvents;
     private ValidTxnList validTxnList;
     private Boolean isEmpty = null;
 
     ColumnizedDeleteEventRegistry(JobConf conf, OrcSplit orcSplit,
         Reader.Options readerOptions) throws IOException, DeleteEventsOverflowMemoryException {
-      int bucket = AcidUtils.parseBaseOrDeltaBucketFilename(orcSplit.getPath(), conf).getBucketId();
+      final int bucket = AcidUtils.parseBaseOrDeltaBucketFilename(orcSplit.getPath(), conf).getBucketId();
       String txnString = conf.get(ValidTxnList.VALID_TXNS_KEY);
       this.validTxnList = (txnString == null) ? new ValidReadTxnList() : new ValidReadTxnList(txnString);
       this.sortMerger = new TreeMap<DeleteRecordKey, DeleteReaderValue>();
-      this.rowIds = null;
-      this.compressedOtids = null;
-      int maxEventsInMemory = HiveConf.getIntVar(conf, ConfVars.HIVE_TRANSACTIONAL_NUM_EVENTS_IN_MEMORY);
+      this.deleteEvents = DeleteEvents.EMPTY;
       final boolean isBucketedTable  = conf.getInt(hive_metastoreConstants.BUCKET_COUNT, 0) > 0;
 
       try {
         final Path[] deleteDeltaDirs = getDeleteDeltaDirsFromSplit(orcSplit);
         if (deleteDeltaDirs.length > 0) {
-          int totalDeleteEventCount = 0;
-          for (Path deleteDeltaDir : deleteDeltaDirs) {
-            FileSystem fs = deleteDeltaDir.getFileSystem(conf);
-            for(Path deleteDeltaFile : OrcRawRecordMerger.getDeltaFiles(deleteDeltaDir, bucket, conf,
-              new OrcRawRecordMerger.Options().isCompacting(false), isBucketedTable)) {
-            // NOTE: Calling last flush length below is more for future-proofing when we have
-            // streaming deletes. But currently we don't support streaming deletes, and this can
-            // be removed if this becomes a performance issue.
-            long length = OrcAcidUtils.getLastFlushLength(fs, deleteDeltaFile);
-            // NOTE: A check for existence of deleteDeltaFile is required because we may not have
-            // deletes for the bucket being taken into consideration for this split processing.
-            if (length != -1 && fs.exists(deleteDeltaFile)) {
-              Reader deleteDeltaReader = OrcFile.createReader(deleteDeltaFile,
-                  OrcFile.readerOptions(conf).maxLength(length));
-              AcidStats acidStats = OrcAcidUtils.parseAcidStats(deleteDeltaReader);
-              if (acidStats.deletes == 0) {
-                continue; // just a safe check to ensure that we are not reading empty delete files.
-              }
-              totalDeleteEventCount += acidStats.deletes;
-              if (totalDeleteEventCount > maxEventsInMemory) {
-                // ColumnizedDeleteEventRegistry loads all the delete events from all the delete deltas
-                // into memory. To prevent out-of-memory errors, this check is a rough heuristic that
-                // prevents creation of an object of this class if the total number of delete events
-                // exceed this value. By default, it has been set to 10 million delete events per bucket.
-                LOG.info("Total number of delete events exceeds the maximum number of delete events "
-                    + "that can be loaded into memory for the delete deltas in the directory at : "
-                    + deleteDeltaDirs.toString() +". The max limit is currently set at "
-                    + maxEventsInMemory + " and can be changed by setting the Hive config variable "
-                    + ConfVars.HIVE_TRANSACTIONAL_NUM_EVENTS_IN_MEMORY.varname);
-                throw new DeleteEventsOverflowMemoryException();
-              }
-              DeleteReaderValue deleteReaderValue = new DeleteReaderValue(deleteDeltaReader,
-                  readerOptions, bucket, validTxnList, isBucketedTable);
-              DeleteRecordKey deleteRecordKey = new DeleteRecordKey();
-              if (deleteReaderValue.next(deleteRecordKey)) {
-                sortMerger.put(deleteRecordKey, deleteReaderValue);
-              } else {
-                deleteReaderValue.close();
-              }
-            }
-          }
-          }
-          if (totalDeleteEventCount > 0) {
-            // Initialize the rowId array when we have some delete events.
-            rowIds = new long[totalDeleteEventCount];
-            readAllDeleteEventsFromDeleteDeltas();
+          Cache<DeleteEventsKey, DeleteEvents> cache = getDeleteEventsCache(conf);
+          if (cache == null) {
+            deleteEvents = loadDeleteEvents(conf, deleteDeltaDirs, bucket, readerOptions,
+                isBucketedTable);
+          } else {
+            deleteEvents = getCachedDeleteEvents(cache, conf, deleteDeltaDirs, bucket,
+                readerOptions, isBucketedTable);
           }
         }
-        isEmpty = compressedOtids == null || rowIds == null;
+        isEmpty = deleteEvents.isEmpty();
       } catch(IOException|DeleteEventsOverflowMemoryException e) {
         close(); // close any open readers, if there was some exception during initialization.
         throw e; // rethrow the exception so that the caller can handle.
       }
     }
 
+    /**
+     * Looks the delete events up in the cache, loading them if they are not there. Concurrent
+     * splits of the same bucket wait for a single load rather than all reading the delete deltas.
+     */
+    private DeleteEvents getCachedDeleteEvents(Cache<DeleteEventsKey, DeleteEvents> cache,
+        final JobConf conf, final Path[] deleteDeltaDirs, final int bucket,
+        final Reader.Options readerOptions, final boolean isBucketedTable)
+        throws IOException, DeleteEventsOverflowMemoryException {
+      boolean isAllValid = true;
+      for (Path deleteDeltaDir : deleteDeltaDirs) {
+        AcidUtils.ParsedDelta delta = AcidUtils.parsedDelta(deleteDeltaDir,
+            AcidUtils.DELETE_DELTA_PREFIX, deleteDeltaDir.getFileSystem(conf));
+        if (validTxnList.isTxnRangeValid(delta.getMinTransaction(), delta.getMaxTransaction())
+            != ValidTxnList.RangeResponse.ALL) {
+          isAllValid = false;
+          break;
+        }
+      }
+      DeleteEventsKey key = new DeleteEventsKey(deleteDeltaDirs, bucket, isBucketedTable,
+          isAllValid ? null : validTxnList.writeToString());
+      try {
+        return cache.get(key, new Callable<DeleteEvents>() {
+          @Override
+          public DeleteEvents call() throws Exception {
+            DeleteEvents loaded =
+                loadDeleteEvents(conf, deleteDeltaDirs, bucket, readerOptions, isBucketedTable);
+            if (!reserveMemory(loaded)) {
+              throw new DeleteEventsNotReservedException(loaded);
+            }
+            return loaded;
+          }
+        });
+      } catch (ExecutionException e) {
+        Throwable cause = e.getCause();
+        if (cause instanceof DeleteEventsNotReservedException) {
+          return ((DeleteEventsNotReservedException) cause).deleteEvents;
+        }
+        if (cause instanceof DeleteEventsOverflowMemoryException) {
+          throw (DeleteEventsOverflowMemoryException) cause;
+        }
+        if (cause instanceof IOException) {
+          throw (IOException) cause;
+        }
+        throw new IOException("Failed to load the delete events for " + key, cause);
+      }
+    }
+
+    private DeleteEvents loadDeleteEvents(JobConf conf, Path[] deleteDeltaDirs, int bucket,
+        Reader.Options readerOptions, boolean isBucketedTable)
+        throws IOException, DeleteEventsOverflowMemoryException {
+      int maxEventsInMemory = HiveConf.getIntVar(conf, ConfVars.HIVE_TRANSACTIONAL_NUM_EVENTS_IN_MEMORY);
+      int totalDeleteEventCount = 0;
+      for (Path deleteDeltaDir : deleteDeltaDirs) {
+        FileSystem fs = deleteDeltaDir.getFileSystem(conf);
+        for(Path deleteDeltaFile : OrcRawRecordMerger.getDeltaFiles(deleteDeltaDir, bucket, conf,
+          new OrcRawRecordMerger.Options().isCompacting(false), isBucketedTable)) {
+        // NOTE: Calling last flush length below is more for future-proofing when we have
+        // streaming deletes. But currently we don't support streaming deletes, and this can
+        // be removed if this becomes a performance issue.
+        long length = OrcAcidUtils.getLastFlushLength(fs, deleteDeltaFile);
+        // NOTE: A check for existence of deleteDeltaFile is required because we may not have
+        // deletes for the bucket being taken into consideration for this split processing.
+        if (length != -1 && fs.exists(deleteDeltaFile)) {
+          Reader deleteDeltaReader = OrcFile.createReader(deleteDeltaFile,
+              OrcFile.readerOptions(conf).maxLength(length));
+          AcidStats acidStats = OrcAcidUtils.parseAcidStats(deleteDeltaReader);
+          if (acidStats.deletes == 0) {
+            continue; // just a safe check to ensure that we are not reading empty delete files.
+          }
+          totalDeleteEventCount += acidStats.deletes;
+          if (totalDeleteEventCount > maxEventsInMemory) {
+            // ColumnizedDeleteEventRegistry loads all the delete events from all the delete deltas
+            // into memory. To prevent out-of-memory errors, this check is a rough heuristic that
+            // prevents creation of an object of this class if the total number of delete events
+            // exceed this value. By default, it has been set to 10 million delete events per bucket.
+            LOG.info("Total number of delete events exceeds the maximum number of delete events "
+                + "that can be loaded into memory for the delete deltas in the directory at : "
+                + deleteDeltaDirs.toString() +". The max limit is currently set at "
+                + maxEventsInMemory + " and can be changed by setting the Hive config variable "
+                + ConfVars.HIVE_TRANSACTIONAL_NUM_EVENTS_IN_MEMORY.varname);
+            throw new DeleteEventsOverflowMemoryException();
+          }
+          DeleteReaderValue deleteReaderValue = new DeleteReaderValue(deleteDeltaReader,
+              readerOptions, bucket, validTxnList, isBucketedTable);
+          DeleteRecordKey deleteRecordKey = new DeleteRecordKey();
+          if (deleteReaderValue.next(deleteRecordKey)) {
+            sortMerger.put(deleteRecordKey, deleteReaderValue);
+          } else {
+            deleteReaderValue.close();
+          }
+        }
+      }
+      }
+      if (totalDeleteEventCount > 0) {
+        // Initialize the rowId array when we have some delete events.
+        return readAllDeleteEventsFromDeleteDeltas(new long[totalDeleteEventCount]);
+      }
+      return DeleteEvents.EMPTY;
+    }
+
     /**
      * This is not done quite right.  The intent of {@link CompressedOtid} is a hedge against
      * "delete from T" that generates a huge number of delete events possibly even 2G - max array
@@ -1056,8 +1302,10 @@ public int compareTo(CompressedOtid other) {
      * In practice we should be filtering delete evens by min/max ROW_ID from the split.  The later
      * is also not yet implemented: HIVE-16812.
      */
-    private void readAllDeleteEventsFromDeleteDeltas() throws IOException {
-      if (sortMerger == null || sortMerger.isEmpty()) return; // trivial case, nothing to read.
+    private DeleteEvents readAllDeleteEventsFromDeleteDeltas(long[] rowIds) throws IOException {
+      if (sortMerger == null || sortMerger.isEmpty()) {
+        return DeleteEvents.EMPTY; // trivial case, nothing to read.
+      }
       int distinctOtids = 0;
       long lastSeenOtid = -1;
       int lastSeenBucketProperty = -1;
@@ -1095,14 +1343,22 @@ private void readAllDeleteEventsFromDeleteDeltas() throws IOException {
         }
       }
 
+      if (index == 0) {
+        return DeleteEvents.EMPTY; // all the delete events were from invalid transactions.
+      }
+      if (index < rowIds.length) {
+        // Delete events of invalid transactions were skipped, the arrays must not have a tail.
+        rowIds = Arrays.copyOf(rowIds, index);
+      }
+
       // Once we have processed all the delete events and seen all the distinct otids,
       // we compress the otids into CompressedOtid data structure that records
       // the fromIndex(inclusive) and toIndex(exclusive) for each unique otid.
-      this.compressedOtids = new CompressedOtid[distinctOtids];
+      CompressedOtid[] compressedOtids = new CompressedOtid[distinctOtids];
       lastSeenOtid = otids[0];
       lastSeenBucketProperty = bucketProperties[0];
       int fromIndex = 0, pos = 0;
-      for (int i = 1; i < otids.length; ++i) {
+      for (int i = 1; i < index; ++i) {
         if (otids[i] != lastSeenOtid || lastSeenBucketProperty != bucketProperties[i]) {
           compressedOtids[pos] = 
             new CompressedOtid(lastSeenOtid, lastSeenBucketProperty, fromIndex, i);
@@ -1114,40 +1370,10 @@ private void readAllDeleteEventsFromDeleteDeltas() throws IOException {
       }
       // account for the last distinct otid
       compressedOtids[pos] =
-        new CompressedOtid(lastSeenOtid, lastSeenBucketProperty, fromIndex, otids.length);
+        new CompressedOtid(lastSeenOtid, lastSeenBucketProperty, fromIndex, index);
+      return new DeleteEvents(compressedOtids, rowIds);
     }
 
-    private boolean isDeleted(long otid, int bucketProperty, long rowId) {
-      if (compressedOtids == null || rowIds == null) {
-        return false;
-      }
-      // To find if a given (otid, rowId) pair is deleted or not, we perform
-      // two binary searches at most. The first binary search is on the
-      // compressed otids. If a match is found, only then we do the next
-      // binary search in the larger rowId vector between the given toIndex & fromIndex.
-
-      // Check if otid is outside the range of all otids present.
-      if (otid < compressedOtids[0].originalTransactionId
-          || otid > compressedOtids[compressedOtids.length - 1].originalTransactionId) {
-        return false;
-      }
-      // Create a dummy key for searching the otid/bucket in the compressed otid ranges.
-      CompressedOtid key = new CompressedOtid(otid, bucketProperty, -1, -1);
-      int pos = Arrays.binarySearch(compressedOtids, key);
-      if (pos >= 0) {
-        // Otid with the given value found! Searching now for rowId...
-        key = compressedOtids[pos]; // Retrieve the actual CompressedOtid that matched.
-        // Check if rowId is outside the range of all rowIds present for this otid.
-        if (rowId < rowIds[key.fromIndex]
-            || rowId > rowIds[key.toIndex - 1]) {
-          return false;
-        }
-        if (Arrays.binarySearch(rowIds, key.fromIndex, key.toIndex, rowId) >= 0) {
-          return true; // rowId also found!
-        }
-      }
-      return false;
-    }
     @Override
     public boolean isEmpty() {
       if(isEmpty == null) {
@@ -1155,10 +1381,14 @@ public boolean isEmpty() {
       }
       return isEmpty;
     }
+    @VisibleForTesting
+    DeleteEvents getDeleteEvents() {
+      return deleteEvents;
+    }
     @Override
     public void findDeletedRecords(ColumnVector[] cols, int size, BitSet selectedBitSet)
         throws IOException {
-      if (rowIds == null || compressedOtids == null) {
+      if (deleteEvents.isEmpty()) {
         return;
       }
       // Iterate through the batch and for each (otid, rowid) in the batch
@@ -1187,7 +1417,7 @@ public void findDeletedRecords(ColumnVector[] cols, int size, BitSet selectedBit
         int bucketProperty = bucketProperties != null ? (int)bucketProperties[setBitIndex]
           : repeatedBucketProperty;
         long rowId = rowIdVector[setBitIndex];
-        if (isDeleted(otid, bucketProperty, rowId)) {
+        if (deleteEvents.isDeleted(otid, bucketProperty, rowId)) {
           selectedBitSet.clear(setBitIndex);
         }
      }
@@ -28,6 +28,7 @@
 import org.apache.hadoop.hive.conf.HiveConf;
 import org.apache.hadoop.hive.conf.HiveConf.ConfVars;
 import org.apache.hadoop.hive.ql.exec.Utilities;
+import org.apache.hadoop.hive.ql.exec.vector.ColumnVector;
 import org.apache.hadoop.hive.ql.exec.vector.VectorizedInputFormatInterface;
 import org.apache.hadoop.hive.ql.exec.vector.VectorizedRowBatch;
 import org.apache.hadoop.hive.ql.exec.vector.VectorizedRowBatchCtx;
@@ -53,7 +54,13 @@ public class VectorizedOrcInputFormat extends FileInputFormat<NullWritable, Vect
 
   static class VectorizedOrcRecordReader
       implements RecordReader<NullWritable, VectorizedRowBatch> {
-    private final org.apache.hadoop.hive.ql.io.orc.RecordReader reader;
+    private final org.apache.orc.RecordReader reader;
+    // With late materialization, reader only reads the predicate columns, into filterBatch, and
+    // restReader reads the other columns of the batches that can have a selected row. They are
+    // ORC readers, which keep their row number when reading batches.
+    private final org.apache.orc.RecordReader restReader;
+    private final SearchArgumentRowFilter rowFilter;
+    private VectorizedRowBatch filterBatch;
     private final long offset;
     private final long length;
     private float progress = 0.0f;
@@ -98,7 +105,26 @@ public class VectorizedOrcInputFormat extends FileInputFormat<NullWritable, Vect
       options.include(OrcInputFormat.genIncludedColumns(schema, conf));
       OrcInputFormat.setSearchArgument(options, types, conf, true);
 
-      this.reader = file.rowsOptions(options);
+      SearchArgumentRowFilter rowFilter = null;
+      boolean[] restInclude = null;
+      if (HiveConf.getBoolVar(conf, ConfVars.HIVE_ORC_LATE_MATERIALIZATION)) {
+        rowFilter = SearchArgumentRowFilter.create(options, schema);
+        if (rowFilter != null) {
+          restInclude = rowFilter.getRestInclude(options.getInclude());
+        }
+      }
+      if (restInclude != null) {
+        // The other columns are read without the search argument, since their reader does not
+        // have the row index of the predicate columns; it is moved to the rows of each batch.
+        this.restReader = file.rows(
+            options.clone().include(restInclude).searchArgument(null, null));
+        this.rowFilter = rowFilter;
+        this.reader = file.rows(options.include(rowFilter.getInclude()));
+      } else {
+        this.restReader = null;
+        this.rowFilter = null;
+        this.reader = file.rowsOptions(options);
+      }
 
       int partitionColumnCount = rbCtx.getPartitionColumnCount();
       if (partitionColumnCount > 0) {
@@ -124,7 +150,11 @@ public boolean next(NullWritable key, VectorizedRowBatch value) throws IOExcepti
           }
           addPartitionCols = false;
         }
-        if (!reader.nextBatch(value)) {
+        if (rowFilter != null) {
+          if (!nextFilteredBatch(value)) {
+            return false;
+          }
+        } else if (!reader.nextBatch(value)) {
           return false;
         }
       } catch (Exception e) {
@@ -134,6 +164,41 @@ public boolean next(NullWritable key, VectorizedRowBatch value) throws IOExcepti
       return true;
     }
 
+    /**
+     * Reads the predicate columns until a batch can have a selected row, and then the other
+     * columns of that batch.
+     */
+    private boolean nextFilteredBatch(VectorizedRowBatch value) throws IOException {
+      if (filterBatch == null) {
+        filterBatch = rbCtx.createVectorizedRowBatch();
+      }
+      long rowNumber;
+      do {
+        rowNumber = reader.getRowNumber();
+        if (!reader.nextBatch(filterBatch)) {
+          return false;
+        }
+      } while (!rowFilter.hasSelectedRow(filterBatch));
+
+      if (restReader.getRowNumber() != rowNumber) {
+        restReader.seekToRow(rowNumber);
+      }
+      // The rest reader does not skip row groups, so its batch can be longer.
+      if (!restReader.nextBatch(value) || value.size < filterBatch.size) {
+        throw new IOException("Cannot read the rows " + rowNumber + " to "
+            + (rowNumber + filterBatch.size) + " of the columns outside of the predicate");
+      }
+      value.size = filterBatch.size;
+      for (int c = 0; c < rbCtx.getDataColumnCount(); c++) {
+        if (rowFilter.isPredicateColumn(c)) {
+          ColumnVector column = value.cols[c];
+          value.cols[c] = filterBatch.cols[c];
+          filterBatch.cols[c] = column;
+        }
+      }
+      return true;
+    }
+
     @Override
     public NullWritable createKey() {
       return NullWritable.get();
@@ -152,6 +217,9 @@ public long getPos() throws IOException {
     @Override
     public void close() throws IOException {
       reader.close();
+      if (restReader != null) {
+        restReader.close();
+      }
     }
 
     @Override
@@ -19,10 +19,18 @@
 package org.apache.hadoop.hive.ql.io.orc;
 
 import java.io.IOException;
+import java.io.InterruptedIOException;
 import java.sql.Timestamp;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
 
 import org.apache.hadoop.hive.serde2.objectinspector.PrimitiveObjectInspector;
 import org.apache.hadoop.fs.FileSystem;
@@ -62,6 +70,7 @@
 import org.apache.hadoop.io.Text;
 
 import com.google.common.annotations.VisibleForTesting;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
 import org.apache.orc.PhysicalWriter;
 
 /**
@@ -81,13 +90,28 @@
  * Caveat: the MemoryManager is created during WriterOptions create, that has to be confined to a single
  * thread as well.
  * 
+ * With WriterOptions#encoderThreads, the rows are still added on the calling thread, but each
+ * full internal batch is encoded and compressed on an encoder thread while the caller fills a
+ * second batch. The writer waits for the batch being encoded before it hands over the next one
+ * or does anything else, so the batches of a file are encoded in order, one at a time.
+ * The encoder threads are shared by all the writers of the process. The pool grows to the
+ * largest WriterOptions#encoderThreads of the writers created so far and never shrinks.
  */
 public class WriterImpl extends org.apache.orc.impl.WriterImpl implements Writer {
 
+  private static ThreadPoolExecutor encoderPool = null;
+
   private final ObjectInspector inspector;
-  private final VectorizedRowBatch internalBatch;
+  private VectorizedRowBatch internalBatch;
   private final StructField[] fields;
 
+  // Only set with encoder threads.
+  private final ExecutorService encoder;
+  private final ConcurrentMemoryManager concurrentMemory;
+  private VectorizedRowBatch encodedBatch;
+  private Future<?> pendingBatch;
+  private int rowsSinceMemoryCheck = 0;
+
   WriterImpl(FileSystem fs,
              Path path,
              OrcFile.WriterOptions opts) throws IOException {
@@ -95,6 +119,29 @@ public class WriterImpl extends org.apache.orc.impl.WriterImpl implements Writer
     this.inspector = opts.getInspector();
     this.internalBatch = opts.getSchema().createRowBatch(opts.getBatchSize());
     this.fields = initializeFieldsFromOi(inspector);
+    if (opts.getEncoderThreads() > 0
+        && opts.getMemoryManager() instanceof ConcurrentMemoryManager) {
+      this.encoder = getEncoderPool(opts.getEncoderThreads());
+      this.concurrentMemory = (ConcurrentMemoryManager) opts.getMemoryManager();
+      this.encodedBatch = opts.getSchema().createRowBatch(opts.getBatchSize());
+    } else {
+      this.encoder = null;
+      this.concurrentMemory = null;
+    }
+  }
+
+  @VisibleForTesting
+  static synchronized ExecutorService getEncoderPool(int threads) {
+    if (encoderPool == null) {
+      encoderPool = new ThreadPoolExecutor(threads, threads, 0L, TimeUnit.MILLISECONDS,
+          new LinkedBlockingQueue<Runnable>(),
+          new ThreadFactoryBuilder().setDaemon(true).setNameFormat("ORC-Encoder #%d").build());
+    } else if (threads > encoderPool.getMaximumPoolSize()) {
+      // The core size cannot exceed the maximum, so raise the maximum first.
+      encoderPool.setMaximumPoolSize(threads);
+      encoderPool.setCorePoolSize(threads);
+    }
+    return encoderPool;
   }
 
   private static StructField[] initializeFieldsFromOi(ObjectInspector inspector) {
@@ -280,8 +327,52 @@ static void setColumn(int rowId, ColumnVector column,
 
   void flushInternalBatch() throws IOException {
     if (internalBatch.size != 0) {
-      super.addRowBatch(internalBatch);
-      internalBatch.reset();
+      if (encoder == null) {
+        super.addRowBatch(internalBatch);
+        internalBatch.reset();
+      } else {
+        waitForEncodedBatch();
+        final VectorizedRowBatch batch = internalBatch;
+        internalBatch = encodedBatch;
+        encodedBatch = batch;
+        pendingBatch = encoder.submit(new Callable<Void>() {
+          @Override
+          public Void call() throws IOException {
+            encodeBatch(batch);
+            return null;
+          }
+        });
+      }
+    }
+  }
+
+  private void encodeBatch(VectorizedRowBatch batch) throws IOException {
+    super.addRowBatch(batch);
+    rowsSinceMemoryCheck += batch.size;
+    batch.reset();
+    if (rowsSinceMemoryCheck >= ConcurrentMemoryManager.ROWS_BETWEEN_CHECKS) {
+      rowsSinceMemoryCheck = 0;
+      checkMemory(concurrentMemory.getAllocationScale());
+    }
+  }
+
+  private void waitForEncodedBatch() throws IOException {
+    if (pendingBatch == null) {
+      return;
+    }
+    try {
+      pendingBatch.get();
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new InterruptedIOException("Interrupted while encoding a batch");
+    } catch (ExecutionException e) {
+      Throwable cause = e.getCause();
+      if (cause instanceof IOException) {
+        throw (IOException) cause;
+      }
+      throw new IOException(cause);
+    } finally {
+      pendingBatch = null;
     }
   }
 
@@ -306,18 +397,41 @@ public void addRow(Object row) throws IOException {
   @Override
   public long writeIntermediateFooter() throws IOException {
     flushInternalBatch();
+    waitForEncodedBatch();
     return super.writeIntermediateFooter();
   }
 
   @Override
   public void addRowBatch(VectorizedRowBatch batch) throws IOException {
     flushInternalBatch();
+    waitForEncodedBatch();
     super.addRowBatch(batch);
   }
 
   @Override
   public void close() throws IOException {
     flushInternalBatch();
+    waitForEncodedBatch();
     super.close();
   }
+
+  @Override
+  public long getRawDataSize() {
+    waitForStatistics();
+    return super.getRawDataSize();
+  }
+
+  @Override
+  public long getNumberOfRows() {
+    waitForStatistics();
+    return super.getNumberOfRows();
+  }
+
+  private void waitForStatistics() {
+    try {
+      waitForEncodedBatch();
+    } catch (IOException e) {
+      throw new RuntimeException(e);
+    }
+  }
 }
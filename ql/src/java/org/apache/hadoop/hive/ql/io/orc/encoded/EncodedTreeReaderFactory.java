@@ -25,6 +25,7 @@
 import org.apache.hadoop.hive.common.io.encoded.EncodedColumnBatch;
 import org.apache.hadoop.hive.common.io.encoded.EncodedColumnBatch.ColumnStreamData;
 import org.apache.hadoop.hive.ql.exec.vector.ColumnVector;
+import org.apache.hadoop.hive.ql.exec.vector.DictionaryBytesColumnVector;
 import org.apache.hadoop.hive.ql.io.orc.encoded.Reader.OrcEncodedColumnBatch;
 import org.apache.orc.CompressionCodec;
 import org.apache.orc.TypeDescription;
@@ -290,6 +291,10 @@ public void nextVector(
         ColumnVector previousVector, boolean[] isNull, int batchSize) throws IOException {
       if (vectors == null) {
         super.nextVector(previousVector, isNull, batchSize);
+        if (_isDictionaryEncoding && previousVector instanceof DictionaryBytesColumnVector) {
+          // The values were set by reference into the dictionary of the stripe.
+          ((DictionaryBytesColumnVector) previousVector).setDictionaryReferences(batchSize);
+        }
         return;
       }
       vectors.get(vectorIndex++).shallowCopyTo(previousVector);
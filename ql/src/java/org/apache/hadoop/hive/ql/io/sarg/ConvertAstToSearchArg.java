@@ -18,8 +18,10 @@
 
 package org.apache.hadoop.hive.ql.io.sarg;
 
+import java.io.IOException;
 import java.sql.Date;
 import java.sql.Timestamp;
+import java.util.ArrayList;
 import java.util.List;
 import java.util.concurrent.ExecutionException;
 
@@ -27,10 +29,13 @@
 import com.google.common.cache.CacheBuilder;
 import org.apache.commons.codec.binary.Base64;
 import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.hive.common.io.NonSyncByteArrayInputStream;
 import org.apache.hadoop.hive.common.type.HiveChar;
 import org.apache.hadoop.hive.common.type.HiveDecimal;
 import org.apache.hadoop.hive.conf.HiveConf;
 import org.apache.hadoop.hive.ql.exec.SerializationUtilities;
+import org.apache.hadoop.hive.ql.plan.DynamicValue;
+import org.apache.hadoop.hive.ql.plan.DynamicValue.NoDynamicValuesException;
 import org.apache.hadoop.hive.ql.plan.ExprNodeColumnDesc;
 import org.apache.hadoop.hive.ql.plan.ExprNodeConstantDesc;
 import org.apache.hadoop.hive.ql.plan.ExprNodeDesc;
@@ -39,6 +44,7 @@
 import org.apache.hadoop.hive.ql.plan.TableScanDesc;
 import org.apache.hadoop.hive.ql.udf.generic.GenericUDFBetween;
 import org.apache.hadoop.hive.ql.udf.generic.GenericUDFIn;
+import org.apache.hadoop.hive.ql.udf.generic.GenericUDFInBloomFilter;
 import org.apache.hadoop.hive.ql.udf.generic.GenericUDFOPAnd;
 import org.apache.hadoop.hive.ql.udf.generic.GenericUDFOPEqual;
 import org.apache.hadoop.hive.ql.udf.generic.GenericUDFOPEqualNS;
@@ -51,10 +57,13 @@
 import org.apache.hadoop.hive.ql.udf.generic.GenericUDFOPNotNull;
 import org.apache.hadoop.hive.ql.udf.generic.GenericUDFOPNull;
 import org.apache.hadoop.hive.ql.udf.generic.GenericUDFOPOr;
+import org.apache.hadoop.hive.serde2.io.DateWritable;
 import org.apache.hadoop.hive.serde2.io.HiveDecimalWritable;
 import org.apache.hadoop.hive.serde2.objectinspector.ObjectInspector;
+import org.apache.hadoop.hive.serde2.objectinspector.primitive.BinaryObjectInspector;
 import org.apache.hadoop.hive.serde2.typeinfo.PrimitiveTypeInfo;
 import org.apache.hadoop.hive.serde2.typeinfo.TypeInfo;
+import org.apache.hive.common.util.BloomKFilter;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -321,6 +330,124 @@ private void createLeaf(PredicateLeaf.Operator operator,
     }
   }
 
+  /**
+   * Create a leaf for a semijoin reduction in_bloom_filter(col, bloom), which comes with a
+   * sibling col BETWEEN min AND max on the same column. There is no search argument for
+   * a bloom filter, so when the runtime values are available here and the range is small
+   * enough, the values of the range that pass the bloom filter become an IN leaf. The readers
+   * then skip the stripes and row groups where none of them match the statistics or the
+   * bloom filters of the file.
+   * @param bloomExpr the in_bloom_filter expression
+   * @param andExpr the AND that has the in_bloom_filter as a child
+   */
+  private void createBloomFilterLeaf(ExprNodeGenericFuncDesc bloomExpr,
+                                     ExprNodeGenericFuncDesc andExpr) {
+    String columnName = getColumnName(bloomExpr, 0);
+    List<ExprNodeDesc> children = bloomExpr.getChildren();
+    int maxValues = HiveConf.getIntVar(conf,
+        HiveConf.ConfVars.TEZ_DYNAMIC_SEMIJOIN_REDUCTION_SARG_MAX_VALUES);
+    if (columnName == null || maxValues <= 0 ||
+        !(children.get(1) instanceof ExprNodeDynamicValueDesc)) {
+      builder.literal(SearchArgument.TruthValue.YES_NO_NULL);
+      return;
+    }
+    PredicateLeaf.Type type = getType(children.get(0));
+    ExprNodeGenericFuncDesc betweenExpr = findDynamicRange(andExpr, columnName);
+    if ((type != PredicateLeaf.Type.LONG && type != PredicateLeaf.Type.DATE) ||
+        betweenExpr == null) {
+      builder.literal(SearchArgument.TruthValue.YES_NO_NULL);
+      return;
+    }
+
+    try {
+      DynamicValue bloomValue = getDynamicValue(children.get(1));
+      Object min = getDynamicValue(betweenExpr.getChildren().get(2)).getJavaValue();
+      Object max = getDynamicValue(betweenExpr.getChildren().get(3)).getJavaValue();
+      if (bloomValue.getValue() == null || min == null || max == null) {
+        builder.literal(SearchArgument.TruthValue.YES_NO_NULL);
+        return;
+      }
+      createBloomFilterLeaf(columnName, type, bloomValue, toLong(min), toLong(max), maxValues);
+    } catch (NoDynamicValuesException e) {
+      // Expected when the splits are generated, before the runtime values are ready.
+      LOG.debug("Dynamic values are not available for the SARG: " + e.getMessage());
+      builder.literal(SearchArgument.TruthValue.YES_NO_NULL);
+    } catch (Exception e) {
+      LOG.warn("Exception thrown during SARG creation. Returning YES_NO_NULL." +
+          " Exception: " + e.getMessage());
+      builder.literal(SearchArgument.TruthValue.YES_NO_NULL);
+    }
+  }
+
+  private void createBloomFilterLeaf(String columnName, PredicateLeaf.Type type,
+                                     DynamicValue bloomValue, long min, long max,
+                                     int maxValues) throws IOException {
+    if (max < min || max - min < 0 || max - min >= maxValues) {
+      builder.literal(SearchArgument.TruthValue.YES_NO_NULL);
+      return;
+    }
+
+    // The keys are hashed the same way as in GenericUDFInBloomFilter.
+    byte[] bytes = ((BinaryObjectInspector) bloomValue.getObjectInspector())
+        .getPrimitiveJavaObject(bloomValue.getValue());
+    BloomKFilter bloomFilter = BloomKFilter.deserialize(new NonSyncByteArrayInputStream(bytes));
+    List<Object> values = new ArrayList<Object>();
+    for (long value = min; value <= max; value++) {
+      if (bloomFilter.testLong(value)) {
+        values.add(type == PredicateLeaf.Type.DATE ?
+            new DateWritable((int) value).get() : (Object) value);
+      }
+      if (value == Long.MAX_VALUE) {
+        break;
+      }
+    }
+    if (values.isEmpty()) {
+      // None of the build side keys is in the range, so no row can pass the filter.
+      builder.literal(SearchArgument.TruthValue.NO);
+    } else {
+      builder.in(columnName, type, values.toArray());
+    }
+  }
+
+  /**
+   * Find the col BETWEEN DynamicValue AND DynamicValue child of the given AND.
+   * @param andExpr the AND to look in
+   * @param columnName the column of the BETWEEN
+   * @return the BETWEEN expression or null if there is none
+   */
+  private static ExprNodeGenericFuncDesc findDynamicRange(ExprNodeGenericFuncDesc andExpr,
+                                                          String columnName) {
+    for(ExprNodeDesc child: andExpr.getChildren()) {
+      if (!(child instanceof ExprNodeGenericFuncDesc) ||
+          ((ExprNodeGenericFuncDesc) child).getGenericUDF().getClass() != GenericUDFBetween.class) {
+        continue;
+      }
+      List<ExprNodeDesc> args = child.getChildren();
+      if (args.size() == 4 &&
+          args.get(0) instanceof ExprNodeConstantDesc &&
+          Boolean.FALSE.equals(((ExprNodeConstantDesc) args.get(0)).getValue()) &&
+          columnName.equals(getColumnName((ExprNodeGenericFuncDesc) child, 1)) &&
+          args.get(2) instanceof ExprNodeDynamicValueDesc &&
+          args.get(3) instanceof ExprNodeDynamicValueDesc) {
+        return (ExprNodeGenericFuncDesc) child;
+      }
+    }
+    return null;
+  }
+
+  private DynamicValue getDynamicValue(ExprNodeDesc expr) {
+    DynamicValue value = ((ExprNodeDynamicValueDesc) expr).getDynamicValue();
+    value.setConf(conf);
+    return value;
+  }
+
+  private static long toLong(Object value) {
+    if (value instanceof Date) {
+      return DateWritable.dateToDays((Date) value);
+    }
+    return ((Number) value).longValue();
+  }
+
   /**
    * Find the variable in the expression.
    * @param expr the expression to look in
@@ -396,7 +523,14 @@ private void parse(ExprNodeDesc expression) {
       builder.end();
     } else if (op == GenericUDFOPAnd.class) {
       builder.startAnd();
-      addChildren(expr);
+      for(ExprNodeDesc child: expr.getChildren()) {
+        if (child instanceof ExprNodeGenericFuncDesc &&
+            ((ExprNodeGenericFuncDesc) child).getGenericUDF() instanceof GenericUDFInBloomFilter) {
+          createBloomFilterLeaf((ExprNodeGenericFuncDesc) child, expr);
+        } else {
+          parse(child);
+        }
+      }
       builder.end();
     } else if (op == GenericUDFOPNot.class) {
       builder.startNot();
@@ -478,15 +612,34 @@ private static SearchArgument getSearchArgumentFromString(Configuration conf, St
 
   private static SearchArgument getSearchArgumentFromExpression(Configuration conf, String sargString) {
 
-    try {
-      return isSargsCacheEnabled(conf)?
-              getSargsCache(conf).get(sargString,
-                                      () -> create(conf, SerializationUtilities.deserializeExpression(sargString)))
-              : create(conf, SerializationUtilities.deserializeExpression(sargString));
+    if (!isSargsCacheEnabled(conf)) {
+      return create(conf, SerializationUtilities.deserializeExpression(sargString));
     }
-    catch (ExecutionException exception) {
-      throw new RuntimeException(exception);
+    Cache<String, SearchArgument> cache = getSargsCache(conf);
+    SearchArgument sarg = cache.getIfPresent(sargString);
+    if (sarg == null) {
+      ExprNodeGenericFuncDesc expression = SerializationUtilities.deserializeExpression(sargString);
+      sarg = create(conf, expression);
+      // The runtime values of a query must not be seen by the next query with the same filter.
+      if (!hasDynamicValues(expression)) {
+        cache.put(sargString, sarg);
+      }
+    }
+    return sarg;
+  }
+
+  private static boolean hasDynamicValues(ExprNodeDesc expression) {
+    if (expression instanceof ExprNodeDynamicValueDesc) {
+      return true;
+    }
+    if (expression.getChildren() != null) {
+      for(ExprNodeDesc child: expression.getChildren()) {
+        if (hasDynamicValues(child)) {
+          return true;
+        }
+      }
     }
+    return false;
   }
 
   public static SearchArgument create(Configuration conf, ExprNodeGenericFuncDesc expression) {
@@ -0,0 +1,267 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.hadoop.hive.ql.optimizer;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+
+import org.apache.hadoop.hive.metastore.TableType;
+import org.apache.hadoop.hive.metastore.api.hive_metastoreConstants;
+import org.apache.hadoop.hive.ql.exec.AppMasterEventOperator;
+import org.apache.hadoop.hive.ql.exec.FunctionRegistry;
+import org.apache.hadoop.hive.ql.exec.MapJoinOperator;
+import org.apache.hadoop.hive.ql.exec.Operator;
+import org.apache.hadoop.hive.ql.exec.OperatorUtils;
+import org.apache.hadoop.hive.ql.exec.TableScanOperator;
+import org.apache.hadoop.hive.ql.io.AcidUtils;
+import org.apache.hadoop.hive.ql.metadata.Partition;
+import org.apache.hadoop.hive.ql.metadata.Table;
+import org.apache.hadoop.hive.ql.parse.ParseContext;
+import org.apache.hadoop.hive.ql.parse.PrunedPartitionList;
+import org.apache.hadoop.hive.ql.parse.SemanticException;
+import org.apache.hadoop.hive.ql.plan.DynamicPruningEventDesc;
+import org.apache.hadoop.hive.ql.plan.ExprNodeDesc;
+import org.apache.hadoop.hive.ql.plan.ExprNodeDynamicListDesc;
+import org.apache.hadoop.hive.ql.plan.ExprNodeDynamicValueDesc;
+import org.apache.hadoop.hive.ql.plan.ExprNodeGenericFuncDesc;
+import org.apache.hadoop.hive.ql.plan.FilterDesc;
+import org.apache.hadoop.hive.ql.plan.MapJoinDesc;
+import org.apache.hadoop.hive.ql.plan.ReduceSinkDesc;
+import org.apache.hadoop.hive.ql.plan.SelectDesc;
+import org.apache.hadoop.hive.ql.plan.TableDesc;
+import org.apache.hadoop.hive.ql.plan.TableScanDesc;
+
+/**
+ * Sets the small table signature of the map joins whose hash tables LLAP daemons can share
+ * across queries (see SharedMapJoinTableCache).
+ *
+ * The signature describes each small table input from its table scan to its reduce sink, and how
+ * the map join builds the hash tables from the rows. It is only set when the small table inputs
+ * only scan, filter, project and shuffle managed, non-transactional tables with deterministic
+ * built-in functions: then the rows only change with the files of the scanned table or partitions,
+ * whose locations are set with the signature (the DDL times in the signature only identify their
+ * metadata; a truncate or an insert keeps them). The transactional tables are not shared since the
+ * rows read from the same files depend on the transactions of the query. The scans pruned by
+ * dynamic partition pruning read partitions that depend on the other inputs, so they are not
+ * shared either.
+ */
+public class SharedMapJoinTableSignature extends Transform {
+
+  @Override
+  public ParseContext transform(ParseContext pctx) throws SemanticException {
+    Collection<Operator<?>> topOps = new ArrayList<Operator<?>>(pctx.getTopOps().values());
+    Set<TableScanOperator> prunedScans = new HashSet<TableScanOperator>();
+    for (AppMasterEventOperator event
+        : OperatorUtils.findOperators(topOps, AppMasterEventOperator.class)) {
+      if (event.getConf() instanceof DynamicPruningEventDesc) {
+        prunedScans.add(((DynamicPruningEventDesc) event.getConf()).getTableScan());
+      }
+    }
+    for (MapJoinOperator mapJoin : OperatorUtils.findOperators(topOps, MapJoinOperator.class)) {
+      MapJoinDesc desc = mapJoin.getConf();
+      if (desc.isBucketMapJoin() || desc.isDynamicPartitionHashJoin()) {
+        continue;
+      }
+      List<String> locations = new ArrayList<String>();
+      String signature = getSignature(pctx, prunedScans, mapJoin, locations);
+      desc.setSmallTableSignature(signature);
+      desc.setSmallTableLocations(signature == null ? null : locations);
+    }
+    return pctx;
+  }
+
+  private static String getSignature(ParseContext pctx, Set<TableScanOperator> prunedScans,
+      MapJoinOperator mapJoin, List<String> locations) throws SemanticException {
+    MapJoinDesc desc = mapJoin.getConf();
+    List<Operator<?>> parents = mapJoin.getParentOperators();
+    StringBuilder sb = new StringBuilder();
+    sb.append("big table ").append(desc.getPosBigTable()).append(" of ").append(parents.size());
+    for (int pos = 0; pos < parents.size(); pos++) {
+      if (pos == desc.getPosBigTable()) {
+        continue;
+      }
+      Byte tag = (byte) pos;
+      sb.append("; input ").append(pos).append(':');
+      if (!appendInput(pctx, prunedScans, parents.get(pos), sb, locations)
+          || !appendExprs("keys", desc.getKeys().get(tag), sb)
+          || !appendExprs("values", desc.getExprs().get(tag), sb)
+          || !appendExprs("filters", desc.getFilters().get(tag), sb)) {
+        return null;
+      }
+      appendTableDesc("value table", desc.getValueTblDescs().get(pos), sb);
+      if (desc.getValueFilteredTblDescs() != null) {
+        appendTableDesc("filtered value table", desc.getValueFilteredTblDescs().get(pos), sb);
+      }
+    }
+    appendTableDesc("; key table", desc.getKeyTblDesc(), sb);
+    sb.append(" filter map ").append(Arrays.deepToString(desc.getFilterMap()));
+    sb.append(" null safes ").append(Arrays.toString(desc.getNullSafes()));
+    sb.append(" no outer join ").append(desc.isNoOuterJoin());
+    return sb.toString();
+  }
+
+  /**
+   * Appends the operators from the reduce sink of a small table up to its table scan, and adds
+   * the locations that the table scan reads.
+   * @return false when the input is not supported
+   */
+  private static boolean appendInput(ParseContext pctx, Set<TableScanOperator> prunedScans,
+      Operator<?> op, StringBuilder sb, List<String> locations) throws SemanticException {
+    while (true) {
+      sb.append(' ').append(op.getType()).append('(');
+      switch (op.getType()) {
+      case REDUCESINK:
+        ReduceSinkDesc rsDesc = (ReduceSinkDesc) op.getConf();
+        if (rsDesc.getTopN() >= 0) {
+          return false;
+        }
+        if (!appendExprs("keys", rsDesc.getKeyCols(), sb)
+            || !appendExprs("values", rsDesc.getValueCols(), sb)) {
+          return false;
+        }
+        appendTableDesc("key", rsDesc.getKeySerializeInfo(), sb);
+        appendTableDesc("value", rsDesc.getValueSerializeInfo(), sb);
+        break;
+      case FILTER:
+        if (!appendExpr(((FilterDesc) op.getConf()).getPredicate(), sb)) {
+          return false;
+        }
+        break;
+      case SELECT:
+        SelectDesc selDesc = (SelectDesc) op.getConf();
+        if (selDesc.isSelStarNoCompute()) {
+          sb.append('*');
+        } else if (!appendExprs("columns", selDesc.getColList(), sb)) {
+          return false;
+        }
+        sb.append(selDesc.getOutputColumnNames());
+        break;
+      case TABLESCAN:
+        if (prunedScans.contains(op)) {
+          return false;
+        }
+        return appendTableScan(pctx, (TableScanOperator) op, sb, locations);
+      default:
+        return false;
+      }
+      sb.append(')');
+      if (op.getNumParent() != 1) {
+        return false;
+      }
+      op = op.getParentOperators().get(0);
+    }
+  }
+
+  private static boolean appendTableScan(ParseContext pctx, TableScanOperator ts,
+      StringBuilder sb, List<String> locations) throws SemanticException {
+    TableScanDesc tsDesc = ts.getConf();
+    Table table = tsDesc.getTableMetadata();
+    // The files of external, non-native and transactional tables change without a DDL time.
+    if (table == null || table.isTemporary() || table.isNonNative()
+        || table.getTableType() != TableType.MANAGED_TABLE
+        || AcidUtils.isTransactionalTable(table)) {
+      return false;
+    }
+    sb.append(table.getFullyQualifiedName());
+    sb.append(" columns ").append(tsDesc.getNeededColumnIDs());
+    sb.append(" limit ").append(tsDesc.getRowLimit());
+    if (tsDesc.getFilterExpr() != null && !appendExpr(tsDesc.getFilterExpr(), sb)) {
+      return false;
+    }
+    Map<String, String> ddlTimes = new TreeMap<String, String>();
+    if (table.isPartitioned()) {
+      PrunedPartitionList partitions = pctx.getPrunedPartitions(ts);
+      for (Partition partition : partitions.getPartitions()) {
+        ddlTimes.put(partition.getName(),
+            partition.getParameters().get(hive_metastoreConstants.DDL_TIME));
+        locations.add(partition.getLocation());
+      }
+    } else {
+      ddlTimes.put("", table.getParameters().get(hive_metastoreConstants.DDL_TIME));
+      locations.add(table.getDataLocation() == null ? null : table.getDataLocation().toString());
+    }
+    if (ddlTimes.containsValue(null) || locations.contains(null)) {
+      return false;
+    }
+    sb.append(" ddl times ").append(ddlTimes).append(')');
+    return true;
+  }
+
+  private static boolean appendExprs(String name, List<ExprNodeDesc> exprs, StringBuilder sb) {
+    sb.append(' ').append(name).append(" [");
+    if (exprs != null) {
+      for (ExprNodeDesc expr : exprs) {
+        if (!appendExpr(expr, sb)) {
+          return false;
+        }
+        sb.append(", ");
+      }
+    }
+    sb.append(']');
+    return true;
+  }
+
+  private static boolean appendExpr(ExprNodeDesc expr, StringBuilder sb) {
+    if (!isDeterministic(expr)) {
+      return false;
+    }
+    sb.append(expr.getExprString()).append(':').append(expr.getTypeString());
+    return true;
+  }
+
+  /**
+   * @return Whether the expression gives the same values in all the queries; the dynamic values
+   *         of semijoin reduction and dynamic partition pruning come from the other inputs.
+   */
+  private static boolean isDeterministic(ExprNodeDesc expr) {
+    if (expr instanceof ExprNodeDynamicValueDesc || expr instanceof ExprNodeDynamicListDesc) {
+      return false;
+    }
+    if (expr instanceof ExprNodeGenericFuncDesc) {
+      ExprNodeGenericFuncDesc funcDesc = (ExprNodeGenericFuncDesc) expr;
+      if (!FunctionRegistry.isBuiltInFuncExpr(funcDesc)
+          || !FunctionRegistry.isDeterministic(funcDesc.getGenericUDF())
+          || FunctionRegistry.isRuntimeConstant(funcDesc.getGenericUDF())) {
+        return false;
+      }
+    }
+    if (expr.getChildren() != null) {
+      for (ExprNodeDesc child : expr.getChildren()) {
+        if (!isDeterministic(child)) {
+          return false;
+        }
+      }
+    }
+    return true;
+  }
+
+  private static void appendTableDesc(String name, TableDesc tableDesc, StringBuilder sb) {
+    sb.append(' ').append(name).append(' ');
+    if (tableDesc != null) {
+      sb.append(tableDesc.getSerdeClassName()).append(
+          new TreeMap<Object, Object>(tableDesc.getProperties()));
+    }
+  }
+}
@@ -68,6 +68,7 @@
 import org.apache.hadoop.hive.ql.exec.vector.mapjoin.VectorMapJoinOuterLongOperator;
 import org.apache.hadoop.hive.ql.exec.vector.mapjoin.VectorMapJoinOuterMultiKeyOperator;
 import org.apache.hadoop.hive.ql.exec.vector.mapjoin.VectorMapJoinOuterStringOperator;
+import org.apache.hadoop.hive.ql.exec.vector.ptf.VectorPTFEvaluatorSlidingBase;
 import org.apache.hadoop.hive.ql.exec.vector.ptf.VectorPTFOperator;
 import org.apache.hadoop.hive.ql.exec.vector.reducesink.VectorReduceSinkEmptyKeyOperator;
 import org.apache.hadoop.hive.ql.exec.vector.reducesink.VectorReduceSinkLongOperator;
@@ -98,6 +99,7 @@
 import org.apache.hadoop.hive.ql.exec.vector.expressions.IdentityExpression;
 import org.apache.hadoop.hive.ql.exec.vector.expressions.VectorExpression;
 import org.apache.hadoop.hive.ql.exec.vector.expressions.aggregates.VectorAggregateExpression;
+import org.apache.hadoop.hive.ql.exec.vector.expressions.aggregates.VectorUDAFCollect;
 import org.apache.hadoop.hive.ql.io.orc.OrcInputFormat;
 import org.apache.hadoop.hive.ql.exec.vector.VectorizedRowBatchCtx;
 import org.apache.hadoop.hive.ql.lib.DefaultGraphWalker;
@@ -122,6 +124,7 @@
 import org.apache.hadoop.hive.ql.plan.BaseWork;
 import org.apache.hadoop.hive.ql.plan.Explain;
 import org.apache.hadoop.hive.ql.plan.ExprNodeColumnDesc;
+import org.apache.hadoop.hive.ql.plan.ExprNodeConstantDesc;
 import org.apache.hadoop.hive.ql.plan.ExprNodeDesc;
 import org.apache.hadoop.hive.ql.plan.ExprNodeDesc.ExprNodeDescEqualityWrapper;
 import org.apache.hadoop.hive.ql.plan.ExprNodeGenericFuncDesc;
@@ -241,6 +244,7 @@
 import org.apache.hadoop.hive.serde2.objectinspector.StructField;
 import org.apache.hadoop.hive.serde2.objectinspector.StructObjectInspector;
 import org.apache.hadoop.hive.serde2.typeinfo.DecimalTypeInfo;
+import org.apache.hadoop.hive.serde2.typeinfo.ListTypeInfo;
 import org.apache.hadoop.hive.serde2.typeinfo.PrimitiveTypeInfo;
 import org.apache.hadoop.hive.serde2.typeinfo.StructTypeInfo;
 import org.apache.hadoop.hive.serde2.typeinfo.TypeInfo;
@@ -514,6 +518,10 @@ public Vectorizer() {
     supportedAggregationUdfs.add("stddev_pop");
     supportedAggregationUdfs.add("stddev_samp");
     supportedAggregationUdfs.add("bloom_filter");
+    supportedAggregationUdfs.add("collect_set");
+    supportedAggregationUdfs.add("collect_list");
+    supportedAggregationUdfs.add("percentile_approx");
+    supportedAggregationUdfs.add("compute_stats");
   }
 
   private class VectorTaskColumnInfo {
@@ -2377,6 +2385,72 @@ private boolean containsLeadLag(List<ExprNodeDesc> exprNodeDescList) {
     return false;
   }
 
+  /*
+   * The sliding evaluators keep the rows of the partition across batches, so the batches must come
+   * from the reduce shuffle, one key at a time, with the last batch of each key flagged.  Only the
+   * Select operator passes that status on (e.g. not a Group By in the same reducer).
+   */
+  private boolean isReduceShuffleInput(Operator<? extends OperatorDesc> op) {
+    List<Operator<? extends OperatorDesc>> parentOperators = op.getParentOperators();
+    while (parentOperators != null && !parentOperators.isEmpty()) {
+      if (parentOperators.size() != 1 || !(parentOperators.get(0) instanceof SelectOperator)) {
+        return false;
+      }
+      parentOperators = parentOperators.get(0).getParentOperators();
+    }
+    return true;
+  }
+
+  /*
+   * A sliding frame has a bounded start, or a ROWS end before UNBOUNDED FOLLOWING.  The
+   * MIN/MAX/SUM/AVG/COUNT sliding evaluators support PRECEDING and CURRENT ROW bounds; RANGE
+   * frames are over a single integer family ORDER BY key.
+   */
+  private boolean validatePTFSlidingFrame(PTFOperator op, String functionName,
+      SupportedFunctionType supportedFunctionType, WindowFrameDef windowFrameDef,
+      ExprNodeDesc[] orderExprNodeDescs) {
+    if (!VectorPTFDesc.isSlidingFunction(supportedFunctionType)) {
+      setOperatorIssue(functionName + " only UNBOUNDED start frame is supported");
+      return false;
+    }
+    if (!isReduceShuffleInput(op)) {
+      setOperatorIssue(functionName + " sliding frame " + windowFrameDef +
+          " only supported when the PTF input comes directly from the reduce shuffle");
+      return false;
+    }
+    if (!VectorPTFEvaluatorSlidingBase.isSupportedSlidingFrame(windowFrameDef)) {
+      setOperatorIssue(functionName + " sliding frame " + windowFrameDef +
+          " is not supported (only PRECEDING and CURRENT ROW boundaries)");
+      return false;
+    }
+    if (windowFrameDef.getWindowType() == WindowType.RANGE) {
+      if (orderExprNodeDescs.length != 1) {
+        setOperatorIssue(functionName + " sliding RANGE frame only supported with 1 ORDER BY key");
+        return false;
+      }
+      TypeInfo typeInfo = orderExprNodeDescs[0].getTypeInfo();
+      boolean isIntegerFamily = false;
+      if (typeInfo.getCategory() == Category.PRIMITIVE) {
+        switch (((PrimitiveTypeInfo) typeInfo).getPrimitiveCategory()) {
+        case BYTE:
+        case SHORT:
+        case INT:
+        case LONG:
+          isIntegerFamily = true;
+          break;
+        default:
+          break;
+        }
+      }
+      if (!isIntegerFamily) {
+        setOperatorIssue(functionName + " sliding RANGE frame ORDER BY key type " +
+            typeInfo.getTypeName() + " not supported (only integer types)");
+        return false;
+      }
+    }
+    return true;
+  }
+
   private boolean validatePTFOperator(PTFOperator op, VectorizationContext vContext,
       VectorPTFDesc vectorPTFDesc)
       throws HiveException {
@@ -2448,25 +2522,28 @@ private boolean validatePTFOperator(PTFOperator op, VectorizationContext vContex
         return false;
       }
       WindowFrameDef windowFrameDef = evaluatorWindowFrameDefs[i];
-      if (!windowFrameDef.isStartUnbounded()) {
-        setOperatorIssue(functionName + " only UNBOUNDED start frame is supported");
-        return false;
-      }
-      switch (windowFrameDef.getWindowType()) {
-      case RANGE:
-        if (!windowFrameDef.getEnd().isCurrentRow()) {
-          setOperatorIssue(functionName + " only CURRENT ROW end frame is supported for RANGE");
+      if (VectorPTFEvaluatorSlidingBase.isSlidingFrame(windowFrameDef)) {
+        if (!validatePTFSlidingFrame(op, functionName, supportedFunctionType, windowFrameDef,
+            vectorPTFDesc.getOrderExprNodeDescs())) {
           return false;
         }
-        break;
-      case ROWS:
-        if (!windowFrameDef.isEndUnbounded()) {
-          setOperatorIssue(functionName + " UNBOUNDED end frame is not supported for ROWS window type");
-          return false;
+      } else {
+        switch (windowFrameDef.getWindowType()) {
+        case RANGE:
+          if (!windowFrameDef.getEnd().isCurrentRow()) {
+            setOperatorIssue(functionName + " only CURRENT ROW end frame is supported for RANGE");
+            return false;
+          }
+          break;
+        case ROWS:
+          if (!windowFrameDef.isEndUnbounded()) {
+            setOperatorIssue(functionName + " UNBOUNDED end frame is not supported for ROWS window type");
+            return false;
+          }
+          break;
+        default:
+          throw new RuntimeException("Unexpected window type " + windowFrameDef.getWindowType());
         }
-        break;
-      default:
-        throw new RuntimeException("Unexpected window type " + windowFrameDef.getWindowType());
       }
       List<ExprNodeDesc> exprNodeDescList = evaluatorInputExprNodeDescLists[i];
       if (exprNodeDescList != null && exprNodeDescList.size() > 1) {
@@ -3362,15 +3439,6 @@ private boolean canSpecializeMapJoin(Operator<? extends OperatorDesc> op, MapJoi
       if (!supportsKeyTypes) {
         result = false;
       }
-
-    } else {
-
-      // With the fast hash table implementation, we currently do not support
-      // Hybrid Grace Hash Join.
-
-      if (isHybridHashJoin) {
-        result = false;
-      }
     }
 
     // Convert dynamic arrays and maps to simple arrays.
@@ -3771,6 +3839,23 @@ private static Class<? extends VectorAggregateExpression> findVecAggrClass(
     return null;
   }
 
+  /*
+   * The percentile_approx and compute_stats vector aggregations aggregate their first parameter;
+   * the others (quantiles, number of bins, estimator parameters) must be constants.
+   */
+  private static boolean hasOnlyConstantExtraParameters(String aggregateName,
+      List<ExprNodeDesc> parameterList) {
+    if (!aggregateName.equals("percentile_approx") && !aggregateName.equals("compute_stats")) {
+      return false;
+    }
+    for (int i = 1; i < parameterList.size(); i++) {
+      if (!(parameterList.get(i) instanceof ExprNodeConstantDesc)) {
+        return false;
+      }
+    }
+    return true;
+  }
+
   private static ImmutablePair<VectorAggregationDesc,String> getVectorAggregationDesc(
       AggregationDesc aggrDesc, VectorizationContext vContext) throws HiveException {
 
@@ -3787,9 +3872,18 @@ private static ImmutablePair<VectorAggregationDesc,String> getVectorAggregationD
     ArrayList<ExprNodeDesc> parameters = aggrDesc.getParameters();
     ObjectInspector[] parameterObjectInspectors = new ObjectInspector[parameterCount];
     for (int i = 0; i < parameterCount; i++) {
-      TypeInfo typeInfo = parameters.get(i).getTypeInfo();
-      parameterObjectInspectors[i] = TypeInfoUtils
-          .getStandardWritableObjectInspectorFromTypeInfo(typeInfo);
+      ExprNodeDesc parameter = parameters.get(i);
+      if (i > 0 && parameter instanceof ExprNodeConstantDesc) {
+
+        // Evaluators like percentile_approx require constant object inspectors for their
+        // constant parameters.
+        parameterObjectInspectors[i] =
+            ((ExprNodeConstantDesc) parameter).getWritableObjectInspector();
+      } else {
+        TypeInfo typeInfo = parameter.getTypeInfo();
+        parameterObjectInspectors[i] = TypeInfoUtils
+            .getStandardWritableObjectInspectorFromTypeInfo(typeInfo);
+      }
     }
 
     // The only way to get the return object inspector (and its return type) is to
@@ -3816,6 +3910,17 @@ private static ImmutablePair<VectorAggregationDesc,String> getVectorAggregationD
     ColumnVector.Type outputColVectorType =
         VectorizationContext.getColumnVectorTypeFromTypeInfo(outputTypeInfo);
 
+    if (aggregateName.equals("collect_set") || aggregateName.equals("collect_list")) {
+      TypeInfo elementTypeInfo = ((ListTypeInfo) outputTypeInfo).getListElementTypeInfo();
+      if (elementTypeInfo.getCategory() != Category.PRIMITIVE ||
+          !VectorUDAFCollect.isSupportedElementType(
+              VectorizationContext.getColumnVectorTypeFromTypeInfo(elementTypeInfo))) {
+        String issue = "Vector aggregation : \"" + aggregateName + "\" " +
+            "for element type " + elementTypeInfo.getTypeName() + " not supported";
+        return new ImmutablePair<VectorAggregationDesc,String>(null, issue);
+      }
+    }
+
     /*
      * Determine input type info.
      */
@@ -3832,7 +3937,8 @@ private static ImmutablePair<VectorAggregationDesc,String> getVectorAggregationD
       inputColVectorType = null;
       inputExpression = null;
 
-    } else if (parameterCount == 1) {
+    } else if (parameterCount == 1 ||
+        hasOnlyConstantExtraParameters(aggregateName, parameterList)) {
 
       ExprNodeDesc exprNodeDesc = parameterList.get(0);
       inputTypeInfo = exprNodeDesc.getTypeInfo();
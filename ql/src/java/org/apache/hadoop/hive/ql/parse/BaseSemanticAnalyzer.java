@@ -55,6 +55,7 @@
 import org.apache.hadoop.hive.ql.ErrorMsg;
 import org.apache.hadoop.hive.ql.QueryProperties;
 import org.apache.hadoop.hive.ql.QueryState;
+import org.apache.hadoop.hive.ql.cache.results.CacheUsage;
 import org.apache.hadoop.hive.ql.exec.FetchTask;
 import org.apache.hadoop.hive.ql.exec.Task;
 import org.apache.hadoop.hive.ql.exec.TaskFactory;
@@ -159,6 +160,11 @@ public abstract class BaseSemanticAnalyzer {
    */
   private Boolean autoCommitValue;
 
+  /**
+   * How the query uses the query results cache, or null if it does not.
+   */
+  protected CacheUsage cacheUsage;
+
   public Boolean getAutoCommitValue() {
     return autoCommitValue;
   }
@@ -1400,6 +1406,10 @@ public void setColumnAccessInfo(ColumnAccessInfo columnAccessInfo) {
     this.columnAccessInfo = columnAccessInfo;
   }
 
+  public CacheUsage getCacheUsage() {
+    return cacheUsage;
+  }
+
   public ColumnAccessInfo getUpdateColumnAccessInfo() {
     return updateColumnAccessInfo;
   }
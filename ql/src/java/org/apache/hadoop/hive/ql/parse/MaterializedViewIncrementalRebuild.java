@@ -0,0 +1,458 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.hadoop.hive.ql.parse;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.antlr.runtime.TokenRewriteStream;
+import org.apache.hadoop.fs.Path;
+import org.apache.hadoop.hive.common.ValidReadTxnList;
+import org.apache.hadoop.hive.common.ValidTxnList;
+import org.apache.hadoop.hive.conf.HiveConf;
+import org.apache.hadoop.hive.metastore.api.BasicTxnInfo;
+import org.apache.hadoop.hive.metastore.api.FieldSchema;
+import org.apache.hadoop.hive.ql.Context;
+import org.apache.hadoop.hive.ql.io.AcidUtils;
+import org.apache.hadoop.hive.ql.metadata.Hive;
+import org.apache.hadoop.hive.ql.metadata.HiveUtils;
+import org.apache.hadoop.hive.ql.metadata.Partition;
+import org.apache.hadoop.hive.ql.metadata.Table;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Rewrites the query of a materialized view rebuild so that it only aggregates the rows that were
+ * added to the source tables since the last rebuild, and merges them into the rows of the
+ * materialized view.
+ *
+ * The materialized view query must group the rows of transactional tables joined with inner joins,
+ * select all its grouping expressions, and only aggregate them with sum, count, min and max. A
+ * single source table must have changed since the last rebuild, and only with new rows: its
+ * delete deltas and bases are checked against the transactions that the last rebuild read, which
+ * are kept in the materialized view parameters. The new rows are the rows of the transactions
+ * that the last rebuild did not read; the rebuild query aggregates them, then merges the
+ * aggregates with the rows of the materialized view by aggregating both again:
+ *
+ * <pre>
+ * SELECT keys, SUM(s), SUM(c), MIN(m), MAX(m')
+ * FROM (SELECT * FROM mv UNION ALL SELECT * FROM (view query of the new rows) d) m
+ * GROUP BY keys
+ * </pre>
+ *
+ * All the source tables are read with the transactions that were committed when the query was
+ * compiled, which the rebuild records for the next one (see CreateViewDesc#getValidTxnList).
+ */
+public final class MaterializedViewIncrementalRebuild {
+
+  private static final Logger LOG =
+      LoggerFactory.getLogger(MaterializedViewIncrementalRebuild.class.getName());
+
+  /**
+   * The parameter of a materialized view with the transactions that its last rebuild read.
+   */
+  public static final String VALID_TXNS = "materializedview.valid.txns";
+
+  private final String queryText;
+  private final String validTxnList;
+
+  private MaterializedViewIncrementalRebuild(String queryText, String validTxnList) {
+    this.queryText = queryText;
+    this.validTxnList = validTxnList;
+  }
+
+  /**
+   * @return The query of the incremental rebuild.
+   */
+  public String getQueryText() {
+    return queryText;
+  }
+
+  /**
+   * @return The transactions that the incremental rebuild reads.
+   */
+  public String getValidTxnList() {
+    return validTxnList;
+  }
+
+  /**
+   * @param mv The materialized view to rebuild.
+   * @return The incremental rebuild, or null when the materialized view has to be fully rebuilt.
+   */
+  public static MaterializedViewIncrementalRebuild create(Hive db, HiveConf conf, Table mv)
+      throws SemanticException {
+    if (!conf.getBoolVar(HiveConf.ConfVars.HIVE_MATERIALIZED_VIEW_REBUILD_INCREMENTAL)) {
+      return null;
+    }
+    String lastTxnString = mv.getProperty(VALID_TXNS);
+    Map<String, BasicTxnInfo> creationMetadata = mv.getCreationMetadata();
+    if (lastTxnString == null || creationMetadata == null || creationMetadata.isEmpty()
+        || !mv.getPartCols().isEmpty()) {
+      return null;
+    }
+    try {
+      Context ctx = new Context(conf);
+      ASTNode query = ParseUtils.parse(mv.getViewExpandedText(), ctx);
+      Rewriter rewriter = new Rewriter(db, conf, mv, ctx.getTokenRewriteStream(),
+          new ValidReadTxnList(lastTxnString));
+      String queryText = rewriter.rewrite(query);
+      if (queryText == null) {
+        return null;
+      }
+      LOG.info("Rebuilding materialized view {} incrementally from the new rows of {}",
+          mv.getFullyQualifiedName(), rewriter.changedTable);
+      return new MaterializedViewIncrementalRebuild(queryText, rewriter.txnList.toString());
+    } catch (SemanticException e) {
+      throw e;
+    } catch (Exception e) {
+      throw new SemanticException(e);
+    }
+  }
+
+  private static final class Rewriter {
+    private final Hive db;
+    private final HiveConf conf;
+    private final Table mv;
+    private final TokenRewriteStream stream;
+    private final ValidTxnList lastTxnList;
+    // From the alias to the fully qualified name of the source tables.
+    private final Map<String, String> tables = new LinkedHashMap<String, String>();
+    private ValidTxnList txnList;
+    private String changedTable;
+
+    Rewriter(Hive db, HiveConf conf, Table mv, TokenRewriteStream stream,
+        ValidTxnList lastTxnList) {
+      this.db = db;
+      this.conf = conf;
+      this.mv = mv;
+      this.stream = stream;
+      this.lastTxnList = lastTxnList;
+    }
+
+    String rewrite(ASTNode query) throws Exception {
+      if (query.getType() != HiveParser.TOK_QUERY || query.getChildCount() != 2
+          || query.getChild(0).getType() != HiveParser.TOK_FROM
+          || query.getChild(1).getType() != HiveParser.TOK_INSERT
+          || !addTables((ASTNode) query.getChild(0).getChild(0))) {
+        return null;
+      }
+      ASTNode insert = (ASTNode) query.getChild(1);
+      ASTNode select = null;
+      ASTNode where = null;
+      ASTNode groupBy = null;
+      for (int i = 0; i < insert.getChildCount(); i++) {
+        ASTNode child = (ASTNode) insert.getChild(i);
+        switch (child.getType()) {
+        case HiveParser.TOK_DESTINATION:
+          break;
+        case HiveParser.TOK_SELECT:
+          select = child;
+          break;
+        case HiveParser.TOK_WHERE:
+          where = child;
+          break;
+        case HiveParser.TOK_GROUPBY:
+          groupBy = child;
+          break;
+        default:
+          return null;
+        }
+      }
+      if (select == null || groupBy == null
+          || containsType(query, HiveParser.TOK_SUBQUERY_EXPR, HiveParser.TOK_WINDOWSPEC,
+              HiveParser.TOK_WINDOWRANGE, HiveParser.TOK_WINDOWVALUES, HiveParser.TOK_FUNCTIONDI,
+              HiveParser.TOK_ALLCOLREF, HiveParser.TOK_LATERAL_VIEW)) {
+        return null;
+      }
+
+      // Each column of the view is a grouping expression or an aggregate that can be merged.
+      List<FieldSchema> cols = mv.getCols();
+      if (select.getChildCount() != cols.size()) {
+        return null;
+      }
+      List<String> keys = new ArrayList<String>();
+      List<String> selectExprs = new ArrayList<String>();
+      boolean[] isGroupingExpr = new boolean[groupBy.getChildCount()];
+      for (int i = 0; i < select.getChildCount(); i++) {
+        ASTNode selExpr = (ASTNode) select.getChild(i);
+        ASTNode expr = (ASTNode) selExpr.getChild(0);
+        String col = HiveUtils.unparseIdentifier(cols.get(i).getName(), conf);
+        String rollup = getRollupFunction(expr);
+        if (rollup != null) {
+          // The merged aggregate keeps the type of the column, e.g. the precision of a sum.
+          selectExprs.add("CAST(" + rollup + "(" + col + ") AS " + cols.get(i).getType() + ")");
+        } else {
+          int groupingExpr = indexOf(groupBy, expr);
+          if (groupingExpr < 0) {
+            return null;
+          }
+          isGroupingExpr[groupingExpr] = true;
+          keys.add(col);
+          selectExprs.add(col);
+        }
+        // The new rows get the names of the columns of the view.
+        if (selExpr.getChildCount() == 2) {
+          stream.replace(selExpr.getChild(1).getTokenStartIndex(),
+              selExpr.getChild(1).getTokenStopIndex(), col);
+        } else if (selExpr.getChildCount() == 1) {
+          stream.insertAfter(expr.getTokenStopIndex(), " AS " + col);
+        } else {
+          return null;
+        }
+      }
+      for (boolean b : isGroupingExpr) {
+        if (!b) {
+          return null;
+        }
+      }
+
+      if (!findChangedTable()) {
+        return null;
+      }
+      String predicate = getNewRowsPredicate();
+      if (where != null) {
+        ASTNode condition = (ASTNode) where.getChild(0);
+        stream.insertBefore(condition.getTokenStartIndex(), "(");
+        stream.insertAfter(condition.getTokenStopIndex(), ") AND " + predicate);
+      } else {
+        stream.insertAfter(query.getChild(0).getTokenStopIndex(), " WHERE " + predicate);
+      }
+
+      StringBuilder cols1 = new StringBuilder();
+      for (FieldSchema col : cols) {
+        if (cols1.length() > 0) {
+          cols1.append(", ");
+        }
+        cols1.append(HiveUtils.unparseIdentifier(col.getName(), conf));
+      }
+      StringBuilder sb = new StringBuilder("SELECT ");
+      join(sb, selectExprs);
+      sb.append(" FROM (SELECT ").append(cols1).append(" FROM ")
+          .append(HiveUtils.unparseIdentifier(mv.getDbName(), conf)).append('.')
+          .append(HiveUtils.unparseIdentifier(mv.getTableName(), conf))
+          .append(" UNION ALL SELECT ").append(cols1).append(" FROM (")
+          .append(stream.toString()).append(") `_new_rows`) `_merged_rows` GROUP BY ");
+      join(sb, keys);
+      return sb.toString();
+    }
+
+    /**
+     * Adds the tables joined with inner joins, which must all be distinct full ACID tables.
+     */
+    private boolean addTables(ASTNode node) throws Exception {
+      switch (node.getType()) {
+      case HiveParser.TOK_JOIN:
+        return addTables((ASTNode) node.getChild(0)) && addTables((ASTNode) node.getChild(1));
+      case HiveParser.TOK_TABREF:
+        String name = BaseSemanticAnalyzer.getUnescapedName(
+            (ASTNode) node.getChild(0), mv.getDbName()).toLowerCase();
+        String alias;
+        if (node.getChildCount() == 1) {
+          alias = name.substring(name.indexOf('.') + 1);
+        } else if (node.getChildCount() == 2
+            && node.getChild(1).getType() == HiveParser.Identifier) {
+          alias = BaseSemanticAnalyzer.unescapeIdentifier(node.getChild(1).getText()).toLowerCase();
+        } else {
+          return false;
+        }
+        if (tables.containsKey(alias) || tables.containsValue(name)) {
+          return false;
+        }
+        Table table = db.getTable(name, false);
+        if (table == null || !AcidUtils.isAcidTable(table)) {
+          return false;
+        }
+        tables.put(alias, name);
+        return true;
+      default:
+        return false;
+      }
+    }
+
+    /**
+     * Finds the only source table that changed since the last rebuild, and checks that it only
+     * got new rows.
+     */
+    private boolean findChangedTable() throws Exception {
+      txnList = db.getMSC().getValidTxns();
+      List<String> dbNames = new ArrayList<String>();
+      List<String> tableNames = new ArrayList<String>();
+      for (String name : tables.values()) {
+        String[] names = name.split("\\.");
+        dbNames.add(names[0]);
+        tableNames.add(names[1]);
+      }
+      List<BasicTxnInfo> lastTxns =
+          db.getMSC().getLastCompletedTransactionForTables(dbNames, tableNames, txnList);
+      int i = 0;
+      for (String name : tables.values()) {
+        BasicTxnInfo creationTxn = mv.getCreationMetadata().get(name);
+        BasicTxnInfo lastTxn = lastTxns.get(i++);
+        if (creationTxn == null) {
+          return false;
+        }
+        if (creationTxn.isIsnull() != lastTxn.isIsnull()
+            || (!lastTxn.isIsnull() && creationTxn.getId() != lastTxn.getId())) {
+          if (changedTable != null) {
+            return false;
+          }
+          changedTable = name;
+        }
+      }
+      if (changedTable == null) {
+        return false;
+      }
+
+      Table table = db.getTable(changedTable);
+      List<Path> locations = new ArrayList<Path>();
+      if (table.isPartitioned()) {
+        for (Partition partition : db.getPartitions(table)) {
+          locations.add(partition.getDataLocation());
+        }
+      } else {
+        locations.add(table.getDataLocation());
+      }
+      for (Path location : locations) {
+        if (!isAppendOnly(location)) {
+          LOG.info("Rebuilding materialized view {} fully, {} changed other than by inserts",
+              mv.getFullyQualifiedName(), location);
+          return false;
+        }
+      }
+      return true;
+    }
+
+    /**
+     * @return Whether the rows of the directory were only inserted after the last rebuild; the
+     *         deletes and the compactions after the last rebuild make it rebuild fully.
+     */
+    private boolean isAppendOnly(Path location) throws IOException {
+      if (!location.getFileSystem(conf).exists(location)) {
+        return true;
+      }
+      AcidUtils.Directory dir = AcidUtils.getAcidState(location, conf, txnList);
+      if (dir.getBaseDirectory() != null
+          && !lastTxnList.isTxnValid(AcidUtils.parseBase(dir.getBaseDirectory()))) {
+        return false;
+      }
+      for (AcidUtils.ParsedDelta delta : dir.getCurrentDirectories()) {
+        if (delta.isDeleteDelta() && lastTxnList.isTxnRangeValid(delta.getMinTransaction(),
+            delta.getMaxTransaction()) != ValidTxnList.RangeResponse.ALL) {
+          return false;
+        }
+      }
+      return true;
+    }
+
+    /**
+     * @return The predicate of the rows that the rebuild reads: the rows of the transactions that
+     *         were committed when it was compiled, and for the changed table only the ones that
+     *         the last rebuild did not read.
+     */
+    private String getNewRowsPredicate() {
+      StringBuilder sb = new StringBuilder("(");
+      for (Map.Entry<String, String> table : tables.entrySet()) {
+        String txnId = HiveUtils.unparseIdentifier(table.getKey(), conf) + ".ROW__ID.transactionid";
+        if (sb.length() > 1) {
+          sb.append(" AND ");
+        }
+        sb.append(txnId).append(" <= ").append(txnList.getHighWatermark());
+        long[] invalidTxns = txnList.getInvalidTransactions();
+        if (invalidTxns.length > 0) {
+          appendTxnIds(sb.append(" AND NOT "), txnId, invalidTxns);
+        }
+        if (table.getValue().equals(changedTable)) {
+          sb.append(" AND (").append(txnId).append(" > ").append(lastTxnList.getHighWatermark());
+          long[] lastInvalidTxns = lastTxnList.getInvalidTransactions();
+          if (lastInvalidTxns.length > 0) {
+            appendTxnIds(sb.append(" OR "), txnId, lastInvalidTxns);
+          }
+          sb.append(')');
+        }
+      }
+      return sb.append(')').toString();
+    }
+
+    private static void appendTxnIds(StringBuilder sb, String txnId, long[] txnIds) {
+      sb.append(txnId).append(" IN (");
+      for (int i = 0; i < txnIds.length; i++) {
+        if (i > 0) {
+          sb.append(", ");
+        }
+        sb.append(txnIds[i]);
+      }
+      sb.append(')');
+    }
+
+    /**
+     * @return The function that merges the values of the aggregate, or null when the expression
+     *         is not an aggregate that can be merged.
+     */
+    private static String getRollupFunction(ASTNode expr) {
+      if (expr.getType() != HiveParser.TOK_FUNCTION
+          && expr.getType() != HiveParser.TOK_FUNCTIONSTAR) {
+        return null;
+      }
+      String name =
+          BaseSemanticAnalyzer.unescapeIdentifier(expr.getChild(0).getText()).toLowerCase();
+      if (name.equals("count")) {
+        return "sum";
+      } else if (name.equals("sum") || name.equals("min") || name.equals("max")) {
+        return expr.getType() == HiveParser.TOK_FUNCTION ? name : null;
+      }
+      return null;
+    }
+
+    private static int indexOf(ASTNode groupBy, ASTNode expr) {
+      String tree = expr.toStringTree();
+      for (int i = 0; i < groupBy.getChildCount(); i++) {
+        if (tree.equals(((ASTNode) groupBy.getChild(i)).toStringTree())) {
+          return i;
+        }
+      }
+      return -1;
+    }
+
+    private static boolean containsType(ASTNode node, int... types) {
+      for (int type : types) {
+        if (node.getType() == type) {
+          return true;
+        }
+      }
+      for (int i = 0; i < node.getChildCount(); i++) {
+        if (containsType((ASTNode) node.getChild(i), types)) {
+          return true;
+        }
+      }
+      return false;
+    }
+
+    private static void join(StringBuilder sb, List<String> items) {
+      for (int i = 0; i < items.size(); i++) {
+        if (i > 0) {
+          sb.append(", ");
+        }
+        sb.append(items.get(i));
+      }
+    }
+  }
+}
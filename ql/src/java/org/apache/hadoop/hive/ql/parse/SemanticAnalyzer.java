@@ -83,10 +83,13 @@
 import org.apache.hadoop.hive.ql.ErrorMsg;
 import org.apache.hadoop.hive.ql.QueryProperties;
 import org.apache.hadoop.hive.ql.QueryState;
+import org.apache.hadoop.hive.ql.cache.results.CacheUsage;
+import org.apache.hadoop.hive.ql.cache.results.QueryResultsCache;
 import org.apache.hadoop.hive.ql.exec.AbstractMapJoinOperator;
 import org.apache.hadoop.hive.ql.exec.ArchiveUtils;
 import org.apache.hadoop.hive.ql.exec.ColumnInfo;
 import org.apache.hadoop.hive.ql.exec.ExprNodeEvaluatorFactory;
+import org.apache.hadoop.hive.ql.exec.FetchTask;
 import org.apache.hadoop.hive.ql.exec.FileSinkOperator;
 import org.apache.hadoop.hive.ql.exec.FilterOperator;
 import org.apache.hadoop.hive.ql.exec.FunctionInfo;
@@ -94,6 +97,7 @@
 import org.apache.hadoop.hive.ql.exec.GroupByOperator;
 import org.apache.hadoop.hive.ql.exec.JoinOperator;
 import org.apache.hadoop.hive.ql.exec.LimitOperator;
+import org.apache.hadoop.hive.ql.exec.ListSinkOperator;
 import org.apache.hadoop.hive.ql.exec.Operator;
 import org.apache.hadoop.hive.ql.exec.OperatorFactory;
 import org.apache.hadoop.hive.ql.exec.RecordReader;
@@ -107,6 +111,7 @@
 import org.apache.hadoop.hive.ql.exec.TaskFactory;
 import org.apache.hadoop.hive.ql.exec.UnionOperator;
 import org.apache.hadoop.hive.ql.exec.Utilities;
+import org.apache.hadoop.hive.ql.hooks.Entity;
 import org.apache.hadoop.hive.ql.hooks.ReadEntity;
 import org.apache.hadoop.hive.ql.hooks.WriteEntity;
 import org.apache.hadoop.hive.ql.io.AcidInputFormat;
@@ -175,6 +180,7 @@
 import org.apache.hadoop.hive.ql.plan.ExprNodeDescUtils;
 import org.apache.hadoop.hive.ql.plan.ExprNodeFieldDesc;
 import org.apache.hadoop.hive.ql.plan.ExprNodeGenericFuncDesc;
+import org.apache.hadoop.hive.ql.plan.FetchWork;
 import org.apache.hadoop.hive.ql.plan.FileSinkDesc;
 import org.apache.hadoop.hive.ql.plan.FilterDesc;
 import org.apache.hadoop.hive.ql.plan.FilterDesc.SampleDesc;
@@ -215,6 +221,7 @@
 import org.apache.hadoop.hive.ql.udf.generic.GenericUDTF;
 import org.apache.hadoop.hive.ql.util.ResourceDownloader;
 import org.apache.hadoop.hive.serde.serdeConstants;
+import org.apache.hadoop.hive.serde2.DefaultFetchFormatter;
 import org.apache.hadoop.hive.serde2.Deserializer;
 import org.apache.hadoop.hive.serde2.MetadataTypedColumnsetSerDe;
 import org.apache.hadoop.hive.serde2.NoOpFetchFormatter;
@@ -230,6 +237,7 @@
 import org.apache.hadoop.hive.serde2.objectinspector.StandardStructObjectInspector;
 import org.apache.hadoop.hive.serde2.objectinspector.StructField;
 import org.apache.hadoop.hive.serde2.objectinspector.StructObjectInspector;
+import org.apache.hadoop.hive.serde2.thrift.ThriftFormatter;
 import org.apache.hadoop.hive.serde2.thrift.ThriftJDBCBinarySerDe;
 import org.apache.hadoop.hive.serde2.typeinfo.PrimitiveTypeInfo;
 import org.apache.hadoop.hive.serde2.typeinfo.TypeInfo;
@@ -11397,6 +11405,15 @@ void analyzeInternal(ASTNode ast, PlannerContextFactory pcf) throws SemanticExce
       return;
     }
 
+    // Serve the query from the query results cache if possible
+    QueryResultsCache.LookupInfo lookupInfo = null;
+    if (isResultsCacheEnabled() && queryTypeCanUseCache(ast)) {
+      lookupInfo = createLookupInfoForQuery(ast);
+      if (checkResultsCache(lookupInfo)) {
+        return;
+      }
+    }
+
     if (HiveConf.getBoolVar(conf, ConfVars.HIVE_REMOVE_ORDERBY_IN_SUBQUERY)) {
       for (String alias : qb.getSubqAliases()) {
         removeOBInSubQuery(qb.getSubqForAlias(alias));
@@ -11559,6 +11576,155 @@ void analyzeInternal(ASTNode ast, PlannerContextFactory pcf) throws SemanticExce
       putAccessedColumnsToReadEntity(inputs, columnAccessInfo);
     }
 
+    // 11. Let the Driver add the results to the query results cache once the query completes
+    if (lookupInfo != null && queryCanBeCached()) {
+      QueryResultsCache.QueryInfo queryInfo = new QueryResultsCache.QueryInfo(lookupInfo,
+          resultSchema, new HashSet<ReadEntity>(inputs), getColumnAccessInfo());
+      cacheUsage = new CacheUsage(queryInfo);
+    }
+  }
+
+  private boolean isResultsCacheEnabled() {
+    return HiveConf.getBoolVar(conf, HiveConf.ConfVars.HIVE_QUERY_RESULTS_CACHE_ENABLED)
+        && QueryResultsCache.getInstance() != null;
+  }
+
+  /**
+   * Whether the query is a plain select, reading only tables whose changes are tracked by the
+   * query results cache, and evaluating only deterministic functions.
+   */
+  private boolean queryTypeCanUseCache(ASTNode ast) throws SemanticException {
+    if (ctx.getExplainConfig() != null || qb == null || !qb.getIsQuery()
+        || createVwDesc != null || tableMask.isEnabled()) {
+      return false;
+    }
+    for (Table table : tabNameToTabObject.values()) {
+      if (!tableTypeCanUseCache(table)) {
+        return false;
+      }
+    }
+    return functionsCanUseCache(ast);
+  }
+
+  private static boolean tableTypeCanUseCache(Table table) {
+    // Temporary tables are per session, the rows of transactional tables depend on the
+    // transactions of the query and not only on their files, and the data of non-native tables
+    // is not in files that the cache can check.
+    return !table.isTemporary() && !AcidUtils.isTransactionalTable(table)
+        && !table.isNonNative();
+  }
+
+  private boolean functionsCanUseCache(ASTNode node) throws SemanticException {
+    switch (node.getType()) {
+    case HiveParser.TOK_TRANSFORM:
+      return false;
+    case HiveParser.TOK_FUNCTION:
+    case HiveParser.TOK_FUNCTIONDI:
+    case HiveParser.TOK_FUNCTIONSTAR:
+      ASTNode nameNode = (ASTNode) node.getChild(0);
+      if (nameNode.getType() == HiveParser.Identifier) {
+        FunctionInfo fi = FunctionRegistry.getFunctionInfo(unescapeIdentifier(nameNode.getText()));
+        if (fi == null) {
+          return false;
+        }
+        if (fi.getGenericUDF() != null && (!FunctionRegistry.isDeterministic(fi.getGenericUDF())
+            || FunctionRegistry.isRuntimeConstant(fi.getGenericUDF()))) {
+          LOG.debug("Not using the query results cache for function {}", nameNode.getText());
+          return false;
+        }
+      }
+      break;
+    default:
+      break;
+    }
+    for (int i = 0; i < node.getChildCount(); i++) {
+      if (!functionsCanUseCache((ASTNode) node.getChild(i))) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  private QueryResultsCache.LookupInfo createLookupInfoForQuery(ASTNode ast) {
+    // Unqualified table names resolve against the current database.
+    StringBuilder queryText = new StringBuilder(SessionState.get().getCurrentDatabase());
+    queryText.append(':');
+    appendNormalizedQueryText(ast, queryText);
+
+    Map<String, String> tableSnapshot = new HashMap<String, String>();
+    for (Table table : tabNameToTabObject.values()) {
+      tableSnapshot.put(
+          QueryResultsCache.getQualifiedTableName(table.getDbName(), table.getTableName()),
+          String.valueOf(table.getParameters().get(hive_metastoreConstants.DDL_TIME)));
+    }
+    return new QueryResultsCache.LookupInfo(queryText.toString(), tableSnapshot);
+  }
+
+  private static void appendNormalizedQueryText(ASTNode node, StringBuilder sb) {
+    String text = node.getText();
+    sb.append(node.getType() == HiveParser.Identifier ? text.toLowerCase() : text);
+    if (node.getChildCount() > 0) {
+      sb.append(" (");
+      for (int i = 0; i < node.getChildCount(); i++) {
+        sb.append(' ');
+        appendNormalizedQueryText((ASTNode) node.getChild(i), sb);
+      }
+      sb.append(" )");
+    }
+  }
+
+  /**
+   * Looks the query up in the query results cache, and on a hit sets up the FetchTask reading
+   * the cached results in place of the query plan.
+   */
+  private boolean checkResultsCache(QueryResultsCache.LookupInfo lookupInfo) {
+    QueryResultsCache.CacheEntry cacheEntry = QueryResultsCache.getInstance().lookup(lookupInfo);
+    if (cacheEntry == null) {
+      return false;
+    }
+    LOG.info("Using the query results cache for this query: {}", cacheEntry);
+    QueryResultsCache.QueryInfo queryInfo = cacheEntry.getQueryInfo();
+    FetchWork fetchWork = cacheEntry.getFetchWork();
+    fetchWork.setHiveServerQuery(SessionState.get().isHiveServerQuery());
+    fetchTask = (FetchTask) TaskFactory.get(fetchWork, conf);
+    // The cached results are never serialized by ThriftJDBCBinarySerDe, see queryCanBeCached().
+    if (SessionState.get().isHiveServerQuery()) {
+      conf.set(SerDeUtils.LIST_SINK_OUTPUT_FORMATTER, ThriftFormatter.class.getName());
+    } else {
+      String formatterName = conf.get(SerDeUtils.LIST_SINK_OUTPUT_FORMATTER);
+      if (formatterName == null || formatterName.isEmpty()) {
+        conf.set(SerDeUtils.LIST_SINK_OUTPUT_FORMATTER, DefaultFetchFormatter.class.getName());
+      }
+    }
+    resultSchema = queryInfo.getResultSchema();
+    inputs.addAll(queryInfo.getInputs());
+    setColumnAccessInfo(queryInfo.getColumnAccessInfo());
+    cacheUsage = new CacheUsage(cacheEntry);
+    return true;
+  }
+
+  /**
+   * Whether the compiled plan writes its results to a directory which can be moved to the
+   * query results cache.
+   */
+  private boolean queryCanBeCached() {
+    if (rootTasks.isEmpty() || fetchTask == null || fetchTask.getWork().getTblDir() == null) {
+      return false;
+    }
+    FetchWork fetchWork = fetchTask.getWork();
+    if ((fetchWork.getSource() != null && !(fetchWork.getSource() instanceof ListSinkOperator))
+        || fetchWork.isUsingThriftJDBCBinarySerDe()
+        || fetchWork.getTblDesc() == null
+        || ThriftJDBCBinarySerDe.class.getName().equalsIgnoreCase(
+            fetchWork.getTblDesc().getSerdeClassName())) {
+      return false;
+    }
+    for (ReadEntity input : inputs) {
+      if (input.getType() == Entity.Type.TABLE && !tableTypeCanUseCache(input.getTable())) {
+        return false;
+      }
+    }
+    return true;
   }
 
   private void putAccessedColumnsToReadEntity(HashSet<ReadEntity> inputs, ColumnAccessInfo columnAccessInfo) {
@@ -11716,7 +11882,9 @@ private List<String> getTablesUsed(ParseContext parseCtx) throws SemanticExcepti
     List<String> tablesUsed = new ArrayList<>();
     for (TableScanOperator topOp : parseCtx.getTopOps().values()) {
       Table table = topOp.getConf().getTableMetadata();
-      if (!table.isMaterializedTable() && !table.isView()) {
+      // The incremental rebuild of a materialized view reads the materialized view too
+      if (!table.isMaterializedTable() && !table.isView()
+          && !table.getFullyQualifiedName().equalsIgnoreCase(createVwDesc.getViewName())) {
         // Add to signature
         tablesUsed.add(table.getFullyQualifiedName());
       }
@@ -12562,7 +12730,10 @@ protected ASTNode analyzeCreateView(ASTNode ast, QB qb, PlannerContext plannerCt
       orReplace = true;
     }
 
-    unparseTranslator.enable();
+    if (!isRebuild) {
+      // The text of a rebuilt materialized view is not saved again
+      unparseTranslator.enable();
+    }
 
     if (isMaterialized) {
       createVwDesc = new CreateViewDesc(
@@ -12595,6 +12766,13 @@ protected ASTNode analyzeCreateView(ASTNode ast, QB qb, PlannerContext plannerCt
         if (viewText.trim().isEmpty()) {
           throw new SemanticException(ErrorMsg.MATERIALIZED_VIEW_DEF_EMPTY);
         }
+        // If only new rows were added to the tables used by the view, merge them into the view
+        MaterializedViewIncrementalRebuild incrementalRebuild =
+            MaterializedViewIncrementalRebuild.create(db, conf, tab);
+        if (incrementalRebuild != null) {
+          viewText = incrementalRebuild.getQueryText();
+          createVwDesc.setValidTxnList(incrementalRebuild.getValidTxnList());
+        }
         Context ctx = new Context(queryState.getConf());
         selectStmt = ParseUtils.parse(viewText, ctx);
         // For CBO
@@ -66,6 +66,7 @@ public class CreateViewDesc extends DDLDesc implements Serializable {
   private String storageHandler; // only used for materialized views
   private Map<String, String> serdeProps; // only used for materialized views
   private List<String> tablesUsed;  // only used for materialized views
+  private String validTxnList; // only used for incremental materialized view rebuilds
   private ReplicationSpec replicationSpec = null;
 
   /**
@@ -253,6 +254,18 @@ public void setTablesUsed(List<String> tablesUsed) {
     this.tablesUsed = tablesUsed;
   }
 
+  /**
+   * @return The transactions that the materialized view is rebuilt with, or null for the ones
+   *         that the query reads.
+   */
+  public String getValidTxnList() {
+    return validTxnList;
+  }
+
+  public void setValidTxnList(String validTxnList) {
+    this.validTxnList = validTxnList;
+  }
+
   @Explain(displayName = "replace", displayOnlyOnTrue = true)
   public boolean isReplace() {
     return replace;
@@ -82,6 +82,11 @@ public class MapJoinDesc extends JoinDesc implements Serializable {
   private boolean isHybridHashJoin;
   private boolean isDynamicPartitionHashJoin = false;
 
+  // Identifies the small table hash tables across queries, see SharedMapJoinTableCache.
+  private String smallTableSignature;
+  // The locations of the tables or partitions scanned by the small table inputs.
+  private List<String> smallTableLocations;
+
   public MapJoinDesc() {
     bigTableBucketNumMapping = new LinkedHashMap<String, Integer>();
   }
@@ -104,6 +109,8 @@ public MapJoinDesc(MapJoinDesc clone) {
     this.parentDataSizes = clone.parentDataSizes;
     this.isBucketMapJoin = clone.isBucketMapJoin;
     this.isHybridHashJoin = clone.isHybridHashJoin;
+    this.smallTableSignature = clone.smallTableSignature;
+    this.smallTableLocations = clone.smallTableLocations;
   }
 
   public MapJoinDesc(final Map<Byte, List<ExprNodeDesc>> keys,
@@ -386,6 +393,30 @@ public void setDynamicPartitionHashJoin(boolean isDistributedHashJoin) {
     this.isDynamicPartitionHashJoin = isDistributedHashJoin;
   }
 
+  /**
+   * @return The description of the small table inputs and of how their hash tables are built,
+   *         or null when the hash tables can not be shared across queries.
+   */
+  public String getSmallTableSignature() {
+    return smallTableSignature;
+  }
+
+  public void setSmallTableSignature(String smallTableSignature) {
+    this.smallTableSignature = smallTableSignature;
+  }
+
+  /**
+   * @return The locations of the data of the small table inputs, whose files identify the state
+   *         of the data in the shared hash tables with the small table signature.
+   */
+  public List<String> getSmallTableLocations() {
+    return smallTableLocations;
+  }
+
+  public void setSmallTableLocations(List<String> smallTableLocations) {
+    this.smallTableLocations = smallTableLocations;
+  }
+
   // Use LinkedHashSet to give predictable display order.
   private static final Set<String> vectorizableMapJoinNativeEngines =
       new LinkedHashSet<String>(Arrays.asList("tez", "spark"));
@@ -445,12 +476,7 @@ private VectorizationCondition[] createNativeConditions() {
               vectorMapJoinDesc.getSmallTableExprVectorizes(),
               "Small table vectorizes"));
 
-      if (isFastHashTableEnabled) {
-        conditionList.add(
-            new VectorizationCondition(
-                !vectorMapJoinDesc.getIsHybridHashJoin(),
-                "Fast Hash Table and No Hybrid Hash Join"));
-      } else {
+      if (!isFastHashTableEnabled) {
         conditionList.add(
             new VectorizationCondition(
                 vectorMapJoinDesc.getSupportsKeyTypes(),
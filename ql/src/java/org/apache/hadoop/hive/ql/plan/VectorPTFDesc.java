@@ -50,6 +50,20 @@
 import org.apache.hadoop.hive.ql.exec.vector.ptf.VectorPTFEvaluatorLongSum;
 import org.apache.hadoop.hive.ql.exec.vector.ptf.VectorPTFEvaluatorRank;
 import org.apache.hadoop.hive.ql.exec.vector.ptf.VectorPTFEvaluatorRowNumber;
+import org.apache.hadoop.hive.ql.exec.vector.ptf.VectorPTFEvaluatorSlidingBase;
+import org.apache.hadoop.hive.ql.exec.vector.ptf.VectorPTFEvaluatorSlidingCount;
+import org.apache.hadoop.hive.ql.exec.vector.ptf.VectorPTFEvaluatorDecimalSlidingAvg;
+import org.apache.hadoop.hive.ql.exec.vector.ptf.VectorPTFEvaluatorDecimalSlidingMax;
+import org.apache.hadoop.hive.ql.exec.vector.ptf.VectorPTFEvaluatorDecimalSlidingMin;
+import org.apache.hadoop.hive.ql.exec.vector.ptf.VectorPTFEvaluatorDecimalSlidingSum;
+import org.apache.hadoop.hive.ql.exec.vector.ptf.VectorPTFEvaluatorDoubleSlidingAvg;
+import org.apache.hadoop.hive.ql.exec.vector.ptf.VectorPTFEvaluatorDoubleSlidingMax;
+import org.apache.hadoop.hive.ql.exec.vector.ptf.VectorPTFEvaluatorDoubleSlidingMin;
+import org.apache.hadoop.hive.ql.exec.vector.ptf.VectorPTFEvaluatorDoubleSlidingSum;
+import org.apache.hadoop.hive.ql.exec.vector.ptf.VectorPTFEvaluatorLongSlidingAvg;
+import org.apache.hadoop.hive.ql.exec.vector.ptf.VectorPTFEvaluatorLongSlidingMax;
+import org.apache.hadoop.hive.ql.exec.vector.ptf.VectorPTFEvaluatorLongSlidingMin;
+import org.apache.hadoop.hive.ql.exec.vector.ptf.VectorPTFEvaluatorLongSlidingSum;
 import org.apache.hadoop.hive.ql.plan.ptf.WindowFrameDef;
 import org.apache.hadoop.hive.serde2.typeinfo.TypeInfo;
 
@@ -138,6 +152,11 @@ public static VectorPTFEvaluatorBase getEvaluator(SupportedFunctionType function
       WindowFrameDef windowFrameDef, Type columnVectorType, VectorExpression inputVectorExpression,
       int outputColumnNum) {
 
+    if (isSlidingFunction(functionType) && VectorPTFEvaluatorSlidingBase.isSlidingFrame(windowFrameDef)) {
+      return getSlidingEvaluator(functionType, windowFrameDef, columnVectorType, inputVectorExpression,
+          outputColumnNum);
+    }
+
     VectorPTFEvaluatorBase evaluator;
     switch (functionType) {
     case ROW_NUMBER:
@@ -252,6 +271,99 @@ public static VectorPTFEvaluatorBase getEvaluator(SupportedFunctionType function
     return evaluator;
   }
 
+  /**
+   * The functions that have evaluators for a sliding window frame, i.e. a frame whose start is
+   * not always the first row of the partition or whose end is not always the current row.
+   */
+  public static boolean isSlidingFunction(SupportedFunctionType functionType) {
+    switch (functionType) {
+    case MIN:
+    case MAX:
+    case SUM:
+    case AVG:
+    case COUNT:
+      return true;
+    default:
+      return false;
+    }
+  }
+
+  private static VectorPTFEvaluatorBase getSlidingEvaluator(SupportedFunctionType functionType,
+      WindowFrameDef windowFrameDef, Type columnVectorType, VectorExpression inputVectorExpression,
+      int outputColumnNum) {
+
+    if (functionType == SupportedFunctionType.COUNT) {
+      return new VectorPTFEvaluatorSlidingCount(windowFrameDef, inputVectorExpression, outputColumnNum);
+    }
+
+    VectorPTFEvaluatorBase evaluator;
+    switch (functionType) {
+    case MIN:
+      switch (columnVectorType) {
+      case LONG:
+        evaluator = new VectorPTFEvaluatorLongSlidingMin(windowFrameDef, inputVectorExpression, outputColumnNum);
+        break;
+      case DOUBLE:
+        evaluator = new VectorPTFEvaluatorDoubleSlidingMin(windowFrameDef, inputVectorExpression, outputColumnNum);
+        break;
+      case DECIMAL:
+        evaluator = new VectorPTFEvaluatorDecimalSlidingMin(windowFrameDef, inputVectorExpression, outputColumnNum);
+        break;
+      default:
+        throw new RuntimeException("Unexpected column vector type " + columnVectorType + " for " + functionType);
+      }
+      break;
+    case MAX:
+      switch (columnVectorType) {
+      case LONG:
+        evaluator = new VectorPTFEvaluatorLongSlidingMax(windowFrameDef, inputVectorExpression, outputColumnNum);
+        break;
+      case DOUBLE:
+        evaluator = new VectorPTFEvaluatorDoubleSlidingMax(windowFrameDef, inputVectorExpression, outputColumnNum);
+        break;
+      case DECIMAL:
+        evaluator = new VectorPTFEvaluatorDecimalSlidingMax(windowFrameDef, inputVectorExpression, outputColumnNum);
+        break;
+      default:
+        throw new RuntimeException("Unexpected column vector type " + columnVectorType + " for " + functionType);
+      }
+      break;
+    case SUM:
+      switch (columnVectorType) {
+      case LONG:
+        evaluator = new VectorPTFEvaluatorLongSlidingSum(windowFrameDef, inputVectorExpression, outputColumnNum);
+        break;
+      case DOUBLE:
+        evaluator = new VectorPTFEvaluatorDoubleSlidingSum(windowFrameDef, inputVectorExpression, outputColumnNum);
+        break;
+      case DECIMAL:
+        evaluator = new VectorPTFEvaluatorDecimalSlidingSum(windowFrameDef, inputVectorExpression, outputColumnNum);
+        break;
+      default:
+        throw new RuntimeException("Unexpected column vector type " + columnVectorType + " for " + functionType);
+      }
+      break;
+    case AVG:
+      switch (columnVectorType) {
+      case LONG:
+        evaluator = new VectorPTFEvaluatorLongSlidingAvg(windowFrameDef, inputVectorExpression, outputColumnNum);
+        break;
+      case DOUBLE:
+        evaluator = new VectorPTFEvaluatorDoubleSlidingAvg(windowFrameDef, inputVectorExpression, outputColumnNum);
+        break;
+      case DECIMAL:
+        evaluator = new VectorPTFEvaluatorDecimalSlidingAvg(windowFrameDef, inputVectorExpression, outputColumnNum);
+        break;
+      default:
+        throw new RuntimeException("Unexpected column vector type " + columnVectorType + " for " + functionType);
+      }
+      break;
+    default:
+      throw new RuntimeException("Unexpected sliding function type " + functionType);
+    }
+    return evaluator;
+  }
+
   public static VectorPTFEvaluatorBase[] getEvaluators(VectorPTFDesc vectorPTFDesc, VectorPTFInfo vectorPTFInfo) {
     String[] evaluatorFunctionNames = vectorPTFDesc.getEvaluatorFunctionNames();
     int evaluatorCount = evaluatorFunctionNames.length;
@@ -260,6 +372,7 @@ public static VectorPTFEvaluatorBase[] getEvaluators(VectorPTFDesc vectorPTFDesc
     Type[] evaluatorInputColumnVectorTypes = vectorPTFInfo.getEvaluatorInputColumnVectorTypes();
 
     int[] outputColumnMap = vectorPTFInfo.getOutputColumnMap();
+    int[] orderColumnMap = vectorPTFInfo.getOrderColumnMap();
 
     VectorPTFEvaluatorBase[] evaluators = new VectorPTFEvaluatorBase[evaluatorCount];
     for (int i = 0; i < evaluatorCount; i++) {
@@ -275,6 +388,10 @@ public static VectorPTFEvaluatorBase[] getEvaluators(VectorPTFDesc vectorPTFDesc
       VectorPTFEvaluatorBase evaluator =
           VectorPTFDesc.getEvaluator(
               functionType, windowFrameDef, columnVectorType, inputVectorExpression, outputColumnNum);
+      if (evaluator instanceof VectorPTFEvaluatorSlidingBase) {
+        // RANGE frames are over the (single) order column.
+        ((VectorPTFEvaluatorSlidingBase) evaluator).setOrderColumnNum(orderColumnMap[0]);
+      }
 
       evaluators[i] = evaluator;
     }
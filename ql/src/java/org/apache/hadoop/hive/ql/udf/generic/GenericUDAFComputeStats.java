@@ -26,6 +26,9 @@
 import org.apache.hadoop.hive.common.type.HiveDecimal;
 import org.apache.hadoop.hive.ql.exec.Description;
 import org.apache.hadoop.hive.ql.exec.UDFArgumentTypeException;
+import org.apache.hadoop.hive.ql.exec.vector.VectorizedUDAFs;
+import org.apache.hadoop.hive.ql.exec.vector.expressions.aggregates.VectorUDAFComputeStats;
+import org.apache.hadoop.hive.ql.exec.vector.expressions.aggregates.VectorUDAFComputeStatsMerge;
 import org.apache.hadoop.hive.ql.metadata.HiveException;
 import org.apache.hadoop.hive.ql.parse.SemanticException;
 import org.apache.hadoop.hive.ql.util.JavaDataModel;
@@ -295,7 +298,7 @@ public Object terminate(AggregationBuffer agg) throws HiveException {
   public static abstract class GenericUDAFNumericStatsEvaluator<V, OI extends PrimitiveObjectInspector>
       extends GenericUDAFEvaluator {
 
-    protected final static int MAX_BIT_VECTORS = 1024;
+    public final static int MAX_BIT_VECTORS = 1024;
 
     /* Object Inspector corresponding to the input parameter.
      */
@@ -560,6 +563,9 @@ public void merge(AggregationBuffer agg, Object partial) throws HiveException {
    * GenericUDAFLongStatsEvaluator.
    *
    */
+  @VectorizedUDAFs({
+    VectorUDAFComputeStats.class,
+    VectorUDAFComputeStatsMerge.class})
   public static class GenericUDAFLongStatsEvaluator
       extends GenericUDAFNumericStatsEvaluator<Long, LongObjectInspector> {
 
@@ -628,6 +634,9 @@ public void reset(AggregationBuffer agg) throws HiveException {
    * GenericUDAFDoubleStatsEvaluator.
    *
    */
+  @VectorizedUDAFs({
+    VectorUDAFComputeStats.class,
+    VectorUDAFComputeStatsMerge.class})
   public static class GenericUDAFDoubleStatsEvaluator
       extends GenericUDAFNumericStatsEvaluator<Double, DoubleObjectInspector> {
 
@@ -24,6 +24,9 @@
 import java.util.LinkedHashSet;
 import java.util.List;
 
+import org.apache.hadoop.hive.ql.exec.vector.VectorizedUDAFs;
+import org.apache.hadoop.hive.ql.exec.vector.expressions.aggregates.VectorUDAFCollect;
+import org.apache.hadoop.hive.ql.exec.vector.expressions.aggregates.VectorUDAFCollectMerge;
 import org.apache.hadoop.hive.ql.metadata.HiveException;
 import org.apache.hadoop.hive.serde2.objectinspector.ListObjectInspector;
 import org.apache.hadoop.hive.serde2.objectinspector.ObjectInspector;
@@ -31,6 +34,9 @@
 import org.apache.hadoop.hive.serde2.objectinspector.ObjectInspectorUtils;
 import org.apache.hadoop.hive.serde2.objectinspector.StandardListObjectInspector;
 
+@VectorizedUDAFs({
+    VectorUDAFCollect.class,
+    VectorUDAFCollectMerge.class})
 public class GenericUDAFMkCollectionEvaluator extends GenericUDAFEvaluator
     implements Serializable {
 
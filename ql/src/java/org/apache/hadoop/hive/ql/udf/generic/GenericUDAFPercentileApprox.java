@@ -24,6 +24,9 @@
 import org.slf4j.LoggerFactory;
 import org.apache.hadoop.hive.ql.exec.Description;
 import org.apache.hadoop.hive.ql.exec.UDFArgumentTypeException;
+import org.apache.hadoop.hive.ql.exec.vector.VectorizedUDAFs;
+import org.apache.hadoop.hive.ql.exec.vector.expressions.aggregates.VectorUDAFPercentileApprox;
+import org.apache.hadoop.hive.ql.exec.vector.expressions.aggregates.VectorUDAFPercentileApproxMerge;
 import org.apache.hadoop.hive.ql.metadata.HiveException;
 import org.apache.hadoop.hive.ql.parse.SemanticException;
 import org.apache.hadoop.hive.ql.util.JavaDataModel;
@@ -180,6 +183,9 @@ public GenericUDAFEvaluator getEvaluator(GenericUDAFParameterInfo info) throws S
     }
   }
 
+  @VectorizedUDAFs({
+    VectorUDAFPercentileApprox.class,
+    VectorUDAFPercentileApproxMerge.class})
   public static class GenericUDAFSinglePercentileApproxEvaluator extends
     GenericUDAFPercentileApproxEvaluator {
 
@@ -230,6 +236,9 @@ public Object terminate(AggregationBuffer agg) throws HiveException {
   }
 
 
+  @VectorizedUDAFs({
+    VectorUDAFPercentileApprox.class,
+    VectorUDAFPercentileApproxMerge.class})
   public static class GenericUDAFMultiplePercentileApproxEvaluator extends
     GenericUDAFPercentileApproxEvaluator {
 
@@ -401,6 +410,18 @@ protected double[] getQuantileArray(ConstantObjectInspector quantileOI)
       return result;
     }
 
+    /*
+     * The requested quantiles and number of histogram bins for modes PARTIAL1 and COMPLETE.
+     * Public so vectorization code can use them.
+     */
+    public double[] getQuantiles() {
+      return quantiles;
+    }
+
+    public int getNumBins() {
+      return nbins;
+    }
+
     @Override
     public void reset(AggregationBuffer agg) throws HiveException {
       PercentileAggBuf result = (PercentileAggBuf) agg;
@@ -123,23 +123,41 @@ public void merge(List other, DoubleObjectInspector doi) {
       return;
     }
 
+    double[] serialized = new double[other.size()];
+    for (int i = 0; i < serialized.length; i++) {
+      serialized[i] = doi.get(other.get(i));
+    }
+    merge(serialized, 0, serialized.length);
+  }
+
+  /**
+   * Takes a serialized histogram created by the serialize() method, as the doubles from
+   * start to start + length of an array, and merges it with the current histogram object.
+   *
+   * @param other An array holding the serialized histogram
+   * @param start The index of the serialized histogram in the array
+   * @param length The length of the serialized histogram
+   * @see #merge
+   */
+  public void merge(double[] other, int start, int length) {
+    final int otherUsedBins = (length-1)/2;
     if(nbins == 0 || nusedbins == 0)  {
       // Our aggregation buffer has nothing in it, so just copy over 'other'
-      // by deserializing the ArrayList of (x,y) pairs into an array of Coord objects
-      nbins = (int) doi.get(other.get(0));
-      nusedbins = (other.size()-1)/2;
+      // by deserializing the (x,y) pairs into an array of Coord objects
+      nbins = (int) other[start];
+      nusedbins = otherUsedBins;
       bins = new ArrayList<Coord>(nusedbins);
-      for (int i = 1; i < other.size(); i+=2) {
+      for (int i = start + 1; i < start + length; i+=2) {
         Coord bin = new Coord();
-        bin.x = doi.get(other.get(i));
-        bin.y = doi.get(other.get(i+1));
+        bin.x = other[i];
+        bin.y = other[i+1];
         bins.add(bin);
       }
     } else {
       // The aggregation buffer already contains a partial histogram. Therefore, we need
       // to merge histograms using Algorithm #2 from the Ben-Haim and Tom-Tov paper.
 
-      ArrayList<Coord> tmp_bins = new ArrayList<Coord>(nusedbins + (other.size()-1)/2);
+      ArrayList<Coord> tmp_bins = new ArrayList<Coord>(nusedbins + otherUsedBins);
       // Copy all the histogram bins from us and 'other' into an overstuffed histogram
       for (int i = 0; i < nusedbins; i++) {
         Coord bin = new Coord();
@@ -147,17 +165,17 @@ public void merge(List other, DoubleObjectInspector doi) {
         bin.y = bins.get(i).y;
         tmp_bins.add(bin);
       }
-      for (int j = 1; j < other.size(); j += 2) {
+      for (int j = start + 1; j < start + length; j += 2) {
         Coord bin = new Coord();
-        bin.x = doi.get(other.get(j));
-        bin.y = doi.get(other.get(j+1));
+        bin.x = other[j];
+        bin.y = other[j+1];
         tmp_bins.add(bin);
       }
       Collections.sort(tmp_bins);
 
       // Now trim the overstuffed histogram down to the correct number of bins
       bins = tmp_bins;
-      nusedbins += (other.size()-1)/2;
+      nusedbins += otherUsedBins;
       trim();
     }
   }
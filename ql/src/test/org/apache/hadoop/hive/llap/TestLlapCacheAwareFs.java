@@ -0,0 +1,283 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.hadoop.hive.llap;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.IdentityHashMap;
+import java.util.Map;
+import java.util.Random;
+import java.util.TreeMap;
+
+import org.apache.hadoop.fs.FSDataInputStream;
+import org.apache.hadoop.fs.FSDataOutputStream;
+import org.apache.hadoop.fs.FileSystem;
+import org.apache.hadoop.fs.Path;
+import org.apache.hadoop.hive.common.io.Allocator;
+import org.apache.hadoop.hive.common.io.DataCache;
+import org.apache.hadoop.hive.common.io.DiskRange;
+import org.apache.hadoop.hive.common.io.DiskRangeList;
+import org.apache.hadoop.hive.common.io.encoded.MemoryBuffer;
+import org.apache.hadoop.mapred.JobConf;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import static org.junit.Assert.*;
+
+public class TestLlapCacheAwareFs {
+
+  private static final int MAX_ALLOC = 32; // Make sure the chunks are split into several buffers.
+
+  @Rule
+  public TemporaryFolder folder = new TemporaryFolder();
+
+  private JobConf conf;
+  private FileSystem fs;
+  private Path file;
+  private byte[] fileData;
+  private TestDataCache cache;
+  private Path cachePath;
+
+  @Before
+  public void setUp() throws Exception {
+    conf = new JobConf();
+    fs = FileSystem.getLocal(conf);
+    file = new Path(folder.getRoot().getAbsolutePath(), "data");
+    fileData = writeFile(1);
+    cache = new TestDataCache();
+    TreeMap<Long, Long> chunkIndex = new TreeMap<Long, Long>();
+    chunkIndex.put(0L, 50L);
+    chunkIndex.put(50L, 130L);
+    chunkIndex.put(130L, 200L);
+    cachePath = LlapCacheAwareFs.registerFile(cache, file, "fileKey", chunkIndex, conf);
+  }
+
+  @After
+  public void tearDown() {
+    LlapCacheAwareFs.unregisterFile(cachePath);
+  }
+
+  private byte[] writeFile(long seed) throws Exception {
+    byte[] data = new byte[200];
+    new Random(seed).nextBytes(data);
+    try (FSDataOutputStream out = fs.create(file, true)) {
+      out.write(data);
+    }
+    return data;
+  }
+
+  private byte[] read(long offset, int length) throws Exception {
+    byte[] result = new byte[length];
+    try (FSDataInputStream in = cachePath.getFileSystem(conf).open(cachePath)) {
+      in.readFully(offset, result, 0, length);
+    }
+    return result;
+  }
+
+  private byte[] expected(int from, int to) {
+    byte[] result = new byte[to - from];
+    System.arraycopy(fileData, from, result, 0, to - from);
+    return result;
+  }
+
+  @Test
+  public void testReadThroughCache() throws Exception {
+    assertArrayEquals(expected(0, 130), read(0, 130));
+    // Chunks [0, 50) and [50, 130), split on the max allocation size.
+    assertEquals(5, cache.buffers.size());
+    cache.assertNoLockedBuffers();
+
+    // The file changes on disk; the cached data is returned for the cached chunks.
+    byte[] oldData = fileData;
+    fileData = writeFile(2);
+    byte[] result = read(50, 150);
+    assertArrayEquals(Arrays.copyOfRange(oldData, 50, 130),
+        Arrays.copyOfRange(result, 0, 80));
+    assertArrayEquals(expected(130, 200), Arrays.copyOfRange(result, 80, 150));
+    assertEquals(8, cache.buffers.size());
+    cache.assertNoLockedBuffers();
+  }
+
+  @Test
+  public void testCacheCollision() throws Exception {
+    assertArrayEquals(expected(130, 200), read(130, 70));
+    assertEquals(3, cache.buffers.size());
+
+    // Another reader caches the same chunk concurrently; its buffers are discarded.
+    cache.skipLookups = true;
+    assertArrayEquals(expected(130, 200), read(130, 70));
+    assertEquals(3, cache.buffers.size());
+    assertEquals(3, cache.allocated.size());
+    cache.assertNoLockedBuffers();
+  }
+
+  private static class TestBuffer implements MemoryBuffer {
+    private final ByteBuffer data;
+    private int refCount;
+
+    private TestBuffer(int size) {
+      data = ByteBuffer.allocate(size);
+    }
+
+    @Override
+    public ByteBuffer getByteBufferRaw() {
+      return data;
+    }
+
+    @Override
+    public ByteBuffer getByteBufferDup() {
+      return data.duplicate();
+    }
+  }
+
+  /**
+   * A minimal cache keyed by offset, that tracks the buffer locks and allocations.
+   */
+  private static class TestDataCache implements DataCache, Allocator,
+      Allocator.BufferObjectFactory {
+    private final TreeMap<Long, TestBuffer> buffers = new TreeMap<Long, TestBuffer>();
+    private final Map<MemoryBuffer, Boolean> allocated =
+        new IdentityHashMap<MemoryBuffer, Boolean>();
+    private boolean skipLookups;
+
+    @Override
+    public DiskRangeList getFileData(Object fileKey, DiskRangeList range, long baseOffset,
+        DiskRangeListFactory factory, BooleanRef gotAllData) {
+      gotAllData.value = false;
+      if (skipLookups) {
+        return range;
+      }
+      DiskRangeList head = new DiskRangeList(-1, -1);
+      DiskRangeList last = head;
+      long offset = range.getOffset(), end = range.getEnd();
+      boolean gotAll = true;
+      while (offset < end) {
+        TestBuffer buffer = buffers.get(offset);
+        if (buffer != null) {
+          buffer.refCount++;
+          long bufferEnd = offset + buffer.data.remaining();
+          last = last.insertAfter(factory.createCacheChunk(buffer, offset, bufferEnd));
+          offset = bufferEnd;
+        } else {
+          Long next = buffers.ceilingKey(offset);
+          long missingEnd = (next == null) ? end : Math.min(next, end);
+          last = last.insertAfter(new DiskRangeList(offset, missingEnd));
+          offset = missingEnd;
+          gotAll = false;
+        }
+      }
+      gotAllData.value = gotAll;
+      DiskRangeList result = head.next;
+      result.prev = null;
+      return result;
+    }
+
+    @Override
+    public long[] putFileData(Object fileKey, DiskRange[] ranges, MemoryBuffer[] data,
+        long baseOffset) {
+      long[] result = null;
+      for (int i = 0; i < ranges.length; ++i) {
+        TestBuffer existing = buffers.get(ranges[i].getOffset());
+        if (existing != null) {
+          existing.refCount++;
+          data[i] = existing;
+          if (result == null) {
+            result = new long[(ranges.length + 63) >>> 6];
+          }
+          result[i >>> 6] |= (1L << (i & 63));
+        } else {
+          TestBuffer buffer = (TestBuffer) data[i];
+          buffer.refCount++;
+          buffers.put(ranges[i].getOffset(), buffer);
+        }
+      }
+      return result;
+    }
+
+    @Override
+    public void releaseBuffer(MemoryBuffer buffer) {
+      TestBuffer testBuffer = (TestBuffer) buffer;
+      assertTrue(testBuffer.refCount > 0);
+      testBuffer.refCount--;
+    }
+
+    @Override
+    public void reuseBuffer(MemoryBuffer buffer) {
+      ((TestBuffer) buffer).refCount++;
+    }
+
+    @Override
+    public Allocator getAllocator() {
+      return this;
+    }
+
+    @Override
+    public BufferObjectFactory getDataBufferFactory() {
+      return this;
+    }
+
+    @Override
+    public MemoryBuffer create() {
+      return null;
+    }
+
+    @Override
+    public void allocateMultiple(MemoryBuffer[] dest, int size) {
+      allocateMultiple(dest, size, this);
+    }
+
+    @Override
+    public void allocateMultiple(MemoryBuffer[] dest, int size, BufferObjectFactory factory) {
+      for (int i = 0; i < dest.length; ++i) {
+        dest[i] = new TestBuffer(size);
+        allocated.put(dest[i], Boolean.TRUE);
+      }
+    }
+
+    @Override
+    public MemoryBuffer createUnallocated() {
+      throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public void deallocate(MemoryBuffer buffer) {
+      assertEquals(0, ((TestBuffer) buffer).refCount);
+      assertNotNull(allocated.remove(buffer));
+    }
+
+    @Override
+    public boolean isDirectAlloc() {
+      return false;
+    }
+
+    @Override
+    public int getMaxAllocation() {
+      return MAX_ALLOC;
+    }
+
+    private void assertNoLockedBuffers() {
+      for (TestBuffer buffer : buffers.values()) {
+        assertEquals(0, buffer.refCount);
+      }
+    }
+  }
+}
@@ -54,6 +54,7 @@
 import org.apache.hadoop.hive.metastore.api.TxnOpenException;
 import org.apache.hadoop.hive.metastore.api.TxnState;
 import org.apache.hadoop.hive.metastore.api.UnlockRequest;
+import org.apache.hadoop.hive.metastore.conf.MetastoreConf;
 import org.apache.hadoop.util.StringUtils;
 import org.apache.logging.log4j.Level;
 import org.apache.logging.log4j.LogManager;
@@ -71,10 +72,19 @@
 import java.sql.SQLException;
 import java.sql.Statement;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.SortedSet;
+import java.util.TreeSet;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
 
 import static junit.framework.Assert.assertEquals;
 import static junit.framework.Assert.assertFalse;
@@ -1541,6 +1551,371 @@ private void updateLocks(Connection conn) throws SQLException {
     stmt.executeUpdate("update HIVE_LOCKS set hl_last_heartbeat = hl_last_heartbeat + 1");
   }
 
+  @Test
+  public void testCommitTxnsWithoutConflicts() throws Exception {
+    long insertTxn1 = openTxn();
+    long insertTxn2 = openTxn();
+    long updateTxn = openTxn();
+    long abortedTxn = openTxn();
+    lockTable(insertTxn1, LockType.SHARED_READ, DataOperationType.INSERT, "mytable1");
+    lockTable(insertTxn2, LockType.SHARED_READ, DataOperationType.INSERT, "mytable2");
+    lockTable(updateTxn, LockType.SHARED_WRITE, DataOperationType.UPDATE, "mytable3");
+    txnHandler.abortTxn(new AbortTxnRequest(abortedTxn));
+
+    // Only the open txns which did not update/delete are committed together
+    Set<Long> committed = ((TxnHandler) txnHandler).commitTxnsWithoutConflicts(
+        Arrays.asList(insertTxn1, insertTxn2, updateTxn, abortedTxn, abortedTxn + 100));
+    assertEquals(new TreeSet<>(Arrays.asList(insertTxn1, insertTxn2)), committed);
+    List<TxnInfo> txns = txnHandler.getOpenTxnsInfo().getOpen_txns();
+    for (TxnInfo txn : txns) {
+      assertFalse(txn.toString(), txn.getId() == insertTxn1 || txn.getId() == insertTxn2);
+      if (txn.getId() == updateTxn) {
+        assertEquals(TxnState.OPEN, txn.getState());
+      }
+    }
+    List<ShowLocksResponseElement> locks = txnHandler.showLocks(new ShowLocksRequest()).getLocks();
+    assertEquals(1, locks.size());
+    assertEquals(updateTxn, locks.get(0).getTxnid());
+
+    // Already committed, and the others are committed on their own
+    txnHandler.commitTxn(new CommitTxnRequest(insertTxn1));
+    txnHandler.commitTxn(new CommitTxnRequest(updateTxn));
+    assertEquals(0, txnHandler.showLocks(new ShowLocksRequest()).getLocks().size());
+  }
+
+  /**
+   * A TxnHandler whose first commitTxnImpl() call waits for {@link #release}, so that the next
+   * commitTxn() calls wait to be committed as a group.  It fails the groups if
+   * {@link #failGroups} is set, and makes them wait for {@link #releaseGroup} if
+   * {@link #blockGroups} is set.
+   */
+  private static class GroupCommitTxnHandler extends CompactionTxnHandler {
+    private final CountDownLatch leaderStarted = new CountDownLatch(1);
+    private final CountDownLatch release = new CountDownLatch(1);
+    private final List<Long> committedAlone = new CopyOnWriteArrayList<>();
+    private final List<List<Long>> groups = new CopyOnWriteArrayList<>();
+    private final CountDownLatch groupStarted = new CountDownLatch(1);
+    private final CountDownLatch releaseGroup = new CountDownLatch(1);
+    private volatile boolean failGroups = false;
+    private volatile boolean blockGroups = false;
+
+    @Override
+    void commitTxnImpl(CommitTxnRequest rqst)
+        throws NoSuchTxnException, TxnAbortedException, MetaException {
+      committedAlone.add(rqst.getTxnid());
+      if (leaderStarted.getCount() > 0) {
+        leaderStarted.countDown();
+        try {
+          release.await();
+        } catch (InterruptedException e) {
+          throw new MetaException(e.toString());
+        }
+      }
+      super.commitTxnImpl(rqst);
+    }
+
+    @Override
+    Set<Long> commitTxnsWithoutConflicts(List<Long> txnids) throws MetaException {
+      groups.add(new ArrayList<>(txnids));
+      if (blockGroups) {
+        groupStarted.countDown();
+        try {
+          releaseGroup.await();
+        } catch (InterruptedException e) {
+          throw new MetaException(e.toString());
+        }
+      }
+      if (failGroups) {
+        throw new MetaException("Forced failure of the group commit");
+      }
+      return super.commitTxnsWithoutConflicts(txnids);
+    }
+  }
+
+  private Thread commitInThread(final TxnStore handler, final long txnid,
+      final List<Throwable> errors) {
+    Thread thread = new Thread(new Runnable() {
+      @Override
+      public void run() {
+        try {
+          handler.commitTxn(new CommitTxnRequest(txnid));
+        } catch (Throwable e) {
+          errors.add(e);
+        }
+      }
+    });
+    thread.setDaemon(true);
+    thread.start();
+    return thread;
+  }
+
+  private static void waitForPendingCommits(int count) throws InterruptedException {
+    long deadline = System.currentTimeMillis() + TimeUnit.MINUTES.toMillis(1);
+    while (TxnHandler.getPendingCommitsCount() != count) {
+      assertTrue("Expected " + count + " pending commits, found " +
+          TxnHandler.getPendingCommitsCount(), System.currentTimeMillis() < deadline);
+      Thread.sleep(10);
+    }
+  }
+
+  private static void join(List<Thread> threads) throws InterruptedException {
+    for (Thread thread : threads) {
+      thread.join(TimeUnit.MINUTES.toMillis(1));
+      assertFalse("commitTxn() did not complete", thread.isAlive());
+    }
+  }
+
+  /**
+   * Commits an insert txn while 3 insert txns and an update txn wait to be committed as a group.
+   * @return the txns waiting
+   */
+  private List<Long> runGroupCommit(GroupCommitTxnHandler handler) throws Exception {
+    MetastoreConf.setLongVar(conf, MetastoreConf.ConfVars.TXN_GROUP_COMMIT_MAX_TXNS, 100);
+    handler.setConf(conf);
+    long leaderTxn = openTxn();
+    List<Long> txnids = new ArrayList<>();
+    for (int i = 0; i < 3; i++) {
+      txnids.add(openTxn());
+      lockTable(txnids.get(i), LockType.SHARED_READ, DataOperationType.INSERT, "mytable" + i);
+    }
+    txnids.add(openTxn());
+    lockTable(txnids.get(3), LockType.SHARED_WRITE, DataOperationType.UPDATE, "mytable3");
+
+    List<Throwable> errors = new CopyOnWriteArrayList<>();
+    List<Thread> threads = new ArrayList<>();
+    try {
+      threads.add(commitInThread(handler, leaderTxn, errors));
+      handler.leaderStarted.await();
+      for (long txnid : txnids) {
+        threads.add(commitInThread(handler, txnid, errors));
+      }
+      waitForPendingCommits(txnids.size());
+    } finally {
+      handler.release.countDown();
+    }
+    join(threads);
+    assertEquals(errors.toString(), 0, errors.size());
+    assertEquals(0, TxnHandler.getPendingCommitsCount());
+
+    // The txns waiting are committed as one group by one of them
+    assertEquals(1, handler.groups.size());
+    assertEquals(new TreeSet<>(txnids), new TreeSet<>(handler.groups.get(0)));
+    assertEquals(leaderTxn, (long) handler.committedAlone.get(0));
+    assertEquals(0, TxnDbUtil.countQueryAgent(conf, "select count(*) from TXNS"));
+    assertEquals(0, TxnDbUtil.countQueryAgent(conf, "select count(*) from HIVE_LOCKS"));
+    return txnids;
+  }
+
+  @Test
+  public void testGroupCommit() throws Exception {
+    GroupCommitTxnHandler handler = new GroupCommitTxnHandler();
+    List<Long> txnids = runGroupCommit(handler);
+    // Only the update txn is committed on its own, after the group
+    assertEquals(Arrays.asList(txnids.get(3)),
+        handler.committedAlone.subList(1, handler.committedAlone.size()));
+    assertEquals(4, TxnDbUtil.countQueryAgent(conf,
+        "select count(*) from COMPLETED_TXN_COMPONENTS"));
+  }
+
+  @Test
+  public void testGroupCommitFailure() throws Exception {
+    GroupCommitTxnHandler handler = new GroupCommitTxnHandler();
+    handler.failGroups = true;
+    List<Long> txnids = runGroupCommit(handler);
+    // Each txn of the group that failed is committed on its own
+    assertEquals(new TreeSet<>(txnids),
+        new TreeSet<>(handler.committedAlone.subList(1, handler.committedAlone.size())));
+    assertEquals(4, TxnDbUtil.countQueryAgent(conf,
+        "select count(*) from COMPLETED_TXN_COMPONENTS"));
+  }
+
+  @Test
+  public void testGroupCommitInterrupted() throws Exception {
+    GroupCommitTxnHandler handler = new GroupCommitTxnHandler();
+    MetastoreConf.setLongVar(conf, MetastoreConf.ConfVars.TXN_GROUP_COMMIT_MAX_TXNS, 100);
+    handler.setConf(conf);
+    long leaderTxn = openTxn();
+    long txnid = openTxn();
+
+    List<Throwable> errors = new CopyOnWriteArrayList<>();
+    Thread leader;
+    try {
+      leader = commitInThread(handler, leaderTxn, errors);
+      handler.leaderStarted.await();
+      Thread waiting = commitInThread(handler, txnid, errors);
+      waitForPendingCommits(1);
+      waiting.interrupt();
+      join(Arrays.asList(waiting));
+      // The interrupted commit is not pending anymore
+      assertEquals(0, TxnHandler.getPendingCommitsCount());
+      assertEquals(1, errors.size());
+      assertTrue(errors.get(0).getMessage(), errors.get(0) instanceof MetaException &&
+          errors.get(0).getMessage().contains("Interrupted while waiting to commit"));
+    } finally {
+      handler.release.countDown();
+    }
+    join(Arrays.asList(leader));
+    assertEquals(1, errors.size());
+    assertEquals(0, handler.groups.size());
+    assertEquals(Arrays.asList(leaderTxn), handler.committedAlone);
+
+    // The txn is still open, and can be committed again
+    assertEquals(1, TxnDbUtil.countQueryAgent(conf, "select count(*) from TXNS"));
+    txnHandler.commitTxn(new CommitTxnRequest(txnid));
+    assertEquals(0, TxnDbUtil.countQueryAgent(conf, "select count(*) from TXNS"));
+  }
+
+  @Test
+  public void testGroupCommitInterruptedInGroup() throws Exception {
+    GroupCommitTxnHandler handler = new GroupCommitTxnHandler();
+    handler.blockGroups = true;
+    MetastoreConf.setLongVar(conf, MetastoreConf.ConfVars.TXN_GROUP_COMMIT_MAX_TXNS, 100);
+    handler.setConf(conf);
+    long leaderTxn = openTxn();
+    Map<Long, Thread> threads = new HashMap<>();
+
+    List<Throwable> errors = new CopyOnWriteArrayList<>();
+    try {
+      threads.put(leaderTxn, commitInThread(handler, leaderTxn, errors));
+      handler.leaderStarted.await();
+      for (int i = 0; i < 2; i++) {
+        long txnid = openTxn();
+        threads.put(txnid, commitInThread(handler, txnid, errors));
+      }
+      waitForPendingCommits(2);
+    } finally {
+      handler.release.countDown();
+    }
+    try {
+      handler.groupStarted.await();
+      // The second txn of the group waits for the first one's thread to commit the group
+      List<Long> group = handler.groups.get(0);
+      assertEquals(2, group.size());
+      Thread waiting = threads.get(group.get(1));
+      waiting.interrupt();
+      Thread.sleep(100);
+      assertTrue(waiting.isAlive());
+    } finally {
+      handler.releaseGroup.countDown();
+    }
+    join(new ArrayList<>(threads.values()));
+    // The interrupted commit succeeded with its group
+    assertEquals(errors.toString(), 0, errors.size());
+    assertEquals(Arrays.asList(leaderTxn), handler.committedAlone);
+    assertEquals(0, TxnDbUtil.countQueryAgent(conf, "select count(*) from TXNS"));
+  }
+
+  private void lockTable(long txnid, LockType lockType, DataOperationType operationType,
+      String table) throws Exception {
+    LockComponent comp = new LockComponent(lockType, LockLevel.TABLE, "mydb");
+    comp.setTablename(table);
+    comp.setOperationType(operationType);
+    LockRequest req = new LockRequest(Arrays.asList(comp), "me", "localhost");
+    req.setTxnid(txnid);
+    assertEquals(LockState.ACQUIRED, txnHandler.lock(req).getState());
+  }
+
+  @Test
+  public void testCheckLockMutexKeys() throws Exception {
+    TxnHandler handler = (TxnHandler) txnHandler;
+    assertEquals(Arrays.asList(TxnHandler.MUTEX_KEY.CheckLock.name()),
+        new ArrayList<>(handler.getCheckLockMutexKeys(Arrays.asList("mydb", "yourdb"))));
+
+    MetastoreConf.setLongVar(conf, MetastoreConf.ConfVars.TXN_CHECK_LOCK_SHARDS, 16);
+    handler = (TxnHandler) TxnUtils.getTxnStore(conf);
+    SortedSet<String> keys = handler.getCheckLockMutexKeys(Arrays.asList("mydb", "yourdb", "mydb"));
+    assertEquals(Arrays.asList("CheckLock0001", "CheckLock0010"), new ArrayList<>(keys));
+    assertEquals(keys, handler.getCheckLockMutexKeys(Arrays.asList("yourdb", "mydb")));
+    assertEquals(1, handler.getCheckLockMutexKeys(Arrays.asList("mydb")).size());
+
+    // All the shards are locked with the same handle and released together
+    handler.insertCheckLockMutexKeys();
+    TxnStore.MutexAPI api = handler.getMutexAPI();
+    for (int i = 0; i < 2; i++) {
+      TxnStore.MutexAPI.LockHandle handle = null;
+      for (String key : handler.getCheckLockMutexKeys(Arrays.asList("db0", "db1", "db2", "db3"))) {
+        if (handle == null) {
+          handle = api.acquireLock(key);
+        } else {
+          api.acquireLock(key, handle);
+        }
+      }
+      handle.releaseLocks();
+    }
+  }
+
+  @Test
+  public void testConcurrentCheckLock() throws Exception {
+    MetastoreConf.setLongVar(conf, MetastoreConf.ConfVars.TXN_CHECK_LOCK_SHARDS, 16);
+    final TxnStore handler = TxnUtils.getTxnStore(conf);
+    final int numThreads = 4, numLocks = 10, numDbs = 3;
+    // the number of locks held in each database
+    final int[] held = new int[numDbs];
+    final AtomicReference<Throwable> error = new AtomicReference<>();
+    Thread[] threads = new Thread[numThreads];
+    for (int t = 0; t < numThreads; t++) {
+      final int first = t;
+      threads[t] = new Thread(new Runnable() {
+        @Override
+        public void run() {
+          try {
+            for (int i = 0; i < numLocks && error.get() == null; i++) {
+              // Each request locks 2 databases, so it locks 2 shards of the CheckLock mutex.  Only
+              // exclusive locks, since a shared lock may be granted ahead of an earlier waiting one.
+              final int[] dbs = {(first + i) % numDbs, (first + i + 1) % numDbs};
+              List<LockComponent> components = new ArrayList<>(dbs.length);
+              for (int db : dbs) {
+                LockComponent comp = new LockComponent(LockType.EXCLUSIVE, LockLevel.DB, "db" + db);
+                comp.setOperationType(DataOperationType.NO_TXN);
+                components.add(comp);
+              }
+              LockResponse res = handler.lock(new LockRequest(components, "me", "localhost"));
+              try {
+                // Stop waiting once another thread failed, it may never release its lock
+                while (res.getState() != LockState.ACQUIRED && error.get() == null) {
+                  assertEquals(LockState.WAITING, res.getState());
+                  Thread.sleep(10);
+                  res = handler.checkLock(new CheckLockRequest(res.getLockid()));
+                }
+                if (res.getState() != LockState.ACQUIRED) {
+                  return;
+                }
+                synchronized (held) {
+                  for (int db : dbs) {
+                    assertEquals("locks of db" + db, 0, held[db]);
+                    held[db]++;
+                  }
+                }
+                Thread.sleep(5);
+                synchronized (held) {
+                  for (int db : dbs) {
+                    held[db]--;
+                  }
+                }
+              } finally {
+                handler.unlock(new UnlockRequest(res.getLockid()));
+              }
+            }
+          } catch (Throwable e) {
+            error.compareAndSet(null, e);
+          }
+        }
+      });
+    }
+    for (Thread thread : threads) {
+      thread.start();
+    }
+    for (Thread thread : threads) {
+      thread.join(TimeUnit.MINUTES.toMillis(2));
+      assertFalse("checkLock() did not complete", thread.isAlive());
+    }
+    if (error.get() != null) {
+      throw new AssertionError(error.get());
+    }
+    ShowLocksResponse locks = handler.showLocks(new ShowLocksRequest());
+    assertEquals(0, locks.getLocksSize());
+  }
+
   @Before
   public void setUp() throws Exception {
     TxnDbUtil.prepDb(conf);
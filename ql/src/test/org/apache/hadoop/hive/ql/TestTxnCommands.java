@@ -45,6 +45,7 @@
 
 import java.io.File;
 import java.io.FileOutputStream;
+import java.util.Arrays;
 import java.util.List;
 import java.util.Timer;
 import java.util.TimerTask;
@@ -834,4 +835,31 @@ public void testMoreBucketsThanReducers2() throws Exception {
     int[][] expected = {{0, -1},{0, -1}, {1, -1}, {1, -1}, {2, -1}, {2, -1}, {3, -1}, {3, -1}};
     Assert.assertEquals(stringifyValues(expected), r);
   }
+
+  @Test
+  public void testIncrementalMaterializedViewRebuild() throws Exception {
+    hiveConf.setBoolVar(HiveConf.ConfVars.HIVE_MATERIALIZED_VIEW_REBUILD_INCREMENTAL, true);
+    runStatementOnDriver("drop materialized view if exists mv_agg");
+    runStatementOnDriver("insert into " + Table.ACIDTBL + " values(1,2),(1,3),(2,4)");
+    runStatementOnDriver("create materialized view mv_agg as select a, sum(b), count(*), " +
+      "max(b) from " + Table.ACIDTBL + " where b > 0 group by a");
+    runStatementOnDriver("insert into " + Table.ACIDTBL + " values(1,5),(3,6),(3,-1)");
+    //only the new rows are aggregated and merged into the view
+    List<String> r = runStatementOnDriver("explain alter materialized view mv_agg rebuild");
+    Assert.assertTrue(r.toString(), r.toString().contains("Union"));
+    runStatementOnDriver("alter materialized view mv_agg rebuild");
+    r = runStatementOnDriver("select * from mv_agg order by a");
+    Assert.assertEquals(Arrays.asList("1\t10\t3\t5", "2\t4\t1\t4", "3\t6\t1\t6"), r);
+
+    //a delete makes it rebuild fully
+    runStatementOnDriver("delete from " + Table.ACIDTBL + " where a = 2");
+    r = runStatementOnDriver("explain alter materialized view mv_agg rebuild");
+    Assert.assertFalse(r.toString(), r.toString().contains("Union"));
+    runStatementOnDriver("alter materialized view mv_agg rebuild");
+    runStatementOnDriver("insert into " + Table.ACIDTBL + " values(3,7)");
+    runStatementOnDriver("alter materialized view mv_agg rebuild");
+    r = runStatementOnDriver("select * from mv_agg order by a");
+    Assert.assertEquals(Arrays.asList("1\t10\t3\t5", "3\t13\t2\t7"), r);
+    runStatementOnDriver("drop materialized view mv_agg");
+  }
 }
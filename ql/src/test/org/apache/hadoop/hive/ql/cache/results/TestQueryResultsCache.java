@@ -0,0 +1,263 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.hadoop.hive.ql.cache.results;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+
+import org.apache.hadoop.fs.FSDataOutputStream;
+import org.apache.hadoop.fs.FileSystem;
+import org.apache.hadoop.fs.Path;
+import org.apache.hadoop.hive.conf.HiveConf;
+import org.apache.hadoop.hive.metastore.api.FieldSchema;
+import org.apache.hadoop.hive.ql.Driver;
+import org.apache.hadoop.hive.ql.hooks.ReadEntity;
+import org.apache.hadoop.hive.ql.plan.FetchWork;
+import org.apache.hadoop.hive.ql.plan.TableDesc;
+import org.apache.hadoop.hive.ql.session.SessionState;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import static org.junit.Assert.*;
+
+public class TestQueryResultsCache {
+
+  @Rule
+  public TemporaryFolder folder = new TemporaryFolder();
+
+  private HiveConf conf;
+  private FileSystem fs;
+  private Path resultsRoot;
+  private QueryResultsCache cache;
+  private int resultsCount;
+
+  @Before
+  public void setUp() throws Exception {
+    conf = new HiveConf(Driver.class);
+    conf.setVar(HiveConf.ConfVars.HIVE_QUERY_RESULTS_CACHE_DIRECTORY,
+        new Path(folder.newFolder("cache").getAbsolutePath()).toUri().toString());
+    conf.setVar(HiveConf.ConfVars.HIVE_QUERY_RESULTS_CACHE_MAX_SIZE, "250");
+    conf.setVar(HiveConf.ConfVars.HIVE_QUERY_RESULTS_CACHE_MAX_ENTRY_SIZE, "200");
+    conf.setVar(HiveConf.ConfVars.HIVE_QUERY_RESULTS_CACHE_INVALIDATION_INTERVAL, "0s");
+    QueryResultsCache.initialize(conf);
+    cache = QueryResultsCache.getInstance();
+    fs = FileSystem.getLocal(conf);
+    resultsRoot = new Path(folder.newFolder("results").getAbsolutePath());
+  }
+
+  @After
+  public void tearDown() {
+    QueryResultsCache.shutdown();
+  }
+
+  private Path writeResults(int size) throws Exception {
+    Path dir = new Path(resultsRoot, "query" + resultsCount++);
+    try (FSDataOutputStream out = fs.create(new Path(dir, "000000_0"))) {
+      out.write(new byte[size]);
+    }
+    return fs.makeQualified(dir);
+  }
+
+  private static QueryResultsCache.QueryInfo queryInfo(String query, String table,
+      String ddlTime) {
+    Map<String, String> snapshot = new HashMap<String, String>();
+    snapshot.put(table, ddlTime);
+    return new QueryResultsCache.QueryInfo(new QueryResultsCache.LookupInfo(query, snapshot),
+        Collections.<FieldSchema>emptyList(), new HashSet<ReadEntity>(), null);
+  }
+
+  private QueryResultsCache.CacheEntry add(String query, String table, String ddlTime,
+      int size) throws Exception {
+    FetchWork fetchWork = new FetchWork(writeResults(size), new TableDesc(), 10);
+    return cache.addToCache(queryInfo(query, table, ddlTime), fetchWork);
+  }
+
+  @Test
+  public void testAddAndLookup() throws Exception {
+    Path results = writeResults(100);
+    QueryResultsCache.CacheEntry entry = cache.addToCache(
+        queryInfo("q1", "default.t1", "1"), new FetchWork(results, new TableDesc(), 10));
+    assertNotNull(entry);
+    entry.releaseReader();
+
+    // The results were moved into the cache.
+    assertFalse(fs.exists(results));
+    assertTrue(fs.exists(entry.getCachedResultsPath()));
+    assertEquals(100, cache.getCacheSize());
+    assertEquals(entry.getCachedResultsPath(), entry.getFetchWork().getTblDir());
+    assertEquals(10, entry.getFetchWork().getLimit());
+
+    QueryResultsCache.CacheEntry found =
+        cache.lookup(queryInfo("q1", "default.t1", "1").getLookupInfo());
+    assertSame(entry, found);
+    found.releaseReader();
+    assertNull(cache.lookup(queryInfo("q2", "default.t1", "1").getLookupInfo()));
+  }
+
+  @Test
+  public void testTableChanged() throws Exception {
+    QueryResultsCache.CacheEntry entry = add("q1", "default.t1", "1", 100);
+    entry.releaseReader();
+
+    assertNull(cache.lookup(queryInfo("q1", "default.t1", "2").getLookupInfo()));
+    assertFalse(entry.isValid());
+    assertFalse(fs.exists(entry.getCachedResultsPath()));
+    assertEquals(0, cache.size());
+    assertEquals(0, cache.getCacheSize());
+  }
+
+  @Test
+  public void testInvalidateTable() throws Exception {
+    QueryResultsCache.CacheEntry entry1 = add("q1", "default.t1", "1", 10);
+    QueryResultsCache.CacheEntry entry2 = add("q2", "default.t2", "1", 10);
+    entry1.releaseReader();
+    entry2.releaseReader();
+
+    cache.invalidateTable("DEFAULT", "T1");
+    assertFalse(entry1.isValid());
+    assertTrue(entry2.isValid());
+    assertNull(cache.lookup(queryInfo("q1", "default.t1", "1").getLookupInfo()));
+
+    cache.invalidateDatabase("default");
+    assertFalse(entry2.isValid());
+    assertEquals(0, cache.size());
+  }
+
+  @Test
+  public void testEviction() throws Exception {
+    QueryResultsCache.CacheEntry entry1 = add("q1", "default.t1", "1", 100);
+    QueryResultsCache.CacheEntry entry2 = add("q2", "default.t1", "1", 100);
+    entry1.releaseReader();
+    entry2.releaseReader();
+
+    // Makes q2 the least recently used entry.
+    cache.lookup(queryInfo("q1", "default.t1", "1").getLookupInfo()).releaseReader();
+
+    QueryResultsCache.CacheEntry entry3 = add("q3", "default.t1", "1", 100);
+    entry3.releaseReader();
+    assertTrue(entry1.isValid());
+    assertFalse(entry2.isValid());
+    assertTrue(entry3.isValid());
+    assertEquals(200, cache.getCacheSize());
+
+    // Too large to be cached; the results stay where they are.
+    assertNull(add("q4", "default.t1", "1", 201));
+    assertTrue(fs.exists(new Path(resultsRoot, "query3")));
+  }
+
+  @Test
+  public void testReadersKeepResults() throws Exception {
+    QueryResultsCache.CacheEntry entry = add("q1", "default.t1", "1", 100);
+    QueryResultsCache.CacheEntry found =
+        cache.lookup(queryInfo("q1", "default.t1", "1").getLookupInfo());
+
+    cache.invalidateTable("default", "t1");
+    assertFalse(entry.isValid());
+    assertTrue(fs.exists(entry.getCachedResultsPath()));
+
+    entry.releaseReader();
+    assertTrue(fs.exists(entry.getCachedResultsPath()));
+    found.releaseReader();
+    assertFalse(fs.exists(entry.getCachedResultsPath()));
+  }
+
+  @Test
+  public void testQueryUsesCache() throws Exception {
+    conf.setBoolVar(HiveConf.ConfVars.HIVE_QUERY_RESULTS_CACHE_ENABLED, true);
+    conf.setVar(HiveConf.ConfVars.HIVE_QUERY_RESULTS_CACHE_MAX_SIZE, "1Mb");
+    conf.setVar(HiveConf.ConfVars.HIVE_QUERY_RESULTS_CACHE_MAX_ENTRY_SIZE, "1Mb");
+    conf.setBoolVar(HiveConf.ConfVars.HIVE_SUPPORT_CONCURRENCY, false);
+    conf.setVar(HiveConf.ConfVars.HIVE_AUTHORIZATION_MANAGER,
+        "org.apache.hadoop.hive.ql.security.authorization.plugin.sqlstd.SQLStdHiveAuthorizerFactory");
+    QueryResultsCache.shutdown();
+    QueryResultsCache.initialize(conf);
+    cache = QueryResultsCache.getInstance();
+    SessionState.start(conf);
+    Driver driver = new Driver(conf);
+    try {
+      assertEquals(0, driver.run("drop table if exists results_cache_t1").getResponseCode());
+      assertEquals(0, driver.run("create table results_cache_t1 (a int, b string)")
+          .getResponseCode());
+      assertEquals(0, driver.run("insert into results_cache_t1 values (1, 'one'), (2, 'two')")
+          .getResponseCode());
+
+      String query = "select a, count(*) from results_cache_t1 group by a order by a";
+      assertEquals("[1\t1, 2\t1]", runQuery(driver, query).toString());
+      assertEquals(1, cache.size());
+
+      // Served from the cache: no tasks to run.
+      assertEquals(0, driver.compile(query.toUpperCase().replace("RESULTS_CACHE_T1",
+          "results_cache_t1")));
+      assertTrue(driver.getPlan().getRootTasks().isEmpty());
+      assertEquals("[1\t1, 2\t1]", runQuery(driver, query).toString());
+
+      // Non deterministic queries are not cached.
+      runQuery(driver, "select a, rand() from results_cache_t1");
+      assertEquals(1, cache.size());
+
+      // Changing the table invalidates the results.
+      assertEquals(0, driver.run("insert into results_cache_t1 values (3, 'three')")
+          .getResponseCode());
+      assertEquals("[1\t1, 2\t1, 3\t1]", runQuery(driver, query).toString());
+
+      // A truncate keeps the DDL time of the table, but not the modification time of its
+      // directory. The local file system may only keep it to the second.
+      Thread.sleep(1000);
+      assertEquals(0, driver.run("truncate table results_cache_t1").getResponseCode());
+      assertEquals("[]", runQuery(driver, query).toString());
+
+      // So do the inserts into partitions, and the added partitions.
+      assertEquals(0, driver.run("drop table if exists results_cache_t2").getResponseCode());
+      assertEquals(0, driver.run("create table results_cache_t2 (a int) partitioned by (p int)")
+          .getResponseCode());
+      assertEquals(0, driver.run("insert into results_cache_t2 partition (p = 1) values (1)")
+          .getResponseCode());
+      String partitionQuery = "select count(*) from results_cache_t2";
+      assertEquals("[1]", runQuery(driver, partitionQuery).toString());
+      assertEquals(0, driver.compile(partitionQuery));
+      assertTrue(driver.getPlan().getRootTasks().isEmpty());
+      assertEquals("[1]", runQuery(driver, partitionQuery).toString());
+      Thread.sleep(1000);
+      assertEquals(0, driver.run("insert into results_cache_t2 partition (p = 1) values (2)")
+          .getResponseCode());
+      assertEquals("[2]", runQuery(driver, partitionQuery).toString());
+      assertEquals(0, driver.run("insert into results_cache_t2 partition (p = 2) values (3)")
+          .getResponseCode());
+      assertEquals("[3]", runQuery(driver, partitionQuery).toString());
+    } finally {
+      driver.run("drop table if exists results_cache_t1");
+      driver.run("drop table if exists results_cache_t2");
+      driver.close();
+    }
+  }
+
+  private static List<String> runQuery(Driver driver, String query) throws Exception {
+    assertEquals(0, driver.run(query).getResponseCode());
+    List<String> results = new ArrayList<String>();
+    driver.getResults(results);
+    return results;
+  }
+}
@@ -36,10 +36,12 @@
 import org.apache.hadoop.hive.ql.io.IOContextMap;
 import org.apache.hadoop.hive.ql.optimizer.ConvertJoinMapJoin;
 import org.apache.hadoop.hive.ql.parse.TypeCheckProcFactory;
+import org.apache.hadoop.hive.ql.plan.AggregationDesc;
 import org.apache.hadoop.hive.ql.plan.CollectDesc;
 import org.apache.hadoop.hive.ql.plan.ExprNodeColumnDesc;
 import org.apache.hadoop.hive.ql.plan.ExprNodeConstantDesc;
 import org.apache.hadoop.hive.ql.plan.ExprNodeDesc;
+import org.apache.hadoop.hive.ql.plan.GroupByDesc;
 import org.apache.hadoop.hive.ql.plan.MapredWork;
 import org.apache.hadoop.hive.ql.plan.OperatorDesc;
 import org.apache.hadoop.hive.ql.plan.PartitionDesc;
@@ -49,6 +51,8 @@
 import org.apache.hadoop.hive.ql.plan.TableDesc;
 import org.apache.hadoop.hive.ql.processors.CommandProcessorResponse;
 import org.apache.hadoop.hive.ql.session.SessionState;
+import org.apache.hadoop.hive.ql.udf.generic.GenericUDAFEvaluator;
+import org.apache.hadoop.hive.ql.udf.generic.GenericUDAFSum;
 import org.apache.hadoop.hive.serde2.objectinspector.InspectableObject;
 import org.apache.hadoop.hive.serde2.objectinspector.ObjectInspector;
 import org.apache.hadoop.hive.serde2.objectinspector.ObjectInspectorFactory;
@@ -56,7 +60,9 @@
 import org.apache.hadoop.hive.serde2.objectinspector.StructField;
 import org.apache.hadoop.hive.serde2.objectinspector.StructObjectInspector;
 import org.apache.hadoop.hive.serde2.objectinspector.primitive.PrimitiveObjectInspectorFactory;
+import org.apache.hadoop.hive.serde2.typeinfo.TypeInfo;
 import org.apache.hadoop.hive.serde2.typeinfo.TypeInfoFactory;
+import org.apache.hadoop.io.LongWritable;
 import org.apache.hadoop.io.Text;
 import org.apache.hadoop.mapred.InputSplit;
 import org.apache.hadoop.mapred.JobConf;
@@ -359,6 +365,73 @@ public void testMapOperator() throws Throwable {
     }
   }
 
+  public void testGroupByOperatorHashAggrRecheck() throws Throwable {
+    HiveConf hconf = new HiveConf();
+    HiveConf.setIntVar(hconf, HiveConf.ConfVars.HIVEGROUPBYMAPINTERVAL, 1000);
+    HiveConf.setFloatVar(hconf, HiveConf.ConfVars.HIVEMAPAGGRHASHMINREDUCTION, 0.5f);
+    HiveConf.setLongVar(hconf, HiveConf.ConfVars.HIVEMAPAGGRHASHRECHECKINTERVAL, 2048);
+
+    // select key, sum(value) group by key
+    ArrayList<ExprNodeDesc> keys = new ArrayList<ExprNodeDesc>();
+    keys.add(new ExprNodeColumnDesc(TypeInfoFactory.longTypeInfo, "key", "", false));
+    ArrayList<ExprNodeDesc> params = new ArrayList<ExprNodeDesc>();
+    params.add(new ExprNodeColumnDesc(TypeInfoFactory.longTypeInfo, "value", "", false));
+    GenericUDAFEvaluator evaluator = new GenericUDAFSum().getEvaluator(
+        new TypeInfo[] {TypeInfoFactory.longTypeInfo});
+    ArrayList<AggregationDesc> aggs = new ArrayList<AggregationDesc>();
+    aggs.add(new AggregationDesc("sum", evaluator, params, false,
+        GenericUDAFEvaluator.Mode.PARTIAL1));
+    ArrayList<String> outputCols = new ArrayList<String>();
+    outputCols.add("_col0");
+    outputCols.add("_col1");
+    GroupByDesc desc = new GroupByDesc(GroupByDesc.Mode.HASH, outputCols, keys, aggs, 0.5f, 0.9f,
+        null, false, -1, false);
+    CompilationOpContext ctx = new CompilationOpContext();
+    GroupByOperator op = (GroupByOperator) OperatorFactory.get(ctx, desc);
+    CollectOperator cdop = (CollectOperator) OperatorFactory.getAndMakeChild(
+        new CollectDesc(Integer.valueOf(10000)), op);
+
+    List<String> names = Arrays.asList("key", "value");
+    List<ObjectInspector> inspectors = Arrays.<ObjectInspector>asList(
+        PrimitiveObjectInspectorFactory.javaLongObjectInspector,
+        PrimitiveObjectInspectorFactory.javaLongObjectInspector);
+    op.initialize(hconf, new ObjectInspector[] {
+        ObjectInspectorFactory.getStandardStructObjectInspector(names, inspectors)});
+
+    // 3000 distinct keys turn off the hash aggregation, the 10 keys that follow aggregate well.
+    for (long i = 0; i < 3000; i++) {
+      op.process(Arrays.asList(1000 + i, 1L), 0);
+    }
+    for (long i = 0; i < 30000; i++) {
+      op.process(Arrays.asList(i % 10, 1L), 0);
+    }
+    op.close(false);
+
+    Map<Long, Long> sums = new HashMap<Long, Long>();
+    InspectableObject io = new InspectableObject();
+    for (cdop.retrieve(io); io.o != null; cdop.retrieve(io)) {
+      StructObjectInspector soi = (StructObjectInspector) io.oi;
+      List<Object> fields = soi.getStructFieldsDataAsList(io.o);
+      long key = ((LongWritable) fields.get(0)).get();
+      Long previousSum = sums.get(key);
+      sums.put(key, (previousSum == null ? 0 : previousSum) + ((LongWritable) fields.get(1)).get());
+    }
+    assertEquals(3010, sums.size());
+    for (Map.Entry<Long, Long> entry : sums.entrySet()) {
+      assertEquals(entry.getKey() < 10 ? 3000L : 1L, entry.getValue().longValue());
+    }
+
+    // The 1000th row turns off the hash aggregation after 999 rows went to the hash table, it is
+    // turned on again 2048 rows later.
+    Map<String, Long> stats = op.getStats();
+    assertEquals(2L, (long) stats.get(GroupByOperator.Counter.HASH_AGGR_MODE_SWITCHES.name()));
+    assertEquals(2048L, (long) stats.get(GroupByOperator.Counter.HASH_AGGR_BYPASSED_ROWS.name()));
+    assertEquals(33000L - 2048L,
+        (long) stats.get(GroupByOperator.Counter.HASH_AGGR_INPUT_ROWS.name()));
+    assertEquals(999L + 10L,
+        (long) stats.get(GroupByOperator.Counter.HASH_AGGR_OUTPUT_ROWS.name()));
+  }
+
   @Test
   public void testFetchOperatorContextQuoting() throws Exception {
     JobConf conf = new JobConf();
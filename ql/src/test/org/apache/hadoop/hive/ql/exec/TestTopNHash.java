@@ -0,0 +1,166 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.hadoop.hive.ql.exec;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+import org.apache.hadoop.hive.conf.HiveConf;
+import org.apache.hadoop.hive.ql.io.HiveKey;
+import org.apache.hadoop.hive.ql.plan.ReduceSinkDesc;
+import org.apache.hadoop.io.BytesWritable;
+import org.junit.Test;
+
+public class TestTopNHash {
+
+  private static class Collector implements TopNHash.BinaryCollector {
+    private final List<Integer> keys = new ArrayList<Integer>();
+
+    @Override
+    public void collect(byte[] key, byte[] value, int hash) {
+      // The value is the part of the key that is compared.
+      assertTrue(Arrays.equals(Arrays.copyOf(key, 4), value));
+      keys.add(ByteBuffer.wrap(key).getInt());
+    }
+  }
+
+  private final Random random = new Random(7717);
+
+  private TopNHash createTopNHash(int topN, boolean isMapGroupBy, Collector collector) {
+    HiveConf hconf = new HiveConf();
+    HiveConf.setVar(hconf, HiveConf.ConfVars.HIVE_EXECUTION_ENGINE, "mr");
+    TopNHash topNHash = new TopNHash();
+    topNHash.initialize(topN, 0.5f, isMapGroupBy, collector, new ReduceSinkDesc(), hconf);
+    return topNHash;
+  }
+
+  // The key starts with the value in big endian, so that the keys sort like the values.
+  private HiveKey createKey(int value) {
+    byte[] bytes = new byte[4 + random.nextInt(100)];
+    random.nextBytes(bytes);
+    ByteBuffer.wrap(bytes).putInt(value);
+    HiveKey key = new HiveKey(bytes, value);
+    key.setDistKeyLength(4);
+    return key;
+  }
+
+  private int store(TopNHash topNHash, Collector collector, HiveKey key) throws Exception {
+    int index = topNHash.tryStoreKey(key, false);
+    if (index == TopNHash.FORWARD) {
+      collector.collect(Arrays.copyOf(key.getBytes(), 4), Arrays.copyOf(key.getBytes(), 4), 0);
+    } else if (index >= 0) {
+      topNHash.storeValue(index, key.hashCode(), new BytesWritable(Arrays.copyOf(key.getBytes(), 4)));
+    }
+    return index;
+  }
+
+  @Test
+  public void testOrderByLimit() throws Exception {
+    Collector collector = new Collector();
+    TopNHash topNHash = createTopNHash(100, false, collector);
+    List<Integer> values = new ArrayList<Integer>();
+    for (int i = 0; i < 10000; i++) {
+      values.add(i / 2); // every key twice
+    }
+    Collections.shuffle(values, random);
+    for (int value : values) {
+      assertTrue(store(topNHash, collector, createKey(value)) != TopNHash.FORWARD);
+    }
+    topNHash.flush();
+    Collections.sort(collector.keys);
+    List<Integer> expected = new ArrayList<Integer>();
+    for (int i = 0; i < 100; i++) {
+      expected.add(i / 2);
+    }
+    assertEquals(expected, collector.keys);
+  }
+
+  @Test
+  public void testGroupByLimit() throws Exception {
+    Collector collector = new Collector();
+    TopNHash topNHash = createTopNHash(3, true, collector);
+    int[] values = { 5, 1, 1, 3, 2, 4, 2, 0 };
+    int[] results = new int[values.length];
+    for (int i = 0; i < values.length; i++) {
+      results[i] = store(topNHash, collector, createKey(values[i]));
+    }
+    // The second 1 and 2 are forwarded, 4 is excluded, 0 evicts 3.
+    assertEquals(TopNHash.FORWARD, results[2]);
+    assertEquals(TopNHash.EXCLUDE, results[5]);
+    assertEquals(TopNHash.FORWARD, results[6]);
+    topNHash.flush();
+    Collections.sort(collector.keys);
+    assertEquals(Arrays.asList(0, 1, 1, 2, 2), collector.keys);
+  }
+
+  @Test
+  public void testUsage() throws Exception {
+    Collector collector = new Collector();
+    TopNHash topNHash = createTopNHash(3, false, collector);
+    // The arrays of the keys and values are only allocated for the first row.
+    assertEquals(0, topNHash.usage);
+    store(topNHash, collector, createKey(3));
+    // The usage is the size of the arrays, however few bytes they hold.
+    assertEquals(2 * 4096, topNHash.usage);
+    // The array of the values is given back when they are flushed.
+    topNHash.flush();
+    assertEquals(4096, topNHash.usage);
+
+    // Near the threshold, the arrays only grow to the bytes they need, so the usage goes over
+    // the threshold by the bytes of the last row at most, and the next row flushes.
+    topNHash = createTopNHash(3, false, collector);
+    topNHash.threshold = 300;
+    for (int i = 0; i < 10; i++) {
+      HiveKey key = createKey(10 - i);
+      if (store(topNHash, collector, key) == TopNHash.FORWARD) {
+        break;
+      }
+      assertTrue(topNHash.usage + " > 300 + " + key.getLength(),
+          topNHash.usage <= 300 + key.getLength() + 4);
+    }
+  }
+
+  @Test
+  public void testIsExcluded() throws Exception {
+    Collector collector = new Collector();
+    TopNHash rowHash = createTopNHash(5, false, collector);
+    TopNHash groupHash = createTopNHash(5, true, collector);
+    for (int value = 0; value < 5; value++) {
+      assertFalse(rowHash.isExcluded(createKey(value), 1));
+      store(rowHash, collector, createKey(value));
+      store(groupHash, collector, createKey(value));
+    }
+    assertTrue(rowHash.isExcluded(createKey(10), 1024));
+    assertTrue(groupHash.isExcluded(createKey(10), 1024));
+    // The rows of a key equal to the biggest one are forwarded for group by.
+    assertTrue(rowHash.isExcluded(createKey(4), 1));
+    assertFalse(groupHash.isExcluded(createKey(4), 1));
+    assertFalse(rowHash.isExcluded(createKey(3), 1));
+    assertFalse(groupHash.isExcluded(createKey(3), 1));
+    assertTrue(createTopNHash(0, false, collector).isExcluded(createKey(0), 1));
+  }
+}
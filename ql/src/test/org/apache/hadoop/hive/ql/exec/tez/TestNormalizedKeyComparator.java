@@ -0,0 +1,108 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.hadoop.hive.ql.exec.tez;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+import org.apache.hadoop.hive.serde2.ByteStream.Output;
+import org.apache.hadoop.hive.serde2.binarysortable.fast.BinarySortableSerializeWrite;
+import org.apache.hadoop.io.BytesWritable;
+import org.junit.Test;
+
+public class TestNormalizedKeyComparator {
+
+  private final NormalizedKeyComparator comparator = new NormalizedKeyComparator();
+
+  private final Random random = new Random(2281);
+
+  private void verifyOrder(List<BytesWritable> keys) {
+    Collections.sort(keys, comparator);
+    for (int i = 1; i < keys.size(); i++) {
+      BytesWritable previous = keys.get(i - 1);
+      BytesWritable current = keys.get(i);
+      // The sorter compares the proxies as unsigned ints.
+      int proxyCompare = Integer.compare(comparator.getProxy(previous) ^ Integer.MIN_VALUE,
+          comparator.getProxy(current) ^ Integer.MIN_VALUE);
+      assertTrue(proxyCompare <= 0);
+      if (proxyCompare < 0) {
+        assertTrue(comparator.compare(previous, current) < 0);
+      }
+    }
+  }
+
+  @Test
+  public void testBinarySortableKeys() throws Exception {
+    List<BytesWritable> keys = new ArrayList<BytesWritable>();
+    for (String sortOrder : new String[] { "++", "-+", "+-" }) {
+      BinarySortableSerializeWrite serializeWrite = new BinarySortableSerializeWrite(
+          new boolean[] { sortOrder.charAt(0) == '-', sortOrder.charAt(1) == '-' },
+          new byte[] { 0, 0 }, new byte[] { 1, 1 });
+      Output output = new Output();
+      for (int i = 0; i < 2000; i++) {
+        output.reset();
+        serializeWrite.set(output);
+        if (random.nextInt(20) == 0) {
+          serializeWrite.writeNull();
+        } else {
+          serializeWrite.writeInt(random.nextInt(100) - 50);
+        }
+        byte[] value = new byte[random.nextInt(8)];
+        random.nextBytes(value);
+        serializeWrite.writeString(value);
+        keys.add(new BytesWritable(Arrays.copyOf(output.getData(), output.getLength())));
+      }
+    }
+    verifyOrder(keys);
+
+    // Ints that differ in their high bits only need the proxy.
+    BytesWritable smaller = keys.get(0);
+    int distinct = 0;
+    for (BytesWritable key : keys) {
+      if (comparator.getProxy(key) != comparator.getProxy(smaller)) {
+        distinct++;
+      }
+      smaller = key;
+    }
+    assertTrue(distinct > 100);
+  }
+
+  @Test
+  public void testArbitraryKeys() throws Exception {
+    List<BytesWritable> keys = new ArrayList<BytesWritable>();
+    keys.add(new BytesWritable(new byte[0]));
+    for (int i = 0; i < 5000; i++) {
+      byte[] key = new byte[random.nextInt(7)];
+      random.nextBytes(key);
+      if (key.length > 0 && random.nextBoolean()) {
+        key[0] = (byte) new int[] { 0x00, 0x01, 0xFE, 0xFF }[random.nextInt(4)];
+      }
+      keys.add(new BytesWritable(key));
+    }
+    verifyOrder(keys);
+    assertEquals(0, comparator.getProxy(new BytesWritable(new byte[0])));
+    assertEquals(0, comparator.getProxy(new BytesWritable(new byte[] { 0, 0 })));
+  }
+}
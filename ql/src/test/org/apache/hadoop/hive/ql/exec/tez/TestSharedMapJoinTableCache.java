@@ -0,0 +1,154 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.hadoop.hive.ql.exec.tez;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.concurrent.Callable;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.commons.io.FileUtils;
+import org.apache.commons.lang3.tuple.ImmutablePair;
+import org.apache.commons.lang3.tuple.Pair;
+import org.apache.hadoop.hive.conf.HiveConf;
+import org.apache.hadoop.hive.ql.exec.persistence.MapJoinTableContainer;
+import org.apache.hadoop.hive.ql.exec.persistence.MapJoinTableContainerSerDe;
+import org.apache.hadoop.hive.ql.plan.MapJoinDesc;
+import org.junit.Test;
+
+public class TestSharedMapJoinTableCache {
+
+  private final AtomicInteger loads = new AtomicInteger();
+
+  private Callable<Pair<MapJoinTableContainer[], MapJoinTableContainerSerDe[]>> loader(
+      final long size) {
+    return new Callable<Pair<MapJoinTableContainer[], MapJoinTableContainerSerDe[]>>() {
+      @Override
+      public Pair<MapJoinTableContainer[], MapJoinTableContainerSerDe[]> call() {
+        loads.incrementAndGet();
+        MapJoinTableContainer container = mock(MapJoinTableContainer.class);
+        when(container.getEstimatedMemorySize()).thenReturn(size);
+        return new ImmutablePair<MapJoinTableContainer[], MapJoinTableContainerSerDe[]>(
+            new MapJoinTableContainer[] { null, container }, new MapJoinTableContainerSerDe[2]);
+      }
+    };
+  }
+
+  @Test
+  public void testSharing() throws Exception {
+    SharedMapJoinTableCache cache = new SharedMapJoinTableCache(100);
+    Pair<MapJoinTableContainer[], MapJoinTableContainerSerDe[]> first =
+        cache.retrieveAsync("a", loader(40)).get();
+    assertTrue(cache.acquire("a", first));
+    Pair<MapJoinTableContainer[], MapJoinTableContainerSerDe[]> second =
+        cache.retrieve("a", loader(40));
+    assertSame(first, second);
+    assertTrue(cache.acquire("a", second));
+    assertEquals(1, loads.get());
+    assertEquals(40, cache.getTotalSize());
+
+    // The removed hash tables are loaded again, and the old ones are not released anymore.
+    cache.remove("a", first);
+    assertEquals(0, cache.getTotalSize());
+    Pair<MapJoinTableContainer[], MapJoinTableContainerSerDe[]> third =
+        cache.retrieve("a", loader(40));
+    assertEquals(2, loads.get());
+    assertTrue(cache.acquire("a", third));
+    cache.release("a", first);
+    cache.release("a", second);
+    assertEquals(false, cache.acquire("a", first));
+    assertTrue(cache.contains("a"));
+  }
+
+  @Test
+  public void testEviction() throws Exception {
+    SharedMapJoinTableCache cache = new SharedMapJoinTableCache(100);
+    Pair<MapJoinTableContainer[], MapJoinTableContainerSerDe[]> a =
+        cache.retrieve("a", loader(40));
+    assertTrue(cache.acquire("a", a));
+    Pair<MapJoinTableContainer[], MapJoinTableContainerSerDe[]> b =
+        cache.retrieve("b", loader(40));
+    assertTrue(cache.acquire("b", b));
+    cache.release("b", b);
+    assertEquals(80, cache.getTotalSize());
+
+    // b is the least recently used hash table that is not used by a task.
+    cache.retrieve("c", loader(40));
+    assertTrue(cache.contains("a"));
+    assertEquals(false, cache.contains("b"));
+    assertTrue(cache.contains("c"));
+    assertEquals(80, cache.getTotalSize());
+
+    // The hash tables in use are kept over the size until they are released.
+    Pair<MapJoinTableContainer[], MapJoinTableContainerSerDe[]> d =
+        cache.retrieve("d", loader(90));
+    assertTrue(cache.acquire("d", d));
+    assertEquals(false, cache.contains("c"));
+    assertEquals(130, cache.getTotalSize());
+    cache.release("a", a);
+    assertEquals(false, cache.contains("a"));
+    assertEquals(90, cache.getTotalSize());
+
+    // The hash tables that do not fit are only kept until the next eviction.
+    cache.retrieve("e", loader(200));
+    assertTrue(cache.contains("e"));
+    cache.release("d", d);
+    assertEquals(false, cache.contains("e"));
+    assertTrue(cache.contains("d"));
+    assertEquals(90, cache.getTotalSize());
+  }
+
+  @Test
+  public void testCacheKey() throws Exception {
+    File dir = new File(System.getProperty("test.tmp.dir", "target/tmp"),
+        "TestSharedMapJoinTableCache");
+    FileUtils.deleteDirectory(dir);
+    assertTrue(dir.mkdirs());
+    File file = new File(dir, "000000_0");
+    Files.write(file.toPath(), "abc".getBytes());
+    HiveConf conf = new HiveConf();
+    MapJoinDesc desc = new MapJoinDesc();
+    assertEquals(null, SharedMapJoinTableCache.getCacheKey(desc, conf));
+    desc.setSmallTableSignature("signature");
+    desc.setSmallTableLocations(Arrays.asList(dir.toURI().toString()));
+    String key = SharedMapJoinTableCache.getCacheKey(desc, conf);
+    assertTrue(key.contains("signature"));
+    assertEquals(key, SharedMapJoinTableCache.getCacheKey(desc, conf));
+    conf.setBoolVar(HiveConf.ConfVars.HIVEUSEHYBRIDGRACEHASHJOIN,
+        !conf.getBoolVar(HiveConf.ConfVars.HIVEUSEHYBRIDGRACEHASHJOIN));
+    String hybridKey = SharedMapJoinTableCache.getCacheKey(desc, conf);
+    assertEquals(false, key.equals(hybridKey));
+
+    // An overwrite with the same file name and size, then a truncate, change the key.
+    Files.write(file.toPath(), "def".getBytes());
+    assertTrue(file.setLastModified(file.lastModified() + 2000));
+    String overwrittenKey = SharedMapJoinTableCache.getCacheKey(desc, conf);
+    assertEquals(false, hybridKey.equals(overwrittenKey));
+    assertTrue(file.delete());
+    assertEquals(false, overwrittenKey.equals(SharedMapJoinTableCache.getCacheKey(desc, conf)));
+    FileUtils.deleteDirectory(dir);
+  }
+}
@@ -0,0 +1,168 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.hadoop.hive.ql.exec.vector;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+import java.io.ByteArrayInputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Properties;
+
+import org.apache.hadoop.hive.conf.HiveConf;
+import org.apache.hadoop.hive.serde.serdeConstants;
+import org.apache.hadoop.hive.serde2.objectinspector.StructObjectInspector;
+import org.apache.hadoop.hive.serde2.thrift.ColumnBuffer;
+import org.apache.hadoop.hive.serde2.thrift.ThriftJDBCBinarySerDe;
+import org.apache.hadoop.io.BytesWritable;
+import org.apache.hadoop.io.Writable;
+import org.apache.hive.service.rpc.thrift.TColumn;
+import org.apache.thrift.protocol.TCompactProtocol;
+import org.apache.thrift.protocol.TProtocol;
+import org.apache.thrift.transport.TIOStreamTransport;
+import org.junit.Test;
+
+/**
+ * Unit test for the vectorized FileSink adding the batches to the column buffers of
+ * ThriftJDBCBinarySerDe, compared with the rows the FileSink serializes otherwise.
+ */
+public class TestVectorFileSinkOperator {
+
+  private static final int COLUMNS = 4;
+
+  private static ThriftJDBCBinarySerDe createSerDe() throws Exception {
+    Properties tbl = new Properties();
+    tbl.setProperty(serdeConstants.LIST_COLUMNS, "a,b,c,d");
+    tbl.setProperty(serdeConstants.LIST_COLUMN_TYPES, "bigint,float,string,binary");
+    ThriftJDBCBinarySerDe serDe = new ThriftJDBCBinarySerDe();
+    serDe.initialize(new HiveConf(), tbl);
+    return serDe;
+  }
+
+  private static List<TColumn> decode(Writable batch) throws Exception {
+    BytesWritable bytes = (BytesWritable) batch;
+    byte[] blob = ThriftJDBCBinarySerDe.uncompress(
+        Arrays.copyOf(bytes.getBytes(), bytes.getLength()));
+    TProtocol protocol =
+        new TCompactProtocol(new TIOStreamTransport(new ByteArrayInputStream(blob)));
+    List<TColumn> columns = new ArrayList<TColumn>();
+    for (int i = 0; i < COLUMNS; i++) {
+      TColumn column = new TColumn();
+      column.read(protocol);
+      columns.add(column);
+    }
+    return columns;
+  }
+
+  private static void setBytes(BytesColumnVector col, int index, String value) {
+    byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+    col.setVal(index, bytes, 0, bytes.length);
+  }
+
+  /**
+   * A batch of 5 rows, of which rows 0, 2 and 4 are selected: a repeating bigint, floats, strings
+   * with nulls and a repeating null binary.
+   */
+  private static VectorizedRowBatch createBatch() {
+    VectorizedRowBatch batch = new VectorizedRowBatch(COLUMNS);
+    LongColumnVector a = new LongColumnVector();
+    a.isRepeating = true;
+    a.vector[0] = 42;
+    a.vector[1] = 7;
+    DoubleColumnVector b = new DoubleColumnVector();
+    float[] floats = {0.1f, 1.3f, 2.7f, 1e-3f, -5.9f};
+    for (int i = 0; i < floats.length; i++) {
+      b.vector[i] = floats[i];
+    }
+    BytesColumnVector c = new BytesColumnVector();
+    c.initBuffer();
+    String[] strings = {"one", "two", null, "four", "five"};
+    for (int i = 0; i < strings.length; i++) {
+      if (strings[i] == null) {
+        c.noNulls = false;
+        c.isNull[i] = true;
+      } else {
+        setBytes(c, i, strings[i]);
+      }
+    }
+    BytesColumnVector d = new BytesColumnVector();
+    d.initBuffer();
+    d.isRepeating = true;
+    d.noNulls = false;
+    d.isNull[0] = true;
+    batch.cols[0] = a;
+    batch.cols[1] = b;
+    batch.cols[2] = c;
+    batch.cols[3] = d;
+    batch.selectedInUse = true;
+    batch.selected[0] = 0;
+    batch.selected[1] = 2;
+    batch.selected[2] = 4;
+    batch.size = 3;
+    return batch;
+  }
+
+  @Test
+  public void testAddColumnsLikeRows() throws Exception {
+    VectorizedRowBatch batch = createBatch();
+
+    // The rows, as the FileSink serializes them when the columns are not added
+    ThriftJDBCBinarySerDe rowSerDe = createSerDe();
+    StructObjectInspector rowObjectInspector =
+        (StructObjectInspector) rowSerDe.getObjectInspector();
+    VectorExtractRow vectorExtractRow = new VectorExtractRow();
+    vectorExtractRow.init(rowObjectInspector, Arrays.asList(0, 1, 2, 3));
+    Object[] row = new Object[COLUMNS];
+    for (int logical = 0; logical < batch.size; logical++) {
+      vectorExtractRow.extractRow(batch, batch.selected[logical], row);
+      assertNull(rowSerDe.serialize(row, rowObjectInspector));
+    }
+    List<TColumn> rowColumns = decode(rowSerDe.serialize(null, rowObjectInspector));
+
+    ThriftJDBCBinarySerDe serDe = createSerDe();
+    long bytes = 0;
+    for (int i = 0; i < COLUMNS; i++) {
+      bytes += VectorFileSinkOperator.addColumn(batch, batch.cols[i], serDe.getColumnBuffer(i));
+    }
+    // "one" and "five"
+    assertEquals(7, bytes);
+    assertNull(serDe.addedRows(batch.size, bytes));
+    List<TColumn> columns = decode(serDe.serialize(null, serDe.getObjectInspector()));
+
+    assertEquals(rowColumns, columns);
+    ColumnBuffer a = new ColumnBuffer(columns.get(0));
+    ColumnBuffer b = new ColumnBuffer(columns.get(1));
+    ColumnBuffer c = new ColumnBuffer(columns.get(2));
+    ColumnBuffer d = new ColumnBuffer(columns.get(3));
+    assertEquals(3, a.size());
+    assertEquals(42L, a.get(2));
+    // The floats are sent as the doubles of their decimal string, not widened
+    assertEquals(0.1, b.get(0));
+    assertEquals(2.7, b.get(1));
+    assertEquals(-5.9, b.get(2));
+    assertEquals("one", c.get(0));
+    assertNull(c.get(1));
+    assertEquals("five", c.get(2));
+    assertNull(d.get(0));
+    assertNull(d.get(2));
+  }
+}
@@ -0,0 +1,359 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.apache.hadoop.hive.ql.exec.vector;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.apache.hadoop.hive.conf.HiveConf;
+import org.apache.hadoop.hive.ql.CompilationOpContext;
+import org.apache.hadoop.hive.ql.exec.Operator;
+import org.apache.hadoop.hive.ql.exec.OperatorFactory;
+import org.apache.hadoop.hive.ql.exec.vector.util.FakeCaptureVectorToRowOutputOperator;
+import org.apache.hadoop.hive.ql.metadata.HiveException;
+import org.apache.hadoop.hive.ql.optimizer.physical.Vectorizer;
+import org.apache.hadoop.hive.ql.plan.AggregationDesc;
+import org.apache.hadoop.hive.ql.plan.ExprNodeColumnDesc;
+import org.apache.hadoop.hive.ql.plan.ExprNodeConstantDesc;
+import org.apache.hadoop.hive.ql.plan.ExprNodeDesc;
+import org.apache.hadoop.hive.ql.plan.GroupByDesc;
+import org.apache.hadoop.hive.ql.plan.OperatorDesc;
+import org.apache.hadoop.hive.ql.plan.VectorGroupByDesc;
+import org.apache.hadoop.hive.ql.plan.VectorGroupByDesc.ProcessingMode;
+import org.apache.hadoop.hive.ql.udf.generic.GenericUDAFCollectList;
+import org.apache.hadoop.hive.ql.udf.generic.GenericUDAFCollectSet;
+import org.apache.hadoop.hive.ql.udf.generic.GenericUDAFComputeStats;
+import org.apache.hadoop.hive.ql.udf.generic.GenericUDAFEvaluator;
+import org.apache.hadoop.hive.ql.udf.generic.GenericUDAFEvaluator.AggregationBuffer;
+import org.apache.hadoop.hive.ql.udf.generic.GenericUDAFEvaluator.Mode;
+import org.apache.hadoop.hive.ql.udf.generic.GenericUDAFPercentileApprox;
+import org.apache.hadoop.hive.serde2.io.DoubleWritable;
+import org.apache.hadoop.hive.serde2.objectinspector.ObjectInspector;
+import org.apache.hadoop.hive.serde2.objectinspector.primitive.PrimitiveObjectInspectorFactory;
+import org.apache.hadoop.hive.serde2.typeinfo.TypeInfo;
+import org.apache.hadoop.hive.serde2.typeinfo.TypeInfoFactory;
+import org.apache.hadoop.hive.serde2.typeinfo.TypeInfoUtils;
+import org.apache.hadoop.io.BytesWritable;
+import org.apache.hadoop.io.LongWritable;
+import org.apache.hadoop.io.Text;
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ * Tests the vectorized aggregations that iterate a data structure: collect_set, collect_list,
+ * percentile_approx and compute_stats.  The group by operators are created by the Vectorizer.
+ */
+public class TestVectorGroupByIterateAggregates {
+
+  private final HiveConf hconf = new HiveConf();
+
+  private static AggregationDesc buildAggregationDesc(String aggregate, Mode mode,
+      GenericUDAFEvaluator evaluator, TypeInfo typeInfo, ExprNodeDesc... constants) {
+    ArrayList<ExprNodeDesc> params = new ArrayList<ExprNodeDesc>();
+    params.add(new ExprNodeColumnDesc(typeInfo, "A", "table", false));
+    params.addAll(Arrays.asList(constants));
+
+    AggregationDesc agg = new AggregationDesc();
+    agg.setGenericUDAFName(aggregate);
+    agg.setMode(mode);
+    agg.setParameters(params);
+    agg.setGenericUDAFEvaluator(evaluator);
+    return agg;
+  }
+
+  /*
+   * Runs a GLOBAL group by with the aggregation over column "A" and returns the result.
+   */
+  private Object aggregate(AggregationDesc agg, VectorizedRowBatch... batches)
+      throws HiveException {
+    VectorizationContext ctx = new VectorizationContext("name", Arrays.asList("A"));
+
+    GroupByDesc desc = new GroupByDesc();
+    desc.setOutputColumnNames(new ArrayList<String>(Arrays.asList("_col0")));
+    desc.setAggregators(new ArrayList<AggregationDesc>(Arrays.asList(agg)));
+    VectorGroupByDesc vectorDesc = new VectorGroupByDesc();
+    vectorDesc.setProcessingMode(ProcessingMode.GLOBAL);
+
+    CompilationOpContext cCtx = new CompilationOpContext();
+    Operator<? extends OperatorDesc> groupByOp = OperatorFactory.get(cCtx, desc);
+    VectorGroupByOperator vgo =
+        (VectorGroupByOperator) Vectorizer.vectorizeGroupByOperator(groupByOp, ctx, vectorDesc);
+
+    FakeCaptureVectorToRowOutputOperator out =
+        FakeCaptureVectorToRowOutputOperator.addCaptureOutputChild(cCtx, vgo);
+    vgo.initialize(hconf, null);
+    for (VectorizedRowBatch batch : batches) {
+      vgo.process(batch, 0);
+    }
+    vgo.close(false);
+
+    List<Object> rows = out.getCapturedRows();
+    assertEquals(1, rows.size());
+    return ((Object[]) rows.get(0))[0];
+  }
+
+  private static VectorizedRowBatch longBatch(Long... values) {
+    VectorizedRowBatch batch = new VectorizedRowBatch(1, values.length);
+    LongColumnVector colVector = new LongColumnVector(values.length);
+    for (int i = 0; i < values.length; i++) {
+      if (values[i] == null) {
+        colVector.noNulls = false;
+        colVector.isNull[i] = true;
+      } else {
+        colVector.vector[i] = values[i];
+      }
+    }
+    batch.cols[0] = colVector;
+    batch.size = values.length;
+    return batch;
+  }
+
+  private static VectorizedRowBatch doubleBatch(double... values) {
+    VectorizedRowBatch batch = new VectorizedRowBatch(1, values.length);
+    DoubleColumnVector colVector = new DoubleColumnVector(values.length);
+    System.arraycopy(values, 0, colVector.vector, 0, values.length);
+    batch.cols[0] = colVector;
+    batch.size = values.length;
+    return batch;
+  }
+
+  private static VectorizedRowBatch repeatingLongBatch(long value, int size) {
+    VectorizedRowBatch batch = longBatch(new Long[size]);
+    LongColumnVector colVector = (LongColumnVector) batch.cols[0];
+    colVector.noNulls = true;
+    colVector.isRepeating = true;
+    colVector.isNull[0] = false;
+    colVector.vector[0] = value;
+    return batch;
+  }
+
+  @Test
+  public void testCollectSet() throws Exception {
+    AggregationDesc agg = buildAggregationDesc("collect_set", Mode.PARTIAL1,
+        new GenericUDAFCollectSet().getEvaluator(
+            new TypeInfo[] { TypeInfoFactory.longTypeInfo }),
+        TypeInfoFactory.longTypeInfo);
+
+    VectorizedRowBatch selected = longBatch(9L, 5L, 9L, 6L);
+    selected.selectedInUse = true;
+    selected.selected[0] = 1;
+    selected.selected[1] = 3;
+    selected.size = 2;
+
+    Object result = aggregate(agg, longBatch(3L, null, 1L, 3L), repeatingLongBatch(7L, 3),
+        selected);
+    assertEquals(Arrays.asList(new LongWritable(3), new LongWritable(1), new LongWritable(7),
+        new LongWritable(5), new LongWritable(6)), result);
+  }
+
+  @Test
+  public void testCollectList() throws Exception {
+    AggregationDesc agg = buildAggregationDesc("collect_list", Mode.COMPLETE,
+        new GenericUDAFCollectList().getEvaluator(
+            new TypeInfo[] { TypeInfoFactory.stringTypeInfo }),
+        TypeInfoFactory.stringTypeInfo);
+
+    VectorizedRowBatch batch = new VectorizedRowBatch(1, 3);
+    BytesColumnVector colVector = new BytesColumnVector(3);
+    colVector.initBuffer();
+    colVector.setVal(0, "b".getBytes());
+    colVector.setVal(1, "a".getBytes());
+    colVector.setVal(2, "b".getBytes());
+    batch.cols[0] = colVector;
+    batch.size = 3;
+
+    assertEquals(Arrays.asList(new Text("b"), new Text("a"), new Text("b")),
+        aggregate(agg, batch));
+  }
+
+  /*
+   * A batch of one list per row, of the lengths given, over the child vector.
+   */
+  private static VectorizedRowBatch listBatch(ColumnVector child, int... lengths) {
+    VectorizedRowBatch batch = new VectorizedRowBatch(1, lengths.length);
+    ListColumnVector listColVector = new ListColumnVector(lengths.length, child);
+    int offset = 0;
+    for (int row = 0; row < lengths.length; row++) {
+      listColVector.offsets[row] = offset;
+      listColVector.lengths[row] = lengths[row];
+      offset += lengths[row];
+    }
+    listColVector.childCount = offset;
+    batch.cols[0] = listColVector;
+    batch.size = lengths.length;
+    return batch;
+  }
+
+  @Test
+  public void testCollectSetMerge() throws Exception {
+    AggregationDesc agg = buildAggregationDesc("collect_set", Mode.FINAL,
+        new GenericUDAFCollectSet().getEvaluator(
+            new TypeInfo[] { TypeInfoFactory.longTypeInfo }),
+        TypeInfoUtils.getTypeInfoFromTypeString("array<bigint>"));
+
+    VectorizedRowBatch partials = listBatch(longBatch(3L, null, 1L, 3L, 5L).cols[0], 3, 2);
+
+    // Only the first entry of isNull applies to a repeating child.
+    LongColumnVector repeating = (LongColumnVector) longBatch(7L, null, null, null).cols[0];
+    repeating.isRepeating = true;
+    LongColumnVector repeatingNull = (LongColumnVector) longBatch(null, 9L, 9L).cols[0];
+    repeatingNull.isRepeating = true;
+
+    Object result = aggregate(agg, partials, listBatch(repeating, 2, 2),
+        listBatch(repeatingNull, 1, 2));
+    assertEquals(Arrays.asList(new LongWritable(3), new LongWritable(1), new LongWritable(5),
+        new LongWritable(7)), result);
+  }
+
+  private static GenericUDAFEvaluator percentileEvaluator() {
+    return new GenericUDAFPercentileApprox.GenericUDAFSinglePercentileApproxEvaluator();
+  }
+
+  @Test
+  public void testPercentileApprox() throws Exception {
+    ExprNodeConstantDesc quantile = new ExprNodeConstantDesc(TypeInfoFactory.doubleTypeInfo, 0.3);
+    ExprNodeConstantDesc bins = new ExprNodeConstantDesc(TypeInfoFactory.intTypeInfo, 10);
+    double[] values = new double[100];
+    for (int i = 0; i < values.length; i++) {
+      values[i] = (i * 37) % 101;
+    }
+
+    // Row mode, with fewer bins than values.
+    GenericUDAFEvaluator rowEvaluator = percentileEvaluator();
+    rowEvaluator.init(Mode.PARTIAL1, new ObjectInspector[] {
+        PrimitiveObjectInspectorFactory.writableDoubleObjectInspector,
+        quantile.getWritableObjectInspector(), bins.getWritableObjectInspector() });
+    AggregationBuffer buffer = rowEvaluator.getNewAggregationBuffer();
+    for (double value : values) {
+      rowEvaluator.iterate(buffer, new Object[] { new DoubleWritable(value),
+          quantile.getWritableObjectInspector().getWritableConstantValue(),
+          bins.getWritableObjectInspector().getWritableConstantValue() });
+    }
+    Object rowPartial = rowEvaluator.terminatePartial(buffer);
+
+    Object partial = aggregate(
+        buildAggregationDesc("percentile_approx", Mode.PARTIAL1, percentileEvaluator(),
+            TypeInfoFactory.doubleTypeInfo, quantile, bins),
+        doubleBatch(values));
+    assertEquals(rowPartial, partial);
+
+    Object complete = aggregate(
+        buildAggregationDesc("percentile_approx", Mode.COMPLETE, percentileEvaluator(),
+            TypeInfoFactory.doubleTypeInfo, quantile, bins),
+        doubleBatch(values));
+    assertEquals(percentileTerminate(rowPartial), complete);
+
+    // Merge the partial result twice.
+    List<?> partialList = (List<?>) partial;
+    VectorizedRowBatch batch = new VectorizedRowBatch(1, 2);
+    DoubleColumnVector child = new DoubleColumnVector(2 * partialList.size());
+    ListColumnVector listColVector = new ListColumnVector(2, child);
+    for (int row = 0; row < 2; row++) {
+      listColVector.offsets[row] = row * partialList.size();
+      listColVector.lengths[row] = partialList.size();
+      for (int i = 0; i < partialList.size(); i++) {
+        child.vector[row * partialList.size() + i] = ((DoubleWritable) partialList.get(i)).get();
+      }
+    }
+    listColVector.childCount = 2 * partialList.size();
+    batch.cols[0] = listColVector;
+    batch.size = 2;
+
+    Object result = aggregate(
+        buildAggregationDesc("percentile_approx", Mode.FINAL, percentileEvaluator(),
+            TypeInfoUtils.getTypeInfoFromTypeString("array<double>")),
+        batch);
+    assertEquals(percentileTerminate(rowPartial, rowPartial), result);
+  }
+
+  /*
+   * The row mode FINAL result of merging the partial results.
+   */
+  private static Object percentileTerminate(Object... partials) throws HiveException {
+    GenericUDAFEvaluator evaluator = percentileEvaluator();
+    evaluator.init(Mode.FINAL, new ObjectInspector[] {
+        TypeInfoUtils.getStandardWritableObjectInspectorFromTypeInfo(
+            TypeInfoUtils.getTypeInfoFromTypeString("array<double>")) });
+    AggregationBuffer buffer = evaluator.getNewAggregationBuffer();
+    for (Object partial : partials) {
+      evaluator.merge(buffer, new ArrayList<Object>((List<?>) partial));
+    }
+    return evaluator.terminate(buffer);
+  }
+
+  @Test
+  public void testComputeStats() throws Exception {
+    ExprNodeConstantDesc func = new ExprNodeConstantDesc(TypeInfoFactory.stringTypeInfo, "hll");
+
+    Object[] partial = (Object[]) aggregate(
+        buildAggregationDesc("compute_stats", Mode.PARTIAL1,
+            new GenericUDAFComputeStats.GenericUDAFLongStatsEvaluator(),
+            TypeInfoFactory.longTypeInfo, func),
+        longBatch(5L, null, -2L, 5L), repeatingLongBatch(11L, 4));
+    assertEquals(new Text("Long"), partial[0]);
+    assertEquals(new LongWritable(-2), partial[1]);
+    assertEquals(new LongWritable(11), partial[2]);
+    assertEquals(new LongWritable(1), partial[3]);
+
+    Object[] complete = (Object[]) aggregate(
+        buildAggregationDesc("compute_stats", Mode.COMPLETE,
+            new GenericUDAFComputeStats.GenericUDAFLongStatsEvaluator(),
+            TypeInfoFactory.longTypeInfo, func),
+        longBatch(5L, null, -2L, 5L), repeatingLongBatch(11L, 4));
+    assertEquals(new LongWritable(3), complete[4]);
+
+    // Merge the partial result with one that has no values.
+    VectorizedRowBatch batch = new VectorizedRowBatch(1, 2);
+    LongColumnVector minColVector = new LongColumnVector(2);
+    LongColumnVector maxColVector = new LongColumnVector(2);
+    LongColumnVector countNullsColVector = new LongColumnVector(2);
+    BytesColumnVector bitVectorColVector = new BytesColumnVector(2);
+    BytesColumnVector columnTypeColVector = new BytesColumnVector(2);
+    minColVector.vector[0] = -2;
+    maxColVector.vector[0] = 11;
+    minColVector.noNulls = maxColVector.noNulls = false;
+    minColVector.isNull[1] = maxColVector.isNull[1] = true;
+    countNullsColVector.vector[0] = 1;
+    countNullsColVector.vector[1] = 2;
+    byte[] bitVector = Arrays.copyOf(
+        ((BytesWritable) partial[4]).getBytes(), ((BytesWritable) partial[4]).getLength());
+    bitVectorColVector.setRef(0, bitVector, 0, bitVector.length);
+    bitVectorColVector.setRef(1, new byte[0], 0, 0);
+    columnTypeColVector.setRef(0, "Long".getBytes(), 0, 4);
+    columnTypeColVector.setRef(1, "Long".getBytes(), 0, 4);
+    batch.cols[0] = new StructColumnVector(2, columnTypeColVector, minColVector, maxColVector,
+        countNullsColVector, bitVectorColVector);
+    batch.size = 2;
+
+    Object[] result = (Object[]) aggregate(
+        buildAggregationDesc("compute_stats", Mode.FINAL,
+            new GenericUDAFComputeStats.GenericUDAFLongStatsEvaluator(),
+            TypeInfoUtils.getTypeInfoFromTypeString(
+                "struct<columntype:string,min:bigint,max:bigint,countnulls:bigint," +
+                "bitvector:binary>")),
+        batch);
+    assertEquals(new LongWritable(-2), result[1]);
+    assertEquals(new LongWritable(11), result[2]);
+    assertEquals(new LongWritable(3), result[3]);
+    assertEquals(new LongWritable(3), result[4]);
+  }
+}
@@ -39,6 +39,7 @@
 import org.apache.hadoop.hive.common.type.HiveDecimal;
 import org.apache.hadoop.hive.conf.HiveConf;
 import org.apache.hadoop.hive.ql.CompilationOpContext;
+import org.apache.hadoop.hive.ql.exec.GroupByOperator;
 import org.apache.hadoop.hive.ql.exec.Operator;
 import org.apache.hadoop.hive.ql.exec.OperatorFactory;
 import org.apache.hadoop.hive.ql.exec.util.collectoroperator.RowVectorCollectorTestOperator;
@@ -345,6 +346,206 @@ public void remove() {
     assertTrue(0 < outputRowCount);
   }
 
+  @Test
+  public void testFastHashMemoryPressureFlush() throws HiveException {
+    HiveConf.setBoolVar(hconf, HiveConf.ConfVars.HIVE_VECTORIZATION_GROUPBY_FAST_HASHTABLE_ENABLED, true);
+    testMemoryPressureFlush();
+  }
+
+  @Test
+  public void testFastHashSpillLongKey() throws HiveException {
+    testFastHashSpill("bigint", TypeInfoFactory.longTypeInfo);
+  }
+
+  @Test
+  public void testFastHashSpillStringKey() throws HiveException {
+    testFastHashSpill("string", TypeInfoFactory.stringTypeInfo);
+  }
+
+  private void testFastHashSpill(String keyType, TypeInfo keyTypeInfo) throws HiveException {
+    HiveConf.setBoolVar(hconf, HiveConf.ConfVars.HIVE_VECTORIZATION_GROUPBY_FAST_HASHTABLE_ENABLED, true);
+    HiveConf.setIntVar(hconf, HiveConf.ConfVars.HIVE_VECTORIZATION_GROUPBY_MAXENTRIES, 4000);
+    HiveConf.setIntVar(hconf, HiveConf.ConfVars.HIVE_VECTORIZATION_GROUPBY_SPILL_PARTITIONS, 4);
+
+    // 10000 distinct keys, each seen 3 times far apart, summing 1 for every row.
+    final int keyCount = 10000;
+    final int rounds = 3;
+    List<Object> keys = new ArrayList<Object>();
+    List<Object> values = new ArrayList<Object>();
+    for (int round = 0; round < rounds; round++) {
+      for (int i = 0; i < keyCount; i++) {
+        keys.add(keyType.equals("string") ? (Object) ("key" + i) : (Object) Long.valueOf(i));
+        values.add(1L);
+      }
+    }
+
+    Map<Object, Long> flushSums = new HashMap<Object, Long>();
+    Map<Object, Integer> flushRowCounts = new HashMap<Object, Integer>();
+    runFastHashSpill(keyType, keyTypeInfo, keys, values, flushSums, flushRowCounts);
+
+    HiveConf.setBoolVar(hconf, HiveConf.ConfVars.HIVE_VECTORIZATION_GROUPBY_SPILL_ENABLED, true);
+    Map<Object, Long> spillSums = new HashMap<Object, Long>();
+    Map<Object, Integer> spillRowCounts = new HashMap<Object, Integer>();
+    int spillRows =
+        runFastHashSpill(keyType, keyTypeInfo, keys, values, spillSums, spillRowCounts);
+
+    assertEquals(keyCount, flushSums.size());
+    assertEquals(keyCount, spillSums.size());
+    for (Map.Entry<Object, Long> entry : spillSums.entrySet()) {
+      assertEquals((long) rounds, entry.getValue().longValue());
+      assertEquals((long) rounds, flushSums.get(entry.getKey()).longValue());
+
+      // A key is emitted at most twice: before its partition spilled and after re-aggregation.
+      assertTrue(spillRowCounts.get(entry.getKey()) <= 2);
+    }
+    int flushRows = 0;
+    for (Integer rowCount : flushRowCounts.values()) {
+      flushRows += rowCount;
+    }
+    assertTrue(spillRows < flushRows);
+  }
+
+  @Test
+  public void testHashAggrRecheck() throws HiveException {
+    testHashAggrRecheck(false);
+  }
+
+  @Test
+  public void testFastHashAggrRecheck() throws HiveException {
+    testHashAggrRecheck(true);
+  }
+
+  private void testHashAggrRecheck(boolean fastHashTable) throws HiveException {
+    HiveConf.setBoolVar(hconf, HiveConf.ConfVars.HIVE_VECTORIZATION_GROUPBY_FAST_HASHTABLE_ENABLED,
+        fastHashTable);
+    HiveConf.setIntVar(hconf, HiveConf.ConfVars.HIVEGROUPBYMAPINTERVAL, 1000);
+    HiveConf.setFloatVar(hconf, HiveConf.ConfVars.HIVEMAPAGGRHASHMINREDUCTION, 0.5f);
+    HiveConf.setLongVar(hconf, HiveConf.ConfVars.HIVEMAPAGGRHASHRECHECKINTERVAL, 2048);
+
+    // 3000 distinct keys turn off the hash aggregation, the 10 keys that follow aggregate well.
+    List<Object> keys = new ArrayList<Object>();
+    List<Object> values = new ArrayList<Object>();
+    for (int i = 0; i < 3000; i++) {
+      keys.add(Long.valueOf(1000 + i));
+      values.add(1L);
+    }
+    for (int i = 0; i < 30000; i++) {
+      keys.add(Long.valueOf(i % 10));
+      values.add(1L);
+    }
+
+    List<String> mapColumnNames = new ArrayList<String>();
+    mapColumnNames.add("Key");
+    mapColumnNames.add("Value");
+    VectorizationContext ctx = new VectorizationContext("name", mapColumnNames);
+
+    Pair<GroupByDesc,VectorGroupByDesc> pair = buildKeyGroupByDesc (ctx, "sum",
+        "Value", TypeInfoFactory.longTypeInfo,
+        "Key", TypeInfoFactory.longTypeInfo);
+    GroupByDesc desc = pair.fst;
+    VectorGroupByDesc vectorDesc = pair.snd;
+
+    CompilationOpContext cCtx = new CompilationOpContext();
+
+    Operator<? extends OperatorDesc> groupByOp = OperatorFactory.get(cCtx, desc);
+
+    VectorGroupByOperator vgo =
+        (VectorGroupByOperator) Vectorizer.vectorizeGroupByOperator(groupByOp, ctx, vectorDesc);
+
+    FakeCaptureVectorToRowOutputOperator out = FakeCaptureVectorToRowOutputOperator.addCaptureOutputChild(cCtx, vgo);
+    vgo.initialize(hconf, null);
+
+    final Map<Long, Long> sums = new HashMap<Long, Long>();
+    out.setOutputInspector(new FakeCaptureVectorToRowOutputOperator.OutputInspector() {
+      @Override
+      public void inspectRow(Object row, int tag) throws HiveException {
+        Object[] fields = (Object[]) row;
+        long key = ((LongWritable) fields[0]).get();
+        Long previousSum = sums.get(key);
+        sums.put(key, (previousSum == null ? 0 : previousSum) + ((LongWritable) fields[1]).get());
+      }
+    });
+
+    FakeVectorRowBatchFromObjectIterables data = new FakeVectorRowBatchFromObjectIterables(
+        VectorizedRowBatch.DEFAULT_SIZE,
+        new String[] {"bigint", "bigint"},
+        keys,
+        values);
+
+    for (VectorizedRowBatch unit: data) {
+      vgo.process(unit,  0);
+    }
+    vgo.close(false);
+
+    assertEquals(3010, sums.size());
+    for (Map.Entry<Long, Long> entry : sums.entrySet()) {
+      assertEquals(entry.getKey() < 10 ? 3000L : 1L, entry.getValue().longValue());
+    }
+
+    // The first batch turns off the hash aggregation, it is turned on again after two batches.
+    Map<String, Long> stats = vgo.getStats();
+    assertEquals(2L, (long) stats.get(GroupByOperator.Counter.HASH_AGGR_MODE_SWITCHES.name()));
+    assertEquals(2048L, (long) stats.get(GroupByOperator.Counter.HASH_AGGR_BYPASSED_ROWS.name()));
+    assertEquals(33000L - 2048L,
+        (long) stats.get(GroupByOperator.Counter.HASH_AGGR_INPUT_ROWS.name()));
+    assertEquals(1024L + 10L,
+        (long) stats.get(GroupByOperator.Counter.HASH_AGGR_OUTPUT_ROWS.name()));
+  }
+
+  private int runFastHashSpill(String keyType, TypeInfo keyTypeInfo,
+      List<Object> keys, List<Object> values,
+      final Map<Object, Long> sums, final Map<Object, Integer> rowCounts) throws HiveException {
+
+    List<String> mapColumnNames = new ArrayList<String>();
+    mapColumnNames.add("Key");
+    mapColumnNames.add("Value");
+    VectorizationContext ctx = new VectorizationContext("name", mapColumnNames);
+    ctx.setInitialTypeInfos(Arrays.asList(keyTypeInfo, (TypeInfo) TypeInfoFactory.longTypeInfo));
+
+    Pair<GroupByDesc,VectorGroupByDesc> pair = buildKeyGroupByDesc (ctx, "sum",
+        "Value", TypeInfoFactory.longTypeInfo,
+        "Key", keyTypeInfo);
+    GroupByDesc desc = pair.fst;
+    VectorGroupByDesc vectorDesc = pair.snd;
+
+    CompilationOpContext cCtx = new CompilationOpContext();
+
+    Operator<? extends OperatorDesc> groupByOp = OperatorFactory.get(cCtx, desc);
+
+    VectorGroupByOperator vgo =
+        (VectorGroupByOperator) Vectorizer.vectorizeGroupByOperator(groupByOp, ctx, vectorDesc);
+
+    FakeCaptureVectorToRowOutputOperator out = FakeCaptureVectorToRowOutputOperator.addCaptureOutputChild(cCtx, vgo);
+    vgo.initialize(hconf, null);
+
+    out.setOutputInspector(new FakeCaptureVectorToRowOutputOperator.OutputInspector() {
+      @Override
+      public void inspectRow(Object row, int tag) throws HiveException {
+        Object[] fields = (Object[]) row;
+        Object key = (fields[0] instanceof Text) ?
+            fields[0].toString() : (Object) ((LongWritable) fields[0]).get();
+        long sum = ((LongWritable) fields[1]).get();
+        Long previousSum = sums.get(key);
+        sums.put(key, (previousSum == null ? 0 : previousSum) + sum);
+        Integer previousCount = rowCounts.get(key);
+        rowCounts.put(key, (previousCount == null ? 0 : previousCount) + 1);
+      }
+    });
+
+    FakeVectorRowBatchFromObjectIterables data = new FakeVectorRowBatchFromObjectIterables(
+        VectorizedRowBatch.DEFAULT_SIZE,
+        new String[] {keyType, "bigint"},
+        keys,
+        values);
+
+    for (VectorizedRowBatch unit: data) {
+      vgo.process(unit,  0);
+    }
+    vgo.close(false);
+
+    return out.getCapturedRows().size();
+  }
+
   @Test
   public void testMultiKeyIntStringInt() throws HiveException {
     testMultiKey(
@@ -1015,6 +1216,67 @@ public void testMinLongStringKeys() throws HiveException {
         buildHashMap("A", 7L, "B", 5L));
   }
 
+  @Test
+  public void testFastHashMinLongNullStringKeys() throws HiveException {
+    HiveConf.setBoolVar(hconf, HiveConf.ConfVars.HIVE_VECTORIZATION_GROUPBY_FAST_HASHTABLE_ENABLED, true);
+    testAggregateStringKeyAggregate(
+        "min",
+        2,
+        Arrays.asList(new Object[]{"A",null,"A",null,"","B"}),
+        Arrays.asList(new Object[]{13L, 5L, 7L,19L, 3L, 8L}),
+        buildHashMap("A", 7L, null, 5L, "", 3L, "B", 8L));
+  }
+
+  @Test
+  public void testFastHashMinLongNullKeyGroupByCrossBatch() throws HiveException {
+    HiveConf.setBoolVar(hconf, HiveConf.ConfVars.HIVE_VECTORIZATION_GROUPBY_FAST_HASHTABLE_ENABLED, true);
+    testAggregateLongKeyAggregate(
+        "min",
+        2,
+        Arrays.asList(new Long[]{null,2L,null,02L,0L}),
+        Arrays.asList(new Long[]{13L,5L,7L,19L,4L}),
+        buildHashMap(null, 7L, 2L, 5L, 0L, 4L));
+  }
+
+  @Test
+  public void testFastHashMultiKeyIntStringInt() throws HiveException {
+    HiveConf.setBoolVar(hconf, HiveConf.ConfVars.HIVE_VECTORIZATION_GROUPBY_FAST_HASHTABLE_ENABLED, true);
+    testMultiKey(
+        "sum",
+        new FakeVectorRowBatchFromObjectIterables(
+            2,
+            new String[] {"int", "string", "int", "double"},
+            Arrays.asList(new Object[]{null,   1,   1,  null,    2,    2, null}),
+            Arrays.asList(new Object[]{ "A", "A",  "A", "C", null, null,  "A"}),
+            Arrays.asList(new Object[]{null,   2,   2,  null,    2,    2, null}),
+            Arrays.asList(new Object[]{1.0,  2.0, 4.0,   8.0, 16.0, 32.0, 64.0})),
+        buildHashMap(
+            Arrays.asList(   1,  "A",    2), 6.0,
+            Arrays.asList(null,  "C", null), 8.0,
+            Arrays.asList(   2, null,    2), 48.0,
+            Arrays.asList(null,  "A", null), 65.0));
+  }
+
+  @Test
+  public void testFastHashMultiKeyDoubleShortString() throws HiveException {
+    HiveConf.setBoolVar(hconf, HiveConf.ConfVars.HIVE_VECTORIZATION_GROUPBY_FAST_HASHTABLE_ENABLED, true);
+    short s = 2;
+    testMultiKey(
+        "sum",
+        new FakeVectorRowBatchFromObjectIterables(
+            2,
+            new String[] {"double", "smallint", "string", "double"},
+            Arrays.asList(new Object[]{null,  1.0, 1.0,  null,  2.0,  2.0, null}),
+            Arrays.asList(new Object[]{null,  s,     s,  null,    s,    s, null}),
+            Arrays.asList(new Object[]{ "A", "A",  "A",   "C", null, null,  "A"}),
+            Arrays.asList(new Object[]{1.0,  2.0,  4.0,   8.0, 16.0, 32.0,  64.0})),
+        buildHashMap(
+            Arrays.asList( 1.0,    s,  "A"), 6.0,
+            Arrays.asList(null,  null, "C"), 8.0,
+            Arrays.asList( 2.0,    s, null), 48.0,
+            Arrays.asList(null, null,  "A"), 65.0));
+  }
+
   @Test
   public void testMinLongKeyGroupByCompactBatch() throws HiveException {
     testAggregateLongKeyAggregate(
@@ -32,6 +32,7 @@
 import org.apache.hadoop.hive.common.type.HiveChar;
 import org.apache.hadoop.hive.common.type.HiveVarchar;
 import org.apache.hadoop.hive.ql.exec.vector.BytesColumnVector;
+import org.apache.hadoop.hive.ql.exec.vector.DictionaryBytesColumnVector;
 import org.apache.hadoop.hive.ql.exec.vector.LongColumnVector;
 import org.apache.hadoop.hive.ql.exec.vector.VectorizedRowBatch;
 import org.apache.hadoop.hive.ql.exec.vector.expressions.gen.CharScalarEqualStringGroupColumn;
@@ -4305,6 +4306,96 @@ public void testStringLikePatternType() throws UnsupportedEncodingException, Hiv
         expr.checker.getClass());
   }
 
+  /**
+   * @return a column whose rows reference a shared dictionary of 5 byte strings, like the ORC
+   *         dictionary encoded columns read by LLAP.
+   */
+  private static DictionaryBytesColumnVector dictionaryColumn(byte[] dictionary, int[] codes) {
+    DictionaryBytesColumnVector dcv = new DictionaryBytesColumnVector(codes.length);
+    for (int i = 0; i < codes.length; i++) {
+      dcv.setRef(i, dictionary, codes[i] * 5, 5);
+    }
+    dcv.setDictionaryReferences(codes.length);
+    return dcv;
+  }
+
+  @Test
+  public void testStringLikeDictionary() throws HiveException {
+    byte[] dictionary = "abcdeabxdeaaaaa".getBytes(StandardCharsets.UTF_8);
+    int[] codes = { 0, 1, 2, 0, 0, 1, 2, 2 };
+    VectorizedRowBatch vrb = new VectorizedRowBatch(1, codes.length);
+    vrb.cols[0] = dictionaryColumn(dictionary, codes);
+    vrb.size = codes.length;
+    FilterStringColLikeStringScalar expr =
+        new FilterStringColLikeStringScalar(0, "%ab_%de".getBytes(StandardCharsets.UTF_8));
+    expr.transientInit();
+    final AbstractFilterStringColLikeStringScalar.Checker checker = expr.checker;
+    final int[] checks = new int[1];
+    expr.checker = new AbstractFilterStringColLikeStringScalar.Checker() {
+      @Override
+      public boolean check(byte[] byteS, int start, int len) {
+        checks[0]++;
+        return checker.check(byteS, start, len);
+      }
+    };
+    expr.evaluate(vrb);
+    Assert.assertEquals(5, vrb.size);
+    Assert.assertTrue(Arrays.equals(new int[] { 0, 1, 3, 4, 5 }, Arrays.copyOf(vrb.selected, vrb.size)));
+    // The checker runs once per dictionary value.
+    Assert.assertEquals(3, checks[0]);
+
+    // With nulls and selected rows.
+    DictionaryBytesColumnVector dcv = dictionaryColumn(dictionary, codes);
+    dcv.noNulls = false;
+    dcv.isNull[3] = true;
+    vrb.cols[0] = dcv;
+    vrb.size = 4;
+    vrb.selectedInUse = true;
+    vrb.selected[0] = 1;
+    vrb.selected[1] = 2;
+    vrb.selected[2] = 3;
+    vrb.selected[3] = 4;
+    expr.evaluate(vrb);
+    Assert.assertEquals(2, vrb.size);
+    Assert.assertTrue(Arrays.equals(new int[] { 1, 4 }, Arrays.copyOf(vrb.selected, vrb.size)));
+
+    // A value set otherwise discards the dictionary, and every row is checked.
+    dcv = dictionaryColumn(dictionary, codes);
+    dcv.setRef(2, "abcdeabcde".getBytes(StandardCharsets.UTF_8), 0, 10);
+    vrb.cols[0] = dcv;
+    vrb.size = codes.length;
+    vrb.selectedInUse = false;
+    checks[0] = 0;
+    expr.evaluate(vrb);
+    Assert.assertEquals(codes.length, checks[0]);
+    Assert.assertTrue(Arrays.equals(new int[] { 0, 1, 2, 3, 4, 5 }, Arrays.copyOf(vrb.selected, vrb.size)));
+  }
+
+  @Test
+  public void testStringColCompareStringScalarDictionary() throws HiveException {
+    byte[] dictionary = "abcdeabxdeaaaaa".getBytes(StandardCharsets.UTF_8);
+    int[] codes = { 0, 1, 2, 0, 0, 1, 2, 2 };
+    VectorizedRowBatch vrb = new VectorizedRowBatch(1, codes.length);
+    DictionaryBytesColumnVector dcv = dictionaryColumn(dictionary, codes);
+    dcv.noNulls = false;
+    dcv.isNull[4] = true;
+    vrb.cols[0] = dcv;
+    vrb.size = codes.length;
+    VectorExpression expr = new FilterStringGroupColEqualStringScalar(0,
+        "abcde".getBytes(StandardCharsets.UTF_8));
+    expr.evaluate(vrb);
+    Assert.assertEquals(2, vrb.size);
+    Assert.assertTrue(Arrays.equals(new int[] { 0, 3 }, Arrays.copyOf(vrb.selected, vrb.size)));
+
+    vrb.cols[0] = dictionaryColumn(dictionary, codes);
+    vrb.size = codes.length;
+    vrb.selectedInUse = false;
+    expr = new FilterStringGroupColLessStringScalar(0, "abxde".getBytes(StandardCharsets.UTF_8));
+    expr.evaluate(vrb);
+    Assert.assertTrue(Arrays.equals(new int[] { 0, 2, 3, 4, 6, 7 },
+        Arrays.copyOf(vrb.selected, vrb.size)));
+  }
+
   @Test
   public void testStringLikeMultiByte() throws HiveException, UnsupportedEncodingException {
     FilterStringColLikeStringScalar expr;
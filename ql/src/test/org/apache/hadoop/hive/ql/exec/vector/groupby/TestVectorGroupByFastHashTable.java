@@ -0,0 +1,190 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.hadoop.hive.ql.exec.vector.groupby;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+
+import org.apache.hadoop.hive.ql.exec.vector.VectorAggregationBufferRow;
+import org.apache.hadoop.hive.ql.exec.vector.expressions.aggregates.VectorAggregateExpression.AggregationBuffer;
+import org.apache.hadoop.hive.serde2.WriteBuffers;
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class TestVectorGroupByFastHashTable {
+
+  private static final int CAPACITY = 8;
+  private static final float LOAD_FACTOR = 0.75f;
+  private static final int WB_SIZE = 128; // Make sure we cross some buffer boundaries...
+
+  private static VectorAggregationBufferRow newRow() {
+    return new VectorAggregationBufferRow(new AggregationBuffer[0]);
+  }
+
+  @Test
+  public void testLongKeys() throws Exception {
+    Random random = new Random(4411);
+    VectorGroupByFastLongHashTable table =
+        new VectorGroupByFastLongHashTable(CAPACITY, LOAD_FACTOR);
+    Map<Long, Integer> expected = new HashMap<Long, Integer>();
+
+    for (int i = 0; i < 5000; i++) {
+      long key = random.nextInt(1000);
+      int result = table.findOrAdd(key);
+      Integer expectedEntry = expected.get(key);
+      if (expectedEntry == null) {
+        assertTrue(result < 0);
+        int entry = -result - 1;
+        assertEquals(expected.size(), entry);
+        assertNull(table.getAggregation(entry));
+        table.setAggregation(entry, newRow());
+        expected.put(key, entry);
+      } else {
+        assertEquals(expectedEntry.intValue(), result);
+      }
+    }
+    assertEquals(expected.size(), table.size());
+    for (Map.Entry<Long, Integer> e : expected.entrySet()) {
+      assertEquals(e.getKey().longValue(), table.getKey(e.getValue()));
+    }
+  }
+
+  @Test
+  public void testNullKey() throws Exception {
+    VectorGroupByFastLongHashTable table =
+        new VectorGroupByFastLongHashTable(CAPACITY, LOAD_FACTOR);
+    assertEquals(-1, table.findOrAdd(0L));
+    int nullResult = table.findOrAddNull();
+    assertEquals(-2, nullResult);
+    assertTrue(table.isNullEntry(1));
+    assertFalse(table.isNullEntry(0));
+    assertEquals(1, table.findOrAddNull());
+
+    // The NULL entry must not be confused with the 0 key.
+    assertEquals(0, table.findOrAdd(0L));
+    assertEquals(2, table.size());
+
+    // After removing the 0 key, the NULL entry moves down.
+    table.removeOldest(1);
+    assertEquals(1, table.size());
+    assertTrue(table.isNullEntry(0));
+    assertEquals(0, table.findOrAddNull());
+    assertEquals(-2, table.findOrAdd(0L));
+  }
+
+  @Test
+  public void testLongRemoveOldest() throws Exception {
+    VectorGroupByFastLongHashTable table =
+        new VectorGroupByFastLongHashTable(CAPACITY, LOAD_FACTOR);
+    VectorAggregationBufferRow[] rows = new VectorAggregationBufferRow[100];
+    for (int i = 0; i < 100; i++) {
+      int entry = -table.findOrAdd(i * 7L) - 1;
+      rows[i] = newRow();
+      table.setAggregation(entry, rows[i]);
+    }
+    table.removeOldest(30);
+    assertEquals(70, table.size());
+    for (int i = 30; i < 100; i++) {
+      int entry = table.findOrAdd(i * 7L);
+      assertEquals(i - 30, entry);
+      assertEquals(i * 7L, table.getKey(entry));
+      assertSame(rows[i], table.getAggregation(entry));
+    }
+
+    // The flushed rows get reused by new keys.
+    int entry = -table.findOrAdd(1L) - 1;
+    assertEquals(70, entry);
+    assertSame(rows[0], table.getAggregation(entry));
+
+    // Flushed keys are new again.
+    assertTrue(table.findOrAdd(0L) < 0);
+
+    table.clear();
+    assertEquals(0, table.size());
+    assertTrue(table.findOrAdd(35 * 7L) < 0);
+  }
+
+  @Test
+  public void testBytesKeys() throws Exception {
+    Random random = new Random(7731);
+    VectorGroupByFastBytesHashTable table =
+        new VectorGroupByFastBytesHashTable(CAPACITY, LOAD_FACTOR, WB_SIZE);
+    Map<String, Integer> expected = new HashMap<String, Integer>();
+
+    for (int i = 0; i < 5000; i++) {
+      String key = "key" + random.nextInt(700);
+      byte[] keyBytes = ("xx" + key).getBytes(StandardCharsets.UTF_8);
+      int result = table.findOrAdd(keyBytes, 2, keyBytes.length - 2);
+      Integer expectedEntry = expected.get(key);
+      if (expectedEntry == null) {
+        assertTrue(result < 0);
+        expected.put(key, -result - 1);
+      } else {
+        assertEquals(expectedEntry.intValue(), result);
+      }
+    }
+
+    // The empty key is a regular key.
+    assertTrue(table.findOrAdd(new byte[0], 0, 0) < 0);
+    expected.put("", expected.size());
+
+    assertEquals(expected.size(), table.size());
+    verifyBytesKeys(table, expected);
+  }
+
+  @Test
+  public void testBytesRemoveOldest() throws Exception {
+    VectorGroupByFastBytesHashTable table =
+        new VectorGroupByFastBytesHashTable(CAPACITY, LOAD_FACTOR, WB_SIZE);
+    for (int i = 0; i < 500; i++) {
+      byte[] keyBytes = ("value" + i).getBytes(StandardCharsets.UTF_8);
+      assertTrue(table.findOrAdd(keyBytes, 0, keyBytes.length) < 0);
+    }
+    long memoryBefore = table.getEstimatedMemorySize();
+
+    // Removing most of the keys compacts the key arena.
+    table.removeOldest(450);
+    assertEquals(50, table.size());
+    assertTrue(table.getEstimatedMemorySize() < memoryBefore);
+
+    Map<String, Integer> expected = new HashMap<String, Integer>();
+    for (int i = 450; i < 500; i++) {
+      expected.put("value" + i, i - 450);
+    }
+    verifyBytesKeys(table, expected);
+  }
+
+  private void verifyBytesKeys(VectorGroupByFastBytesHashTable table,
+      Map<String, Integer> expected) throws Exception {
+    WriteBuffers.ByteSegmentRef keyRef = new WriteBuffers.ByteSegmentRef();
+    for (Map.Entry<String, Integer> e : expected.entrySet()) {
+      byte[] keyBytes = e.getKey().getBytes(StandardCharsets.UTF_8);
+      int entry = e.getValue();
+      table.getKey(entry, keyRef);
+      byte[] tableKey = Arrays.copyOfRange(keyRef.getBytes(), (int) keyRef.getOffset(),
+          (int) keyRef.getOffset() + keyRef.getLength());
+      assertArrayEquals(keyBytes, tableKey);
+      assertEquals(entry, table.findOrAdd(keyBytes, 0, keyBytes.length));
+    }
+  }
+}
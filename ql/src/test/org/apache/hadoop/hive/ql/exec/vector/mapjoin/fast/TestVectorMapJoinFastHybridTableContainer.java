@@ -0,0 +1,210 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.hadoop.hive.ql.exec.vector.mapjoin.fast;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import org.apache.hadoop.hive.conf.HiveConf;
+import org.apache.hadoop.hive.ql.exec.JoinUtil;
+import org.apache.hadoop.hive.ql.exec.vector.mapjoin.fast.CheckFastHashTable.VerifyFastBytesHashMap;
+import org.apache.hadoop.hive.ql.exec.vector.mapjoin.fast.CheckFastHashTable.VerifyFastLongHashMap;
+import org.apache.hadoop.hive.ql.exec.vector.mapjoin.hashtable.VectorMapJoinBytesHashMap;
+import org.apache.hadoop.hive.ql.exec.vector.mapjoin.hashtable.VectorMapJoinHashMapResult;
+import org.apache.hadoop.hive.ql.exec.vector.mapjoin.hashtable.VectorMapJoinLongHashMap;
+import org.apache.hadoop.hive.ql.plan.MapJoinDesc;
+import org.apache.hadoop.hive.ql.plan.VectorMapJoinDesc;
+import org.apache.hadoop.hive.ql.plan.VectorMapJoinDesc.HashTableKeyType;
+import org.apache.hadoop.hive.ql.plan.VectorMapJoinDesc.HashTableKind;
+import org.apache.hadoop.hive.serde2.ByteStream.Output;
+import org.apache.hadoop.hive.serde2.binarysortable.fast.BinarySortableSerializeWrite;
+import org.apache.hadoop.io.BytesWritable;
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class TestVectorMapJoinFastHybridTableContainer extends CommonFastHashTable {
+
+  private static final int ROW_COUNT = 5000;
+  private static final long MEMORY_AVAILABLE = 1024 * 1024;
+  private static final long TABLE_SIZE = 4 * 1024 * 1024;
+
+  private final BinarySortableSerializeWrite keySerializeWrite =
+      new BinarySortableSerializeWrite(1);
+  private final Output keyOutput = new Output();
+  private final BytesWritable keyWritable = new BytesWritable();
+  private final BytesWritable valueWritable = new BytesWritable();
+
+  private static VectorMapJoinFastHybridTableContainer createContainer(
+      HashTableKeyType hashTableKeyType) throws Exception {
+    HiveConf hconf = new HiveConf();
+    HiveConf.setIntVar(hconf, HiveConf.ConfVars.HIVEHASHTABLETHRESHOLD, 1024);
+    HiveConf.setIntVar(hconf, HiveConf.ConfVars.HIVEHASHTABLEWBSIZE, 64 * 1024);
+    HiveConf.setIntVar(hconf, HiveConf.ConfVars.HIVEHYBRIDGRACEHASHJOINMINWBSIZE, 1024);
+    HiveConf.setIntVar(hconf, HiveConf.ConfVars.HIVEHYBRIDGRACEHASHJOINMINNUMPARTITIONS, 4);
+    HiveConf.setIntVar(hconf, HiveConf.ConfVars.HIVEHYBRIDGRACEHASHJOINMEMCHECKFREQ, 64);
+
+    VectorMapJoinDesc vectorDesc = new VectorMapJoinDesc();
+    vectorDesc.setHashTableKeyType(hashTableKeyType);
+    vectorDesc.setHashTableKind(HashTableKind.HASH_MAP);
+    vectorDesc.setMinMaxEnabled(hashTableKeyType == HashTableKeyType.LONG);
+    MapJoinDesc desc = new MapJoinDesc();
+    desc.setVectorDesc(vectorDesc);
+
+    return new VectorMapJoinFastHybridTableContainer(
+        desc, hconf, ROW_COUNT, MEMORY_AVAILABLE, TABLE_SIZE);
+  }
+
+  private void putRow(VectorMapJoinFastHybridTableContainer container, byte[] value)
+      throws Exception {
+    keyWritable.set(keyOutput.getData(), 0, keyOutput.getLength());
+    valueWritable.set(value, 0, value.length);
+    container.putRow(keyWritable, valueWritable);
+  }
+
+  private byte[] randomValue() {
+    byte[] value = new byte[random.nextInt(MAX_VALUE_LENGTH)];
+    random.nextBytes(value);
+    return value;
+  }
+
+  @Test
+  public void testLongSpillAndReload() throws Exception {
+    random = new Random(4451);
+    VectorMapJoinFastHybridTableContainer container = createContainer(HashTableKeyType.LONG);
+
+    VerifyFastLongHashMap verifyTable = new VerifyFastLongHashMap();
+    for (int i = 0; i < ROW_COUNT; i++) {
+      long key = (verifyTable.getCount() > 0 && random.nextInt(4) == 0) ?
+          verifyTable.getKey(random.nextInt(verifyTable.getCount())) : random.nextLong();
+      byte[] value = randomValue();
+      keyOutput.reset();
+      keySerializeWrite.set(keyOutput);
+      keySerializeWrite.writeLong(key);
+      putRow(container, value);
+      verifyTable.add(key, value);
+    }
+    container.seal();
+    assertTrue(container.hasSpill());
+    // Memory is checked every 64 rows, so it can go a little over.
+    assertTrue(container.getEstimatedMemorySize() < MEMORY_AVAILABLE + MEMORY_AVAILABLE / 4);
+
+    // The keys of the in memory partitions match, the others get their partition to spill to.
+    VectorMapJoinLongHashMap hashMap =
+        (VectorMapJoinLongHashMap) container.vectorMapJoinHashTable();
+    VectorMapJoinHashMapResult hashMapResult = hashMap.createHashMapResult();
+    int numPartitions = container.getNumPartitions();
+    List<List<Integer>> spilledKeys = new ArrayList<List<Integer>>();
+    for (int p = 0; p < numPartitions; p++) {
+      spilledKeys.add(new ArrayList<Integer>());
+    }
+    int matchCount = 0;
+    for (int index = 0; index < verifyTable.getCount(); index++) {
+      long key = verifyTable.getKey(index);
+      assertTrue(hashMap.min() <= key && key <= hashMap.max());
+      JoinUtil.JoinResult joinResult = hashMap.lookup(key, hashMapResult);
+      if (joinResult == JoinUtil.JoinResult.SPILL) {
+        int partitionId = hashMapResult.spillPartitionId();
+        assertTrue(container.isOnDisk(partitionId));
+        spilledKeys.get(partitionId).add(index);
+      } else {
+        assertEquals(JoinUtil.JoinResult.MATCH, joinResult);
+        CheckFastHashTable.verifyHashMapValues(hashMapResult, verifyTable.getValues(index));
+        matchCount++;
+      }
+    }
+    assertTrue(matchCount > 0);
+    assertTrue(matchCount < verifyTable.getCount());
+
+    // Reload the spilled partitions one by one, with the rows put after spilling.
+    container.clearInMemoryPartitions();
+    for (int p = 0; p < numPartitions; p++) {
+      if (!container.isOnDisk(p)) {
+        assertTrue(spilledKeys.get(p).isEmpty());
+        continue;
+      }
+      VectorMapJoinFastLongHashMap reloaded =
+          (VectorMapJoinFastLongHashMap) container.reloadHashTable(p);
+      assertFalse(container.isOnDisk(p));
+      assertEquals(spilledKeys.get(p).size(), reloaded.size());
+      for (int index : spilledKeys.get(p)) {
+        assertEquals(JoinUtil.JoinResult.MATCH,
+            reloaded.lookup(verifyTable.getKey(index), hashMapResult));
+        CheckFastHashTable.verifyHashMapValues(hashMapResult, verifyTable.getValues(index));
+      }
+      container.clearPartition(p);
+    }
+    container.clear();
+  }
+
+  @Test
+  public void testStringSpillAndReload() throws Exception {
+    random = new Random(9031);
+    VectorMapJoinFastHybridTableContainer container = createContainer(HashTableKeyType.STRING);
+
+    VerifyFastBytesHashMap verifyTable = new VerifyFastBytesHashMap();
+    for (int i = 0; i < ROW_COUNT; i++) {
+      byte[] key;
+      if (verifyTable.getCount() > 0 && random.nextInt(4) == 0) {
+        key = verifyTable.getKey(random.nextInt(verifyTable.getCount()));
+      } else {
+        key = new byte[1 + random.nextInt(20)];
+        random.nextBytes(key);
+      }
+      byte[] value = randomValue();
+      keyOutput.reset();
+      keySerializeWrite.set(keyOutput);
+      keySerializeWrite.writeString(key);
+      putRow(container, value);
+      verifyTable.add(key, value);
+    }
+    container.seal();
+    assertTrue(container.hasSpill());
+
+    VectorMapJoinBytesHashMap hashMap =
+        (VectorMapJoinBytesHashMap) container.vectorMapJoinHashTable();
+    VectorMapJoinHashMapResult hashMapResult = hashMap.createHashMapResult();
+    List<Integer> spilledKeys = new ArrayList<Integer>();
+    for (int index = 0; index < verifyTable.getCount(); index++) {
+      byte[] key = verifyTable.getKey(index);
+      JoinUtil.JoinResult joinResult = hashMap.lookup(key, 0, key.length, hashMapResult);
+      if (joinResult == JoinUtil.JoinResult.SPILL) {
+        spilledKeys.add(index);
+      } else {
+        assertEquals(JoinUtil.JoinResult.MATCH, joinResult);
+        CheckFastHashTable.verifyHashMapValues(hashMapResult, verifyTable.getValues(index));
+      }
+    }
+    assertFalse(spilledKeys.isEmpty());
+
+    container.clearInMemoryPartitions();
+    for (int p = 0; p < container.getNumPartitions(); p++) {
+      if (container.isOnDisk(p)) {
+        container.reloadHashTable(p);
+      }
+    }
+    // The reloaded partitions are back in memory.
+    for (int index : spilledKeys) {
+      byte[] key = verifyTable.getKey(index);
+      assertEquals(JoinUtil.JoinResult.MATCH, hashMap.lookup(key, 0, key.length, hashMapResult));
+      CheckFastHashTable.verifyHashMapValues(hashMapResult, verifyTable.getValues(index));
+    }
+    container.clear();
+  }
+}
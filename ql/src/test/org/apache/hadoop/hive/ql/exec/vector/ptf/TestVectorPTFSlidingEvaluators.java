@@ -0,0 +1,402 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.apache.hadoop.hive.ql.exec.vector.ptf;
+
+import java.util.Random;
+
+import org.apache.hadoop.hive.common.type.HiveDecimal;
+import org.apache.hadoop.hive.ql.exec.vector.ColumnVector;
+import org.apache.hadoop.hive.ql.exec.vector.DecimalColumnVector;
+import org.apache.hadoop.hive.ql.exec.vector.DoubleColumnVector;
+import org.apache.hadoop.hive.ql.exec.vector.LongColumnVector;
+import org.apache.hadoop.hive.ql.exec.vector.VectorizedRowBatch;
+import org.apache.hadoop.hive.ql.exec.vector.expressions.IdentityExpression;
+import org.apache.hadoop.hive.ql.parse.PTFInvocationSpec.Order;
+import org.apache.hadoop.hive.ql.parse.WindowingSpec.BoundarySpec;
+import org.apache.hadoop.hive.ql.parse.WindowingSpec.Direction;
+import org.apache.hadoop.hive.ql.parse.WindowingSpec.WindowType;
+import org.apache.hadoop.hive.ql.plan.ptf.BoundaryDef;
+import org.apache.hadoop.hive.ql.plan.ptf.OrderDef;
+import org.apache.hadoop.hive.ql.plan.ptf.OrderExpressionDef;
+import org.apache.hadoop.hive.ql.plan.ptf.WindowFrameDef;
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ * Compares the sliding window frame evaluators with a brute force evaluation of each frame.
+ */
+public class TestVectorPTFSlidingEvaluators {
+
+  private static final int INPUT_COLUMN = 0;
+  private static final int ORDER_COLUMN = 1;
+  private static final int OUTPUT_COLUMN = 2;
+
+  private static final int UNBOUNDED = BoundarySpec.UNBOUNDED_AMOUNT;
+
+  private enum Function {
+    SUM, AVG, MIN, MAX, COUNT
+  }
+
+  private static BoundaryDef preceding(int amount) {
+    return (amount == 0 ?
+        new BoundaryDef(Direction.CURRENT, 0) : new BoundaryDef(Direction.PRECEDING, amount));
+  }
+
+  private static WindowFrameDef rows(int start, int end) {
+    return new WindowFrameDef(WindowType.ROWS, preceding(start), preceding(end));
+  }
+
+  private static WindowFrameDef range(int start, Order order) {
+    WindowFrameDef windowFrameDef =
+        new WindowFrameDef(WindowType.RANGE, preceding(start), preceding(0));
+    OrderExpressionDef orderExpressionDef = new OrderExpressionDef();
+    orderExpressionDef.setOrder(order);
+    OrderDef orderDef = new OrderDef();
+    orderDef.addExpression(orderExpressionDef);
+    windowFrameDef.setOrderDef(orderDef);
+    return windowFrameDef;
+  }
+
+  private static VectorPTFEvaluatorBase createEvaluator(Function function, ColumnVector.Type type,
+      WindowFrameDef windowFrameDef) {
+    IdentityExpression input = new IdentityExpression(INPUT_COLUMN);
+    VectorPTFEvaluatorSlidingBase evaluator;
+    switch (function) {
+    case SUM:
+      evaluator = (type == ColumnVector.Type.LONG ?
+          new VectorPTFEvaluatorLongSlidingSum(windowFrameDef, input, OUTPUT_COLUMN) :
+          type == ColumnVector.Type.DOUBLE ?
+          new VectorPTFEvaluatorDoubleSlidingSum(windowFrameDef, input, OUTPUT_COLUMN) :
+          new VectorPTFEvaluatorDecimalSlidingSum(windowFrameDef, input, OUTPUT_COLUMN));
+      break;
+    case AVG:
+      evaluator = (type == ColumnVector.Type.LONG ?
+          new VectorPTFEvaluatorLongSlidingAvg(windowFrameDef, input, OUTPUT_COLUMN) :
+          type == ColumnVector.Type.DOUBLE ?
+          new VectorPTFEvaluatorDoubleSlidingAvg(windowFrameDef, input, OUTPUT_COLUMN) :
+          new VectorPTFEvaluatorDecimalSlidingAvg(windowFrameDef, input, OUTPUT_COLUMN));
+      break;
+    case MIN:
+      evaluator = (type == ColumnVector.Type.LONG ?
+          new VectorPTFEvaluatorLongSlidingMin(windowFrameDef, input, OUTPUT_COLUMN) :
+          type == ColumnVector.Type.DOUBLE ?
+          new VectorPTFEvaluatorDoubleSlidingMin(windowFrameDef, input, OUTPUT_COLUMN) :
+          new VectorPTFEvaluatorDecimalSlidingMin(windowFrameDef, input, OUTPUT_COLUMN));
+      break;
+    case MAX:
+      evaluator = (type == ColumnVector.Type.LONG ?
+          new VectorPTFEvaluatorLongSlidingMax(windowFrameDef, input, OUTPUT_COLUMN) :
+          type == ColumnVector.Type.DOUBLE ?
+          new VectorPTFEvaluatorDoubleSlidingMax(windowFrameDef, input, OUTPUT_COLUMN) :
+          new VectorPTFEvaluatorDecimalSlidingMax(windowFrameDef, input, OUTPUT_COLUMN));
+      break;
+    case COUNT:
+      evaluator = new VectorPTFEvaluatorSlidingCount(windowFrameDef, input, OUTPUT_COLUMN);
+      break;
+    default:
+      throw new RuntimeException("Unexpected function " + function);
+    }
+    evaluator.setOrderColumnNum(ORDER_COLUMN);
+    return evaluator;
+  }
+
+  /*
+   * Brute force aggregation of the values in [from, to); returns null for a null result.
+   */
+  private static Double aggregate(Function function, Long[] values, int from, int to) {
+    long count = 0;
+    double sum = 0;
+    Double min = null;
+    Double max = null;
+    for (int i = Math.max(from, 0); i < to; i++) {
+      if (values[i] == null) {
+        continue;
+      }
+      double value = values[i];
+      count++;
+      sum += value;
+      min = (min == null ? value : Math.min(min, value));
+      max = (max == null ? value : Math.max(max, value));
+    }
+    switch (function) {
+    case COUNT:
+      return (double) count;
+    case SUM:
+      return (count == 0 ? null : sum);
+    case AVG:
+      return (count == 0 ? null : sum / count);
+    case MIN:
+      return min;
+    case MAX:
+      return max;
+    default:
+      throw new RuntimeException("Unexpected function " + function);
+    }
+  }
+
+  private static VectorizedRowBatch createBatch(ColumnVector.Type type, Function function) {
+    VectorizedRowBatch batch = new VectorizedRowBatch(3);
+    batch.cols[INPUT_COLUMN] = createColumnVector(type);
+    batch.cols[ORDER_COLUMN] = new LongColumnVector();
+    ColumnVector.Type outputType = (function == Function.COUNT ? ColumnVector.Type.LONG :
+        (function == Function.AVG && type == ColumnVector.Type.LONG) ? ColumnVector.Type.DOUBLE :
+        type);
+    batch.cols[OUTPUT_COLUMN] = createColumnVector(outputType);
+    return batch;
+  }
+
+  private static ColumnVector createColumnVector(ColumnVector.Type type) {
+    switch (type) {
+    case LONG:
+      return new LongColumnVector();
+    case DOUBLE:
+      return new DoubleColumnVector();
+    case DECIMAL:
+      return new DecimalColumnVector(VectorizedRowBatch.DEFAULT_SIZE, 38, 4);
+    default:
+      throw new RuntimeException("Unexpected type " + type);
+    }
+  }
+
+  private static void setInput(ColumnVector colVector, int index, Long value) {
+    colVector.isNull[index] = (value == null);
+    if (value == null) {
+      colVector.noNulls = false;
+      return;
+    }
+    if (colVector instanceof LongColumnVector) {
+      ((LongColumnVector) colVector).vector[index] = value;
+    } else if (colVector instanceof DoubleColumnVector) {
+      ((DoubleColumnVector) colVector).vector[index] = value;
+    } else {
+      ((DecimalColumnVector) colVector).set(index, HiveDecimal.create(value));
+    }
+  }
+
+  private static void resetColumn(ColumnVector colVector) {
+    colVector.reset();
+    colVector.noNulls = true;
+  }
+
+  private static Double getOutput(ColumnVector colVector, int index) {
+    if (!colVector.noNulls && colVector.isNull[index]) {
+      return null;
+    }
+    if (colVector instanceof LongColumnVector) {
+      return (double) ((LongColumnVector) colVector).vector[index];
+    } else if (colVector instanceof DoubleColumnVector) {
+      return ((DoubleColumnVector) colVector).vector[index];
+    } else {
+      return ((DecimalColumnVector) colVector).vector[index].doubleValue();
+    }
+  }
+
+  private static Double getGroupResult(VectorPTFEvaluatorBase evaluator) {
+    if (evaluator.isGroupResultNull()) {
+      return null;
+    }
+    switch (evaluator.getResultColumnVectorType()) {
+    case LONG:
+      return (double) evaluator.getLongGroupResult();
+    case DOUBLE:
+      return evaluator.getDoubleGroupResult();
+    case DECIMAL:
+      return evaluator.getDecimalGroupResult().doubleValue();
+    default:
+      throw new RuntimeException("Unexpected type " + evaluator.getResultColumnVectorType());
+    }
+  }
+
+  private static void assertResult(String message, Double expected, Double actual) {
+    if (expected == null) {
+      assertNull(message, actual);
+    } else {
+      assertNotNull(message, actual);
+      // The decimal output column has a scale of 4.
+      assertEquals(message, expected, actual, 1e-4);
+    }
+  }
+
+  private static Long[] randomValues(Random random, int count) {
+    Long[] values = new Long[count];
+    for (int i = 0; i < count; i++) {
+      values[i] = (random.nextInt(5) == 0 ? null : (long) (random.nextInt(2000) - 1000));
+    }
+    return values;
+  }
+
+  /*
+   * Streams two partitions of values in small batches and checks the result of each row.
+   */
+  private void testRows(Function function, ColumnVector.Type type, int start, int end) {
+    Random random = new Random(start * 31 + end);
+    WindowFrameDef windowFrameDef = rows(start, end);
+    assertTrue(VectorPTFEvaluatorSlidingBase.isSlidingFrame(windowFrameDef));
+    assertTrue(VectorPTFEvaluatorSlidingBase.isSupportedSlidingFrame(windowFrameDef));
+    VectorPTFEvaluatorBase evaluator = createEvaluator(function, type, windowFrameDef);
+    assertTrue(evaluator.streamsResult());
+    VectorizedRowBatch batch = createBatch(type, function);
+
+    for (int partition = 0; partition < 2; partition++) {
+      Long[] values = randomValues(random, 200 + partition * 37);
+      int batchSize = 7 + partition * 10;
+      for (int batchStart = 0; batchStart < values.length; batchStart += batchSize) {
+        batch.size = Math.min(batchSize, values.length - batchStart);
+        resetColumn(batch.cols[INPUT_COLUMN]);
+        for (int i = 0; i < batch.size; i++) {
+          setInput(batch.cols[INPUT_COLUMN], i, values[batchStart + i]);
+        }
+        evaluator.evaluateGroupBatch(batch, batchStart + batch.size == values.length);
+        for (int i = 0; i < batch.size; i++) {
+          int row = batchStart + i;
+          int from = (start == UNBOUNDED ? 0 : row - start);
+          Double expected = aggregate(function, values, from, row - end + 1);
+          assertResult(function + " " + type + " " + windowFrameDef + " row " + row,
+              expected, getOutput(batch.cols[OUTPUT_COLUMN], i));
+        }
+      }
+      evaluator.resetEvaluator();
+    }
+  }
+
+  /*
+   * Evaluates groups of peers, each in one or more batches, and checks each group result.
+   */
+  private void testRange(Function function, ColumnVector.Type type, int start, Order order) {
+    Random random = new Random(start);
+    WindowFrameDef windowFrameDef = range(start, order);
+    assertTrue(VectorPTFEvaluatorSlidingBase.isSlidingFrame(windowFrameDef));
+    assertTrue(VectorPTFEvaluatorSlidingBase.isSupportedSlidingFrame(windowFrameDef));
+    VectorPTFEvaluatorBase evaluator = createEvaluator(function, type, windowFrameDef);
+    assertFalse(evaluator.streamsResult());
+    VectorizedRowBatch batch = createBatch(type, function);
+
+    // A group of NULL order keys first, then increasing (or decreasing) keys with gaps.
+    final int groupCount = 60;
+    Long[] keys = new Long[groupCount];
+    long key = 0;
+    for (int g = 1; g < groupCount; g++) {
+      key += random.nextInt(4);
+      keys[g] = (order == Order.ASC ? key : -key);
+    }
+    Long[][] groupValues = new Long[groupCount][];
+    for (int g = 0; g < groupCount; g++) {
+      groupValues[g] = randomValues(random, 1 + random.nextInt(12));
+    }
+
+    LongColumnVector orderColVector = (LongColumnVector) batch.cols[ORDER_COLUMN];
+    for (int g = 0; g < groupCount; g++) {
+      resetColumn(orderColVector);
+      orderColVector.isRepeating = true;
+      if (keys[g] == null) {
+        orderColVector.noNulls = false;
+        orderColVector.isNull[0] = true;
+      } else {
+        orderColVector.vector[0] = keys[g];
+      }
+
+      // Split the group in batches of 5 rows.
+      Long[] values = groupValues[g];
+      for (int batchStart = 0; batchStart < values.length; batchStart += 5) {
+        batch.size = Math.min(5, values.length - batchStart);
+        resetColumn(batch.cols[INPUT_COLUMN]);
+        for (int i = 0; i < batch.size; i++) {
+          setInput(batch.cols[INPUT_COLUMN], i, values[batchStart + i]);
+        }
+        evaluator.evaluateGroupBatch(batch, batchStart + batch.size == values.length);
+      }
+
+      // The frame is the rows of this group and the earlier groups with a key within range.
+      int frameRowCount = 0;
+      for (int other = 0; other <= g; other++) {
+        boolean inFrame = (keys[g] == null ? keys[other] == null :
+            keys[other] != null && Math.abs(keys[g] - keys[other]) <= start);
+        if (inFrame) {
+          frameRowCount += groupValues[other].length;
+        }
+      }
+      Long[] frameValues = new Long[frameRowCount];
+      int index = 0;
+      for (int other = 0; other <= g; other++) {
+        boolean inFrame = (keys[g] == null ? keys[other] == null :
+            keys[other] != null && Math.abs(keys[g] - keys[other]) <= start);
+        if (inFrame) {
+          for (Long value : groupValues[other]) {
+            frameValues[index++] = value;
+          }
+        }
+      }
+      assertResult(function + " " + type + " " + windowFrameDef + " " + order + " group " + g,
+          aggregate(function, frameValues, 0, frameRowCount), getGroupResult(evaluator));
+    }
+  }
+
+  private static final ColumnVector.Type[] TYPES = {
+      ColumnVector.Type.LONG, ColumnVector.Type.DOUBLE, ColumnVector.Type.DECIMAL };
+
+  @Test
+  public void testRowsSlidingFrames() {
+    for (Function function : Function.values()) {
+      for (ColumnVector.Type type : TYPES) {
+        testRows(function, type, 3, 0);
+        testRows(function, type, 20, 1);
+        testRows(function, type, 2, 2);
+        testRows(function, type, 0, 0);
+      }
+    }
+  }
+
+  @Test
+  public void testRowsUnboundedStartFrames() {
+    for (Function function : Function.values()) {
+      for (ColumnVector.Type type : TYPES) {
+        testRows(function, type, UNBOUNDED, 0);
+        testRows(function, type, UNBOUNDED, 4);
+      }
+    }
+  }
+
+  @Test
+  public void testRangeFrames() {
+    for (Function function : Function.values()) {
+      for (ColumnVector.Type type : TYPES) {
+        testRange(function, type, 0, Order.ASC);
+        testRange(function, type, 3, Order.ASC);
+        testRange(function, type, 10, Order.DESC);
+      }
+    }
+  }
+
+  @Test
+  public void testUnsupportedFrames() {
+    assertFalse(VectorPTFEvaluatorSlidingBase.isSlidingFrame(rows(UNBOUNDED, UNBOUNDED)));
+    assertFalse(VectorPTFEvaluatorSlidingBase.isSlidingFrame(range(UNBOUNDED, Order.ASC)));
+    assertFalse(VectorPTFEvaluatorSlidingBase.isSupportedSlidingFrame(
+        new WindowFrameDef(WindowType.ROWS, preceding(2), new BoundaryDef(Direction.FOLLOWING, 1))));
+    // The frame end is before the frame start.
+    assertFalse(VectorPTFEvaluatorSlidingBase.isSupportedSlidingFrame(rows(1, 2)));
+    // The frame start moves, so the whole partition evaluators do not apply either.
+    WindowFrameDef currentRowToUnbounded = new WindowFrameDef(WindowType.ROWS, preceding(0),
+        new BoundaryDef(Direction.FOLLOWING, UNBOUNDED));
+    assertTrue(VectorPTFEvaluatorSlidingBase.isSlidingFrame(currentRowToUnbounded));
+    assertFalse(VectorPTFEvaluatorSlidingBase.isSupportedSlidingFrame(currentRowToUnbounded));
+  }
+}
@@ -155,6 +155,11 @@ public void process(Object row, int tag) throws HiveException {
             }
           }
           break;
+        case LIST:
+          rowObjects[c] =
+              ObjectInspectorUtils.copyToStandardObject(
+                  rowObjects[c], outputObjectInspectors[c]);
+          break;
         default:
           throw new RuntimeException("Unexpected category " + outputTypeInfos[c].getCategory());
         }
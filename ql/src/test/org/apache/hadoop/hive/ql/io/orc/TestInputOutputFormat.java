@@ -35,6 +35,7 @@
 import java.util.Arrays;
 import java.util.Collections;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.Iterator;
 import java.util.LinkedHashMap;
 import java.util.List;
@@ -2209,6 +2210,69 @@ public void testVectorization() throws Exception {
     assertEquals(false, reader.next(key, value));
   }
 
+  /**
+   * Test the late materialization of the vectorized reader, with and without row group pruning.
+   * @throws Exception
+   */
+  @Test
+  public void testVectorizationLateMaterialization() throws Exception {
+    StructObjectInspector inspector;
+    synchronized (TestOrcFile.class) {
+      inspector = (StructObjectInspector)
+          ObjectInspectorFactory.getReflectionObjectInspector(MyRow.class,
+              ObjectInspectorFactory.ObjectInspectorOptions.JAVA);
+    }
+    for (int rowIndexStride : new int[] { 10000, 1000 }) {
+      JobConf conf = createMockExecutionEnvironment(workDir, new Path("mock:///"),
+          "vectorLate", inspector, true, 1);
+      Path path = new Path(conf.get("mapred.input.dir") + "/0_0");
+      Writer writer =
+          OrcFile.createWriter(path,
+              OrcFile.writerOptions(conf).blockPadding(false)
+                  .bufferSize(1024).rowIndexStride(rowIndexStride).inspector(inspector));
+      for (int i = 0; i < 5000; ++i) {
+        writer.addRow(new MyRow(i, 2 * i));
+      }
+      writer.close();
+      setBlocks(path, conf, new MockBlock("host0", "host1"));
+
+      SearchArgument sarg = SearchArgumentFactory.newBuilder()
+          .startOr()
+          .between("x", PredicateLeaf.Type.LONG, 1500L, 1600L)
+          .equals("x", PredicateLeaf.Type.LONG, 4100L)
+          .end()
+          .build();
+      conf.set(ConvertAstToSearchArg.SARG_PUSHDOWN, toKryo(sarg));
+      conf.set(ColumnProjectionUtils.READ_COLUMN_NAMES_CONF_STR, "x,y");
+
+      HiveInputFormat<?,?> inputFormat =
+          new HiveInputFormat<WritableComparable, Writable>();
+      InputSplit[] splits = inputFormat.getSplits(conf, 10);
+      assertEquals(1, splits.length);
+      org.apache.hadoop.mapred.RecordReader<NullWritable, VectorizedRowBatch>
+          reader = inputFormat.getRecordReader(splits[0], conf, Reporter.NULL);
+      NullWritable key = reader.createKey();
+      VectorizedRowBatch value = reader.createValue();
+
+      // Only the batches with 1500 to 1600 and 4100 are read.
+      List<Long> firstRows = new ArrayList<Long>();
+      boolean[] found = new boolean[5000];
+      while (reader.next(key, value)) {
+        LongColumnVector x = (LongColumnVector) value.cols[0];
+        LongColumnVector y = (LongColumnVector) value.cols[1];
+        firstRows.add(x.vector[0]);
+        for (int i = 0; i < value.size; i++) {
+          assertEquals(x.vector[0] + i, x.vector[i]);
+          assertEquals(2 * x.vector[i], y.vector[i]);
+          found[(int) x.vector[i]] = true;
+        }
+      }
+      reader.close();
+      assertEquals(2, firstRows.size());
+      assertTrue(found[1500] && found[1600] && found[4100]);
+    }
+  }
+
   /**
    * Test vectorization, non-acid, non-combine.
    * @throws Exception
@@ -2667,6 +2731,38 @@ public Void run() throws Exception {
   }
 
 
+  @Test
+  public void testSplitGenFooterBatches() throws Exception {
+    conf.setInt(ConfVars.HIVE_ORC_COMPUTE_SPLITS_NUM_THREADS.varname, 2);
+    conf.setInt(ConfVars.HIVE_ORC_SPLITS_FOOTER_BATCH_SIZE.varname, 4);
+    conf.set(ConfVars.HIVE_ORC_SPLIT_STRATEGY.varname, "ETL");
+    conf.setClass("fs.mock.impl", MockFileSystem.class, FileSystem.class);
+    MockFileSystem.clearGlobalFiles();
+    OrcInputFormat.Context.resetThreadPool(); // We need the size above to take effect.
+    try {
+      // 10 files for 2 threads, read in batches of 4, 4 and 2 files grouped by footer host.
+      Set<String> expectedPaths = new HashSet<>();
+      for (int i = 0; i < 10; ++i) {
+        String path = "mock:/batches/file" + i;
+        expectedPaths.add(path);
+        MockFileSystem.addGlobalFile(new MockFile(path, 10000, createMockOrcFile(197, 300, 600),
+            new MockBlock("host" + (i % 3) + "-1", "host" + (i % 3) + "-2")));
+      }
+      FileInputFormat.setInputPaths(conf, "mock:/batches");
+      List<OrcSplit> splits = OrcInputFormat.generateSplitsInfo(conf, new Context(conf, -1, null));
+      assertEquals(10, splits.size());
+      Set<String> paths = new HashSet<>();
+      for (OrcSplit split : splits) {
+        paths.add(split.getPath().toString());
+      }
+      assertEquals(expectedPaths, paths);
+    } finally {
+      MockFileSystem.clearGlobalFiles();
+      OrcInputFormat.Context.resetThreadPool();
+    }
+  }
+
+
   private StructObjectInspector createSoi() {
     synchronized (TestOrcFile.class) {
       return (StructObjectInspector)ObjectInspectorFactory.getReflectionObjectInspector(
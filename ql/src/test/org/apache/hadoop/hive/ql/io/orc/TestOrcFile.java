@@ -38,6 +38,7 @@
 import java.util.List;
 import java.util.Map;
 import java.util.Random;
+import java.util.concurrent.ThreadPoolExecutor;
 
 import com.google.common.primitives.Longs;
 import org.apache.hadoop.conf.Configuration;
@@ -1230,6 +1231,58 @@ public void emptyFile() throws Exception {
     assertEquals(false, reader.getStripes().iterator().hasNext());
   }
 
+  @Test
+  public void testEncoderThreads() throws Exception {
+    ObjectInspector inspector;
+    synchronized (TestOrcFile.class) {
+      inspector = ObjectInspectorFactory.getReflectionObjectInspector
+          (SimpleStruct.class, ObjectInspectorFactory.ObjectInspectorOptions.JAVA);
+    }
+    Path[] paths = new Path[] { testFilePath, testFilePath.suffix(".second") };
+    fs.delete(paths[1], false);
+    Writer[] writers = new Writer[paths.length];
+    for (int i = 0; i < writers.length; i++) {
+      writers[i] = OrcFile.createWriter(paths[i],
+          OrcFile.writerOptions(conf)
+              .inspector(inspector)
+              .stripeSize(10000)
+              .bufferSize(1000)
+              .encoderThreads(i + 1));
+    }
+    // The shared pool grows to the threads of the second writer.
+    assertTrue(((ThreadPoolExecutor) WriterImpl.getEncoderPool(1)).getCorePoolSize() >= 2);
+    // The row is reused, like the operators do, while the previous batches are encoded.
+    final int count = 25000;
+    SimpleStruct row = new SimpleStruct(null, "");
+    for (int r = 0; r < count; r++) {
+      for (int i = 0; i < writers.length; i++) {
+        row.string1.set(i + "-" + r);
+        writers[i].addRow(row);
+      }
+    }
+    for (Writer writer : writers) {
+      writer.close();
+      assertEquals(count, writer.getNumberOfRows());
+    }
+
+    for (int i = 0; i < paths.length; i++) {
+      Reader reader = OrcFile.createReader(paths[i],
+          OrcFile.readerOptions(conf).filesystem(fs));
+      assertEquals(count, reader.getNumberOfRows());
+      assertTrue(reader.getStripes().size() > 1);
+      RecordReader rows = reader.rows();
+      OrcStruct value = null;
+      for (int r = 0; r < count; r++) {
+        assertTrue(rows.hasNext());
+        value = (OrcStruct) rows.next(value);
+        assertEquals(i + "-" + r, value.getFieldValue(1).toString());
+      }
+      assertEquals(false, rows.hasNext());
+      rows.close();
+    }
+    fs.delete(paths[1], false);
+  }
+
   @Test
   public void metaData() throws Exception {
     ObjectInspector inspector;
@@ -25,12 +25,16 @@
 import java.io.DataInputStream;
 import java.io.File;
 import java.io.PrintStream;
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.Properties;
 
 import org.apache.hadoop.conf.Configuration;
 import org.apache.hadoop.fs.FileSystem;
 import org.apache.hadoop.fs.Path;
 import org.apache.hadoop.hive.conf.HiveConf;
+import org.apache.hadoop.hive.ql.exec.vector.BytesColumnVector;
+import org.apache.hadoop.hive.ql.exec.vector.VectorizedRowBatch;
 import org.apache.hadoop.hive.ql.io.AcidOutputFormat;
 import org.apache.hadoop.hive.ql.io.AcidUtils;
 import org.apache.hadoop.hive.ql.io.BucketCodec;
@@ -38,6 +42,7 @@
 import org.apache.hadoop.hive.ql.io.RecordUpdater;
 import org.apache.hadoop.hive.serde2.objectinspector.ObjectInspector;
 import org.apache.hadoop.hive.serde2.objectinspector.ObjectInspectorFactory;
+import org.apache.hadoop.hive.serde2.objectinspector.primitive.PrimitiveObjectInspectorFactory;
 import org.apache.hadoop.io.IntWritable;
 import org.apache.hadoop.io.LongWritable;
 import org.apache.hadoop.io.Text;
@@ -191,6 +196,64 @@ private static int getBucketId(OrcStruct row) {
     return
       BucketCodec.determineVersion(bucketValue).decodeWriterId(bucketValue);
   }
+  @Test
+  public void testBatchInserts() throws Exception {
+    Path root = new Path(workDir, "testBatchInserts");
+    Configuration conf = new Configuration();
+    FileSystem fs = FileSystem.getLocal(conf).getRaw();
+    ObjectInspector inspector = ObjectInspectorFactory.getStandardStructObjectInspector(
+        Collections.singletonList("field"), Collections.<ObjectInspector>singletonList(
+            PrimitiveObjectInspectorFactory.writableStringObjectInspector));
+    AcidOutputFormat.Options options = new AcidOutputFormat.Options(conf)
+        .filesystem(fs)
+        .bucket(10)
+        .writingBase(false)
+        .minimumTransactionId(10)
+        .maximumTransactionId(19)
+        .inspector(inspector)
+        .reporter(Reporter.NULL)
+        .finalDestination(root);
+    OrcRecordUpdater updater = new OrcRecordUpdater(root, options);
+    updater.insert(11, Arrays.asList(new Text("first")));
+    VectorizedRowBatch batch = new VectorizedRowBatch(1);
+    BytesColumnVector column = new BytesColumnVector();
+    batch.cols[0] = column;
+    batch.reset();
+    column.setVal(0, "second".getBytes());
+    column.noNulls = false;
+    column.isNull[1] = true;
+    batch.size = 2;
+    updater.insert(11, batch);
+    batch.reset();
+    column.setVal(0, "third".getBytes());
+    batch.size = 1;
+    updater.insert(12, batch);
+    updater.close(false);
+    assertEquals(4L, updater.getStats().getRowCount());
+
+    Reader reader = OrcFile.createReader(AcidUtils.createFilename(root, options),
+        new OrcFile.ReaderOptions(conf).filesystem(fs));
+    assertEquals(4, reader.getNumberOfRows());
+    assertEquals(4, OrcAcidUtils.parseAcidStats(reader).inserts);
+
+    RecordReader rows = reader.rows();
+    String[] values = {"first", "second", null, "third"};
+    long[] transactions = {11, 11, 11, 12};
+    long[] rowIds = {0, 1, 2, 0};
+    for (int i = 0; i < values.length; i++) {
+      assertEquals(true, rows.hasNext());
+      OrcStruct row = (OrcStruct) rows.next(null);
+      assertEquals(OrcRecordUpdater.INSERT_OPERATION, OrcRecordUpdater.getOperation(row));
+      assertEquals(transactions[i], OrcRecordUpdater.getCurrentTransaction(row));
+      assertEquals(transactions[i], OrcRecordUpdater.getOriginalTransaction(row));
+      assertEquals(10, getBucketId(row));
+      assertEquals(rowIds[i], OrcRecordUpdater.getRowId(row));
+      Object value = OrcRecordUpdater.getRow(row).getFieldValue(0);
+      assertEquals(values[i], value == null ? null : value.toString());
+    }
+    assertEquals(false, rows.hasNext());
+  }
+
   @Test
   public void testWriterTblProperties() throws Exception {
     Path root = new Path(workDir, "testWriterTblProperties");
@@ -19,15 +19,20 @@
 
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
 import static org.junit.Assert.assertTrue;
 
 import java.io.File;
 import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
 
 import org.apache.hadoop.fs.FileSystem;
 import org.apache.hadoop.fs.Path;
 import org.apache.hadoop.hive.common.ValidTxnList;
 import org.apache.hadoop.hive.conf.HiveConf;
+import org.apache.hadoop.hive.llap.io.api.LlapIo;
+import org.apache.hadoop.hive.llap.io.api.LlapProxy;
 import org.apache.hadoop.hive.metastore.api.hive_metastoreConstants;
 import org.apache.hadoop.hive.ql.exec.vector.LongColumnVector;
 import org.apache.hadoop.hive.ql.exec.vector.VectorizedRowBatch;
@@ -39,10 +44,14 @@
 import org.apache.hadoop.hive.ql.io.RecordIdentifier;
 import org.apache.hadoop.hive.ql.io.RecordUpdater;
 import org.apache.hadoop.hive.ql.io.orc.VectorizedOrcAcidRowBatchReader.ColumnizedDeleteEventRegistry;
+import org.apache.hadoop.hive.ql.io.orc.VectorizedOrcAcidRowBatchReader.ColumnizedDeleteEventRegistry.DeleteEvents;
 import org.apache.hadoop.hive.ql.io.orc.VectorizedOrcAcidRowBatchReader.SortMergedDeleteEventRegistry;
+import org.apache.hadoop.hive.serde2.Deserializer;
 import org.apache.hadoop.hive.serde2.objectinspector.ObjectInspector;
 import org.apache.hadoop.hive.serde2.objectinspector.ObjectInspectorFactory;
 import org.apache.hadoop.io.LongWritable;
+import org.apache.hadoop.io.NullWritable;
+import org.apache.hadoop.mapred.InputFormat;
 import org.apache.hadoop.mapred.JobConf;
 import org.apache.hadoop.mapred.Reporter;
 import org.apache.orc.TypeDescription;
@@ -211,6 +220,103 @@ public void testVectorizedOrcAcidRowBatchReader() throws Exception {
     conf.setInt(HiveConf.ConfVars.HIVE_TRANSACTIONAL_NUM_EVENTS_IN_MEMORY.varname, oldValue);
   }
 
+  /**
+   * An LlapIo which only accounts for the memory reserved, up to {@link #maxMemory}.
+   */
+  private static class MemoryAccountingLlapIo implements LlapIo<VectorizedRowBatch> {
+    private final AtomicLong usedMemory = new AtomicLong();
+    private volatile long maxMemory = Long.MAX_VALUE;
+
+    @Override
+    public InputFormat<NullWritable, VectorizedRowBatch> getInputFormat(
+        InputFormat<?, ?> sourceInputFormat, Deserializer serde) {
+      return null;
+    }
+
+    @Override
+    public void close() {
+    }
+
+    @Override
+    public String getMemoryInfo() {
+      return null;
+    }
+
+    @Override
+    public void initCacheOnlyInputFormat(InputFormat<?, ?> inputFormat) {
+    }
+
+    @Override
+    public boolean reserveMemory(long memoryToReserve) {
+      if (usedMemory.addAndGet(memoryToReserve) > maxMemory) {
+        usedMemory.addAndGet(-memoryToReserve);
+        return false;
+      }
+      return true;
+    }
+
+    @Override
+    public void releaseMemory(long memoryToRelease) {
+      usedMemory.addAndGet(-memoryToRelease);
+    }
+  }
+
+  @Test
+  public void testDeleteEventsCache() throws Exception {
+    MemoryAccountingLlapIo io = new MemoryAccountingLlapIo();
+    LlapProxy.setDaemon(true);
+    LlapProxy.setIo(io);
+    conf.set(HiveConf.ConfVars.HIVE_TRANSACTIONAL_DELETE_EVENTS_CACHE_SIZE.varname, "256Mb");
+    ColumnizedDeleteEventRegistry.clearDeleteEventsCache();
+    try {
+      // The first read loads the delete events into the cache, the second one reuses them.
+      testVectorizedOrcAcidRowBatchReader(ColumnizedDeleteEventRegistry.class.getName());
+      testVectorizedOrcAcidRowBatchReader(ColumnizedDeleteEventRegistry.class.getName());
+
+      // All the transactions of the delete deltas are valid for both transaction lists.
+      OrcSplit split = getSplits().get(0);
+      conf.set(ValidTxnList.VALID_TXNS_KEY, "14:1:1:5");
+      DeleteEvents deleteEvents = getDeleteEvents(split);
+      assertFalse(deleteEvents.isEmpty());
+      conf.set(ValidTxnList.VALID_TXNS_KEY, "14:1::");
+      assertSame(deleteEvents, getDeleteEvents(split));
+      assertEquals(deleteEvents.getMemoryUsage(), io.usedMemory.get());
+
+      // Transaction 12 is still open, so its delete events must not be applied.
+      conf.set(ValidTxnList.VALID_TXNS_KEY, "14:12:12:");
+      DeleteEvents partialDeleteEvents = getDeleteEvents(split);
+      assertNotSame(deleteEvents, partialDeleteEvents);
+      assertTrue(partialDeleteEvents.getMemoryUsage() < deleteEvents.getMemoryUsage());
+      assertSame(partialDeleteEvents, getDeleteEvents(split));
+      assertEquals(deleteEvents.getMemoryUsage() + partialDeleteEvents.getMemoryUsage(),
+          io.usedMemory.get());
+
+      // The evicted delete events release their memory.
+      ColumnizedDeleteEventRegistry.clearDeleteEventsCache();
+      assertEquals(0, io.usedMemory.get());
+
+      // The delete events whose memory cannot be reserved are not cached.
+      io.maxMemory = 0;
+      DeleteEvents uncachedDeleteEvents = getDeleteEvents(split);
+      assertFalse(uncachedDeleteEvents.isEmpty());
+      assertNotSame(uncachedDeleteEvents, getDeleteEvents(split));
+      assertEquals(0, io.usedMemory.get());
+    } finally {
+      ColumnizedDeleteEventRegistry.clearDeleteEventsCache();
+      LlapProxy.setIo(null);
+      LlapProxy.setDaemon(false);
+    }
+  }
+
+  private DeleteEvents getDeleteEvents(OrcSplit split) throws Exception {
+    VectorizedOrcAcidRowBatchReader vectorizedReader = new VectorizedOrcAcidRowBatchReader(split,
+        conf, Reporter.NULL, new VectorizedRowBatchCtx());
+    assertTrue(vectorizedReader.getDeleteEventRegistry() instanceof ColumnizedDeleteEventRegistry);
+    DeleteEvents deleteEvents =
+        ((ColumnizedDeleteEventRegistry) vectorizedReader.getDeleteEventRegistry()).getDeleteEvents();
+    vectorizedReader.close();
+    return deleteEvents;
+  }
 
   private void testVectorizedOrcAcidRowBatchReader(String deleteEventRegistry) throws Exception {
     List<OrcSplit> splits = getSplits();
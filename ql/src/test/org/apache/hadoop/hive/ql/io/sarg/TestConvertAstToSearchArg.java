@@ -24,15 +24,31 @@
 
 import java.beans.XMLDecoder;
 import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
 import java.io.UnsupportedEncodingException;
+import java.util.Arrays;
 import java.util.List;
 import java.util.Set;
 
 import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.hive.conf.HiveConf;
 import org.apache.hadoop.hive.ql.exec.SerializationUtilities;
 import org.apache.hadoop.hive.ql.io.parquet.read.ParquetFilterPredicateConverter;
 import org.apache.hadoop.hive.ql.io.sarg.SearchArgument.TruthValue;
+import org.apache.hadoop.hive.ql.plan.DynamicValue;
+import org.apache.hadoop.hive.ql.plan.ExprNodeColumnDesc;
+import org.apache.hadoop.hive.ql.plan.ExprNodeConstantDesc;
+import org.apache.hadoop.hive.ql.plan.ExprNodeDesc;
+import org.apache.hadoop.hive.ql.plan.ExprNodeDynamicValueDesc;
 import org.apache.hadoop.hive.ql.plan.ExprNodeGenericFuncDesc;
+import org.apache.hadoop.hive.ql.udf.generic.GenericUDFBetween;
+import org.apache.hadoop.hive.ql.udf.generic.GenericUDFInBloomFilter;
+import org.apache.hadoop.hive.ql.udf.generic.GenericUDFOPAnd;
+import org.apache.hadoop.hive.serde2.typeinfo.TypeInfo;
+import org.apache.hadoop.hive.serde2.typeinfo.TypeInfoFactory;
+import org.apache.hadoop.io.BytesWritable;
+import org.apache.hadoop.io.IntWritable;
+import org.apache.hive.common.util.BloomKFilter;
 import org.apache.parquet.filter2.predicate.FilterPredicate;
 import org.apache.parquet.schema.MessageType;
 import org.apache.parquet.schema.MessageTypeParser;
@@ -2883,4 +2899,72 @@ public void TestDoubleSarg() throws Exception {
     assertEquals(PredicateLeaf.Type.FLOAT, leaf.getType());
     assertEquals("(EQUALS dbl 2.2)", leaf.toString());
   }
+
+  private static ExprNodeDesc getDynamicValueDesc(String id, TypeInfo typeInfo,
+                                                  final Object value) {
+    return new ExprNodeDynamicValueDesc(new DynamicValue(id, typeInfo) {
+      @Override
+      public Object getValue() {
+        return value;
+      }
+    });
+  }
+
+  /**
+   * id BETWEEN DynamicValue(min) AND DynamicValue(max) and
+   * in_bloom_filter(id, DynamicValue(bloom)), as added by semijoin reduction.
+   */
+  private static ExprNodeGenericFuncDesc getSemiJoinFilter(int min, int max,
+                                                           long... keys) throws Exception {
+    BloomKFilter bloomFilter = new BloomKFilter(1000);
+    for (long key : keys) {
+      bloomFilter.addLong(key);
+    }
+    ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+    BloomKFilter.serialize(bytes, bloomFilter);
+
+    ExprNodeDesc column = new ExprNodeColumnDesc(TypeInfoFactory.intTypeInfo, "id", "t", false);
+    ExprNodeGenericFuncDesc between = new ExprNodeGenericFuncDesc(
+        TypeInfoFactory.booleanTypeInfo, new GenericUDFBetween(), Arrays.asList(
+            new ExprNodeConstantDesc(Boolean.FALSE), column,
+            getDynamicValueDesc("RS_1_id_min", TypeInfoFactory.intTypeInfo, new IntWritable(min)),
+            getDynamicValueDesc("RS_1_id_max", TypeInfoFactory.intTypeInfo, new IntWritable(max))));
+    ExprNodeGenericFuncDesc inBloomFilter = new ExprNodeGenericFuncDesc(
+        TypeInfoFactory.booleanTypeInfo, new GenericUDFInBloomFilter(), Arrays.asList(
+            column, getDynamicValueDesc("RS_1_id_bloom_filter", TypeInfoFactory.binaryTypeInfo,
+                new BytesWritable(bytes.toByteArray()))));
+    return new ExprNodeGenericFuncDesc(TypeInfoFactory.booleanTypeInfo, new GenericUDFOPAnd(),
+        Arrays.<ExprNodeDesc>asList(between, inBloomFilter));
+  }
+
+  @Test
+  public void testSemiJoinBloomFilterSarg() throws Exception {
+    SearchArgument sarg = ConvertAstToSearchArg.create(conf,
+        getSemiJoinFilter(100, 120, 100, 105, 120));
+    assertEquals("(and leaf-0 leaf-1)", sarg.getExpression().toString());
+    assertEquals(2, sarg.getLeaves().size());
+    PredicateLeaf leaf = sarg.getLeaves().get(0);
+    assertEquals(PredicateLeaf.Operator.BETWEEN, leaf.getOperator());
+    assertEquals(Arrays.<Object>asList(100, 120), leaf.getLiteralList());
+    leaf = sarg.getLeaves().get(1);
+    assertEquals(PredicateLeaf.Type.LONG, leaf.getType());
+    assertEquals(PredicateLeaf.Operator.IN, leaf.getOperator());
+    assertTrue(leaf.getLiteralList().containsAll(Arrays.<Object>asList(100L, 105L, 120L)));
+  }
+
+  @Test
+  public void testSemiJoinBloomFilterSargWideRange() throws Exception {
+    // Too many values to test against the bloom filter, only the range is pushed down.
+    SearchArgument sarg = ConvertAstToSearchArg.create(conf,
+        getSemiJoinFilter(0, 1000000, 0, 1000000));
+    assertEquals("leaf-0", sarg.getExpression().toString());
+    assertEquals(1, sarg.getLeaves().size());
+    assertEquals(PredicateLeaf.Operator.BETWEEN, sarg.getLeaves().get(0).getOperator());
+
+    Configuration disabledConf = new Configuration();
+    HiveConf.setIntVar(disabledConf,
+        HiveConf.ConfVars.TEZ_DYNAMIC_SEMIJOIN_REDUCTION_SARG_MAX_VALUES, 0);
+    sarg = ConvertAstToSearchArg.create(disabledConf, getSemiJoinFilter(100, 120, 100));
+    assertEquals("leaf-0", sarg.getExpression().toString());
+  }
 }
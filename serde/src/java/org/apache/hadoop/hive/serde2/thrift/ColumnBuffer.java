@@ -312,6 +312,28 @@ public int size() {
     return size;
   }
 
+  /**
+   * @return The size in bytes of a value of a fixed width type, 0 for the strings and binaries
+   *         whose length is returned by addValue.
+   */
+  public static int getFixedSize(Type type) {
+    switch (type) {
+    case BOOLEAN_TYPE:
+    case TINYINT_TYPE:
+      return 1;
+    case SMALLINT_TYPE:
+      return 2;
+    case INT_TYPE:
+      return 4;
+    case BIGINT_TYPE:
+    case FLOAT_TYPE:
+    case DOUBLE_TYPE:
+      return 8;
+    default:
+      return 0;
+    }
+  }
+
   public TColumn toTColumn() {
     TColumn value = new TColumn();
     ByteBuffer nullMasks = ByteBuffer.wrap(toBinary(nulls));
@@ -353,11 +375,15 @@ public TColumn toTColumn() {
   private static final ByteBuffer EMPTY_BINARY = ByteBuffer.allocate(0);
   private static final String EMPTY_STRING = "";
 
-  public void addValue(Object field) {
-    addValue(this.type, field);
+  public int addValue(Object field) {
+    return addValue(this.type, field);
   }
 
-  public void addValue(Type type, Object field) {
+  /**
+   * @return The length of the string or binary value added, 0 for the other types.
+   */
+  public int addValue(Type type, Object field) {
+    int length = 0;
     switch (type) {
     case BOOLEAN_TYPE:
       nulls.set(size, field == null);
@@ -390,12 +416,68 @@ public void addValue(Type type, Object field) {
     case BINARY_TYPE:
       nulls.set(binaryVars.size(), field == null);
       binaryVars.add(field == null ? EMPTY_BINARY : ByteBuffer.wrap((byte[]) field));
+      length = binaryVars.get(size).remaining();
       break;
     default:
       nulls.set(stringVars.size(), field == null);
       stringVars.add(field == null ? EMPTY_STRING : String.valueOf(field));
+      length = stringVars.get(size).length();
+      break;
+    }
+    size++;
+    return length;
+  }
+
+  /**
+   * Adds a null value, like addValue(null) without the type switch for each row.
+   */
+  public void addNull() {
+    addValue(this.type, null);
+  }
+
+  /**
+   * Adds the value of a boolean (0 or 1) or integer column, without boxing it.
+   */
+  public void addLong(long field) {
+    switch (type) {
+    case BOOLEAN_TYPE:
+      boolVars()[size] = field != 0;
       break;
+    case TINYINT_TYPE:
+      byteVars()[size] = (byte) field;
+      break;
+    case SMALLINT_TYPE:
+      shortVars()[size] = (short) field;
+      break;
+    case INT_TYPE:
+      intVars()[size] = (int) field;
+      break;
+    case BIGINT_TYPE:
+      longVars()[size] = field;
+      break;
+    default:
+      throw new IllegalStateException("Not an integer column: " + type);
+    }
+    nulls.clear(size);
+    size++;
+  }
+
+  /**
+   * Adds the value of a float or double column, without boxing it.
+   */
+  public void addDouble(double field) {
+    switch (type) {
+    case FLOAT_TYPE:
+      // Like addValue, which gets the float values as Float
+      doubleVars()[size] = Double.parseDouble(Float.toString((float) field));
+      break;
+    case DOUBLE_TYPE:
+      doubleVars()[size] = field;
+      break;
+    default:
+      throw new IllegalStateException("Not a floating point column: " + type);
     }
+    nulls.clear(size);
     size++;
   }
 
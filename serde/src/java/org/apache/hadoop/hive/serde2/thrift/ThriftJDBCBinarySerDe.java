@@ -18,10 +18,17 @@
 
 package org.apache.hadoop.hive.serde2.thrift;
 
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
 import java.util.Properties;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.InflaterInputStream;
 
 import org.apache.hadoop.conf.Configuration;
 import org.apache.hadoop.hive.conf.HiveConf;
@@ -50,7 +57,9 @@
 /**
  * This SerDe is used to serialize the final output to thrift-able objects directly in the SerDe. Use this SerDe only for final output resultSets.
  * It is used  if HIVE_SERVER2_THRIFT_RESULTSET_SERIALIZE_IN_TASKS is set to true. It buffers rows that come in from FileSink till it reaches max_buffer_size (also configurable)
- * or all rows are finished and FileSink.closeOp() is called.
+ * or max_buffer_bytes of values, or all rows are finished and FileSink.closeOp() is called.
+ * The vectorized FileSink adds the values of its batches to the column buffers directly, see getColumnBuffer().
+ * The serialized batches are compressed with zlib if HIVE_SERVER2_THRIFT_RESULTSET_COMPRESS is set to true, see uncompress().
  */
 public class ThriftJDBCBinarySerDe extends AbstractSerDe {
   public static final Logger LOG = LoggerFactory.getLogger(ThriftJDBCBinarySerDe.class.getName());
@@ -64,7 +73,18 @@ public class ThriftJDBCBinarySerDe extends AbstractSerDe {
   private TProtocol protocol = new TCompactProtocol(new TIOStreamTransport(output));
   private ThriftFormatter thriftFormatter = new ThriftFormatter();
   private int MAX_BUFFERED_ROWS;
+  private long MAX_BUFFERED_BYTES;
   private int count;
+  // The bytes of a row of the fixed width columns, and the length of the string and binary
+  // values buffered, so that isBufferFull() does not go through the columns for each row
+  private long fixedRowBytes;
+  private long varBytes;
+  private boolean compress;
+  private Deflater deflater;
+  private ByteStream.Output compressedOutput;
+
+  // The first byte of a compressed batch; the serialized TColumns never start with it
+  private static final byte COMPRESSED_BATCH = 0;
   private StructObjectInspector rowObjectInspector;
 
 
@@ -73,7 +93,15 @@ public void initialize(Configuration conf, Properties tbl) throws SerDeException
     // Get column names
     MAX_BUFFERED_ROWS =
       HiveConf.getIntVar(conf, HiveConf.ConfVars.HIVE_SERVER2_THRIFT_RESULTSET_DEFAULT_FETCH_SIZE);
-    LOG.info("ThriftJDBCBinarySerDe max number of buffered columns: " + MAX_BUFFERED_ROWS);
+    MAX_BUFFERED_BYTES =
+      HiveConf.getSizeVar(conf, HiveConf.ConfVars.HIVE_SERVER2_THRIFT_RESULTSET_MAX_FETCH_BYTES);
+    compress = HiveConf.getBoolVar(conf, HiveConf.ConfVars.HIVE_SERVER2_THRIFT_RESULTSET_COMPRESS);
+    if (compress) {
+      deflater = new Deflater(Deflater.BEST_SPEED);
+      compressedOutput = new ByteStream.Output();
+    }
+    LOG.info("ThriftJDBCBinarySerDe max number of buffered columns: " + MAX_BUFFERED_ROWS
+        + ", max buffered bytes: " + MAX_BUFFERED_BYTES + ", compress: " + compress);
     String columnNameProperty = tbl.getProperty(serdeConstants.LIST_COLUMNS);
     String columnTypeProperty = tbl.getProperty(serdeConstants.LIST_COLUMN_TYPES);
     final String columnNameDelimiter = tbl.containsKey(serdeConstants.COLUMN_NAME_DELIMITER) ? tbl
@@ -88,6 +116,10 @@ public void initialize(Configuration conf, Properties tbl) throws SerDeException
     } else {
       columnTypes = TypeInfoUtils.getTypeInfosFromTypeString(columnTypeProperty);
     }
+    fixedRowBytes = 0;
+    for (TypeInfo columnType : columnTypes) {
+      fixedRowBytes += ColumnBuffer.getFixedSize(Type.getType(columnType));
+    }
     rowTypeInfo = TypeInfoFactory.getStructTypeInfo(columnNames, columnTypes);
     rowObjectInspector =
         (StructObjectInspector) TypeInfoUtils
@@ -117,10 +149,30 @@ private Writable serializeBatch() throws SerDeException {
 		  }
 	  }
 	  initializeRowAndColumns();
-	  serializedBytesWritable.set(output.getData(), 0, output.getLength());
+	  count = 0;
+	  varBytes = 0;
+	  if (compress) {
+	    compressedOutput.reset();
+	    compressedOutput.write(COMPRESSED_BATCH);
+	    deflater.reset();
+	    try {
+	      DeflaterOutputStream out = new DeflaterOutputStream(compressedOutput, deflater);
+	      out.write(output.getData(), 0, output.getLength());
+	      out.finish();
+	    } catch (IOException e) {
+	      throw new SerDeException(e);
+	    }
+	    serializedBytesWritable.set(compressedOutput.getData(), 0, compressedOutput.getLength());
+	  } else {
+	    serializedBytesWritable.set(output.getData(), 0, output.getLength());
+	  }
 	  return serializedBytesWritable;
   }
 
+  private boolean isBufferFull() {
+    return count >= MAX_BUFFERED_ROWS || count * fixedRowBytes + varBytes >= MAX_BUFFERED_BYTES;
+  }
+
   // use the columnNames to initialize the reusable row object and the columnBuffers. reason this is being done is if buffer is full, we should reinitialize the
   // column buffers, otherwise at the end when closeOp() is called, things get printed multiple times.
   private void initializeRowAndColumns() {
@@ -149,18 +201,62 @@ public Writable serialize(Object obj, ObjectInspector objInspector) throws SerDe
     try {
 	    Object[] formattedRow = (Object[]) thriftFormatter.convert(obj, objInspector);
 	    for (int i = 0; i < columnNames.size(); i++) {
-	        columnBuffers[i].addValue(formattedRow[i]);
+	        varBytes += columnBuffers[i].addValue(formattedRow[i]);
 	    }
     } catch (Exception e) {
         throw new SerDeException(e);
     }
-    if (count == MAX_BUFFERED_ROWS) {
-        count = 0;
+    if (isBufferFull()) {
         return serializeBatch();
     }
     return null;
   }
 
+  /**
+   * Returns the buffer of a column, so that the vectorized FileSink adds the values of its batches
+   * without converting them to rows. The buffers are replaced when a batch is serialized.
+   */
+  public ColumnBuffer getColumnBuffer(int column) {
+    return columnBuffers[column];
+  }
+
+  /**
+   * Counts the rows whose values have been added to all the column buffers.
+   * @param bytes The length of the string and binary values added, as returned by addValue.
+   * @return The serialized batch when the buffers are full, or null.
+   */
+  public Writable addedRows(int rows, long bytes) throws SerDeException {
+    count += rows;
+    varBytes += bytes;
+    if (isBufferFull()) {
+      return serializeBatch();
+    }
+    return null;
+  }
+
+  /**
+   * Return the serialized TColumns of a batch from the bytes written by this SerDe, which are
+   * compressed if HIVE_SERVER2_THRIFT_RESULTSET_COMPRESS is set to true.
+   */
+  public static byte[] uncompress(byte[] blob) throws IOException {
+    if (blob.length == 0 || blob[0] != COMPRESSED_BATCH) {
+      return blob;
+    }
+    ByteArrayOutputStream out = new ByteArrayOutputStream(blob.length * 4);
+    InputStream in = new InflaterInputStream(
+        new ByteArrayInputStream(blob, 1, blob.length - 1));
+    try {
+      byte[] buffer = new byte[8192];
+      int n;
+      while ((n = in.read(buffer)) > 0) {
+        out.write(buffer, 0, n);
+      }
+    } finally {
+      in.close();
+    }
+    return out.toByteArray();
+  }
+
   @Override
   public SerDeStats getSerDeStats() {
     return null;
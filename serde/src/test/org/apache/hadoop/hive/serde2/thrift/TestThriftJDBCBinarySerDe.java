@@ -0,0 +1,125 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.hadoop.hive.serde2.thrift;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Properties;
+
+import org.apache.hadoop.hive.conf.HiveConf;
+import org.apache.hadoop.hive.serde.serdeConstants;
+import org.apache.hadoop.io.BytesWritable;
+import org.apache.hadoop.io.LongWritable;
+import org.apache.hadoop.io.Text;
+import org.apache.hadoop.io.Writable;
+import org.apache.hive.service.rpc.thrift.TColumn;
+import org.apache.thrift.protocol.TCompactProtocol;
+import org.apache.thrift.protocol.TProtocol;
+import org.apache.thrift.transport.TIOStreamTransport;
+import org.junit.Test;
+
+public class TestThriftJDBCBinarySerDe {
+
+  private static ThriftJDBCBinarySerDe createSerDe(HiveConf conf) throws Exception {
+    Properties tbl = new Properties();
+    tbl.setProperty(serdeConstants.LIST_COLUMNS, "a,b");
+    tbl.setProperty(serdeConstants.LIST_COLUMN_TYPES, "bigint,string");
+    ThriftJDBCBinarySerDe serDe = new ThriftJDBCBinarySerDe();
+    serDe.initialize(conf, tbl);
+    return serDe;
+  }
+
+  private static List<Object> row(long a, String b) {
+    return Arrays.<Object>asList(new LongWritable(a), new Text(b));
+  }
+
+  private static List<ColumnBuffer> decode(Writable batch) throws Exception {
+    BytesWritable bytes = (BytesWritable) batch;
+    byte[] blob = ThriftJDBCBinarySerDe.uncompress(
+        Arrays.copyOf(bytes.getBytes(), bytes.getLength()));
+    TProtocol protocol =
+        new TCompactProtocol(new TIOStreamTransport(new ByteArrayInputStream(blob)));
+    List<ColumnBuffer> columns = new ArrayList<ColumnBuffer>();
+    for (int i = 0; i < 2; i++) {
+      TColumn column = new TColumn();
+      column.read(protocol);
+      columns.add(new ColumnBuffer(column));
+    }
+    return columns;
+  }
+
+  @Test
+  public void testMaxFetchBytes() throws Exception {
+    HiveConf conf = new HiveConf();
+    conf.setVar(HiveConf.ConfVars.HIVE_SERVER2_THRIFT_RESULTSET_MAX_FETCH_BYTES, "100");
+    ThriftJDBCBinarySerDe serDe = createSerDe(conf);
+
+    // Each row is 8 bytes of bigint and 12 characters
+    for (int i = 0; i < 4; i++) {
+      assertNull(serDe.serialize(row(i, "abcdefghijkl"), serDe.getObjectInspector()));
+    }
+    List<ColumnBuffer> columns =
+        decode(serDe.serialize(row(4, "abcdefghijkl"), serDe.getObjectInspector()));
+    assertEquals(5, columns.get(0).size());
+    assertEquals(4L, columns.get(0).get(4));
+    assertEquals("abcdefghijkl", columns.get(1).get(4));
+
+    columns = decode(serDe.serialize(null, serDe.getObjectInspector()));
+    assertEquals(0, columns.get(0).size());
+  }
+
+  @Test
+  public void testCompressedColumnBuffers() throws Exception {
+    HiveConf conf = new HiveConf();
+    conf.setBoolVar(HiveConf.ConfVars.HIVE_SERVER2_THRIFT_RESULTSET_COMPRESS, true);
+    conf.setIntVar(HiveConf.ConfVars.HIVE_SERVER2_THRIFT_RESULTSET_DEFAULT_FETCH_SIZE, 1000);
+    ThriftJDBCBinarySerDe serDe = createSerDe(conf);
+
+    // The values added to the column buffers like the vectorized FileSink does
+    long bytes = 0;
+    for (int i = 0; i < 600; i++) {
+      serDe.getColumnBuffer(0).addLong(i);
+      if (i % 3 == 0) {
+        serDe.getColumnBuffer(1).addNull();
+      } else {
+        bytes += serDe.getColumnBuffer(1).addValue("value" + (i % 10));
+      }
+    }
+    assertEquals(400 * 6, bytes);
+    assertNull(serDe.addedRows(600, bytes));
+    serDe.getColumnBuffer(0).addNull();
+    assertNull(serDe.addedRows(1, serDe.getColumnBuffer(1).addValue("last")));
+
+    BytesWritable batch = (BytesWritable) serDe.serialize(null, serDe.getObjectInspector());
+    assertTrue(batch.getLength() < 601 * 8);
+    List<ColumnBuffer> columns = decode(batch);
+    assertEquals(601, columns.get(0).size());
+    assertEquals(599L, columns.get(0).get(599));
+    assertNull(columns.get(0).get(600));
+    assertNull(columns.get(1).get(0));
+    assertEquals("value1", columns.get(1).get(1));
+    assertEquals("last", columns.get(1).get(600));
+  }
+}
@@ -19,12 +19,14 @@
 package org.apache.hive.service.cli;
 
 import java.io.ByteArrayInputStream;
+import java.io.IOException;
 import java.util.ArrayList;
 import java.util.Iterator;
 import java.util.List;
 
 import org.apache.hadoop.hive.common.type.HiveDecimal;
 import org.apache.hadoop.hive.serde2.thrift.ColumnBuffer;
+import org.apache.hadoop.hive.serde2.thrift.ThriftJDBCBinarySerDe;
 import org.apache.hadoop.hive.serde2.thrift.Type;
 import org.apache.hive.service.rpc.thrift.TColumn;
 import org.apache.hive.service.rpc.thrift.TRow;
@@ -63,9 +65,15 @@ public ColumnBasedSet(TRowSet tRowSet) throws TException {
     columns = new ArrayList<ColumnBuffer>();
     // Use TCompactProtocol to read serialized TColumns
     if (tRowSet.isSetBinaryColumns()) {
+      byte[] binaryColumns;
+      try {
+        binaryColumns = ThriftJDBCBinarySerDe.uncompress(tRowSet.getBinaryColumns());
+      } catch (IOException e) {
+        LOG.error(e.getMessage(), e);
+        throw new TException("Error uncompressing the row set blob", e);
+      }
       TProtocol protocol =
-          new TCompactProtocol(new TIOStreamTransport(new ByteArrayInputStream(
-              tRowSet.getBinaryColumns())));
+          new TCompactProtocol(new TIOStreamTransport(new ByteArrayInputStream(binaryColumns)));
       // Read from the stream using the protocol for each column in final schema
       for (int i = 0; i < tRowSet.getColumnCount(); i++) {
         TColumn tvalue = new TColumn();
@@ -61,6 +61,7 @@
 import org.apache.hadoop.hive.metastore.api.WMPool;
 import org.apache.hadoop.hive.metastore.api.WMResourcePlan;
 import org.apache.hadoop.hive.metastore.cache.CachedStore;
+import org.apache.hadoop.hive.ql.cache.results.QueryResultsCache;
 import org.apache.hadoop.hive.ql.exec.spark.session.SparkSessionManagerImpl;
 import org.apache.hadoop.hive.ql.exec.tez.TezSessionPoolManager;
 import org.apache.hadoop.hive.ql.exec.tez.WorkloadManager;
@@ -191,6 +192,15 @@ public void run() {
     // Create views registry
     HiveMaterializedViewsRegistry.get().init();
 
+    // Create the query results cache
+    if (hiveConf.getBoolVar(ConfVars.HIVE_QUERY_RESULTS_CACHE_ENABLED)) {
+      try {
+        QueryResultsCache.initialize(hiveConf);
+      } catch (IOException e) {
+        LOG.error("Error initializing the query results cache; it is disabled", e);
+      }
+    }
+
     // Setup web UI
     try {
       int webUIPort =
@@ -663,6 +673,7 @@ public synchronized void stop() {
         LOG.error("Spark session pool manager failed to stop during HiveServer2 shutdown.", ex);
       }
     }
+    QueryResultsCache.shutdown();
   }
 
   @VisibleForTesting
@@ -73,6 +73,10 @@ public static String buildKey(String dbName, String tableName, String colName) {
     return key + delimit + colName;
   }
 
+  public static String[] splitTableKey(String key) {
+    return key.split(delimit);
+  }
+
   public static String[] splitTableColStats(String key) {
     return key.split(delimit);
   }
@@ -91,10 +95,10 @@ public static Object[] splitAggrColStats(String key) {
     return key.split(delimit);
   }
 
-  static Table assemble(TableWrapper wrapper, SharedCache sharedCache) {
+  static Table assemble(TableWrapper wrapper) {
     Table t = wrapper.getTable().deepCopy();
     if (wrapper.getSdHash() != null) {
-      StorageDescriptor sdCopy = sharedCache.getSdFromCache(wrapper.getSdHash()).deepCopy();
+      StorageDescriptor sdCopy = wrapper.getSd().deepCopy();
       if (sdCopy.getBucketCols() == null) {
         sdCopy.setBucketCols(Collections.emptyList());
       }
@@ -112,10 +116,10 @@ static Table assemble(TableWrapper wrapper, SharedCache sharedCache) {
     return t;
   }
 
-  static Partition assemble(PartitionWrapper wrapper, SharedCache sharedCache) {
+  static Partition assemble(PartitionWrapper wrapper) {
     Partition p = wrapper.getPartition().deepCopy();
     if (wrapper.getSdHash() != null) {
-      StorageDescriptor sdCopy = sharedCache.getSdFromCache(wrapper.getSdHash()).deepCopy();
+      StorageDescriptor sdCopy = wrapper.getSd().deepCopy();
       if (sdCopy.getBucketCols() == null) {
         sdCopy.setBucketCols(Collections.emptyList());
       }
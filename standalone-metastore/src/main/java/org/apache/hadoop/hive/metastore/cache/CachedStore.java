@@ -24,9 +24,12 @@
 import java.util.Arrays;
 import java.util.Collections;
 import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 import java.util.concurrent.Executors;
 import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.ThreadFactory;
@@ -159,9 +162,13 @@ static class TableWrapper {
     String location;
     Map<String, String> parameters;
     byte[] sdHash;
-    TableWrapper(Table t, byte[] sdHash, String location, Map<String, String> parameters) {
+    // The shared entry of the sdCache, so a reader never needs the sdCache itself
+    StorageDescriptor sd;
+    TableWrapper(Table t, byte[] sdHash, StorageDescriptor sd, String location,
+        Map<String, String> parameters) {
       this.t = t;
       this.sdHash = sdHash;
+      this.sd = sd;
       this.location = location;
       this.parameters = parameters;
     }
@@ -171,6 +178,9 @@ public Table getTable() {
     public byte[] getSdHash() {
       return sdHash;
     }
+    public StorageDescriptor getSd() {
+      return sd;
+    }
     public String getLocation() {
       return location;
     }
@@ -184,9 +194,13 @@ static class PartitionWrapper {
     String location;
     Map<String, String> parameters;
     byte[] sdHash;
-    PartitionWrapper(Partition p, byte[] sdHash, String location, Map<String, String> parameters) {
+    // The shared entry of the sdCache, so a reader never needs the sdCache itself
+    StorageDescriptor sd;
+    PartitionWrapper(Partition p, byte[] sdHash, StorageDescriptor sd, String location,
+        Map<String, String> parameters) {
       this.p = p;
       this.sdHash = sdHash;
+      this.sd = sd;
       this.location = location;
       this.parameters = parameters;
     }
@@ -196,6 +210,9 @@ public Partition getPartition() {
     public byte[] getSdHash() {
       return sdHash;
     }
+    public StorageDescriptor getSd() {
+      return sd;
+    }
     public String getLocation() {
       return location;
     }
@@ -303,9 +320,7 @@ static void prewarm(RawStore rawStore) throws Exception {
           Deadline.startTimer("getPartitions");
           List<Partition> partitions = rawStore.getPartitions(dbName, tblName, Integer.MAX_VALUE);
           Deadline.stopTimer();
-          for (Partition partition : partitions) {
-            sharedCache.addPartitionToCache(dbName, tblName, partition);
-          }
+          sharedCache.addPartitionsToCache(dbName, tblName, partitions);
         }
         // Cache table column stats
         List<String> colNames = MetaStoreUtils.getColumnNamesForTable(table);
@@ -355,6 +370,23 @@ private static void initBlackListWhiteList(Configuration conf) {
     }
   }
 
+  /**
+   * @return whether DbNotificationListener writes the notification log that the incremental
+   *         updates read
+   */
+  @VisibleForTesting
+  static boolean isNotificationLogEnabled(Configuration conf) {
+    for (ConfVars var : new ConfVars[] {
+        ConfVars.TRANSACTIONAL_EVENT_LISTENERS, ConfVars.EVENT_LISTENERS }) {
+      for (String listener : MetastoreConf.getVar(conf, var).split(",")) {
+        if (listener.trim().endsWith(".DbNotificationListener")) {
+          return true;
+        }
+      }
+    }
+    return false;
+  }
+
   @VisibleForTesting
   synchronized static void startCacheUpdateService(Configuration conf) {
     if (cacheUpdateMaster == null) {
@@ -404,6 +436,12 @@ static void setCacheRefreshPeriod(long time) {
   static class CacheUpdateMasterWork implements Runnable {
     private boolean isFirstRun = true;
     private final RawStore rawStore;
+    private final boolean isIncrementalUpdate;
+    // The id of the last notification event reflected in the cache, for the incremental updates
+    private long lastEventId = -1;
+    // The column stats have no events, so everything is still refreshed periodically
+    private final long fullUpdatePeriodNanos;
+    private long lastFullUpdateTime;
 
     public CacheUpdateMasterWork(Configuration conf) {
       String rawStoreClassName = MetastoreConf.getVar(conf, ConfVars.CACHED_RAW_STORE_IMPL,
@@ -417,6 +455,18 @@ public CacheUpdateMasterWork(Configuration conf) {
         sharedCacheWrapper.updateInitState(e, true);
         throw new RuntimeException("Cannot instantiate " + rawStoreClassName, e);
       }
+      boolean incrementalUpdate =
+          MetastoreConf.getBoolVar(conf, ConfVars.CACHED_RAW_STORE_INCREMENTAL_UPDATE);
+      if (incrementalUpdate && !isNotificationLogEnabled(conf)) {
+        LOG.warn("CachedStore: incremental updates need DbNotificationListener, which is not "
+            + "configured; refreshing all the cached objects on each update");
+        incrementalUpdate = false;
+      }
+      isIncrementalUpdate = incrementalUpdate;
+      fullUpdatePeriodNanos = MetastoreConf.getTimeVar(conf,
+          ConfVars.CACHED_RAW_STORE_FULL_UPDATE_FREQUENCY, TimeUnit.NANOSECONDS);
+      sharedCacheWrapper.getUnsafe().setMaxCachedPartitions(
+          MetastoreConf.getIntVar(conf, ConfVars.CACHED_RAW_STORE_MAX_CACHED_PARTITIONS));
     }
 
     @Override
@@ -425,7 +475,12 @@ public void run() {
         while (isFirstRun) {
           try {
             long startTime = System.nanoTime();
+            lastFullUpdateTime = startTime;
             LOG.info("Prewarming CachedStore");
+            if (isIncrementalUpdate) {
+              // The changes made while prewarming are in the events after this one
+              lastEventId = rawStore.getCurrentNotificationEventId().getEventId();
+            }
             prewarm(rawStore);
             LOG.info("CachedStore initialized");
             long endTime = System.nanoTime();
@@ -447,7 +502,18 @@ public void run() {
     public void update() {
       Deadline.registerIfNot(1000000);
       LOG.debug("CachedStore: updating cached objects");
+      // The partitions evicted before the previous update are no longer being read
+      sharedCacheWrapper.getUnsafe().releaseEvictedPartitions();
       try {
+        long eventId = -1;
+        if (isIncrementalUpdate) {
+          long now = System.nanoTime();
+          if (now - lastFullUpdateTime < fullUpdatePeriodNanos && updateChangedObjectsOrFail()) {
+            return;
+          }
+          lastFullUpdateTime = now;
+          eventId = rawStore.getCurrentNotificationEventId().getEventId();
+        }
         List<String> dbNames = rawStore.getAllDatabases();
         if (dbNames != null) {
           // Update the database in cache
@@ -470,6 +536,9 @@ public void update() {
             }
           }
         }
+        if (isIncrementalUpdate) {
+          lastEventId = eventId;
+        }
       } catch (Exception e) {
         LOG.error("Updating CachedStore: error happen when refresh; ignoring", e);
       }
@@ -508,42 +577,19 @@ private void updateDatabasePartitionColStats(RawStore rawStore, String dbName) {
     private void updateAggregateStatsCache(RawStore rawStore, String dbName, String tblName) {
       try {
         Table table = rawStore.getTable(dbName, tblName);
-        List<String> partNames = rawStore.listPartitionNames(dbName, tblName, (short) -1);
-        List<String> colNames = MetaStoreUtils.getColumnNamesForTable(table);
-        if ((partNames != null) && (partNames.size() > 0)) {
-          Deadline.startTimer("getAggregareStatsForAllPartitions");
-          AggrStats aggrStatsAllPartitions =
-              rawStore.get_aggr_stats_for(dbName, tblName, partNames, colNames);
-          Deadline.stopTimer();
-          // Remove default partition from partition names and get aggregate stats again
-          List<FieldSchema> partKeys = table.getPartitionKeys();
-          String defaultPartitionValue =
-              MetastoreConf.getVar(rawStore.getConf(), ConfVars.DEFAULTPARTITIONNAME);
-          List<String> partCols = new ArrayList<String>();
-          List<String> partVals = new ArrayList<String>();
-          for (FieldSchema fs : partKeys) {
-            partCols.add(fs.getName());
-            partVals.add(defaultPartitionValue);
-          }
-          String defaultPartitionName = FileUtils.makePartName(partCols, partVals);
-          partNames.remove(defaultPartitionName);
-          Deadline.startTimer("getAggregareStatsForAllPartitionsExceptDefault");
-          AggrStats aggrStatsAllButDefaultPartition =
-              rawStore.get_aggr_stats_for(dbName, tblName, partNames, colNames);
-          Deadline.stopTimer();
-          if ((aggrStatsAllPartitions != null) && (aggrStatsAllButDefaultPartition != null)) {
-            if (partitionAggrColStatsCacheLock.writeLock().tryLock()) {
-              // Skip background updates if we detect change
-              if (isPartitionAggrColStatsCacheDirty.compareAndSet(true, false)) {
-                LOG.debug(
-                    "Skipping aggregate column stats cache update; the aggregate column stats we "
-                        + "have is dirty.");
-                return;
-              }
-              sharedCacheWrapper.getUnsafe().refreshAggregateStatsCache(
-                  StringUtils.normalizeIdentifier(dbName), StringUtils.normalizeIdentifier(tblName),
-                  aggrStatsAllPartitions, aggrStatsAllButDefaultPartition);
+        AggrStats[] aggrStats = getAggrStats(rawStore, table);
+        if (aggrStats != null) {
+          if (partitionAggrColStatsCacheLock.writeLock().tryLock()) {
+            // Skip background updates if we detect change
+            if (isPartitionAggrColStatsCacheDirty.compareAndSet(true, false)) {
+              LOG.debug(
+                  "Skipping aggregate column stats cache update; the aggregate column stats we "
+                      + "have is dirty.");
+              return;
             }
+            sharedCacheWrapper.getUnsafe().refreshAggregateStatsCache(
+                StringUtils.normalizeIdentifier(dbName), StringUtils.normalizeIdentifier(tblName),
+                aggrStats[0], aggrStats[1]);
           }
         }
       } catch (MetaException | NoSuchObjectException e) {
@@ -556,6 +602,45 @@ private void updateAggregateStatsCache(RawStore rawStore, String dbName, String
       }
     }
 
+    /**
+     * @return the aggregate stats of all the partitions of a table and of all but its default
+     * partition, null if the table has no partition
+     */
+    private AggrStats[] getAggrStats(RawStore rawStore, Table table)
+        throws MetaException, NoSuchObjectException {
+      String dbName = table.getDbName();
+      String tblName = table.getTableName();
+      List<String> partNames = rawStore.listPartitionNames(dbName, tblName, (short) -1);
+      List<String> colNames = MetaStoreUtils.getColumnNamesForTable(table);
+      if ((partNames == null) || (partNames.size() == 0)) {
+        return null;
+      }
+      Deadline.startTimer("getAggregareStatsForAllPartitions");
+      AggrStats aggrStatsAllPartitions =
+          rawStore.get_aggr_stats_for(dbName, tblName, partNames, colNames);
+      Deadline.stopTimer();
+      // Remove default partition from partition names and get aggregate stats again
+      List<FieldSchema> partKeys = table.getPartitionKeys();
+      String defaultPartitionValue =
+          MetastoreConf.getVar(rawStore.getConf(), ConfVars.DEFAULTPARTITIONNAME);
+      List<String> partCols = new ArrayList<String>();
+      List<String> partVals = new ArrayList<String>();
+      for (FieldSchema fs : partKeys) {
+        partCols.add(fs.getName());
+        partVals.add(defaultPartitionValue);
+      }
+      String defaultPartitionName = FileUtils.makePartName(partCols, partVals);
+      partNames.remove(defaultPartitionName);
+      Deadline.startTimer("getAggregareStatsForAllPartitionsExceptDefault");
+      AggrStats aggrStatsAllButDefaultPartition =
+          rawStore.get_aggr_stats_for(dbName, tblName, partNames, colNames);
+      Deadline.stopTimer();
+      if ((aggrStatsAllPartitions == null) || (aggrStatsAllButDefaultPartition == null)) {
+        return null;
+      }
+      return new AggrStats[] { aggrStatsAllPartitions, aggrStatsAllButDefaultPartition };
+    }
+
     private void updateDatabases(RawStore rawStore, List<String> dbNames) {
       // Prepare the list of databases
       List<Database> databases = new ArrayList<>();
@@ -618,6 +703,10 @@ private void updateTables(RawStore rawStore, String dbName) {
 
     // Update the cached partition objects for a table
     private void updateTablePartitions(RawStore rawStore, String dbName, String tblName) {
+      if (!sharedCacheWrapper.getUnsafe().shouldRefreshPartitions(
+          StringUtils.normalizeIdentifier(dbName), StringUtils.normalizeIdentifier(tblName))) {
+        return;
+      }
       try {
         Deadline.startTimer("getPartitions");
         List<Partition> partitions = rawStore.getPartitions(dbName, tblName, Integer.MAX_VALUE);
@@ -671,6 +760,210 @@ private void updateTableColStats(RawStore rawStore, String dbName, String tblNam
         }
       }
     }
+
+    /**
+     * @return false if the notification log could not be read, everything is then refreshed
+     */
+    private boolean updateChangedObjectsOrFail() {
+      try {
+        return updateChangedObjects(rawStore);
+      } catch (Exception e) {
+        LOG.warn("CachedStore: unable to apply the notification events after " + lastEventId
+            + ", refreshing all the cached objects", e);
+        return false;
+      }
+    }
+
+    /**
+     * Refreshes the databases and tables changed since the last update, as found in the
+     * notification log, and loads the partitions of the evicted tables read since. The metastore
+     * DB is read holding the write lock of the cache it refreshes, so a change made meanwhile
+     * through this metastore is never overwritten by older data.
+     * @return false if some events were already removed from the log, everything is then
+     * refreshed
+     */
+    private boolean updateChangedObjects(RawStore rawStore)
+        throws MetaException, NoSuchObjectException {
+      NotificationEventResponse response =
+          rawStore.getNextNotification(new NotificationEventRequest(lastEventId));
+      List<NotificationEvent> events = response.getEvents();
+      long firstEventId = events == null || events.isEmpty()
+          ? rawStore.getCurrentNotificationEventId().getEventId() + 1
+          : events.get(0).getEventId();
+      if (firstEventId > lastEventId + 1) {
+        LOG.info("CachedStore: notification events after {} were removed, refreshing all the "
+            + "cached objects", lastEventId);
+        return false;
+      }
+      if (events != null && !events.isEmpty()) {
+        Set<String> dbNames = new LinkedHashSet<>();
+        Set<List<String>> tables = new LinkedHashSet<>();
+        for (NotificationEvent event : events) {
+          if (event.getDbName() == null) {
+            continue;
+          }
+          String dbName = StringUtils.normalizeIdentifier(event.getDbName());
+          dbNames.add(dbName);
+          if (event.getTableName() != null) {
+            String tblName = StringUtils.normalizeIdentifier(event.getTableName());
+            if (shouldCacheTable(dbName, tblName)) {
+              tables.add(Arrays.asList(dbName, tblName));
+            }
+          }
+        }
+        LOG.debug("CachedStore: updating {} databases and {} tables changed by {} events",
+            dbNames.size(), tables.size(), events.size());
+        for (String dbName : dbNames) {
+          updateChangedDatabase(rawStore, dbName);
+        }
+        for (List<String> table : tables) {
+          updateChangedTable(rawStore, table.get(0), table.get(1));
+        }
+        lastEventId = events.get(events.size() - 1).getEventId();
+      }
+      SharedCache sharedCache = sharedCacheWrapper.getUnsafe();
+      for (String tblKey : sharedCache.getRequestedTables()) {
+        String[] names = CacheUtils.splitTableKey(tblKey);
+        loadTablePartitions(rawStore, names[0], names[1]);
+      }
+      return true;
+    }
+
+    // Refresh a database and remove its tables dropped or renamed
+    private void updateChangedDatabase(RawStore rawStore, String dbName) throws MetaException {
+      SharedCache sharedCache = sharedCacheWrapper.getUnsafe();
+      databaseCacheLock.writeLock().lock();
+      try {
+        sharedCache.addDatabaseToCache(dbName, rawStore.getDatabase(dbName));
+      } catch (NoSuchObjectException e) {
+        sharedCache.removeDatabaseFromCache(dbName);
+      } finally {
+        databaseCacheLock.writeLock().unlock();
+      }
+      List<String> droppedTblNames = new ArrayList<>();
+      tableCacheLock.writeLock().lock();
+      try {
+        Set<String> tblNames = new HashSet<>();
+        for (String tblName : rawStore.getAllTables(dbName)) {
+          tblNames.add(StringUtils.normalizeIdentifier(tblName));
+        }
+        for (String tblName : getAllTablesInternal(dbName, sharedCache)) {
+          if (!tblNames.contains(tblName)) {
+            sharedCache.removeTableFromCache(dbName, tblName);
+            droppedTblNames.add(tblName);
+          }
+        }
+      } finally {
+        tableCacheLock.writeLock().unlock();
+      }
+      for (String tblName : droppedTblNames) {
+        removeTableObjects(dbName, tblName);
+      }
+    }
+
+    // Refresh a table with its partitions and stats, or remove them if it was dropped
+    private void updateChangedTable(RawStore rawStore, String dbName, String tblName)
+        throws MetaException, NoSuchObjectException {
+      SharedCache sharedCache = sharedCacheWrapper.getUnsafe();
+      Table table;
+      tableCacheLock.writeLock().lock();
+      try {
+        table = rawStore.getTable(dbName, tblName);
+        if (table != null) {
+          sharedCache.addTableToCache(dbName, tblName, table);
+        } else {
+          sharedCache.removeTableFromCache(dbName, tblName);
+        }
+      } finally {
+        tableCacheLock.writeLock().unlock();
+      }
+      if (table == null) {
+        removeTableObjects(dbName, tblName);
+        return;
+      }
+      if (sharedCache.shouldRefreshPartitions(dbName, tblName)) {
+        loadTablePartitions(rawStore, dbName, tblName);
+      }
+      List<String> colNames = MetaStoreUtils.getColumnNamesForTable(table);
+      tableColStatsCacheLock.writeLock().lock();
+      try {
+        ColumnStatistics tableColStats =
+            rawStore.getTableColumnStatistics(dbName, tblName, colNames);
+        sharedCache.refreshTableColStats(dbName, tblName,
+            tableColStats != null && tableColStats.getStatsObjSize() > 0 ?
+                tableColStats.getStatsObj() : Collections.<ColumnStatisticsObj>emptyList());
+      } finally {
+        tableColStatsCacheLock.writeLock().unlock();
+      }
+      partitionColStatsCacheLock.writeLock().lock();
+      try {
+        List<String> partNames = rawStore.listPartitionNames(dbName, tblName, (short) -1);
+        sharedCache.removePartitionColStatsFromCache(dbName, tblName);
+        if (partNames != null && !partNames.isEmpty()) {
+          for (ColumnStatistics partColStats :
+              rawStore.getPartitionColumnStatistics(dbName, tblName, partNames, colNames)) {
+            sharedCache.updatePartitionColStatsInCache(dbName, tblName,
+                Warehouse.getPartValuesFromPartName(partColStats.getStatsDesc().getPartName()),
+                partColStats.getStatsObj());
+          }
+        }
+      } finally {
+        partitionColStatsCacheLock.writeLock().unlock();
+      }
+      partitionAggrColStatsCacheLock.writeLock().lock();
+      try {
+        AggrStats[] aggrStats = getAggrStats(rawStore, table);
+        if (aggrStats != null) {
+          sharedCache.refreshAggregateStatsCache(dbName, tblName, aggrStats[0], aggrStats[1]);
+        } else {
+          sharedCache.removeAggrPartitionColStatsFromCache(dbName, tblName);
+        }
+      } finally {
+        partitionAggrColStatsCacheLock.writeLock().unlock();
+      }
+    }
+
+    private void loadTablePartitions(RawStore rawStore, String dbName, String tblName)
+        throws MetaException, NoSuchObjectException {
+      partitionCacheLock.writeLock().lock();
+      try {
+        Deadline.startTimer("getPartitions");
+        List<Partition> partitions = rawStore.getPartitions(dbName, tblName, Integer.MAX_VALUE);
+        Deadline.stopTimer();
+        sharedCacheWrapper.getUnsafe().refreshPartitions(dbName, tblName, partitions);
+      } finally {
+        partitionCacheLock.writeLock().unlock();
+      }
+    }
+
+    // Remove the partitions and stats of a dropped table
+    private void removeTableObjects(String dbName, String tblName) {
+      SharedCache sharedCache = sharedCacheWrapper.getUnsafe();
+      partitionCacheLock.writeLock().lock();
+      try {
+        sharedCache.removePartitionsFromCache(dbName, tblName);
+      } finally {
+        partitionCacheLock.writeLock().unlock();
+      }
+      tableColStatsCacheLock.writeLock().lock();
+      try {
+        sharedCache.removeTableColStatsFromCache(dbName, tblName);
+      } finally {
+        tableColStatsCacheLock.writeLock().unlock();
+      }
+      partitionColStatsCacheLock.writeLock().lock();
+      try {
+        sharedCache.removePartitionColStatsFromCache(dbName, tblName);
+      } finally {
+        partitionColStatsCacheLock.writeLock().unlock();
+      }
+      partitionAggrColStatsCacheLock.writeLock().lock();
+      try {
+        sharedCache.removeAggrPartitionColStatsFromCache(dbName, tblName);
+      } finally {
+        partitionAggrColStatsCacheLock.writeLock().unlock();
+      }
+    }
   }
 
   @Override
@@ -953,9 +1246,7 @@ public boolean addPartitions(String dbName, String tblName, List<Partition> part
         // Wait if background cache update is happening
         partitionCacheLock.readLock().lock();
         isPartitionCacheDirty.set(true);
-        for (Partition part : parts) {
-          sharedCache.addPartitionToCache(dbName, tblName, part);
-        }
+        sharedCache.addPartitionsToCache(dbName, tblName, parts);
       } finally {
         partitionCacheLock.readLock().unlock();
       }
@@ -988,11 +1279,12 @@ public boolean addPartitions(String dbName, String tblName, PartitionSpecProxy p
         // Wait if background cache update is happening
         partitionCacheLock.readLock().lock();
         isPartitionCacheDirty.set(true);
+        List<Partition> parts = new ArrayList<>();
         PartitionSpecProxy.PartitionIterator iterator = partitionSpec.getPartitionIterator();
         while (iterator.hasNext()) {
-          Partition part = iterator.next();
-          sharedCache.addPartitionToCache(dbName, tblName, part);
+          parts.add(iterator.next());
         }
+        sharedCache.addPartitionsToCache(dbName, tblName, parts);
       } finally {
         partitionCacheLock.readLock().unlock();
       }
@@ -1015,7 +1307,7 @@ public Partition getPartition(String dbName, String tblName, List<String> part_v
     dbName = StringUtils.normalizeIdentifier(dbName);
     tblName = StringUtils.normalizeIdentifier(tblName);
 
-    if (!sharedCacheWrapper.isInitialized() || !shouldCacheTable(dbName, tblName)) {
+    if (!shouldReadPartitionsFromCache(dbName, tblName)) {
       return rawStore.getPartition(dbName, tblName, part_vals);
     }
     SharedCache sharedCache = sharedCacheWrapper.get();
@@ -1033,7 +1325,7 @@ public boolean doesPartitionExist(String dbName, String tblName,
       List<String> part_vals) throws MetaException, NoSuchObjectException {
     dbName = StringUtils.normalizeIdentifier(dbName);
     tblName = StringUtils.normalizeIdentifier(tblName);
-    if (!sharedCacheWrapper.isInitialized() || !shouldCacheTable(dbName, tblName)) {
+    if (!shouldReadPartitionsFromCache(dbName, tblName)) {
       return rawStore.doesPartitionExist(dbName, tblName, part_vals);
     }
     SharedCache sharedCache = sharedCacheWrapper.get();
@@ -1088,7 +1380,7 @@ public List<Partition> getPartitions(String dbName, String tblName, int max)
       throws MetaException, NoSuchObjectException {
     dbName = StringUtils.normalizeIdentifier(dbName);
     tblName = StringUtils.normalizeIdentifier(tblName);
-    if (!sharedCacheWrapper.isInitialized() || !shouldCacheTable(dbName, tblName)) {
+    if (!shouldReadPartitionsFromCache(dbName, tblName)) {
       return rawStore.getPartitions(dbName, tblName, max);
     }
     SharedCache sharedCache = sharedCacheWrapper.get();
@@ -1293,7 +1585,7 @@ public List<String> listPartitionNames(String dbName, String tblName,
       short max_parts) throws MetaException {
     dbName = StringUtils.normalizeIdentifier(dbName);
     tblName = StringUtils.normalizeIdentifier(tblName);
-    if (!sharedCacheWrapper.isInitialized() || !shouldCacheTable(dbName, tblName)) {
+    if (!shouldReadPartitionsFromCache(dbName, tblName)) {
       return rawStore.listPartitionNames(dbName, tblName, max_parts);
     }
     SharedCache sharedCache = sharedCacheWrapper.get();
@@ -1378,11 +1670,7 @@ public void alterPartitions(String dbName, String tblName, List<List<String>> pa
       // Wait if background cache update is happening
       partitionCacheLock.readLock().lock();
       isPartitionCacheDirty.set(true);
-      for (int i = 0; i < partValsList.size(); i++) {
-        List<String> partVals = partValsList.get(i);
-        Partition newPart = newParts.get(i);
-        sharedCache.alterPartitionInCache(dbName, tblName, partVals, newPart);
-      }
+      sharedCache.alterPartitionsInCache(dbName, tblName, partValsList, newParts);
     } finally {
       partitionCacheLock.readLock().unlock();
     }
@@ -1474,7 +1762,7 @@ public boolean getPartitionsByExpr(String dbName, String tblName, byte[] expr,
       String defaultPartitionName, short maxParts, List<Partition> result) throws TException {
     dbName = StringUtils.normalizeIdentifier(dbName);
     tblName = StringUtils.normalizeIdentifier(tblName);
-    if (!sharedCacheWrapper.isInitialized() || !shouldCacheTable(dbName, tblName)) {
+    if (!shouldReadPartitionsFromCache(dbName, tblName)) {
       return rawStore.getPartitionsByExpr(dbName, tblName, expr, defaultPartitionName, maxParts,
           result);
     }
@@ -1497,7 +1785,7 @@ public int getNumPartitionsByExpr(String dbName, String tblName, byte[] expr)
       throws MetaException, NoSuchObjectException {
     dbName = StringUtils.normalizeIdentifier(dbName);
     tblName = StringUtils.normalizeIdentifier(tblName);
-    if (!sharedCacheWrapper.isInitialized() || !shouldCacheTable(dbName, tblName)) {
+    if (!shouldReadPartitionsFromCache(dbName, tblName)) {
       return rawStore.getNumPartitionsByExpr(dbName, tblName, expr);
     }
     SharedCache sharedCache = sharedCacheWrapper.get();
@@ -1524,7 +1812,7 @@ public List<Partition> getPartitionsByNames(String dbName, String tblName,
       List<String> partNames) throws MetaException, NoSuchObjectException {
     dbName = StringUtils.normalizeIdentifier(dbName);
     tblName = StringUtils.normalizeIdentifier(tblName);
-    if (!sharedCacheWrapper.isInitialized() || !shouldCacheTable(dbName, tblName)) {
+    if (!shouldReadPartitionsFromCache(dbName, tblName)) {
       return rawStore.getPartitionsByNames(dbName, tblName, partNames);
     }
     SharedCache sharedCache = sharedCacheWrapper.get();
@@ -1700,7 +1988,7 @@ public Partition getPartitionWithAuth(String dbName, String tblName,
       throws MetaException, NoSuchObjectException, InvalidObjectException {
     dbName = StringUtils.normalizeIdentifier(dbName);
     tblName = StringUtils.normalizeIdentifier(tblName);
-    if (!sharedCacheWrapper.isInitialized() || !shouldCacheTable(dbName, tblName)) {
+    if (!shouldReadPartitionsFromCache(dbName, tblName)) {
       return rawStore.getPartitionWithAuth(dbName, tblName, partVals, userName, groupNames);
     }
     SharedCache sharedCache = sharedCacheWrapper.get();
@@ -1721,7 +2009,7 @@ public List<Partition> getPartitionsWithAuth(String dbName, String tblName,
       throws MetaException, NoSuchObjectException, InvalidObjectException {
     dbName = StringUtils.normalizeIdentifier(dbName);
     tblName = StringUtils.normalizeIdentifier(tblName);
-    if (!sharedCacheWrapper.isInitialized() || !shouldCacheTable(dbName, tblName)) {
+    if (!shouldReadPartitionsFromCache(dbName, tblName)) {
       return rawStore.getPartitionsWithAuth(dbName, tblName, maxParts, userName, groupNames);
     }
     SharedCache sharedCache = sharedCacheWrapper.get();
@@ -1747,7 +2035,7 @@ public List<String> listPartitionNamesPs(String dbName, String tblName,
       throws MetaException, NoSuchObjectException {
     dbName = StringUtils.normalizeIdentifier(dbName);
     tblName = StringUtils.normalizeIdentifier(tblName);
-    if (!sharedCacheWrapper.isInitialized() || !shouldCacheTable(dbName, tblName)) {
+    if (!shouldReadPartitionsFromCache(dbName, tblName)) {
       return rawStore.listPartitionNamesPs(dbName, tblName, partVals, maxParts);
     }
     SharedCache sharedCache = sharedCacheWrapper.get();
@@ -1781,7 +2069,7 @@ public List<Partition> listPartitionsPsWithAuth(String dbName, String tblName,
       throws MetaException, InvalidObjectException, NoSuchObjectException {
     dbName = StringUtils.normalizeIdentifier(dbName);
     tblName = StringUtils.normalizeIdentifier(tblName);
-    if (!sharedCacheWrapper.isInitialized() || !shouldCacheTable(dbName, tblName)) {
+    if (!shouldReadPartitionsFromCache(dbName, tblName)) {
       return rawStore.listPartitionsPsWithAuth(dbName, tblName, partVals, maxParts, userName,
           groupNames);
     }
@@ -2178,10 +2466,11 @@ public void dropPartitions(String dbName, String tblName, List<String> partNames
       // Wait if background cache update is happening
       partitionCacheLock.readLock().lock();
       isPartitionCacheDirty.set(true);
+      List<List<String>> partValsList = new ArrayList<>();
       for (String partName : partNames) {
-        List<String> vals = partNameToVals(partName);
-        sharedCache.removePartitionFromCache(dbName, tblName, vals);
+        partValsList.add(partNameToVals(partName));
       }
+      sharedCache.removePartitionsFromCache(dbName, tblName, partValsList);
     } finally {
       partitionCacheLock.readLock().unlock();
     }
@@ -2766,6 +3055,13 @@ static boolean shouldCacheTable(String dbName, String tblName) {
     return true;
   }
 
+  // Determines if the partitions of a table are read from the cache, which they are not while
+  // the table is evicted from the partition cache
+  private static boolean shouldReadPartitionsFromCache(String dbName, String tblName) {
+    return sharedCacheWrapper.isInitialized() && shouldCacheTable(dbName, tblName)
+        && sharedCacheWrapper.getUnsafe().isTablePartitionsCached(dbName, tblName);
+  }
+
   static List<Pattern> createPatterns(String configStr) {
     List<String> patternStrs = Arrays.asList(configStr.split(","));
     List<Pattern> patterns = new ArrayList<Pattern>();
@@ -20,12 +20,20 @@
 import java.security.MessageDigest;
 import java.security.NoSuchAlgorithmException;
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
+import java.util.Set;
 import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentNavigableMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import org.apache.hadoop.hive.metastore.StatObjectConverter;
 import org.apache.hadoop.hive.metastore.Warehouse;
@@ -49,16 +57,44 @@
 
 import com.google.common.annotations.VisibleForTesting;
 
+/**
+ * The objects cached by CachedStore. Readers never lock: the caches are concurrent maps, and the
+ * partitions of each table are published as a map that is never modified, a writer replaces it
+ * with a modified copy. Writers of the partitions of a table are serialized on its
+ * {@link TablePartitions}, the other writers on the SharedCache.
+ */
 public class SharedCache {
-  private Map<String, Database> databaseCache = new TreeMap<>();
-  private Map<String, TableWrapper> tableCache = new TreeMap<>();
-  private Map<String, PartitionWrapper> partitionCache = new TreeMap<>();
-  private Map<String, ColumnStatisticsObj> partitionColStatsCache = new TreeMap<>();
-  private Map<String, ColumnStatisticsObj> tableColStatsCache = new TreeMap<>();
-  private Map<ByteArrayWrapper, StorageDescriptorWrapper> sdCache = new HashMap<>();
-  private Map<String, List<ColumnStatisticsObj>> aggrColStatsCache =
-      new HashMap<String, List<ColumnStatisticsObj>>();
-  private static MessageDigest md;
+  private final Map<String, Database> databaseCache = new ConcurrentSkipListMap<>();
+  private final ConcurrentNavigableMap<String, TableWrapper> tableCache =
+      new ConcurrentSkipListMap<>();
+  private final Map<String, TablePartitions> partitionCache = new ConcurrentHashMap<>();
+  private final Map<String, ColumnStatisticsObj> partitionColStatsCache =
+      new ConcurrentSkipListMap<>();
+  private final Map<String, ColumnStatisticsObj> tableColStatsCache =
+      new ConcurrentSkipListMap<>();
+  private final Map<ByteArrayWrapper, StorageDescriptorWrapper> sdCache =
+      new ConcurrentHashMap<>();
+  private final Map<String, List<ColumnStatisticsObj>> aggrColStatsCache =
+      new ConcurrentHashMap<String, List<ColumnStatisticsObj>>();
+  // Number of partitions in the non evicted TablePartitions
+  private final AtomicInteger cachedPartitionCount = new AtomicInteger();
+  // Tables whose partitions were evicted and read since, to be loaded again by the update thread
+  private final Set<String> requestedTables = ConcurrentHashMap.newKeySet();
+  // Evicted partitions that may still be read by the readers that got them before the eviction
+  private final List<TablePartitions> evictedPartitions = new ArrayList<>();
+  // Evicted partitions to be freed by the next releaseEvictedPartitions, guarded by the above
+  private List<TablePartitions> releasablePartitions = new ArrayList<>();
+  private volatile int maxCachedPartitions = 0;
+  private static final ThreadLocal<MessageDigest> md = new ThreadLocal<MessageDigest>() {
+    @Override
+    protected MessageDigest initialValue() {
+      try {
+        return MessageDigest.getInstance("MD5");
+      } catch (NoSuchAlgorithmException e) {
+        throw new RuntimeException("should not happen", e);
+      }
+    }
+  };
 
   static enum StatsType {
     ALL(0), ALLBUTDEFAULT(1);
@@ -74,18 +110,34 @@ public int getPosition() {
     }
   }
 
+  /**
+   * The cached partitions of a table, by partition key.
+   */
+  static class TablePartitions {
+    private volatile Map<String, PartitionWrapper> partitions = Collections.emptyMap();
+    // Set when the partitions are evicted; readers then go to the RawStore
+    private volatile boolean evicted;
+    // Set when the table is removed from the partition cache; writers then retry
+    private boolean removed;
+    private volatile long lastAccessTime = System.currentTimeMillis();
+
+    Map<String, PartitionWrapper> getPartitions() {
+      return partitions;
+    }
+  }
+
   private static final Logger LOG = LoggerFactory.getLogger(SharedCache.class);
 
-  static {
-    try {
-      md = MessageDigest.getInstance("MD5");
-    } catch (NoSuchAlgorithmException e) {
-      throw new RuntimeException("should not happen", e);
-    }
+  /**
+   * Sets the maximum number of partitions to cache, 0 for no limit.
+   */
+  public void setMaxCachedPartitions(int maxCachedPartitions) {
+    this.maxCachedPartitions = maxCachedPartitions;
   }
 
-  public synchronized Database getDatabaseFromCache(String name) {
-    return databaseCache.get(name)!=null?databaseCache.get(name).deepCopy():null;
+  public Database getDatabaseFromCache(String name) {
+    Database db = databaseCache.get(name);
+    return db != null ? db.deepCopy() : null;
   }
 
   public synchronized void addDatabaseToCache(String dbName, Database db) {
@@ -98,25 +150,30 @@ public synchronized void removeDatabaseFromCache(String dbName) {
     databaseCache.remove(dbName);
   }
 
-  public synchronized List<String> listCachedDatabases() {
+  public List<String> listCachedDatabases() {
     return new ArrayList<>(databaseCache.keySet());
   }
 
   public synchronized void alterDatabaseInCache(String dbName, Database newDb) {
-    removeDatabaseFromCache(StringUtils.normalizeIdentifier(dbName));
-    addDatabaseToCache(StringUtils.normalizeIdentifier(newDb.getName()), newDb.deepCopy());
+    // Put the new database first, a reader never misses a database that is not renamed
+    dbName = StringUtils.normalizeIdentifier(dbName);
+    String newDbName = StringUtils.normalizeIdentifier(newDb.getName());
+    addDatabaseToCache(newDbName, newDb.deepCopy());
+    if (!newDbName.equals(dbName)) {
+      removeDatabaseFromCache(dbName);
+    }
   }
 
-  public synchronized int getCachedDatabaseCount() {
+  public int getCachedDatabaseCount() {
     return databaseCache.size();
   }
 
-  public synchronized Table getTableFromCache(String dbName, String tableName) {
+  public Table getTableFromCache(String dbName, String tableName) {
     TableWrapper tblWrapper = tableCache.get(CacheUtils.buildKey(dbName, tableName));
     if (tblWrapper == null) {
       return null;
     }
-    Table t = CacheUtils.assemble(tblWrapper, this);
+    Table t = CacheUtils.assemble(tblWrapper);
     return t;
   }
 
@@ -131,27 +188,30 @@ public synchronized void addTableToCache(String dbName, String tblName, Table tb
     }
     TableWrapper wrapper;
     if (tbl.getSd() != null) {
-      byte[] sdHash = MetaStoreUtils.hashStorageDescriptor(tbl.getSd(), md);
+      byte[] sdHash = MetaStoreUtils.hashStorageDescriptor(tbl.getSd(), md.get());
       StorageDescriptor sd = tbl.getSd();
-      increSd(sd, sdHash);
+      StorageDescriptor cachedSd = increSd(sd, sdHash);
       tblCopy.setSd(null);
-      wrapper = new TableWrapper(tblCopy, sdHash, sd.getLocation(), sd.getParameters());
+      wrapper = new TableWrapper(tblCopy, sdHash, cachedSd, sd.getLocation(), sd.getParameters());
     } else {
-      wrapper = new TableWrapper(tblCopy, null, null, null);
+      wrapper = new TableWrapper(tblCopy, null, null, null, null);
+    }
+    TableWrapper oldWrapper = tableCache.put(CacheUtils.buildKey(dbName, tblName), wrapper);
+    if (oldWrapper != null && oldWrapper.getSdHash() != null) {
+      decrSd(oldWrapper.getSdHash());
     }
-    tableCache.put(CacheUtils.buildKey(dbName, tblName), wrapper);
   }
 
   public synchronized void removeTableFromCache(String dbName, String tblName) {
     TableWrapper tblWrapper = tableCache.remove(CacheUtils.buildKey(dbName, tblName));
-    byte[] sdHash = tblWrapper.getSdHash();
-    if (sdHash!=null) {
-      decrSd(sdHash);
+    if (tblWrapper != null && tblWrapper.getSdHash() != null) {
+      decrSd(tblWrapper.getSdHash());
     }
   }
 
-  public synchronized ColumnStatisticsObj getCachedTableColStats(String colStatsCacheKey) {
-    return tableColStatsCache.get(colStatsCacheKey)!=null?tableColStatsCache.get(colStatsCacheKey).deepCopy():null;
+  public ColumnStatisticsObj getCachedTableColStats(String colStatsCacheKey) {
+    ColumnStatisticsObj colStatObj = tableColStatsCache.get(colStatsCacheKey);
+    return colStatObj != null ? colStatObj.deepCopy() : null;
   }
 
   public synchronized void removeTableColStatsFromCache(String dbName, String tblName) {
@@ -185,8 +245,10 @@ public synchronized void updateTableColStatsInCache(String dbName, String tableN
       if (oldStatsObj != null) {
         LOG.debug("CachedStore: updating table column stats for column: " + colStatObj.getColName()
             + ", of table: " + tableName + " and database: " + dbName);
-        // Update existing stat object's field
-        StatObjectConverter.setFieldsIntoOldStats(oldStatsObj, colStatObj);
+        // Update a copy of the existing stat object, it may be being read
+        ColumnStatisticsObj newStatsObj = oldStatsObj.deepCopy();
+        StatObjectConverter.setFieldsIntoOldStats(newStatsObj, colStatObj);
+        tableColStatsCache.put(key, newStatsObj);
       } else {
         // No stats exist for this key; add a new object to the cache
         tableColStatsCache.put(key, colStatObj);
@@ -195,22 +257,38 @@ public synchronized void updateTableColStatsInCache(String dbName, String tableN
   }
 
   public synchronized void alterTableInCache(String dbName, String tblName, Table newTable) {
-    removeTableFromCache(dbName, tblName);
-    addTableToCache(StringUtils.normalizeIdentifier(newTable.getDbName()),
-        StringUtils.normalizeIdentifier(newTable.getTableName()), newTable);
+    // Put the new table first, a reader never misses a table that is not renamed
+    String newDbName = StringUtils.normalizeIdentifier(newTable.getDbName());
+    String newTblName = StringUtils.normalizeIdentifier(newTable.getTableName());
+    addTableToCache(newDbName, newTblName, newTable);
+    if (!newDbName.equals(dbName) || !newTblName.equals(tblName)) {
+      removeTableFromCache(dbName, tblName);
+    }
   }
 
   public synchronized void alterTableInPartitionCache(String dbName, String tblName,
       Table newTable) {
     if (!dbName.equals(newTable.getDbName()) || !tblName.equals(newTable.getTableName())) {
-      List<Partition> partitions = listCachedPartitions(dbName, tblName, -1);
-      for (Partition part : partitions) {
-        removePartitionFromCache(part.getDbName(), part.getTableName(), part.getValues());
-        part.setDbName(StringUtils.normalizeIdentifier(newTable.getDbName()));
-        part.setTableName(StringUtils.normalizeIdentifier(newTable.getTableName()));
-        addPartitionToCache(StringUtils.normalizeIdentifier(newTable.getDbName()),
-            StringUtils.normalizeIdentifier(newTable.getTableName()), part);
+      String newDbName = StringUtils.normalizeIdentifier(newTable.getDbName());
+      String newTblName = StringUtils.normalizeIdentifier(newTable.getTableName());
+      TablePartitions tablePartitions = partitionCache.get(CacheUtils.buildKey(dbName, tblName));
+      if (tablePartitions == null) {
+        return;
       }
+      if (tablePartitions.evicted) {
+        // The partitions of the new table are loaded again when they are read
+        TablePartitions newTablePartitions = new TablePartitions();
+        newTablePartitions.evicted = true;
+        partitionCache.putIfAbsent(CacheUtils.buildKey(newDbName, newTblName), newTablePartitions);
+      } else {
+        List<Partition> partitions = listCachedPartitions(dbName, tblName, -1);
+        for (Partition part : partitions) {
+          part.setDbName(newDbName);
+          part.setTableName(newTblName);
+        }
+        addPartitionsToCache(newDbName, newTblName, partitions);
+      }
+      removePartitionsFromCache(dbName, tblName);
     }
   }
 
@@ -290,21 +368,22 @@ public synchronized void alterTableInAggrPartitionColStatsCache(String dbName, S
     }
   }
 
-  public synchronized int getCachedTableCount() {
+  public int getCachedTableCount() {
     return tableCache.size();
   }
 
-  public synchronized List<Table> listCachedTables(String dbName) {
+  public List<Table> listCachedTables(String dbName) {
     List<Table> tables = new ArrayList<>();
-    for (TableWrapper wrapper : tableCache.values()) {
-      if (wrapper.getTable().getDbName().equals(dbName)) {
-        tables.add(CacheUtils.assemble(wrapper, this));
-      }
+    // The keys of the tables of a database all start with the same prefix
+    String prefix = CacheUtils.buildKeyWithDelimit(dbName);
+    for (TableWrapper wrapper :
+        tableCache.subMap(prefix, prefix + Character.MAX_VALUE).values()) {
+      tables.add(CacheUtils.assemble(wrapper));
     }
     return tables;
   }
 
-  public synchronized List<TableMeta> getTableMeta(String dbNames, String tableNames, List<String> tableTypes) {
+  public List<TableMeta> getTableMeta(String dbNames, String tableNames, List<String> tableTypes) {
     List<TableMeta> tableMetas = new ArrayList<>();
     for (String dbName : listCachedDatabases()) {
       if (CacheUtils.matches(dbName, dbNames)) {
@@ -323,46 +402,181 @@ public synchronized List<TableMeta> getTableMeta(String dbNames, String tableNam
     return tableMetas;
   }
 
-  public synchronized void addPartitionToCache(String dbName, String tblName, Partition part) {
+  private PartitionWrapper createPartitionWrapper(Partition part) {
     Partition partCopy = part.deepCopy();
-    PartitionWrapper wrapper;
-    if (part.getSd()!=null) {
-      byte[] sdHash = MetaStoreUtils.hashStorageDescriptor(part.getSd(), md);
-      StorageDescriptor sd = part.getSd();
-      increSd(sd, sdHash);
-      partCopy.setSd(null);
-      wrapper = new PartitionWrapper(partCopy, sdHash, sd.getLocation(), sd.getParameters());
-    } else {
-      wrapper = new PartitionWrapper(partCopy, null, null, null);
+    if (part.getSd() == null) {
+      return new PartitionWrapper(partCopy, null, null, null, null);
+    }
+    byte[] sdHash = MetaStoreUtils.hashStorageDescriptor(part.getSd(), md.get());
+    StorageDescriptor sd = part.getSd();
+    StorageDescriptor cachedSd = increSd(sd, sdHash);
+    partCopy.setSd(null);
+    return new PartitionWrapper(partCopy, sdHash, cachedSd, sd.getLocation(), sd.getParameters());
+  }
+
+  private void decrSds(Collection<PartitionWrapper> wrappers) {
+    for (PartitionWrapper wrapper : wrappers) {
+      if (wrapper.getSdHash() != null) {
+        decrSd(wrapper.getSdHash());
+      }
+    }
+  }
+
+  /**
+   * Gets the partitions of a table for a read, and makes them the most recently used.
+   */
+  private TablePartitions getTablePartitions(String dbName, String tblName) {
+    TablePartitions tablePartitions = partitionCache.get(CacheUtils.buildKey(dbName, tblName));
+    if (tablePartitions != null) {
+      tablePartitions.lastAccessTime = System.currentTimeMillis();
     }
-    partitionCache.put(CacheUtils.buildKey(dbName, tblName, part.getValues()), wrapper);
+    return tablePartitions;
   }
 
-  public synchronized Partition getPartitionFromCache(String key) {
-    PartitionWrapper wrapper = partitionCache.get(key);
+  /**
+   * Gets the partitions of a table to modify them, the caller then synchronizes on them. Writers
+   * must check that they were not removed meanwhile.
+   */
+  private TablePartitions getOrCreateTablePartitions(String tblKey) {
+    return partitionCache.computeIfAbsent(tblKey, k -> new TablePartitions());
+  }
+
+  /**
+   * Replaces the partitions of a table. Must be called holding the lock of the TablePartitions.
+   */
+  private void publishPartitions(TablePartitions tablePartitions,
+      Map<String, PartitionWrapper> partitions) {
+    if (!tablePartitions.evicted) {
+      cachedPartitionCount.addAndGet(partitions.size() - tablePartitions.partitions.size());
+    }
+    tablePartitions.partitions = Collections.unmodifiableMap(partitions);
+  }
+
+  /**
+   * Whether the partitions of a table can be read from the cache. If they were evicted, the table
+   * is recorded so that the cache update thread loads them again.
+   */
+  public boolean isTablePartitionsCached(String dbName, String tblName) {
+    String tblKey = CacheUtils.buildKey(dbName, tblName);
+    TablePartitions tablePartitions = partitionCache.get(tblKey);
+    if (tablePartitions == null || !tablePartitions.evicted) {
+      return true;
+    }
+    requestedTables.add(tblKey);
+    return false;
+  }
+
+  /**
+   * Whether the cache update thread should refresh the partitions of a table, which it doesn't
+   * for the evicted tables that were not read since.
+   */
+  public boolean shouldRefreshPartitions(String dbName, String tblName) {
+    String tblKey = CacheUtils.buildKey(dbName, tblName);
+    TablePartitions tablePartitions = partitionCache.get(tblKey);
+    return tablePartitions == null || !tablePartitions.evicted
+        || requestedTables.contains(tblKey);
+  }
+
+  /**
+   * @return the keys of the evicted tables whose partitions were read since their eviction
+   */
+  public Set<String> getRequestedTables() {
+    return new HashSet<>(requestedTables);
+  }
+
+  public void addPartitionToCache(String dbName, String tblName, Partition part) {
+    addPartitionsToCache(dbName, tblName, Collections.singletonList(part));
+  }
+
+  /**
+   * Adds partitions of a table, copying its partitions once. Nothing is added to the evicted
+   * tables, their partitions are all loaded again when they are read.
+   */
+  public void addPartitionsToCache(String dbName, String tblName, List<Partition> parts) {
+    String tblKey = CacheUtils.buildKey(dbName, tblName);
+    List<PartitionWrapper> replaced = new ArrayList<>();
+    while (true) {
+      TablePartitions tablePartitions = getOrCreateTablePartitions(tblKey);
+      synchronized (tablePartitions) {
+        if (tablePartitions.removed) {
+          continue;
+        }
+        if (tablePartitions.evicted) {
+          return;
+        }
+        Map<String, PartitionWrapper> partitions = new TreeMap<>(tablePartitions.partitions);
+        for (Partition part : parts) {
+          PartitionWrapper oldWrapper = partitions.put(
+              CacheUtils.buildKey(dbName, tblName, part.getValues()), createPartitionWrapper(part));
+          if (oldWrapper != null) {
+            replaced.add(oldWrapper);
+          }
+        }
+        publishPartitions(tablePartitions, partitions);
+        break;
+      }
+    }
+    decrSds(replaced);
+    evictPartitionsIfNeeded(tblKey);
+  }
+
+  public Partition getPartitionFromCache(String dbName, String tblName, List<String> part_vals) {
+    TablePartitions tablePartitions = getTablePartitions(dbName, tblName);
+    if (tablePartitions == null) {
+      return null;
+    }
+    PartitionWrapper wrapper =
+        tablePartitions.partitions.get(CacheUtils.buildKey(dbName, tblName, part_vals));
     if (wrapper == null) {
       return null;
     }
-    Partition p = CacheUtils.assemble(wrapper, this);
+    Partition p = CacheUtils.assemble(wrapper);
     return p;
   }
 
-  public synchronized Partition getPartitionFromCache(String dbName, String tblName, List<String> part_vals) {
-    return getPartitionFromCache(CacheUtils.buildKey(dbName, tblName, part_vals));
+  public boolean existPartitionFromCache(String dbName, String tblName, List<String> part_vals) {
+    TablePartitions tablePartitions = getTablePartitions(dbName, tblName);
+    return tablePartitions != null && tablePartitions.partitions.containsKey(
+        CacheUtils.buildKey(dbName, tblName, part_vals));
   }
 
-  public synchronized boolean existPartitionFromCache(String dbName, String tblName, List<String> part_vals) {
-    return partitionCache.containsKey(CacheUtils.buildKey(dbName, tblName, part_vals));
+  public Partition removePartitionFromCache(String dbName, String tblName,
+      List<String> part_vals) {
+    List<Partition> removed =
+        removePartitionsFromCache(dbName, tblName, Collections.singletonList(part_vals));
+    return removed.isEmpty() ? null : removed.get(0);
   }
 
-  public synchronized Partition removePartitionFromCache(String dbName, String tblName,
-      List<String> part_vals) {
-    PartitionWrapper wrapper =
-        partitionCache.remove(CacheUtils.buildKey(dbName, tblName, part_vals));
-    if (wrapper.getSdHash() != null) {
-      decrSd(wrapper.getSdHash());
+  /**
+   * Removes partitions of a table, copying its partitions once.
+   * @return the removed partitions, without their storage descriptor
+   */
+  public List<Partition> removePartitionsFromCache(String dbName, String tblName,
+      List<List<String>> partValsList) {
+    List<Partition> removedPartitions = new ArrayList<>();
+    TablePartitions tablePartitions = partitionCache.get(CacheUtils.buildKey(dbName, tblName));
+    if (tablePartitions == null) {
+      return removedPartitions;
+    }
+    List<PartitionWrapper> removed = new ArrayList<>();
+    synchronized (tablePartitions) {
+      if (tablePartitions.removed || tablePartitions.evicted) {
+        return removedPartitions;
+      }
+      Map<String, PartitionWrapper> partitions = new TreeMap<>(tablePartitions.partitions);
+      for (List<String> partVals : partValsList) {
+        PartitionWrapper wrapper = partitions.remove(CacheUtils.buildKey(dbName, tblName, partVals));
+        if (wrapper != null) {
+          removed.add(wrapper);
+        }
+      }
+      publishPartitions(tablePartitions, partitions);
     }
-    return wrapper.getPartition();
+    decrSds(removed);
+    for (PartitionWrapper wrapper : removed) {
+      removedPartitions.add(wrapper.getPartition());
+    }
+    return removedPartitions;
   }
 
   /**
@@ -371,20 +585,20 @@ public synchronized Partition removePartitionFromCache(String dbName, String tbl
    * @param tblName
    * @return
    */
-  public synchronized void removePartitionsFromCache(String dbName, String tblName) {
-    String partialKey = CacheUtils.buildKeyWithDelimit(dbName, tblName);
-    Iterator<Entry<String, PartitionWrapper>> iterator = partitionCache.entrySet().iterator();
-    while (iterator.hasNext()) {
-      Entry<String, PartitionWrapper> entry = iterator.next();
-      String key = entry.getKey();
-      PartitionWrapper wrapper = entry.getValue();
-      if (key.toLowerCase().startsWith(partialKey.toLowerCase())) {
-        iterator.remove();
-        if (wrapper.getSdHash() != null) {
-          decrSd(wrapper.getSdHash());
-        }
-      }
+  public void removePartitionsFromCache(String dbName, String tblName) {
+    String tblKey = CacheUtils.buildKey(dbName, tblName);
+    TablePartitions tablePartitions = partitionCache.remove(tblKey);
+    requestedTables.remove(tblKey);
+    if (tablePartitions == null) {
+      return;
     }
+    Map<String, PartitionWrapper> oldPartitions;
+    synchronized (tablePartitions) {
+      oldPartitions = tablePartitions.partitions;
+      publishPartitions(tablePartitions, Collections.emptyMap());
+      tablePartitions.removed = true;
+    }
+    decrSds(oldPartitions.values());
   }
 
   // Remove cached column stats for all partitions of all tables in a db
@@ -436,25 +650,68 @@ public synchronized void removePartitionColStatsFromCache(String dbName, String
     partitionColStatsCache.remove(CacheUtils.buildKey(dbName, tblName, partVals, colName));
   }
 
-  public synchronized List<Partition> listCachedPartitions(String dbName, String tblName, int max) {
+  public List<Partition> listCachedPartitions(String dbName, String tblName, int max) {
     List<Partition> partitions = new ArrayList<>();
-    int count = 0;
-    for (PartitionWrapper wrapper : partitionCache.values()) {
-      if (wrapper.getPartition().getDbName().equals(dbName)
-          && wrapper.getPartition().getTableName().equals(tblName)
-          && (max == -1 || count < max)) {
-        partitions.add(CacheUtils.assemble(wrapper, this));
-        count++;
+    TablePartitions tablePartitions = getTablePartitions(dbName, tblName);
+    if (tablePartitions == null) {
+      return partitions;
+    }
+    for (PartitionWrapper wrapper : tablePartitions.partitions.values()) {
+      if (max != -1 && partitions.size() >= max) {
+        break;
       }
+      partitions.add(CacheUtils.assemble(wrapper));
     }
     return partitions;
   }
 
-  public synchronized void alterPartitionInCache(String dbName, String tblName,
+  public void alterPartitionInCache(String dbName, String tblName,
       List<String> partVals, Partition newPart) {
-    removePartitionFromCache(dbName, tblName, partVals);
-    addPartitionToCache(StringUtils.normalizeIdentifier(newPart.getDbName()),
-        StringUtils.normalizeIdentifier(newPart.getTableName()), newPart);
+    alterPartitionsInCache(dbName, tblName, Collections.singletonList(partVals),
+        Collections.singletonList(newPart));
+  }
+
+  /**
+   * Replaces partitions of a table, copying its partitions once. The new partitions are put in
+   * the same copy the old ones are removed from, so a reader never misses one.
+   */
+  public void alterPartitionsInCache(String dbName, String tblName,
+      List<List<String>> partValsList, List<Partition> newParts) {
+    List<Partition> movedParts = new ArrayList<>();
+    List<PartitionWrapper> replaced = new ArrayList<>();
+    TablePartitions tablePartitions = partitionCache.get(CacheUtils.buildKey(dbName, tblName));
+    if (tablePartitions != null) {
+      synchronized (tablePartitions) {
+        if (!tablePartitions.removed && !tablePartitions.evicted) {
+          Map<String, PartitionWrapper> partitions = new TreeMap<>(tablePartitions.partitions);
+          for (int i = 0; i < partValsList.size(); i++) {
+            Partition newPart = newParts.get(i);
+            PartitionWrapper oldWrapper =
+                partitions.remove(CacheUtils.buildKey(dbName, tblName, partValsList.get(i)));
+            if (oldWrapper != null) {
+              replaced.add(oldWrapper);
+            }
+            if (dbName.equals(StringUtils.normalizeIdentifier(newPart.getDbName()))
+                && tblName.equals(StringUtils.normalizeIdentifier(newPart.getTableName()))) {
+              oldWrapper = partitions.put(
+                  CacheUtils.buildKey(dbName, tblName, newPart.getValues()),
+                  createPartitionWrapper(newPart));
+              if (oldWrapper != null) {
+                replaced.add(oldWrapper);
+              }
+            } else {
+              movedParts.add(newPart);
+            }
+          }
+          publishPartitions(tablePartitions, partitions);
+        }
+      }
+    }
+    decrSds(replaced);
+    for (Partition newPart : movedParts) {
+      addPartitionToCache(StringUtils.normalizeIdentifier(newPart.getDbName()),
+          StringUtils.normalizeIdentifier(newPart.getTableName()), newPart);
+    }
   }
 
   public synchronized void alterPartitionInColStatsCache(String dbName, String tblName,
@@ -487,10 +744,12 @@ public synchronized void updatePartitionColStatsInCache(String dbName, String ta
       String key = CacheUtils.buildKey(dbName, tableName, partVals, colStatObj.getColName());
       ColumnStatisticsObj oldStatsObj = partitionColStatsCache.get(key);
       if (oldStatsObj != null) {
-        // Update existing stat object's field
+        // Update a copy of the existing stat object, it may be being read
         LOG.debug("CachedStore: updating partition column stats for column: "
             + colStatObj.getColName() + ", of table: " + tableName + " and database: " + dbName);
-        StatObjectConverter.setFieldsIntoOldStats(oldStatsObj, colStatObj);
+        ColumnStatisticsObj newStatsObj = oldStatsObj.deepCopy();
+        StatObjectConverter.setFieldsIntoOldStats(newStatsObj, colStatObj);
+        partitionColStatsCache.put(key, newStatsObj);
       } else {
         // No stats exist for this key; add a new object to the cache
         partitionColStatsCache.put(key, colStatObj);
@@ -498,12 +757,13 @@ public synchronized void updatePartitionColStatsInCache(String dbName, String ta
     }
   }
 
-  public synchronized int getCachedPartitionCount() {
-    return partitionCache.size();
+  public int getCachedPartitionCount() {
+    return cachedPartitionCount.get();
   }
 
-  public synchronized ColumnStatisticsObj getCachedPartitionColStats(String key) {
-    return partitionColStatsCache.get(key)!=null?partitionColStatsCache.get(key).deepCopy():null;
+  public ColumnStatisticsObj getCachedPartitionColStats(String key) {
+    ColumnStatisticsObj colStatObj = partitionColStatsCache.get(key);
+    return colStatObj != null ? colStatObj.deepCopy() : null;
   }
 
   public synchronized void addPartitionColStatsToCache(
@@ -534,6 +794,7 @@ public synchronized void refreshPartitionColStats(String dbName,
 
   public synchronized void addAggregateStatsToCache(String dbName, String tblName,
       AggrStats aggrStatsAllPartitions, AggrStats aggrStatsAllButDefaultPartition) {
+    // The lists are never modified once cached, they may be being read
     if (aggrStatsAllPartitions != null) {
       for (ColumnStatisticsObj colStatObj : aggrStatsAllPartitions.getColStats()) {
         String key = CacheUtils.buildKey(dbName, tblName, colStatObj.getColName());
@@ -547,7 +808,10 @@ public synchronized void addAggregateStatsToCache(String dbName, String tblName,
         String key = CacheUtils.buildKey(dbName, tblName, colStatObj.getColName());
         List<ColumnStatisticsObj> value = aggrColStatsCache.get(key);
         if ((value != null) && (value.size() > 0)) {
-          value.add(StatsType.ALLBUTDEFAULT.getPosition(), colStatObj);
+          List<ColumnStatisticsObj> newValue =
+              new ArrayList<ColumnStatisticsObj>(value.subList(0, StatsType.ALL.getPosition() + 1));
+          newValue.add(StatsType.ALLBUTDEFAULT.getPosition(), colStatObj);
+          aggrColStatsCache.put(key, newValue);
         }
       }
     }
@@ -560,7 +824,7 @@ public List<ColumnStatisticsObj> getAggrStatsFromCache(String dbName, String tbl
       String key = CacheUtils.buildKey(dbName, tblName, colName);
       List<ColumnStatisticsObj> colStatList = aggrColStatsCache.get(key);
       // If unable to find stats for a column, return null so we can build stats
-      if (colStatList == null) {
+      if (colStatList == null || colStatList.size() <= statsType.getPosition()) {
         return null;
       }
       ColumnStatisticsObj colStatObj = colStatList.get(statsType.getPosition());
@@ -614,68 +878,161 @@ public synchronized void refreshTableColStats(String dbName, String tableName,
     addTableColStatsToCache(dbName, tableName, colStatsForTable);
   }
 
-  public void increSd(StorageDescriptor sd, byte[] sdHash) {
-    ByteArrayWrapper byteArray = new ByteArrayWrapper(sdHash);
-    if (sdCache.containsKey(byteArray)) {
-      sdCache.get(byteArray).refCount++;
-    } else {
-      StorageDescriptor sdToCache = sd.deepCopy();
-      sdToCache.setLocation(null);
-      sdToCache.setParameters(null);
-      sdCache.put(byteArray, new StorageDescriptorWrapper(sdToCache, 1));
-    }
+  /**
+   * @return the cached storage descriptor equal to sd, the one the wrappers refer to
+   */
+  public StorageDescriptor increSd(StorageDescriptor sd, byte[] sdHash) {
+    return sdCache.compute(new ByteArrayWrapper(sdHash), (byteArray, sdWrapper) -> {
+      if (sdWrapper == null) {
+        StorageDescriptor sdToCache = sd.deepCopy();
+        sdToCache.setLocation(null);
+        sdToCache.setParameters(null);
+        return new StorageDescriptorWrapper(sdToCache, 1);
+      }
+      sdWrapper.refCount++;
+      return sdWrapper;
+    }).getSd();
   }
 
   public void decrSd(byte[] sdHash) {
-    ByteArrayWrapper byteArray = new ByteArrayWrapper(sdHash);
-    StorageDescriptorWrapper sdWrapper = sdCache.get(byteArray);
-    sdWrapper.refCount--;
-    if (sdWrapper.getRefCount() == 0) {
-      sdCache.remove(byteArray);
-    }
+    sdCache.computeIfPresent(new ByteArrayWrapper(sdHash),
+        (byteArray, sdWrapper) -> --sdWrapper.refCount == 0 ? null : sdWrapper);
   }
 
   public StorageDescriptor getSdFromCache(byte[] sdHash) {
     StorageDescriptorWrapper sdWrapper = sdCache.get(new ByteArrayWrapper(sdHash));
-    return sdWrapper.getSd();
+    return sdWrapper != null ? sdWrapper.getSd() : null;
   }
 
   // Replace databases in databaseCache with the new list
   public synchronized void refreshDatabases(List<Database> databases) {
     LOG.debug("CachedStore: updating cached database objects");
-    for (String dbName : listCachedDatabases()) {
-      removeDatabaseFromCache(dbName);
-    }
+    Set<String> dbNames = new HashSet<>();
     for (Database db : databases) {
       addDatabaseToCache(db.getName(), db);
+      dbNames.add(db.getName());
+    }
+    for (String dbName : listCachedDatabases()) {
+      if (!dbNames.contains(dbName)) {
+        removeDatabaseFromCache(dbName);
+      }
     }
   }
 
   // Replace tables in tableCache with the new list
   public synchronized void refreshTables(String dbName, List<Table> tables) {
     LOG.debug("CachedStore: updating cached table objects for database: " + dbName);
-    for (Table tbl : listCachedTables(dbName)) {
-      removeTableFromCache(dbName, tbl.getTableName());
-    }
+    Set<String> tblNames = new HashSet<>();
     for (Table tbl : tables) {
       addTableToCache(dbName, tbl.getTableName(), tbl);
+      tblNames.add(StringUtils.normalizeIdentifier(tbl.getTableName()));
+    }
+    for (Table tbl : listCachedTables(dbName)) {
+      if (!tblNames.contains(tbl.getTableName())) {
+        removeTableFromCache(dbName, tbl.getTableName());
+      }
     }
   }
 
-  public synchronized void refreshPartitions(String dbName, String tblName,
-      List<Partition> partitions) {
+  /**
+   * Replaces the partitions of a table. The partitions of an evicted table are cached again.
+   */
+  public void refreshPartitions(String dbName, String tblName, List<Partition> partitions) {
     LOG.debug("CachedStore: updating cached partition objects for database: " + dbName
         + " and table: " + tblName);
-    Iterator<Entry<String, PartitionWrapper>> iterator = partitionCache.entrySet().iterator();
-    while (iterator.hasNext()) {
-      PartitionWrapper partitionWrapper = iterator.next().getValue();
-      if (partitionWrapper.getPartition().getDbName().equals(dbName)
-          && partitionWrapper.getPartition().getTableName().equals(tblName)) {
-        iterator.remove();
+    String tblKey = CacheUtils.buildKey(dbName, tblName);
+    // Build the new partitions before taking the lock, the readers keep using the old ones
+    Map<String, PartitionWrapper> newPartitions = new TreeMap<>();
+    for (Partition part : partitions) {
+      PartitionWrapper oldWrapper = newPartitions.put(
+          CacheUtils.buildKey(dbName, tblName, part.getValues()), createPartitionWrapper(part));
+      if (oldWrapper != null && oldWrapper.getSdHash() != null) {
+        decrSd(oldWrapper.getSdHash());
       }
     }
-    for (Partition part : partitions) {
-      addPartitionToCache(dbName, tblName, part);
+    Map<String, PartitionWrapper> oldPartitions;
+    while (true) {
+      TablePartitions tablePartitions = getOrCreateTablePartitions(tblKey);
+      synchronized (tablePartitions) {
+        if (tablePartitions.removed) {
+          continue;
+        }
+        oldPartitions = tablePartitions.partitions;
+        if (tablePartitions.evicted) {
+          tablePartitions.evicted = false;
+          tablePartitions.partitions = Collections.emptyMap();
+          tablePartitions.lastAccessTime = System.currentTimeMillis();
+        }
+        publishPartitions(tablePartitions, newPartitions);
+        break;
+      }
+    }
+    requestedTables.remove(tblKey);
+    decrSds(oldPartitions.values());
+    evictPartitionsIfNeeded(tblKey);
+  }
+
+  /**
+   * Evicts the partitions of the least recently used tables while there are more than the
+   * maximum number of cached partitions. The table just modified is never evicted.
+   */
+  private void evictPartitionsIfNeeded(String modifiedTblKey) {
+    int max = maxCachedPartitions;
+    if (max <= 0 || cachedPartitionCount.get() <= max) {
+      return;
+    }
+    synchronized (evictedPartitions) {
+      while (cachedPartitionCount.get() > max) {
+        String lruTblKey = null;
+        TablePartitions lru = null;
+        for (Entry<String, TablePartitions> entry : partitionCache.entrySet()) {
+          TablePartitions tablePartitions = entry.getValue();
+          if (entry.getKey().equals(modifiedTblKey) || tablePartitions.evicted
+              || tablePartitions.partitions.isEmpty()) {
+            continue;
+          }
+          if (lru == null || tablePartitions.lastAccessTime < lru.lastAccessTime) {
+            lruTblKey = entry.getKey();
+            lru = tablePartitions;
+          }
+        }
+        if (lru == null) {
+          break;
+        }
+        synchronized (lru) {
+          if (!lru.removed && !lru.evicted) {
+            cachedPartitionCount.addAndGet(-lru.partitions.size());
+            lru.evicted = true;
+            evictedPartitions.add(lru);
+          }
+        }
+        LOG.debug("CachedStore: evicted the cached partitions of {}", lruTblKey);
+      }
+    }
+  }
+
+  /**
+   * Frees the partitions evicted before the previous call. The ones evicted since may still be
+   * read by the readers that found them cached, they are freed by the next call. Called by the
+   * cache update thread.
+   */
+  public void releaseEvictedPartitions() {
+    List<TablePartitions> toRelease;
+    synchronized (evictedPartitions) {
+      toRelease = releasablePartitions;
+      releasablePartitions = new ArrayList<>(evictedPartitions);
+      evictedPartitions.clear();
+    }
+    for (TablePartitions tablePartitions : toRelease) {
+      Map<String, PartitionWrapper> oldPartitions;
+      synchronized (tablePartitions) {
+        if (!tablePartitions.evicted) {
+          continue;
+        }
+        oldPartitions = tablePartitions.partitions;
+        tablePartitions.partitions = Collections.emptyMap();
+      }
+      decrSds(oldPartitions.values());
     }
   }
 
@@ -690,7 +1047,7 @@ Map<String, TableWrapper> getTableCache() {
   }
 
   @VisibleForTesting
-  Map<String, PartitionWrapper> getPartitionCache() {
+  Map<String, TablePartitions> getPartitionCache() {
     return partitionCache;
   }
 
@@ -293,6 +293,24 @@ public enum ConfVars {
          "This can be used in conjunction with hive.metastore.cached.rawstore.cached.object.whitelist. \n" +
          "Example: db2.*, db3\\.tbl1, db3\\..*. The last item can potentially override patterns specified before. \n" +
          "The blacklist also overrides the whitelist."),
+    CACHED_RAW_STORE_MAX_CACHED_PARTITIONS("metastore.cached.rawstore.max.cached.partitions",
+        "hive.metastore.cached.rawstore.max.cached.partitions", 0,
+        "The maximum number of partitions kept in the metastore cache. When it is exceeded, the \n" +
+        "partitions of the least recently used tables are evicted; they are read from the \n" +
+        "metastore DB until the cache update thread loads them again. 0 means no limit."),
+    CACHED_RAW_STORE_INCREMENTAL_UPDATE("metastore.cached.rawstore.incremental.update",
+        "hive.metastore.cached.rawstore.incremental.update", false,
+        "Whether the metastore cache update thread only refreshes the databases and tables \n" +
+        "changed since the last update, as found in the notification log, instead of reloading \n" +
+        "everything. Requires DbNotificationListener to be configured as an event listener; a full \n" +
+        "refresh is still done when events are missing from the log or it can not be read, and \n" +
+        "every metastore.cached.rawstore.full.update.frequency for the column statistics, which \n" +
+        "have no events."),
+    CACHED_RAW_STORE_FULL_UPDATE_FREQUENCY("metastore.cached.rawstore.full.update.frequency",
+        "hive.metastore.cached.rawstore.full.update.frequency", 600, TimeUnit.SECONDS,
+        "With metastore.cached.rawstore.incremental.update, the time after which the metastore \n" +
+        "cache update thread refreshes all the cached objects again, including the column \n" +
+        "statistics changed through other metastores."),
     CAPABILITY_CHECK("metastore.client.capability.check",
         "hive.metastore.client.capability.check", true,
         "Whether to check client capabilities for potentially breaking API usage."),
@@ -745,6 +763,21 @@ public enum ConfVars {
             "select query has incorrect syntax or something similar inside a transaction, the\n" +
             "entire transaction will fail and fall-back to DataNucleus will not be possible. You\n" +
             "should disable the usage of direct SQL inside transactions if that happens in your case."),
+    TXN_CHECK_LOCK_SHARDS("metastore.txn.check.lock.shards", "hive.txn.check.lock.shards", 1,
+        "Number of mutexes the checking of the locks is sharded on, by database.  Checking the\n" +
+            "locks of different databases contends only when they are in the same shard, 1 makes\n" +
+            "it a single global mutex.  All the metastores sharing a metastore database must use\n" +
+            "the same value, so only raise it once none of them runs an older release, which\n" +
+            "always use the single global mutex."),
+    TXN_GROUP_COMMIT_MAX_TXNS("metastore.txn.group.commit.max.txns",
+        "hive.txn.group.commit.max.txns", 1,
+        "Maximum number of transactions committed together in one transaction of the metastore\n" +
+            "database (at most 1000).  The commits which arrive while another one is in progress\n" +
+            "are grouped, which reduces the load of the database when many clients such as\n" +
+            "streaming agents commit concurrently.  Only transactions that did not update or\n" +
+            "delete are committed together; the others wait for the group they arrive in, then\n" +
+            "commit on their own.  1 disables the grouping.  When it is enabled, the commits of\n" +
+            "all the threads of the metastore go through one queue."),
     TXN_MAX_OPEN_BATCH("metastore.txn.max.open.batch", "hive.txn.max.open.batch", 1000,
         "Maximum number of transactions that can be fetched in one call to open_txns().\n" +
             "This controls how many transactions streaming agents such as Flume or Storm open\n" +
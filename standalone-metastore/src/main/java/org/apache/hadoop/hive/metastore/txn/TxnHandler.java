@@ -29,6 +29,7 @@
 import java.util.ArrayList;
 import java.util.BitSet;
 import java.util.Calendar;
+import java.util.Collection;
 import java.util.Collections;
 import java.util.Comparator;
 import java.util.HashMap;
@@ -54,7 +55,6 @@
 import org.apache.commons.dbcp.DriverManagerConnectionFactory;
 import org.apache.commons.dbcp.PoolableConnectionFactory;
 import org.apache.commons.dbcp.PoolingDataSource;
-import org.apache.commons.lang.NotImplementedException;
 import org.apache.commons.pool.impl.GenericObjectPool;
 import org.apache.hadoop.classification.InterfaceAudience;
 import org.apache.hadoop.classification.InterfaceStability;
@@ -271,6 +271,11 @@ public static OpertaionType fromDataOperationType(DataOperationType dop) {
   private long retryInterval;
   private int retryLimit;
   private int retryNum;
+  // Number of mutexes checkLock() is sharded on
+  private int checkLockShards;
+  private volatile boolean checkLockMutexKeysInserted = false;
+  // Maximum number of transactions committed together by commitTxn(), 1 when not grouped
+  private int groupCommitMaxTxns;
   // Current number of open txns
   private AtomicInteger numOpenTxns;
 
@@ -285,6 +290,32 @@ public static OpertaionType fromDataOperationType(DataOperationType dop) {
   private final static ConcurrentHashMap<String, Semaphore> derbyKey2Lock = new ConcurrentHashMap<>();
   private static final String hostname = JavaUtils.hostname();
 
+  /**
+   * Group commit: the commitTxn() calls waiting while another one is in progress, which are then
+   * committed together by one of them.  Static since there is a TxnHandler per metastore thread.
+   * Txns which updated/deleted need the write conflict check of commitTxnImpl(), so they are
+   * left out of the group's DB transaction and committed on their own once it is done.  They
+   * still wait for the group they arrive in, which costs them that wait but no extra query.
+   */
+  private static final class PendingCommit {
+    private final long txnid;
+    private boolean isDone = false;
+    private boolean isCommitted = false;
+    PendingCommit(long txnid) {
+      this.txnid = txnid;
+    }
+  }
+  private static final List<PendingCommit> pendingCommits = new ArrayList<>();
+  private static boolean isCommitInProgress = false;//guarded by pendingCommits
+  private static final int MAX_GROUP_COMMIT_TXNS = 1000;//so that the IN lists stay in DB limits
+
+  @VisibleForTesting
+  static int getPendingCommitsCount() {
+    synchronized (pendingCommits) {
+      return pendingCommits.size();
+    }
+  }
+
   // Private methods should never catch SQLException and then throw MetaException.  The public
   // methods depend on SQLException coming back so they can detect and handle deadlocks.  Private
   // methods should only throw MetaException when they explicitly know there's a logic error and
@@ -319,7 +350,8 @@ public void setConf(Configuration conf) {
            connection from each pool and we want to avoid taking a connection from primary pool
            and then blocking because mutex pool is empty.  There is only 1 thread in any HMS trying
            to mutex on each MUTEX_KEY except MUTEX_KEY.CheckLock.  The CheckLock operation gets a
-           connection from connPool first, then connPoolMutex.  All others, go in the opposite
+           connection from connPool first, then connPoolMutex (a single one at a time, whichever
+           number of shards of MUTEX_KEY.CheckLock it locks).  All others, go in the opposite
            order (not very elegant...).  So number of connection requests for connPoolMutex cannot
            exceed (size of connPool + MUTEX_KEY.values().length - 1).*/
           connPoolMutex = setupJdbcConnectionPool(conf, maxPoolSize + MUTEX_KEY.values().length, getConnectionTimeoutMs);
@@ -345,6 +377,9 @@ public void setConf(Configuration conf) {
     retryLimit = MetastoreConf.getIntVar(conf, ConfVars.HMSHANDLERATTEMPTS);
     deadlockRetryInterval = retryInterval / 10;
     maxOpenTxns = MetastoreConf.getIntVar(conf, ConfVars.MAX_OPEN_TXNS);
+    checkLockShards = MetastoreConf.getIntVar(conf, ConfVars.TXN_CHECK_LOCK_SHARDS);
+    groupCommitMaxTxns = Math.min(MetastoreConf.getIntVar(conf, ConfVars.TXN_GROUP_COMMIT_MAX_TXNS),
+        MAX_GROUP_COMMIT_TXNS);
   }
 
   @Override
@@ -688,6 +723,85 @@ public void abortTxns(AbortTxnsRequest rqst) throws NoSuchTxnException, MetaExce
   @Override
   @RetrySemantics.Idempotent("No-op if already committed")
   public void commitTxn(CommitTxnRequest rqst)
+    throws NoSuchTxnException, TxnAbortedException,  MetaException {
+    if (groupCommitMaxTxns <= 1) {
+      commitTxnImpl(rqst);
+      return;
+    }
+    PendingCommit commit = new PendingCommit(rqst.getTxnid());
+    List<PendingCommit> group = new ArrayList<>();
+    boolean isInterrupted = false;
+    synchronized (pendingCommits) {
+      pendingCommits.add(commit);
+      while (isCommitInProgress && !commit.isDone) {
+        try {
+          pendingCommits.wait();
+        } catch (InterruptedException e) {
+          if (pendingCommits.remove(commit)) {
+            Thread.currentThread().interrupt();
+            throw new MetaException("Interrupted while waiting to commit " +
+              JavaUtils.txnIdToString(rqst.getTxnid()));
+          }
+          //already in a group, which may commit it, so wait for the group to be done
+          isInterrupted = true;
+        }
+      }
+      if (isInterrupted) {
+        Thread.currentThread().interrupt();
+      }
+      if (!commit.isDone) {
+        //this call commits the pending ones, including itself
+        isCommitInProgress = true;
+        pendingCommits.remove(commit);
+        group.add(commit);
+        while (group.size() < groupCommitMaxTxns && !pendingCommits.isEmpty()) {
+          group.add(pendingCommits.remove(0));
+        }
+      }
+    }
+    if (group.isEmpty()) {
+      if (!commit.isCommitted) {
+        //not committed with its group
+        commitTxnImpl(rqst);
+      }
+      return;
+    }
+    try {
+      if (group.size() == 1) {
+        commitTxnImpl(rqst);
+        commit.isCommitted = true;
+      } else {
+        List<Long> txnids = new ArrayList<>(group.size());
+        for (PendingCommit pending : group) {
+          txnids.add(pending.txnid);
+        }
+        Set<Long> committed = commitTxnsWithoutConflicts(txnids);
+        for (PendingCommit pending : group) {
+          pending.isCommitted = committed.contains(pending.txnid);
+        }
+      }
+    } catch (MetaException e) {
+      if (group.size() == 1) {
+        throw e;
+      }
+      //each txn of the group is committed on its own instead
+      LOG.warn("Unable to commit " + group.size() + " txns together: " + e.getMessage(), e);
+    } finally {
+      synchronized (pendingCommits) {
+        for (PendingCommit pending : group) {
+          pending.isDone = true;
+        }
+        isCommitInProgress = false;
+        pendingCommits.notifyAll();
+      }
+    }
+    if (!commit.isCommitted) {
+      commitTxnImpl(rqst);
+    }
+  }
+
+  @VisibleForTesting
+  void commitTxnImpl(CommitTxnRequest rqst)
     throws NoSuchTxnException, TxnAbortedException,  MetaException {
     long txnid = rqst.getTxnid();
     try {
@@ -862,7 +976,98 @@ public void commitTxn(CommitTxnRequest rqst)
         unlockInternal();
       }
     } catch (RetryException e) {
-      commitTxn(rqst);
+      commitTxnImpl(rqst);
+    }
+  }
+
+  /**
+   * Commits together the txns of {@code txnids} which are open and did not update/delete anything,
+   * i.e. those whose {@link #commitTxn(CommitTxnRequest)} does not need a write conflict check, in
+   * a single transaction of the metastore DB.  The others are left for commitTxn() on their own.
+   * @return the txnids committed
+   */
+  @VisibleForTesting
+  Set<Long> commitTxnsWithoutConflicts(List<Long> txnids) throws MetaException {
+    try {
+      Connection dbConn = null;
+      Statement stmt = null;
+      ResultSet rs = null;
+      try {
+        lockInternal();
+        dbConn = getDbConn(Connection.TRANSACTION_READ_COMMITTED);
+        stmt = dbConn.createStatement();
+        //S4U on the TXNS rows, like lockTransactionRecord() for a single txn
+        String s = sqlGenerator.addForUpdateClause("select txn_id from TXNS where txn_id in (" +
+          StringUtils.join(",", txnids) + ") and txn_state = " + quoteChar(TXN_OPEN));
+        LOG.debug("Going to execute query <" + s + ">");
+        rs = stmt.executeQuery(s);
+        Set<Long> committed = new TreeSet<>();
+        while (rs.next()) {
+          committed.add(rs.getLong(1));
+        }
+        close(rs);
+        if (!committed.isEmpty()) {
+          s = "select distinct tc_txnid from TXN_COMPONENTS where tc_txnid in (" +
+            StringUtils.join(",", committed) + ") and tc_operation_type IN(" +
+            quoteChar(OpertaionType.UPDATE.sqlConst) + "," + quoteChar(OpertaionType.DELETE.sqlConst) + ")";
+          LOG.debug("Going to execute query <" + s + ">");
+          rs = stmt.executeQuery(s);
+          while (rs.next()) {
+            committed.remove(rs.getLong(1));
+          }
+          close(rs);
+        }
+        if (committed.isEmpty()) {
+          LOG.debug("Going to rollback");
+          dbConn.rollback();
+          return committed;
+        }
+        String inList = StringUtils.join(",", committed);
+        s = "insert into COMPLETED_TXN_COMPONENTS (ctc_txnid, ctc_database, " +
+          "ctc_table, ctc_partition) select tc_txnid, tc_database, tc_table, " +
+          "tc_partition from TXN_COMPONENTS where tc_txnid in (" + inList + ")";
+        LOG.debug("Going to execute insert <" + s + ">");
+        stmt.executeUpdate(s);
+        s = "delete from TXN_COMPONENTS where tc_txnid in (" + inList + ")";
+        LOG.debug("Going to execute update <" + s + ">");
+        stmt.executeUpdate(s);
+        s = "delete from HIVE_LOCKS where hl_txnid in (" + inList + ")";
+        LOG.debug("Going to execute update <" + s + ">");
+        stmt.executeUpdate(s);
+        s = "delete from TXNS where txn_id in (" + inList + ")";
+        LOG.debug("Going to execute update <" + s + ">");
+        stmt.executeUpdate(s);
+        LOG.debug("Going to commit");
+        dbConn.commit();
+
+        // Update registry with modifications, as commitTxn() does for each txn
+        s = "select ctc_txnid, ctc_database, ctc_table, ctc_id, ctc_timestamp from COMPLETED_TXN_COMPONENTS where ctc_txnid in (" + inList + ")";
+        rs = stmt.executeQuery(s);
+        Set<Long> notified = new HashSet<>();
+        while (rs.next()) {
+          if (notified.add(rs.getLong(1))) {
+            LOG.debug("Going to register table modification in invalidation cache <" + s + ">");
+            MaterializationsInvalidationCache.get().notifyTableModification(
+                rs.getString(2), rs.getString(3), rs.getLong(4),
+                rs.getTimestamp(5, Calendar.getInstance(TimeZone.getTimeZone("UTC"))).getTime());
+          }
+        }
+        close(rs);
+        dbConn.commit();
+        LOG.debug("Committed " + committed.size() + " txns together");
+        return committed;
+      } catch (SQLException e) {
+        LOG.debug("Going to rollback");
+        rollbackDBConn(dbConn);
+        checkRetryable(dbConn, e, "commitTxnsWithoutConflicts(" + txnids + ")");
+        throw new MetaException("Unable to update transaction database "
+          + StringUtils.stringifyException(e));
+      } finally {
+        close(rs, stmt, dbConn);
+        unlockInternal();
+      }
+    } catch (RetryException e) {
+      return commitTxnsWithoutConflicts(txnids);
     }
   }
 
@@ -2595,6 +2800,28 @@ private int abortTxns(Connection dbConn, List<Long> txnids, long max_heartbeat,
   private static boolean isValidTxn(long txnId) {
     return txnId != 0;
   }
+  /**
+   * Locks in different databases are always compatible, so checkLock() is mutexed on a shard of
+   * {@link MUTEX_KEY#CheckLock} for each database of the locks it checks, rather than on a single
+   * global mutex.  The keys are sorted so that 2 checkLock() calls lock their shards in the same
+   * order.  With a single shard this is the global {@link MUTEX_KEY#CheckLock} mutex.
+   */
+  @VisibleForTesting
+  SortedSet<String> getCheckLockMutexKeys(Collection<String> dbs) {
+    SortedSet<String> keys = new TreeSet<>();
+    for (String db : dbs) {
+      if (checkLockShards <= 1) {
+        keys.add(MUTEX_KEY.CheckLock.name());
+      } else {
+        keys.add(getCheckLockMutexKey((db.hashCode() & Integer.MAX_VALUE) % checkLockShards));
+      }
+    }
+    return keys;
+  }
+  private static String getCheckLockMutexKey(int shard) {
+    return String.format("%s%04d", MUTEX_KEY.CheckLock.name(), shard);
+  }
+
   /**
    * Lock acquisition is meant to be fair, so every lock can only block on some lock with smaller
    * hl_lock_ext_id by only checking earlier locks.
@@ -2627,13 +2854,29 @@ private LockResponse checkLock(Connection dbConn, long extLockId)
      */
     boolean isPartOfDynamicPartitionInsert = true;
     try {
+      List<LockInfo> locksBeingChecked = getLockInfoFromLockId(dbConn, extLockId);//being acquired now
+      response.setLockid(extLockId);
+      Set<String> strings = new HashSet<>(locksBeingChecked.size());
+      for (LockInfo info : locksBeingChecked) {
+        strings.add(info.db);
+      }
       /**
        * checkLock() must be mutexed against any other checkLock to make sure 2 conflicting locks
-       * are not granted by parallel checkLock() calls.
+       * are not granted by parallel checkLock() calls.  Locks in different databases never
+       * conflict, so it only needs to be mutexed against those checking locks in the same
+       * databases.  See {@link #getCheckLockMutexKeys(Collection)}.
        */
-      handle = getMutexAPI().acquireLock(MUTEX_KEY.CheckLock.name());
-      List<LockInfo> locksBeingChecked = getLockInfoFromLockId(dbConn, extLockId);//being acquired now
-      response.setLockid(extLockId);
+      SortedSet<String> keys = getCheckLockMutexKeys(strings);
+      if (keys.size() > 1) {
+        insertCheckLockMutexKeys();
+      }
+      for (String key : keys) {
+        if (handle == null) {
+          handle = getMutexAPI().acquireLock(key);
+        } else {
+          getMutexAPI().acquireLock(key, handle);
+        }
+      }
 
       LOG.debug("checkLock(): Setting savepoint. extLockId=" + JavaUtils.lockIdToString(extLockId));
       Savepoint save = dbConn.setSavepoint();
@@ -2641,13 +2884,10 @@ private LockResponse checkLock(Connection dbConn, long extLockId)
         "hl_lock_int_id, hl_db, hl_table, hl_partition, hl_lock_state, " +
         "hl_lock_type, hl_txnid from HIVE_LOCKS where hl_db in (");
 
-      Set<String> strings = new HashSet<>(locksBeingChecked.size());
-
       //This the set of entities that the statement represented by extLockId wants to update
       List<LockInfo> writeSet = new ArrayList<>();
 
       for (LockInfo info : locksBeingChecked) {
-        strings.add(info.db);
         if(!isPartOfDynamicPartitionInsert && info.type == LockType.SHARED_WRITE) {
           writeSet.add(info);
         }
@@ -3674,38 +3914,119 @@ public LockHandle acquireLock(String key) throws MetaException {
       return acquireLock(key);
     }
   }
-  public void acquireLock(String key, LockHandle handle) {
-    //the idea is that this will use LockHandle.dbConn
-    throw new NotImplementedException();
+  @Override
+  public void acquireLock(String key, LockHandle handle) throws MetaException {
+    //uses LockHandle.dbConn so that all the locks are released by the rollback of its transaction
+    LockHandleImpl handleImpl = (LockHandleImpl) handle;
+    Statement stmt = null;
+    ResultSet rs = null;
+    try {
+      String sqlStmt = sqlGenerator.addForUpdateClause("select MT_COMMENT from AUX_TABLE where MT_KEY1=" + quoteString(key) + " and MT_KEY2=0");
+      lockInternal();
+      stmt = handleImpl.dbConn.createStatement();
+      if(LOG.isDebugEnabled()) {
+        LOG.debug("About to execute SQL: " + sqlStmt);
+      }
+      rs = stmt.executeQuery(sqlStmt);
+      if (!rs.next()) {
+        //the 'key' can't be inserted with LockHandle.dbConn since the commit would release its locks
+        throw new IllegalStateException("Unable to lock " + quoteString(key) + ".  Expected row in AUX_TABLE is missing.");
+      }
+      Semaphore derbySemaphore = null;
+      if(dbProduct == DatabaseProduct.DERBY) {
+        derbyKey2Lock.putIfAbsent(key, new Semaphore(1));
+        derbySemaphore =  derbyKey2Lock.get(key);
+        derbySemaphore.acquire();
+      }
+      LOG.debug(quoteString(key) + " locked by " + quoteString(TxnHandler.hostname));
+      handleImpl.addKey(stmt, rs, key, derbySemaphore);
+    } catch (SQLException ex) {
+      //not retried here: a deadlock may have rolled back the locks already held with LockHandle.dbConn
+      close(rs, stmt, null);
+      throw new MetaException("Unable to lock " + quoteString(key) + " due to: " + getMessage(ex) + "; " + StringUtils.stringifyException(ex));
+    }
+    catch(InterruptedException ex) {
+      close(rs, stmt, null);
+      throw new MetaException("Unable to lock " + quoteString(key) + " due to: " + ex.getMessage() + StringUtils.stringifyException(ex));
+    }
+    finally {
+      unlockInternal();
+    }
+  }
+  /**
+   * Inserts the rows of all the shards of {@link MUTEX_KEY#CheckLock} in AUX_TABLE which are
+   * missing, so that {@link MutexAPI#acquireLock(String, LockHandle)} finds them.  This is done
+   * once per TxnHandler, before any shard is locked, so that checkLock() never holds more than
+   * 1 connection from connPoolMutex.
+   */
+  @VisibleForTesting
+  void insertCheckLockMutexKeys() throws SQLException {
+    if (checkLockMutexKeysInserted) {
+      return;
+    }
+    Connection dbConn = null;
+    Statement stmt = null;
+    ResultSet rs = null;
+    try {
+      dbConn = getDbConn(Connection.TRANSACTION_READ_COMMITTED, connPoolMutex);
+      stmt = dbConn.createStatement();
+      Set<String> keys = new HashSet<>();
+      rs = stmt.executeQuery("select MT_KEY1 from AUX_TABLE where MT_KEY1 like '" +
+          MUTEX_KEY.CheckLock.name() + "%' and MT_KEY2=0");
+      while (rs.next()) {
+        keys.add(rs.getString(1));
+      }
+      close(rs);
+      for (int shard = 0; shard < checkLockShards; shard++) {
+        String key = getCheckLockMutexKey(shard);
+        if (keys.contains(key)) {
+          continue;
+        }
+        try {
+          stmt.executeUpdate("insert into AUX_TABLE(MT_KEY1,MT_KEY2) values(" + quoteString(key) + ", 0)");
+          dbConn.commit();
+        } catch (SQLException ex) {
+          if (!isDuplicateKeyError(ex)) {
+            throw ex;
+          }
+          //if here, it means a concrurrent checkLock() inserted the 'key'
+          dbConn.rollback();
+        }
+      }
+      checkLockMutexKeysInserted = true;
+    } finally {
+      close(rs, stmt, dbConn);
+    }
   }
   private static final class LockHandleImpl implements LockHandle {
     private final Connection dbConn;
-    private final Statement stmt;
-    private final ResultSet rs;
-    private final Semaphore derbySemaphore;
+    private final List<Statement> stmts = new ArrayList<>();
+    private final List<ResultSet> rss = new ArrayList<>();
+    private final List<Semaphore> derbySemaphores = new ArrayList<>();
     private final List<String> keys = new ArrayList<>();
     LockHandleImpl(Connection conn, Statement stmt, ResultSet rs, String key, Semaphore derbySemaphore) {
       this.dbConn = conn;
-      this.stmt = stmt;
-      this.rs = rs;
-      this.derbySemaphore = derbySemaphore;
+      addKey(stmt, rs, key, derbySemaphore);
+    }
+    void addKey(Statement stmt, ResultSet rs, String key, Semaphore derbySemaphore) {
+      stmts.add(stmt);
+      rss.add(rs);
       if(derbySemaphore != null) {
         //oterwise it may later release permit acquired by someone else
         assert derbySemaphore.availablePermits() == 0 : "Expected locked Semaphore";
+        derbySemaphores.add(derbySemaphore);
       }
       keys.add(key);
     }
-    void addKey(String key) {
-      //keys.add(key);
-      //would need a list of (stmt,rs) pairs - 1 for each key
-      throw new NotImplementedException();
-    }
     
     @Override
     public void releaseLocks() {
       rollbackDBConn(dbConn);
-      close(rs, stmt, dbConn);
-      if(derbySemaphore != null) {
+      for(int i = 0; i < stmts.size(); i++) {
+        close(rss.get(i), stmts.get(i), null);
+      }
+      closeDbConn(dbConn);
+      for(Semaphore derbySemaphore : derbySemaphores) {
         derbySemaphore.release();
       }
       for(String key : keys) {
@@ -22,6 +22,8 @@
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import org.apache.hadoop.conf.Configuration;
 import org.apache.hadoop.hive.common.ndv.hll.HyperLogLog;
@@ -682,6 +684,124 @@ public void testSharedStorePartition() {
     Assert.assertEquals(sharedCache.getSdCache().size(), 2);
   }
 
+  @Test
+  public void testSharedStorePartitionEviction() throws Exception {
+    Partition part1 = createTestPartition("201701", "loc1");
+    Partition part2 = createTestPartition("201702", "loc2");
+    Partition part3 = createTestPartition("201703", "loc3");
+    sharedCache.setMaxCachedPartitions(3);
+
+    sharedCache.addPartitionsToCache("db1", "tbl1", Arrays.asList(part1, part2));
+    Thread.sleep(10);
+    // The least recently used table is evicted
+    sharedCache.addPartitionsToCache("db1", "tbl2", Arrays.asList(part1, part2));
+    Assert.assertEquals(2, sharedCache.getCachedPartitionCount());
+    Assert.assertTrue(sharedCache.isTablePartitionsCached("db1", "tbl2"));
+    Assert.assertFalse(sharedCache.isTablePartitionsCached("db1", "tbl1"));
+    Assert.assertNull(sharedCache.getPartitionFromCache("db1", "tbl1", Arrays.asList("201703")));
+
+    // The evicted partitions are only freed once no reader can still be using them
+    String tblKey = CacheUtils.buildKey("db1", "tbl1");
+    sharedCache.releaseEvictedPartitions();
+    Assert.assertEquals(2, sharedCache.getPartitionCache().get(tblKey).getPartitions().size());
+    sharedCache.releaseEvictedPartitions();
+    Assert.assertEquals(0, sharedCache.getPartitionCache().get(tblKey).getPartitions().size());
+
+    // The evicted table was read, so it is loaded again, and the other one evicted
+    Assert.assertTrue(sharedCache.getRequestedTables().contains(tblKey));
+    Assert.assertTrue(sharedCache.shouldRefreshPartitions("db1", "tbl1"));
+    Thread.sleep(10);
+    sharedCache.refreshPartitions("db1", "tbl1", Arrays.asList(part1, part2, part3));
+    Assert.assertTrue(sharedCache.getRequestedTables().isEmpty());
+    Assert.assertEquals(3, sharedCache.getCachedPartitionCount());
+    Assert.assertTrue(sharedCache.isTablePartitionsCached("db1", "tbl1"));
+    Assert.assertEquals(3, sharedCache.listCachedPartitions("db1", "tbl1", -1).size());
+    Assert.assertFalse(sharedCache.shouldRefreshPartitions("db1", "tbl2"));
+
+    // Nothing is added to an evicted table
+    sharedCache.addPartitionToCache("db1", "tbl2", part3);
+    Assert.assertEquals(3, sharedCache.getCachedPartitionCount());
+
+    sharedCache.removePartitionsFromCache("db1", "tbl2");
+    sharedCache.removePartitionsFromCache("db1", "tbl1");
+    sharedCache.releaseEvictedPartitions();
+    sharedCache.releaseEvictedPartitions();
+    Assert.assertEquals(0, sharedCache.getCachedPartitionCount());
+    Assert.assertEquals(0, sharedCache.getSdCache().size());
+  }
+
+  @Test
+  public void testSharedStorePartitionConcurrentReads() throws Exception {
+    final Partition part1 = createTestPartition("201701", "loc1");
+    final Partition part2 = createTestPartition("201702", "loc2");
+    final Partition newPart1 = createTestPartition("201701", "newloc1");
+    newPart1.getSd().getCols().add(new FieldSchema("col2", "int", ""));
+    part1.setDbName("db1");
+    part1.setTableName("tbl1");
+    newPart1.setDbName("db1");
+    newPart1.setTableName("tbl1");
+    sharedCache.addPartitionsToCache("db1", "tbl1", Arrays.asList(part1, part2));
+
+    // The readers always find both partitions, whole, while they are being altered
+    final AtomicBoolean isDone = new AtomicBoolean(false);
+    final AtomicInteger failures = new AtomicInteger();
+    List<Thread> readers = new ArrayList<>();
+    for (int i = 0; i < 4; i++) {
+      Thread reader = new Thread(new Runnable() {
+        @Override
+        public void run() {
+          while (!isDone.get()) {
+            Partition p = sharedCache.getPartitionFromCache("db1", "tbl1", Arrays.asList("201701"));
+            if (p == null || p.getSd() == null || p.getSd().getCols() == null
+                || sharedCache.listCachedPartitions("db1", "tbl1", -1).size() != 2) {
+              failures.incrementAndGet();
+            }
+          }
+        }
+      });
+      reader.start();
+      readers.add(reader);
+    }
+    try {
+      for (int i = 0; i < 1000; i++) {
+        sharedCache.alterPartitionInCache("db1", "tbl1", Arrays.asList("201701"),
+            i % 2 == 0 ? newPart1 : part1);
+      }
+    } finally {
+      isDone.set(true);
+    }
+    for (Thread reader : readers) {
+      reader.join();
+    }
+    Assert.assertEquals(0, failures.get());
+    Assert.assertEquals(2, sharedCache.getCachedPartitionCount());
+    Assert.assertEquals(1, sharedCache.getSdCache().size());
+  }
+
+  @Test
+  public void testNotificationLogEnabled() {
+    Configuration conf = MetastoreConf.newMetastoreConf();
+    Assert.assertFalse(CachedStore.isNotificationLogEnabled(conf));
+    MetastoreConf.setVar(conf, MetastoreConf.ConfVars.TRANSACTIONAL_EVENT_LISTENERS,
+        "org.example.OtherListener, org.apache.hive.hcatalog.listener.DbNotificationListener");
+    Assert.assertTrue(CachedStore.isNotificationLogEnabled(conf));
+  }
+
+  private Partition createTestPartition(String value, String location) {
+    Partition part = new Partition();
+    StorageDescriptor sd = new StorageDescriptor();
+    List<FieldSchema> cols = new ArrayList<>();
+    cols.add(new FieldSchema("col1", "int", ""));
+    Map<String, String> params = new HashMap<>();
+    params.put("key", "value");
+    sd.setCols(cols);
+    sd.setParameters(params);
+    sd.setLocation(location);
+    part.setSd(sd);
+    part.setValues(Arrays.asList(value));
+    return part;
+  }
+
   @Test
   public void testAggrStatsRepeatedRead() throws Exception {
     String dbName = "testTableColStatsOps";
@@ -0,0 +1,224 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.hadoop.hive.ql.exec.vector;
+
+import java.util.Arrays;
+
+/**
+ * A BytesColumnVector whose values can also be read as int codes into a dictionary of the
+ * distinct values of the batch.
+ * <p>
+ * A reader of a dictionary-encoded column sets the values by reference into the buffer of its
+ * dictionary, then calls {@link #setDictionaryReferences(int)}. The codes and the dictionary are
+ * only built when an expression asks for them with {@link #encodeDictionary()}, from the offsets
+ * of the references, so the values are never copied. The expressions which do not know about
+ * the dictionary read the values as usual.
+ * <p>
+ * Setting a value any other way discards the dictionary until the next batch.
+ */
+public class DictionaryBytesColumnVector extends BytesColumnVector {
+
+  /**
+   * The code of each value, valid after {@link #encodeDictionary()} returned true. The codes of
+   * the null values are undefined. If the vector is repeating, only the code of value 0 is set.
+   */
+  public int[] codes;
+
+  private byte[] dictionaryBuffer;
+  private int[] dictionaryStart;
+  private int[] dictionaryLength;
+  private int dictionarySize;
+
+  // The number of values referencing the dictionary, or -1 if the values were not all set so.
+  private int referencesSize = -1;
+  private boolean isEncoded;
+
+  // Open addressing table from the start and length of a reference to its code.
+  private long[] slotKeys;
+  private int[] slotCodes;
+
+  public DictionaryBytesColumnVector() {
+    this(VectorizedRowBatch.DEFAULT_SIZE);
+  }
+
+  public DictionaryBytesColumnVector(int size) {
+    super(size);
+    codes = new int[size];
+    dictionaryStart = new int[size];
+    dictionaryLength = new int[size];
+  }
+
+  /**
+   * Marks the first size values as set by reference into the buffer of a dictionary, so that
+   * the codes of the values can be built from their offsets.
+   */
+  public void setDictionaryReferences(int size) {
+    referencesSize = size;
+    isEncoded = false;
+  }
+
+  /**
+   * Builds the codes and the dictionary of the values, if they reference a dictionary.
+   *
+   * @return whether the codes and the dictionary are valid for the current values
+   */
+  public boolean encodeDictionary() {
+    if (isEncoded) {
+      return true;
+    }
+    if (referencesSize < 0) {
+      return false;
+    }
+    int size = isRepeating ? Math.min(referencesSize, 1) : referencesSize;
+    if (slotKeys == null || slotKeys.length < 2 * size) {
+      int slotCount = Integer.highestOneBit(Math.max(2 * size, 16) - 1) << 1;
+      slotKeys = new long[slotCount];
+      slotCodes = new int[slotCount];
+    }
+    Arrays.fill(slotKeys, -1L);
+    int mask = slotKeys.length - 1;
+    byte[] buffer = null;
+    dictionarySize = 0;
+    for (int i = 0; i < size; i++) {
+      if (!noNulls && isNull[i]) {
+        continue;
+      }
+      if (buffer == null) {
+        buffer = vector[i];
+      } else if (vector[i] != buffer) {
+        // Not the references of a single dictionary.
+        referencesSize = -1;
+        return false;
+      }
+      // An empty value may start where the next one does, so the length is part of the key.
+      long key = ((long) start[i] << 32) | length[i];
+      int slot = (int) (key ^ (key >>> 29)) * 0x9E3779B1 & mask;
+      while (slotKeys[slot] != -1L && slotKeys[slot] != key) {
+        slot = (slot + 1) & mask;
+      }
+      if (slotKeys[slot] == -1L) {
+        slotKeys[slot] = key;
+        slotCodes[slot] = dictionarySize;
+        dictionaryStart[dictionarySize] = start[i];
+        dictionaryLength[dictionarySize] = length[i];
+        ++dictionarySize;
+      }
+      codes[i] = slotCodes[slot];
+    }
+    dictionaryBuffer = buffer;
+    isEncoded = true;
+    return true;
+  }
+
+  /**
+   * @return the number of distinct values, valid after {@link #encodeDictionary()}
+   */
+  public int getDictionarySize() {
+    return dictionarySize;
+  }
+
+  /**
+   * @return the buffer of the dictionary, valid after {@link #encodeDictionary()}
+   */
+  public byte[] getDictionaryBuffer() {
+    return dictionaryBuffer;
+  }
+
+  /**
+   * @return the start offset of each dictionary value in the buffer of the dictionary
+   */
+  public int[] getDictionaryStart() {
+    return dictionaryStart;
+  }
+
+  /**
+   * @return the length of each dictionary value
+   */
+  public int[] getDictionaryLength() {
+    return dictionaryLength;
+  }
+
+  private void clearDictionary() {
+    referencesSize = -1;
+    isEncoded = false;
+  }
+
+  @Override
+  public void reset() {
+    super.reset();
+    clearDictionary();
+  }
+
+  @Override
+  public void setRef(int elementNum, byte[] sourceBuf, int start, int length) {
+    super.setRef(elementNum, sourceBuf, start, length);
+    clearDictionary();
+  }
+
+  @Override
+  public void setVal(int elementNum, byte[] sourceBuf, int start, int length) {
+    super.setVal(elementNum, sourceBuf, start, length);
+    clearDictionary();
+  }
+
+  @Override
+  public void setValPreallocated(int elementNum, int length) {
+    super.setValPreallocated(elementNum, length);
+    clearDictionary();
+  }
+
+  @Override
+  public void setConcat(int elementNum, byte[] leftSourceBuf, int leftStart, int leftLen,
+      byte[] rightSourceBuf, int rightStart, int rightLen) {
+    super.setConcat(elementNum, leftSourceBuf, leftStart, leftLen,
+        rightSourceBuf, rightStart, rightLen);
+    clearDictionary();
+  }
+
+  @Override
+  public void flatten(boolean selectedInUse, int[] sel, int size) {
+    super.flatten(selectedInUse, sel, size);
+    clearDictionary();
+  }
+
+  @Override
+  public void fillWithNulls() {
+    super.fillWithNulls();
+    clearDictionary();
+  }
+
+  @Override
+  public void ensureSize(int size, boolean preserveData) {
+    super.ensureSize(size, preserveData);
+    if (size > codes.length) {
+      codes = new int[size];
+      dictionaryStart = new int[size];
+      dictionaryLength = new int[size];
+      clearDictionary();
+    }
+  }
+
+  @Override
+  public void shallowCopyTo(ColumnVector otherCv) {
+    super.shallowCopyTo(otherCv);
+    if (otherCv instanceof DictionaryBytesColumnVector) {
+      ((DictionaryBytesColumnVector) otherCv).clearDictionary();
+    }
+  }
+}
@@ -0,0 +1,92 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.hadoop.hive.ql.exec.vector;
+
+import java.nio.charset.StandardCharsets;
+
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+public class TestDictionaryBytesColumnVector {
+
+  private static final byte[] DICTIONARY = "abcdef".getBytes(StandardCharsets.UTF_8);
+
+  private static String dictionaryValue(DictionaryBytesColumnVector col, int row) {
+    int code = col.codes[row];
+    return new String(col.getDictionaryBuffer(), col.getDictionaryStart()[code],
+        col.getDictionaryLength()[code], StandardCharsets.UTF_8);
+  }
+
+  @Test
+  public void testEncodeDictionary() {
+    DictionaryBytesColumnVector col = new DictionaryBytesColumnVector();
+    // "ab", "cd", "", "ab", null, "" at the start of "cd", "cd"
+    int[][] refs = { {0, 2}, {2, 2}, {4, 0}, {0, 2}, {0, 0}, {2, 0}, {2, 2} };
+    col.reset();
+    for (int i = 0; i < refs.length; i++) {
+      col.setRef(i, DICTIONARY, refs[i][0], refs[i][1]);
+    }
+    col.noNulls = false;
+    col.isNull[4] = true;
+    assertFalse(col.encodeDictionary());
+    col.setDictionaryReferences(refs.length);
+    assertTrue(col.encodeDictionary());
+
+    assertEquals(4, col.getDictionarySize());
+    assertSame(DICTIONARY, col.getDictionaryBuffer());
+    assertEquals(col.codes[0], col.codes[3]);
+    assertEquals(col.codes[1], col.codes[6]);
+    assertNotEquals(col.codes[2], col.codes[5]);
+    assertNotEquals(col.codes[1], col.codes[5]);
+    for (int i = 0; i < refs.length; i++) {
+      if (i != 4) {
+        assertEquals(col.toString(i), dictionaryValue(col, i));
+      }
+    }
+
+    // Setting a value any other way discards the dictionary.
+    col.setVal(1, DICTIONARY, 0, 1);
+    assertFalse(col.encodeDictionary());
+    col.reset();
+    assertFalse(col.encodeDictionary());
+  }
+
+  @Test
+  public void testEncodeRepeating() {
+    DictionaryBytesColumnVector col = new DictionaryBytesColumnVector();
+    col.reset();
+    col.setRef(0, DICTIONARY, 3, 2);
+    col.isRepeating = true;
+    col.setDictionaryReferences(VectorizedRowBatch.DEFAULT_SIZE);
+    assertTrue(col.encodeDictionary());
+    assertEquals(1, col.getDictionarySize());
+    assertEquals("de", dictionaryValue(col, 0));
+  }
+
+  @Test
+  public void testEncodeDifferentBuffers() {
+    DictionaryBytesColumnVector col = new DictionaryBytesColumnVector();
+    col.reset();
+    col.setRef(0, DICTIONARY, 0, 2);
+    col.setRef(1, "ab".getBytes(StandardCharsets.UTF_8), 0, 2);
+    col.setDictionaryReferences(2);
+    // The values are not all references into one dictionary.
+    assertFalse(col.encodeDictionary());
+  }
+}